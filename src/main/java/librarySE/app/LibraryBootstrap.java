@@ -0,0 +1,277 @@
+package librarySE.app;
+
+import librarySE.backup.HotBackup;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.ChangeFeed;
+import librarySE.managers.ItemManager;
+import librarySE.managers.UserManager;
+import librarySE.repo.BorrowRecordArchive;
+import librarySE.repo.BorrowRecordRepository;
+import librarySE.repo.ChangeLog;
+import librarySE.repo.FileWaitlistRepository;
+import librarySE.repo.ItemRepository;
+import librarySE.repo.JournalBorrowRecordRepository;
+import librarySE.repo.JournalItemRepository;
+import librarySE.repo.JournalUserRepository;
+import librarySE.repo.MappedItemRepository;
+import librarySE.repo.PersistenceCoordinator;
+import librarySE.repo.UserRepository;
+import librarySE.repo.WaitlistRepository;
+import librarySE.repo.jdbc.JdbcBorrowRecordRepository;
+import librarySE.repo.jdbc.JdbcDatabase;
+import librarySE.repo.jdbc.JdbcItemRepository;
+import librarySE.repo.jdbc.JdbcUserRepository;
+import librarySE.repo.jdbc.JdbcWaitlistRepository;
+import librarySE.repo.lsm.LsmBorrowRecordRepository;
+import librarySE.repo.lsm.LsmItemRepository;
+import librarySE.repo.lsm.LsmUserRepository;
+import librarySE.repo.lsm.LsmWaitlistRepository;
+import librarySE.search.KeywordSearchStrategy;
+import librarySE.utils.Config;
+import librarySE.utils.FileUtils;
+import librarySE.utils.LoggerUtils;
+import librarySE.utils.RecoveryReport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup sequence of {@link LibraryGuiApp}, run on the main thread so the
+ * event dispatch thread stays free to paint the {@link StartupSplash}.
+ * <p>
+ * The phases are:
+ * </p>
+ * <ol>
+ *     <li><b>open storage</b> – select the backend ({@code persistence.backend}:
+ *         {@code file}, {@code jdbc}, {@code lsm} or {@code mapped}, which keeps
+ *         items in a memory-mapped catalog read on demand and everything else
+ *         in the file backend) and wrap its repositories
+ *         in a {@link PersistenceCoordinator}. With {@code storage.shared=true}
+ *         (several desks sharing {@code library_data}) the file backend's
+ *         repositories write through instead, so a checkout that conflicts
+ *         with another desk is detected and retried while it runs;</li>
+ *     <li><b>load repositories</b> – load items, users, borrow records and the
+ *         waitlist concurrently on virtual threads
+ *         ({@link PersistenceCoordinator#preload()}); damaged files are
+ *         recovered while loading and reported as {@link RecoveryReport}s;</li>
+ *     <li><b>wire managers</b> – initialize the managers from the loaded lists
+ *         once every load has completed, open the {@link ChangeLog} their
+ *         changes are recorded in ({@code cdc.enabled}, {@code cdc.dir}),
+ *         schedule the daily move of settled loans into the
+ *         {@link BorrowRecordArchive} ({@code borrow.archive.enabled},
+ *         {@code borrow.archive.afterDays}) and the periodic {@link HotBackup}
+ *         ({@code backup.hot.intervalMinutes}).</li>
+ * </ol>
+ * <p>
+ * The duration of every phase, and of each repository load, is appended to
+ * {@code startup_log.txt} by {@link #finish(String, long)}.
+ * </p>
+ */
+final class LibraryBootstrap {
+
+    /** Number of {@link StartupSplash#advance(String)} steps of {@link #run()}. */
+    static final int STEPS = 4;
+
+    /** Managers ready to be handed to the GUI, and the files recovered while loading. */
+    record Services(ItemManager items, UserManager users, BorrowManager borrows,
+                    List<RecoveryReport> recoveries) { }
+
+    private record Repositories(ItemRepository items, UserRepository users,
+                                BorrowRecordRepository borrowRecords, WaitlistRepository waitlist) { }
+
+    private final StartupSplash splash;
+    private final long begin = System.nanoTime();
+    private final Map<String, Duration> phases = new LinkedHashMap<>();
+    private Map<String, Duration> loads = Map.of();
+    private List<RecoveryReport> recoveries = List.of();
+
+    /**
+     * @param splash progress window updated as phases complete
+     */
+    LibraryBootstrap(StartupSplash splash) {
+        this.splash = splash;
+    }
+
+    /**
+     * Runs all phases.
+     *
+     * @return the initialized managers
+     * @throws RuntimeException if a repository or the change log cannot be opened or loaded
+     */
+    Services run() {
+        splash.advance("Opening storage…");
+        long start = System.nanoTime();
+        PersistenceCoordinator persistence = new PersistenceCoordinator();
+        Repositories repos = openRepositories(persistence);
+        phase("open storage", start);
+
+        splash.advance("Loading library data…");
+        start = System.nanoTime();
+        try {
+            loads = persistence.preload().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+        recoveries = RecoveryReport.drain();
+        phase("load repositories", start);
+
+        splash.advance("Preparing catalogue…");
+        start = System.nanoTime();
+        ItemManager.init(repos.items(), new KeywordSearchStrategy());
+        UserManager.init(repos.users());
+        BorrowManager.init(repos.borrowRecords(), repos.waitlist(),
+                ItemManager.getInstance(), UserManager.getInstance());
+        openChangeLog();
+        scheduleArchival(BorrowManager.getInstance());
+        HotBackup backup = HotBackup.startFromConfig(
+                ItemManager.getInstance(), UserManager.getInstance(), BorrowManager.getInstance());
+        Runtime.getRuntime().addShutdownHook(new Thread(backup::close, "hot-backup-shutdown"));
+        phase("wire managers", start);
+
+        splash.advance("Ready");
+        return new Services(ItemManager.getInstance(), UserManager.getInstance(), BorrowManager.getInstance(),
+                recoveries);
+    }
+
+    /**
+     * Records the last phase (typically building the first window) and logs
+     * the startup timing breakdown.
+     *
+     * @param phase name of the last phase
+     * @param start {@link System#nanoTime()} at which it started
+     */
+    void finish(String phase, long start) {
+        phase(phase, start);
+
+        StringJoiner breakdown = new StringJoiner(", ");
+        phases.forEach((name, took) -> {
+            String line = name + " " + took.toMillis() + " ms";
+            if (name.equals("load repositories") && !loads.isEmpty()) {
+                StringJoiner perRepo = new StringJoiner(", ", " (", ")");
+                loads.forEach((repo, t) -> perRepo.add(repo + " " + t.toMillis() + " ms"));
+                line += perRepo;
+            }
+            breakdown.add(line);
+        });
+        recoveries.forEach(r -> breakdown.add("recovered " + r.file().getFileName()
+                + " in " + r.took().toMillis() + " ms"));
+        long total = Duration.ofNanos(System.nanoTime() - begin).toMillis();
+        LoggerUtils.log("startup_log.txt", "Startup took " + total + " ms: " + breakdown);
+    }
+
+    private void phase(String name, long start) {
+        phases.put(name, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Opens the change log and installs it in the {@link ChangeFeed}. Desks
+     * sharing the data directory share the log. The library runs without one
+     * only if it is disabled; a log that cannot be opened stops the startup,
+     * since running on would leave a gap consumers cannot notice.
+     *
+     * @throws UncheckedIOException if the change log cannot be opened
+     */
+    private static void openChangeLog() {
+        if (!Config.getBoolean("cdc.enabled", true)) return;
+        try {
+            ChangeLog log = new ChangeLog(FileUtils.dataFile(Config.get("cdc.dir", "changes")),
+                    Config.getInt("cdc.segmentEntries", 10_000), Config.getInt("cdc.segments", 8));
+            ChangeFeed.install(log);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                ChangeFeed.install(null);
+                try {
+                    log.close();
+                } catch (IOException e) {
+                    LoggerUtils.log("changes_log.txt", "Failed to close change log → " + e.getMessage());
+                }
+            }, "change-log-shutdown"));
+        } catch (IOException e) {
+            LoggerUtils.log("changes_log.txt", "Failed to open change log → " + e.getMessage());
+            throw new UncheckedIOException("Failed to open change log", e);
+        }
+    }
+
+    /**
+     * Opens the borrow archive and moves loans settled more than
+     * {@code borrow.archive.afterDays} (default 90) days ago into it, once in
+     * the background after startup and then daily.
+     */
+    private static void scheduleArchival(BorrowManager borrows) {
+        if (!Config.getBoolean("borrow.archive.enabled", true)) return;
+        BorrowRecordArchive archive;
+        try {
+            archive = new BorrowRecordArchive(FileUtils.dataFile(Config.get("borrow.archive.dir", "borrow_archive")),
+                    Config.getInt("borrow.archive.segmentKb", 4096) * 1024L,
+                    Config.getInt("borrow.archive.maxSegments", 32));
+        } catch (UncheckedIOException e) {
+            LoggerUtils.log("borrow_archive_log.txt", "Archiving disabled → " + e.getMessage());
+            return;
+        }
+        borrows.setArchive(archive);
+
+        int afterDays = Config.getInt("borrow.archive.afterDays", 90);
+        ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "borrow-archive");
+            t.setDaemon(true);
+            return t;
+        });
+        worker.scheduleWithFixedDelay(() -> {
+            try {
+                borrows.archiveSettledRecords(LocalDate.now().minusDays(afterDays));
+            } catch (RuntimeException e) {
+                LoggerUtils.log("borrow_archive_log.txt", "Archiving failed → " + e.getMessage());
+            }
+        }, 1, TimeUnit.DAYS.toMinutes(1), TimeUnit.MINUTES);
+    }
+
+    /**
+     * Creates the configured backend's repositories, wraps them in the
+     * coordinator and registers the shutdown hook that closes them.
+     */
+    private static Repositories openRepositories(PersistenceCoordinator persistence) {
+        String backend = Config.get("persistence.backend", "file").trim().toLowerCase();
+        JdbcDatabase database = "jdbc".equals(backend) ? new JdbcDatabase() : null;
+        boolean lsm = "lsm".equals(backend);
+        boolean mapped = "mapped".equals(backend);
+
+        ItemRepository itemStore = database != null ? new JdbcItemRepository(database)
+                : lsm ? new LsmItemRepository()
+                : mapped ? new MappedItemRepository() : new JournalItemRepository();
+        BorrowRecordRepository borrowStore = database != null ? new JdbcBorrowRecordRepository(database)
+                : lsm ? new LsmBorrowRecordRepository() : new JournalBorrowRecordRepository();
+        WaitlistRepository waitlistStore = database != null ? new JdbcWaitlistRepository(database)
+                : lsm ? new LsmWaitlistRepository() : new FileWaitlistRepository();
+        UserRepository userStore = database != null ? new JdbcUserRepository(database)
+                : lsm ? new LsmUserRepository() : new JournalUserRepository();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            persistence.close();
+            if (database != null) database.close();
+            if (lsm) {
+                ((LsmItemRepository) itemStore).close();
+                ((LsmBorrowRecordRepository) borrowStore).close();
+                ((LsmWaitlistRepository) waitlistStore).close();
+                ((LsmUserRepository) userStore).close();
+            }
+            if (mapped) ((MappedItemRepository) itemStore).close();
+            if (database == null && !lsm) ((FileWaitlistRepository) waitlistStore).close();
+        }, "persistence-shutdown"));
+
+        if (database == null && !lsm && !mapped && Config.getBoolean("storage.shared", false)) {
+            return new Repositories(itemStore, userStore, borrowStore, waitlistStore);
+        }
+        return new Repositories(persistence.items(itemStore), persistence.users(userStore),
+                persistence.borrowRecords(borrowStore), persistence.waitlist(waitlistStore));
+    }
+}
@@ -2,18 +2,10 @@ package librarySE.app;
 
 import librarySE.managers.*;
 import librarySE.managers.reports.ReportManager;
-import librarySE.repo.BorrowRecordRepository;
-import librarySE.repo.FileBorrowRecordRepository;
-import librarySE.repo.FileItemRepository;
-import librarySE.repo.FileUserRepository;
-import librarySE.repo.FileWaitlistRepository;
-import librarySE.repo.ItemRepository;
-import librarySE.repo.UserRepository;
-import librarySE.repo.WaitlistRepository;
-import librarySE.search.KeywordSearchStrategy;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
+import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 
 public class LibraryGuiApp {
@@ -50,39 +42,54 @@ public class LibraryGuiApp {
 
   
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-
-            ItemRepository itemRepo = new FileItemRepository();
-            BorrowRecordRepository borrowRepo = new FileBorrowRecordRepository();
-            WaitlistRepository waitlistRepo = new FileWaitlistRepository();
-            UserRepository userRepo = new FileUserRepository();
-
-            ItemManager.init(itemRepo, new KeywordSearchStrategy());
-            UserManager.init(userRepo);
-
-            ItemManager itemManager = ItemManager.getInstance();
-
-
-            BorrowManager.init(borrowRepo, waitlistRepo, itemManager);
-            BorrowManager borrowMgr = BorrowManager.getInstance();
+        // Data is loaded here on the main thread; the event dispatch thread only paints the splash.
+        StartupSplash splash = new StartupSplash(LibraryBootstrap.STEPS);
+        splash.show();
+
+        LibraryBootstrap bootstrap = new LibraryBootstrap(splash);
+        LibraryBootstrap.Services services;
+        try {
+            services = bootstrap.run();
+        } catch (RuntimeException e) {
+            splash.close();
+            SwingUtilities.invokeLater(() -> {
+                JOptionPane.showMessageDialog(null,
+                        "Could not load the library data:\n" + e.getMessage(),
+                        "Startup failed", JOptionPane.ERROR_MESSAGE);
+                System.exit(1);
+            });
+            return;
+        }
 
-            UserManager userManager = UserManager.getInstance();
+        SwingUtilities.invokeLater(() -> {
+            long start = System.nanoTime();
 
             Admin admin = initAdminFromEnv();
             LoginManager loginManager = new LoginManager(admin);
 
             ReportManager reportManager =
-                    new ReportManager(borrowMgr.getAllBorrowRecords());
+                    new ReportManager(services.borrows().getAllBorrowRecords());
 
             LibraryLoginFrame loginFrame = new LibraryLoginFrame(
                     loginManager,
                     admin,
-                    itemManager,
-                    borrowMgr,
-                    userManager,
+                    services.items(),
+                    services.borrows(),
+                    services.users(),
                     reportManager
             );
             loginFrame.setVisible(true);
+            splash.close();
+            bootstrap.finish("show login", start);
+
+            if (!services.recoveries().isEmpty()) {
+                StringBuilder details = new StringBuilder();
+                services.recoveries().forEach(r -> details.append("\n• ").append(r));
+                JOptionPane.showMessageDialog(loginFrame,
+                        "Some data files were damaged and have been recovered:" + details
+                                + "\n\nSee library_data/logs/recovery_log.txt for details.",
+                        "Data recovered", JOptionPane.WARNING_MESSAGE);
+            }
         });
     }
 
@@ -1,5 +1,8 @@
 package librarySE.app;
 
+import librarySE.backup.HotBackup;
+import librarySE.catalog.CatalogImporter;
+import librarySE.catalog.ImportReport;
 import librarySE.core.Book;
 import librarySE.core.CD;
 import librarySE.core.Journal;
@@ -18,8 +21,11 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 
 public class LibraryMainFrame extends JFrame {
@@ -46,11 +52,13 @@ public class LibraryMainFrame extends JFrame {
     private JTextField priceField;
     private JSpinner copiesSpinner;
     private JButton addItemButton;
+    private JButton importButton;
 
     private JTextField searchField;
     private JButton searchButton;
     private JTable itemsTable;
     private DefaultTableModel itemsTableModel;
+    private final List<UUID> itemsTableIds = new ArrayList<>();
 
     // User management tab components
     private JTextField newUserNameField;
@@ -68,10 +76,12 @@ public class LibraryMainFrame extends JFrame {
 
     private JTable allItemsTable;
     private DefaultTableModel allItemsTableModel;
+    private final List<UUID> allItemsTableIds = new ArrayList<>();
     private JButton borrowButton;
 
     private JTable userBorrowTable;
     private DefaultTableModel userBorrowTableModel;
+    private final List<UUID> userBorrowTableIds = new ArrayList<>();
     private JButton returnButton;
 
     private JTextField payAmountField;
@@ -82,6 +92,7 @@ public class LibraryMainFrame extends JFrame {
     private JButton generateReportButton;
     private JButton exportCsvButton;
     private JButton sendRemindersButton;
+    private JButton backupButton;
 
     public LibraryMainFrame(LoginManager loginManager,
                             Admin admin,
@@ -210,6 +221,7 @@ public class LibraryMainFrame extends JFrame {
         priceField = new JTextField(8);
         copiesSpinner = new JSpinner(new SpinnerNumberModel(1, 1, 999, 1));
         addItemButton = new JButton("Add Item");
+        importButton = new JButton("Import Catalog…");
 
         // Row 0: type
         c.gridx = 0; c.gridy = 0;
@@ -255,12 +267,16 @@ public class LibraryMainFrame extends JFrame {
         c.gridx = 1;
         panel.add(issueNumberField, c);
 
-        // Row 7: Button
+        // Row 7: Buttons
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttons.add(addItemButton);
+        buttons.add(importButton);
         c.gridx = 0; c.gridy = 7; c.gridwidth = 3;
         c.anchor = GridBagConstraints.CENTER;
-        panel.add(addItemButton, c);
+        panel.add(buttons, c);
 
         addItemButton.addActionListener(e -> handleAddItem());
+        importButton.addActionListener(e -> handleImportCatalog());
 
         return panel;
     }
@@ -300,11 +316,7 @@ public class LibraryMainFrame extends JFrame {
                 if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
                     int row = itemsTable.rowAtPoint(e.getPoint());
                     if (row >= 0) {
-                        String title = (String) itemsTableModel.getValueAt(row, 1);
-                        LibraryItem item = itemManager.getAllItems().stream()
-                                .filter(i -> i.getTitle().equals(title))
-                                .findFirst()
-                                .orElse(null);
+                        LibraryItem item = itemInRow(itemsTableIds, row);
                         if (item != null) {
                             openEditItemDialog(item);
                         }
@@ -336,44 +348,54 @@ public class LibraryMainFrame extends JFrame {
         String normIsbn = isbn == null ? "" : isbn.trim();
         String normIssue = issue == null ? "" : issue.trim().toLowerCase();
 
-        for (LibraryItem item : itemManager.getAllItems()) {
+        try (Stream<LibraryItem> all = itemManager.streamAllItems()) {
+            return all.filter(item -> matchesExisting(item, type, normTitle, normPerson, normIsbn, normIssue))
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
 
-            switch (type) {
+    private static boolean matchesExisting(LibraryItem item,
+                                           MaterialType type,
+                                           String normTitle,
+                                           String normPerson,
+                                           String normIsbn,
+                                           String normIssue) {
+        switch (type) {
 
-                case BOOK -> {
-                    if (item instanceof Book b) {
-                        if (!normIsbn.isEmpty()
-                                && normIsbn.equalsIgnoreCase(b.getIsbn())) {
-                            return item;
-                        }
+            case BOOK -> {
+                if (item instanceof Book b) {
+                    if (!normIsbn.isEmpty()
+                            && normIsbn.equalsIgnoreCase(b.getIsbn())) {
+                        return true;
                     }
                 }
+            }
 
-                case CD -> {
-                    if (item instanceof CD cd) {
-                        String t = cd.getTitle().trim().toLowerCase();
-                        String a = cd.getArtist().trim().toLowerCase();
-                        if (normTitle.equals(t) && normPerson.equals(a)) {
-                            return item;
-                        }
+            case CD -> {
+                if (item instanceof CD cd) {
+                    String t = cd.getTitle().trim().toLowerCase();
+                    String a = cd.getArtist().trim().toLowerCase();
+                    if (normTitle.equals(t) && normPerson.equals(a)) {
+                        return true;
                     }
                 }
+            }
 
-                case JOURNAL -> {
-                    if (item instanceof Journal j) {
-                        String t = j.getTitle().trim().toLowerCase();
-                        String e = j.getEditor().trim().toLowerCase();
-                        String iss = j.getIssueNumber().trim().toLowerCase();
-                        if (normTitle.equals(t)
-                                && normPerson.equals(e)
-                                && normIssue.equals(iss)) {
-                            return item;
-                        }
+            case JOURNAL -> {
+                if (item instanceof Journal j) {
+                    String t = j.getTitle().trim().toLowerCase();
+                    String e = j.getEditor().trim().toLowerCase();
+                    String iss = j.getIssueNumber().trim().toLowerCase();
+                    if (normTitle.equals(t)
+                            && normPerson.equals(e)
+                            && normIssue.equals(iss)) {
+                        return true;
                     }
                 }
             }
         }
-        return null;
+        return false;
     }
 
 
@@ -398,12 +420,7 @@ public class LibraryMainFrame extends JFrame {
             return;
         }
 
-        String title = (String) itemsTableModel.getValueAt(row, 1);
-
-        LibraryItem item = itemManager.getAllItems().stream()
-                .filter(i -> i.getTitle().equals(title))
-                .findFirst()
-                .orElse(null);
+        LibraryItem item = itemInRow(itemsTableIds, row);
 
         if (item == null) {
             JOptionPane.showMessageDialog(this,
@@ -434,7 +451,6 @@ public class LibraryMainFrame extends JFrame {
 
         try {
             itemManager.deleteItem(item, admin);
-            itemManager.saveAll();
 
             loadAllItemsToSearchTable();
             loadAllItemsToBorrowTable();
@@ -518,7 +534,6 @@ public class LibraryMainFrame extends JFrame {
             }
 
             itemManager.addItem(item, admin);
-            itemManager.saveAll();
 
             JOptionPane.showMessageDialog(this,
                     "Item added successfully: " + item.getTitle());
@@ -531,6 +546,51 @@ public class LibraryMainFrame extends JFrame {
         }
     }
 
+    /**
+     * Imports a CSV or MARC21 catalog in the background with {@link CatalogImporter}
+     * and shows the resulting {@link ImportReport}.
+     */
+    private void handleImportCatalog() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter(
+                "Catalog files (CSV, MARC21)", "csv", "mrc", "marc"));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        java.nio.file.Path file = chooser.getSelectedFile().toPath();
+        boolean csv = file.getFileName().toString().toLowerCase().endsWith(".csv");
+
+        importButton.setEnabled(false);
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<ImportReport, Void>() {
+            @Override
+            protected ImportReport doInBackground() throws Exception {
+                CatalogImporter importer = new CatalogImporter(itemManager, admin);
+                return csv ? importer.importCsv(file) : importer.importMarc(file);
+            }
+
+            @Override
+            protected void done() {
+                importButton.setEnabled(true);
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    ImportReport report = get();
+                    StringBuilder sb = new StringBuilder(report.toString());
+                    report.rejections().stream().limit(15)
+                            .forEach(r -> sb.append("\n").append(r));
+                    if (report.rejections().size() > 15)
+                        sb.append("\n… see import_log.txt for all rejected rows");
+                    JOptionPane.showMessageDialog(LibraryMainFrame.this, sb.toString(), "Import finished",
+                            report.invalid() > 0 ? JOptionPane.WARNING_MESSAGE : JOptionPane.INFORMATION_MESSAGE);
+                } catch (Exception ex) {
+                    Throwable cause = (ex.getCause() != null) ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(LibraryMainFrame.this,
+                            cause.getMessage(), "Import Error", JOptionPane.ERROR_MESSAGE);
+                }
+                loadAllItemsToSearchTable();
+                loadAllItemsToBorrowTable();
+            }
+        }.execute();
+    }
+
     private void refreshSearchResults() {
         String keyword = searchField.getText().trim();
         if (keyword.isEmpty()) {
@@ -539,27 +599,33 @@ public class LibraryMainFrame extends JFrame {
         }
         List<LibraryItem> results = itemManager.searchItems(keyword);
         itemsTableModel.setRowCount(0);
-        for (LibraryItem item : results) {
-            itemsTableModel.addRow(new Object[]{
-                    item.getMaterialType(),
-                    item.getTitle(),
-                    item.toString()
-            });
-        }
+        itemsTableIds.clear();
+        results.forEach(this::addSearchRow);
     }
 
     private void loadAllItemsToSearchTable() {
-        List<LibraryItem> all = itemManager.getAllItems();
         itemsTableModel.setRowCount(0);
-        for (LibraryItem item : all) {
-            itemsTableModel.addRow(new Object[]{
-                    item.getMaterialType(),
-                    item.getTitle(),
-                    item.toString()
-            });
+        itemsTableIds.clear();
+        try (Stream<LibraryItem> all = itemManager.streamAllItems()) {
+            all.forEach(this::addSearchRow);
         }
     }
 
+    private void addSearchRow(LibraryItem item) {
+        itemsTableIds.add(item.getId());
+        itemsTableModel.addRow(new Object[]{
+                item.getMaterialType(),
+                item.getTitle(),
+                item.toString()
+        });
+    }
+
+    /** Looks up the item shown in a table row by the id recorded for the row. */
+    private LibraryItem itemInRow(List<UUID> rowIds, int row) {
+        if (row < 0 || row >= rowIds.size()) return null;
+        return itemManager.findItemById(rowIds.get(row)).orElse(null);
+    }
+
 
     private JPanel createUserManagementPanel() {
         JPanel root = new JPanel(new BorderLayout());
@@ -655,7 +721,6 @@ public class LibraryMainFrame extends JFrame {
         try {
             User user = new User(username, Role.USER, password, email);
             userManager.addUser(user);
-            userManager.saveAll();
             JOptionPane.showMessageDialog(this, "User registered successfully.");
             newUserNameField.setText("");
             newUserPassField.setText("");
@@ -698,7 +763,6 @@ public class LibraryMainFrame extends JFrame {
 
         try {
             userManager.unregisterUser(user);
-            userManager.saveAll();
             JOptionPane.showMessageDialog(this, "User unregistered.");
             refreshUsersTable();
             loadUsersIntoCombo();
@@ -782,11 +846,7 @@ public class LibraryMainFrame extends JFrame {
                 if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
                     int row = allItemsTable.rowAtPoint(e.getPoint());
                     if (row >= 0) {
-                        String title = (String) allItemsTableModel.getValueAt(row, 1);
-                        LibraryItem item = itemManager.getAllItems().stream()
-                                .filter(i -> i.getTitle().equals(title))
-                                .findFirst()
-                                .orElse(null);
+                        LibraryItem item = itemInRow(allItemsTableIds, row);
                         if (item != null) {
                             openEditItemDialog(item);
                         }
@@ -853,36 +913,40 @@ public class LibraryMainFrame extends JFrame {
     }
 
     private void loadAllItemsToBorrowTable() {
-        List<LibraryItem> all = itemManager.getAllItems();
         allItemsTableModel.setRowCount(0);
-        for (LibraryItem item : all) {
-
-            int available = 0;
-            int total = 1;
-
-            if (item instanceof Book b) {
-                available = b.getAvailableCopies();
-                total = b.getTotalCopies();
-            } else if (item instanceof CD cd) {
-                available = cd.getAvailableCopies();
-                total = cd.getTotalCopies();
-            } else if (item instanceof Journal j) {
-                available = j.getAvailableCopies();
-                total = j.getTotalCopies();
-            } else {
-                // fallback: old boolean availability
-                available = item.isAvailable() ? 1 : 0;
-                total = 1;
-            }
+        allItemsTableIds.clear();
+        try (Stream<LibraryItem> all = itemManager.streamAllItems()) {
+            all.forEach(this::addBorrowRow);
+        }
+    }
 
-            String availabilityText = available + " / " + total;
+    private void addBorrowRow(LibraryItem item) {
+        int available = 0;
+        int total = 1;
 
-            allItemsTableModel.addRow(new Object[]{
-                    item.getMaterialType(),
-                    item.getTitle(),
-                    availabilityText
-            });
+        if (item instanceof Book b) {
+            available = b.getAvailableCopies();
+            total = b.getTotalCopies();
+        } else if (item instanceof CD cd) {
+            available = cd.getAvailableCopies();
+            total = cd.getTotalCopies();
+        } else if (item instanceof Journal j) {
+            available = j.getAvailableCopies();
+            total = j.getTotalCopies();
+        } else {
+            // fallback: old boolean availability
+            available = item.isAvailable() ? 1 : 0;
+            total = 1;
         }
+
+        String availabilityText = available + " / " + total;
+
+        allItemsTableIds.add(item.getId());
+        allItemsTableModel.addRow(new Object[]{
+                item.getMaterialType(),
+                item.getTitle(),
+                availabilityText
+        });
     }
 
     private void handleBorrowItem() {
@@ -908,12 +972,7 @@ public class LibraryMainFrame extends JFrame {
             return;
         }
 
-        String title = (String) allItemsTableModel.getValueAt(row, 1);
-
-        LibraryItem item = itemManager.getAllItems().stream()
-                .filter(i -> i.getTitle().equals(title))
-                .findFirst()
-                .orElse(null);
+        LibraryItem item = itemInRow(allItemsTableIds, row);
 
         if (item == null) {
             JOptionPane.showMessageDialog(this, "Item not found.");
@@ -946,14 +1005,16 @@ public class LibraryMainFrame extends JFrame {
 
         User user = getSelectedUser();
         userBorrowTableModel.setRowCount(0);
+        userBorrowTableIds.clear();
         if (user == null) return;
 
         List<BorrowRecord> records = borrowManager.getBorrowRecordsForUser(user);
         LocalDate today = LocalDate.now();
 
         for (BorrowRecord r : records) {
+            userBorrowTableIds.add(r.getItem() != null ? r.getItem().getId() : null);
             userBorrowTableModel.addRow(new Object[]{
-                    r.getItem().getTitle(),
+                    r.getItem() != null ? r.getItem().getTitle() : "Unknown item",
                     r.getBorrowDate(),
                     r.getDueDate(),
                     r.getStatus() + (r.isOverdue(today) ? " (OVERDUE)" : "")
@@ -973,12 +1034,7 @@ public class LibraryMainFrame extends JFrame {
             return;
         }
 
-        String title = (String) userBorrowTableModel.getValueAt(row, 0);
-
-        LibraryItem item = itemManager.getAllItems().stream()
-                .filter(i -> i.getTitle().equals(title))
-                .findFirst()
-                .orElse(null);
+        LibraryItem item = itemInRow(userBorrowTableIds, row);
 
         if (item == null) {
             JOptionPane.showMessageDialog(this, "Item not found.");
@@ -1024,7 +1080,7 @@ public class LibraryMainFrame extends JFrame {
 
             borrowManager.payFineForUser(user, amount, LocalDate.now());
 
-            userManager.saveAll();
+            userManager.saveUser(user);
             updateFineBalanceLabel();
             JOptionPane.showMessageDialog(this, "Fine paid successfully.");
 
@@ -1042,10 +1098,12 @@ public class LibraryMainFrame extends JFrame {
         generateReportButton = new JButton("Generate Summary");
         exportCsvButton = new JButton("Export Fines CSV (today)");
         sendRemindersButton = new JButton("Send Overdue Reminders (Email)");
+        backupButton = new JButton("Back Up Now");
 
         buttons.add(generateReportButton);
         buttons.add(exportCsvButton);
         buttons.add(sendRemindersButton);
+        buttons.add(backupButton);
 
         reportArea = new JTextArea();
         reportArea.setEditable(false);
@@ -1056,6 +1114,7 @@ public class LibraryMainFrame extends JFrame {
         generateReportButton.addActionListener(e -> handleGenerateReport());
         exportCsvButton.addActionListener(e -> handleExportCsv());
         sendRemindersButton.addActionListener(e -> handleSendReminders());
+        backupButton.addActionListener(e -> handleBackup());
 
         root.add(buttons, BorderLayout.NORTH);
         root.add(scroll, BorderLayout.CENTER);
@@ -1068,7 +1127,7 @@ public class LibraryMainFrame extends JFrame {
         StringBuilder sb = new StringBuilder();
 
         ReportManager reportManager =
-                new ReportManager(borrowManager.getAllBorrowRecords());
+                new ReportManager(borrowManager.getBorrowHistory(LocalDate.MIN));
 
         sb.append("=== Top Borrowers ===\n");
         Map<User, Long> topBorrowers =
@@ -1128,7 +1187,7 @@ public class LibraryMainFrame extends JFrame {
             sb.append(u.getUsername()).append(":\n");
             for (BorrowRecord r : overdue) {
                 sb.append("  - ")
-                  .append(r.getItem().getTitle())
+                  .append(r.getItem() != null ? r.getItem().getTitle() : "Unknown item")
                   .append(" (due ")
                   .append(r.getDueDate())
                   .append(")\n");
@@ -1150,6 +1209,34 @@ public class LibraryMainFrame extends JFrame {
         }
     }
 
+    /**
+     * Takes a {@link HotBackup} of the whole library; circulation continues
+     * while the archive is written in the background.
+     */
+    private void handleBackup() {
+        backupButton.setEnabled(false);
+        new SwingWorker<HotBackup.Result, Void>() {
+            @Override
+            protected HotBackup.Result doInBackground() {
+                try (HotBackup backup = new HotBackup(itemManager, userManager, borrowManager)) {
+                    return backup.backupNow().join();
+                }
+            }
+
+            @Override
+            protected void done() {
+                backupButton.setEnabled(true);
+                try {
+                    reportArea.setText(get().toString());
+                } catch (Exception ex) {
+                    Throwable cause = (ex.getCause() != null) ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(LibraryMainFrame.this,
+                            cause.getMessage(), "Backup Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
     private void handleSendReminders() {
         LocalDate today = LocalDate.now();
         try {
@@ -1265,7 +1352,7 @@ public class LibraryMainFrame extends JFrame {
                     j.setPrice(newPrice);
                 }
 
-                itemManager.saveAll();
+                itemManager.saveItem(item);
                 loadAllItemsToSearchTable();
                 loadAllItemsToBorrowTable();
 
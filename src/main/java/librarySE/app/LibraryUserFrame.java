@@ -15,7 +15,10 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
 
 public class LibraryUserFrame extends JFrame {
 
@@ -38,11 +41,13 @@ public class LibraryUserFrame extends JFrame {
     private JTextField searchField;
     private JTable itemsTable;
     private DefaultTableModel itemsTableModel;
+    private final List<UUID> itemsTableIds = new ArrayList<>();
 
     // My Loans & Fines components
     private JLabel fineBalanceLabel;
     private JTable borrowTable;
     private DefaultTableModel borrowTableModel;
+    private final List<UUID> borrowTableIds = new ArrayList<>();
     private JButton returnButton;
     private JTextField payAmountField;
     private JButton payFineButton;
@@ -187,27 +192,33 @@ public class LibraryUserFrame extends JFrame {
     }
 
     private void refreshBrowseTable(boolean useKeyword) {
-        List<LibraryItem> list;
-        if (useKeyword) {
-            String kw = searchField.getText().trim();
-            if (kw.isEmpty()) {
-                list = itemManager.getAllItems();
-            } else {
-                list = itemManager.searchItems(kw);
-            }
-        } else {
-            list = itemManager.getAllItems();
-        }
-
         itemsTableModel.setRowCount(0);
-        for (LibraryItem item : list) {
-            itemsTableModel.addRow(new Object[]{
-                    item.getMaterialType(),
-                    item.getTitle(),
-                    item.toString(),
-                    item.isAvailable() ? "Available" : "Not available"
-            });
+        itemsTableIds.clear();
+
+        String kw = useKeyword ? searchField.getText().trim() : "";
+        if (!kw.isEmpty()) {
+            itemManager.searchItems(kw).forEach(this::addBrowseRow);
+            return;
         }
+        try (Stream<LibraryItem> all = itemManager.streamAllItems()) {
+            all.forEach(this::addBrowseRow);
+        }
+    }
+
+    private void addBrowseRow(LibraryItem item) {
+        itemsTableIds.add(item.getId());
+        itemsTableModel.addRow(new Object[]{
+                item.getMaterialType(),
+                item.getTitle(),
+                item.toString(),
+                item.isAvailable() ? "Available" : "Not available"
+        });
+    }
+
+    /** Looks up the item shown in a table row by the id recorded for the row. */
+    private LibraryItem itemInRow(List<UUID> rowIds, int row) {
+        if (row < 0 || row >= rowIds.size()) return null;
+        return itemManager.findItemById(rowIds.get(row)).orElse(null);
     }
 
     private void handleBorrow() {
@@ -218,11 +229,7 @@ public class LibraryUserFrame extends JFrame {
             return;
         }
 
-        String title = (String) itemsTableModel.getValueAt(row, 1);
-        LibraryItem item = itemManager.getAllItems().stream()
-                .filter(i -> i.getTitle().equals(title))
-                .findFirst()
-                .orElse(null);
+        LibraryItem item = itemInRow(itemsTableIds, row);
 
         if (item == null) {
             JOptionPane.showMessageDialog(this, "Item not found.");
@@ -303,13 +310,15 @@ public class LibraryUserFrame extends JFrame {
 
     private void refreshLoansTable() {
         borrowTableModel.setRowCount(0);
+        borrowTableIds.clear();
         List<BorrowRecord> records =
                 borrowManager.getBorrowRecordsForUser(loggedInUser);
         LocalDate today = LocalDate.now();
 
         for (BorrowRecord r : records) {
+            borrowTableIds.add(r.getItem() != null ? r.getItem().getId() : null);
             borrowTableModel.addRow(new Object[]{
-                    r.getItem().getTitle(),
+                    r.getItem() != null ? r.getItem().getTitle() : "Unknown item",
                     r.getBorrowDate(),
                     r.getDueDate(),
                     r.getStatus() + (r.isOverdue(today) ? " (OVERDUE)" : "")
@@ -330,11 +339,7 @@ public class LibraryUserFrame extends JFrame {
             return;
         }
 
-        String title = (String) borrowTableModel.getValueAt(row, 0);
-        LibraryItem item = itemManager.getAllItems().stream()
-                .filter(i -> i.getTitle().equals(title))
-                .findFirst()
-                .orElse(null);
+        LibraryItem item = itemInRow(borrowTableIds, row);
 
         if (item == null) {
             JOptionPane.showMessageDialog(this, "Item not found.");
@@ -365,7 +370,7 @@ public class LibraryUserFrame extends JFrame {
         try {
             BigDecimal amount = new BigDecimal(amountText);
             loggedInUser.payFine(amount);
-            userManager.saveAll();
+            userManager.saveUser(loggedInUser);
             updateFineLabel();
             JOptionPane.showMessageDialog(this,
                     "Fine paid successfully.");
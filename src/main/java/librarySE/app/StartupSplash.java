@@ -0,0 +1,77 @@
+package librarySE.app;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Small undecorated window with a progress bar, shown while
+ * {@link LibraryBootstrap} loads the library data.
+ * <p>
+ * All methods may be called from any thread; they are forwarded to the
+ * event dispatch thread.
+ * </p>
+ */
+final class StartupSplash {
+
+    private final int steps;
+    private JWindow window;
+    private JProgressBar progress;
+    private JLabel status;
+
+    /**
+     * @param steps number of {@link #advance(String)} calls expected until startup completes
+     */
+    StartupSplash(int steps) {
+        this.steps = steps;
+    }
+
+    /** Shows the window. */
+    void show() {
+        SwingUtilities.invokeLater(() -> {
+            window = new JWindow();
+
+            JPanel panel = new JPanel(new BorderLayout(0, 10));
+            panel.setBorder(BorderFactory.createCompoundBorder(
+                    BorderFactory.createLineBorder(new Color(135, 206, 235), 2),
+                    BorderFactory.createEmptyBorder(18, 24, 18, 24)));
+            panel.setBackground(new Color(255, 240, 245));
+
+            JLabel title = new JLabel("Library Management System", SwingConstants.CENTER);
+            title.setFont(title.getFont().deriveFont(Font.BOLD, 18f));
+            title.setForeground(new Color(60, 40, 70));
+
+            status = new JLabel("Starting…", SwingConstants.CENTER);
+            progress = new JProgressBar(0, steps);
+            progress.setStringPainted(false);
+
+            panel.add(title, BorderLayout.NORTH);
+            panel.add(status, BorderLayout.CENTER);
+            panel.add(progress, BorderLayout.SOUTH);
+
+            window.setContentPane(panel);
+            window.setSize(380, 130);
+            window.setLocationRelativeTo(null);
+            window.setVisible(true);
+        });
+    }
+
+    /**
+     * Moves the progress bar one step and shows what is being done now.
+     *
+     * @param message status text
+     */
+    void advance(String message) {
+        SwingUtilities.invokeLater(() -> {
+            if (window == null) return;
+            status.setText(message);
+            progress.setValue(Math.min(steps, progress.getValue() + 1));
+        });
+    }
+
+    /** Closes the window. */
+    void close() {
+        SwingUtilities.invokeLater(() -> {
+            if (window != null) window.dispose();
+        });
+    }
+}
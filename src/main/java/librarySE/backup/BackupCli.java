@@ -0,0 +1,153 @@
+package librarySE.backup;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Command-line access to the backup store in {@code library_data/backups}.
+ *
+ * <pre>
+ * java librarySE.backup.BackupCli list [file]
+ * java librarySE.backup.BackupCli restore &lt;file&gt; &lt;latest|time&gt; [target]
+ * java librarySE.backup.BackupCli prune
+ * java librarySE.backup.BackupCli archives
+ * java librarySE.backup.BackupCli restore-archive &lt;archive&gt; [dir]
+ * </pre>
+ * <p>
+ * {@code time} is an ISO instant ({@code 2025-01-31T10:15:00Z}) or a local
+ * date-time ({@code 2025-01-31T12:15}); the newest snapshot taken at or before
+ * it is restored. The default target is {@code library_data/<file>}; stop the
+ * application before restoring over live data.
+ * </p>
+ * <p>
+ * {@code archives} lists the consistent whole-library archives written by
+ * {@link HotBackup} in {@code library_data/backups/hot}; {@code restore-archive}
+ * puts all data files of one of them (a path, or {@code latest}) back into
+ * {@code dir}, by default {@code library_data}.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class BackupCli {
+
+    private static final Path DATA_DIR = Paths.get("library_data");
+
+    private BackupCli() {}
+
+    public static void main(String[] args) {
+        BackupStore store = new BackupStore(DATA_DIR.resolve("backups"));
+        System.exit(run(args, store, DATA_DIR, System.out, System.err));
+    }
+
+    /**
+     * Executes one command.
+     *
+     * @param args    command-line arguments
+     * @param store   backup store
+     * @param dataDir default restore directory
+     * @param out     standard output
+     * @param err     error output
+     * @return process exit code
+     */
+    static int run(String[] args, BackupStore store, Path dataDir, PrintStream out, PrintStream err) {
+        if (args.length == 0) return usage(err);
+        try {
+            switch (args[0]) {
+                case "list" -> {
+                    List<String> files = (args.length > 1) ? List.of(args[1]) : store.files();
+                    for (String file : files) {
+                        out.println(file);
+                        for (Snapshot s : store.list(file)) {
+                            out.printf("  %s  %,12d bytes  %d chunks  %s%n",
+                                    s.time(), s.size(), s.chunks().size(), s.contentHash().substring(0, 12));
+                        }
+                    }
+                    return 0;
+                }
+                case "restore" -> {
+                    if (args.length < 3) return usage(err);
+                    Optional<Snapshot> snapshot = args[2].equals("latest")
+                            ? store.list(args[1]).stream().reduce((a, b) -> b)
+                            : store.find(args[1], parseTime(args[2]));
+                    if (snapshot.isEmpty()) {
+                        err.println("No snapshot of " + args[1] + " at " + args[2]);
+                        return 1;
+                    }
+                    Path target = (args.length > 3) ? Paths.get(args[3]) : dataDir.resolve(args[1]);
+                    store.restore(snapshot.get(), target);
+                    out.println("Restored " + args[1] + " @ " + snapshot.get().time() + " → " + target);
+                    return 0;
+                }
+                case "archives" -> {
+                    for (Path archive : HotBackup.archives(hotDir(dataDir))) {
+                        out.printf("%s  %,12d bytes%n", archive.getFileName(), Files.size(archive));
+                    }
+                    return 0;
+                }
+                case "restore-archive" -> {
+                    if (args.length < 2) return usage(err);
+                    Path archive;
+                    if (args[1].equals("latest")) {
+                        List<Path> all = HotBackup.archives(hotDir(dataDir));
+                        if (all.isEmpty()) {
+                            err.println("No archive in " + hotDir(dataDir));
+                            return 1;
+                        }
+                        archive = all.get(all.size() - 1);
+                    } else {
+                        archive = Paths.get(args[1]);
+                    }
+                    Path target = (args.length > 2) ? Paths.get(args[2]) : dataDir;
+                    List<String> files = HotBackup.restore(archive, target);
+                    out.println("Restored " + String.join(", ", files) + " from " + archive.getFileName() + " → " + target);
+                    return 0;
+                }
+                case "prune" -> {
+                    BackupStore.PruneReport report = store.prune(RetentionPolicy.fromConfig());
+                    out.println("Removed " + report.manifestsRemoved() + " snapshots and "
+                            + report.chunksRemoved() + " chunks");
+                    return 0;
+                }
+                default -> {
+                    return usage(err);
+                }
+            }
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        } catch (DateTimeParseException e) {
+            err.println("Invalid time: " + args[2]);
+            return 2;
+        } catch (RuntimeException e) {
+            err.println("Error: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static Path hotDir(Path dataDir) {
+        return dataDir.resolve("backups").resolve("hot");
+    }
+
+    private static Instant parseTime(String text) {
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(text).atZone(ZoneId.systemDefault()).toInstant();
+        }
+    }
+
+    private static int usage(PrintStream err) {
+        err.println("Usage: BackupCli list [file] | restore <file> <latest|time> [target] | prune"
+                + " | archives | restore-archive <archive|latest> [dir]");
+        return 2;
+    }
+}
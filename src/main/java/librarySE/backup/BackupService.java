@@ -0,0 +1,148 @@
+package librarySE.backup;
+
+import librarySE.utils.LoggerUtils;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs backups off the write path.
+ * <p>
+ * Writers call {@link #schedule(Path)} after a file has been written; the call
+ * only records the path. A single background thread then captures the file
+ * into the {@link BackupStore} and applies the {@link RetentionPolicy} to that
+ * file. Several writes of the same file before the worker gets to it are
+ * captured once, with the latest content.
+ * </p>
+ *
+ * <p>
+ * Unreferenced chunks are collected after every {@value #GC_AFTER_REMOVALS}
+ * pruned snapshots and on {@link #close()}. Failures are logged to
+ * {@code backup_log.txt} and never reach the writer.
+ * </p>
+ *
+ * @author Eman
+ */
+public class BackupService implements Closeable {
+
+    static final int GC_AFTER_REMOVALS = 16;
+
+    private final BackupStore store;
+    private final RetentionPolicy policy;
+    private final ExecutorService worker;
+
+    /** Files waiting for capture; guarded by {@code this}. */
+    private final Set<Path> pending = new LinkedHashSet<>();
+    private int removedSinceGc;
+
+    /**
+     * @param store  destination store
+     * @param policy retention applied after each capture
+     */
+    public BackupService(BackupStore store, RetentionPolicy policy) {
+        this.store = Objects.requireNonNull(store, "store");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "backup-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** @return the underlying store */
+    public BackupStore store() {
+        return store;
+    }
+
+    /**
+     * Requests a backup of a file's current content.
+     *
+     * @param file file that was just written
+     */
+    public void schedule(Path file) {
+        synchronized (this) {
+            if (!pending.add(file.toAbsolutePath().normalize())) return;
+        }
+        try {
+            worker.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            drain(); // closed: back up synchronously
+        }
+    }
+
+    /**
+     * Waits until every scheduled backup has been captured.
+     *
+     * @param timeoutMillis maximum time to wait
+     * @return {@code true} if all backups completed in time
+     */
+    public boolean awaitIdle(long timeoutMillis) {
+        try {
+            Future<?> marker = worker.submit(() -> {});
+            marker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            Path file;
+            synchronized (this) {
+                if (pending.isEmpty()) return;
+                file = pending.iterator().next();
+                pending.remove(file);
+            }
+            capture(file);
+        }
+    }
+
+    private void capture(Path file) {
+        try {
+            if (store.backup(file).isEmpty()) return;
+            int removed = store.pruneManifests(file.getFileName().toString(), policy);
+            boolean gc;
+            synchronized (this) {
+                removedSinceGc += removed;
+                gc = removedSinceGc >= GC_AFTER_REMOVALS;
+                if (gc) removedSinceGc = 0;
+            }
+            if (gc) store.collectGarbage();
+        } catch (RuntimeException e) {
+            LoggerUtils.log("backup_log.txt", "Backup of " + file + " failed → " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes pending backups, prunes every file and collects unreferenced chunks.
+     */
+    @Override
+    public void close() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+        try {
+            store.prune(policy);
+        } catch (RuntimeException e) {
+            LoggerUtils.log("backup_log.txt", "Backup prune failed → " + e.getMessage());
+        }
+    }
+}
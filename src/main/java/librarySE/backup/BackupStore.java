@@ -0,0 +1,377 @@
+package librarySE.backup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+/**
+ * Deduplicating, content-addressed backup store.
+ * <p>
+ * Each captured file version is split into content-defined chunks (gear
+ * rolling hash, 2–64 KB, about 8 KB on average). Chunks are stored once under
+ * their SHA-256, so a version that differs from the previous one in a few
+ * records only adds the few chunks around the change. A small text manifest
+ * per version lists its chunks in order.
+ * </p>
+ *
+ * <h2>Layout</h2>
+ * <pre>
+ * root/objects/ab/abcdef…                 chunk content
+ * root/manifests/items.json/&lt;millis&gt;.manifest
+ * </pre>
+ *
+ * <p>
+ * Chunks and manifests are written to a temporary file and moved into place,
+ * so an interrupted backup never leaves a partial object behind. Chunks no
+ * longer referenced by any manifest are removed by {@link #collectGarbage()}.
+ * </p>
+ *
+ * @author Eman
+ */
+public class BackupStore {
+
+    /**
+     * Outcome of a prune run.
+     *
+     * @param manifestsRemoved snapshots dropped by the retention policy
+     * @param chunksRemoved    unreferenced chunks deleted
+     */
+    public record PruneReport(int manifestsRemoved, int chunksRemoved) {}
+
+    static final int MIN_CHUNK = 2 * 1024;
+    static final int MAX_CHUNK = 64 * 1024;
+    private static final long CHUNK_MASK = (1L << 13) - 1; // ~8 KB average
+
+    /** Gear table for the rolling hash; fixed seed so boundaries are stable across runs. */
+    private static final long[] GEAR = new SplittableRandom(0x4C534253L).longs(256).toArray();
+
+    private static final String MANIFEST_SUFFIX = ".manifest";
+
+    private final Path objects;
+    private final Path manifests;
+    private final Clock clock;
+
+    /**
+     * @param root backup root directory (created on demand)
+     */
+    public BackupStore(Path root) {
+        this(root, Clock.systemUTC());
+    }
+
+    /**
+     * @param root  backup root directory (created on demand)
+     * @param clock clock used to timestamp snapshots
+     */
+    public BackupStore(Path root, Clock clock) {
+        Objects.requireNonNull(root, "root");
+        this.objects = root.resolve("objects");
+        this.manifests = root.resolve("manifests");
+        this.clock = Objects.requireNonNull(clock, "clock");
+    }
+
+    // =====================================================================
+    // Capture
+    // =====================================================================
+
+    /**
+     * Captures the current content of a file.
+     * Nothing is stored if the content equals the latest snapshot.
+     *
+     * @param file file to back up
+     * @return the new snapshot, or empty if the file is missing or unchanged
+     * @throws UncheckedIOException if reading or writing fails
+     */
+    public synchronized Optional<Snapshot> backup(Path file) {
+        byte[] content;
+        try {
+            content = Files.readAllBytes(file);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+
+        String name = file.getFileName().toString();
+        String contentHash = sha256(content, 0, content.length);
+        List<Snapshot> existing = list(name);
+        if (!existing.isEmpty() && existing.get(existing.size() - 1).contentHash().equals(contentHash)) {
+            return Optional.empty();
+        }
+
+        try {
+            List<String> chunks = new ArrayList<>();
+            int start = 0;
+            for (int end : chunkBoundaries(content)) {
+                String hash = sha256(content, start, end - start);
+                storeChunk(hash, content, start, end - start);
+                chunks.add(hash);
+                start = end;
+            }
+            Snapshot snapshot = new Snapshot(name, nextTime(existing), content.length, contentHash, chunks);
+            writeManifest(snapshot);
+            return Optional.of(snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to back up " + file, e);
+        }
+    }
+
+    /** Strictly increasing snapshot times, so manifests never collide. */
+    private Instant nextTime(List<Snapshot> existing) {
+        Instant now = clock.instant();
+        if (existing.isEmpty()) return now;
+        Instant last = existing.get(existing.size() - 1).time();
+        return now.isAfter(last) ? now : last.plusMillis(1);
+    }
+
+    /**
+     * Computes content-defined chunk end offsets.
+     *
+     * @param data file content
+     * @return exclusive end offset of every chunk
+     */
+    static List<Integer> chunkBoundaries(byte[] data) {
+        List<Integer> ends = new ArrayList<>();
+        int start = 0;
+        long hash = 0;
+        for (int i = 0; i < data.length; i++) {
+            hash = (hash << 1) + GEAR[data[i] & 0xFF];
+            int length = i - start + 1;
+            if ((length >= MIN_CHUNK && (hash & CHUNK_MASK) == 0) || length >= MAX_CHUNK) {
+                ends.add(i + 1);
+                start = i + 1;
+                hash = 0;
+            }
+        }
+        if (start < data.length) ends.add(data.length);
+        return ends;
+    }
+
+    private void storeChunk(String hash, byte[] data, int offset, int length) throws IOException {
+        Path target = chunkPath(hash);
+        if (Files.exists(target)) return;
+        Files.createDirectories(target.getParent());
+        Path tmp = target.resolveSibling(hash + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            out.write(data, offset, length);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeManifest(Snapshot s) throws IOException {
+        StringBuilder sb = new StringBuilder()
+                .append("file=").append(s.fileName()).append('\n')
+                .append("time=").append(s.time()).append('\n')
+                .append("size=").append(s.size()).append('\n')
+                .append("sha256=").append(s.contentHash()).append('\n');
+        for (String chunk : s.chunks()) sb.append(chunk).append('\n');
+
+        Path dir = manifests.resolve(s.fileName());
+        Files.createDirectories(dir);
+        Path target = dir.resolve(s.time().toEpochMilli() + MANIFEST_SUFFIX);
+        Path tmp = dir.resolve(s.time().toEpochMilli() + ".tmp");
+        Files.writeString(tmp, sb, StandardCharsets.UTF_8);
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // =====================================================================
+    // Query & restore
+    // =====================================================================
+
+    /** @return names of all files that have snapshots, sorted */
+    public synchronized List<String> files() {
+        if (!Files.isDirectory(manifests)) return List.of();
+        try (Stream<Path> dirs = Files.list(manifests)) {
+            return dirs.filter(Files::isDirectory).map(p -> p.getFileName().toString()).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list backups", e);
+        }
+    }
+
+    /**
+     * @param fileName backed-up file name
+     * @return snapshots of the file, oldest first
+     */
+    public synchronized List<Snapshot> list(String fileName) {
+        Path dir = manifests.resolve(fileName);
+        if (!Files.isDirectory(dir)) return List.of();
+        List<Snapshot> result = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*" + MANIFEST_SUFFIX)) {
+            for (Path p : stream) result.add(readManifest(p));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list backups of " + fileName, e);
+        }
+        result.sort(Comparator.comparing(Snapshot::time));
+        return result;
+    }
+
+    /**
+     * Finds the snapshot that was current at a point in time.
+     *
+     * @param fileName backed-up file name
+     * @param at       point in time
+     * @return newest snapshot taken at or before {@code at}
+     */
+    public Optional<Snapshot> find(String fileName, Instant at) {
+        Snapshot match = null;
+        for (Snapshot s : list(fileName)) {
+            if (s.time().isAfter(at)) break;
+            match = s;
+        }
+        return Optional.ofNullable(match);
+    }
+
+    /**
+     * Rebuilds a snapshot into a file. The content is verified against the
+     * snapshot hash before the target is replaced.
+     *
+     * @param snapshot snapshot to restore
+     * @param target   destination file
+     * @throws UncheckedIOException if a chunk is missing or the content does not verify
+     */
+    public synchronized void restore(Snapshot snapshot, Path target) {
+        try {
+            MessageDigest digest = newDigest();
+            Path parent = target.toAbsolutePath().getParent();
+            if (parent != null) Files.createDirectories(parent);
+            Path tmp = target.resolveSibling(target.getFileName() + ".restore");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                for (String chunk : snapshot.chunks()) {
+                    byte[] data = Files.readAllBytes(chunkPath(chunk));
+                    digest.update(data);
+                    out.write(data);
+                }
+            }
+            if (!HexFormat.of().formatHex(digest.digest()).equals(snapshot.contentHash())) {
+                Files.deleteIfExists(tmp);
+                throw new IOException("Restored content does not match snapshot hash");
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to restore " + snapshot.fileName()
+                    + " @ " + snapshot.time(), e);
+        }
+    }
+
+    // =====================================================================
+    // Retention
+    // =====================================================================
+
+    /**
+     * Drops snapshots not selected by the policy, then removes unreferenced chunks.
+     *
+     * @param policy retention policy
+     * @return what was removed
+     */
+    public synchronized PruneReport prune(RetentionPolicy policy) {
+        int removed = 0;
+        for (String file : files()) removed += pruneManifests(file, policy);
+        return new PruneReport(removed, collectGarbage());
+    }
+
+    /**
+     * Drops snapshots of one file that the policy does not retain.
+     * Chunks are left for {@link #collectGarbage()}.
+     *
+     * @param fileName backed-up file name
+     * @param policy   retention policy
+     * @return number of snapshots removed
+     */
+    public synchronized int pruneManifests(String fileName, RetentionPolicy policy) {
+        List<Snapshot> all = list(fileName);
+        Set<Snapshot> keep = policy.retained(all);
+        int removed = 0;
+        try {
+            for (Snapshot s : all) {
+                if (keep.contains(s)) continue;
+                Files.deleteIfExists(manifests.resolve(fileName).resolve(s.time().toEpochMilli() + MANIFEST_SUFFIX));
+                removed++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to prune backups of " + fileName, e);
+        }
+        return removed;
+    }
+
+    /**
+     * Deletes chunks that no manifest references.
+     *
+     * @return number of chunks deleted
+     */
+    public synchronized int collectGarbage() {
+        if (!Files.isDirectory(objects)) return 0;
+        Set<String> live = new HashSet<>();
+        for (String file : files()) {
+            for (Snapshot s : list(file)) live.addAll(s.chunks());
+        }
+        int deleted = 0;
+        try (Stream<Path> all = Files.walk(objects)) {
+            for (Path p : (Iterable<Path>) all.filter(Files::isRegularFile)::iterator) {
+                if (!live.contains(p.getFileName().toString())) {
+                    Files.deleteIfExists(p);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to collect unreferenced chunks", e);
+        }
+        return deleted;
+    }
+
+    // =====================================================================
+    // Helpers
+    // =====================================================================
+
+    private Path chunkPath(String hash) {
+        return objects.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static Snapshot readManifest(Path p) throws IOException {
+        List<String> lines = Files.readAllLines(p, StandardCharsets.UTF_8);
+        if (lines.size() < 4) throw new IOException("Corrupted backup manifest: " + p);
+        return new Snapshot(
+                value(lines.get(0), "file"),
+                Instant.parse(value(lines.get(1), "time")),
+                Long.parseLong(value(lines.get(2), "size")),
+                value(lines.get(3), "sha256"),
+                lines.subList(4, lines.size()).stream().filter(l -> !l.isBlank()).toList());
+    }
+
+    private static String value(String line, String key) throws IOException {
+        if (!line.startsWith(key + "=")) throw new IOException("Expected '" + key + "' in backup manifest");
+        return line.substring(key.length() + 1);
+    }
+
+    private static String sha256(byte[] data, int offset, int length) {
+        MessageDigest digest = newDigest();
+        digest.update(data, offset, length);
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package librarySE.backup;
+
+import com.google.gson.stream.JsonWriter;
+import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.ChangeBarrier;
+import librarySE.managers.ItemManager;
+import librarySE.managers.UserManager;
+import librarySE.repo.ChangeLog;
+import librarySE.utils.Config;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.LoggerUtils;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Point-in-time backup of the whole library taken while circulation goes on.
+ * <p>
+ * The data files are written at different moments by different managers (and,
+ * with write-behind persistence, later than the change), so copying them never
+ * gives a state that existed at one instant. A hot backup instead copies the
+ * managers' in-memory state in two steps:
+ * </p>
+ * <ol>
+ *     <li><b>cut</b> – inside {@link ChangeBarrier#quiesce}, i.e. between two
+ *         manager operations, the users, borrow records and waitlist entries are
+ *         copied and the items captured ({@link LibraryCut}). Checkouts arriving
+ *         meanwhile wait for these copies only, not for any serialization or
+ *         file I/O;</li>
+ *     <li><b>archive</b> – on a background thread the copies are serialized
+ *         straight into
+ *         {@code library-<time>.zip} with {@code items.json}, {@code users.json},
+ *         {@code borrow_records.json} and {@code waitlist.json} in the format of
+ *         the data files, plus {@code backup.properties} (including the last
+ *         {@link ChangeLog} sequence number in the copy, if a log is installed).
+ *         The archive is written to a temporary file and renamed into place
+ *         once complete.</li>
+ * </ol>
+ * <p>
+ * Only the newest {@code keep} archives are retained. Backups run on demand
+ * ({@link #backupNow()}) and, if configured, periodically
+ * ({@link #startFromConfig}: {@code backup.hot.intervalMinutes}, default 60,
+ * {@code 0} to disable; {@code backup.hot.keep}, default 7). Results and
+ * failures are logged to {@code backup_log.txt}.
+ * </p>
+ * <p>
+ * Borrow records that a partitioned repository keeps only in its archive are
+ * not held by {@link BorrowManager} and are therefore not part of the backup.
+ * {@link #restore(Path, Path)} (or {@code BackupCli restore-archive}) puts an
+ * archive back into a data directory while the application is stopped.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (HotBackup backup = new HotBackup(items, users, borrows)) {
+ *     HotBackup.Result result = backup.backupNow().join();
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class HotBackup implements Closeable {
+
+    /** Data files contained in every archive, in archive order. */
+    public static final List<String> FILES =
+            List.of("items.json", "users.json", "borrow_records.json", "waitlist.json");
+
+    static final String PROPERTIES = "backup.properties";
+    private static final String PREFIX = "library-";
+    private static final String SUFFIX = ".zip";
+    private static final DateTimeFormatter NAME_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    /**
+     * Outcome of one backup.
+     *
+     * @param archive         the written archive
+     * @param items           items backed up
+     * @param users           users backed up
+     * @param borrowRecords   borrow records backed up
+     * @param waitlistEntries waitlist entries backed up
+     * @param bytes           archive size
+     * @param waited          time spent waiting for manager operations in progress
+     * @param held            time manager operations were held back for the cut
+     * @param took            total time, including archiving
+     */
+    public record Result(Path archive, int items, int users, int borrowRecords, int waitlistEntries,
+                         long bytes, Duration waited, Duration held, Duration took) {
+
+        @Override
+        public String toString() {
+            return "Backed up %d items, %d users, %d borrow records, %d waitlist entries to %s (%,d bytes) in %d ms, circulation held %d ms"
+                    .formatted(items, users, borrowRecords, waitlistEntries, archive.getFileName(), bytes,
+                            took.toMillis(), held.toMillis());
+        }
+    }
+
+    /** Writes one entity as an element of a data file. */
+    @FunctionalInterface
+    private interface EntityWriter<T> {
+        void write(JsonWriter out, T entity) throws IOException;
+    }
+
+    private final ItemManager items;
+    private final UserManager users;
+    private final BorrowManager borrows;
+    private final Path directory;
+    private final int keep;
+    private final Clock clock;
+    private final ScheduledExecutorService worker;
+
+    /**
+     * Creates a backup writing to {@code library_data/backups/hot}, keeping
+     * {@code backup.hot.keep} archives.
+     *
+     * @param items   source of items
+     * @param users   source of users
+     * @param borrows source of borrow records and waitlist entries
+     */
+    public HotBackup(ItemManager items, UserManager users, BorrowManager borrows) {
+        this(items, users, borrows, FileUtils.dataFile("backups").resolve("hot"),
+                Config.getInt("backup.hot.keep", 7), Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param items     source of items
+     * @param users     source of users
+     * @param borrows   source of borrow records and waitlist entries
+     * @param directory directory receiving the archives (created on demand)
+     * @param keep      number of archives to retain; at least 1
+     * @param clock     clock used to name archives
+     */
+    public HotBackup(ItemManager items, UserManager users, BorrowManager borrows,
+                     Path directory, int keep, Clock clock) {
+        this.items = Objects.requireNonNull(items, "items");
+        this.users = Objects.requireNonNull(users, "users");
+        this.borrows = Objects.requireNonNull(borrows, "borrows");
+        this.directory = Objects.requireNonNull(directory, "directory");
+        if (keep < 1) throw new IllegalArgumentException("keep must be at least 1");
+        this.keep = keep;
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hot-backup");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Creates a backup with the default location and, if
+     * {@code backup.hot.intervalMinutes} is positive, schedules it at that interval.
+     *
+     * @param items   source of items
+     * @param users   source of users
+     * @param borrows source of borrow records and waitlist entries
+     * @return the backup; close it on shutdown
+     */
+    public static HotBackup startFromConfig(ItemManager items, UserManager users, BorrowManager borrows) {
+        HotBackup backup = new HotBackup(items, users, borrows);
+        int minutes = Config.getInt("backup.hot.intervalMinutes", 60);
+        if (minutes > 0) backup.schedule(Duration.ofMinutes(minutes));
+        return backup;
+    }
+
+    /**
+     * Runs a backup every {@code interval}, the first one after one interval.
+     *
+     * @param interval time between the end of one backup and the start of the next
+     */
+    public void schedule(Duration interval) {
+        long millis = interval.toMillis();
+        if (millis <= 0) throw new IllegalArgumentException("interval must be positive");
+        worker.scheduleWithFixedDelay(() -> {
+            try {
+                archive(cut(), System.nanoTime());
+            } catch (RuntimeException e) {
+                // Already logged; the next run is still scheduled.
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a consistent cut now, on the calling thread, and archives it in
+     * the background.
+     *
+     * @return completes with the result once the archive is written, or
+     *         exceptionally if writing it failed
+     * @throws IllegalStateException if called from within a manager operation
+     */
+    public CompletableFuture<Result> backupNow() {
+        long start = System.nanoTime();
+        LibraryCut cut = cut();
+        try {
+            return CompletableFuture.supplyAsync(() -> archive(cut, start), worker);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(archive(cut, start)); // closed: archive synchronously
+        }
+    }
+
+    // =====================================================================
+    // Cut
+    // =====================================================================
+
+    /**
+     * Copies the managers' state while no manager operation runs.
+     *
+     * @return the cut
+     */
+    private LibraryCut cut() {
+        try {
+            return LibraryCut.take(items, users, borrows, clock);
+        } catch (RuntimeException e) {
+            LoggerUtils.log("backup_log.txt", "Hot backup failed → " + e.getMessage());
+            throw e;
+        }
+    }
+
+    // =====================================================================
+    // Archive
+    // =====================================================================
+
+    /**
+     * Serializes a cut into a new archive and drops archives beyond {@link #keep}.
+     *
+     * @param cut   the copied state
+     * @param start {@link System#nanoTime()} at which the backup started
+     * @return the result
+     * @throws UncheckedIOException if the archive cannot be written
+     */
+    private Result archive(LibraryCut cut, long start) {
+        try {
+            Files.createDirectories(directory);
+            // Names sort by time; a name already taken moves on by a millisecond.
+            LocalDateTime time = cut.time();
+            Path target = directory.resolve(PREFIX + NAME_TIME.format(time) + SUFFIX);
+            while (Files.exists(target)) {
+                time = time.plusNanos(1_000_000);
+                target = directory.resolve(PREFIX + NAME_TIME.format(time) + SUFFIX);
+            }
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            int[] counts = new int[FILES.size()];
+            try {
+                try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                     ZipOutputStream zip = new ZipOutputStream(Channels.newOutputStream(channel));
+                     Stream<LibraryItem> cutItems = cut.items().get()) {
+                    counts[0] = write(zip, FILES.get(0), DataSchema.Kind.ITEM,
+                            cutItems, LibraryItemFactory::writeJson);
+                    counts[1] = write(zip, FILES.get(1), DataSchema.Kind.USER,
+                            cut.users().stream(), (w, u) -> u.writeJson(w));
+                    counts[2] = write(zip, FILES.get(2), DataSchema.Kind.BORROW_RECORD,
+                            cut.borrowRecords().stream(), (w, r) -> r.writeJson(w));
+                    counts[3] = write(zip, FILES.get(3), DataSchema.Kind.WAITLIST_ENTRY,
+                            cut.waitlist().stream(), (w, e) -> e.writeJson(w));
+                    zip.putNextEntry(new ZipEntry(PROPERTIES));
+                    zip.write(properties(cut, counts).getBytes(StandardCharsets.UTF_8));
+                    zip.closeEntry();
+                    zip.finish();
+                    channel.force(true);
+                }
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+
+            List<Path> all = archives();
+            for (int i = 0; i < all.size() - keep; i++) Files.deleteIfExists(all.get(i));
+
+            Result result = new Result(target, counts[0], counts[1], counts[2], counts[3], Files.size(target),
+                    cut.waited(), cut.held(), Duration.ofNanos(System.nanoTime() - start));
+            LoggerUtils.log("backup_log.txt", result.toString());
+            return result;
+        } catch (IOException | UncheckedIOException e) {
+            LoggerUtils.log("backup_log.txt", "Hot backup failed → " + e.getMessage());
+            throw new UncheckedIOException("Failed to write hot backup to " + directory,
+                    e instanceof UncheckedIOException u ? u.getCause() : (IOException) e);
+        }
+    }
+
+    /**
+     * Writes one data file as a zip entry: a JSON array of the current schema
+     * header followed by the entities.
+     *
+     * @return number of entities written
+     */
+    private static <T> int write(ZipOutputStream zip, String name, DataSchema.Kind kind,
+                                 Stream<T> entities, EntityWriter<T> writer) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        int count = 0;
+        // Closing the writer would close the archive; flush it and close the entry only.
+        JsonWriter out = new JsonWriter(new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8)));
+        out.beginArray();
+        out.value(DataSchema.currentHeader(kind).text());
+        for (Iterator<T> it = entities.iterator(); it.hasNext(); ) {
+            writer.write(out, it.next());
+            count++;
+        }
+        out.endArray();
+        out.flush();
+        zip.closeEntry();
+        return count;
+    }
+
+    private static String properties(LibraryCut cut, int[] c) {
+        return "time=" + cut.time() + "\n"
+                + "items=" + c[0] + "\n"
+                + "users=" + c[1] + "\n"
+                + "borrowRecords=" + c[2] + "\n"
+                + "waitlistEntries=" + c[3] + "\n"
+                + (cut.changeSequence() < 0 ? "" : "changeSequence=" + cut.changeSequence() + "\n");
+    }
+
+    /**
+     * @return the archives in the backup directory, oldest first
+     * @throws UncheckedIOException if the directory cannot be listed
+     */
+    public List<Path> archives() {
+        return archives(directory);
+    }
+
+    /**
+     * @param directory a hot backup directory
+     * @return the archives in it, oldest first
+     * @throws UncheckedIOException if the directory cannot be listed
+     */
+    public static List<Path> archives(Path directory) {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list hot backups in " + directory, e);
+        }
+    }
+
+    // =====================================================================
+    // Restore
+    // =====================================================================
+
+    /**
+     * Replaces the data files in {@code dataDir} with those of an archive.
+     * <p>
+     * Every file is extracted (and its zip checksum verified) before any data
+     * file is replaced. The files derived from a replaced data file (its
+     * journal, binary startup snapshot and checksum sidecar) are deleted, so
+     * the next start reads exactly the archived state. Stop the application
+     * before restoring.
+     * </p>
+     *
+     * @param archive archive written by {@link #backupNow()}
+     * @param dataDir data directory, usually {@code library_data}
+     * @return names of the restored files
+     * @throws UncheckedIOException if the archive cannot be read; the data
+     *                              directory is then left unchanged
+     */
+    public static List<String> restore(Path archive, Path dataDir) {
+        List<String> restored = new ArrayList<>();
+        List<Path> extracted = new ArrayList<>();
+        try {
+            Files.createDirectories(dataDir);
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                for (String name : FILES) {
+                    ZipEntry entry = zip.getEntry(name);
+                    if (entry == null) continue;
+                    Path tmp = dataDir.resolve(name + ".restore");
+                    extracted.add(tmp);
+                    try (InputStream in = zip.getInputStream(entry); OutputStream out = Files.newOutputStream(tmp)) {
+                        in.transferTo(out);
+                    }
+                    restored.add(name);
+                }
+            }
+            for (String name : restored) {
+                String base = name.substring(0, name.length() - ".json".length());
+                Files.deleteIfExists(dataDir.resolve(base + ".journal"));
+                Files.deleteIfExists(dataDir.resolve(base + ".bin"));
+                Files.deleteIfExists(dataDir.resolve(name + ".crc"));
+                Files.move(dataDir.resolve(name + ".restore"), dataDir.resolve(name),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return restored;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to restore " + archive, e);
+        } finally {
+            for (Path tmp : extracted) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // Best effort; a leftover .restore file is never read.
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops scheduled backups and waits for archives in progress.
+     */
+    @Override
+    public void close() {
+        worker.shutdown();
+        try {
+            worker.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package librarySE.backup;
+
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.ChangeBarrier;
+import librarySE.managers.ChangeFeed;
+import librarySE.managers.ItemManager;
+import librarySE.managers.User;
+import librarySE.managers.UserManager;
+import librarySE.repo.ChangeLog;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * The library's state at one instant, taken between two manager operations.
+ * <p>
+ * {@link #take} holds manager operations back only while it copies the users,
+ * borrow records and waitlist entries and captures the items
+ * ({@link ItemManager#captureItems()}); nothing is serialized then. The copies
+ * do not change afterwards, so they can be written at leisure while
+ * circulation goes on.
+ * </p>
+ *
+ * @param time           when the cut was taken
+ * @param items          supplies streams over the captured items; each stream must be closed
+ * @param users          copies of the users
+ * @param borrowRecords  copies of the borrow records held in memory
+ * @param waitlist       the waitlist entries (immutable)
+ * @param changeSequence last {@link ChangeLog} sequence number included, {@code -1} without a change log
+ * @param waited         time spent waiting for manager operations in progress
+ * @param held           time manager operations were held back for the cut
+ * @author Eman
+ */
+record LibraryCut(LocalDateTime time, Supplier<Stream<LibraryItem>> items, List<User> users,
+                  List<BorrowRecord> borrowRecords, List<WaitlistEntry> waitlist, long changeSequence,
+                  Duration waited, Duration held) {
+
+    /** The state captured inside the barrier, before its timings are known. */
+    private record State(LocalDateTime time, Supplier<Stream<LibraryItem>> items, List<User> users,
+                         List<BorrowRecord> borrowRecords, List<WaitlistEntry> waitlist, long changeSequence) { }
+
+    /**
+     * Takes a cut while no manager operation runs.
+     *
+     * @param items   source of items
+     * @param users   source of users
+     * @param borrows source of borrow records and waitlist entries
+     * @param clock   clock giving the cut's time
+     * @return the cut
+     * @throws IllegalStateException if called from within a manager operation
+     */
+    static LibraryCut take(ItemManager items, UserManager users, BorrowManager borrows, Clock clock) {
+        ChangeBarrier.Quiesced<State> q = ChangeBarrier.quiesce(() -> {
+            ChangeLog changes = ChangeFeed.installed();
+            try (Stream<User> u = users.streamAllUsers();
+                 Stream<BorrowRecord> r = borrows.streamAllBorrowRecords();
+                 Stream<WaitlistEntry> w = borrows.streamWaitlist()) {
+                return new State(LocalDateTime.now(clock), items.captureItems(),
+                        u.filter(Objects::nonNull).map(User::copy).toList(),
+                        r.filter(Objects::nonNull).map(BorrowRecord::copy).toList(),
+                        w.filter(Objects::nonNull).toList(),
+                        changes == null ? -1 : changes.lastSequence());
+            }
+        });
+        State s = q.value();
+        return new LibraryCut(s.time(), s.items(), s.users(), s.borrowRecords(), s.waitlist(),
+                s.changeSequence(), q.waited(), q.held());
+    }
+}
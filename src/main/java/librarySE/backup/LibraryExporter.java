@@ -0,0 +1,216 @@
+package librarySE.backup;
+
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonWriter;
+import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.ItemManager;
+import librarySE.managers.UserManager;
+import librarySE.utils.JsonFields;
+
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Exports the whole library state as JSON Lines: one JSON object per line.
+ * <pre>
+ * {"format":"librarySE-export","version":1,"exportedAt":"2025-01-31T10:15:00"}
+ * {"entity":"item","data":{"type":"BOOK","isbn":"...","title":"...",...}}
+ * {"entity":"user","data":{...}}
+ * {"entity":"borrowRecord","data":{...}}
+ * {"entity":"waitlist","data":{...}}
+ * </pre>
+ * <p>
+ * Entities are written in that order with the same fields as the JSON data
+ * files (see {@link librarySE.utils.JsonFields}), each under {@code "data"}.
+ * </p>
+ *
+ * <h2>Snapshot and Memory</h2>
+ * <p>
+ * The export writes a {@link LibraryCut}: manager operations are held back
+ * only while the users, borrow records and waitlist are copied and the items
+ * are captured, and the change sequence read
+ * ({@link librarySE.managers.ChangeBarrier#quiesce}). Writing happens after
+ * that, from the copies, so the export shows the library as it was at one
+ * instant: neither entities added or removed nor changes made to an entity
+ * (for example a return marking a loan returned) while it is being written
+ * appear in it. The header carries that instant and, when a change log is
+ * installed, the last change sequence number it includes
+ * ({@code "changeSequence"}), from which a consumer can follow the change feed.
+ * Memory use is the copies of the entities held in memory plus the output
+ * buffer; items a mapped catalog keeps on disk are read from the catalog
+ * generation of the cut as they are written, not copied.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class LibraryExporter {
+
+    /** Version of the line format, written in the header line. */
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of entities written per kind, bytes written and duration.
+     *
+     * @param items           items written
+     * @param users           users written
+     * @param borrowRecords   borrow records written
+     * @param waitlistEntries waitlist entries written
+     * @param bytes           bytes written, including the header line
+     * @param took            time spent
+     */
+    public record Summary(long items, long users, long borrowRecords, long waitlistEntries,
+                          long bytes, Duration took) {
+
+        @Override
+        public String toString() {
+            return "Exported %d items, %d users, %d borrow records, %d waitlist entries (%,d bytes) in %d ms"
+                    .formatted(items, users, borrowRecords, waitlistEntries, bytes, took.toMillis());
+        }
+    }
+
+    /** Writes one entity as the {@code "data"} value of a line. */
+    @FunctionalInterface
+    private interface EntityWriter<T> {
+        void write(JsonWriter out, T entity) throws IOException;
+    }
+
+    private final ItemManager items;
+    private final UserManager users;
+    private final BorrowManager borrows;
+
+    /**
+     * @param items   source of items
+     * @param users   source of users
+     * @param borrows source of borrow records and waitlist entries
+     */
+    public LibraryExporter(ItemManager items, UserManager users, BorrowManager borrows) {
+        this.items = Objects.requireNonNull(items, "items");
+        this.users = Objects.requireNonNull(users, "users");
+        this.borrows = Objects.requireNonNull(borrows, "borrows");
+    }
+
+    /**
+     * Writes the export to a channel. The channel is not closed.
+     *
+     * @param channel destination
+     * @return what was written
+     * @throws IOException if writing fails
+     * @throws IllegalStateException if called from within a manager operation
+     */
+    public Summary export(WritableByteChannel channel) throws IOException {
+        long start = System.nanoTime();
+
+        LibraryCut cut = LibraryCut.take(items, users, borrows, Clock.systemDefaultZone());
+        try (Stream<LibraryItem> itemSnapshot = cut.items().get()) {
+            CountingChannel counting = new CountingChannel(channel);
+            Writer text = new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(counting), StandardCharsets.UTF_8), BUFFER_SIZE);
+            JsonWriter out = new JsonWriter(text);
+            out.setStrictness(Strictness.LENIENT); // one top-level value per line
+
+            out.beginObject();
+            JsonFields.writeString(out, "format", "librarySE-export");
+            JsonFields.writeInt(out, "version", FORMAT_VERSION);
+            JsonFields.writeDateTime(out, "exportedAt", cut.time().withNano(0));
+            if (cut.changeSequence() >= 0) out.name("changeSequence").value(cut.changeSequence());
+            out.endObject();
+            text.write('\n');
+
+            long itemCount = writeAll(out, text, "item", itemSnapshot, LibraryItemFactory::writeJson);
+            long userCount = writeAll(out, text, "user", cut.users().stream(), (w, u) -> u.writeJson(w));
+            long recordCount = writeAll(out, text, "borrowRecord", cut.borrowRecords().stream(), (w, r) -> r.writeJson(w));
+            long waitlistCount = writeAll(out, text, "waitlist", cut.waitlist().stream(), (w, e) -> e.writeJson(w));
+            text.flush();
+
+            return new Summary(itemCount, userCount, recordCount, waitlistCount, counting.bytes,
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Writes the export to a file, replacing it only once the export is complete.
+     *
+     * @param file destination file
+     * @return what was written
+     * @throws IOException if writing fails; the file is then left unchanged
+     */
+    public Summary export(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Summary summary;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                summary = export(channel);
+                channel.force(true);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return summary;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static <T> long writeAll(JsonWriter out, Writer text, String entity, Stream<T> snapshot,
+                                     EntityWriter<T> writer) throws IOException {
+        long count = 0;
+        for (Iterator<T> it = snapshot.iterator(); it.hasNext(); ) {
+            T value = it.next();
+            if (value == null) continue;
+            out.beginObject();
+            out.name("entity").value(entity);
+            out.name("data");
+            writer.write(out, value);
+            out.endObject();
+            text.write('\n');
+            count++;
+        }
+        return count;
+    }
+
+    /** Counts the bytes passed to a channel. */
+    private static final class CountingChannel implements WritableByteChannel {
+        private final WritableByteChannel delegate;
+        long bytes;
+
+        CountingChannel(WritableByteChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = delegate.write(src);
+            bytes += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The caller owns the channel.
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package librarySE.backup;
+
+import librarySE.utils.Config;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Decides which snapshots of a file are kept.
+ * <p>
+ * A snapshot is retained if any rule selects it:
+ * </p>
+ * <ul>
+ *     <li><b>last</b> – the {@code last} most recent snapshots;</li>
+ *     <li><b>hourly</b> – the newest snapshot of each of the {@code hourly} most recent hours that have one;</li>
+ *     <li><b>daily</b> – likewise per day;</li>
+ *     <li><b>weekly</b> – likewise per ISO week (starting Monday).</li>
+ * </ul>
+ * <p>Buckets are computed in UTC. The newest snapshot is always retained.</p>
+ *
+ * @param last   number of most recent snapshots to keep
+ * @param hourly number of hourly buckets to keep
+ * @param daily  number of daily buckets to keep
+ * @param weekly number of weekly buckets to keep
+ *
+ * @author Eman
+ */
+public record RetentionPolicy(int last, int hourly, int daily, int weekly) {
+
+    public RetentionPolicy {
+        if (last < 0 || hourly < 0 || daily < 0 || weekly < 0)
+            throw new IllegalArgumentException("Retention counts must be >= 0");
+    }
+
+    /**
+     * Reads the policy from {@code backup.retention.last|hourly|daily|weekly}
+     * (defaults 10, 24, 7, 4).
+     *
+     * @return configured policy
+     */
+    public static RetentionPolicy fromConfig() {
+        return new RetentionPolicy(
+                Config.getInt("backup.retention.last", 10),
+                Config.getInt("backup.retention.hourly", 24),
+                Config.getInt("backup.retention.daily", 7),
+                Config.getInt("backup.retention.weekly", 4));
+    }
+
+    /**
+     * Selects the snapshots to keep.
+     *
+     * @param snapshots snapshots of one file, in any order
+     * @return retained snapshots
+     */
+    public Set<Snapshot> retained(List<Snapshot> snapshots) {
+        List<Snapshot> newestFirst = snapshots.stream()
+                .sorted(Comparator.comparing(Snapshot::time).reversed())
+                .toList();
+
+        Set<Snapshot> keep = new LinkedHashSet<>();
+        if (!newestFirst.isEmpty()) keep.add(newestFirst.get(0));
+        newestFirst.stream().limit(last).forEach(keep::add);
+        keepPerBucket(newestFirst, hourly, t -> t.truncatedTo(ChronoUnit.HOURS), keep);
+        keepPerBucket(newestFirst, daily, t -> t.truncatedTo(ChronoUnit.DAYS), keep);
+        keepPerBucket(newestFirst, weekly, t -> t.atZone(ZoneOffset.UTC).toLocalDate()
+                .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                .atStartOfDay(ZoneOffset.UTC).toInstant(), keep);
+        return keep;
+    }
+
+    /** Keeps the newest snapshot of each of the first {@code buckets} distinct buckets. */
+    private static void keepPerBucket(List<Snapshot> newestFirst, int buckets,
+                                      Function<Instant, Instant> bucketOf, Set<Snapshot> keep) {
+        Set<Instant> seen = new HashSet<>();
+        for (Snapshot s : newestFirst) {
+            if (seen.size() >= buckets) return;
+            if (seen.add(bucketOf.apply(s.time()))) keep.add(s);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package librarySE.backup;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One retained version of a backed-up file.
+ * <p>
+ * A snapshot does not hold the file content itself; it lists the
+ * content-addressed chunks that make up the file, in order.
+ * </p>
+ *
+ * @param fileName    name of the backed-up file (e.g. {@code items.json})
+ * @param time        when the version was captured
+ * @param size        file size in bytes
+ * @param contentHash SHA-256 of the whole file (hex)
+ * @param chunks      SHA-256 of each chunk (hex), in file order
+ *
+ * @author Eman
+ */
+public record Snapshot(String fileName, Instant time, long size, String contentHash, List<String> chunks) {
+
+    public Snapshot {
+        chunks = List.copyOf(chunks);
+    }
+}
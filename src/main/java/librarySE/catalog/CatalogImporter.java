@@ -0,0 +1,498 @@
+package librarySE.catalog;
+
+import librarySE.catalog.ImportReport.Rejection;
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+import librarySE.core.MaterialType;
+import librarySE.managers.Admin;
+import librarySE.managers.ItemManager;
+import librarySE.utils.Config;
+import librarySE.utils.LoggerUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Bulk import of catalog items from CSV or MARC21 files.
+ * <p>
+ * Adding items one by one through {@link ItemManager#addItem} saves the catalog
+ * and emails every user per item. The importer instead works in batches:
+ * </p>
+ * <ol>
+ *     <li>rows are read one at a time with a {@link CsvReader} or
+ *         {@link MarcReader}, so the file is never held in memory;</li>
+ *     <li>each batch of rows is turned into items in parallel through
+ *         {@link LibraryItemFactory}, while the next batch is being read;</li>
+ *     <li>items already in the catalog (or earlier in the file) are skipped,
+ *         using the same keys as the admin screen: the ISBN for books, title
+ *         and artist for CDs, title, editor and issue for journals;</li>
+ *     <li>the remaining items are added with {@link ItemManager#addItems}: one
+ *         save per batch and no notifications.</li>
+ * </ol>
+ * <p>
+ * Rows that cannot be imported do not stop the import; they are counted and
+ * described in the returned {@link ImportReport}, which is also appended to
+ * {@code import_log.txt}.
+ * </p>
+ *
+ * <h2>CSV Layout</h2>
+ * <p>
+ * The first record is a header naming the columns, in any order and case:
+ * {@code type} ({@code BOOK}, {@code CD} or {@code JOURNAL}), {@code title},
+ * {@code isbn} and {@code author} (books), {@code artist} (CDs), {@code editor}
+ * and {@code issue} (journals), and optionally {@code price} and {@code copies}
+ * (default 1). Other columns are ignored.
+ * </p>
+ * <pre>
+ * type,isbn,title,author,artist,editor,issue,price,copies
+ * BOOK,978-0132350884,Clean Code,Robert C. Martin,,,,45.00,3
+ * CD,,Kind of Blue,,Miles Davis,,,,1
+ * JOURNAL,,Nature,,,Magdalena Skipper,7861,,
+ * </pre>
+ *
+ * <h2>MARC21 Mapping</h2>
+ * <p>
+ * Leader position 06 {@code i}/{@code j} (sound recordings) gives a CD, position
+ * 07 {@code s}/{@code b} (serials) a journal, anything else a book. Fields:
+ * </p>
+ * <ul>
+ *     <li>title – 245 $a, followed by ": " and 245 $b when present;</li>
+ *     <li>ISBN – 020 $a (qualifiers such as "(pbk.)" are dropped); price – the
+ *         amount in 020 $c, otherwise the configured default;</li>
+ *     <li>author / artist – 100 $a, 110 $a, 700 $a or 710 $a, whichever comes first;
+ *         otherwise 245 $c;</li>
+ *     <li>journal editor – 245 $c, otherwise the publisher (264 $b or 260 $b);
+ *         issue – 362 $a, otherwise 490 $v.</li>
+ * </ul>
+ * <p>
+ * Trailing ISBD punctuation ({@code / : ; , . =}) is removed from every value.
+ * Rejections of MARC records carry the record number instead of a line.
+ * </p>
+ *
+ * <h2>Configuration</h2>
+ * <ul>
+ *     <li>{@code import.batchSize} – rows per batch and per save (default 1000);</li>
+ *     <li>{@code import.threads} – threads parsing rows (default: available processors).</li>
+ * </ul>
+ *
+ * @author Eman
+ */
+public class CatalogImporter {
+
+    /** Maximum number of {@link Rejection}s kept in a report; all are counted. */
+    public static final int MAX_REJECTIONS = 1000;
+
+    private static final List<String> COLUMNS =
+            List.of("type", "isbn", "title", "author", "artist", "editor", "issue", "price", "copies");
+
+    /** First amount in a MARC "terms of availability" subfield. */
+    private static final Pattern AMOUNT = Pattern.compile("\\d+(\\.\\d+)?");
+
+    private final ItemManager items;
+    private final Admin admin;
+    private final int batchSize;
+    private final int threads;
+
+    /** Supplies the records of one input, one at a time. */
+    private interface Source<S> {
+
+        /** @return the next record, or {@code null} at the end of the input */
+        S next() throws IOException;
+
+        /** @return position of the record last returned, used in rejections */
+        long position();
+    }
+
+    /** A record and its position in the input. */
+    private record Row<S>(long position, S value) { }
+
+    /** Result of parsing a row: an item, or the reason it was rejected. */
+    private record Parsed(long position, LibraryItem item, String error) { }
+
+    /**
+     * Creates an importer with the configured batch size and thread count.
+     *
+     * @param items catalog to import into
+     * @param admin administrator performing the import
+     */
+    public CatalogImporter(ItemManager items, Admin admin) {
+        this(items, admin,
+                Config.getInt("import.batchSize", 1000),
+                Config.getInt("import.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param items     catalog to import into
+     * @param admin     administrator performing the import
+     * @param batchSize rows per batch; must be &ge; 1
+     * @param threads   threads parsing rows; must be &ge; 1
+     * @throws NullPointerException     if {@code items} or {@code admin} is {@code null}
+     * @throws IllegalArgumentException if the admin lacks privileges or a size is &lt; 1
+     */
+    public CatalogImporter(ItemManager items, Admin admin, int batchSize, int threads) {
+        this.items = Objects.requireNonNull(items, "items must not be null");
+        this.admin = Objects.requireNonNull(admin, "admin must not be null");
+        if (!admin.isAdmin())
+            throw new IllegalArgumentException("Only admins can import items.");
+        if (batchSize < 1 || threads < 1)
+            throw new IllegalArgumentException("batchSize and threads must be >= 1");
+        this.batchSize = batchSize;
+        this.threads = threads;
+    }
+
+    /**
+     * Imports a UTF-8 CSV file.
+     *
+     * @param file CSV file
+     * @return what was imported and rejected
+     * @throws IOException if the file cannot be read or has no {@code type} column
+     */
+    public ImportReport importCsv(Path file) throws IOException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            ImportReport report = importCsv(in);
+            log(file, report);
+            return report;
+        }
+    }
+
+    /**
+     * Imports CSV text. Items from batches completed before a read error stay imported.
+     *
+     * @param in CSV source; not closed
+     * @return what was imported and rejected
+     * @throws IOException if reading fails or the header has no {@code type} column
+     */
+    public ImportReport importCsv(Reader in) throws IOException {
+        long start = System.nanoTime();
+        CsvReader csv = new CsvReader(in);
+        int[] columns = columnIndexes(csv.next());
+
+        return run(new Source<List<String>>() {
+            @Override public List<String> next() throws IOException {
+                List<String> fields;
+                while ((fields = csv.next()) != null && fields.stream().allMatch(String::isBlank)) {
+                    // blank lines are not rows
+                }
+                return fields;
+            }
+
+            @Override public long position() {
+                return csv.lineNumber();
+            }
+        }, fields -> fromCsv(fields, columns), start);
+    }
+
+    /**
+     * Imports a MARC21 (ISO 2709) dump of any size; see the class description
+     * for how fields are mapped.
+     *
+     * @param file MARC21 file
+     * @return what was imported and rejected
+     * @throws IOException if the file cannot be read
+     */
+    public ImportReport importMarc(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (MarcReader marc = new MarcReader(file)) {
+            ImportReport report = run(new Source<ByteBuffer>() {
+                @Override public ByteBuffer next() throws IOException {
+                    return marc.next();
+                }
+
+                @Override public long position() {
+                    return marc.recordNumber();
+                }
+            }, data -> fromMarc(new MarcRecord(data)), start);
+            log(file, report);
+            return report;
+        }
+    }
+
+    /**
+     * Key identifying an item for duplicate detection.
+     *
+     * @param item catalog item
+     * @return type-specific key, compared case-insensitively
+     */
+    static String keyOf(LibraryItem item) {
+        return switch (item) {
+            case Book b -> key(MaterialType.BOOK, b.getIsbn());
+            case CD cd -> key(MaterialType.CD, cd.getTitle(), cd.getArtist());
+            case Journal j -> key(MaterialType.JOURNAL, j.getTitle(), j.getEditor(), j.getIssueNumber());
+            default -> key(item.getMaterialType(), item.getId().toString());
+        };
+    }
+
+    private static String key(MaterialType type, String... parts) {
+        StringJoiner key = new StringJoiner("\u0000", type.name() + "\u0000", "");
+        for (String part : parts) key.add(part == null ? "" : part.trim().toLowerCase(Locale.ROOT));
+        return key.toString();
+    }
+
+    // =====================================================================
+    // Pipeline
+    // =====================================================================
+
+    /** Counters of one import; only touched by the importing thread. */
+    private static final class Tally {
+        long rows;
+        int imported;
+        int duplicates;
+        int invalid;
+        final List<Rejection> rejections = new ArrayList<>();
+
+        void reject(long line, String reason) {
+            if (rejections.size() < MAX_REJECTIONS) rejections.add(new Rejection(line, reason));
+        }
+    }
+
+    /**
+     * Runs the pipeline: reads batches from {@code source}, parses each batch
+     * in parallel while reading the next one, and inserts the new items.
+     *
+     * @param parser turns a record into an item; throws {@link IllegalArgumentException}
+     *               with the reason when the record cannot be imported
+     * @param start  {@link System#nanoTime()} at which the import started
+     */
+    private <S> ImportReport run(Source<S> source, Function<S, LibraryItem> parser, long start)
+            throws IOException {
+        Set<String> keys = new HashSet<>();
+        try (Stream<LibraryItem> existing = items.streamAllItems()) {
+            existing.forEach(item -> keys.add(keyOf(item)));
+        }
+
+        Tally tally = new Tally();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "catalog-import");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Row<S>> rows = readBatch(source);
+            CompletableFuture<List<Parsed>> inFlight = rows.isEmpty() ? null : parseAsync(rows, parser, pool);
+            while (inFlight != null) {
+                List<Row<S>> next = readBatch(source);
+                CompletableFuture<List<Parsed>> following = next.isEmpty() ? null : parseAsync(next, parser, pool);
+                insert(join(inFlight), keys, tally);
+                inFlight = following;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return new ImportReport(tally.rows, tally.imported, tally.duplicates, tally.invalid,
+                tally.rejections, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private <S> List<Row<S>> readBatch(Source<S> source) throws IOException {
+        List<Row<S>> rows = new ArrayList<>(batchSize);
+        S value;
+        while (rows.size() < batchSize && (value = source.next()) != null) {
+            rows.add(new Row<>(source.position(), value));
+        }
+        return rows;
+    }
+
+    /** Parses a batch in {@link #threads} slices; the result keeps row order. */
+    private <S> CompletableFuture<List<Parsed>> parseAsync(List<Row<S>> rows, Function<S, LibraryItem> parser,
+                                                           ExecutorService pool) {
+        int slice = (rows.size() + threads - 1) / threads;
+        List<CompletableFuture<List<Parsed>>> parts = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += slice) {
+            List<Row<S>> part = rows.subList(from, Math.min(from + slice, rows.size()));
+            parts.add(CompletableFuture.supplyAsync(
+                    () -> part.stream().map(row -> parse(row, parser)).toList(), pool));
+        }
+        return CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+                .thenApply(done -> parts.stream().flatMap(p -> p.join().stream()).toList());
+    }
+
+    private static <S> Parsed parse(Row<S> row, Function<S, LibraryItem> parser) {
+        try {
+            return new Parsed(row.position(), parser.apply(row.value()), null);
+        } catch (IllegalArgumentException e) {
+            return new Parsed(row.position(), null, e.getMessage());
+        }
+    }
+
+    private void insert(List<Parsed> batch, Set<String> keys, Tally tally) {
+        List<LibraryItem> accepted = new ArrayList<>(batch.size());
+        for (Parsed p : batch) {
+            tally.rows++;
+            if (p.item() == null) {
+                tally.invalid++;
+                tally.reject(p.position(), p.error());
+            } else if (!keys.add(keyOf(p.item()))) {
+                tally.duplicates++;
+                tally.reject(p.position(), "duplicate of " + p.item().getMaterialType() + " \""
+                        + p.item().getTitle() + "\"");
+            } else {
+                accepted.add(p.item());
+            }
+        }
+        items.addItems(accepted, admin);
+        tally.imported += accepted.size();
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    private static void log(Path file, ImportReport report) {
+        LoggerUtils.log("import_log.txt", file.getFileName() + ": " + report);
+        report.rejections().forEach(r -> LoggerUtils.log("import_log.txt", "  " + r));
+    }
+
+    // =====================================================================
+    // CSV
+    // =====================================================================
+
+    /** Maps each of {@link #COLUMNS} to its position in the header, or -1. */
+    private static int[] columnIndexes(List<String> header) throws IOException {
+        if (header == null) throw new IOException("Empty CSV: missing header");
+        int[] columns = new int[COLUMNS.size()];
+        Arrays.fill(columns, -1);
+        for (int i = 0; i < header.size(); i++) {
+            int column = COLUMNS.indexOf(header.get(i).trim().toLowerCase(Locale.ROOT));
+            if (column >= 0 && columns[column] < 0) columns[column] = i;
+        }
+        if (columns[COLUMNS.indexOf("type")] < 0)
+            throw new IOException("CSV header has no 'type' column: " + header);
+        return columns;
+    }
+
+    private static String field(List<String> fields, int[] columns, String name) {
+        int i = columns[COLUMNS.indexOf(name)];
+        if (i < 0 || i >= fields.size()) return "";
+        return fields.get(i).trim();
+    }
+
+    private static LibraryItem fromCsv(List<String> fields, int[] columns) {
+        String typeText = field(fields, columns, "type");
+        MaterialType type;
+        try {
+            type = MaterialType.valueOf(typeText.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown type '" + typeText + "'");
+        }
+
+        String copiesText = field(fields, columns, "copies");
+        int copies;
+        try {
+            copies = copiesText.isEmpty() ? 1 : Integer.parseInt(copiesText);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid copies '" + copiesText + "'");
+        }
+
+        String price = field(fields, columns, "price");
+        String title = field(fields, columns, "title");
+        try {
+            return switch (type) {
+                case BOOK -> {
+                    String isbn = field(fields, columns, "isbn");
+                    if (isbn.isEmpty())
+                        throw new IllegalArgumentException("ISBN is required for books.");
+                    yield LibraryItemFactory.createBook(isbn, title, field(fields, columns, "author"), price, copies);
+                }
+                case CD -> LibraryItemFactory.createCd(title, field(fields, columns, "artist"), price, copies);
+                case JOURNAL -> {
+                    String issue = field(fields, columns, "issue");
+                    if (issue.isEmpty())
+                        throw new IllegalArgumentException("Issue number is required for journals.");
+                    yield LibraryItemFactory.createJournal(title, field(fields, columns, "editor"), issue, price, copies);
+                }
+            };
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid price '" + price + "'");
+        }
+    }
+
+    // =====================================================================
+    // MARC21
+    // =====================================================================
+
+    private static LibraryItem fromMarc(MarcRecord record) {
+        char recordType = record.leader(6);
+        char level = record.leader(7);
+        String title = title(record);
+        String price = price(record.subfield("020", 'c'));
+
+        if (recordType == 'i' || recordType == 'j') {
+            return LibraryItemFactory.createCd(title, required(creator(record), "no artist (100/110/700/710, 245 $c)"),
+                    price);
+        }
+        if (level == 's' || level == 'b') {
+            String editor = firstOf(record.subfield("245", 'c'), record.subfield("264", 'b'), record.subfield("260", 'b'));
+            String issue = firstOf(record.subfield("362", 'a'), record.subfield("490", 'v'));
+            return LibraryItemFactory.createJournal(title, required(editor, "no editor (245 $c, 264/260 $b)"),
+                    required(issue, "no issue (362 $a, 490 $v)"), price);
+        }
+        String isbn = clean(record.subfield("020", 'a'));
+        if (isbn != null) isbn = isbn.split("\\s+")[0];
+        return LibraryItemFactory.createBook(required(isbn, "no ISBN (020 $a)"), title,
+                required(creator(record), "no author (100/110/700/710, 245 $c)"), price);
+    }
+
+    private static String title(MarcRecord record) {
+        String title = clean(record.subfield("245", 'a'));
+        String remainder = clean(record.subfield("245", 'b'));
+        if (title != null && remainder != null) title = title + ": " + remainder;
+        return required(title, "no title (245 $a)");
+    }
+
+    private static String creator(MarcRecord record) {
+        return firstOf(record.subfield("100", 'a'), record.subfield("110", 'a'),
+                record.subfield("700", 'a'), record.subfield("710", 'a'), record.subfield("245", 'c'));
+    }
+
+    /** @return the amount in a "terms of availability" text such as "$25.00 (pbk.)", or {@code null} */
+    private static String price(String terms) {
+        if (terms == null) return null;
+        Matcher m = AMOUNT.matcher(terms);
+        return m.find() ? m.group() : null;
+    }
+
+    private static String firstOf(String... values) {
+        for (String value : values) {
+            String v = clean(value);
+            if (v != null) return v;
+        }
+        return null;
+    }
+
+    /** Trims whitespace and trailing ISBD punctuation; blank values become {@code null}. */
+    private static String clean(String value) {
+        if (value == null) return null;
+        int end = value.length();
+        while (end > 0 && " /:;,.=".indexOf(value.charAt(end - 1)) >= 0) end--;
+        String v = value.substring(0, end).trim();
+        return v.isEmpty() ? null : v;
+    }
+
+    private static String required(String value, String reason) {
+        if (value == null) throw new IllegalArgumentException(reason);
+        return value;
+    }
+}
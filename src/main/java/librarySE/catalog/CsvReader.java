@@ -0,0 +1,135 @@
+package librarySE.catalog;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of comma-separated values (RFC 4180).
+ * <p>
+ * Records are read one at a time, so a file of any size is parsed in constant
+ * memory. Fields may be quoted with {@code "}; quoted fields can contain
+ * commas, line breaks and doubled quotes ({@code ""}). {@code \n},
+ * {@code \r\n} and {@code \r} all end a record (and read as {@code \n}
+ * inside quoted fields); a leading byte order mark is skipped.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (CsvReader csv = new CsvReader(Files.newBufferedReader(file))) {
+ *     List<String> row;
+ *     while ((row = csv.next()) != null) {
+ *         System.out.println(csv.lineNumber() + ": " + row);
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public final class CsvReader implements Closeable {
+
+    private static final int NONE = -2;
+
+    private final Reader in;
+    private final StringBuilder field = new StringBuilder();
+
+    /** Line of the next character to read (1-based). */
+    private long line = 1;
+
+    /** Line on which the record last returned by {@link #next()} started. */
+    private long recordLine;
+
+    private int lookahead = NONE;
+    private boolean started;
+
+    /**
+     * @param in source of the CSV text; closed by {@link #close()}
+     */
+    public CsvReader(Reader in) {
+        this.in = (in instanceof BufferedReader) ? in : new BufferedReader(in);
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the record's fields (at least one), or {@code null} at the end of input
+     * @throws IOException if reading fails or a quoted field is not terminated
+     */
+    public List<String> next() throws IOException {
+        long start = line;
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == '\uFEFF') c = read();
+        }
+        if (c < 0) return null;
+
+        recordLine = start;
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+
+        while (true) {
+            if (quoted) {
+                if (c < 0) throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                if (c == '"') {
+                    int d = read();
+                    if (d == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = d;
+                        continue;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c < 0 || c == '\n') {
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * @return line number (1-based) on which the record last returned by
+     *         {@link #next()} started
+     */
+    public long lineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /** Reads one character; {@code \r\n} and a lone {@code \r} are returned as {@code \n}. */
+    private int read() throws IOException {
+        int c;
+        if (lookahead != NONE) {
+            c = lookahead;
+            lookahead = NONE;
+        } else {
+            c = in.read();
+        }
+        if (c == '\r') {
+            int d = in.read();
+            if (d != '\n') lookahead = d;
+            c = '\n';
+        }
+        if (c == '\n') line++;
+        return c;
+    }
+}
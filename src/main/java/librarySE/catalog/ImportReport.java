@@ -0,0 +1,54 @@
+package librarySE.catalog;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a bulk catalog import.
+ *
+ * @param rows       rows read: CSV rows (not counting the header and blank lines) or MARC records
+ * @param imported   items added to the catalog
+ * @param duplicates rows skipped because the catalog already held the item
+ * @param invalid    rows rejected because they could not be turned into an item
+ * @param rejections details of the skipped and rejected rows, in input order;
+ *                   at most {@link CatalogImporter#MAX_REJECTIONS} are kept
+ * @param took       time spent on the import
+ *
+ * @author Eman
+ */
+public record ImportReport(long rows, int imported, int duplicates, int invalid,
+                           List<Rejection> rejections, Duration took) {
+
+    /**
+     * A row that was not imported.
+     *
+     * @param position where the row is in the input: the line on which a CSV
+     *                 row starts, or the 1-based number of a MARC record
+     * @param reason   why the row was not imported
+     */
+    public record Rejection(long position, String reason) {
+
+        @Override
+        public String toString() {
+            return "#" + position + ": " + reason;
+        }
+    }
+
+    public ImportReport {
+        rejections = List.copyOf(rejections);
+    }
+
+    /**
+     * @return rows processed per second
+     */
+    public double rowsPerSecond() {
+        long nanos = Math.max(took.toNanos(), 1);
+        return rows * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "Imported %d of %d rows (%d duplicates, %d invalid) in %d ms, %.0f rows/s".formatted(
+                imported, rows, duplicates, invalid, took.toMillis(), rowsPerSecond());
+    }
+}
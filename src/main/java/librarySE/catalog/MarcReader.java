@@ -0,0 +1,169 @@
+package librarySE.catalog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming reader of MARC21 (ISO 2709) dump files.
+ * <p>
+ * The file is memory-mapped one window at a time (64 MB by default), and each
+ * record is returned as a {@link ByteBuffer} slice of the window, so no record
+ * bytes are copied and memory use does not depend on the size of the dump.
+ * A record crossing the end of a window is read from a new window starting at
+ * the record.
+ * </p>
+ * <p>
+ * Records are delimited by the length in their leader. When that length is not
+ * a number or does not end at a record terminator ({@code 0x1D}), the reader
+ * resynchronizes at the next terminator and returns the bytes in between,
+ * which {@link MarcRecord} then rejects; one damaged record does not stop the
+ * rest of the dump from being read.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (MarcReader marc = new MarcReader(Path.of("catalog.mrc"))) {
+ *     ByteBuffer data;
+ *     while ((data = marc.next()) != null) {
+ *         MarcRecord record = new MarcRecord(data);
+ *         System.out.println(marc.recordNumber() + ": " + record.subfield("245", 'a'));
+ *     }
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public final class MarcReader implements Closeable {
+
+    /** Default size of a mapped window. */
+    static final int DEFAULT_WINDOW = 64 << 20;
+
+    private static final int LENGTH_DIGITS = 5;
+    private static final int MAX_RECORD_LENGTH = 99_999;
+
+    private final FileChannel channel;
+    private final long size;
+    private final int windowSize;
+
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    /** File offset of the next record. */
+    private long offset;
+    private long recordNumber;
+
+    /**
+     * @param file MARC21 dump
+     * @throws IOException if the file cannot be opened
+     */
+    public MarcReader(Path file) throws IOException {
+        this(file, DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param file       MARC21 dump
+     * @param windowSize bytes mapped at a time; records longer than this get a window of their own
+     * @throws IOException if the file cannot be opened
+     */
+    MarcReader(Path file, int windowSize) throws IOException {
+        if (windowSize < LENGTH_DIGITS)
+            throw new IllegalArgumentException("windowSize too small: " + windowSize);
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Returns the next record's bytes.
+     *
+     * @return a read-only buffer from the record's leader to its terminator,
+     *         or {@code null} at the end of the file
+     * @throws IOException if the file cannot be mapped
+     */
+    public ByteBuffer next() throws IOException {
+        while (offset < size && isSeparator(byteAt(offset))) offset++;
+        if (offset >= size) return null;
+        recordNumber++;
+
+        int length = declaredLength();
+        if (length < 0 || offset + length > size || byteAt(offset + length - 1) != MarcRecord.RECORD_TERMINATOR) {
+            length = lengthToTerminator();
+        }
+        ByteBuffer record = slice(offset, length);
+        offset += length;
+        return record;
+    }
+
+    /** @return 1-based number of the record last returned by {@link #next()} */
+    public long recordNumber() {
+        return recordNumber;
+    }
+
+    /** @return file offset of the next record */
+    public long offset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    // =====================================================================
+    // Windows
+    // =====================================================================
+
+    /** Newlines are sometimes written between records; they are skipped. */
+    private static boolean isSeparator(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /** @return the leader's record length, or -1 if it is not a valid number */
+    private int declaredLength() throws IOException {
+        if (offset + LENGTH_DIGITS > size) return -1;
+        ByteBuffer head = slice(offset, LENGTH_DIGITS);
+        try {
+            int length = MarcRecord.digits(head, 0, LENGTH_DIGITS);
+            return (length > LENGTH_DIGITS) ? length : -1;
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return bytes up to and including the next record terminator, but no more
+     *         than the longest possible record or the rest of the file
+     */
+    private int lengthToTerminator() throws IOException {
+        long limit = Math.min(size, offset + MAX_RECORD_LENGTH);
+        long p = offset;
+        while (p < limit && byteAt(p) != MarcRecord.RECORD_TERMINATOR) p++;
+        return (int) (Math.min(p + 1, limit) - offset);
+    }
+
+    private byte byteAt(long position) throws IOException {
+        ensureMapped(position, 1);
+        return window.get((int) (position - windowStart));
+    }
+
+    private ByteBuffer slice(long position, int length) throws IOException {
+        ensureMapped(position, length);
+        return window.slice((int) (position - windowStart), length).asReadOnlyBuffer();
+    }
+
+    private void ensureMapped(long position, int length) throws IOException {
+        if (window != null && position >= windowStart
+                && position + length <= windowStart + window.capacity()) {
+            return;
+        }
+        long mapLength = Math.min(Math.max(windowSize, length), size - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapLength);
+        windowStart = position;
+    }
+}
@@ -0,0 +1,161 @@
+package librarySE.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One MARC21 (ISO 2709) bibliographic record, read in place from a byte buffer.
+ * <p>
+ * The record is a view: the leader (record length and base address) and the
+ * directory are validated when it is created, but field values are only
+ * located and decoded when asked for, so reading a record copies no bytes
+ * except those of the values used.
+ * </p>
+ * <pre>
+ * leader (24 bytes) | directory: tag(3) length(4) start(5) ... 0x1E | fields ... 0x1D
+ * data field:       indicators(2) | 0x1F code value | 0x1F code value ... 0x1E
+ * </pre>
+ * <p>
+ * Values are decoded as UTF-8 when leader position 09 is {@code a}. Otherwise
+ * the record is MARC-8, which is read as ISO-8859-1: ASCII text is exact, but
+ * MARC-8 diacritics are not converted.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class MarcRecord {
+
+    private static final int LEADER_LENGTH = 24;
+    private static final int ENTRY_LENGTH = 12;
+
+    static final byte SUBFIELD_DELIMITER = 0x1F;
+    static final byte FIELD_TERMINATOR = 0x1E;
+    static final byte RECORD_TERMINATOR = 0x1D;
+
+    private final ByteBuffer data;
+    private final int baseAddress;
+    private final int entries;
+    private final Charset charset;
+
+    /**
+     * @param data the record's bytes, from its leader to its record terminator;
+     *             read with absolute gets only, so it may be shared between threads
+     * @throws IllegalArgumentException if the leader or directory is malformed
+     */
+    public MarcRecord(ByteBuffer data) {
+        this.data = data;
+        int length = data.limit();
+        if (length < LEADER_LENGTH + 1)
+            throw new IllegalArgumentException("record shorter than its leader (" + length + " bytes)");
+        if (data.get(length - 1) != RECORD_TERMINATOR)
+            throw new IllegalArgumentException("record terminator missing");
+        if (digits(data, 0, 5) != length)
+            throw new IllegalArgumentException("record length in leader does not match " + length + " bytes");
+
+        baseAddress = digits(data, 12, 5);
+        if (baseAddress < LEADER_LENGTH + 1 || baseAddress > length
+                || data.get(baseAddress - 1) != FIELD_TERMINATOR
+                || (baseAddress - 1 - LEADER_LENGTH) % ENTRY_LENGTH != 0) {
+            throw new IllegalArgumentException("invalid base address of data " + baseAddress);
+        }
+        entries = (baseAddress - 1 - LEADER_LENGTH) / ENTRY_LENGTH;
+        charset = (data.get(9) == 'a') ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1;
+        for (int i = 0; i < entries; i++) {
+            int end = fieldStart(i) + fieldLength(i);
+            if (fieldLength(i) < 1 || end > length - 1)
+                throw new IllegalArgumentException("field " + tag(i) + " lies outside the record");
+        }
+    }
+
+    /**
+     * @param position leader position (0–23)
+     * @return the leader character at that position, e.g. 06 (type of record)
+     */
+    public char leader(int position) {
+        return (char) (data.get(position) & 0xFF);
+    }
+
+    /**
+     * @param tag control field tag ({@code 001}–{@code 009})
+     * @return the first such field's value, or {@code null} if absent
+     */
+    public String controlField(String tag) {
+        int i = find(tag, 0);
+        if (i < 0) return null;
+        return decode(fieldStart(i), fieldStart(i) + fieldLength(i) - 1);
+    }
+
+    /**
+     * @param tag  data field tag, e.g. {@code 245}
+     * @param code subfield code, e.g. {@code 'a'}
+     * @return the value of the first such subfield in any field with this tag,
+     *         or {@code null} if there is none
+     */
+    public String subfield(String tag, char code) {
+        for (int i = find(tag, 0); i >= 0; i = find(tag, i + 1)) {
+            int end = fieldStart(i) + fieldLength(i) - 1;
+            for (int p = fieldStart(i) + 2; p < end; p++) {
+                if (data.get(p) != SUBFIELD_DELIMITER || p + 1 >= end || data.get(p + 1) != code) continue;
+                int from = p + 2;
+                int to = from;
+                while (to < end && data.get(to) != SUBFIELD_DELIMITER) to++;
+                return decode(from, to);
+            }
+        }
+        return null;
+    }
+
+    /** @return number of fields in the directory */
+    public int fieldCount() {
+        return entries;
+    }
+
+    // =====================================================================
+    // Directory
+    // =====================================================================
+
+    private int find(String tag, int from) {
+        for (int i = from; i < entries; i++) {
+            int p = LEADER_LENGTH + i * ENTRY_LENGTH;
+            if (data.get(p) == tag.charAt(0) && data.get(p + 1) == tag.charAt(1) && data.get(p + 2) == tag.charAt(2))
+                return i;
+        }
+        return -1;
+    }
+
+    private String tag(int i) {
+        int p = LEADER_LENGTH + i * ENTRY_LENGTH;
+        return decode(p, p + 3);
+    }
+
+    private int fieldLength(int i) {
+        return digits(data, LEADER_LENGTH + i * ENTRY_LENGTH + 3, 4);
+    }
+
+    private int fieldStart(int i) {
+        return baseAddress + digits(data, LEADER_LENGTH + i * ENTRY_LENGTH + 7, 5);
+    }
+
+    private String decode(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        data.get(from, bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * Reads an unsigned decimal number written as ASCII digits.
+     *
+     * @throws IllegalArgumentException if a character is not a digit
+     */
+    static int digits(ByteBuffer buffer, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int d = buffer.get(i) - '0';
+            if (d < 0 || d > 9)
+                throw new IllegalArgumentException("expected " + count + " digits at offset " + offset);
+            value = value * 10 + d;
+        }
+        return value;
+    }
+}
@@ -1,5 +1,11 @@
 package librarySE.core;
 
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
+
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Objects;
@@ -91,6 +97,66 @@ public abstract class AbstractLibraryItem implements LibraryItem, Serializable {
         this.availableCopies = totalCopies;
     }
 
+    /**
+     * Restores the common state of an item from a binary snapshot.
+     *
+     * @param in snapshot positioned at the data written by {@link #writeSnapshot(SnapshotOutput)}
+     * @throws IOException if the snapshot cannot be read
+     */
+    protected AbstractLibraryItem(SnapshotInput in) throws IOException {
+        this.id = in.readUuid();
+        this.price = in.readMoney();
+        this.totalCopies = in.readInt();
+        this.availableCopies = in.readInt();
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Writes the state of this item to a binary snapshot.
+     * <p>Subclasses append their own fields after calling {@code super}.</p>
+     *
+     * @param out snapshot output
+     * @throws IOException if writing fails
+     */
+    protected synchronized void writeSnapshot(SnapshotOutput out) throws IOException {
+        out.writeUuid(id);
+        out.writeMoney(price);
+        out.writeInt(totalCopies);
+        out.writeInt(availableCopies);
+    }
+
+    /**
+     * Restores the common state of an item read from JSON
+     * (see {@link LibraryItemFactory#readJson}).
+     *
+     * @param id              persisted identifier
+     * @param price           persisted price, or {@code null} for zero
+     * @param totalCopies     persisted total copies
+     * @param availableCopies persisted available copies
+     */
+    protected AbstractLibraryItem(UUID id, BigDecimal price, int totalCopies, int availableCopies) {
+        this.id = id;
+        this.price = (price == null) ? BigDecimal.ZERO : price;
+        this.totalCopies = totalCopies;
+        this.availableCopies = availableCopies;
+        this.lock = new ReentrantLock();
+    }
+
+    /**
+     * Writes the JSON fields of this item, without the enclosing object.
+     * <p>Subclasses write their own fields <em>before</em> calling {@code super},
+     * matching the order of the reflective layout.</p>
+     *
+     * @param out JSON output positioned inside the item object
+     * @throws IOException if writing fails
+     */
+    protected synchronized void writeJsonFields(JsonWriter out) throws IOException {
+        JsonFields.writeUuid(out, "id", id);
+        JsonFields.writeMoney(out, "price", price);
+        JsonFields.writeInt(out, "totalCopies", totalCopies);
+        JsonFields.writeInt(out, "availableCopies", availableCopies);
+    }
+
     /**
      * Lazily initializes and returns the internal {@link ReentrantLock}.
      */
@@ -1,9 +1,15 @@
 package librarySE.core;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.Objects;
+import java.util.UUID;
 
 import librarySE.utils.Config;
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import librarySE.utils.ValidationUtils;
 
 /**
@@ -91,6 +97,46 @@ public class Book extends AbstractLibraryItem {
         initPrice(price);
     }
 
+    /**
+     * Restores a {@code Book} from a binary snapshot.
+     *
+     * @param in snapshot positioned at the data written by {@link #writeSnapshot(SnapshotOutput)}
+     * @throws IOException if the snapshot cannot be read
+     */
+    Book(SnapshotInput in) throws IOException {
+        super(in);
+        this.isbn = in.readString();
+        this.title = in.readString();
+        this.author = in.readString();
+    }
+
+    @Override
+    protected void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeString(isbn);
+        out.writeString(title);
+        out.writeString(author);
+    }
+
+    /**
+     * Restores a {@code Book} read from JSON; values are taken as stored, without validation.
+     */
+    Book(UUID id, BigDecimal price, int totalCopies, int availableCopies,
+         String isbn, String title, String author) {
+        super(id, price, totalCopies, availableCopies);
+        this.isbn = isbn;
+        this.title = title;
+        this.author = author;
+    }
+
+    @Override
+    protected void writeJsonFields(JsonWriter out) throws IOException {
+        JsonFields.writeString(out, "isbn", isbn);
+        JsonFields.writeString(out, "title", title);
+        JsonFields.writeString(out, "author", author);
+        super.writeJsonFields(out);
+    }
+
     /**
      * Initializes the price of the book.
      * <p>
@@ -1,8 +1,14 @@
 package librarySE.core;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.UUID;
 
 import librarySE.utils.Config;
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import librarySE.utils.ValidationUtils;
 
 /**
@@ -101,6 +107,42 @@ public class CD extends AbstractLibraryItem {
         initPrice(price);
     }
 
+    /**
+     * Restores a {@code CD} from a binary snapshot.
+     *
+     * @param in snapshot positioned at the data written by {@link #writeSnapshot(SnapshotOutput)}
+     * @throws IOException if the snapshot cannot be read
+     */
+    CD(SnapshotInput in) throws IOException {
+        super(in);
+        this.title = in.readString();
+        this.artist = in.readString();
+    }
+
+    @Override
+    protected void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeString(title);
+        out.writeString(artist);
+    }
+
+    /**
+     * Restores a {@code CD} read from JSON; values are taken as stored, without validation.
+     */
+    CD(UUID id, BigDecimal price, int totalCopies, int availableCopies,
+       String title, String artist) {
+        super(id, price, totalCopies, availableCopies);
+        this.title = title;
+        this.artist = artist;
+    }
+
+    @Override
+    protected void writeJsonFields(JsonWriter out) throws IOException {
+        JsonFields.writeString(out, "title", title);
+        JsonFields.writeString(out, "artist", artist);
+        super.writeJsonFields(out);
+    }
+
     /**
      * Initializes the price using the following strategy:
      * <ul>
@@ -1,8 +1,14 @@
 package librarySE.core;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.UUID;
 
 import librarySE.utils.Config;
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import librarySE.utils.ValidationUtils;
 
 /**
@@ -116,6 +122,46 @@ public class Journal extends AbstractLibraryItem {
         initPrice(price);
     }
 
+    /**
+     * Restores a {@code Journal} from a binary snapshot.
+     *
+     * @param in snapshot positioned at the data written by {@link #writeSnapshot(SnapshotOutput)}
+     * @throws IOException if the snapshot cannot be read
+     */
+    Journal(SnapshotInput in) throws IOException {
+        super(in);
+        this.title = in.readString();
+        this.editor = in.readString();
+        this.issueNumber = in.readString();
+    }
+
+    @Override
+    protected void writeSnapshot(SnapshotOutput out) throws IOException {
+        super.writeSnapshot(out);
+        out.writeString(title);
+        out.writeString(editor);
+        out.writeString(issueNumber);
+    }
+
+    /**
+     * Restores a {@code Journal} read from JSON; values are taken as stored, without validation.
+     */
+    Journal(UUID id, BigDecimal price, int totalCopies, int availableCopies,
+            String title, String editor, String issueNumber) {
+        super(id, price, totalCopies, availableCopies);
+        this.title = title;
+        this.editor = editor;
+        this.issueNumber = issueNumber;
+    }
+
+    @Override
+    protected void writeJsonFields(JsonWriter out) throws IOException {
+        JsonFields.writeString(out, "title", title);
+        JsonFields.writeString(out, "editor", editor);
+        JsonFields.writeString(out, "issueNumber", issueNumber);
+        super.writeJsonFields(out);
+    }
+
     /**
      * Initializes the price using the “smart price” policy:
      * <ul>
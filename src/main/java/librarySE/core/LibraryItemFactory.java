@@ -1,6 +1,16 @@
 package librarySE.core;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
 import java.math.BigDecimal;
+import java.util.UUID;
 
 /**
  * Factory for constructing {@link LibraryItem} objects:
@@ -11,6 +21,8 @@ import java.math.BigDecimal;
  *     <li>Creating items with default or explicit price.</li>
  *     <li>Creating items with single or multiple copies.</li>
  *     <li>A legacy varargs creator for backward compatibility.</li>
+ *     <li>Writing and restoring items in the binary snapshot format.</li>
+ *     <li>Writing and restoring items as JSON objects with a {@code "type"} field.</li>
  * </ul>
  *
  * <p>Price parsing returns {@code null} for empty text, allowing
@@ -160,4 +172,134 @@ public final class LibraryItemFactory {
             }
         };
     }
+
+    /**
+     * Writes an item, preceded by its material type, to a binary snapshot.
+     *
+     * @param out  snapshot output
+     * @param item item to write
+     * @throws IOException              if writing fails
+     * @throws IllegalArgumentException if the item is not an {@link AbstractLibraryItem}
+     */
+    public static void writeSnapshot(SnapshotOutput out, LibraryItem item) throws IOException {
+        if (!(item instanceof AbstractLibraryItem base)) {
+            throw new IllegalArgumentException("Unsupported item type: " + item.getClass().getName());
+        }
+        out.writeEnum(item.getMaterialType());
+        base.writeSnapshot(out);
+    }
+
+    /**
+     * Restores an item written by {@link #writeSnapshot(SnapshotOutput, LibraryItem)}.
+     *
+     * @param in snapshot input
+     * @return restored item with its original id and copy counts
+     * @throws IOException if the snapshot cannot be read or is corrupted
+     */
+    public static LibraryItem readSnapshot(SnapshotInput in) throws IOException {
+        MaterialType type = in.readEnum(MaterialType.class);
+        if (type == null) {
+            throw new StreamCorruptedException("Missing material type");
+        }
+        return switch (type) {
+            case BOOK -> new Book(in);
+            case CD -> new CD(in);
+            case JOURNAL -> new Journal(in);
+        };
+    }
+
+    /**
+     * Copies an item, including its id and copy counts, e.g. to keep its
+     * current state while the original goes on changing.
+     *
+     * @param item item to copy
+     * @return an independent item equal in every field
+     * @throws IllegalArgumentException if the item is not a {@link Book}, {@link CD} or {@link Journal}
+     */
+    public static LibraryItem copyOf(LibraryItem item) {
+        if (!(item instanceof AbstractLibraryItem base)) {
+            throw new IllegalArgumentException("Unsupported item type: " + item.getClass().getName());
+        }
+        synchronized (base) {
+            return switch (base) {
+                case Book b -> new Book(b.getId(), b.getPrice(), b.getTotalCopies(), b.getAvailableCopies(),
+                        b.getIsbn(), b.getTitle(), b.getAuthor());
+                case CD cd -> new CD(cd.getId(), cd.getPrice(), cd.getTotalCopies(), cd.getAvailableCopies(),
+                        cd.getTitle(), cd.getArtist());
+                case Journal j -> new Journal(j.getId(), j.getPrice(), j.getTotalCopies(), j.getAvailableCopies(),
+                        j.getTitle(), j.getEditor(), j.getIssueNumber());
+                default -> throw new IllegalArgumentException("Unsupported item type: " + item.getClass().getName());
+            };
+        }
+    }
+
+    /**
+     * Writes an item as a JSON object: its material type as {@code "type"},
+     * followed by the fields written by the item itself.
+     *
+     * @param out  JSON output
+     * @param item item to write
+     * @throws IOException              if writing fails
+     * @throws IllegalArgumentException if the item is not an {@link AbstractLibraryItem}
+     */
+    public static void writeJson(JsonWriter out, LibraryItem item) throws IOException {
+        if (!(item instanceof AbstractLibraryItem base)) {
+            throw new IllegalArgumentException("Unsupported item type: " + item.getClass().getName());
+        }
+        out.beginObject();
+        JsonFields.writeEnum(out, "type", item.getMaterialType());
+        base.writeJsonFields(out);
+        out.endObject();
+    }
+
+    /**
+     * Restores an item written by {@link #writeJson(JsonWriter, LibraryItem)}.
+     * Fields may appear in any order; unknown fields are skipped.
+     *
+     * @param in JSON input positioned at the item object
+     * @return restored item with its original id and copy counts
+     * @throws IOException        if reading fails
+     * @throws JsonParseException if the type is missing or unknown
+     */
+    public static LibraryItem readJson(JsonReader in) throws IOException {
+        MaterialType type = null;
+        UUID id = null;
+        BigDecimal price = null;
+        int totalCopies = 0;
+        int availableCopies = 0;
+        String isbn = null;
+        String title = null;
+        String author = null;
+        String artist = null;
+        String editor = null;
+        String issueNumber = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "type" -> type = JsonFields.readEnum(in, MaterialType.class);
+                case "id" -> id = JsonFields.readUuid(in);
+                case "price" -> price = JsonFields.readMoney(in);
+                case "totalCopies" -> totalCopies = JsonFields.readInt(in);
+                case "availableCopies" -> availableCopies = JsonFields.readInt(in);
+                case "isbn" -> isbn = JsonFields.readString(in);
+                case "title" -> title = JsonFields.readString(in);
+                case "author" -> author = JsonFields.readString(in);
+                case "artist" -> artist = JsonFields.readString(in);
+                case "editor" -> editor = JsonFields.readString(in);
+                case "issueNumber" -> issueNumber = JsonFields.readString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (type == null) {
+            throw new JsonParseException("Missing or unknown item type at " + in.getPreviousPath());
+        }
+        return switch (type) {
+            case BOOK -> new Book(id, price, totalCopies, availableCopies, isbn, title, author);
+            case CD -> new CD(id, price, totalCopies, availableCopies, title, artist);
+            case JOURNAL -> new Journal(id, price, totalCopies, availableCopies, title, editor, issueNumber);
+        };
+    }
 }
@@ -1,9 +1,16 @@
 package librarySE.core;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.UUID;
 
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import librarySE.utils.ValidationUtils;
 
 /**
@@ -97,6 +104,73 @@ public class WaitlistEntry implements Serializable {
         return requestDate;
     }
 
+    /**
+     * Restores an entry written by {@link #writeSnapshot(SnapshotOutput)}.
+     *
+     * @param in snapshot input
+     * @return the restored entry
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static WaitlistEntry readSnapshot(SnapshotInput in) throws IOException {
+        return new WaitlistEntry(in.readUuid(), in.readString(), in.readDate());
+    }
+
+    /**
+     * Writes this entry to a binary snapshot.
+     *
+     * @param out snapshot output
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        out.writeUuid(itemId);
+        out.writeString(userEmail);
+        out.writeDate(requestDate);
+    }
+
+    /**
+     * Restores an entry written by {@link #writeJson(JsonWriter)}.
+     *
+     * @param in JSON input positioned at the entry object
+     * @return the restored entry
+     * @throws IOException        if reading fails
+     * @throws JsonParseException if a field is missing
+     */
+    public static WaitlistEntry readJson(JsonReader in) throws IOException {
+        UUID itemId = null;
+        String userEmail = null;
+        LocalDate requestDate = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "itemId" -> itemId = JsonFields.readUuid(in);
+                case "userEmail" -> userEmail = JsonFields.readString(in);
+                case "requestDate" -> requestDate = JsonFields.readDate(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        try {
+            return new WaitlistEntry(itemId, userEmail, requestDate);
+        } catch (IllegalArgumentException e) {
+            throw new JsonParseException("Invalid waitlist entry at " + in.getPreviousPath(), e);
+        }
+    }
+
+    /**
+     * Writes this entry as a JSON object.
+     *
+     * @param out JSON output
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        JsonFields.writeUuid(out, "itemId", itemId);
+        JsonFields.writeString(out, "userEmail", userEmail);
+        JsonFields.writeDate(out, "requestDate", requestDate);
+        out.endObject();
+    }
+
     /**
      * Returns a human-readable string representation of this waitlist entry.
      * Useful for debugging, logging, or report generation.
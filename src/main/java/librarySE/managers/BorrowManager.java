@@ -4,15 +4,29 @@ import librarySE.core.LibraryItem;
 import librarySE.core.WaitlistEntry;
 import librarySE.managers.notifications.EmailNotifier;
 import librarySE.managers.notifications.Notifier;
+import librarySE.repo.BorrowRecordArchive;
+import librarySE.repo.BorrowRecordQueries;
 import librarySE.repo.BorrowRecordRepository;
+import librarySE.repo.ChangeLog;
+import librarySE.repo.ConcurrentUpdateException;
+import librarySE.repo.EntityRepository;
 import librarySE.repo.WaitlistRepository;
 import librarySE.strategy.FineStrategy;
+import librarySE.utils.LoggerUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Central manager responsible for handling all borrowing and returning operations in the library system.
@@ -30,6 +44,41 @@ import java.util.stream.Collectors;
  * Implements the <b>Singleton Pattern</b> to ensure only one global instance manages borrow operations.
  * </p>
  *
+ * <p>
+ * Borrow records changed by an operation are tracked individually, so a
+ * repository that supports incremental writes persists only those records,
+ * and only the borrowed or returned item is saved through {@link ItemManager}.
+ * </p>
+ *
+ * <p>
+ * If the borrow record repository implements {@link BorrowRecordQueries}, lookups
+ * by user and item and the search for overdue records are answered by the
+ * repository (e.g. indexed SQL queries) instead of scanning every record.
+ * </p>
+ *
+ * <p>
+ * Several circulation desks may share the data files. Borrowing and returning
+ * first {@linkplain #refresh() apply what other desks wrote}, then write the
+ * item before the borrow record; if another desk changed the item in between,
+ * the write is rejected ({@link ConcurrentUpdateException}) and the operation
+ * is decided again on the current state, up to {@link #MAX_ATTEMPTS} times.
+ * If the item was written but the borrow record is rejected, the copy count is
+ * reverted on the refreshed item first.
+ * </p>
+ *
+ * <p>
+ * Operations that change state run inside the {@link ChangeBarrier}, so a
+ * consistent copy of all managers (e.g. for a hot backup) sees a borrow or
+ * return either completely or not at all. Waitlist emails are sent after
+ * leaving it.
+ * </p>
+ *
+ * <p>
+ * Settled loans can be moved out of memory into a {@link BorrowRecordArchive}
+ * ({@link #archiveSettledRecords(LocalDate)}); {@link #getBorrowHistory(LocalDate)}
+ * still includes them.
+ * </p>
+ *
  * <p><b>Note:</b> Email notifications require a configured {@link librarySE.core.EmailService}
  * with valid credentials in the <b>.env</b> file.</p>
  *
@@ -40,6 +89,9 @@ public class BorrowManager {
     /** Singleton instance. */
     private static BorrowManager instance;
 
+    /** Attempts of a borrow or return that conflicts with another desk's change. */
+    static final int MAX_ATTEMPTS = 5;
+
     /** Thread-safe list of borrowing records. */
     private final CopyOnWriteArrayList<BorrowRecord> borrowRecords;
 
@@ -49,6 +101,21 @@ public class BorrowManager {
     /** Repository for saving and loading borrow records. */
     private final BorrowRecordRepository borrowRepo;
 
+    /**
+     * Borrow records by id, used to map query results to the instances held here;
+     * only filled when {@link #queries} is set.
+     */
+    private final Map<UUID, BorrowRecord> recordsById = new ConcurrentHashMap<>();
+
+    /** Filters pushed down to the repository; {@code null} if it cannot query. */
+    private final BorrowRecordQueries queries;
+
+    /** Borrow records changed since the last save. */
+    private final ChangeTracker<BorrowRecord> recordChanges;
+
+    /** Cold store of settled loans; {@code null} if records are never archived. */
+    private volatile BorrowRecordArchive archive;
+
     /** Repository for saving and loading waitlist entries. */
     private final WaitlistRepository waitlistRepo;
 
@@ -58,26 +125,69 @@ public class BorrowManager {
      */
     private final ItemManager itemManager;
 
+    /** Manager used to resolve user references; may be {@code null}. */
+    private final UserManager userManager;
+
     /**
      * Private constructor used for initialization.
+     * <p>
+     * Loaded records store only user and item ids; they are resolved here
+     * against the canonical instances of {@code itemManager} and
+     * {@code userManager}.
+     * </p>
      *
      * @param borrowRepo   repository for borrow records (JSON-based)
      * @param waitlistRepo repository for waitlist entries (JSON-based)
      * @param itemManager  manager used to persist changes to {@link LibraryItem} objects
+     * @param userManager  manager used to resolve user references; may be {@code null}
      */
     private BorrowManager(BorrowRecordRepository borrowRepo,
                           WaitlistRepository waitlistRepo,
-                          ItemManager itemManager) {
+                          ItemManager itemManager,
+                          UserManager userManager) {
         this.borrowRepo = Objects.requireNonNull(borrowRepo, "BorrowRecordRepository cannot be null.");
         this.waitlistRepo = Objects.requireNonNull(waitlistRepo, "WaitlistRepository cannot be null.");
         this.itemManager = Objects.requireNonNull(itemManager, "ItemManager cannot be null.");
+        this.userManager = userManager;
+        this.recordChanges = new ChangeTracker<>(borrowRepo, BorrowRecord::getId, ChangeLog.Entity.BORROW_RECORD);
+        this.queries = (borrowRepo instanceof BorrowRecordQueries q) ? q : null;
 
         this.borrowRecords = new CopyOnWriteArrayList<>(borrowRepo.loadAll());
         this.waitlist = new CopyOnWriteArrayList<>(waitlistRepo.loadAll());
+        resolveReferences(borrowRecords);
+        if (queries != null) borrowRecords.forEach(r -> recordsById.put(r.getId(), r));
+    }
+
+    /**
+     * Points the given records at the canonical user and item instances.
+     * Users are resolved only if a {@link UserManager} was supplied.
+     *
+     * @param records records loaded from a repository
+     */
+    private void resolveReferences(Collection<BorrowRecord> records) {
+        if (records.isEmpty()) return;
+        Function<UUID, LibraryItem> itemsById = itemManager.itemLookup();
+
+        Map<UUID, User> usersById = new HashMap<>();
+        if (userManager != null) {
+            for (User u : userManager.getAllUsers()) usersById.put(u.getId(), u);
+        }
+
+        long unresolved = records.stream()
+                .filter(r -> !r.resolveReferences(usersById::get, itemsById))
+                .count();
+        if (unresolved > 0 && userManager != null) {
+            LoggerUtils.log("borrow_log.txt",
+                    unresolved + " borrow records reference users or items that no longer exist.");
+        }
     }
 
     /**
-     * Initializes the singleton instance.
+     * Initializes the singleton instance without user resolution.
+     * <p>
+     * Prefer {@link #init(BorrowRecordRepository, WaitlistRepository, ItemManager, UserManager)}
+     * so records point at the users held by {@link UserManager}.
+     * </p>
      *
      * @param borrowRepo   repository for borrow records
      * @param waitlistRepo repository for waitlist entries
@@ -87,8 +197,25 @@ public class BorrowManager {
     public static synchronized BorrowManager init(BorrowRecordRepository borrowRepo,
                                                   WaitlistRepository waitlistRepo,
                                                   ItemManager itemManager) {
+        return init(borrowRepo, waitlistRepo, itemManager, null);
+    }
+
+    /**
+     * Initializes the singleton instance and resolves the user and item
+     * references of all loaded records.
+     *
+     * @param borrowRepo   repository for borrow records
+     * @param waitlistRepo repository for waitlist entries
+     * @param itemManager  manager for items (for persisting copy counts)
+     * @param userManager  manager whose users the records should reference
+     * @return the initialized {@link BorrowManager} instance
+     */
+    public static synchronized BorrowManager init(BorrowRecordRepository borrowRepo,
+                                                  WaitlistRepository waitlistRepo,
+                                                  ItemManager itemManager,
+                                                  UserManager userManager) {
         if (instance == null) {
-            instance = new BorrowManager(borrowRepo, waitlistRepo, itemManager);
+            instance = new BorrowManager(borrowRepo, waitlistRepo, itemManager, userManager);
         }
         return instance;
     }
@@ -117,11 +244,28 @@ public class BorrowManager {
      * @return {@code true} if borrowed successfully; {@code false} if added to waitlist
      * @throws IllegalArgumentException if user or item is null
      * @throws IllegalStateException    if user has unpaid fines or overdue items
+     * @throws ConcurrentUpdateException if other desks kept changing the item
      */
     public boolean borrowItem(User user, LibraryItem item) {
         if (user == null || item == null)
             throw new IllegalArgumentException("User and item cannot be null.");
 
+        ChangeBarrier.enter();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                refresh();
+                try {
+                    return borrowOnce(user, itemManager.findItemById(item.getId()).orElse(item));
+                } catch (ConcurrentUpdateException e) {
+                    if (attempt == MAX_ATTEMPTS) throw e;
+                }
+            }
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
+    private boolean borrowOnce(User user, LibraryItem item) {
         LocalDate today = LocalDate.now();
 
         // Make sure all overdue records have their fines applied to the user
@@ -140,8 +284,9 @@ public class BorrowManager {
         // If no copies available -> add user to waitlist
         if (!item.isAvailable()) {
             WaitlistEntry entry = new WaitlistEntry(item.getId(), user.getEmail(), LocalDate.now());
+            waitlistRepo.add(entry);
             waitlist.add(entry);
-            waitlistRepo.saveAll(waitlist);
+            ChangeFeed.record(List.of(waitlistChange(ChangeLog.Operation.UPSERT, entry)));
             System.out.println("ℹ️ Item unavailable. User added to waitlist: " + user.getEmail());
             return false;
         }
@@ -150,14 +295,31 @@ public class BorrowManager {
         if (!item.borrow())
             throw new IllegalStateException("Failed to borrow item.");
 
+        // ✅ Persist new availableCopies / totalCopies first: rejected if another desk took the copy
+        try {
+            itemManager.saveItem(item);
+        } catch (RuntimeException e) {
+            item.returnItem(); // the held copy count must match what is stored
+            throw e;
+        }
+
         // Create a new BorrowRecord with appropriate fine strategy
         FineStrategy strategy = item.getMaterialType().createFineStrategy();
         BorrowRecord record = new BorrowRecord(user, item, strategy, today);
         borrowRecords.add(record);
-        borrowRepo.saveAll(borrowRecords);
-
-        // ✅ Persist new availableCopies / totalCopies to items.json
-        itemManager.saveAll();
+        if (queries != null) recordsById.put(record.getId(), record);
+        recordChanges.changed(record);
+        try {
+            recordChanges.save(borrowRecords);
+        } catch (RuntimeException e) {
+            // The new loan was not written (e.g. another desk wrote a pending record meanwhile):
+            // drop it and give back the copy taken above before deciding again.
+            borrowRecords.remove(record);
+            if (queries != null) recordsById.remove(record.getId());
+            recordChanges.forget(record);
+            undoCopyChange(item, LibraryItem::returnItem, e);
+            throw e;
+        }
 
         System.out.println("✅ Item borrowed successfully: " + item.getTitle() + " by " + user.getUsername());
         return true;
@@ -169,48 +331,255 @@ public class BorrowManager {
      * @param user the user returning the item
      * @param item the item being returned
      * @throws IllegalArgumentException if user or item is null
+     * @throws ConcurrentUpdateException if other desks kept changing the item or loan
      */
     public void returnItem(User user, LibraryItem item) {
         if (user == null || item == null)
             throw new IllegalArgumentException("User and item cannot be null.");
 
+        List<WaitlistEntry> waitingUsers;
+        ChangeBarrier.enter();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                refresh();
+                try {
+                    waitingUsers = returnOnce(user, itemManager.findItemById(item.getId()).orElse(item));
+                    break;
+                } catch (ConcurrentUpdateException e) {
+                    if (attempt == MAX_ATTEMPTS) throw e;
+                }
+            }
+        } finally {
+            ChangeBarrier.exit();
+        }
+
+        // Emails are sent outside the barrier: they may take long and change nothing.
+        Notifier notifier = new EmailNotifier();
+        for (WaitlistEntry entry : waitingUsers) {
+            Optional<User> target = UserManager.getInstance()
+                    .findUserByEmail(entry.getUserEmail());
+            target.ifPresent(value ->
+                    notifier.notify(value,
+                            "The item \"" + item.getTitle() + "\" is now available!",
+                            "Good news! The item \"" + item.getTitle()
+                                    + "\" you requested is now available for borrowing."));
+        }
+
+        System.out.println("✅ Item returned successfully: " + item.getTitle());
+    }
+
+    /**
+     * Returns the item once, without retrying.
+     *
+     * @return the waitlist entries for the item, removed from the waitlist
+     */
+    private List<WaitlistEntry> returnOnce(User user, LibraryItem item) {
         LocalDate today = LocalDate.now();
         applyOverdueFines(today);
 
-        BorrowRecord record = borrowRecords.stream()
-                .filter(r -> 
-                        r.getUser().getId().equals(user.getId()) &&   
-                        r.getItem().getId().equals(item.getId()) &&  
+        List<BorrowRecord> candidates = (queries != null)
+                ? held(queries.findByItem(item.getId()))
+                : borrowRecords;
+        BorrowRecord record = candidates.stream()
+                .filter(r ->
+                        r.getUser() != null && r.getItem() != null &&
+                        r.getUser().getId().equals(user.getId()) &&
+                        r.getItem().getId().equals(item.getId()) &&
                         !r.isReturned())
                 .findFirst()
                 .orElseThrow(() -> new IllegalArgumentException("No active borrowing found."));
 
+        // The item is written first: if another desk changed it, the record is still untouched.
+        item.returnItem();
+        try {
+            itemManager.saveItem(item);
+        } catch (RuntimeException e) {
+            item.borrow(); // the held copy count must match what is stored
+            throw e;
+        }
+
         record.markReturned(today);
+        recordChanges.changed(record);
+        try {
+            recordChanges.save(borrowRecords);
+        } catch (ConcurrentUpdateException e) {
+            // Another desk wrote the loan meanwhile (e.g. returned it): take back the copy added above.
+            undoCopyChange(item, LibraryItem::borrow, e);
+            throw e;
+        }
 
-        item.returnItem();
+        // Entries other desks added for the item are removed from storage and notified too.
+        Set<WaitlistEntry> waiting = new LinkedHashSet<>();
+        waitlist.stream().filter(w -> w.getItemId().equals(item.getId())).forEach(waiting::add);
+        waiting.addAll(waitlistRepo.removeFor(item.getId()));
+        waitlist.removeIf(w -> w.getItemId().equals(item.getId()));
+        List<WaitlistEntry> waitingUsers = new ArrayList<>(waiting);
+        ChangeFeed.record(waitingUsers.stream()
+                .map(w -> waitlistChange(ChangeLog.Operation.DELETE, w))
+                .toList());
+        return waitingUsers;
+    }
 
-        borrowRepo.saveAll(borrowRecords);
-        itemManager.saveAll();
+    /**
+     * Reverts the copy count written for a borrow or return whose record was
+     * not written. The item is refreshed first, so the correction applies to its
+     * stored state rather than to a copy another desk replaced meanwhile. If
+     * the correction cannot be written either, it is logged and attached to
+     * {@code failure}, which the caller rethrows.
+     *
+     * @param item    the item whose copy count was written
+     * @param undo    reverts the change on the current instance of the item
+     * @param failure why the borrow record was not written
+     */
+    private void undoCopyChange(LibraryItem item, Consumer<LibraryItem> undo, RuntimeException failure) {
+        try {
+            try {
+                itemManager.refresh();
+            } catch (ConcurrentUpdateException dropped) {
+                failure.addSuppressed(dropped); // the item list is current all the same
+            }
+            LibraryItem current = itemManager.findItemById(item.getId()).orElse(item);
+            undo.accept(current);
+            itemManager.saveItem(current);
+        } catch (RuntimeException failed) {
+            LoggerUtils.log("borrow_log.txt", "Copy count of item " + item.getId()
+                    + " could not be reverted after a rejected borrow record: " + failed.getMessage());
+            failure.addSuppressed(failed);
+        }
+    }
 
-        List<WaitlistEntry> waitingUsers = waitlist.stream()
-                .filter(w -> w.getItemId().equals(item.getId()))
-                .collect(Collectors.toList());
+    /** A waitlist entry is identified by the item waited for in the {@link ChangeFeed}. */
+    private static ChangeLog.Mutation waitlistChange(ChangeLog.Operation operation, WaitlistEntry entry) {
+        return new ChangeLog.Mutation(ChangeLog.Entity.WAITLIST, operation, entry.getItemId(), entry);
+    }
 
-        Notifier notifier = new EmailNotifier();
-        for (WaitlistEntry entry : waitingUsers) {
-            Optional<User> target = UserManager.getInstance()
-                    .findUserByEmail(entry.getUserEmail());
-            target.ifPresent(value ->
-                    notifier.notify(value,
-                            "The item \"" + item.getTitle() + "\" is now available!",
-                            "Good news! The item \"" + item.getTitle()
-                                    + "\" you requested is now available for borrowing."));
+    /**
+     * Applies what other circulation desks sharing the data files wrote since
+     * the last refresh to the items, users, borrow records and waitlist held
+     * here, and points the records at the current item and user instances.
+     * <p>
+     * Cheap when nothing changed (one small read per repository); a no-op for
+     * repositories that are not shared. Called before every borrow and return.
+     * </p>
+     *
+     * @return {@code true} if anything changed
+     * @throws ConcurrentUpdateException if unsaved local changes were dropped
+     *                                   because another desk changed the same
+     *                                   entities; everything is refreshed first
+     */
+    public boolean refresh() {
+        ChangeBarrier.enter();
+        try {
+            List<ConcurrentUpdateException> conflicts = new ArrayList<>();
+            boolean items = refreshReporting(itemManager::refresh, conflicts);
+            boolean users = userManager != null && refreshReporting(userManager::refresh, conflicts);
+            AtomicReference<EntityRepository.Changes<BorrowRecord>> applied =
+                    new AtomicReference<>(EntityRepository.Changes.none());
+            try {
+                recordChanges.refresh(borrowRecords, applied::set);
+            } catch (ConcurrentUpdateException e) {
+                conflicts.add(e);
+            }
+            EntityRepository.Changes<BorrowRecord> records = applied.get();
+            if (queries != null) {
+                records.upserted().forEach(r -> recordsById.put(r.getId(), r));
+                records.removed().forEach(recordsById::remove);
+            }
+            resolveReferences(items || users ? borrowRecords : records.upserted());
+            boolean waiting = waitlistRepo.refresh().map(stored -> {
+                waitlist.retainAll(stored);
+                waitlist.addAllAbsent(stored);
+                return true;
+            }).orElse(false);
+
+            if (!conflicts.isEmpty()) {
+                ConcurrentUpdateException first = conflicts.get(0);
+                conflicts.subList(1, conflicts.size()).forEach(first::addSuppressed);
+                throw first;
+            }
+            return items || users || !records.isEmpty() || waiting;
+        } finally {
+            ChangeBarrier.exit();
         }
+    }
 
-        waitlist.removeIf(w -> w.getItemId().equals(item.getId()));
-        waitlistRepo.saveAll(waitlist);
+    /**
+     * Runs a manager's refresh, collecting a reported conflict instead of
+     * stopping at it.
+     *
+     * @return {@code true} if anything changed; also if a conflict was reported,
+     *         which implies changes
+     */
+    private static boolean refreshReporting(IntSupplier refresh, List<ConcurrentUpdateException> conflicts) {
+        try {
+            return refresh.getAsInt() > 0;
+        } catch (ConcurrentUpdateException e) {
+            conflicts.add(e);
+            return true;
+        }
+    }
 
-        System.out.println("✅ Item returned successfully: " + item.getTitle());
+    // =====================================================================
+    // Archive
+    // =====================================================================
+
+    /**
+     * Sets the archive settled loans are moved to.
+     *
+     * @param archive the archive, or {@code null} to stop archiving
+     */
+    public void setArchive(BorrowRecordArchive archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Moves settled loans into the archive: records that were returned, whose
+     * fine is fully paid and that were due before {@code cutoff}.
+     * <p>
+     * The records are written to the archive first and only then removed from
+     * memory and the repository, so a failure leaves them in the hot set. They
+     * are not reported to the {@link ChangeFeed} as deleted.
+     * </p>
+     *
+     * @param cutoff loans due before this date are archived
+     * @return number of records archived; 0 if no archive is set
+     * @throws UncheckedIOException if the archive cannot be written
+     */
+    public int archiveSettledRecords(LocalDate cutoff) {
+        if (cutoff == null)
+            throw new IllegalArgumentException("Date cannot be null.");
+        BorrowRecordArchive target = archive;
+        if (target == null) return 0;
+
+        ChangeBarrier.enter();
+        try {
+            refresh();
+            List<BorrowRecord> settled = borrowRecords.stream()
+                    .filter(r -> r.isReturned()
+                            && r.getRemainingFine().compareTo(BigDecimal.ZERO) <= 0
+                            && r.getDueDate().isBefore(cutoff))
+                    .collect(Collectors.toList());
+            if (settled.isEmpty()) return 0;
+
+            try {
+                target.append(settled);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to archive borrow records", e);
+            }
+            Set<UUID> ids = new HashSet<>();
+            for (BorrowRecord r : settled) {
+                ids.add(r.getId());
+                recordsById.remove(r.getId());
+                recordChanges.archived(r);
+            }
+            borrowRecords.removeIf(r -> ids.contains(r.getId()));
+            recordChanges.save(borrowRecords);
+            LoggerUtils.log("borrow_log.txt",
+                    "Archived " + settled.size() + " settled borrow records due before " + cutoff);
+            return settled.size();
+        } finally {
+            ChangeBarrier.exit();
+        }
     }
 
 
@@ -224,12 +593,32 @@ public class BorrowManager {
      * @param date the date to check against
      */
     public void applyOverdueFines(LocalDate date) {
-        for (BorrowRecord r : borrowRecords) {
-            if (r.isOverdue(date)) {
-                r.applyFineToUser(date);
+        applyOverdueFines(overdueCandidates(date), date);
+    }
+
+    /**
+     * Applies overdue fines to the overdue records among {@code candidates}.
+     *
+     * @param candidates records to check
+     * @param date       the date to check against
+     * @return the overdue records
+     */
+    private List<BorrowRecord> applyOverdueFines(List<BorrowRecord> candidates, LocalDate date) {
+        List<BorrowRecord> overdue = new ArrayList<>();
+        ChangeBarrier.enter();
+        try {
+            for (BorrowRecord r : candidates) {
+                if (r.isOverdue(date)) {
+                    r.applyFineToUser(date);
+                    recordChanges.changed(r);
+                    overdue.add(r);
+                }
             }
+            recordChanges.save(borrowRecords);
+        } finally {
+            ChangeBarrier.exit();
         }
-        borrowRepo.saveAll(borrowRecords);
+        return overdue;
     }
 
     /**
@@ -254,6 +643,15 @@ public class BorrowManager {
         if (date == null)
             throw new IllegalArgumentException("Date cannot be null.");
 
+        ChangeBarrier.enter();
+        try {
+            payFine(user, amount, date);
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
+    private void payFine(User user, BigDecimal amount, LocalDate date) {
         // Make sure all fines are calculated/applied first
         applyOverdueFines(date);
 
@@ -261,7 +659,7 @@ public class BorrowManager {
 
         // Distribute payment over the user's borrow records
         for (BorrowRecord r : borrowRecords) {
-            if (!r.getUser().equals(user)) continue;
+            if (!Objects.equals(r.getUser(), user)) continue;
 
             r.calculateFine(date); // ensure fine is up-to-date
 
@@ -275,13 +673,14 @@ public class BorrowManager {
 
             BigDecimal payPart = remaining.min(recordRemaining);
             r.setFinePaid(r.getFinePaid().add(payPart));
+            recordChanges.changed(r);
             remaining = remaining.subtract(payPart);
         }
 
         // Deduct the amount from the user's fine balance
         user.payFine(amount);
 
-        borrowRepo.saveAll(borrowRecords);
+        recordChanges.save(borrowRecords);
     }
 
     /**
@@ -291,11 +690,89 @@ public class BorrowManager {
      * @return list of borrow records for that user
      */
     public List<BorrowRecord> getBorrowRecordsForUser(User user) {
+        if (queries != null && user != null) {
+            return held(queries.findByUser(user.getId()));
+        }
         return borrowRecords.stream()
-                .filter(r -> r.getUser().equals(user))
+                .filter(r -> Objects.equals(r.getUser(), user))
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Retrieves a user's borrow records, including archived history back to {@code since}.
+     *
+     * @param user  the user whose records to retrieve
+     * @param since earliest borrow date of interest
+     * @return records borrowed on or after {@code since}, plus the user's open loans
+     * @see #getBorrowHistory(LocalDate)
+     */
+    public List<BorrowRecord> getBorrowRecordsForUser(User user, LocalDate since) {
+        return getBorrowHistory(since).stream()
+                .filter(r -> Objects.equals(r.getUser(), user))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Returns borrow history reaching back to a given date.
+     * <p>
+     * Records held in memory are combined with archived records the repository
+     * keeps on disk (see {@link BorrowRecordRepository#loadArchived(LocalDate)})
+     * and those in the {@link BorrowRecordArchive}, which are loaded only by
+     * this call.
+     * </p>
+     *
+     * @param since earliest borrow date of interest (must not be {@code null})
+     * @return records borrowed on or after {@code since}, plus every open loan
+     */
+    public List<BorrowRecord> getBorrowHistory(LocalDate since) {
+        if (since == null)
+            throw new IllegalArgumentException("Date cannot be null.");
+
+        List<BorrowRecord> archived = new ArrayList<>(borrowRepo.loadArchived(since));
+        BorrowRecordArchive cold = archive;
+        if (cold != null) archived.addAll(cold.find(since));
+        resolveReferences(archived);
+
+        List<BorrowRecord> history = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        for (BorrowRecord r : borrowRecords) {
+            if (!r.isReturned() || !r.getBorrowDate().isBefore(since)) {
+                history.add(r);
+                seen.add(r.getId());
+            }
+        }
+        for (BorrowRecord r : archived) {
+            if (!r.getBorrowDate().isBefore(since) && seen.add(r.getId())) history.add(r);
+        }
+        return history;
+    }
+
+    /**
+     * Returns the records that may be overdue at {@code date}: the repository's
+     * answer if it can query, otherwise every record held in memory.
+     *
+     * @param date the date to check against
+     * @return records to check with {@link BorrowRecord#isOverdue(LocalDate)}
+     */
+    private List<BorrowRecord> overdueCandidates(LocalDate date) {
+        return (queries != null) ? held(queries.findOverdue(date)) : borrowRecords;
+    }
+
+    /**
+     * Maps records returned by a repository query to the instances held in memory.
+     *
+     * @param found records read from the repository
+     * @return the in-memory instances, in the order found
+     */
+    private List<BorrowRecord> held(List<BorrowRecord> found) {
+        List<BorrowRecord> result = new ArrayList<>(found.size());
+        for (BorrowRecord r : found) {
+            BorrowRecord held = recordsById.get(r.getId());
+            if (held != null) result.add(held);
+        }
+        return result;
+    }
+
     /**
      * Calculates the total fines owed by a user at a given date.
      *
@@ -304,8 +781,8 @@ public class BorrowManager {
      * @return total fine amount
      */
     public BigDecimal calculateTotalFines(User user, LocalDate date) {
-        return borrowRecords.stream()
-                .filter(r -> r.getUser().equals(user) && !r.isReturned())
+        return getBorrowRecordsForUser(user).stream()
+                .filter(r -> !r.isReturned())
                 .map(r -> r.getFine(date))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
@@ -317,21 +794,35 @@ public class BorrowManager {
      * @return list of overdue borrow records
      */
     public List<BorrowRecord> getOverdueItems(LocalDate date) {
-        applyOverdueFines(date);
-        return borrowRecords.stream()
-                .filter(r -> r.isOverdue(date))
-                .collect(Collectors.toList());
+        return applyOverdueFines(overdueCandidates(date), date);
     }
 
     /**
-     * Returns all borrow records in the system.
+     * Returns all borrow records held in memory.
+     * <p>
+     * With a repository that archives history (such as
+     * {@link librarySE.repo.PartitionedBorrowRecordRepository}) these are the open
+     * loans and recent records only; use {@link #getBorrowHistory(LocalDate)} to
+     * reach further back.
+     * </p>
      *
-     * @return list of all borrow records
+     * @return list of borrow records held in memory
      */
     public List<BorrowRecord> getAllBorrowRecords() {
         return List.copyOf(borrowRecords);
     }
 
+    /**
+     * Streams the borrow records held in memory when this method is called,
+     * without copying them. The stream reads a lock-free snapshot of the
+     * copy-on-write record list.
+     *
+     * @return a stream over the current borrow records
+     */
+    public Stream<BorrowRecord> streamAllBorrowRecords() {
+        return borrowRecords.stream();
+    }
+
     /**
      * Returns the current waitlist for inspection or debugging.
      *
@@ -340,4 +831,14 @@ public class BorrowManager {
     public List<WaitlistEntry> getWaitlist() {
         return List.copyOf(waitlist);
     }
+
+    /**
+     * Streams the waitlist entries present when this method is called, without
+     * copying them.
+     *
+     * @return a stream over the current waitlist entries
+     */
+    public Stream<WaitlistEntry> streamWaitlist() {
+        return waitlist.stream();
+    }
 }
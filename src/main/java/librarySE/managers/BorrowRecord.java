@@ -1,13 +1,25 @@
 package librarySE.managers;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
 import librarySE.strategy.FineStrategy;
+import librarySE.utils.JsonFields;
+import librarySE.utils.PersistenceHooks;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
+import librarySE.utils.StoredAsReference;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.function.Function;
 
 /**
  * Represents a single borrowing transaction between a {@link User} and a {@link LibraryItem}.
@@ -34,17 +46,49 @@ import java.time.temporal.ChronoUnit;
  * The class implements {@link Serializable} to support persistent storage
  * in JSON or binary format for future auditing and reporting.
  * </p>
+ *
+ * <p>
+ * The user and item are persisted by reference only ({@code userId} and
+ * {@code itemId}). After loading, {@link #resolveReferences(Function, Function)}
+ * replaces them with the canonical instances held by {@link UserManager} and
+ * {@link ItemManager}, so fine and copy updates made through a record affect
+ * the same objects the rest of the system sees.
+ * </p>
  */
-public class BorrowRecord implements Serializable {
+public class BorrowRecord implements Serializable, PersistenceHooks {
 
     /** Enumeration of borrowing states. */
     public enum Status { BORROWED, RETURNED }
 
-    /** The user who borrowed the item. */
-    private final User user;
+    /**
+     * Unique identifier of this borrowing transaction.
+     *
+     * <p>
+     * Not {@code final}: records persisted before identifiers were introduced
+     * are loaded without one and receive an identifier through {@link #ensureId()}.
+     * </p>
+     */
+    private UUID id;
+
+    /**
+     * The user who borrowed the item.
+     * <p>
+     * Not written to JSON (see {@link StoredAsReference}); older files that
+     * embed the full user are still read and then resolved by {@link #userId}.
+     * </p>
+     */
+    @StoredAsReference
+    private User user;
+
+    /** The borrowed item (e.g., Book, CD, Journal); persisted by reference like {@link #user}. */
+    @StoredAsReference
+    private LibraryItem item;
 
-    /** The borrowed item (e.g., Book, CD, Journal). */
-    private final LibraryItem item;
+    /** Identifier of {@link #user}; the persisted form of the reference. */
+    private UUID userId;
+
+    /** Identifier of {@link #item}; the persisted form of the reference. */
+    private UUID itemId;
 
     /**
      * Fine strategy defining rate and allowed borrow period.
@@ -104,14 +148,180 @@ public class BorrowRecord implements Serializable {
             throw new IllegalArgumentException("BorrowRecord: arguments cannot be null.");
         }
 
+        this.id = UUID.randomUUID();
         this.user = user;
         this.item = item;
+        this.userId = user.getId();
+        this.itemId = item.getId();
         this.fineStrategy = fineStrategy;
         this.borrowPeriodDays = fineStrategy.getBorrowPeriodDays();
         this.borrowDateTime = borrowDate.atStartOfDay();
         this.dueDateTime = borrowDateTime.plusDays(borrowPeriodDays);
     }
 
+    /**
+     * Restores a record from a binary snapshot. Like records read from JSON,
+     * it holds only the user and item ids until {@link #resolveReferences} is called.
+     */
+    private BorrowRecord(SnapshotInput in) throws IOException {
+        this.id = in.readUuid();
+        this.userId = in.readUuid();
+        this.itemId = in.readUuid();
+        this.borrowPeriodDays = in.readInt();
+        this.borrowDateTime = in.readDateTime();
+        this.dueDateTime = in.readDateTime();
+        this.fine = in.readMoney();
+        this.fineApplied = in.readBoolean();
+        this.finePaid = in.readMoney();
+        this.status = in.readEnum(Status.class);
+    }
+
+    /**
+     * Restores a record written by {@link #writeSnapshot(SnapshotOutput)}.
+     *
+     * @param in snapshot input
+     * @return the restored record
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static BorrowRecord readSnapshot(SnapshotInput in) throws IOException {
+        BorrowRecord r = new BorrowRecord(in);
+        r.ensureId();
+        return r;
+    }
+
+    /**
+     * Writes this record to a binary snapshot; the user and item are written by id.
+     *
+     * @param out snapshot output
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        fillReferenceIds();
+        out.writeUuid(getId());
+        out.writeUuid(userId);
+        out.writeUuid(itemId);
+        out.writeInt(borrowPeriodDays);
+        out.writeDateTime(borrowDateTime);
+        out.writeDateTime(dueDateTime);
+        out.writeMoney(fine);
+        out.writeBoolean(fineApplied);
+        out.writeMoney(finePaid);
+        out.writeEnum(status);
+    }
+
+    /**
+     * Restores a record read from JSON. Missing amounts and status keep the
+     * defaults of a new record; a missing id is left for {@link #ensureId()}.
+     */
+    private BorrowRecord(UUID id, User user, LibraryItem item, UUID userId, UUID itemId,
+                         int borrowPeriodDays, LocalDateTime borrowDateTime, LocalDateTime dueDateTime,
+                         BigDecimal fine, boolean fineApplied, BigDecimal finePaid, Status status) {
+        this.id = id;
+        this.user = user;
+        this.item = item;
+        this.userId = userId;
+        this.itemId = itemId;
+        this.borrowPeriodDays = borrowPeriodDays;
+        this.borrowDateTime = borrowDateTime;
+        this.dueDateTime = dueDateTime;
+        if (fine != null) this.fine = fine;
+        this.fineApplied = fineApplied;
+        if (finePaid != null) this.finePaid = finePaid;
+        if (status != null) this.status = status;
+        fillReferenceIds();
+    }
+
+    /**
+     * Copies this record's current state, e.g. to write it while the original
+     * goes on changing. Like a record read from JSON, the copy refers to its
+     * user and item by id only.
+     *
+     * @return an independent record with the same id, amounts and status
+     */
+    public BorrowRecord copy() {
+        fillReferenceIds();
+        return new BorrowRecord(id, null, null, userId, itemId, borrowPeriodDays,
+                borrowDateTime, dueDateTime, fine, fineApplied, finePaid, status);
+    }
+
+    /**
+     * Restores a record written by {@link #writeJson(JsonWriter)}.
+     * <p>
+     * Legacy records that embed the whole {@code "user"} and {@code "item"}
+     * are accepted; their ids are taken from the embedded entities. Fields may
+     * appear in any order and unknown fields are skipped.
+     * </p>
+     *
+     * @param in JSON input positioned at the record object
+     * @return the restored record, holding only ids until {@link #resolveReferences} is called
+     * @throws IOException if reading fails
+     */
+    public static BorrowRecord readJson(JsonReader in) throws IOException {
+        UUID id = null;
+        User user = null;
+        LibraryItem item = null;
+        UUID userId = null;
+        UUID itemId = null;
+        int borrowPeriodDays = 0;
+        LocalDateTime borrowDateTime = null;
+        LocalDateTime dueDateTime = null;
+        BigDecimal fine = null;
+        boolean fineApplied = false;
+        BigDecimal finePaid = null;
+        Status status = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = JsonFields.readUuid(in);
+                case "user" -> user = readNullable(in) ? null : User.readJson(in);
+                case "item" -> item = readNullable(in) ? null : LibraryItemFactory.readJson(in);
+                case "userId" -> userId = JsonFields.readUuid(in);
+                case "itemId" -> itemId = JsonFields.readUuid(in);
+                case "borrowPeriodDays" -> borrowPeriodDays = JsonFields.readInt(in);
+                case "borrowDateTime" -> borrowDateTime = JsonFields.readDateTime(in);
+                case "dueDateTime" -> dueDateTime = JsonFields.readDateTime(in);
+                case "fine" -> fine = JsonFields.readMoney(in);
+                case "fineApplied" -> fineApplied = JsonFields.readBoolean(in);
+                case "finePaid" -> finePaid = JsonFields.readMoney(in);
+                case "status" -> status = JsonFields.readEnum(in, Status.class);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new BorrowRecord(id, user, item, userId, itemId, borrowPeriodDays,
+                borrowDateTime, dueDateTime, fine, fineApplied, finePaid, status);
+    }
+
+    /** Consumes a JSON {@code null} if one is next; used for optional embedded objects. */
+    private static boolean readNullable(JsonReader in) throws IOException {
+        if (in.peek() != JsonToken.NULL) return false;
+        in.nextNull();
+        return true;
+    }
+
+    /**
+     * Writes this record as a JSON object; the user and item are written by id.
+     *
+     * @param out JSON output
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        fillReferenceIds();
+        out.beginObject();
+        JsonFields.writeUuid(out, "id", id);
+        JsonFields.writeUuid(out, "userId", userId);
+        JsonFields.writeUuid(out, "itemId", itemId);
+        JsonFields.writeInt(out, "borrowPeriodDays", borrowPeriodDays);
+        JsonFields.writeDateTime(out, "borrowDateTime", borrowDateTime);
+        JsonFields.writeDateTime(out, "dueDateTime", dueDateTime);
+        JsonFields.writeMoney(out, "fine", fine);
+        JsonFields.writeBoolean(out, "fineApplied", fineApplied);
+        JsonFields.writeMoney(out, "finePaid", finePaid);
+        JsonFields.writeEnum(out, "status", status);
+        out.endObject();
+    }
+
     /**
      * Ensures that {@link #fineStrategy} is initialized.
      * <p>
@@ -126,6 +336,84 @@ public class BorrowRecord implements Serializable {
         }
     }
 
+    /**
+     * Ensures that this record has an identifier.
+     * <p>
+     * Records loaded from files written before identifiers existed have no
+     * {@code id} after deserialization. This method assigns a new random one
+     * in that case, so repositories can detect legacy records and persist them
+     * again with their new identifier.
+     * </p>
+     *
+     * @return {@code true} if an identifier had to be assigned
+     */
+    public boolean ensureId() {
+        if (id != null) return false;
+        id = UUID.randomUUID();
+        return true;
+    }
+
+    /** @return the unique identifier of this borrowing transaction */
+    public UUID getId() {
+        ensureId();
+        return id;
+    }
+
+    /**
+     * Derives the reference ids from embedded entities when they are missing
+     * (records written before references were normalized).
+     */
+    private void fillReferenceIds() {
+        if (userId == null && user != null) userId = user.getId();
+        if (itemId == null && item != null) itemId = item.getId();
+    }
+
+    /** Fills reference ids of legacy records right after loading. */
+    @Override
+    public void afterRead() {
+        fillReferenceIds();
+    }
+
+    /** Makes sure the reference ids are written even for legacy records. */
+    @Override
+    public void beforeWrite() {
+        fillReferenceIds();
+    }
+
+    /**
+     * Replaces the user and item with the canonical instances found by the
+     * given lookups.
+     * <p>
+     * A reference that cannot be resolved keeps its current value: the copy
+     * embedded in a legacy file, or {@code null} if the entity no longer exists.
+     * </p>
+     *
+     * @param users lookup of users by id (may return {@code null})
+     * @param items lookup of items by id (may return {@code null})
+     * @return {@code true} if both references point to canonical instances
+     */
+    public boolean resolveReferences(Function<UUID, User> users,
+                                     Function<UUID, ? extends LibraryItem> items) {
+        fillReferenceIds();
+        User u = (userId == null) ? null : users.apply(userId);
+        LibraryItem i = (itemId == null) ? null : items.apply(itemId);
+        if (u != null) user = u;
+        if (i != null) item = i;
+        return u != null && i != null;
+    }
+
+    /** @return id of the user who borrowed the item */
+    public UUID getUserId() {
+        fillReferenceIds();
+        return userId;
+    }
+
+    /** @return id of the borrowed item */
+    public UUID getItemId() {
+        fillReferenceIds();
+        return itemId;
+    }
+
     /** @return the user who borrowed the item */
     public User getUser() { return user; }
 
@@ -194,6 +482,10 @@ public class BorrowRecord implements Serializable {
 
         // Make sure fineStrategy is ready (especially after deserialization)
         ensureFineStrategy();
+        if (fineStrategy == null) {
+            // The item no longer exists; keep the last persisted fine.
+            return;
+        }
 
         if (!isReturned() && currentDate.atStartOfDay().isAfter(dueDateTime)) {
             long daysOverdue =
@@ -211,7 +503,7 @@ public class BorrowRecord implements Serializable {
      */
     public void applyFineToUser(LocalDate currentDate) {
         calculateFine(currentDate);
-        if (!fineApplied && fine.compareTo(BigDecimal.ZERO) > 0) {
+        if (!fineApplied && user != null && fine.compareTo(BigDecimal.ZERO) > 0) {
             user.addFine(fine);
             fineApplied = true;
         }
@@ -256,8 +548,8 @@ public class BorrowRecord implements Serializable {
     public String toString() {
         return "%s borrowed \"%s\" on %s (due: %s) | Status: %s | Fine: %s"
                 .formatted(
-                        user.getUsername(),
-                        item.getTitle(),
+                        (user != null) ? user.getUsername() : String.valueOf(userId),
+                        (item != null) ? item.getTitle() : String.valueOf(itemId),
                         getBorrowDate(),
                         getDueDate(),
                         status,
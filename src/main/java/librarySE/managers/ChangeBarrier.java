@@ -0,0 +1,80 @@
+package librarySE.managers;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Barrier between the managers' state-changing operations and readers that
+ * need a consistent view across all managers, such as a hot backup.
+ * <p>
+ * Every operation of {@link ItemManager}, {@link UserManager} and
+ * {@link BorrowManager} that changes entities runs between {@link #enter()} and
+ * {@link #exit()}. Any number of operations may do so at once; they only
+ * exclude {@link #quiesce(Supplier)}, which waits for the operations in
+ * progress to finish, runs its action while no other operation starts, and
+ * then lets them continue. A borrow therefore appears in the action's view
+ * either completely (item and borrow record) or not at all.
+ * </p>
+ * <p>
+ * The lock is fair, so a waiting {@code quiesce} is not starved by a steady
+ * stream of checkouts; operations arriving meanwhile wait for the action
+ * instead. Keep the action short (copy state, do not write files). Operations
+ * may nest (a borrow saves its item through {@link ItemManager}).
+ * </p>
+ *
+ * @author Malak
+ */
+public final class ChangeBarrier {
+
+    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock(true);
+
+    private ChangeBarrier() {}
+
+    /** Marks the start of a state-changing operation; waits while an action is quiescing. */
+    static void enter() {
+        LOCK.readLock().lock();
+    }
+
+    /** Marks the end of an operation started with {@link #enter()}. */
+    static void exit() {
+        LOCK.readLock().unlock();
+    }
+
+    /**
+     * Result of {@link #quiesce(Supplier)}.
+     *
+     * @param value  what the action returned
+     * @param waited time spent waiting for operations in progress to finish
+     * @param held   time operations were held back while the action ran
+     * @param <T>    type of the action's result
+     */
+    public record Quiesced<T>(T value, Duration waited, Duration held) { }
+
+    /**
+     * Runs an action while no manager operation is in progress.
+     *
+     * @param action action to run, typically copying the managers' state
+     * @param <T>    type of the action's result
+     * @return the action's result and how long the barrier took
+     * @throws IllegalStateException if called from within a manager operation,
+     *                               which would wait for itself
+     */
+    public static <T> Quiesced<T> quiesce(Supplier<T> action) {
+        Objects.requireNonNull(action, "action");
+        if (LOCK.getReadHoldCount() > 0)
+            throw new IllegalStateException("Cannot quiesce from within a manager operation.");
+
+        long start = System.nanoTime();
+        LOCK.writeLock().lock();
+        long acquired = System.nanoTime();
+        try {
+            T value = action.get();
+            return new Quiesced<>(value, Duration.ofNanos(acquired - start),
+                    Duration.ofNanos(System.nanoTime() - acquired));
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package librarySE.managers;
+
+import librarySE.repo.ChangeLog;
+import librarySE.utils.LoggerUtils;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Connects the managers to the {@link ChangeLog} that records their changes
+ * for incremental consumers.
+ * <p>
+ * Once a log is {@linkplain #install(ChangeLog) installed}, every entity that
+ * {@link ItemManager}, {@link UserManager} or {@link BorrowManager} persists
+ * (and every waitlist entry added or removed) is appended to it right after the
+ * repository stored the write; writes deferred by a
+ * {@link librarySE.repo.PersistenceCoordinator} are appended when they are
+ * flushed, and not at all if they are dropped. Changes applied from other desks by
+ * {@code refresh()} are not recorded; they belong to those desks' logs.
+ * Without a log nothing is recorded and nothing is serialized.
+ * </p>
+ * <p>
+ * Recording never fails a manager operation: the change is already persisted
+ * when it is recorded. A failure is logged to {@code changes_log.txt}.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class ChangeFeed {
+
+    private static volatile ChangeLog log;
+
+    private ChangeFeed() {}
+
+    /**
+     * Starts recording the managers' changes to a log.
+     *
+     * @param changeLog the log; {@code null} stops recording
+     */
+    public static void install(ChangeLog changeLog) {
+        log = changeLog;
+    }
+
+    /** @return the log changes are recorded to, or {@code null} if none is installed */
+    public static ChangeLog installed() {
+        return log;
+    }
+
+    /** @return {@code true} if changes are being recorded */
+    static boolean active() {
+        return log != null;
+    }
+
+    /**
+     * Records persisted changes in the installed log, if any.
+     *
+     * @param mutations changes in the order they were persisted
+     */
+    static void record(List<ChangeLog.Mutation> mutations) {
+        ChangeLog current = log;
+        if (current == null || mutations.isEmpty()) return;
+        try {
+            current.append(mutations);
+        } catch (IOException | RuntimeException e) {
+            LoggerUtils.log("changes_log.txt",
+                    "Failed to record " + mutations.size() + " changes → " + e.getMessage());
+        }
+    }
+}
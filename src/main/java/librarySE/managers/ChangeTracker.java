@@ -0,0 +1,443 @@
+package librarySE.managers;
+
+import librarySE.repo.ChangeLog;
+import librarySE.repo.ConcurrentUpdateException;
+import librarySE.repo.EntityRepository;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Records which entities a manager changed or removed since its last save,
+ * and persists them through an {@link EntityRepository}.
+ * <p>
+ * If the repository {@linkplain EntityRepository#supportsIncrementalWrites()
+ * supports incremental writes}, {@link #save(List)} writes only the recorded
+ * entities with {@link EntityRepository#upsert} and {@link EntityRepository#delete}.
+ * Otherwise it falls back to {@link EntityRepository#saveAll(List)} with the
+ * full list, exactly as before change tracking existed.
+ * </p>
+ * <p>
+ * Entities written successfully are also recorded in the {@link ChangeFeed}
+ * under the tracker's {@link ChangeLog.Entity} kind, if one was given. If the
+ * repository defers its writes ({@link EntityRepository#notifyWhenStored}), they
+ * are recorded when the repository reports them stored, so writes it drops are
+ * never recorded.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * item.borrow();
+ * tracker.changed(item);
+ * tracker.save(items);   // upserts one item, or rewrites all items
+ * }</pre>
+ *
+ * @param <T> entity type
+ * @author Eman
+ */
+final class ChangeTracker<T> {
+
+    private final EntityRepository<T> repo;
+    private final Function<T, UUID> idOf;
+
+    /** Kind recorded in the {@link ChangeFeed}; {@code null} to record nothing. */
+    private final ChangeLog.Entity entity;
+
+    /** Entities changed since the last save, by id; guarded by {@code this}. */
+    private final Map<UUID, T> changed = new LinkedHashMap<>();
+
+    /** Entities removed since the last save, by id; guarded by {@code this}. */
+    private final Map<UUID, T> removed = new LinkedHashMap<>();
+
+    /**
+     * Entities moved to an archive since the last save, by id; deleted from the
+     * repository like removed ones but not recorded in the {@link ChangeFeed},
+     * since they still exist. Guarded by {@code this}.
+     */
+    private final Map<UUID, T> archived = new LinkedHashMap<>();
+
+    /** Whether the repository reports stored writes to {@link Stored} instead of storing them at once. */
+    private final boolean deferred;
+
+    /**
+     * With a deferring repository: ids whose pending delete is a removal to record,
+     * not a move to the archive. Guarded by {@code this}.
+     */
+    private final Set<UUID> removalsInFlight = new HashSet<>();
+
+    /**
+     * With a deferring repository: changes written as part of a full list,
+     * recorded once a full list is stored. Guarded by {@code this}.
+     */
+    private final List<ChangeLog.Mutation> awaitingFullList = new ArrayList<>();
+
+    /** Told which changed entities were stored; see {@link #whenStored}. */
+    private volatile Consumer<List<T>> storedListener = written -> { };
+
+    /**
+     * @param repo repository the entities are persisted to
+     * @param idOf extracts the identifier of an entity
+     */
+    ChangeTracker(EntityRepository<T> repo, Function<T, UUID> idOf) {
+        this(repo, idOf, null);
+    }
+
+    /**
+     * @param repo   repository the entities are persisted to
+     * @param idOf   extracts the identifier of an entity
+     * @param entity kind under which saved entities are recorded in the {@link ChangeFeed}
+     */
+    ChangeTracker(EntityRepository<T> repo, Function<T, UUID> idOf, ChangeLog.Entity entity) {
+        this.repo = Objects.requireNonNull(repo, "repo");
+        this.idOf = Objects.requireNonNull(idOf, "idOf");
+        this.entity = entity;
+        this.deferred = entity != null && repo.notifyWhenStored(new Stored());
+    }
+
+    /**
+     * Registers a callback told which added or modified entities were stored,
+     * e.g. so a manager can stop holding entities the repository now serves.
+     * With a deferring repository it runs when the repository reports them
+     * stored, possibly on another thread; entities it stores as part of a full
+     * list are not reported.
+     *
+     * @param listener receives the stored entities
+     */
+    void whenStored(Consumer<List<T>> listener) {
+        this.storedListener = Objects.requireNonNull(listener, "listener");
+    }
+
+    /**
+     * Records that an entity was added or modified.
+     *
+     * @param entity the entity; {@code null} is ignored
+     */
+    synchronized void changed(T entity) {
+        if (entity == null) return;
+        UUID id = idOf.apply(entity);
+        removed.remove(id);
+        archived.remove(id);
+        changed.put(id, entity);
+    }
+
+    /**
+     * Records that an entity was removed.
+     *
+     * @param entity the entity; {@code null} is ignored
+     */
+    synchronized void removed(T entity) {
+        if (entity == null) return;
+        UUID id = idOf.apply(entity);
+        changed.remove(id);
+        archived.remove(id);
+        removed.put(id, entity);
+    }
+
+    /**
+     * Records that an entity was moved out of the repository into an archive.
+     *
+     * @param entity the entity; {@code null} is ignored
+     */
+    synchronized void archived(T entity) {
+        if (entity == null) return;
+        UUID id = idOf.apply(entity);
+        changed.remove(id);
+        removed.remove(id);
+        archived.put(id, entity);
+    }
+
+    /**
+     * Drops whatever was recorded for an entity, e.g. a new one whose operation
+     * was abandoned before it was written.
+     *
+     * @param entity the entity; {@code null} is ignored
+     */
+    synchronized void forget(T entity) {
+        if (entity == null) return;
+        UUID id = idOf.apply(entity);
+        changed.remove(id);
+        removed.remove(id);
+        archived.remove(id);
+    }
+
+    /**
+     * Persists the recorded changes.
+     * <p>
+     * If a write fails, the entities not yet written stay recorded (unless they
+     * were recorded again meanwhile), so the next save retries them. An entity
+     * rejected with a {@link ConcurrentUpdateException} is not: it is an
+     * outdated copy, which the caller refreshes before deciding again.
+     * </p>
+     *
+     * @param all the manager's complete list, used when only full saves are possible
+     */
+    void save(List<T> all) {
+        save(() -> all);
+    }
+
+    /**
+     * Persists the recorded changes, like {@link #save(List)}, building the
+     * complete list only if the repository needs it.
+     *
+     * @param all supplies the manager's complete list when only full saves are possible
+     */
+    void save(Supplier<List<T>> all) {
+        List<T> toArchive;
+        List<T> toDelete;
+        List<T> toUpsert;
+        synchronized (this) {
+            toArchive = new ArrayList<>(archived.values());
+            toDelete = new ArrayList<>(removed.values());
+            toUpsert = new ArrayList<>(changed.values());
+            archived.clear();
+            removed.clear();
+            changed.clear();
+        }
+
+        if (!repo.supportsIncrementalWrites()) {
+            try {
+                saveFullList(all.get(), toDelete, toUpsert);
+            } catch (RuntimeException e) {
+                UUID rejected = (e instanceof ConcurrentUpdateException c) ? c.getId() : null;
+                requeue(archived, toArchive, rejected);
+                requeue(removed, toDelete, rejected);
+                requeue(changed, toUpsert, rejected);
+                throw e;
+            }
+            return;
+        }
+
+        if (deferred) inFlight(toArchive, toDelete);
+        int archivedCount = 0;
+        List<T> deleted = new ArrayList<>(toDelete.size());
+        List<T> upserted = new ArrayList<>(toUpsert.size());
+        UUID rejected = null;
+        try {
+            for (T e : toArchive) {
+                repo.delete(e);
+                archivedCount++;
+            }
+            for (T e : toDelete) {
+                repo.delete(e);
+                deleted.add(e);
+            }
+            for (T e : toUpsert) {
+                repo.upsert(e);
+                upserted.add(e);
+            }
+        } catch (ConcurrentUpdateException e) {
+            rejected = e.getId();
+            throw e;
+        } finally {
+            requeue(archived, toArchive.subList(archivedCount, toArchive.size()), rejected);
+            requeue(removed, toDelete.subList(deleted.size(), toDelete.size()), rejected);
+            requeue(changed, toUpsert.subList(upserted.size(), toUpsert.size()), rejected);
+            record(ChangeLog.Operation.DELETE, deleted);
+            record(ChangeLog.Operation.UPSERT, upserted);
+            if (!deferred) reportStored(upserted);
+        }
+    }
+
+    /**
+     * Records unwritten entities again, except those recorded anew since the
+     * save took them, whose newer state wins, and the one the repository
+     * rejected as outdated.
+     */
+    private synchronized void requeue(Map<UUID, T> pending, List<T> unwritten, UUID rejected) {
+        for (T e : unwritten) {
+            UUID id = idOf.apply(e);
+            if (id.equals(rejected) || changed.containsKey(id) || removed.containsKey(id) || archived.containsKey(id)) continue;
+            pending.put(id, e);
+        }
+    }
+
+    /**
+     * Persists the complete list and forgets all recorded changes.
+     * Used when a caller cannot tell which entities it modified.
+     *
+     * @param all the manager's complete list
+     */
+    void saveAll(List<T> all) {
+        clear();
+        saveFullList(all, List.of(), all);
+    }
+
+    /**
+     * Writes the complete list and records the changes it carries. With a
+     * deferring repository they wait for {@link Stored#fullListWritten}; if the
+     * repository refuses the list right away they are withdrawn, since the
+     * caller saves them again and they are recorded with that save.
+     */
+    private void saveFullList(List<T> all, List<T> deleted, List<T> upserted) {
+        List<ChangeLog.Mutation> awaiting = new ArrayList<>();
+        awaiting.addAll(awaitFullList(ChangeLog.Operation.DELETE, deleted));
+        awaiting.addAll(awaitFullList(ChangeLog.Operation.UPSERT, upserted));
+        try {
+            repo.saveAll(all);
+        } catch (RuntimeException e) {
+            withdraw(awaiting);
+            throw e;
+        }
+        record(ChangeLog.Operation.DELETE, deleted);
+        record(ChangeLog.Operation.UPSERT, upserted);
+        if (!deferred) reportStored(upserted);
+    }
+
+    /**
+     * Records written entities in the {@link ChangeFeed}, if one is installed.
+     * With a deferring repository, {@link Stored} records them instead.
+     */
+    private void record(ChangeLog.Operation operation, List<T> entities) {
+        if (deferred || entity == null || entities.isEmpty() || !ChangeFeed.active()) return;
+        ChangeFeed.record(mutations(operation, entities));
+    }
+
+    private void reportStored(List<T> entities) {
+        if (!entities.isEmpty()) storedListener.accept(entities);
+    }
+
+    private List<ChangeLog.Mutation> mutations(ChangeLog.Operation operation, List<T> entities) {
+        List<ChangeLog.Mutation> mutations = new ArrayList<>(entities.size());
+        for (T e : entities) mutations.add(new ChangeLog.Mutation(entity, operation, idOf.apply(e), e));
+        return mutations;
+    }
+
+    /**
+     * With a deferring repository, holds changes written in a full list until it is stored.
+     *
+     * @return the changes held
+     */
+    private synchronized List<ChangeLog.Mutation> awaitFullList(ChangeLog.Operation operation, List<T> entities) {
+        if (!deferred || entities.isEmpty() || !ChangeFeed.active()) return List.of();
+        List<ChangeLog.Mutation> mutations = mutations(operation, entities);
+        awaitingFullList.addAll(mutations);
+        return mutations;
+    }
+
+    /** Stops holding changes whose full list was not accepted; those already handled are skipped. */
+    private synchronized void withdraw(List<ChangeLog.Mutation> mutations) {
+        if (mutations.isEmpty()) return;
+        Set<ChangeLog.Mutation> withdrawn = Collections.newSetFromMap(new IdentityHashMap<>());
+        withdrawn.addAll(mutations);
+        awaitingFullList.removeIf(withdrawn::contains);
+    }
+
+    /** With a deferring repository, notes which of the deletes about to be handed to it are removals. */
+    private synchronized void inFlight(List<T> toArchive, List<T> toDelete) {
+        toArchive.forEach(e -> removalsInFlight.remove(idOf.apply(e)));
+        toDelete.forEach(e -> removalsInFlight.add(idOf.apply(e)));
+    }
+
+    /** Records what a deferring repository reports stored. */
+    private final class Stored implements EntityRepository.WriteListener<T> {
+
+        @Override
+        public void fullListWritten(boolean stored) {
+            List<ChangeLog.Mutation> mutations;
+            synchronized (ChangeTracker.this) {
+                mutations = new ArrayList<>(awaitingFullList);
+                awaitingFullList.clear();
+            }
+            if (stored) ChangeFeed.record(mutations);
+        }
+
+        @Override
+        public void stored(List<T> deleted, List<T> upserted) {
+            List<T> removals = new ArrayList<>(deleted.size());
+            synchronized (ChangeTracker.this) {
+                for (T e : deleted) {
+                    if (removalsInFlight.remove(idOf.apply(e))) removals.add(e);
+                }
+            }
+            reportStored(upserted);
+            if (!ChangeFeed.active()) return;
+            List<ChangeLog.Mutation> mutations = mutations(ChangeLog.Operation.DELETE, removals);
+            mutations.addAll(mutations(ChangeLog.Operation.UPSERT, upserted));
+            ChangeFeed.record(mutations);
+        }
+    }
+
+    /**
+     * Applies what other processes wrote (see {@link EntityRepository#refresh()})
+     * to the manager's list: changed entities replace the instances held, new
+     * ones are appended and removed ones dropped.
+     * <p>
+     * Local changes not yet written for those entities were made to replaced
+     * copies and can no longer be written. They are dropped and reported: the
+     * list is brought up to date first, then a {@link ConcurrentUpdateException}
+     * names the first of them. Removing an entity another process removed too
+     * is no conflict.
+     * </p>
+     *
+     * @param all the manager's complete list
+     * @return the changes applied; empty if there were none
+     * @throws ConcurrentUpdateException if unwritten local changes were dropped
+     */
+    EntityRepository.Changes<T> refresh(CopyOnWriteArrayList<T> all) {
+        return refresh(all, applied -> { });
+    }
+
+    /**
+     * Like {@link #refresh(CopyOnWriteArrayList)}, also telling {@code applied}
+     * the changes applied before a conflict is reported, so the caller can
+     * update what it derives from the list.
+     *
+     * @param all     the manager's complete list
+     * @param applied receives the changes applied, if there were any
+     * @return the changes applied; empty if there were none
+     * @throws ConcurrentUpdateException if unwritten local changes were dropped
+     */
+    EntityRepository.Changes<T> refresh(CopyOnWriteArrayList<T> all, Consumer<EntityRepository.Changes<T>> applied) {
+        EntityRepository.Changes<T> remote = repo.refresh();
+        if (remote.isEmpty()) return remote;
+
+        Map<UUID, T> upserted = new LinkedHashMap<>();
+        remote.upserted().forEach(e -> upserted.put(idOf.apply(e), e));
+        List<UUID> conflicts = new ArrayList<>();
+        synchronized (this) {
+            for (UUID id : upserted.keySet()) {
+                boolean pending = changed.remove(id) != null;
+                pending |= removed.remove(id) != null;
+                pending |= archived.remove(id) != null;
+                if (pending) conflicts.add(id);
+            }
+            for (UUID id : remote.removed()) {
+                if (changed.remove(id) != null) conflicts.add(id);
+                removed.remove(id);
+                archived.remove(id);
+            }
+        }
+
+        Set<UUID> held = new HashSet<>();
+        all.replaceAll(e -> {
+            UUID id = idOf.apply(e);
+            held.add(id);
+            return upserted.getOrDefault(id, e);
+        });
+        all.removeIf(e -> remote.removed().contains(idOf.apply(e)));
+        upserted.keySet().removeAll(held);
+        all.addAll(upserted.values());
+        applied.accept(remote);
+
+        if (!conflicts.isEmpty()) {
+            throw new ConcurrentUpdateException(conflicts.get(0), conflicts.size()
+                    + " unsaved change(s) dropped: changed or removed by another process meanwhile, e.g. "
+                    + conflicts.get(0));
+        }
+        return remote;
+    }
+
+    /** @return number of entities waiting to be written */
+    synchronized int pending() {
+        return changed.size() + removed.size() + archived.size();
+    }
+
+    private synchronized void clear() {
+        changed.clear();
+        removed.clear();
+        archived.clear();
+    }
+}
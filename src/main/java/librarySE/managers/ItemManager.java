@@ -1,14 +1,21 @@
 package librarySE.managers;
 
 import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
 import librarySE.managers.notifications.EmailNotifier;
+import librarySE.repo.ChangeLog;
+import librarySE.repo.ConcurrentUpdateException;
 import librarySE.repo.ItemRepository;
 import librarySE.search.SearchStrategy;
 import librarySE.utils.LoggerUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The {@code ItemManager} class manages all {@link LibraryItem} objects in the system,
@@ -27,6 +34,18 @@ import java.util.stream.Collectors;
  * while searching behavior is delegated to the injected {@link SearchStrategy} instance.
  * Thread safety is achieved using a {@link CopyOnWriteArrayList} for concurrent access.</p>
  *
+ * <p>If the repository {@linkplain ItemRepository#readsOnDemand() reads on demand},
+ * items are not copied into memory at startup: only items added since then are
+ * held here until the repository has stored them, and all others are read from
+ * the repository by id or streamed from it when they are needed.</p>
+ *
+ * <p>Changed items are tracked individually, so a repository that supports
+ * incremental writes (see {@link ItemRepository#supportsIncrementalWrites()})
+ * persists only the items that were added, modified or deleted.</p>
+ *
+ * <p>Operations that change items run inside the {@link ChangeBarrier}, so a
+ * consistent copy of all managers (e.g. for a hot backup) never sees half of one.</p>
+ *
  * <p><b>Design Patterns used:</b> Singleton, Strategy, and Observer (via Email notifications).</p>
  *
  * @author Eman
@@ -36,12 +55,24 @@ public class ItemManager {
     /** The single instance of {@code ItemManager} (Singleton). */
     private static ItemManager instance;
 
-    /** Thread-safe list that holds all library items. */
+    /**
+     * Thread-safe list that holds all library items; with a repository that
+     * reads on demand, only the added items the repository has not stored yet.
+     */
     private final CopyOnWriteArrayList<LibraryItem> items;
 
+    /** Whether the repository reads items on demand instead of all being held in {@link #items}. */
+    private final boolean onDemand;
+
+    /** With a repository that reads on demand: ids of the items deleted since startup. */
+    private final Set<UUID> deletedIds = ConcurrentHashMap.newKeySet();
+
     /** Repository responsible for persisting and loading library items. */
     private final ItemRepository repo;
 
+    /** Items changed since the last save. */
+    private final ChangeTracker<LibraryItem> changes;
+
     /** Strategy used for performing search operations. */
     private SearchStrategy searchStrategy;
 
@@ -55,7 +86,10 @@ public class ItemManager {
         this.items = new CopyOnWriteArrayList<>();
         this.repo = Objects.requireNonNull(repo, "repo must not be null");
         this.searchStrategy = Objects.requireNonNull(searchStrategy, "searchStrategy must not be null");
-        this.items.addAll(repo.loadAll());
+        this.changes = new ChangeTracker<>(repo, LibraryItem::getId, ChangeLog.Entity.ITEM);
+        this.onDemand = repo.readsOnDemand();
+        if (!onDemand) this.items.addAll(repo.loadAll());
+        else changes.whenStored(this::release);
     }
 
     /**
@@ -115,8 +149,15 @@ public class ItemManager {
         if (!admin.isAdmin())
             throw new IllegalArgumentException("Only admins can add items.");
 
-        items.add(item);
-        repo.saveAll(items);
+        ChangeBarrier.enter();
+        try {
+            deletedIds.remove(item.getId());
+            items.add(item);
+            changes.changed(item);
+            changes.save(this::fullList);
+        } finally {
+            ChangeBarrier.exit();
+        }
 
         EmailNotifier emailNotifier = new EmailNotifier();
         try {
@@ -138,6 +179,42 @@ public class ItemManager {
         }
     }
 
+    /**
+     * Adds a batch of {@link LibraryItem}s with a single save and without
+     * notifying users.
+     * <p>
+     * Intended for bulk imports (see {@code librarySE.catalog.CatalogImporter}),
+     * where notifying every user of every item and rewriting the catalog per
+     * item would be impractical. Duplicate detection is the caller's responsibility.
+     * </p>
+     *
+     * @param batch the items to add; must not be {@code null} or contain {@code null}
+     * @param admin the {@link Admin} performing the operation; must not be {@code null}
+     *
+     * @throws NullPointerException if {@code batch}, one of its items or {@code admin} is {@code null}
+     * @throws IllegalArgumentException if the admin does not have sufficient privileges
+     */
+    public void addItems(List<LibraryItem> batch, Admin admin) {
+        Objects.requireNonNull(admin, "admin must not be null");
+        Objects.requireNonNull(batch, "batch must not be null");
+
+        if (!admin.isAdmin())
+            throw new IllegalArgumentException("Only admins can add items.");
+        if (batch.isEmpty())
+            return;
+
+        List<LibraryItem> copy = List.copyOf(batch);
+        ChangeBarrier.enter();
+        try {
+            copy.forEach(i -> deletedIds.remove(i.getId()));
+            items.addAll(copy);
+            copy.forEach(changes::changed);
+            changes.save(this::fullList);
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
     /**
      * Deletes an existing {@link LibraryItem} from the system.
      * <p>
@@ -157,8 +234,15 @@ public class ItemManager {
         if (!admin.isAdmin())
             throw new IllegalArgumentException("Only admins can delete items.");
 
-        items.remove(item);
-        repo.saveAll(items);
+        ChangeBarrier.enter();
+        try {
+            items.remove(item);
+            if (onDemand) deletedIds.add(item.getId());
+            changes.removed(item);
+            changes.save(this::fullList);
+        } finally {
+            ChangeBarrier.exit();
+        }
     }
 
     /**
@@ -177,9 +261,10 @@ public class ItemManager {
             throw new IllegalArgumentException("Keyword cannot be null.");
         String k = keyword.trim().toLowerCase();
 
-        return items.stream()
-                .filter(i -> searchStrategy.matches(i, k))
-                .collect(Collectors.toList());
+        try (Stream<LibraryItem> all = all()) {
+            return all.filter(i -> searchStrategy.matches(i, k))
+                    .collect(Collectors.toList());
+        }
     }
 
     /**
@@ -191,17 +276,166 @@ public class ItemManager {
      * @return an immutable list containing all library items
      */
     public List<LibraryItem> getAllItems() {
-        return List.copyOf(items);
+        if (!onDemand) return List.copyOf(items);
+        try (Stream<LibraryItem> all = all()) {
+            return all.toList();
+        }
+    }
+
+    /**
+     * Streams the items present when this method is called, without copying them.
+     * <p>
+     * The items are held in a copy-on-write list, so the stream reads a
+     * lock-free snapshot that later additions and deletions do not affect.
+     * With a repository that reads on demand, items are read as the stream
+     * reaches them, and the stream must be closed.
+     * </p>
+     *
+     * @return a stream over the current items
+     */
+    public Stream<LibraryItem> streamAllItems() {
+        return all();
+    }
+
+    /**
+     * Captures the items as they are now, to be read while changes go on.
+     * <p>
+     * Call it inside {@link ChangeBarrier#quiesce} so the capture is
+     * consistent with the other managers'. Held items are copied, so later
+     * changes do not show; with a repository that reads on demand, the stored
+     * items are captured by the repository ({@link ItemRepository#capture()}).
+     * </p>
+     *
+     * @return supplies streams over the captured items; each stream must be closed
+     */
+    public Supplier<Stream<LibraryItem>> captureItems() {
+        List<LibraryItem> copies = items.stream().map(LibraryItemFactory::copyOf).toList();
+        if (!onDemand) return copies::stream;
+        Set<UUID> skipped = new HashSet<>(deletedIds);
+        copies.forEach(i -> skipped.add(i.getId()));
+        Supplier<Stream<LibraryItem>> stored = repo.capture();
+        return () -> Stream.concat(stored.get().filter(i -> !skipped.contains(i.getId())), copies.stream());
+    }
+
+    /**
+     * Finds the item currently held with the given identifier.
+     * <p>
+     * After {@link #refresh()} an item changed by another process is held as a
+     * new instance; callers holding an older instance can look up the current one.
+     * </p>
+     *
+     * @param id the item identifier
+     * @return the item, or empty if no item has this id
+     */
+    public Optional<LibraryItem> findItemById(UUID id) {
+        if (id == null) return Optional.empty();
+        Optional<LibraryItem> held = items.stream().filter(i -> id.equals(i.getId())).findFirst();
+        if (held.isPresent() || !onDemand || deletedIds.contains(id)) return held;
+        return repo.findById(id);
+    }
+
+    /**
+     * Returns a lookup of items by id for resolving many references at once:
+     * an index of all items, or with a repository that reads on demand,
+     * {@link #findItemById(UUID)}, so only the items looked up are read.
+     *
+     * @return function returning the item with an id, or {@code null} if there is none
+     */
+    Function<UUID, LibraryItem> itemLookup() {
+        if (onDemand) return id -> findItemById(id).orElse(null);
+        Map<UUID, LibraryItem> byId = new HashMap<>();
+        for (LibraryItem i : items) byId.put(i.getId(), i);
+        return byId::get;
+    }
+
+    /**
+     * Applies the changes other processes sharing the item files made since
+     * the last refresh: changed items replace the instances held here.
+     * <p>
+     * Cheap when nothing changed; a no-op for repositories that are not shared.
+     * </p>
+     *
+     * @return number of items added, changed or removed elsewhere
+     * @throws ConcurrentUpdateException if unsaved changes to items another
+     *                                   process changed were dropped; the
+     *                                   items are refreshed all the same
+     */
+    public int refresh() {
+        ChangeBarrier.enter();
+        try {
+            var remote = changes.refresh(items);
+            return remote.upserted().size() + remote.removed().size();
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
+    /**
+     * Persists changes made to a single item (e.g. its title, price, or copy counts).
+     * <p>
+     * With a repository that supports incremental writes only this item is
+     * written; otherwise the full list is saved.
+     * </p>
+     *
+     * @param item the modified item; must not be {@code null}
+     * @throws NullPointerException if {@code item} is {@code null}
+     */
+    public void saveItem(LibraryItem item) {
+        Objects.requireNonNull(item, "item must not be null");
+        ChangeBarrier.enter();
+        try {
+            changes.changed(item);
+            changes.save(this::fullList);
+        } finally {
+            ChangeBarrier.exit();
+        }
     }
 
     /**
      * Persists the current list of items to the underlying repository.
      * <p>
-     * Call this after GUI edit operations (e.g. changing title, price, or copies)
-     * to flush all changes to the JSON file.
+     * Rewrites all items; prefer {@link #saveItem(LibraryItem)} when the
+     * modified item is known.
      * </p>
      */
     public void saveAll() {
-        repo.saveAll(items);
+        ChangeBarrier.enter();
+        try {
+            changes.saveAll(fullList());
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
+    /**
+     * Streams all items: with a repository that reads on demand, the stored
+     * items not deleted since startup (read through the repository's
+     * {@link ItemRepository#stream()}) followed by the added items it has not
+     * stored yet.
+     */
+    private Stream<LibraryItem> all() {
+        if (!onDemand) return items.stream();
+        List<LibraryItem> added = List.copyOf(items);
+        Set<UUID> skipped = new HashSet<>(deletedIds);
+        added.forEach(i -> skipped.add(i.getId()));
+        return Stream.concat(repo.stream().filter(i -> !skipped.contains(i.getId())), added.stream());
+    }
+
+    /**
+     * With a repository that reads on demand: stops holding added items once
+     * they are stored, since the repository serves them from then on.
+     */
+    private void release(List<LibraryItem> stored) {
+        Set<LibraryItem> written = Collections.newSetFromMap(new IdentityHashMap<>());
+        written.addAll(stored);
+        items.removeIf(written::contains);
+    }
+
+    /** @return the complete list of items, as needed for a full save */
+    private List<LibraryItem> fullList() {
+        if (!onDemand) return items;
+        try (Stream<LibraryItem> all = all()) {
+            return all.toList();
+        }
     }
 }
@@ -1,10 +1,16 @@
 package librarySE.managers;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import librarySE.utils.JsonFields;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import librarySE.utils.ValidationUtils;
 
 /**
@@ -121,6 +127,116 @@ public class User implements Serializable {
     }
 
 
+    /**
+     * Restores a user from a binary snapshot without re-hashing or re-validating.
+     */
+    private User(SnapshotInput in) throws IOException {
+        this.id = in.readUuid();
+        this.username = in.readString();
+        this.role = in.readEnum(Role.class);
+        this.passwordHash = in.readString();
+        this.fineBalance = in.readMoney();
+        this.email = in.readString();
+    }
+
+    /**
+     * Restores a user written by {@link #writeSnapshot(SnapshotOutput)}.
+     *
+     * @param in snapshot input
+     * @return the restored user
+     * @throws IOException if the snapshot cannot be read
+     */
+    public static User readSnapshot(SnapshotInput in) throws IOException {
+        return new User(in);
+    }
+
+    /**
+     * Writes this user, including the password hash, to a binary snapshot.
+     *
+     * @param out snapshot output
+     * @throws IOException if writing fails
+     */
+    public void writeSnapshot(SnapshotOutput out) throws IOException {
+        out.writeUuid(id);
+        out.writeString(username);
+        out.writeEnum(role);
+        out.writeString(passwordHash);
+        out.writeMoney(fineBalance);
+        out.writeString(email);
+    }
+
+    /**
+     * Restores a user read from JSON; missing fields keep the defaults of {@link #User()}.
+     */
+    private User(UUID id, String username, Role role, String passwordHash,
+                 BigDecimal fineBalance, String email) {
+        this.id = (id == null) ? UUID.randomUUID() : id;
+        this.username = (username == null) ? "" : username;
+        this.role = (role == null) ? Role.USER : role;
+        this.passwordHash = (passwordHash == null) ? "" : passwordHash;
+        this.fineBalance = (fineBalance == null) ? BigDecimal.ZERO : fineBalance;
+        this.email = (email == null) ? "" : email;
+    }
+
+    /**
+     * Copies this user, including id and password hash, e.g. to keep its
+     * current state while the original goes on changing.
+     *
+     * @return an independent user equal in every field
+     */
+    public User copy() {
+        return new User(id, username, role, passwordHash, fineBalance, email);
+    }
+
+    /**
+     * Restores a user written by {@link #writeJson(JsonWriter)}.
+     * Fields may appear in any order; unknown fields are skipped.
+     *
+     * @param in JSON input positioned at the user object
+     * @return the restored user
+     * @throws IOException if reading fails
+     */
+    public static User readJson(JsonReader in) throws IOException {
+        UUID id = null;
+        String username = null;
+        Role role = null;
+        String passwordHash = null;
+        BigDecimal fineBalance = null;
+        String email = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> id = JsonFields.readUuid(in);
+                case "username" -> username = JsonFields.readString(in);
+                case "role" -> role = JsonFields.readEnum(in, Role.class);
+                case "passwordHash" -> passwordHash = JsonFields.readString(in);
+                case "fineBalance" -> fineBalance = JsonFields.readMoney(in);
+                case "email" -> email = JsonFields.readString(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new User(id, username, role, passwordHash, fineBalance, email);
+    }
+
+    /**
+     * Writes this user, including the password hash, as a JSON object.
+     *
+     * @param out JSON output
+     * @throws IOException if writing fails
+     */
+    public void writeJson(JsonWriter out) throws IOException {
+        out.beginObject();
+        JsonFields.writeUuid(out, "id", id);
+        JsonFields.writeString(out, "username", username);
+        JsonFields.writeEnum(out, "role", role);
+        JsonFields.writeString(out, "passwordHash", passwordHash);
+        JsonFields.writeMoney(out, "fineBalance", fineBalance);
+        JsonFields.writeString(out, "email", email);
+        out.endObject();
+    }
+
     // ========================================================================
     // Getters
     // ========================================================================
@@ -1,9 +1,12 @@
 package librarySE.managers;
 
+import librarySE.repo.ChangeLog;
+import librarySE.repo.ConcurrentUpdateException;
 import librarySE.repo.UserRepository;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 /**
  * Manager responsible for all user-related operations within the library system.
@@ -15,7 +18,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
  *
  * <h2>Main Responsibilities:</h2>
  * <ul>
- *     <li>Loading and saving users via {@link UserRepository}</li>
+ *     <li>Loading and saving users via {@link UserRepository} (only the changed
+ *         users, if the repository supports incremental writes)</li>
  *     <li>Registering new users</li>
  *     <li>Searching users by email or username</li>
  *     <li>Ensuring business constraints when unregistering a user</li>
@@ -23,6 +27,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
  *
  * <h2>Thread Safety:</h2>
  * Uses {@link CopyOnWriteArrayList} to ensure thread-safe iteration and modification.
+ * Changes run inside the {@link ChangeBarrier}, so a consistent copy of all
+ * managers never sees half of one.
  *
  * <h2>Related Use Cases:</h2>
  * <ul>
@@ -44,6 +50,9 @@ public class UserManager {
     /** Repository used for persistence operations. */
     private final UserRepository repo;
 
+    /** Users changed since the last save. */
+    private final ChangeTracker<User> changes;
+
     /**
      * Private constructor to prevent external instantiation. Loads all users
      * from the provided repository.
@@ -54,6 +63,7 @@ public class UserManager {
     private UserManager(UserRepository repo) {
         this.repo = Objects.requireNonNull(repo, "UserRepository cannot be null");
         this.users = new CopyOnWriteArrayList<>(repo.loadAll());
+        this.changes = new ChangeTracker<>(repo, User::getId, ChangeLog.Entity.USER);
     }
 
     /**
@@ -119,8 +129,14 @@ public class UserManager {
     public void addUser(User user) {
         if (user == null)
             throw new IllegalArgumentException("User cannot be null.");
-        users.add(user);
-        repo.saveAll(users);
+        ChangeBarrier.enter();
+        try {
+            users.add(user);
+            changes.changed(user);
+            changes.save(users);
+        } finally {
+            ChangeBarrier.exit();
+        }
     }
 
     /**
@@ -132,11 +148,70 @@ public class UserManager {
         return List.copyOf(users);
     }
 
+    /**
+     * Streams the users present when this method is called, without copying them.
+     * The stream reads a lock-free snapshot of the copy-on-write user list.
+     *
+     * @return a stream over the current users
+     */
+    public Stream<User> streamAllUsers() {
+        return users.stream();
+    }
+
+    /**
+     * Persists changes made to a single user (e.g. a paid fine).
+     * <p>
+     * With a repository that supports incremental writes only this user is
+     * written; otherwise the full list is saved.
+     * </p>
+     *
+     * @param user the modified user
+     * @throws IllegalArgumentException if the user object is null
+     */
+    public void saveUser(User user) {
+        if (user == null)
+            throw new IllegalArgumentException("User cannot be null.");
+        ChangeBarrier.enter();
+        try {
+            changes.changed(user);
+            changes.save(users);
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
+    /**
+     * Applies the changes other processes sharing the user files made since
+     * the last refresh: changed users replace the instances held here.
+     * <p>
+     * Cheap when nothing changed; a no-op for repositories that are not shared.
+     * </p>
+     *
+     * @return number of users added, changed or removed elsewhere
+     * @throws ConcurrentUpdateException if unsaved changes to users another
+     *                                   process changed were dropped; the
+     *                                   users are refreshed all the same
+     */
+    public int refresh() {
+        ChangeBarrier.enter();
+        try {
+            var remote = changes.refresh(users);
+            return remote.upserted().size() + remote.removed().size();
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+
     /**
      * Persists the current user list to the repository.
      */
     public void saveAll() {
-        repo.saveAll(users);
+        ChangeBarrier.enter();
+        try {
+            changes.saveAll(users);
+        } finally {
+            ChangeBarrier.exit();
+        }
     }
 
     // ============================================================
@@ -180,7 +255,13 @@ public class UserManager {
         }
 
         // Remove and persist
-        users.removeIf(u -> u.equals(user));
-        repo.saveAll(users);
+        ChangeBarrier.enter();
+        try {
+            users.removeIf(u -> u.equals(user));
+            changes.removed(user);
+            changes.save(users);
+        } finally {
+            ChangeBarrier.exit();
+        }
     }
 }
@@ -1,6 +1,7 @@
 package librarySE.managers.reports;
 
 import librarySE.core.LibraryItem;
+import librarySE.managers.BorrowManager;
 import librarySE.managers.BorrowRecord;
 import librarySE.managers.User;
 
@@ -44,6 +45,10 @@ import java.util.stream.Collectors;
  * List<BorrowRecord> history = borrowManager.getAllBorrowRecords();
  * ActivityReportService reports = new ActivityReportService(history);
  *
+ * // or reach back into archived history:
+ * ActivityReportService lastYear =
+ *         ActivityReportService.since(borrowManager, LocalDate.now().minusYears(1));
+ *
  * Map<User, Long> topBorrowers = reports.getTopBorrowers();
  * Map<String, Long> popularItems = reports.getMostBorrowedItems();
  * List<BorrowRecord> overdueForUser =
@@ -78,6 +83,22 @@ public class ActivityReportService {
         this.borrowRecords = new CopyOnWriteArrayList<>(borrowRecords);
     }
 
+    /**
+     * Creates a service over the borrow history reaching back to {@code since},
+     * loading archived history from disk if the borrow repository keeps it there.
+     *
+     * @param borrowManager source of borrow records (must not be {@code null})
+     * @param since         earliest borrow date to include (must not be {@code null})
+     * @return report service over records borrowed on or after {@code since} and all open loans
+     * @throws IllegalArgumentException if an argument is {@code null}
+     * @see BorrowManager#getBorrowHistory(LocalDate)
+     */
+    public static ActivityReportService since(BorrowManager borrowManager, LocalDate since) {
+        if (borrowManager == null || since == null)
+            throw new IllegalArgumentException("BorrowManager/date cannot be null.");
+        return new ActivityReportService(borrowManager.getBorrowHistory(since));
+    }
+
     /**
      * Computes how many items each user has borrowed in total.
      *
@@ -95,6 +116,7 @@ public class ActivityReportService {
      */
     public Map<User, Long> getTopBorrowers() {
         return borrowRecords.stream()
+                .filter(r -> r.getUser() != null)
                 .collect(Collectors.groupingBy(
                         BorrowRecord::getUser,
                         Collectors.counting()
@@ -173,7 +195,7 @@ public class ActivityReportService {
         if (user == null || date == null)
             throw new IllegalArgumentException("User/date cannot be null.");
         return borrowRecords.stream()
-        	    .filter(r -> r.getUser().equals(user) && r.isOverdue(date))
+        	    .filter(r -> Objects.equals(r.getUser(), user) && r.isOverdue(date))
         	    .toList();
     }
 }
\ No newline at end of file
@@ -59,7 +59,7 @@ public class FineReportService {
         if (user == null || date == null)
             throw new IllegalArgumentException("User/date cannot be null.");
         return borrowRecords.stream()
-                .filter(r -> r.getUser().equals(user))
+                .filter(r -> Objects.equals(r.getUser(), user))
                 .map(r -> r.getFine(date))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
@@ -79,7 +79,7 @@ public class FineReportService {
 
         EnumMap<MaterialType, BigDecimal> map = new EnumMap<>(MaterialType.class);
         for (BorrowRecord record : borrowRecords) {
-            if (record.getUser().equals(user)) {
+            if (Objects.equals(record.getUser(), user) && record.getItem() != null) {
                 MaterialType type = record.getItem().getMaterialType();
                 map.put(type, map.getOrDefault(type, BigDecimal.ZERO).add(record.getFine(date)));
             }
@@ -0,0 +1,356 @@
+package librarySE.repo;
+
+import librarySE.utils.RecoveryReport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only file of framed binary entries.
+ * <p>
+ * The journal is the low-level building block for repositories that persist
+ * only the changes of an operation instead of rewriting a whole data file.
+ * Each entry is written as one frame:
+ * </p>
+ *
+ * <pre>
+ * +----------------+-----------+-----------------+-------------------+
+ * | length (int32) | type (u8) | payload (bytes) | CRC32C (int32)    |
+ * +----------------+-----------+-----------------+-------------------+
+ * </pre>
+ *
+ * <p>
+ * The checksum covers the type byte and the payload. The file starts with a
+ * short header ({@link #MAGIC} followed by a format version byte).
+ * </p>
+ *
+ * <h2>Crash Handling</h2>
+ * <p>
+ * A crash in the middle of an append leaves a torn frame at the end of the
+ * file. When the journal is opened, all frames are validated and everything
+ * after the last intact frame is truncated, so new appends always continue
+ * after a consistent prefix. The discarded bytes are first copied to a
+ * {@code <name>.corrupt-<millis>} file next to the journal and a
+ * {@link RecoveryReport} is published.
+ * </p>
+ *
+ * <h2>Shared Files</h2>
+ * <p>
+ * Appends always go to the current end of the file, so several processes may
+ * append to the same journal as long as they serialize their writes (see
+ * {@link FileVersion}). {@link #replayFrom(long, Consumer)} reads only the
+ * entries appended after a known offset, e.g. by another process.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (AppendOnlyJournal journal = new AppendOnlyJournal(path)) {
+ *     journal.append(List.of(new AppendOnlyJournal.Entry((byte) 1, payload)));
+ *     journal.replay(entry -> apply(entry));
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public final class AppendOnlyJournal implements Closeable {
+
+    /** Magic bytes identifying a journal file. */
+    static final byte[] MAGIC = {'L', 'S', 'J', 'R'};
+
+    /** Current on-disk format version. */
+    static final byte VERSION = 1;
+
+    /** Size of the file header in bytes. */
+    static final int HEADER_SIZE = MAGIC.length + 1;
+
+    /** Frame overhead in bytes: length, type and checksum. */
+    static final int FRAME_OVERHEAD = Integer.BYTES + 1 + Integer.BYTES;
+
+    /** Upper bound for a single payload; protects against corrupted length fields. */
+    static final int MAX_PAYLOAD = 64 * 1024 * 1024;
+
+    /**
+     * A single journal entry.
+     *
+     * @param type    application-defined entry type
+     * @param payload entry body
+     */
+    public record Entry(byte type, byte[] payload) { }
+
+    private final Path file;
+    private final FileChannel channel;
+
+    /** Number of intact entries currently in the journal. */
+    private int entryCount;
+
+    /**
+     * Opens (or creates) the journal at the given path.
+     * <p>
+     * A missing or empty file is initialized with a header. An existing file is
+     * scanned, and any torn or corrupted tail is truncated.
+     * </p>
+     *
+     * @param file journal file path
+     * @throws IOException if the file cannot be opened or has an unknown header
+     */
+    public AppendOnlyJournal(Path file) throws IOException {
+        this.file = file;
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (channel.size() == 0) {
+            writeHeader();
+        } else {
+            long start = System.nanoTime();
+            checkHeader();
+            discardTail(scan(HEADER_SIZE, null), start);
+        }
+    }
+
+    /**
+     * Appends the given entries as one contiguous write at the end of the file.
+     *
+     * @param entries entries to append; an empty list is a no-op
+     * @throws IOException if writing fails
+     */
+    public synchronized void append(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+
+        int total = 0;
+        for (Entry e : entries) {
+            if (e.payload().length > MAX_PAYLOAD) {
+                throw new IllegalArgumentException("Journal payload too large: " + e.payload().length);
+            }
+            total += FRAME_OVERHEAD + e.payload().length;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(total);
+        CRC32C crc = new CRC32C();
+        for (Entry e : entries) {
+            crc.reset();
+            crc.update(e.type());
+            crc.update(e.payload());
+            buf.putInt(e.payload().length)
+               .put(e.type())
+               .put(e.payload())
+               .putInt((int) crc.getValue());
+        }
+        buf.flip();
+        long end = channel.size();
+        while (buf.hasRemaining()) {
+            end += channel.write(buf, end);
+        }
+        entryCount += entries.size();
+    }
+
+    /**
+     * Replays all intact entries in append order.
+     *
+     * @param consumer receives every entry
+     * @return number of entries replayed
+     * @throws IOException if reading fails
+     */
+    public synchronized int replay(Consumer<Entry> consumer) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        entryCount = 0;
+        scan(HEADER_SIZE, entries);
+        entries.forEach(consumer);
+        return entries.size();
+    }
+
+    /**
+     * Replays the intact entries that start at or after {@code offset}, such as
+     * entries appended by another process since this one last read the file.
+     *
+     * @param offset   file offset of the first entry to replay: the value returned
+     *                 by a previous call, {@link #sizeInBytes()} after an append, or
+     *                 {@code 0} to replay (and recount) all entries
+     * @param consumer receives every entry
+     * @return file offset just after the last intact entry, to pass to the next call
+     * @throws IOException if reading fails
+     */
+    public synchronized long replayFrom(long offset, Consumer<Entry> consumer) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (offset <= HEADER_SIZE) entryCount = 0;
+        long end = scan(Math.max(offset, HEADER_SIZE), entries);
+        entries.forEach(consumer);
+        return end;
+    }
+
+    /**
+     * Discards everything after {@code offset}, such as a frame torn by another
+     * process that crashed while appending. The discarded bytes are quarantined
+     * and reported like a torn tail found when opening the journal.
+     *
+     * @param offset end of the last intact frame, as returned by {@link #replayFrom}
+     * @throws IOException if truncation fails
+     */
+    public synchronized void discardFrom(long offset) throws IOException {
+        discardTail(Math.max(offset, HEADER_SIZE), System.nanoTime());
+    }
+
+    /**
+     * Discards all entries, leaving only the file header.
+     * <p>Typically called right after a snapshot has been written.</p>
+     *
+     * @throws IOException if truncation fails
+     */
+    public synchronized void reset() throws IOException {
+        channel.truncate(HEADER_SIZE);
+        entryCount = 0;
+    }
+
+    /**
+     * Forces all appended entries to the storage device.
+     *
+     * @throws IOException if the device cannot be synced
+     */
+    public synchronized void force() throws IOException {
+        channel.force(false);
+    }
+
+    /** @return number of intact entries currently in the journal */
+    public synchronized int entryCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return current journal size in bytes, including the header
+     * @throws IOException if the size cannot be determined
+     */
+    public synchronized long sizeInBytes() throws IOException {
+        return channel.size();
+    }
+
+    /** @return path of the journal file */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // =====================================================================
+    // Internals
+    // =====================================================================
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).put(MAGIC).put(VERSION);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    /** Quarantines and truncates everything after {@code validEnd}, if anything. */
+    private void discardTail(long validEnd, long start) throws IOException {
+        if (validEnd >= channel.size()) return;
+        long damaged = channel.size() - validEnd;
+        Path quarantined = quarantineTail(validEnd);
+        channel.truncate(validEnd);
+        RecoveryReport.publish(new RecoveryReport(file, "torn or damaged tail of " + damaged + " bytes",
+                entryCount, 0, 0, quarantined, null, Duration.ofNanos(System.nanoTime() - start)));
+    }
+
+    /** Copies everything from {@code from} to the end of the file into a sibling file. */
+    private Path quarantineTail(long from) throws IOException {
+        Path target = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long pos = from;
+            long size = channel.size();
+            while (pos < size) {
+                pos += channel.transferTo(pos, size - pos, out);
+            }
+            out.force(true);
+        }
+        return target;
+    }
+
+    private void checkHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER_SIZE) {
+            // Crash while creating the file: start over.
+            channel.truncate(0);
+            writeHeader();
+            return;
+        }
+        for (byte b : MAGIC) {
+            if (header.get() != b) {
+                throw new IOException("Not a journal file: " + file);
+            }
+        }
+        byte version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version " + version + ": " + file);
+        }
+    }
+
+    /**
+     * Validates the frames from {@code pos} on and adds them to {@link #entryCount}.
+     *
+     * @param pos  offset of the first frame
+     * @param sink optional list receiving the decoded entries
+     * @return file offset just after the last intact frame
+     */
+    private long scan(long pos, List<Entry> sink) throws IOException {
+        long size = channel.size();
+        int count = 0;
+        ByteBuffer head = ByteBuffer.allocate(Integer.BYTES + 1);
+        CRC32C crc = new CRC32C();
+
+        while (pos + FRAME_OVERHEAD <= size) {
+            head.clear();
+            if (readFully(head, pos) < head.capacity()) break;
+            head.flip();
+            int length = head.getInt();
+            byte type = head.get();
+            if (length < 0 || length > MAX_PAYLOAD || pos + FRAME_OVERHEAD + length > size) break;
+
+            ByteBuffer body = ByteBuffer.allocate(length + Integer.BYTES);
+            if (readFully(body, pos + Integer.BYTES + 1) < body.capacity()) break;
+            body.flip();
+            byte[] payload = new byte[length];
+            body.get(payload);
+            int stored = body.getInt();
+
+            crc.reset();
+            crc.update(type);
+            crc.update(payload);
+            if ((int) crc.getValue() != stored) break;
+
+            if (sink != null) sink.add(new Entry(type, payload));
+            count++;
+            pos += FRAME_OVERHEAD + length;
+        }
+        entryCount += count;
+        return pos;
+    }
+
+    private int readFully(ByteBuffer buf, long position) throws IOException {
+        int total = 0;
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, position + total);
+            if (n < 0) break;
+            total += n;
+        }
+        return total;
+    }
+}
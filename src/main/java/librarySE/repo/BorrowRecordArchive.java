@@ -0,0 +1,370 @@
+package librarySE.repo;
+
+import librarySE.managers.BorrowRecord;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.LoggerUtils;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaMigrator;
+import librarySE.utils.SchemaVersionException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed, append-only store of closed loans that no longer need to be held
+ * in memory (see {@link librarySE.managers.BorrowManager#archiveSettledRecords}).
+ * <p>
+ * Each {@link #append} writes one new GZIP segment of JSON lines, a
+ * {@link DataSchema} header followed by one compact record per line:
+ * </p>
+ * <pre>
+ * records-00000007-00000007-20250331.jsonl.gz
+ *         first    last     newest due date
+ * </pre>
+ * <p>
+ * Segments are never modified. A segment is written to a temporary file,
+ * forced to disk and renamed into place, so a crash leaves either the whole
+ * batch or none of it. The newest due date in the name lets {@link #find}
+ * skip segments that end before the period asked for.
+ * </p>
+ *
+ * <h2>Compaction</h2>
+ * <p>
+ * Frequent small batches would leave many small files. Once there are more
+ * than {@code maxSegments}, runs of consecutive segments smaller than
+ * {@code targetSegmentBytes} are merged into one, streaming line by line
+ * (records of an older format version are upgraded on the way). The merged
+ * segment covers the batch numbers of its inputs; if the process stops
+ * before the inputs are deleted, reads ignore them and the next compaction
+ * removes them.
+ * </p>
+ * <p>
+ * Several desks may share the store: writers hold an exclusive lock on
+ * {@code archive.lock}, readers a shared one. A record archived twice (e.g. by
+ * two desks) is returned once.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class BorrowRecordArchive {
+
+    private static final Pattern SEGMENT = Pattern.compile("records-(\\d{8})-(\\d{8})-(\\d{8})\\.jsonl\\.gz");
+    private static final DateTimeFormatter DAY = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /** A segment file and the range it covers. */
+    record Segment(Path file, long first, long last, LocalDate newest) {
+
+        boolean covers(Segment other) {
+            return this != other && first <= other.first && other.last <= last;
+        }
+
+        long size() {
+            try {
+                return Files.size(file);
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+
+    private final Path directory;
+    private final long targetSegmentBytes;
+    private final int maxSegments;
+
+    /**
+     * Opens (or creates) the archive in a directory.
+     *
+     * @param directory          archive directory
+     * @param targetSegmentBytes size up to which small segments are merged
+     * @param maxSegments        number of segments above which {@link #append} compacts
+     * @throws UncheckedIOException if the directory cannot be created
+     */
+    public BorrowRecordArchive(Path directory, long targetSegmentBytes, int maxSegments) {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        if (targetSegmentBytes < 1) throw new IllegalArgumentException("targetSegmentBytes must be positive");
+        if (maxSegments < 1) throw new IllegalArgumentException("maxSegments must be at least 1");
+        this.targetSegmentBytes = targetSegmentBytes;
+        this.maxSegments = maxSegments;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create borrow archive " + directory, e);
+        }
+    }
+
+    // =====================================================================
+    // Writing
+    // =====================================================================
+
+    /**
+     * Appends records as a new segment and forces it to disk, then compacts
+     * if there are more than {@code maxSegments} segments.
+     *
+     * @param records records to archive; an empty list is a no-op
+     * @throws IOException if the segment cannot be written; nothing is archived then
+     */
+    public synchronized void append(List<BorrowRecord> records) throws IOException {
+        if (records.isEmpty()) return;
+        LocalDate newest = records.stream().map(BorrowRecord::getDueDate)
+                .max(Comparator.naturalOrder()).orElseThrow();
+        try (FileChannel lockChannel = lockChannel(); FileLock ignored = lockChannel.lock()) {
+            List<Segment> segments = segments();
+            long batch = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).last() + 1;
+            write(new Segment(segmentFile(batch, batch, newest), batch, batch, newest), out -> {
+                for (BorrowRecord r : records) {
+                    out.write(FileUtils.toCompactJson(r));
+                    out.write('\n');
+                }
+            });
+            if (segments.size() + 1 > maxSegments) compactLocked();
+        }
+    }
+
+    /**
+     * Merges runs of consecutive small segments and removes segments left
+     * behind by an interrupted compaction.
+     *
+     * @return number of segments after compaction
+     * @throws IOException if a merged segment cannot be written
+     */
+    public synchronized int compact() throws IOException {
+        try (FileChannel lockChannel = lockChannel(); FileLock ignored = lockChannel.lock()) {
+            return compactLocked();
+        }
+    }
+
+    private int compactLocked() throws IOException {
+        List<Segment> segments = segments();
+        removeLeftovers(segments);
+        List<Segment> result = new ArrayList<>();
+        List<Segment> run = new ArrayList<>();
+        long runBytes = 0;
+        for (Segment s : segments) {
+            long size = s.size();
+            if (!run.isEmpty() && (size >= targetSegmentBytes || runBytes + size > targetSegmentBytes)) {
+                result.add(merge(run));
+                run.clear();
+                runBytes = 0;
+            }
+            if (size >= targetSegmentBytes) {
+                result.add(s);
+            } else {
+                run.add(s);
+                runBytes += size;
+            }
+        }
+        if (!run.isEmpty()) result.add(merge(run));
+        return result.size();
+    }
+
+    /** Streams a run of segments into one and deletes them; a single segment is kept as it is. */
+    private Segment merge(List<Segment> run) throws IOException {
+        if (run.size() == 1) return run.get(0);
+        Segment first = run.get(0);
+        Segment last = run.get(run.size() - 1);
+        LocalDate newest = run.stream().map(Segment::newest).max(Comparator.naturalOrder()).orElseThrow();
+        Segment merged = new Segment(segmentFile(first.first(), last.last(), newest),
+                first.first(), last.last(), newest);
+        write(merged, out -> {
+            for (Segment s : run) {
+                readLines(s, json -> {
+                    try {
+                        out.write(json);
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        });
+        for (Segment s : run) Files.deleteIfExists(s.file());
+        LoggerUtils.log("borrow_archive_log.txt", "Merged " + run.size() + " segments into "
+                + merged.file().getFileName());
+        return merged;
+    }
+
+    @FunctionalInterface
+    private interface LineWriter {
+        void write(Writer out) throws IOException;
+    }
+
+    /** Writes a segment to a temporary file, forces it to disk and renames it into place. */
+    private void write(Segment segment, LineWriter lines) throws IOException {
+        Path tmp = directory.resolve(segment.file().getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+                Writer out = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024);
+                out.write(FileUtils.toCompactJson(DataSchema.currentHeader(DataSchema.Kind.BORROW_RECORD).text()));
+                out.write('\n');
+                lines.write(out);
+                out.flush();
+                gzip.finish();
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, segment.file(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, segment.file());
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            if (e instanceof UncheckedIOException u) throw u.getCause();
+            throw e;
+        }
+    }
+
+    // =====================================================================
+    // Reading
+    // =====================================================================
+
+    /**
+     * Reads the archived records borrowed on or after a date.
+     * <p>
+     * Only segments holding a loan due on or after {@code since} are read. The
+     * records hold user and item ids only, like records read from a repository.
+     * </p>
+     *
+     * @param since earliest borrow date of interest
+     * @return matching records, oldest batch first; never {@code null}
+     * @throws UncheckedIOException if a segment cannot be read
+     */
+    public List<BorrowRecord> find(LocalDate since) {
+        List<BorrowRecord> result = new ArrayList<>();
+        forEach(since, r -> {
+            if (!r.getBorrowDate().isBefore(since)) result.add(r);
+        });
+        return result;
+    }
+
+    /**
+     * Streams every archived record through {@code action}, one segment at a
+     * time, without holding the archive in memory.
+     *
+     * @param action receives each record once
+     * @throws UncheckedIOException if a segment cannot be read
+     */
+    public void forEach(Consumer<BorrowRecord> action) {
+        forEach(LocalDate.MIN, action);
+    }
+
+    private void forEach(LocalDate dueOnOrAfter, Consumer<BorrowRecord> action) {
+        Set<UUID> seen = new HashSet<>();
+        try (FileChannel lockChannel = lockChannel(); FileLock ignored = lockChannel.lock(0, Long.MAX_VALUE, true)) {
+            for (Segment s : segments()) {
+                if (s.newest().isBefore(dueOnOrAfter)) continue;
+                readLines(s, json -> {
+                    BorrowRecord r = FileUtils.fromJson(json, BorrowRecord.class);
+                    r.ensureId();
+                    if (seen.add(r.getId())) action.accept(r);
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read borrow archive " + directory, e);
+        }
+    }
+
+    /**
+     * Passes each record line of a segment to {@code lines}, upgraded to the
+     * current format version.
+     */
+    private static void readLines(Segment segment, Consumer<String> lines) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(segment.file()), 64 * 1024), StandardCharsets.UTF_8))) {
+            String first = in.readLine();
+            if (first == null) return;
+            DataSchema.Header header = DataSchema.Header.parse(FileUtils.fromJson(first, String.class));
+            int current = DataSchema.currentVersion(DataSchema.Kind.BORROW_RECORD);
+            if (header.version() > current)
+                throw new SchemaVersionException(segment.file(), header.kind(), header.version(), current);
+            List<Migration> upgrades = DataSchema.migrationsFrom(DataSchema.Kind.BORROW_RECORD, header.version());
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                if (line.isEmpty()) continue;
+                lines.accept(SchemaMigrator.upgrade(line, upgrades));
+            }
+        }
+    }
+
+    /**
+     * @return segments on disk in batch order, without those covered by a merged
+     *         segment (which are deleted when a writer holds the lock)
+     */
+    List<Segment> segments() throws IOException {
+        List<Segment> all = new ArrayList<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Matcher m = SEGMENT.matcher(p.getFileName().toString());
+                if (m.matches()) {
+                    all.add(new Segment(p, Long.parseLong(m.group(1)), Long.parseLong(m.group(2)),
+                            LocalDate.parse(m.group(3), DAY)));
+                }
+            }
+        }
+        all.sort(Comparator.comparingLong(Segment::first).thenComparing(Segment::last, Comparator.reverseOrder()));
+        List<Segment> live = new ArrayList<>();
+        for (Segment s : all) {
+            if (!live.isEmpty() && live.get(live.size() - 1).covers(s)) continue;
+            live.add(s);
+        }
+        return live;
+    }
+
+    /** Deletes temporary files and segments covered by a merged one. */
+    private void removeLeftovers(List<Segment> live) throws IOException {
+        Set<Path> keep = new HashSet<>();
+        live.forEach(s -> keep.add(s.file()));
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".tmp") || (SEGMENT.matcher(name).matches() && !keep.contains(p))) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private Path segmentFile(long first, long last, LocalDate newest) {
+        return directory.resolve(String.format("records-%08d-%08d-%s.jsonl.gz", first, last, DAY.format(newest)));
+    }
+
+    private FileChannel lockChannel() throws IOException {
+        return FileChannel.open(directory.resolve("archive.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /** @return the archive directory */
+    public Path getDirectory() {
+        return directory;
+    }
+}
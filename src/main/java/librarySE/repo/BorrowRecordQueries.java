@@ -0,0 +1,51 @@
+package librarySE.repo;
+
+import librarySE.managers.BorrowRecord;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Optional query interface of a {@link BorrowRecordRepository} that can filter
+ * records in storage (for example with indexed SQL queries) instead of
+ * returning the whole history.
+ * <p>
+ * {@link librarySE.managers.BorrowManager} uses these methods when its
+ * repository implements this interface, and falls back to scanning its
+ * in-memory list otherwise. Returned records are read from storage; callers
+ * that keep records in memory match them by {@link BorrowRecord#getId()}.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * if (repo instanceof BorrowRecordQueries queries) {
+ *     List<BorrowRecord> overdue = queries.findOverdue(LocalDate.now());
+ * }
+ * }</pre>
+ *
+ * @author Malak
+ */
+public interface BorrowRecordQueries {
+
+    /**
+     * @param userId id of the borrowing user
+     * @return every record of that user, in saved order
+     */
+    List<BorrowRecord> findByUser(UUID userId);
+
+    /**
+     * @param itemId id of the borrowed item
+     * @return every record of that item, in saved order
+     */
+    List<BorrowRecord> findByItem(UUID itemId);
+
+    /**
+     * Finds records that are overdue as defined by {@link BorrowRecord#isOverdue(LocalDate)}:
+     * not returned and due before {@code date}.
+     *
+     * @param date the date to check against
+     * @return overdue records, in saved order
+     */
+    List<BorrowRecord> findOverdue(LocalDate date);
+}
@@ -2,6 +2,8 @@ package librarySE.repo;
 
 
 import librarySE.managers.BorrowRecord;
+
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -21,6 +23,7 @@ import java.util.List;
  * <ul>
  *     <li>Load all existing borrow records from storage.</li>
  *     <li>Persist updates after borrowing, returning, or fine application.</li>
+ *     <li>Optionally write single records ({@link EntityRepository#upsert}, {@link EntityRepository#delete}).</li>
  * </ul>
  *
  * <h2>Usage Example:</h2>
@@ -36,7 +39,7 @@ import java.util.List;
  * @author Eman
  * 
  */
-public interface BorrowRecordRepository {
+public interface BorrowRecordRepository extends EntityRepository<BorrowRecord> {
 
     /**
      * Loads all {@link BorrowRecord} entries from persistent storage.
@@ -54,4 +57,21 @@ public interface BorrowRecordRepository {
      * @param records the list of borrow records to save; must not be {@code null}
      */
     void saveAll(List<BorrowRecord> records);
+
+    /**
+     * Loads archived records that {@link #loadAll()} leaves on disk.
+     * <p>
+     * Repositories that keep older history out of memory (such as
+     * {@link PartitionedBorrowRecordRepository}) return here every archived record
+     * that may have been active on or after {@code since}; callers filter further.
+     * The default returns an empty list because {@link #loadAll()} already
+     * returns everything.
+     * </p>
+     *
+     * @param since earliest date of interest
+     * @return archived records disjoint from {@link #loadAll()}; never {@code null}
+     */
+    default List<BorrowRecord> loadArchived(LocalDate since) {
+        return List.of();
+    }
 }
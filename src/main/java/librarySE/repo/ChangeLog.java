@@ -0,0 +1,426 @@
+package librarySE.repo;
+
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.SchemaVersionException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Bounded, disk-backed log of the changes made to the library's entities,
+ * for consumers that synchronize incrementally (a reporting warehouse, a
+ * mirror at another site).
+ * <p>
+ * Every {@link Change} gets the next sequence number; numbers are never reused,
+ * also across restarts. A consumer remembers the last number it applied and asks
+ * for {@link #changesAfter(long) the changes after it}, which costs time in
+ * proportion to the changes, not to the number of entities. Each change carries
+ * the entity's full state as compact JSON (the format of the data files), also
+ * for removals, so applying changes in order reproduces the library.
+ * </p>
+ *
+ * <h2>Storage</h2>
+ * <p>
+ * The log is a directory of {@link AppendOnlyJournal} segments named after their
+ * first sequence number ({@code changes-00000000000000000001.log}). Changes are
+ * appended to the newest segment and forced to disk before {@link #append}
+ * returns. A segment holding {@code segmentEntries} changes is closed and a new
+ * one started; of the closed segments only the newest {@code segments - 1} are
+ * kept, which bounds the log to about {@code segments * segmentEntries} changes.
+ * A consumer asking for changes older than that gets a
+ * {@link ChangesDroppedException}.
+ * </p>
+ * <p>
+ * Each segment declares the {@link DataSchema} version of the JSON it holds (see
+ * {@link JournalSchema}). Changes recorded in an older format are upgraded when
+ * they are read, so consumers always get this build's format; a log declaring a
+ * newer format is refused.
+ * </p>
+ * <p>
+ * Several desks sharing a data directory record their changes in one log. Each
+ * {@link #append} takes the log's {@link FileVersion} lock, first reads the
+ * changes and segments other processes added since, then allocates the next
+ * sequence numbers and writes; readers catch up the same way when the version
+ * changed, so every desk sees one sequence without gaps or duplicates.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (Stream<ChangeLog.Change> changes = log.changesAfter(lastApplied)) {
+ *     changes.forEach(c -> { warehouse.apply(c); lastApplied = c.sequence(); });
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public final class ChangeLog implements Closeable {
+
+    /** Kind of entity a change applies to. */
+    public enum Entity { ITEM, USER, BORROW_RECORD, WAITLIST }
+
+    /** What happened to the entity. */
+    public enum Operation { UPSERT, DELETE }
+
+    /**
+     * A change to record: the entity's state is serialized when it is appended.
+     *
+     * @param entity    kind of entity
+     * @param operation what happened to it
+     * @param id        entity identifier (for waitlist entries, the item waited for)
+     * @param value     the entity
+     */
+    public record Mutation(Entity entity, Operation operation, UUID id, Object value) {
+
+        public Mutation {
+            Objects.requireNonNull(entity, "entity");
+            Objects.requireNonNull(operation, "operation");
+            Objects.requireNonNull(id, "id");
+            Objects.requireNonNull(value, "value");
+        }
+    }
+
+    /**
+     * A recorded change.
+     *
+     * @param sequence  position in the log, starting at 1
+     * @param time      when the change was recorded
+     * @param entity    kind of entity
+     * @param operation what happened to it
+     * @param id        entity identifier (for waitlist entries, the item waited for)
+     * @param json      state of the entity as compact JSON in this build's format; the last
+     *                  state for a {@code DELETE}
+     */
+    public record Change(long sequence, Instant time, Entity entity, Operation operation, UUID id, String json) { }
+
+    /** A segment file, the sequence number of its first change and the format versions it declares. */
+    private record Segment(long first, AppendOnlyJournal journal, JournalSchema schema) { }
+
+    private static final String PREFIX = "changes-";
+    private static final String SUFFIX = ".log";
+
+    /** Fixed part of an entry: sequence, time, entity, id. */
+    private static final int HEADER = Long.BYTES + Long.BYTES + 1 + 2 * Long.BYTES;
+
+    private final Path directory;
+    private final int segmentEntries;
+    private final int maxSegments;
+    private final Clock clock;
+    private final FileVersion version;
+
+    /** Retained segments, oldest first; the last one is appended to. Guarded by {@code this}. */
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private long lastSequence;
+
+    /** Stamp no log has; makes the next operation catch up after a failed one. */
+    private static final FileVersion.Stamp UNKNOWN = new FileVersion.Stamp(-1, -1);
+
+    /** Version of the log this instance has read up to, and the end of the newest segment then. */
+    private FileVersion.Stamp known = FileVersion.Stamp.INITIAL;
+    private long newestEnd;
+
+    /**
+     * Opens (or creates) the log in a directory.
+     *
+     * @param directory      log directory
+     * @param segmentEntries changes per segment; at least 1
+     * @param segments       segments retained, including the one being written; at least 2
+     * @throws IOException            if the directory or a segment cannot be opened
+     * @throws SchemaVersionException if the newest segment was written in a newer format
+     */
+    public ChangeLog(Path directory, int segmentEntries, int segments) throws IOException {
+        this(directory, segmentEntries, segments, Clock.systemUTC());
+    }
+
+    /**
+     * @param directory      log directory
+     * @param segmentEntries changes per segment; at least 1
+     * @param segments       segments retained, including the one being written; at least 2
+     * @param clock          clock used to timestamp changes
+     * @throws IOException            if the directory or a segment cannot be opened
+     * @throws SchemaVersionException if the newest segment was written in a newer format
+     */
+    public ChangeLog(Path directory, int segmentEntries, int segments, Clock clock) throws IOException {
+        if (segmentEntries < 1) throw new IllegalArgumentException("segmentEntries must be at least 1");
+        if (segments < 2) throw new IllegalArgumentException("segments must be at least 2");
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.segmentEntries = segmentEntries;
+        this.maxSegments = segments;
+        this.clock = Objects.requireNonNull(clock, "clock");
+
+        Files.createDirectories(directory);
+        this.version = new FileVersion(directory.resolve("changes"));
+        try {
+            FileVersion.Stamp seen = version.lock();
+            try {
+                catchUp();
+                known = seen;
+            } finally {
+                version.unlock(seen);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Brings the segments and the last sequence number up to date with the
+     * directory: drops segments other processes deleted, opens the ones they
+     * started and reads the changes appended to the newest since last read.
+     * Called under the {@link FileVersion} lock.
+     */
+    private void catchUp() throws IOException {
+        List<Path> files;
+        try (Stream<Path> list = Files.list(directory)) {
+            files = list.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().toList();
+        }
+        while (!segments.isEmpty() && !files.contains(segments.getFirst().journal().getFile())) {
+            segments.removeFirst().journal().close();
+        }
+        Segment newest = segments.peekLast();
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long first = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            if (!segments.isEmpty() && first <= segments.getLast().first()) continue;
+            segments.addLast(new Segment(first, new AppendOnlyJournal(file), new JournalSchema(file)));
+        }
+        if (segments.isEmpty()) {
+            segments.addLast(newSegment(1));
+        }
+
+        Segment last = segments.getLast();
+        if (last != newest) {
+            lastSequence = last.first() - 1;
+            newestEnd = 0;
+        }
+        newestEnd = last.journal().replayFrom(newestEnd, e -> {
+            if (!last.schema().consume(e)) lastSequence = ByteBuffer.wrap(e.payload()).getLong();
+        });
+        // A frame torn by a process that crashed while appending; new changes go after the intact ones.
+        if (newestEnd < last.journal().sizeInBytes()) last.journal().discardFrom(newestEnd);
+    }
+
+    /** Catches up if another process changed the log since this instance last read it. */
+    private void refresh() throws IOException {
+        if (version.peek().equals(known)) return;
+        FileVersion.Stamp seen = version.lock();
+        try {
+            known = UNKNOWN;
+            catchUp();
+            known = seen;
+        } finally {
+            version.unlock(seen);
+        }
+    }
+
+    private Segment newSegment(long first) throws IOException {
+        Path file = directory.resolve(PREFIX + String.format("%020d", first) + SUFFIX);
+        return new Segment(first, new AppendOnlyJournal(file), new JournalSchema(file));
+    }
+
+    // =====================================================================
+    // Writing
+    // =====================================================================
+
+    /**
+     * Records changes under consecutive sequence numbers and forces them to disk.
+     * The entities are serialized now, so the log holds their state at this moment.
+     *
+     * @param mutations changes in the order they happened; an empty list is a no-op
+     * @return sequence number of the last change recorded
+     * @throws IOException if writing fails; a torn write is discarded before the
+     *                     next change is recorded
+     */
+    public synchronized long append(List<Mutation> mutations) throws IOException {
+        if (mutations.isEmpty()) return lastSequence();
+
+        FileVersion.Stamp seen = version.lock();
+        FileVersion.Stamp next = seen;
+        try {
+            boolean current = seen.equals(known);
+            known = UNKNOWN; // until this append completed
+            if (!current) catchUp();
+            write(mutations);
+            next = seen.next();
+            known = next;
+        } finally {
+            version.unlock(next);
+        }
+        return lastSequence;
+    }
+
+    /** Appends under the {@link FileVersion} lock, numbering the changes after the last one in the log. */
+    private void write(List<Mutation> mutations) throws IOException {
+        long time = clock.millis();
+        long sequence = lastSequence;
+        List<AppendOnlyJournal.Entry> entries = new ArrayList<>(mutations.size());
+        EnumSet<Entity> kinds = EnumSet.noneOf(Entity.class);
+        for (Mutation m : mutations) {
+            kinds.add(m.entity());
+            byte[] json = FileUtils.toCompactJson(m.value()).getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buf = ByteBuffer.allocate(HEADER + json.length)
+                    .putLong(++sequence)
+                    .putLong(time)
+                    .put((byte) m.entity().ordinal())
+                    .putLong(m.id().getMostSignificantBits())
+                    .putLong(m.id().getLeastSignificantBits())
+                    .put(json);
+            entries.add(new AppendOnlyJournal.Entry((byte) m.operation().ordinal(), buf.array()));
+        }
+
+        Segment last = segments.getLast();
+        for (Entity kind : kinds) entries = last.schema().declare(kindOf(kind), entries);
+        AppendOnlyJournal active = last.journal();
+        active.append(entries);
+        active.force();
+        entries.forEach(last.schema()::consume);
+        lastSequence = sequence;
+        newestEnd = active.sizeInBytes();
+
+        if (active.entryCount() >= segmentEntries) rotate();
+    }
+
+    /** Starts a new segment and drops the oldest ones beyond the limit. */
+    private void rotate() throws IOException {
+        segments.addLast(newSegment(lastSequence + 1));
+        newestEnd = 0;
+        while (segments.size() > maxSegments) {
+            Segment oldest = segments.removeFirst();
+            oldest.journal().close();
+            Files.deleteIfExists(oldest.journal().getFile());
+        }
+    }
+
+    // =====================================================================
+    // Reading
+    // =====================================================================
+
+    /**
+     * @return sequence number of the newest change, by any process; {@code 0} if none was recorded yet
+     * @throws UncheckedIOException if changes made by another process cannot be read
+     */
+    public synchronized long lastSequence() {
+        refreshUnchecked();
+        return lastSequence;
+    }
+
+    /**
+     * @return sequence number of the oldest change retained; {@code lastSequence() + 1} if none
+     * @throws UncheckedIOException if changes made by another process cannot be read
+     */
+    public synchronized long firstSequence() {
+        refreshUnchecked();
+        return segments.getFirst().first();
+    }
+
+    private void refreshUnchecked() {
+        try {
+            refresh();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read change log " + directory, e);
+        }
+    }
+
+    /**
+     * Streams the changes recorded after a sequence number, in order.
+     * <p>
+     * The stream ends with the newest change at the time of this call and reads
+     * one segment at a time, so memory use is bounded by the segment size. If the
+     * log drops a segment the stream has not reached yet, reading it fails.
+     * </p>
+     *
+     * @param sequence last sequence number the consumer has applied; {@code 0} for all
+     * @return the changes after {@code sequence}
+     * @throws ChangesDroppedException if changes after {@code sequence} are no longer retained
+     * @throws IllegalArgumentException if {@code sequence} is negative or beyond {@link #lastSequence()}
+     * @throws UncheckedIOException if changes made by another process cannot be read
+     */
+    public synchronized Stream<Change> changesAfter(long sequence) {
+        refreshUnchecked();
+        if (sequence < 0 || sequence > lastSequence)
+            throw new IllegalArgumentException("No change " + sequence + "; last is " + lastSequence);
+        long first = segments.getFirst().first();
+        if (sequence + 1 < first) throw new ChangesDroppedException(sequence, first);
+
+        long last = lastSequence;
+        List<Segment> relevant = new ArrayList<>();
+        for (Segment s : segments) {
+            if (s.first() <= sequence + 1) relevant.clear(); // earlier segments end before sequence
+            relevant.add(s);
+        }
+        return relevant.stream()
+                .filter(s -> s.first() <= last)
+                .flatMap(s -> read(s).stream())
+                .filter(c -> c.sequence() > sequence && c.sequence() <= last);
+    }
+
+    private List<Change> read(Segment segment) {
+        List<Change> changes = new ArrayList<>();
+        JournalSchema schema = new JournalSchema(segment.journal().getFile());
+        synchronized (this) {
+            try {
+                segment.journal().replayFrom(AppendOnlyJournal.HEADER_SIZE, e -> {
+                    if (!schema.consume(e)) changes.add(decode(e, schema));
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + segment.journal().getFile(), e);
+            }
+        }
+        return changes;
+    }
+
+    private static Change decode(AppendOnlyJournal.Entry entry, JournalSchema schema) {
+        ByteBuffer buf = ByteBuffer.wrap(entry.payload());
+        long sequence = buf.getLong();
+        Instant time = Instant.ofEpochMilli(buf.getLong());
+        Entity entity = Entity.values()[buf.get()];
+        UUID id = new UUID(buf.getLong(), buf.getLong());
+        String json = schema.upgrade(kindOf(entity),
+                Arrays.copyOfRange(entry.payload(), HEADER, entry.payload().length));
+        return new Change(sequence, time, entity, Operation.values()[entry.type()], id, json);
+    }
+
+    private static DataSchema.Kind kindOf(Entity entity) {
+        return switch (entity) {
+            case ITEM -> DataSchema.Kind.ITEM;
+            case USER -> DataSchema.Kind.USER;
+            case BORROW_RECORD -> DataSchema.Kind.BORROW_RECORD;
+            case WAITLIST -> DataSchema.Kind.WAITLIST_ENTRY;
+        };
+    }
+
+    /** @return the log directory */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            for (Segment s : segments) s.journal().close();
+            segments.clear();
+        } finally {
+            version.close();
+        }
+    }
+}
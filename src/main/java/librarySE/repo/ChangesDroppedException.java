@@ -0,0 +1,32 @@
+package librarySE.repo;
+
+/**
+ * Thrown when a consumer of the {@link ChangeLog} asks for changes that the
+ * log no longer retains.
+ * <p>
+ * The consumer fell behind by more than the log keeps. It must resynchronize
+ * from a full copy (a {@link librarySE.backup.HotBackup} archive, whose
+ * {@code backup.properties} note the {@code changeSequence} it includes) and
+ * then follow the log again from there.
+ * </p>
+ *
+ * @author Eman
+ */
+public class ChangesDroppedException extends RuntimeException {
+
+    private final long oldestRetained;
+
+    /**
+     * @param requested      sequence number the consumer asked to continue after
+     * @param oldestRetained sequence number of the oldest change still in the log
+     */
+    public ChangesDroppedException(long requested, long oldestRetained) {
+        super("Changes after " + requested + " are no longer retained; oldest is " + oldestRetained);
+        this.oldestRetained = oldestRetained;
+    }
+
+    /** @return sequence number of the oldest change still in the log */
+    public long getOldestRetained() {
+        return oldestRetained;
+    }
+}
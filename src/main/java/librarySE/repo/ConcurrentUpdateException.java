@@ -0,0 +1,32 @@
+package librarySE.repo;
+
+import java.util.UUID;
+
+/**
+ * Thrown when a write is based on an entity that another process has changed
+ * or removed since this process last read it.
+ * <p>
+ * Nothing was written. The caller should {@linkplain EntityRepository#refresh()
+ * refresh} its entities, decide again based on the current state and retry.
+ * </p>
+ *
+ * @author Eman
+ */
+public class ConcurrentUpdateException extends RuntimeException {
+
+    private final UUID id;
+
+    /**
+     * @param id      identifier of the conflicting entity
+     * @param message description of the conflict
+     */
+    public ConcurrentUpdateException(UUID id, String message) {
+        super(message);
+        this.id = id;
+    }
+
+    /** @return identifier of the entity another process changed */
+    public UUID getId() {
+        return id;
+    }
+}
@@ -0,0 +1,446 @@
+package librarySE.repo;
+
+import com.google.gson.JsonParseException;
+import librarySE.utils.DataSchema;
+import librarySE.utils.Durability;
+import librarySE.utils.FileUtils;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Snapshot-plus-journal storage for a list of identified entities.
+ * <p>
+ * The full list lives in a JSON snapshot (with a binary startup snapshot next
+ * to it, see {@link FileUtils#readSnapshot}); single-entity writes are appended
+ * to an {@link AppendOnlyJournal} as {@link #OP_UPSERT} or {@link #OP_DELETE}
+ * entries. Loading replays the journal over the snapshot, last entry per id
+ * wins.
+ * </p>
+ * <p>
+ * Once the journal holds at least as many entries as there are entities (and at
+ * least the configured minimum), the current state is written as a new
+ * snapshot and the journal is reset, like {@link JournalBorrowRecordRepository}.
+ * </p>
+ * <p>
+ * Journal entries are versioned like the data files (see {@link JournalSchema}):
+ * entries of an older format are upgraded while they are replayed, and the
+ * upgraded state is written as a new snapshot right away; a journal declaring a
+ * newer format is refused.
+ * </p>
+ *
+ * <h2>Shared Files</h2>
+ * <p>
+ * Several processes may use the same files. Every read and write happens under
+ * the journal's {@link FileVersion} lock and first catches up with what other
+ * processes wrote: entries appended since this process's last operation are
+ * replayed, or, if another process compacted meanwhile, the files are read
+ * again and compared with the entities held here. Appends and compactions
+ * therefore never drop another process's entities.
+ * </p>
+ * <p>
+ * Entities written elsewhere are reported by {@link #refresh()}. Until the caller
+ * holds the stored instance, writing its own copy of such an entity fails with a
+ * {@link ConcurrentUpdateException} instead of overwriting the other change.
+ * </p>
+ *
+ * @param <T> entity type
+ * @author Eman
+ */
+final class EntityJournal<T> implements Closeable {
+
+    /** Entry type: the entity was inserted or replaced; payload is its compact JSON. */
+    static final byte OP_UPSERT = 1;
+
+    /** Entry type: the entity was removed; payload is its id. */
+    static final byte OP_DELETE = 2;
+
+    /** Work done while holding the file lock. */
+    @FunctionalInterface
+    private interface Locked<R> {
+        R run() throws IOException;
+    }
+
+    private final Path snapshotFile;
+    private final Path binarySnapshotFile;
+    private final Path journalFile;
+    private final Class<T> type;
+    private final DataSchema.Kind kind;
+    private final Function<T, UUID> idOf;
+    private final SnapshotInput.ValueReader<List<T>> snapshotReader;
+    private final SnapshotOutput.ValueWriter<List<T>> snapshotWriter;
+    private final int minCompactionEntries;
+
+    /** Lazily opened journal. */
+    private AppendOnlyJournal journal;
+
+    /** Format versions declared in the journal. */
+    private final JournalSchema schema;
+
+    /** Lazily opened version counter and lock of the journal. */
+    private FileVersion version;
+
+    /** Current stored state by id; {@code null} until first loaded. */
+    private Map<UUID, T> live;
+
+    /** Stamp of the files that {@link #live} reflects; {@code null} until first loaded. */
+    private FileVersion.Stamp seen;
+
+    /** Stamp to record when the lock is released; set while it is held. */
+    private FileVersion.Stamp current;
+
+    /** Journal offset after the last entry applied to {@link #live}. */
+    private long journalEnd;
+
+    /** Entities last written by other processes, as stored, by id. */
+    private final Map<UUID, T> foreign = new HashMap<>();
+
+    /** Entities removed by other processes. */
+    private final Set<UUID> removedElsewhere = new HashSet<>();
+
+    /** Changes by other processes not yet returned by {@link #refresh()}. */
+    private final Map<UUID, T> unreportedUpserts = new LinkedHashMap<>();
+    private final Set<UUID> unreportedRemovals = new LinkedHashSet<>();
+
+    /**
+     * @param snapshotFile         JSON snapshot of the full list
+     * @param journalFile          journal of changes since the snapshot
+     * @param type                 entity type, used to decode journal entries
+     * @param idOf                 extracts the identifier of an entity
+     * @param snapshotReader       decodes the binary startup snapshot
+     * @param snapshotWriter       encodes the binary startup snapshot
+     * @param minCompactionEntries minimum journal length before compaction
+     */
+    EntityJournal(Path snapshotFile, Path journalFile, Class<T> type, Function<T, UUID> idOf,
+                  SnapshotInput.ValueReader<List<T>> snapshotReader,
+                  SnapshotOutput.ValueWriter<List<T>> snapshotWriter,
+                  int minCompactionEntries) {
+        this.snapshotFile = Objects.requireNonNull(snapshotFile, "snapshotFile");
+        this.binarySnapshotFile = snapshotFile.resolveSibling(
+                snapshotFile.getFileName().toString().replaceFirst("\\.json$", "") + ".bin");
+        this.journalFile = Objects.requireNonNull(journalFile, "journalFile");
+        this.type = Objects.requireNonNull(type, "type");
+        this.kind = DataSchema.kindOf(type);
+        this.schema = new JournalSchema(journalFile);
+        this.idOf = Objects.requireNonNull(idOf, "idOf");
+        this.snapshotReader = snapshotReader;
+        this.snapshotWriter = snapshotWriter;
+        this.minCompactionEntries = Math.max(1, minCompactionEntries);
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     * <p>
+     * The returned instances are the ones held here, so nothing written
+     * elsewhere before this call counts as a conflict afterwards.
+     * </p>
+     *
+     * @return all entities; never {@code null}
+     */
+    synchronized List<T> loadAll() {
+        live = null; // read again by catchUp()
+        return locked(() -> {
+            foreign.clear();
+            removedElsewhere.clear();
+            unreportedUpserts.clear();
+            unreportedRemovals.clear();
+            return new ArrayList<>(live.values());
+        });
+    }
+
+    /**
+     * Streams the stored entities without building the full list (see
+     * {@link JournalStream}).
+     * <p>
+     * Unlike {@link #loadAll()}, this leaves the instances held here and the
+     * changes not yet reported by {@link #refresh()} as they are.
+     * </p>
+     *
+     * @return the stored entities; must be closed
+     */
+    synchronized Stream<T> stream() {
+        try {
+            FileVersion lock = version();
+            FileVersion.Stamp stamp = lock.lock();
+            try {
+                return JournalStream.open(snapshotFile, journal(), journalFile, type, idOf, OP_DELETE, e -> { });
+            } finally {
+                lock.unlock(stamp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access journal: " + journalFile, e);
+        }
+    }
+
+    /**
+     * Writes the complete list as a new snapshot.
+     * <p>
+     * Entities that another process added and that were not yet reported by
+     * {@link #refresh()} are kept, since the caller cannot have meant to drop them.
+     * </p>
+     *
+     * @param entities the complete current list
+     * @throws ConcurrentUpdateException if the list holds an outdated copy of an
+     *                                   entity changed or removed elsewhere
+     */
+    synchronized void saveAll(List<T> entities) {
+        locked(() -> {
+            Map<UUID, T> byId = new LinkedHashMap<>();
+            for (T e : entities) {
+                checkCurrent(e);
+                byId.put(idOf.apply(e), e);
+            }
+            entities.forEach(e -> foreign.remove(idOf.apply(e)));
+            unreportedUpserts.forEach(byId::putIfAbsent);
+            live = byId;
+            compact();
+            return null;
+        });
+    }
+
+    /**
+     * Appends one {@link #OP_UPSERT} entry.
+     *
+     * @param entity the entity to write
+     * @throws ConcurrentUpdateException if another process changed or removed
+     *                                   the entity since this copy was read
+     */
+    synchronized void upsert(T entity) {
+        locked(() -> {
+            checkCurrent(entity);
+            UUID id = idOf.apply(entity);
+            append(OP_UPSERT, FileUtils.toCompactJson(entity));
+            live.put(id, entity);
+            foreign.remove(id);
+            compactIfNeeded();
+            return null;
+        });
+    }
+
+    /**
+     * Appends one {@link #OP_DELETE} entry, unless the entity is not stored.
+     *
+     * @param entity the entity to remove
+     * @throws ConcurrentUpdateException if another process changed the entity
+     *                                   since this copy was read
+     */
+    synchronized void delete(T entity) {
+        locked(() -> {
+            UUID id = idOf.apply(entity);
+            if (!live.containsKey(id)) return null;
+            checkCurrent(entity);
+            append(OP_DELETE, id.toString());
+            live.remove(id);
+            foreign.remove(id);
+            compactIfNeeded();
+            return null;
+        });
+    }
+
+    /**
+     * Returns the entities other processes wrote since the previous call.
+     * <p>
+     * When the version counter shows no change, this costs one small read and
+     * takes no lock.
+     * </p>
+     *
+     * @return changes made elsewhere; never {@code null}
+     */
+    synchronized EntityRepository.Changes<T> refresh() {
+        if (live == null) return EntityRepository.Changes.none();
+        try {
+            if (!version().peek().equals(seen)) locked(() -> null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read version of " + journalFile, e);
+        }
+        if (unreportedUpserts.isEmpty() && unreportedRemovals.isEmpty()) return EntityRepository.Changes.none();
+
+        var changes = new EntityRepository.Changes<>(new ArrayList<>(unreportedUpserts.values()), unreportedRemovals);
+        unreportedUpserts.clear();
+        unreportedRemovals.clear();
+        return changes;
+    }
+
+    /** @return number of entries written since the last compaction */
+    synchronized int pendingEntries() {
+        return locked(() -> journal().entryCount());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (version != null) {
+            version.close();
+            version = null;
+        }
+    }
+
+    // =====================================================================
+    // Internals
+    // =====================================================================
+
+    /**
+     * Runs {@code work} under the file lock, after catching up with the writes
+     * of other processes, and records the stamp of this process's writes.
+     */
+    private <R> R locked(Locked<R> work) {
+        try {
+            FileVersion lock = version();
+            current = lock.lock();
+            try {
+                catchUp();
+                return work.run();
+            } finally {
+                lock.unlock(current);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access journal: " + journalFile, e);
+        }
+    }
+
+    /** Brings {@link #live} up to date with the files, as of {@link #current}. */
+    private void catchUp() throws IOException {
+        if (live == null) {
+            live = read();
+        } else if (current.generation() != seen.generation()) {
+            merge(read());
+        } else if (current.version() != seen.version()) {
+            journalEnd = journal().replayFrom(journalEnd, entry -> {
+                if (schema.consume(entry)) return;
+                if (entry.type() == OP_DELETE) {
+                    removedElsewhere(UUID.fromString(new String(entry.payload(), StandardCharsets.UTF_8)));
+                } else {
+                    writtenElsewhere(decode(entry.payload()));
+                }
+            });
+        }
+        if (journalEnd < journal().sizeInBytes()) {
+            journal().discardFrom(journalEnd); // torn by a process that crashed while appending
+        }
+        seen = current;
+        if (schema.upgraded()) compact(); // keeps the upgrade instead of repeating it on every read
+    }
+
+    /** Reads the snapshot and journal; sets {@link #journalEnd}. */
+    private Map<UUID, T> read() throws IOException {
+        List<T> snapshot = FileUtils.readSnapshot(binarySnapshotFile, snapshotFile, snapshotReader);
+        if (snapshot == null) snapshot = FileUtils.readJson(snapshotFile, FileUtils.listTypeOf(type), new ArrayList<>());
+        if (snapshot == null) snapshot = new ArrayList<>();
+
+        Map<UUID, T> byId = new LinkedHashMap<>();
+        for (T e : snapshot) byId.put(idOf.apply(e), e);
+
+        schema.reset();
+        journalEnd = journal().replayFrom(0, entry -> {
+            if (schema.consume(entry)) return;
+            if (entry.type() == OP_DELETE) {
+                byId.remove(UUID.fromString(new String(entry.payload(), StandardCharsets.UTF_8)));
+            } else {
+                T e = decode(entry.payload());
+                byId.put(idOf.apply(e), e);
+            }
+        });
+        return byId;
+    }
+
+    /**
+     * Replaces {@link #live} with the state read after another process compacted,
+     * keeping the instances held here for entities whose stored form is unchanged.
+     */
+    private void merge(Map<UUID, T> stored) {
+        for (UUID id : new ArrayList<>(live.keySet())) {
+            if (!stored.containsKey(id)) removedElsewhere(id);
+        }
+        stored.forEach((id, e) -> {
+            T held = live.get(id);
+            if (held == null || !FileUtils.toCompactJson(held).equals(FileUtils.toCompactJson(e))) {
+                writtenElsewhere(e);
+            }
+        });
+        Map<UUID, T> merged = new LinkedHashMap<>();
+        stored.keySet().forEach(id -> merged.put(id, live.get(id)));
+        live = merged;
+    }
+
+    private void writtenElsewhere(T entity) {
+        UUID id = idOf.apply(entity);
+        live.put(id, entity);
+        foreign.put(id, entity);
+        removedElsewhere.remove(id);
+        unreportedRemovals.remove(id);
+        unreportedUpserts.put(id, entity);
+    }
+
+    private void removedElsewhere(UUID id) {
+        live.remove(id);
+        foreign.remove(id);
+        removedElsewhere.add(id);
+        unreportedUpserts.remove(id);
+        unreportedRemovals.add(id);
+    }
+
+    /** Rejects a write based on a copy older than another process's change. */
+    private void checkCurrent(T entity) {
+        UUID id = idOf.apply(entity);
+        if (removedElsewhere.contains(id))
+            throw new ConcurrentUpdateException(id, type.getSimpleName() + " " + id + " was removed by another process");
+        T stored = foreign.get(id);
+        if (stored != null && stored != entity)
+            throw new ConcurrentUpdateException(id, type.getSimpleName() + " " + id + " was changed by another process");
+    }
+
+    private void append(byte op, String payload) throws IOException {
+        List<AppendOnlyJournal.Entry> entries = schema.declare(kind,
+                List.of(new AppendOnlyJournal.Entry(op, payload.getBytes(StandardCharsets.UTF_8))));
+        journal().append(entries);
+        entries.forEach(schema::consume);
+        journalEnd = journal().sizeInBytes();
+        current = current.next();
+        seen = current;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (journal().entryCount() >= Math.max(minCompactionEntries, live.size())) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        List<T> copy = new ArrayList<>(live.values());
+        // The snapshot must be on disk before the journal it replaces is cleared.
+        FileUtils.writeJson(snapshotFile, copy, Durability.SYNC);
+        FileUtils.writeSnapshot(binarySnapshotFile, snapshotFile, copy, snapshotWriter);
+        journal().reset();
+        schema.reset();
+        journalEnd = journal().sizeInBytes();
+        current = current.nextGeneration();
+        seen = current;
+    }
+
+    private AppendOnlyJournal journal() throws IOException {
+        if (journal == null) journal = new AppendOnlyJournal(journalFile);
+        return journal;
+    }
+
+    private FileVersion version() throws IOException {
+        if (version == null) version = new FileVersion(journalFile);
+        return version;
+    }
+
+    private T decode(byte[] payload) {
+        T e = FileUtils.fromJson(schema.upgrade(kind, payload), type);
+        if (e == null) throw new JsonParseException("Empty journal entry");
+        return e;
+    }
+}
@@ -0,0 +1,199 @@
+package librarySE.repo;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Common contract of repositories whose entities have a stable identifier
+ * (items, users and borrow records).
+ * <p>
+ * Every repository can load and save the complete list. Storage backends that
+ * can persist a single entity (such as a journal or a database) additionally
+ * report {@link #supportsIncrementalWrites()} and implement {@link #upsert(Object)}
+ * and {@link #delete(Object)}; the managers then write only the entities
+ * they changed instead of the whole list.
+ * </p>
+ * <p>
+ * Backends whose files are shared by several processes report the entities
+ * other processes wrote through {@link #refresh()}, and reject writes based on
+ * an entity another process has changed meanwhile with a
+ * {@link ConcurrentUpdateException}.
+ * </p>
+ * <p>
+ * One-pass consumers (reports, exports, integrity checks) read through
+ * {@link #stream()} or {@link #forEach(Consumer)}; the backends then read one
+ * entity at a time (file and journal backends from the JSON file, JDBC page by
+ * page, LSM key by key) instead of building the whole list.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * if (repo.supportsIncrementalWrites()) {
+ *     repo.upsert(item);      // writes one entity
+ * } else {
+ *     repo.saveAll(items);    // rewrites the full list
+ * }
+ * }</pre>
+ *
+ * @param <T> entity type
+ * @author Eman
+ */
+public interface EntityRepository<T> {
+
+    /**
+     * Entities written by other processes since this repository last reported them.
+     *
+     * @param upserted entities added or changed elsewhere, as now stored
+     * @param removed  identifiers of entities removed elsewhere
+     * @param <T>      entity type
+     */
+    record Changes<T>(List<T> upserted, Set<UUID> removed) {
+
+        public Changes {
+            upserted = List.copyOf(upserted);
+            removed = Set.copyOf(removed);
+        }
+
+        /** @return changes containing nothing */
+        public static <T> Changes<T> none() {
+            return new Changes<>(List.of(), Set.of());
+        }
+
+        /** @return {@code true} if nothing changed */
+        public boolean isEmpty() {
+            return upserted.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    /**
+     * Told what a repository that defers its writes (see {@link PersistenceCoordinator})
+     * actually stored, once it is stored.
+     *
+     * @param <T> entity type
+     */
+    interface WriteListener<T> {
+
+        /**
+         * A list passed to {@link #saveAll(List)} was written or dropped.
+         *
+         * @param stored {@code false} if the write was dropped because of a
+         *               {@link ConcurrentUpdateException}
+         */
+        void fullListWritten(boolean stored);
+
+        /**
+         * Single-entity writes were stored; writes dropped because of a
+         * {@link ConcurrentUpdateException} are not included.
+         *
+         * @param deleted  entities deleted, in the order written
+         * @param upserted entities inserted or replaced, in the order written
+         */
+        void stored(List<T> deleted, List<T> upserted);
+    }
+
+    /**
+     * Loads all entities from persistent storage.
+     *
+     * @return all stored entities; never {@code null}, but may be empty
+     */
+    List<T> loadAll();
+
+    /**
+     * Streams the stored entities for a single pass, without necessarily
+     * holding them all in memory. The stream may keep storage open and must be
+     * closed.
+     * <p>
+     * Unlike {@link #loadAll()}, streaming leaves the state of the repository
+     * as it is: what {@link #refresh()} reports and which entities the next
+     * save writes do not change. The default streams {@code loadAll()} and is
+     * meant only for repositories whose {@code loadAll()} has no such effect.
+     * Entities are read as stored: references to other entities are not resolved.
+     * </p>
+     *
+     * @return the stored entities; never {@code null}
+     */
+    default Stream<T> stream() {
+        return loadAll().stream();
+    }
+
+    /**
+     * Passes every stored entity to {@code action}, reading them through
+     * {@link #stream()}.
+     *
+     * @param action receives each entity once
+     */
+    default void forEach(Consumer<? super T> action) {
+        try (Stream<T> entities = stream()) {
+            entities.forEach(action);
+        }
+    }
+
+    /**
+     * Replaces the stored entities with the given list.
+     *
+     * @param entities the complete list of entities; must not be {@code null}
+     */
+    void saveAll(List<T> entities);
+
+    /**
+     * Tells whether {@link #upsert(Object)} and {@link #delete(Object)} are
+     * supported. The default is {@code false}: only full saves are possible.
+     *
+     * @return {@code true} if single entities can be written
+     */
+    default boolean supportsIncrementalWrites() {
+        return false;
+    }
+
+    /**
+     * Inserts a new entity or replaces the stored version of an existing one.
+     *
+     * @param entity the entity to write; must not be {@code null}
+     * @throws UnsupportedOperationException if {@link #supportsIncrementalWrites()} is {@code false}
+     */
+    default void upsert(T entity) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " only supports saveAll");
+    }
+
+    /**
+     * Removes an entity from storage; removing an unknown entity does nothing.
+     *
+     * @param entity the entity to remove; must not be {@code null}
+     * @throws UnsupportedOperationException if {@link #supportsIncrementalWrites()} is {@code false}
+     */
+    default void delete(T entity) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " only supports saveAll");
+    }
+
+    /**
+     * Reads what other processes sharing the storage wrote since the last call
+     * (or since {@link #loadAll()}), so a caller can update its in-memory list
+     * instead of reloading everything.
+     * <p>
+     * The default returns {@link Changes#none()}: the storage is not shared.
+     * </p>
+     *
+     * @return entities changed or removed elsewhere; never {@code null}
+     */
+    default Changes<T> refresh() {
+        return Changes.none();
+    }
+
+    /**
+     * Asks to be told what is stored, for repositories that store writes later
+     * than the call that requests them.
+     * <p>
+     * The default returns {@code false}: every write is stored, or has failed,
+     * when the call returns.
+     * </p>
+     *
+     * @param listener told about every deferred write once it was performed
+     * @return {@code true} if writes are deferred and {@code listener} will be told
+     */
+    default boolean notifyWhenStored(WriteListener<T> listener) {
+        return false;
+    }
+}
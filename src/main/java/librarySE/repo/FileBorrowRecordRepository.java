@@ -3,9 +3,11 @@ import com.google.gson.reflect.TypeToken;
 import librarySE.managers.BorrowRecord;
 import librarySE.utils.FileUtils;
 
+import java.io.Closeable;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * File-based implementation of {@link BorrowRecordRepository}.
@@ -20,17 +22,25 @@ import java.util.*;
  *
  * <p><strong>Example file path:</strong> {@code library_data/borrow_records.json}</p>
  *
+ * <p><strong>Startup snapshot:</strong> {@link #close()} writes a binary snapshot
+ * ({@code borrow_records.bin}), which {@link #loadAll()} reads instead of the JSON
+ * as long as the JSON content has not changed since. Saves write only the JSON,
+ * which remains the interchange format.</p>
+ *
  * <p>This implementation ensures that all borrowing data is
  * automatically persisted between system restarts.</p>
  *
  * @author Eman
  * 
  */
-public class FileBorrowRecordRepository implements BorrowRecordRepository {
+public class FileBorrowRecordRepository implements BorrowRecordRepository, Closeable {
 
     /** JSON file path used for storing borrow record data. */
     private static final Path FILE = FileUtils.dataFile("borrow_records.json");
 
+    /** Binary snapshot of {@link #FILE}, preferred at startup while it is current. */
+    private static final Path SNAPSHOT = FileUtils.dataFile("borrow_records.bin");
+
     /**
      * Loads all borrowing records from the JSON file.
      * <p>If the file does not exist or is empty, an empty list is returned.</p>
@@ -39,9 +49,21 @@ public class FileBorrowRecordRepository implements BorrowRecordRepository {
      */
     @Override
     public List<BorrowRecord> loadAll() {
-        Type type = new TypeToken<List<BorrowRecord>>() {}.getType();
-        List<BorrowRecord> list = FileUtils.readJson(FILE, type, new ArrayList<>());
-        return (list == null) ? new ArrayList<>() : list;
+        List<BorrowRecord> cached = FileUtils.readSnapshot(SNAPSHOT, FILE, in -> in.readList(BorrowRecord::readSnapshot));
+        if (cached != null) return cached;
+
+        return readJson();
+    }
+
+    /**
+     * Streams the borrow records from the JSON file one at a time, without building the
+     * full list (and without the binary snapshot). The stream must be closed.
+     *
+     * @return lazily read borrow records; empty if the file does not exist
+     */
+    @Override
+    public Stream<BorrowRecord> stream() {
+        return FileUtils.streamJson(FILE, BorrowRecord.class);
     }
 
     /**
@@ -56,4 +78,20 @@ public class FileBorrowRecordRepository implements BorrowRecordRepository {
         List<BorrowRecord> snapshot = new ArrayList<>(records);
         FileUtils.writeJson(FILE, snapshot);
     }
+
+    /**
+     * Brings the binary snapshot up to date with the JSON file, reading the
+     * file back if it changed since the snapshot was written. Saves do not
+     * write the snapshot; call this once the last save is done, at shutdown.
+     */
+    @Override
+    public void close() {
+        FileUtils.refreshSnapshot(SNAPSHOT, FILE, this::readJson, (out, list) -> out.writeList(list, (o, r) -> r.writeSnapshot(o)));
+    }
+
+    private List<BorrowRecord> readJson() {
+        Type type = new TypeToken<List<BorrowRecord>>() {}.getType();
+        List<BorrowRecord> list = FileUtils.readJson(FILE, type, new ArrayList<>());
+        return (list == null) ? new ArrayList<>() : list;
+    }
 }
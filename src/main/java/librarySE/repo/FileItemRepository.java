@@ -2,12 +2,15 @@ package librarySE.repo;
 
 import com.google.gson.reflect.TypeToken;
 import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
 import librarySE.utils.FileUtils;
 
+import java.io.Closeable;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * File-based implementation of {@link ItemRepository} that persists {@link LibraryItem}
@@ -21,7 +24,10 @@ import java.util.List;
  * <ul>
  *     <li>JSON serialization using Gson</li>
  *     <li>File location: {@code library_data/items.json}</li>
- *     <li>Creates a timestamped backup copy before overwriting the existing file</li>
+ *     <li>Each written version is backed up to the deduplicating store in {@code library_data/backups}</li>
+ *     <li>Binary snapshot {@code library_data/items.bin}, read instead of the JSON
+ *         while the JSON content is unchanged since the snapshot was written;
+ *         written by {@link #close()}, not with each save</li>
  * </ul>
  *
  * <h2>Responsibilities</h2>
@@ -34,7 +40,7 @@ import java.util.List;
  * <ul>
  *     <li>If the file does not exist, {@link #loadAll()} returns an empty list</li>
  *     <li>{@link #saveAll(List)} creates the file automatically if missing</li>
- *     <li>All write operations overwrite existing data and create a timestamped backup first</li>
+ *     <li>All write operations overwrite existing data; backups are taken in the background</li>
  * </ul>
  *
  * <h2>Usage Example</h2>
@@ -53,11 +59,14 @@ import java.util.List;
  *
  * @author Malak
  */
-public class FileItemRepository implements ItemRepository {
+public class FileItemRepository implements ItemRepository, Closeable {
 
     /** Path of the JSON file where items are stored. */
     private static final Path FILE = FileUtils.dataFile("items.json");
 
+    /** Binary snapshot of {@link #FILE}, preferred at startup while it is current. */
+    private static final Path SNAPSHOT = FileUtils.dataFile("items.bin");
+
     /**
      * Loads all stored {@link LibraryItem} objects from the JSON file.
      * <p>
@@ -68,16 +77,28 @@ public class FileItemRepository implements ItemRepository {
      */
     @Override
     public List<LibraryItem> loadAll() {
-        Type type = new TypeToken<List<LibraryItem>>() {}.getType();
-        List<LibraryItem> list = FileUtils.readJson(FILE, type, new ArrayList<>());
-        return (list == null) ? new ArrayList<>() : list;
+        List<LibraryItem> cached = FileUtils.readSnapshot(SNAPSHOT, FILE, in -> in.readList(LibraryItemFactory::readSnapshot));
+        if (cached != null) return cached;
+
+        return readJson();
+    }
+
+    /**
+     * Streams the items from the JSON file one at a time, without building the
+     * full list (and without the binary snapshot). The stream must be closed.
+     *
+     * @return lazily read items; empty if the file does not exist
+     */
+    @Override
+    public Stream<LibraryItem> stream() {
+        return FileUtils.streamJson(FILE, LibraryItem.class);
     }
 
     /**
      * Saves the provided list of {@link LibraryItem} objects to the JSON file.
      * <p>
-     * The existing data is overwritten and a timestamped backup is saved in
-     * {@code library_data/backups}.
+     * The existing data is overwritten and the new version is backed up to
+     * {@code library_data/backups} in the background.
      * </p>
      *
      * @param items list of items to persist (must not be {@code null})
@@ -87,4 +108,20 @@ public class FileItemRepository implements ItemRepository {
         List<LibraryItem> snapshot = new ArrayList<>(items);
         FileUtils.writeJson(FILE, snapshot);
     }
+
+    /**
+     * Brings the binary snapshot up to date with the JSON file, reading the
+     * file back if it changed since the snapshot was written. Saves do not
+     * write the snapshot; call this once the last save is done, at shutdown.
+     */
+    @Override
+    public void close() {
+        FileUtils.refreshSnapshot(SNAPSHOT, FILE, this::readJson, (out, list) -> out.writeList(list, LibraryItemFactory::writeSnapshot));
+    }
+
+    private List<LibraryItem> readJson() {
+        Type type = new TypeToken<List<LibraryItem>>() {}.getType();
+        List<LibraryItem> list = FileUtils.readJson(FILE, type, new ArrayList<>());
+        return (list == null) ? new ArrayList<>() : list;
+    }
 }
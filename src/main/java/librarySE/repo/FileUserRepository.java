@@ -4,10 +4,12 @@ import com.google.gson.reflect.TypeToken;
 import librarySE.managers.User;
 import librarySE.utils.FileUtils;
 
+import java.io.Closeable;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * File-based implementation of {@link UserRepository} that persists user data in JSON format.
@@ -21,7 +23,10 @@ import java.util.List;
  * <ul>
  *     <li>JSON serialization/deserialization using Gson</li>
  *     <li>File location: {@code library_data/users.json}</li>
- *     <li>A backup copy of the old file is automatically created before saving new data</li>
+ *     <li>Each written version is backed up to the deduplicating store in {@code library_data/backups}</li>
+ *     <li>Binary snapshot {@code library_data/users.bin}, read instead of the JSON
+ *         while the JSON content is unchanged since the snapshot was written;
+ *         written by {@link #close()}, not with each save</li>
  * </ul>
  *
  * <h2>Responsibilities</h2>
@@ -34,7 +39,7 @@ import java.util.List;
  * <ul>
  *   <li>If the file does not exist, {@link #loadAll()} returns an empty list</li>
  *   <li>{@link #saveAll(List)} creates the file automatically if missing</li>
- *   <li>All write operations overwrite existing data and create a timestamped backup first</li>
+ *   <li>All write operations overwrite existing data; backups are taken in the background</li>
  * </ul>
  *
  * <h2>Usage Example</h2>
@@ -53,11 +58,14 @@ import java.util.List;
  *
  * @author Malak
  */
-public class FileUserRepository implements UserRepository {
+public class FileUserRepository implements UserRepository, Closeable {
 
     /** Path of the JSON file where users are saved. */
     private static final Path FILE = FileUtils.dataFile("users.json");
 
+    /** Binary snapshot of {@link #FILE}, preferred at startup while it is current. */
+    private static final Path SNAPSHOT = FileUtils.dataFile("users.bin");
+
     /**
      * Loads all previously stored users from the JSON file.
      * <p>
@@ -69,16 +77,28 @@ public class FileUserRepository implements UserRepository {
      */
     @Override
     public List<User> loadAll() {
-        Type type = new TypeToken<List<User>>() {}.getType();
-        List<User> list = FileUtils.readJson(FILE, type, new ArrayList<>());
-        return (list == null) ? new ArrayList<>() : list;
+        List<User> cached = FileUtils.readSnapshot(SNAPSHOT, FILE, in -> in.readList(User::readSnapshot));
+        if (cached != null) return cached;
+
+        return readJson();
+    }
+
+    /**
+     * Streams the users from the JSON file one at a time, without building the
+     * full list (and without the binary snapshot). The stream must be closed.
+     *
+     * @return lazily read users; empty if the file does not exist
+     */
+    @Override
+    public Stream<User> stream() {
+        return FileUtils.streamJson(FILE, User.class);
     }
 
     /**
      * Saves the given list of users into the JSON file.
      * <p>
-     * The existing data is replaced, and a timestamped backup copy of the
-     * previous file (if it existed) is stored under {@code library_data/backups}.
+     * The existing data is replaced, and the new version is backed up to
+     * {@code library_data/backups} in the background.
      * </p>
      *
      * @param users the list of users to persist (must not be {@code null})
@@ -88,4 +108,20 @@ public class FileUserRepository implements UserRepository {
         List<User> snapshot = new ArrayList<>(users);
         FileUtils.writeJson(FILE, snapshot);
     }
+
+    /**
+     * Brings the binary snapshot up to date with the JSON file, reading the
+     * file back if it changed since the snapshot was written. Saves do not
+     * write the snapshot; call this once the last save is done, at shutdown.
+     */
+    @Override
+    public void close() {
+        FileUtils.refreshSnapshot(SNAPSHOT, FILE, this::readJson, (out, list) -> out.writeList(list, (o, u) -> u.writeSnapshot(o)));
+    }
+
+    private List<User> readJson() {
+        Type type = new TypeToken<List<User>>() {}.getType();
+        List<User> list = FileUtils.readJson(FILE, type, new ArrayList<>());
+        return (list == null) ? new ArrayList<>() : list;
+    }
 }
@@ -0,0 +1,189 @@
+package librarySE.repo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Version counter of a data file shared by several processes, kept in a small
+ * sidecar file that also serves as the file's advisory lock.
+ * <p>
+ * Every process that modifies the data file does so between {@link #lock()} and
+ * {@link #unlock(Stamp)}, and passes a newer {@link Stamp} to {@code unlock}
+ * when it wrote something. Other processes compare {@link #peek()} with the
+ * stamp they last saw to notice changes without reading the data file:
+ * </p>
+ * <ul>
+ *     <li>{@link Stamp#version()} grows with every write;</li>
+ *     <li>{@link Stamp#generation()} grows when the data file is rewritten
+ *         (e.g. a journal compacted into its snapshot), after which positions
+ *         remembered in the old file are meaningless.</li>
+ * </ul>
+ *
+ * <h2>Locking</h2>
+ * <p>
+ * {@link #lock()} takes an exclusive {@link FileLock} on the sidecar. File locks
+ * are held per process, so threads of one process (and several instances for the
+ * same file) are additionally serialized with a {@link ReentrantLock} shared by
+ * path. The lock is reentrant; only the outermost {@link #unlock(Stamp)} releases
+ * it. The operating system drops the file lock if the process dies.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * Stamp seen = version.lock();
+ * Stamp next = seen;
+ * try {
+ *     if (!seen.equals(known)) reload();
+ *     append(entry);
+ *     next = seen.next();
+ * } finally {
+ *     version.unlock(next);
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public final class FileVersion implements Closeable {
+
+    /**
+     * Position of a data file in its history.
+     *
+     * @param version    number of writes so far
+     * @param generation number of rewrites so far
+     */
+    public record Stamp(long version, long generation) {
+
+        /** Stamp of a file that has never been written under a version counter. */
+        public static final Stamp INITIAL = new Stamp(0, 0);
+
+        /** @return the stamp after one more write */
+        public Stamp next() {
+            return new Stamp(version + 1, generation);
+        }
+
+        /** @return the stamp after one more write that rewrote the file */
+        public Stamp nextGeneration() {
+            return new Stamp(version + 1, generation + 1);
+        }
+    }
+
+    private static final int SIZE = 2 * Long.BYTES;
+
+    /** In-process locks by sidecar path, shared by all instances for the same file. */
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ReentrantLock processLock;
+
+    /** File lock held by the outermost {@link #lock()}; guarded by {@link #processLock}. */
+    private FileLock fileLock;
+
+    /**
+     * Opens (or creates) the version sidecar of a data file.
+     *
+     * @param dataFile the shared data file; the sidecar is {@code <dataFile>.version}
+     * @throws IOException if the sidecar cannot be opened
+     */
+    public FileVersion(Path dataFile) throws IOException {
+        this.file = dataFile.resolveSibling(dataFile.getFileName() + ".version").toAbsolutePath().normalize();
+        Path parent = file.getParent();
+        if (parent != null && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.processLock = LOCKS.computeIfAbsent(file, p -> new ReentrantLock());
+    }
+
+    /**
+     * Reads the current stamp without locking.
+     * <p>
+     * Cheap enough to call before every operation: a single 16-byte read.
+     * The result may be outdated as soon as it is returned; use it to decide
+     * whether to {@link #lock()} and catch up, not to skip locking for a write.
+     * </p>
+     *
+     * @return the current stamp; {@link Stamp#INITIAL} if none was written yet
+     * @throws IOException if reading fails
+     */
+    public Stamp peek() throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(SIZE);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, buf.position()) < 0) break;
+        }
+        if (buf.position() < SIZE) return Stamp.INITIAL;
+        buf.flip();
+        return new Stamp(buf.getLong(), buf.getLong());
+    }
+
+    /**
+     * Acquires the lock, waiting for other threads and processes to release it.
+     *
+     * @return the current stamp
+     * @throws IOException if the file lock cannot be acquired
+     */
+    public Stamp lock() throws IOException {
+        processLock.lock();
+        if (processLock.getHoldCount() == 1) {
+            try {
+                fileLock = channel.lock();
+            } catch (IOException | RuntimeException e) {
+                processLock.unlock();
+                throw e;
+            }
+        }
+        return peek();
+    }
+
+    /**
+     * Records {@code next} if it differs from the current stamp, then releases
+     * the lock.
+     *
+     * @param next the stamp after this holder's writes; the stamp returned by
+     *             {@link #lock()} if nothing was written
+     * @throws IOException if the stamp cannot be written; the lock is released anyway
+     * @throws IllegalMonitorStateException if the current thread does not hold the lock
+     */
+    public void unlock(Stamp next) throws IOException {
+        if (!processLock.isHeldByCurrentThread())
+            throw new IllegalMonitorStateException("FileVersion not locked by this thread: " + file);
+        try {
+            if (!next.equals(peek())) {
+                ByteBuffer buf = ByteBuffer.allocate(SIZE).putLong(next.version()).putLong(next.generation());
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    channel.write(buf, buf.position());
+                }
+            }
+        } finally {
+            try {
+                if (processLock.getHoldCount() == 1 && fileLock != null) {
+                    fileLock.release();
+                    fileLock = null;
+                }
+            } finally {
+                processLock.unlock();
+            }
+        }
+    }
+
+    /** @return path of the sidecar file */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
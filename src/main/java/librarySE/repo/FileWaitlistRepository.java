@@ -4,10 +4,17 @@ import com.google.gson.reflect.TypeToken;
 import librarySE.core.WaitlistEntry;
 import librarySE.utils.FileUtils;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
 
 /**
  * File-based implementation of {@link WaitlistRepository} that persists
@@ -22,8 +29,20 @@ import java.util.List;
  *     <li>File Path: {@code library_data/waitlist.json}</li>
  *     <li>Format: JSON (serialized using Gson)</li>
  *     <li>Utility: {@link FileUtils} handles reading/writing safely</li>
+ *     <li>Startup snapshot: {@code library_data/waitlist.bin}, read instead of the JSON
+ *         while the JSON content is unchanged since the snapshot was written;
+ *         written by {@link #close()}, not with each save</li>
  * </ul>
  *
+ * <h2>Shared Files:</h2>
+ * <p>
+ * Desks sharing the data directory change the file under its {@link FileVersion}
+ * lock. {@link #add} and {@link #removeFor} read the stored list under the lock
+ * and change only the entries concerned, so no desk overwrites another's
+ * entries; {@link #refresh()} rereads the file when its version shows that
+ * another desk wrote it.
+ * </p>
+ *
  * <h2>Usage Example:</h2>
  * <pre>{@code
  * WaitlistRepository repo = new FileWaitlistRepository();
@@ -40,10 +59,35 @@ import java.util.List;
  *
  * @author Eman
  */
-public class FileWaitlistRepository implements WaitlistRepository {
+public class FileWaitlistRepository implements WaitlistRepository, Closeable {
 
     /** Path to the JSON file storing waitlist data. */
-    private static final Path FILE = FileUtils.dataFile("waitlist.json");
+    private final Path file;
+
+    /** Binary snapshot of {@link #file}, preferred at startup while it is current. */
+    private final Path snapshot;
+
+    /** Lazily opened version counter and lock of {@link #file}. */
+    private FileVersion version;
+
+    /** Stamp of the file as last read or written here; {@code null} until then. */
+    private FileVersion.Stamp seen;
+
+    /**
+     * Creates a repository for {@code library_data/waitlist.json}.
+     */
+    public FileWaitlistRepository() {
+        this(FileUtils.dataFile("waitlist.json"), FileUtils.dataFile("waitlist.bin"));
+    }
+
+    /**
+     * @param file     JSON file holding the waitlist
+     * @param snapshot binary snapshot of {@code file}
+     */
+    FileWaitlistRepository(Path file, Path snapshot) {
+        this.file = file;
+        this.snapshot = snapshot;
+    }
 
     /**
      * Loads all {@link WaitlistEntry} objects from persistent storage.
@@ -54,23 +98,159 @@ public class FileWaitlistRepository implements WaitlistRepository {
      * @return list of waitlist entries; never {@code null}, but may be empty
      */
     @Override
-    public List<WaitlistEntry> loadAll() {
-        Type type = new TypeToken<List<WaitlistEntry>>() {}.getType();
-        List<WaitlistEntry> list = FileUtils.readJson(FILE, type, new ArrayList<>());
-        return (list == null) ? new ArrayList<>() : list;
+    public synchronized List<WaitlistEntry> loadAll() {
+        List<WaitlistEntry> entries = new ArrayList<>();
+        locked(stamp -> {
+            entries.addAll(read());
+            seen = stamp;
+            return stamp;
+        });
+        return entries;
+    }
+
+    /**
+     * Streams the waitlist entries from the JSON file one at a time, without building the
+     * full list (and without the binary snapshot). The stream must be closed.
+     *
+     * @return lazily read waitlist entries; empty if the file does not exist
+     */
+    @Override
+    public Stream<WaitlistEntry> stream() {
+        return FileUtils.streamJson(file, WaitlistEntry.class);
     }
 
     /**
      * Saves the provided list of {@link WaitlistEntry} objects to persistent storage.
      * <p>
-     * Overwrites existing data with the new list.
+     * Overwrites existing data with the new list, including entries other
+     * desks added; use {@link #add} and {@link #removeFor} to keep them.
      * </p>
      *
      * @param entries the list of waitlist entries to save; must not be {@code null}
      */
     @Override
-    public void saveAll(List<WaitlistEntry> entries) {
-        List<WaitlistEntry> snapshot = new ArrayList<>(entries);
-        FileUtils.writeJson(FILE, snapshot);
+    public synchronized void saveAll(List<WaitlistEntry> entries) {
+        List<WaitlistEntry> copy = new ArrayList<>(entries);
+        locked(stamp -> {
+            write(copy);
+            seen = stamp.next();
+            return seen;
+        });
+    }
+
+    /**
+     * Appends one entry to the stored list.
+     *
+     * @param entry the entry to add
+     */
+    @Override
+    public synchronized void add(WaitlistEntry entry) {
+        locked(stamp -> {
+            List<WaitlistEntry> entries = read();
+            entries.add(entry);
+            write(entries);
+            seen = stamp.next();
+            return seen;
+        });
+    }
+
+    /**
+     * Removes the stored entries waiting for an item.
+     *
+     * @param itemId the item that became available
+     * @return the removed entries, in stored order
+     */
+    @Override
+    public synchronized List<WaitlistEntry> removeFor(UUID itemId) {
+        List<WaitlistEntry> removed = new ArrayList<>();
+        locked(stamp -> {
+            List<WaitlistEntry> entries = read();
+            for (WaitlistEntry e : entries) {
+                if (e.getItemId().equals(itemId)) removed.add(e);
+            }
+            if (removed.isEmpty()) return stamp;
+            entries.removeIf(e -> e.getItemId().equals(itemId));
+            write(entries);
+            seen = stamp.next();
+            return seen;
+        });
+        return removed;
+    }
+
+    /**
+     * Rereads the file if another desk wrote it since this repository last
+     * read or wrote it. Cheap otherwise: one 16-byte read.
+     *
+     * @return the stored entries, or empty if they did not change elsewhere
+     */
+    @Override
+    public synchronized Optional<List<WaitlistEntry>> refresh() {
+        try {
+            if (seen != null && version().peek().equals(seen)) return Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read version of " + file, e);
+        }
+        return Optional.of(loadAll());
+    }
+
+    /**
+     * Brings the binary snapshot up to date with the file, under its lock, and
+     * releases the lock file. Writes do not touch the snapshot; call this once
+     * the last write is done, at shutdown.
+     */
+    @Override
+    public synchronized void close() {
+        locked(stamp -> {
+            FileUtils.refreshSnapshot(snapshot, file, this::readJson,
+                    (out, list) -> out.writeList(list, (o, e) -> e.writeSnapshot(o)));
+            return stamp;
+        });
+        try {
+            version.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close version of " + file, e);
+        }
+        version = null;
+    }
+
+    private List<WaitlistEntry> read() {
+        List<WaitlistEntry> cached = FileUtils.readSnapshot(snapshot, file, in -> in.readList(WaitlistEntry::readSnapshot));
+        return (cached != null) ? new ArrayList<>(cached) : readJson();
+    }
+
+    private List<WaitlistEntry> readJson() {
+        Type type = new TypeToken<List<WaitlistEntry>>() {}.getType();
+        List<WaitlistEntry> list = FileUtils.readJson(file, type, new ArrayList<>());
+        return (list == null) ? new ArrayList<>() : new ArrayList<>(list);
+    }
+
+    private void write(List<WaitlistEntry> entries) {
+        FileUtils.writeJson(file, entries);
+    }
+
+    /**
+     * Runs {@code action} under the file's {@link FileVersion} lock.
+     *
+     * @param action receives the current stamp and returns the stamp after its
+     *               writes; the same stamp if it wrote nothing
+     */
+    private void locked(UnaryOperator<FileVersion.Stamp> action) {
+        try {
+            FileVersion lock = version();
+            FileVersion.Stamp stamp = lock.lock();
+            FileVersion.Stamp next = stamp;
+            try {
+                next = action.apply(stamp);
+            } finally {
+                lock.unlock(next);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to lock " + file, e);
+        }
+    }
+
+    private FileVersion version() throws IOException {
+        if (version == null) version = new FileVersion(file);
+        return version;
     }
 }
@@ -1,7 +1,12 @@
 package librarySE.repo;
 
 import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Defines the contract for managing persistence operations of {@link LibraryItem} objects.
@@ -20,6 +25,8 @@ import java.util.List;
  * <ul>
  *     <li>Load all library items currently stored in the system.</li>
  *     <li>Persist updates to items such as new additions or modifications.</li>
+ *     <li>Optionally write single items ({@link EntityRepository#upsert}, {@link EntityRepository#delete}).</li>
+ *     <li>Optionally read single items on demand ({@link #readsOnDemand()}, {@link #findById(UUID)}).</li>
  * </ul>
  *
  * <h2>Usage Example:</h2>
@@ -32,7 +39,7 @@ import java.util.List;
  * 
  * @author Malak
  */
-public interface ItemRepository {
+public interface ItemRepository extends EntityRepository<LibraryItem> {
 
     /**
      * Loads all {@link LibraryItem} objects from persistent storage.
@@ -50,4 +57,51 @@ public interface ItemRepository {
      * @param items the list of library items to save; must not be {@code null}
      */
     void saveAll(List<LibraryItem> items);
+
+    /**
+     * Tells whether {@link #loadAll()} returns a view that reads items only when
+     * they are accessed and {@link #findById(UUID)} reads a single item, so
+     * callers need not hold every item in memory.
+     * The default is {@code false}: items are read all at once.
+     *
+     * @return {@code true} if items are read on demand
+     */
+    default boolean readsOnDemand() {
+        return false;
+    }
+
+    /**
+     * Finds a stored item by id.
+     * <p>
+     * The default searches {@link #stream()}; repositories that
+     * {@linkplain #readsOnDemand() read on demand} read only this item and
+     * return the same instance as long as it is in use.
+     * </p>
+     *
+     * @param id the item identifier
+     * @return the item, or empty if none is stored with this id
+     */
+    default Optional<LibraryItem> findById(UUID id) {
+        try (Stream<LibraryItem> items = stream()) {
+            return items.filter(i -> i.getId().equals(id)).findFirst();
+        }
+    }
+
+    /**
+     * Captures the stored items as they are now, to be read while changes go
+     * on, e.g. for a consistent backup. Called while no manager operation runs,
+     * so repositories that {@linkplain #readsOnDemand() read on demand} only
+     * copy the items they hold in memory and read the others later from
+     * storage that later writes leave unchanged.
+     * <p>The default copies every item now.</p>
+     *
+     * @return supplies streams over the captured items; each stream must be closed
+     */
+    default Supplier<Stream<LibraryItem>> capture() {
+        List<LibraryItem> copies;
+        try (Stream<LibraryItem> items = stream()) {
+            copies = items.map(LibraryItemFactory::copyOf).toList();
+        }
+        return copies::stream;
+    }
 }
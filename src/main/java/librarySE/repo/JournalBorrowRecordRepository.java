@@ -0,0 +1,594 @@
+package librarySE.repo;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import librarySE.managers.BorrowRecord;
+import librarySE.utils.Config;
+import librarySE.utils.DataSchema;
+import librarySE.utils.Durability;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Journal-based implementation of {@link BorrowRecordRepository}.
+ * <p>
+ * Instead of rewriting the whole borrow history on every operation, this
+ * repository appends only the records that changed since the previous save
+ * to an {@link AppendOnlyJournal}. The full history lives in a JSON snapshot
+ * (the same {@code borrow_records.json} used by {@link FileBorrowRecordRepository}),
+ * and the journal holds the changes made after that snapshot.
+ * </p>
+ *
+ * <h2>Entry Types</h2>
+ * <ul>
+ *     <li>{@link #OP_ADD} – a new borrow record</li>
+ *     <li>{@link #OP_STATUS} – the record was returned</li>
+ *     <li>{@link #OP_FINE} – an overdue fine was recalculated or applied</li>
+ *     <li>{@link #OP_PAYMENT} – a fine payment was recorded</li>
+ *     <li>{@link #OP_DELETE} – the record was removed</li>
+ * </ul>
+ * <p>
+ * Every entry except {@link #OP_DELETE} carries the compact JSON of the changed
+ * record, so replaying the journal is a simple "last entry per id wins" upsert.
+ * {@link #upsert(BorrowRecord)} and {@link #delete(BorrowRecord)} append a single
+ * entry without the caller passing the full list.
+ * </p>
+ * <p>
+ * The JSON of the entries is versioned like the data files (see
+ * {@link JournalSchema}): entries of an older format are upgraded while they
+ * are replayed and the journal is then compacted, and a journal declaring a
+ * newer format is refused.
+ * </p>
+ *
+ * <h2>Compaction</h2>
+ * <p>
+ * Once the journal holds at least as many entries as the snapshot holds records
+ * (and at least {@code journal.borrow.compaction.minEntries}, default 512), the
+ * current list is written as a new snapshot (JSON plus the binary startup
+ * snapshot, see {@link FileUtils#readSnapshot}) and the journal is reset. Because
+ * the threshold grows with the history, the amortized write cost per operation
+ * stays constant.
+ * </p>
+ *
+ * <h2>Shared Files</h2>
+ * <p>
+ * Several processes (e.g. circulation desks) may use the same files. Every
+ * operation runs under the journal's {@link FileVersion} lock and first applies
+ * what other processes wrote since, replaying only their new entries unless one
+ * of them compacted meanwhile. Records added elsewhere are therefore never lost
+ * by an append or a compaction here, and are reported by {@link #refresh()}.
+ * Writing a copy of a record that another process changed meanwhile fails with
+ * a {@link ConcurrentUpdateException}.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * BorrowRecordRepository repo = new JournalBorrowRecordRepository();
+ * List<BorrowRecord> records = repo.loadAll();
+ * records.add(new BorrowRecord(user, item, strategy, LocalDate.now()));
+ * repo.saveAll(records); // appends one ADD entry
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class JournalBorrowRecordRepository implements BorrowRecordRepository, Closeable {
+
+    /** Entry type: a new record. */
+    static final byte OP_ADD = 1;
+
+    /** Entry type: the record's borrowing status changed. */
+    static final byte OP_STATUS = 2;
+
+    /** Entry type: the record's fine was recalculated or applied. */
+    static final byte OP_FINE = 3;
+
+    /** Entry type: a fine payment was recorded. */
+    static final byte OP_PAYMENT = 4;
+
+    /** Entry type: the record was removed; the payload is its id. */
+    static final byte OP_DELETE = 5;
+
+    private static final Type LIST_TYPE = new TypeToken<List<BorrowRecord>>() {}.getType();
+
+    /** Work done while holding the file lock. */
+    @FunctionalInterface
+    private interface Locked<R> {
+        R run() throws IOException;
+    }
+
+    /**
+     * Records read from storage.
+     *
+     * @param byId   records by id, in snapshot then journal order
+     * @param legacy whether the snapshot held records without identifiers
+     */
+    private record Stored(Map<UUID, BorrowRecord> byId, boolean legacy) { }
+
+    private final Path snapshotFile;
+    private final Path binarySnapshotFile;
+    private final Path journalFile;
+    private final int minCompactionEntries;
+
+    /** Lazily opened journal. */
+    private AppendOnlyJournal journal;
+
+    /** Format versions declared in the journal. */
+    private final JournalSchema schema;
+
+    /** Lazily opened version counter and lock of the journal. */
+    private FileVersion version;
+
+    /** Last persisted state of each record, used to detect what changed. */
+    private final Map<UUID, RecordState> persisted = new HashMap<>();
+
+    /** Current records by id, written as the snapshot on compaction after single-record writes. */
+    private final Map<UUID, BorrowRecord> live = new LinkedHashMap<>();
+
+    /** Whether {@link #persisted} and {@link #live} reflect the stored history. */
+    private boolean loaded;
+
+    /** Stamp of the files that {@link #live} reflects. */
+    private FileVersion.Stamp seen;
+
+    /** Stamp to record when the lock is released; set while it is held. */
+    private FileVersion.Stamp current;
+
+    /** Journal offset after the last entry applied to {@link #live}. */
+    private long journalEnd;
+
+    /** Records last written by other processes, as stored, by id. */
+    private final Map<UUID, BorrowRecord> foreign = new HashMap<>();
+
+    /** Records removed by other processes. */
+    private final Set<UUID> removedElsewhere = new HashSet<>();
+
+    /** Changes by other processes not yet returned by {@link #refresh()}. */
+    private final Map<UUID, BorrowRecord> unreportedUpserts = new LinkedHashMap<>();
+    private final Set<UUID> unreportedRemovals = new LinkedHashSet<>();
+
+    /**
+     * Creates a repository using {@code library_data/borrow_records.json} as
+     * snapshot and {@code library_data/borrow_records.journal} as journal.
+     */
+    public JournalBorrowRecordRepository() {
+        this(FileUtils.dataFile("borrow_records.json"),
+             FileUtils.dataFile("borrow_records.journal"),
+             Config.getInt("journal.borrow.compaction.minEntries", 512));
+    }
+
+    /**
+     * Creates a repository for custom file locations.
+     *
+     * @param snapshotFile         JSON snapshot of the full history
+     * @param journalFile          journal of changes since the snapshot
+     * @param minCompactionEntries minimum journal length before compaction
+     */
+    public JournalBorrowRecordRepository(Path snapshotFile, Path journalFile, int minCompactionEntries) {
+        this.snapshotFile = Objects.requireNonNull(snapshotFile, "snapshotFile");
+        this.binarySnapshotFile = snapshotFile.resolveSibling(
+                snapshotFile.getFileName().toString().replaceFirst("\\.json$", "") + ".bin");
+        this.journalFile = Objects.requireNonNull(journalFile, "journalFile");
+        this.schema = new JournalSchema(journalFile);
+        this.minCompactionEntries = Math.max(1, minCompactionEntries);
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     * <p>
+     * Snapshots written before records had identifiers are rewritten once,
+     * so later journal entries can be matched to their records.
+     * </p>
+     *
+     * @return all borrow records; never {@code null}
+     */
+    @Override
+    public synchronized List<BorrowRecord> loadAll() {
+        loaded = false; // read again by catchUp()
+        return locked(() -> {
+            foreign.clear();
+            removedElsewhere.clear();
+            unreportedUpserts.clear();
+            unreportedRemovals.clear();
+            return new ArrayList<>(live.values());
+        });
+    }
+
+    /**
+     * Streams the snapshot one record at a time with the journal applied.
+     * <p>
+     * Unlike {@link #loadAll()}, this leaves the records held here and the
+     * changes not yet reported by {@link #refresh()} as they are, and does not
+     * rewrite a snapshot whose records lack identifiers.
+     * </p>
+     *
+     * @return the stored borrow records; must be closed
+     */
+    @Override
+    public synchronized Stream<BorrowRecord> stream() {
+        try {
+            FileVersion lock = version();
+            FileVersion.Stamp stamp = lock.lock();
+            try {
+                return JournalStream.open(snapshotFile, journal(), journalFile, BorrowRecord.class,
+                        BorrowRecord::getId, OP_DELETE, BorrowRecord::ensureId);
+            } finally {
+                lock.unlock(stamp);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access journal: " + journalFile, e);
+        }
+    }
+
+    /**
+     * Appends an entry for every record that is new or changed since the last
+     * save, and compacts the journal when it has grown large enough.
+     * <p>
+     * Records added by other processes and not yet reported by {@link #refresh()}
+     * are kept even though {@code records} cannot contain them.
+     * </p>
+     *
+     * @param records the complete current list of records
+     * @throws ConcurrentUpdateException if a changed record is an outdated copy
+     *                                   of one changed or removed elsewhere
+     */
+    @Override
+    public synchronized void saveAll(List<BorrowRecord> records) {
+        locked(() -> {
+            List<AppendOnlyJournal.Entry> entries = new ArrayList<>();
+            Map<UUID, RecordState> changed = new HashMap<>();
+
+            for (BorrowRecord r : records) {
+                RecordState now = RecordState.of(r);
+                RecordState before = persisted.get(r.getId());
+                byte op = (before == null) ? OP_ADD : before.diff(now);
+                if (op != 0) {
+                    checkCurrent(r);
+                    entries.add(new AppendOnlyJournal.Entry(op, encode(r)));
+                    changed.put(r.getId(), now);
+                }
+            }
+
+            append(entries);
+            persisted.putAll(changed);
+            changed.keySet().forEach(foreign::remove);
+            live.clear();
+            records.forEach(r -> live.put(r.getId(), r));
+            unreportedUpserts.forEach(live::putIfAbsent);
+
+            compactIfNeeded();
+            return null;
+        });
+    }
+
+    /** @return {@code true}: single records are appended to the journal */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * Appends an entry for one record if it is new or changed since its last save.
+     *
+     * @param record the added or modified record
+     * @throws ConcurrentUpdateException if another process changed or removed
+     *                                   the record since this copy was read
+     */
+    @Override
+    public synchronized void upsert(BorrowRecord record) {
+        locked(() -> {
+            // Even an unchanged outdated copy conflicts: the caller decided based on it.
+            checkCurrent(record);
+            RecordState now = RecordState.of(record);
+            RecordState before = persisted.get(record.getId());
+            byte op = (before == null) ? OP_ADD : before.diff(now);
+            live.put(record.getId(), record);
+            if (op == 0) return null;
+
+            append(List.of(new AppendOnlyJournal.Entry(op, encode(record))));
+            persisted.put(record.getId(), now);
+            live.put(record.getId(), record);
+            foreign.remove(record.getId());
+            compactIfNeeded();
+            return null;
+        });
+    }
+
+    /**
+     * Appends an {@link #OP_DELETE} entry, unless the record is not stored.
+     *
+     * @param record the removed record
+     * @throws ConcurrentUpdateException if another process changed the record
+     *                                   since this copy was read
+     */
+    @Override
+    public synchronized void delete(BorrowRecord record) {
+        locked(() -> {
+            UUID id = record.getId();
+            if (!persisted.containsKey(id)) return null;
+            checkCurrent(record);
+            append(List.of(new AppendOnlyJournal.Entry(OP_DELETE, id.toString().getBytes(StandardCharsets.UTF_8))));
+            persisted.remove(id);
+            live.remove(id);
+            foreign.remove(id);
+            compactIfNeeded();
+            return null;
+        });
+    }
+
+    /**
+     * Returns the records other processes wrote since the previous call.
+     * <p>
+     * When the version counter shows no change, this costs one small read and
+     * takes no lock. Returned records hold user and item ids only.
+     * </p>
+     *
+     * @return records changed or removed elsewhere; never {@code null}
+     */
+    @Override
+    public synchronized Changes<BorrowRecord> refresh() {
+        if (!loaded) return Changes.none();
+        try {
+            if (!version().peek().equals(seen)) locked(() -> null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read version of " + journalFile, e);
+        }
+        if (unreportedUpserts.isEmpty() && unreportedRemovals.isEmpty()) return Changes.none();
+
+        Changes<BorrowRecord> changes = new Changes<>(new ArrayList<>(unreportedUpserts.values()), unreportedRemovals);
+        unreportedUpserts.clear();
+        unreportedRemovals.clear();
+        return changes;
+    }
+
+    /**
+     * Writes the given records as a new snapshot and resets the journal.
+     *
+     * @param records the complete current list of records
+     */
+    public synchronized void compact(List<BorrowRecord> records) {
+        locked(() -> {
+            compactLocked(records);
+            return null;
+        });
+    }
+
+    /** @return number of entries written since the last compaction */
+    public synchronized int pendingJournalEntries() {
+        return locked(() -> journal().entryCount());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        if (version != null) {
+            version.close();
+            version = null;
+        }
+    }
+
+    // =====================================================================
+    // Internals
+    // =====================================================================
+
+    /**
+     * Runs {@code work} under the file lock, after catching up with the writes
+     * of other processes, and records the stamp of this process's writes.
+     */
+    private <R> R locked(Locked<R> work) {
+        try {
+            FileVersion lock = version();
+            current = lock.lock();
+            try {
+                catchUp();
+                return work.run();
+            } finally {
+                lock.unlock(current);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to access journal: " + journalFile, e);
+        }
+    }
+
+    /** Brings {@link #live} and {@link #persisted} up to date with the files. */
+    private void catchUp() throws IOException {
+        if (!loaded) {
+            Stored stored = read();
+            load(stored.byId());
+            seen = current;
+            if (stored.legacy() || schema.upgraded()) compactLocked(new ArrayList<>(live.values()));
+            return;
+        }
+        if (current.generation() != seen.generation()) {
+            merge(read().byId());
+        } else if (current.version() != seen.version()) {
+            journalEnd = journal().replayFrom(journalEnd, entry -> {
+                if (schema.consume(entry)) return;
+                if (entry.type() == OP_DELETE) {
+                    removedElsewhere(UUID.fromString(new String(entry.payload(), StandardCharsets.UTF_8)));
+                } else {
+                    writtenElsewhere(decode(entry.payload()));
+                }
+            });
+        }
+        if (journalEnd < journal().sizeInBytes()) {
+            journal().discardFrom(journalEnd); // torn by a process that crashed while appending
+        }
+        seen = current;
+        if (schema.upgraded()) compactLocked(new ArrayList<>(live.values()));
+    }
+
+    /** Reads the snapshot and journal; sets {@link #journalEnd}. */
+    private Stored read() throws IOException {
+        List<BorrowRecord> snapshot = FileUtils.readSnapshot(binarySnapshotFile, snapshotFile,
+                in -> in.readList(BorrowRecord::readSnapshot));
+        if (snapshot == null) snapshot = FileUtils.readJson(snapshotFile, LIST_TYPE, new ArrayList<>());
+        if (snapshot == null) snapshot = new ArrayList<>();
+
+        boolean legacy = false;
+        Map<UUID, BorrowRecord> byId = new LinkedHashMap<>();
+        for (BorrowRecord r : snapshot) {
+            legacy |= r.ensureId();
+            byId.put(r.getId(), r);
+        }
+
+        schema.reset();
+        journalEnd = journal().replayFrom(0, entry -> {
+            if (schema.consume(entry)) return;
+            if (entry.type() == OP_DELETE) {
+                byId.remove(UUID.fromString(new String(entry.payload(), StandardCharsets.UTF_8)));
+                return;
+            }
+            BorrowRecord r = decode(entry.payload());
+            byId.put(r.getId(), r);
+        });
+        return new Stored(byId, legacy);
+    }
+
+    /** Replaces the state held here with records read from storage. */
+    private void load(Map<UUID, BorrowRecord> stored) {
+        persisted.clear();
+        live.clear();
+        stored.values().forEach(r -> {
+            persisted.put(r.getId(), RecordState.of(r));
+            live.put(r.getId(), r);
+        });
+        loaded = true;
+    }
+
+    /**
+     * Replaces the state held here with the records read after another process
+     * compacted, keeping the instances held here for records whose stored form
+     * is unchanged.
+     */
+    private void merge(Map<UUID, BorrowRecord> stored) {
+        for (UUID id : new ArrayList<>(live.keySet())) {
+            if (!stored.containsKey(id)) removedElsewhere(id);
+        }
+        stored.forEach((id, r) -> {
+            BorrowRecord held = live.get(id);
+            if (held == null || !FileUtils.toCompactJson(held).equals(FileUtils.toCompactJson(r))) {
+                writtenElsewhere(r);
+            }
+        });
+        Map<UUID, BorrowRecord> merged = new LinkedHashMap<>();
+        stored.keySet().forEach(id -> merged.put(id, live.get(id)));
+        live.clear();
+        live.putAll(merged);
+    }
+
+    private void writtenElsewhere(BorrowRecord r) {
+        UUID id = r.getId();
+        persisted.put(id, RecordState.of(r));
+        live.put(id, r);
+        foreign.put(id, r);
+        removedElsewhere.remove(id);
+        unreportedRemovals.remove(id);
+        unreportedUpserts.put(id, r);
+    }
+
+    private void removedElsewhere(UUID id) {
+        persisted.remove(id);
+        live.remove(id);
+        foreign.remove(id);
+        removedElsewhere.add(id);
+        unreportedUpserts.remove(id);
+        unreportedRemovals.add(id);
+    }
+
+    /** Rejects a write based on a copy older than another process's change. */
+    private void checkCurrent(BorrowRecord record) {
+        UUID id = record.getId();
+        if (removedElsewhere.contains(id))
+            throw new ConcurrentUpdateException(id, "Borrow record " + id + " was removed by another process");
+        BorrowRecord stored = foreign.get(id);
+        if (stored != null && stored != record)
+            throw new ConcurrentUpdateException(id, "Borrow record " + id + " was changed by another process");
+    }
+
+    private void append(List<AppendOnlyJournal.Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+        entries = schema.declare(DataSchema.Kind.BORROW_RECORD, entries);
+        journal().append(entries);
+        entries.forEach(schema::consume);
+        journalEnd = journal().sizeInBytes();
+        current = current.next();
+        seen = current;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (journal().entryCount() >= Math.max(minCompactionEntries, persisted.size())) {
+            compactLocked(new ArrayList<>(live.values()));
+        }
+    }
+
+    private void compactLocked(List<BorrowRecord> records) throws IOException {
+        List<BorrowRecord> copy = new ArrayList<>(records);
+        // The snapshot must be on disk before the journal it replaces is cleared.
+        FileUtils.writeJson(snapshotFile, copy, Durability.SYNC);
+        FileUtils.writeSnapshot(binarySnapshotFile, snapshotFile, copy,
+                (out, list) -> out.writeList(list, (o, r) -> r.writeSnapshot(o)));
+        journal().reset();
+        schema.reset();
+        journalEnd = journal().sizeInBytes();
+        current = current.nextGeneration();
+        seen = current;
+    }
+
+    private AppendOnlyJournal journal() throws IOException {
+        if (journal == null) journal = new AppendOnlyJournal(journalFile);
+        return journal;
+    }
+
+    private FileVersion version() throws IOException {
+        if (version == null) version = new FileVersion(journalFile);
+        return version;
+    }
+
+    private static byte[] encode(BorrowRecord r) {
+        return FileUtils.toCompactJson(r).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private BorrowRecord decode(byte[] payload) {
+        BorrowRecord r = FileUtils.fromJson(schema.upgrade(DataSchema.Kind.BORROW_RECORD, payload), BorrowRecord.class);
+        if (r == null) throw new JsonParseException("Empty journal entry");
+        r.ensureId();
+        return r;
+    }
+
+    /**
+     * The mutable part of a {@link BorrowRecord} that determines whether
+     * a new journal entry is needed.
+     */
+    private record RecordState(BorrowRecord.Status status,
+                               boolean fineApplied,
+                               String remainingFine,
+                               String finePaid) {
+
+        static RecordState of(BorrowRecord r) {
+            return new RecordState(
+                    r.getStatus(),
+                    r.isFineApplied(),
+                    r.getRemainingFine().toPlainString(),
+                    r.getFinePaid().toPlainString());
+        }
+
+        /** @return the entry type describing the change, or {@code 0} if unchanged */
+        byte diff(RecordState now) {
+            if (status != now.status) return OP_STATUS;
+            if (!finePaid.equals(now.finePaid)) return OP_PAYMENT;
+            if (fineApplied != now.fineApplied || !remainingFine.equals(now.remainingFine)) return OP_FINE;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package librarySE.repo;
+
+import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+import librarySE.utils.Config;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Journal-based implementation of {@link ItemRepository} that supports
+ * incremental writes.
+ * <p>
+ * {@link #upsert(LibraryItem)} and {@link #delete(LibraryItem)} append one entry
+ * to {@code library_data/items.journal} instead of rewriting
+ * {@code items.json}, so borrowing or returning a copy costs one small append.
+ * The journal is folded into {@code items.json} (and its binary snapshot
+ * {@code items.bin}) once it holds as many entries as there are items, or at
+ * least {@code journal.items.compaction.minEntries} (default 512).
+ * </p>
+ * <p>
+ * The snapshot is the same file {@link FileItemRepository} uses, so existing
+ * data loads unchanged.
+ * </p>
+ * <p>
+ * Several processes may share the files: writes are serialized with a file
+ * lock, and writing a copy of an entity another process changed meanwhile fails
+ * with a {@link ConcurrentUpdateException} (see {@link EntityJournal}).
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * ItemRepository repo = new JournalItemRepository();
+ * List<LibraryItem> items = repo.loadAll();
+ * items.get(0).borrow();
+ * repo.upsert(items.get(0)); // appends one entry
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class JournalItemRepository implements ItemRepository, Closeable {
+
+    private final EntityJournal<LibraryItem> store;
+
+    /**
+     * Creates a repository using {@code library_data/items.json} as snapshot
+     * and {@code library_data/items.journal} as journal.
+     */
+    public JournalItemRepository() {
+        this(FileUtils.dataFile("items.json"),
+             FileUtils.dataFile("items.journal"),
+             Config.getInt("journal.items.compaction.minEntries", 512));
+    }
+
+    /**
+     * Creates a repository for custom file locations.
+     *
+     * @param snapshotFile         JSON snapshot of all items
+     * @param journalFile          journal of changes since the snapshot
+     * @param minCompactionEntries minimum journal length before compaction
+     */
+    public JournalItemRepository(Path snapshotFile, Path journalFile, int minCompactionEntries) {
+        this.store = new EntityJournal<>(snapshotFile, journalFile, LibraryItem.class, LibraryItem::getId,
+                in -> in.readList(LibraryItemFactory::readSnapshot),
+                (out, list) -> out.writeList(list, LibraryItemFactory::writeSnapshot),
+                minCompactionEntries);
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     *
+     * @return all items; never {@code null}
+     */
+    @Override
+    public List<LibraryItem> loadAll() {
+        return store.loadAll();
+    }
+
+    /**
+     * Streams the snapshot one item at a time with the journal applied,
+     * without resetting what {@link #refresh()} reports.
+     *
+     * @return the stored items; must be closed
+     */
+    @Override
+    public Stream<LibraryItem> stream() {
+        return store.stream();
+    }
+
+    /**
+     * Rewrites the snapshot with the given items and resets the journal.
+     *
+     * @param items the complete list of items
+     */
+    @Override
+    public void saveAll(List<LibraryItem> items) {
+        store.saveAll(items);
+    }
+
+    /** @return {@code true}: single items are appended to the journal */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * Appends the current state of one item to the journal.
+     *
+     * @param item the added or modified item
+     */
+    @Override
+    public void upsert(LibraryItem item) {
+        store.upsert(item);
+    }
+
+    /**
+     * Appends the removal of one item to the journal.
+     *
+     * @param item the removed item
+     */
+    @Override
+    public void delete(LibraryItem item) {
+        store.delete(item);
+    }
+
+    /**
+     * Reads the items other processes wrote since the previous call.
+     *
+     * @return items changed or removed elsewhere
+     */
+    @Override
+    public Changes<LibraryItem> refresh() {
+        return store.refresh();
+    }
+
+    /** @return number of entries written since the last compaction */
+    public int pendingJournalEntries() {
+        return store.pendingEntries();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
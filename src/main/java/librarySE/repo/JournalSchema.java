@@ -0,0 +1,116 @@
+package librarySE.repo;
+
+import librarySE.utils.DataSchema;
+import librarySE.utils.SchemaMigrator;
+import librarySE.utils.SchemaVersionException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Format versions of the JSON payloads in an {@link AppendOnlyJournal}.
+ * <p>
+ * A journal declares the {@link DataSchema} version of the entries that follow
+ * with a {@link #DECLARATION} entry holding a {@link DataSchema.Header}. Entries
+ * of a kind that was never declared are version 1, the format written before
+ * journals were versioned, so a build whose version is still 1 declares nothing.
+ * </p>
+ * <p>
+ * Writers pass their entries through {@link #declare} before appending them, which
+ * adds a declaration whenever the journal's last one differs from this build's
+ * version. Readers pass every replayed entry to {@link #consume} and decode
+ * payloads with {@link #upgrade}: entries of an older version are upgraded through
+ * the registered migrations, and a declaration of a newer version is refused with
+ * a {@link SchemaVersionException}.
+ * </p>
+ * <p>
+ * Not thread-safe; used under the lock of the journal's owner.
+ * </p>
+ *
+ * @author Eman
+ */
+final class JournalSchema {
+
+    /** Entry type of a declaration; the payload is the header text. Not used by any entity operation. */
+    static final byte DECLARATION = 127;
+
+    private final Path file;
+
+    /** Version declared last per kind. */
+    private final Map<DataSchema.Kind, Integer> declared = new EnumMap<>(DataSchema.Kind.class);
+
+    /** Whether an entry of an older version was upgraded since the last {@link #reset()}. */
+    private boolean upgraded;
+
+    /**
+     * @param file journal file, named in errors
+     */
+    JournalSchema(Path file) {
+        this.file = file;
+    }
+
+    /** Forgets all declarations, before replaying the journal from its start or after it was reset. */
+    void reset() {
+        declared.clear();
+        upgraded = false;
+    }
+
+    /**
+     * Applies an entry if it is a declaration.
+     *
+     * @param entry an entry read from or just appended to the journal
+     * @return {@code true} if it was a declaration, which callers then skip
+     * @throws SchemaVersionException if it declares a version newer than this build's
+     */
+    boolean consume(AppendOnlyJournal.Entry entry) {
+        if (entry.type() != DECLARATION) return false;
+        DataSchema.Header header = DataSchema.Header.parse(new String(entry.payload(), StandardCharsets.UTF_8));
+        int current = DataSchema.currentVersion(header.kind());
+        if (header.version() > current)
+            throw new SchemaVersionException(file, header.kind(), header.version(), current);
+        declared.put(header.kind(), header.version());
+        return true;
+    }
+
+    /**
+     * @param kind    kind of entity the payload holds, or {@code null} for a type without versions
+     * @param payload compact JSON of an entry
+     * @return the JSON in this build's format
+     */
+    String upgrade(DataSchema.Kind kind, byte[] payload) {
+        String json = new String(payload, StandardCharsets.UTF_8);
+        if (kind == null) return json;
+        int version = version(kind);
+        if (version == DataSchema.currentVersion(kind)) return json;
+        upgraded = true;
+        return SchemaMigrator.upgrade(json, DataSchema.migrationsFrom(kind, version));
+    }
+
+    /**
+     * @param kind    kind of entity the entries hold, or {@code null} for a type without versions
+     * @param entries entries about to be appended
+     * @return the entries, preceded by a declaration of this build's version if the journal lacks one
+     */
+    List<AppendOnlyJournal.Entry> declare(DataSchema.Kind kind, List<AppendOnlyJournal.Entry> entries) {
+        if (kind == null || entries.isEmpty()) return entries;
+        DataSchema.Header header = DataSchema.currentHeader(kind);
+        if (version(kind) == header.version()) return entries;
+        List<AppendOnlyJournal.Entry> declaredEntries = new ArrayList<>(entries.size() + 1);
+        declaredEntries.add(new AppendOnlyJournal.Entry(DECLARATION, header.text().getBytes(StandardCharsets.UTF_8)));
+        declaredEntries.addAll(entries);
+        return declaredEntries;
+    }
+
+    /** @return whether entries of an older version were upgraded since the last {@link #reset()} */
+    boolean upgraded() {
+        return upgraded;
+    }
+
+    private int version(DataSchema.Kind kind) {
+        return declared.getOrDefault(kind, 1);
+    }
+}
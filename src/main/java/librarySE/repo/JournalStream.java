@@ -0,0 +1,91 @@
+package librarySE.repo;
+
+import com.google.gson.JsonParseException;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * One-pass read of a JSON snapshot with its {@link AppendOnlyJournal}, for the
+ * {@code stream()} of the journal repositories.
+ * <p>
+ * The journal is replayed into memory (it is at most as long as the snapshot
+ * before compaction, see {@link EntityJournal}); the snapshot is read one
+ * entity at a time through {@link FileUtils#streamJson}. Each snapshot entity
+ * is replaced by its newest journal entry or skipped if the journal removed
+ * it, and entities added by the journal follow the snapshot, which is the
+ * order a full load produces.
+ * </p>
+ * <p>
+ * Nothing here touches the state the repositories keep for detecting
+ * conflicts with other processes. Callers hold the journal's
+ * {@link FileVersion} lock while {@link #open} runs, so the snapshot and
+ * journal belong together; the snapshot is opened before the lock is released
+ * and is replaced, not rewritten, by a later compaction.
+ * </p>
+ *
+ * @author Eman
+ */
+final class JournalStream {
+
+    private JournalStream() { }
+
+    /**
+     * Replays the journal and opens the snapshot.
+     *
+     * @param snapshotFile JSON snapshot of the full list
+     * @param journal      journal of changes since the snapshot
+     * @param journalFile  path of the journal, named in errors
+     * @param type         entity type
+     * @param idOf         extracts the identifier of an entity
+     * @param deleteOp     entry type of a removal, whose payload is the id
+     * @param prepare      applied to every entity read, before its id is taken
+     * @param <T>          entity type
+     * @return the stored entities; must be closed
+     * @throws IOException if the journal cannot be read
+     */
+    static <T> Stream<T> open(Path snapshotFile, AppendOnlyJournal journal, Path journalFile,
+                              Class<T> type, Function<T, UUID> idOf, byte deleteOp,
+                              Consumer<T> prepare) throws IOException {
+        // A schema of its own: declarations replayed here must not affect the owner's appends.
+        JournalSchema schema = new JournalSchema(journalFile);
+        DataSchema.Kind kind = DataSchema.kindOf(type);
+
+        Map<UUID, T> journaled = new LinkedHashMap<>();
+        Set<UUID> removed = new HashSet<>();
+        journal.replayFrom(0, entry -> {
+            if (schema.consume(entry)) return;
+            if (entry.type() == deleteOp) {
+                UUID id = UUID.fromString(new String(entry.payload(), StandardCharsets.UTF_8));
+                journaled.remove(id);
+                removed.add(id);
+                return;
+            }
+            T e = FileUtils.fromJson(schema.upgrade(kind, entry.payload()), type);
+            if (e == null) throw new JsonParseException("Empty journal entry");
+            prepare.accept(e);
+            journaled.put(idOf.apply(e), e);
+        });
+
+        Stream<T> snapshot = FileUtils.streamJson(snapshotFile, type).mapMulti((T e, Consumer<T> sink) -> {
+            prepare.accept(e);
+            UUID id = idOf.apply(e);
+            if (removed.contains(id)) return; // re-added entities follow the snapshot
+            T newer = journaled.remove(id);
+            sink.accept(newer != null ? newer : e);
+        });
+        // Evaluated only once the snapshot is exhausted, after it took its entities out.
+        return Stream.concat(snapshot, Stream.of(journaled).flatMap(rest -> rest.values().stream()));
+    }
+}
@@ -0,0 +1,148 @@
+package librarySE.repo;
+
+import librarySE.managers.User;
+import librarySE.utils.Config;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Journal-based implementation of {@link UserRepository} that supports
+ * incremental writes.
+ * <p>
+ * {@link #upsert(User)} and {@link #delete(User)} append one entry to
+ * {@code library_data/users.journal} instead of rewriting {@code users.json},
+ * so updating one user's fine balance costs one small append. The journal is
+ * folded into {@code users.json} (and its binary snapshot {@code users.bin})
+ * once it holds as many entries as there are users, or at least
+ * {@code journal.users.compaction.minEntries} (default 512).
+ * </p>
+ * <p>
+ * The snapshot is the same file {@link FileUserRepository} uses, so existing
+ * data loads unchanged.
+ * </p>
+ * <p>
+ * Several processes may share the files: writes are serialized with a file
+ * lock, and writing a copy of an entity another process changed meanwhile fails
+ * with a {@link ConcurrentUpdateException} (see {@link EntityJournal}).
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * UserRepository repo = new JournalUserRepository();
+ * List<User> users = repo.loadAll();
+ * users.get(0).payFine(new BigDecimal("5.00"));
+ * repo.upsert(users.get(0)); // appends one entry
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class JournalUserRepository implements UserRepository, Closeable {
+
+    private final EntityJournal<User> store;
+
+    /**
+     * Creates a repository using {@code library_data/users.json} as snapshot
+     * and {@code library_data/users.journal} as journal.
+     */
+    public JournalUserRepository() {
+        this(FileUtils.dataFile("users.json"),
+             FileUtils.dataFile("users.journal"),
+             Config.getInt("journal.users.compaction.minEntries", 512));
+    }
+
+    /**
+     * Creates a repository for custom file locations.
+     *
+     * @param snapshotFile         JSON snapshot of all users
+     * @param journalFile          journal of changes since the snapshot
+     * @param minCompactionEntries minimum journal length before compaction
+     */
+    public JournalUserRepository(Path snapshotFile, Path journalFile, int minCompactionEntries) {
+        this.store = new EntityJournal<>(snapshotFile, journalFile, User.class, User::getId,
+                in -> in.readList(User::readSnapshot),
+                (out, list) -> out.writeList(list, (o, u) -> u.writeSnapshot(o)),
+                minCompactionEntries);
+    }
+
+    /**
+     * Loads the snapshot and replays the journal on top of it.
+     *
+     * @return all users; never {@code null}
+     */
+    @Override
+    public List<User> loadAll() {
+        return store.loadAll();
+    }
+
+    /**
+     * Streams the snapshot one user at a time with the journal applied,
+     * without resetting what {@link #refresh()} reports.
+     *
+     * @return the stored users; must be closed
+     */
+    @Override
+    public Stream<User> stream() {
+        return store.stream();
+    }
+
+    /**
+     * Rewrites the snapshot with the given users and resets the journal.
+     *
+     * @param users the complete list of users
+     */
+    @Override
+    public void saveAll(List<User> users) {
+        store.saveAll(users);
+    }
+
+    /** @return {@code true}: single users are appended to the journal */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * Appends the current state of one user to the journal.
+     *
+     * @param user the added or modified user
+     */
+    @Override
+    public void upsert(User user) {
+        store.upsert(user);
+    }
+
+    /**
+     * Appends the removal of one user to the journal.
+     *
+     * @param user the removed user
+     */
+    @Override
+    public void delete(User user) {
+        store.delete(user);
+    }
+
+    /**
+     * Reads the users other processes wrote since the previous call.
+     *
+     * @return users changed or removed elsewhere
+     */
+    @Override
+    public Changes<User> refresh() {
+        return store.refresh();
+    }
+
+    /** @return number of entries written since the last compaction */
+    public int pendingJournalEntries() {
+        return store.pendingEntries();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+}
@@ -0,0 +1,1049 @@
+package librarySE.repo;
+
+import librarySE.core.AbstractLibraryItem;
+import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+import librarySE.utils.Config;
+import librarySE.utils.FileUtils;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * {@link ItemRepository} backed by a memory-mapped, offset-indexed catalog file.
+ * <p>
+ * Instead of decoding the whole catalog at startup, the file is mapped into
+ * memory and items are materialized only when they are first accessed. The list
+ * returned by {@link #loadAll()} is a read-only view whose elements are decoded on
+ * first {@code get}; {@link #findById(UUID)} locates a single item by binary search.
+ * Availability counters and titles can be read straight from the mapping without
+ * building the item at all.
+ * </p>
+ * <p>
+ * Decoded items are not all kept: a bounded cache holds the most recently used
+ * ones ({@code mapped.items.cache.size}, default {@value #DEFAULT_CACHE_SIZE}),
+ * and items beyond it stay reachable only while the application still refers
+ * to them. As long as it does, reads return that same instance, also after the
+ * catalog was rewritten; an item nobody refers to any more is decoded again
+ * when it is next read. {@link #stream()} decodes items without caching them,
+ * so reading the whole catalog keeps at most one item in memory at a time.
+ * </p>
+ * <p>
+ * {@link #upsert(LibraryItem)} and {@link #delete(LibraryItem)} append to a change
+ * journal that is applied over the mapped catalog. Once the journal holds
+ * {@code compactionEntries} entries the catalog is rewritten; records of items
+ * that did not change are copied as stored, without decoding them.
+ * </p>
+ *
+ * <h2>Files</h2>
+ * <pre>
+ * catalog-&lt;n&gt;.map     : generation n of the catalog
+ * changes-&lt;n&gt;.journal : changes made since generation n was written
+ * </pre>
+ * <p>
+ * A rewrite never replaces a file that may still be mapped: it writes the next
+ * generation under a new name, maps it and then deletes the older generations.
+ * A file the platform refuses to delete while it is mapped is deleted when the
+ * repository is opened again.
+ * </p>
+ *
+ * <h2>Catalog Layout</h2>
+ * <pre>
+ * header  : "LSMI" | version (u8) | count (int32) | order offset (int64) | index offset (int64)
+ * records : id msb | id lsb | title length (int32) | title (UTF-8) | body length (int32) | body
+ * order   : count x record offset (int64), in list order
+ * index   : count x [id msb | id lsb | record offset | available | total], sorted by id
+ * </pre>
+ * <p>
+ * Each record body is a self-contained binary snapshot of the item
+ * ({@link LibraryItemFactory#writeSnapshot}), so records can be decoded
+ * independently of each other. The file is mapped in regions of at most 1 GB,
+ * so its size is not limited by what a single mapping can hold.
+ * </p>
+ *
+ * <h2>Behavior</h2>
+ * <ul>
+ *     <li>If no catalog exists but the JSON store ({@code items.json} and its
+ *         journal) does, it is imported once and then retired: its files are
+ *         renamed with an {@code .imported} suffix, so switching back to the file
+ *         backend cannot silently load an outdated catalog.</li>
+ *     <li>{@link #saveAll(List)} writes a new generation; views returned earlier
+ *         keep reading the generation they were created from.</li>
+ * </ul>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * MappedItemRepository repo = new MappedItemRepository();
+ * boolean free = repo.isAvailable(id);          // no item is built
+ * LibraryItem item = repo.findById(id).orElseThrow();
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class MappedItemRepository implements ItemRepository, Closeable {
+
+    /** Magic bytes identifying a mapped catalog file. */
+    static final byte[] MAGIC = {'L', 'S', 'M', 'I'};
+
+    /** Current file format version. */
+    static final byte VERSION = 2;
+
+    static final int HEADER_SIZE = MAGIC.length + 1 + Integer.BYTES + 2 * Long.BYTES;
+    static final int INDEX_ENTRY_SIZE = 3 * Long.BYTES + 2 * Integer.BYTES;
+
+    /** Largest part of the file mapped as one buffer. */
+    static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    /** Number of recently used items kept decoded by default. */
+    static final int DEFAULT_CACHE_SIZE = 1024;
+
+    /** Journal entry holding a complete record. */
+    private static final byte UPSERT = 1;
+
+    /** Journal entry holding the id of a removed item. */
+    private static final byte DELETE = 2;
+
+    private static final Pattern CATALOG_NAME = Pattern.compile("catalog-(\\d+)\\.map");
+    private static final Pattern JOURNAL_NAME = Pattern.compile("changes-(\\d+)\\.journal");
+
+    /** Index order; must match {@link Catalog#find(UUID)}. */
+    private static final Comparator<UUID> ID_ORDER = Comparator
+            .comparingLong(UUID::getMostSignificantBits)
+            .thenComparingLong(UUID::getLeastSignificantBits);
+
+    private final Path directory;
+    private final Path legacyJson;
+    private final int compactionEntries;
+    private final int regionSize;
+
+    /** Currently mapped generation; {@code null} until first use. */
+    private Catalog catalog;
+
+    /** Number of the mapped generation; 0 while there is none. */
+    private long generation;
+
+    /** Changes since the mapped generation was written; opened on the first change. */
+    private AppendOnlyJournal journal;
+
+    /** Items written since the mapped generation, in the order first written. */
+    private final Map<UUID, LibraryItem> upserted = new LinkedHashMap<>();
+
+    /** Ids removed since the mapped generation. */
+    private final Set<UUID> deleted = new HashSet<>();
+
+    /** Items handed out or written, so one still in use is not decoded twice. */
+    private final ItemCache held;
+
+    /**
+     * Creates a repository in {@code library_data/mapped/items}, importing the
+     * JSON store at {@code library_data/items.json} if no catalog exists yet.
+     * The journal is compacted after {@code mapped.items.compaction.minEntries}
+     * (default 512) changes, and {@code mapped.items.cache.size} recently used
+     * items are kept decoded.
+     */
+    public MappedItemRepository() {
+        this(FileUtils.dataFile("mapped").resolve("items"), FileUtils.dataFile("items.json"),
+             Config.getInt("mapped.items.compaction.minEntries", 512), DEFAULT_REGION_SIZE,
+             Config.getInt("mapped.items.cache.size", DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Creates a repository for custom file locations.
+     *
+     * @param directory         directory holding the catalog generations and their journals
+     * @param legacyJson        JSON store imported when no catalog exists; may be {@code null}
+     * @param compactionEntries journal length after which the catalog is rewritten
+     */
+    public MappedItemRepository(Path directory, Path legacyJson, int compactionEntries) {
+        this(directory, legacyJson, compactionEntries, DEFAULT_REGION_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param regionSize largest part of a catalog file mapped as one buffer
+     * @param cacheSize  number of recently used items kept decoded
+     */
+    MappedItemRepository(Path directory, Path legacyJson, int compactionEntries, int regionSize, int cacheSize) {
+        if (compactionEntries < 1)
+            throw new IllegalArgumentException("compactionEntries must be >= 1");
+        if (regionSize < Long.BYTES)
+            throw new IllegalArgumentException("regionSize must be >= " + Long.BYTES);
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.legacyJson = legacyJson;
+        this.compactionEntries = compactionEntries;
+        this.regionSize = regionSize;
+        this.held = new ItemCache(Math.max(0, cacheSize));
+    }
+
+    /**
+     * Returns a read-only view of the catalog whose items are decoded on first access.
+     *
+     * @return lazily materializing list of all items; never {@code null}
+     */
+    @Override
+    public synchronized List<LibraryItem> loadAll() {
+        Catalog c = catalog();
+        Overlay overlay = overlay(c);
+        return new View(c, overlay.gone(), overlay.added());
+    }
+
+    /**
+     * Streams the items of the current catalog, decoding them one at a time.
+     * Items read this way are not cached: an item still in use elsewhere is
+     * returned as that instance, any other is decoded afresh and left to the
+     * caller.
+     *
+     * @return the stored items
+     */
+    @Override
+    public Stream<LibraryItem> stream() {
+        View view = (View) loadAll();
+        return IntStream.range(0, view.size()).mapToObj(view::peek);
+    }
+
+    /**
+     * Writes the given items as a new generation of the catalog.
+     *
+     * @param items items to persist (must not be {@code null})
+     */
+    @Override
+    public synchronized void saveAll(List<LibraryItem> items) {
+        List<LibraryItem> copy = new ArrayList<>(items);
+        try {
+            catalog();
+            long next = generation + 1;
+            writeCatalog(catalogFile(next), copy.size(), (i, out) -> writeItem(copy.get(i), out));
+            switchTo(next);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write item catalog in " + directory, e);
+        }
+        held.rebind(copy);
+    }
+
+    /**
+     * Captures the catalog as it is now. The mapped generation is never
+     * rewritten in place, so only the items held in memory are copied: those
+     * still in use or cached, and those written since the generation. The
+     * others are decoded from the mapping when the capture is read.
+     *
+     * @return supplies streams over the captured items, in list order
+     */
+    @Override
+    public synchronized Supplier<Stream<LibraryItem>> capture() {
+        Catalog c = catalog();
+        Overlay overlay = overlay(c);
+        Map<UUID, LibraryItem> inMemory = new HashMap<>();
+        held.forEach(i -> inMemory.put(i.getId(), LibraryItemFactory.copyOf(i)));
+        upserted.forEach((id, i) -> inMemory.computeIfAbsent(id, x -> LibraryItemFactory.copyOf(i)));
+        int[] gone = overlay.gone();
+        List<LibraryItem> added = overlay.added().stream().map(i -> inMemory.get(i.getId())).toList();
+        return () -> Stream.concat(
+                IntStream.range(0, c.count)
+                        .filter(p -> Arrays.binarySearch(gone, p) < 0)
+                        .mapToObj(p -> {
+                            long offset = c.recordOffsetAt(p);
+                            LibraryItem copy = inMemory.get(c.idAt(offset));
+                            return (copy != null) ? copy : c.decodeAt(offset);
+                        }),
+                added.stream());
+    }
+
+    /** @return {@code true}: single items are appended to the change journal */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /**
+     * Appends the current state of one item to the change journal.
+     *
+     * @param item the added or modified item
+     */
+    @Override
+    public synchronized void upsert(LibraryItem item) {
+        Objects.requireNonNull(item, "item");
+        catalog();
+        try {
+            journal().append(List.of(new AppendOnlyJournal.Entry(UPSERT, encodeRecord(item))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write item change in " + directory, e);
+        }
+        deleted.remove(item.getId());
+        upserted.put(item.getId(), item);
+        held.put(item);
+        compactIfDue();
+    }
+
+    /**
+     * Appends the removal of one item to the change journal.
+     *
+     * @param item the removed item
+     */
+    @Override
+    public synchronized void delete(LibraryItem item) {
+        Objects.requireNonNull(item, "item");
+        Catalog c = catalog();
+        try {
+            journal().append(List.of(new AppendOnlyJournal.Entry(DELETE, idBytes(item.getId()))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write item change in " + directory, e);
+        }
+        applyDelete(c, item.getId());
+        compactIfDue();
+    }
+
+    /** @return {@code true}: {@link #findById(UUID)} decodes a single item */
+    @Override
+    public boolean readsOnDemand() {
+        return true;
+    }
+
+    /**
+     * Finds an item by id, materializing it if needed.
+     * The same instance is returned as by the list from {@link #loadAll()}.
+     *
+     * @param id item id
+     * @return the item, or empty if the catalog has no such item
+     */
+    @Override
+    public synchronized Optional<LibraryItem> findById(UUID id) {
+        Catalog c = catalog();
+        if (deleted.contains(id)) return Optional.empty();
+        LibraryItem written = upserted.get(id);
+        if (written != null) return Optional.of(written);
+        int entry = c.find(id);
+        return (entry < 0) ? Optional.empty() : Optional.of(itemAt(c, c.recordOffsetOfEntry(entry), true));
+    }
+
+    /**
+     * Reads the available copy count of an item without materializing it.
+     * <p>Reflects the state last written for the item.</p>
+     *
+     * @param id item id
+     * @return available copies, or empty if the catalog has no such item
+     */
+    public synchronized OptionalInt availableCopiesOf(UUID id) {
+        Catalog c = catalog();
+        if (deleted.contains(id)) return OptionalInt.empty();
+        LibraryItem written = upserted.get(id);
+        if (written != null) return OptionalInt.of(availableCopies(written));
+        int entry = c.find(id);
+        return (entry < 0) ? OptionalInt.empty() : OptionalInt.of(c.availableOfEntry(entry));
+    }
+
+    /**
+     * @param id item id
+     * @return {@code true} if the item exists and had an available copy when last written
+     */
+    public boolean isAvailable(UUID id) {
+        return availableCopiesOf(id).orElse(0) > 0;
+    }
+
+    /**
+     * Reads the title of an item without materializing it.
+     *
+     * @param id item id
+     * @return the title, or empty if the catalog has no such item
+     */
+    public synchronized Optional<String> titleOf(UUID id) {
+        Catalog c = catalog();
+        if (deleted.contains(id)) return Optional.empty();
+        LibraryItem written = upserted.get(id);
+        if (written != null) return Optional.of(written.getTitle() == null ? "" : written.getTitle());
+        int entry = c.find(id);
+        return (entry < 0) ? Optional.empty() : Optional.of(c.titleAt(c.recordOffsetOfEntry(entry)));
+    }
+
+    /** @return number of items in the catalog */
+    public synchronized int size() {
+        Catalog c = catalog();
+        Overlay overlay = overlay(c);
+        return c.count - overlay.gone().length + overlay.added().size();
+    }
+
+    /** @return number of recently used items the cache keeps decoded */
+    public synchronized int materializedCount() {
+        return held.size();
+    }
+
+    /** @return number of changes in the journal since the catalog was last written */
+    public synchronized int pendingJournalEntries() {
+        return journal == null ? 0 : journal.entryCount();
+    }
+
+    /** Closes the change journal; the repository reopens it on the next change. */
+    @Override
+    public synchronized void close() {
+        try {
+            closeJournal();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close item change journal in " + directory, e);
+        }
+    }
+
+    // =====================================================================
+    // Internals
+    // =====================================================================
+
+    /** Maps the newest generation and applies its journal, importing the JSON store first if needed. */
+    private Catalog catalog() {
+        if (catalog == null) {
+            try {
+                long newest = newestGeneration();
+                if (newest == 0 && !Files.exists(journalFile(0))
+                        && legacyJson != null && Files.exists(legacyJson)) {
+                    importLegacy();
+                    newest = 1;
+                }
+                generation = newest;
+                catalog = (newest == 0) ? Catalog.EMPTY : Catalog.open(catalogFile(newest), regionSize);
+                deleteOtherGenerations();
+                Path changes = journalFile(newest);
+                if (Files.exists(changes)) {
+                    journal = new AppendOnlyJournal(changes);
+                    journal.replay(this::replay);
+                }
+            } catch (IOException e) {
+                catalog = null;
+                throw new UncheckedIOException("Failed to open item catalog in " + directory, e);
+            }
+        }
+        return catalog;
+    }
+
+    private void replay(AppendOnlyJournal.Entry entry) {
+        ByteBuffer payload = ByteBuffer.wrap(entry.payload());
+        UUID id = new UUID(payload.getLong(0), payload.getLong(Long.BYTES));
+        if (entry.type() == DELETE) {
+            applyDelete(catalog, id);
+        } else if (entry.type() == UPSERT) {
+            int bodyAt = 2 * Long.BYTES + Integer.BYTES + payload.getInt(2 * Long.BYTES);
+            byte[] body = Arrays.copyOfRange(entry.payload(), bodyAt + Integer.BYTES,
+                    bodyAt + Integer.BYTES + payload.getInt(bodyAt));
+            LibraryItem item = decodeBody(body, "journal entry of " + id);
+            deleted.remove(id);
+            upserted.put(id, item);
+            held.put(item);
+        }
+    }
+
+    private void applyDelete(Catalog c, UUID id) {
+        upserted.remove(id);
+        held.remove(id);
+        if (c.find(id) >= 0) deleted.add(id);
+    }
+
+    /** Reads the JSON store, including its journal, writes it as generation 1 and retires its files. */
+    private void importLegacy() throws IOException {
+        String base = legacyJson.getFileName().toString().replaceFirst("\\.json$", "");
+        Path legacyJournal = legacyJson.resolveSibling(base + ".journal");
+        List<LibraryItem> items;
+        try (JournalItemRepository legacy = new JournalItemRepository(legacyJson, legacyJournal, Integer.MAX_VALUE)) {
+            items = legacy.loadAll();
+        }
+        writeCatalog(catalogFile(1), items.size(), (i, out) -> writeItem(items.get(i), out));
+        retire(legacyJson);
+        retire(legacyJournal);
+        Files.deleteIfExists(legacyJson.resolveSibling(base + ".bin"));
+    }
+
+    private static void retire(Path file) throws IOException {
+        if (Files.exists(file)) {
+            Files.move(file, file.resolveSibling(file.getFileName() + ".imported"),
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Rewrites the catalog once the journal is long enough, copying unchanged records as stored. */
+    private void compactIfDue() {
+        if (journal == null || journal.entryCount() < compactionEntries) return;
+        Catalog c = catalog;
+        Overlay overlay = overlay(c);
+        int[] kept = new int[c.count - overlay.gone().length];
+        for (int p = 0, g = 0, k = 0; p < c.count; p++) {
+            if (g < overlay.gone().length && overlay.gone()[g] == p) g++;
+            else kept[k++] = p;
+        }
+        List<LibraryItem> added = overlay.added();
+        try {
+            long next = generation + 1;
+            writeCatalog(catalogFile(next), kept.length + added.size(), (i, out) -> {
+                if (i >= kept.length) return writeItem(added.get(i - kept.length), out);
+                long offset = c.recordOffsetAt(kept[i]);
+                LibraryItem written = upserted.get(c.idAt(offset));
+                return (written != null) ? writeItem(written, out) : c.copyRecord(offset, out);
+            });
+            switchTo(next);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact item catalog in " + directory, e);
+        }
+    }
+
+    /** Maps a freshly written generation, then drops the previous one and its journal. */
+    private void switchTo(long next) throws IOException {
+        Catalog mapped = Catalog.open(catalogFile(next), regionSize);
+        closeJournal();
+        catalog = mapped;
+        generation = next;
+        upserted.clear();
+        deleted.clear();
+        deleteOtherGenerations();
+    }
+
+    /** Base positions of removed items and items not in the catalog, as of now. */
+    private record Overlay(int[] gone, List<LibraryItem> added) { }
+
+    private Overlay overlay(Catalog c) {
+        int[] gone = new int[deleted.size()];
+        int n = 0;
+        for (UUID id : deleted) {
+            int entry = c.find(id);
+            if (entry >= 0) gone[n++] = c.positionOf(c.recordOffsetOfEntry(entry));
+        }
+        gone = Arrays.copyOf(gone, n);
+        Arrays.sort(gone);
+        List<LibraryItem> added = new ArrayList<>();
+        upserted.forEach((id, item) -> {
+            if (c.find(id) < 0) added.add(item);
+        });
+        return new Overlay(gone, added);
+    }
+
+    /**
+     * Returns the held instance of the item at a record offset, decoding it if
+     * there is none.
+     *
+     * @param keep whether a decoded item is cached
+     */
+    private synchronized LibraryItem itemAt(Catalog c, long recordOffset, boolean keep) {
+        UUID id = c.idAt(recordOffset);
+        LibraryItem item = held.get(id);
+        if (item == null) {
+            item = c.decodeAt(recordOffset);
+            if (keep && c == catalog) held.put(item);
+        }
+        return item;
+    }
+
+    private AppendOnlyJournal journal() throws IOException {
+        if (journal == null) {
+            Files.createDirectories(directory);
+            journal = new AppendOnlyJournal(journalFile(generation));
+        }
+        return journal;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    private Path catalogFile(long gen) {
+        return directory.resolve("catalog-" + gen + ".map");
+    }
+
+    private Path journalFile(long gen) {
+        return directory.resolve("changes-" + gen + ".journal");
+    }
+
+    private long newestGeneration() throws IOException {
+        if (!Files.isDirectory(directory)) return 0;
+        long newest = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                Matcher m = CATALOG_NAME.matcher(p.getFileName().toString());
+                if (m.matches()) newest = Math.max(newest, Long.parseLong(m.group(1)));
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Deletes catalogs and journals of other generations and unfinished writes.
+     * A file that cannot be deleted yet is left for the next attempt.
+     */
+    private void deleteOtherGenerations() throws IOException {
+        if (!Files.isDirectory(directory)) return;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                Matcher c = CATALOG_NAME.matcher(name);
+                Matcher j = JOURNAL_NAME.matcher(name);
+                boolean stale = name.endsWith(".tmp")
+                        || (c.matches() && Long.parseLong(c.group(1)) != generation)
+                        || (j.matches() && Long.parseLong(j.group(1)) != generation);
+                if (!stale) continue;
+                try {
+                    Files.deleteIfExists(p);
+                } catch (IOException e) {
+                    // still mapped on this platform; deleted once the repository is opened again
+                }
+            }
+        }
+    }
+
+    // =====================================================================
+    // Writing
+    // =====================================================================
+
+    /** Index fields of a record written by a {@link RecordSource}. */
+    private record Written(UUID id, int available, int total, long length) { }
+
+    /** Writes the records of a catalog in list order. */
+    @FunctionalInterface
+    private interface RecordSource {
+        Written write(int position, DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Writes a complete catalog to a temporary file and moves it to {@code target},
+     * which must not exist yet. Records are streamed, so only the tables are held
+     * in memory.
+     */
+    private static void writeCatalog(Path target, int count, RecordSource records) throws IOException {
+        long[] offsets = new long[count];
+        long[] msb = new long[count];
+        long[] lsb = new long[count];
+        int[] available = new int[count];
+        int[] total = new int[count];
+
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(ch), 64 * 1024));
+            out.write(new byte[HEADER_SIZE]);
+            long pos = HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                Written w = records.write(i, out);
+                offsets[i] = pos;
+                msb[i] = w.id().getMostSignificantBits();
+                lsb[i] = w.id().getLeastSignificantBits();
+                available[i] = w.available();
+                total[i] = w.total();
+                pos += w.length();
+            }
+
+            Integer[] byId = new Integer[count];
+            for (int i = 0; i < count; i++) byId[i] = i;
+            Arrays.sort(byId, (a, b) -> ID_ORDER.compare(new UUID(msb[a], lsb[a]), new UUID(msb[b], lsb[b])));
+
+            long orderStart = pos;
+            for (long offset : offsets) out.writeLong(offset);
+            long indexStart = orderStart + (long) count * Long.BYTES;
+            for (int i : byId) {
+                out.writeLong(msb[i]);
+                out.writeLong(lsb[i]);
+                out.writeLong(offsets[i]);
+                out.writeInt(available[i]);
+                out.writeInt(total[i]);
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.put(MAGIC).put(VERSION).putInt(count).putLong(orderStart).putLong(indexStart).flip();
+            ch.write(header, 0);
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Written writeItem(LibraryItem item, DataOutputStream out) throws IOException {
+        byte[] record = encodeRecord(item);
+        out.write(record);
+        return new Written(item.getId(), availableCopies(item), totalCopies(item), record.length);
+    }
+
+    private static byte[] encodeRecord(LibraryItem item) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        LibraryItemFactory.writeSnapshot(new SnapshotOutput(new DataOutputStream(body)), item);
+
+        byte[] title = (item.getTitle() == null ? "" : item.getTitle()).getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream record = new ByteArrayOutputStream(2 * Long.BYTES + 8 + title.length + body.size());
+        DataOutputStream out = new DataOutputStream(record);
+        out.writeLong(item.getId().getMostSignificantBits());
+        out.writeLong(item.getId().getLeastSignificantBits());
+        out.writeInt(title.length);
+        out.write(title);
+        out.writeInt(body.size());
+        body.writeTo(out);
+        return record.toByteArray();
+    }
+
+    private static byte[] idBytes(UUID id) {
+        return ByteBuffer.allocate(2 * Long.BYTES)
+                .putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits()).array();
+    }
+
+    private static LibraryItem decodeBody(byte[] body, String where) {
+        try {
+            return LibraryItemFactory.readSnapshot(new SnapshotInput(
+                    new DataInputStream(new ByteArrayInputStream(body))));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted item record at " + where, e);
+        }
+    }
+
+    private static int availableCopies(LibraryItem item) {
+        return (item instanceof AbstractLibraryItem a) ? a.getAvailableCopies()
+                : (item.isAvailable() ? 1 : 0);
+    }
+
+    private static int totalCopies(LibraryItem item) {
+        return (item instanceof AbstractLibraryItem a) ? a.getTotalCopies() : 1;
+    }
+
+    // =====================================================================
+    // Reading
+    // =====================================================================
+
+    /**
+     * Read-only mapping of a whole file in regions of at most {@code regionSize}
+     * bytes. Values that straddle two regions are assembled byte by byte.
+     */
+    private static final class Mapping {
+
+        private final ByteBuffer[] regions;
+        private final int regionSize;
+        private final long size;
+
+        private Mapping(ByteBuffer[] regions, int regionSize, long size) {
+            this.regions = regions;
+            this.regionSize = regionSize;
+            this.size = size;
+        }
+
+        static Mapping of(Path file, int regionSize) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                ByteBuffer[] regions = new ByteBuffer[(int) ((size + regionSize - 1) / regionSize)];
+                for (int i = 0; i < regions.length; i++) {
+                    long start = (long) i * regionSize;
+                    regions[i] = ch.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+                }
+                return new Mapping(regions, regionSize, size);
+            }
+        }
+
+        byte get(long pos) {
+            Objects.checkIndex(pos, size);
+            return regions[(int) (pos / regionSize)].get((int) (pos % regionSize));
+        }
+
+        void get(long pos, byte[] dst, int off, int len) {
+            Objects.checkFromIndexSize(pos, len, size);
+            while (len > 0) {
+                ByteBuffer region = regions[(int) (pos / regionSize)];
+                int at = (int) (pos % regionSize);
+                int n = Math.min(len, region.capacity() - at);
+                region.get(at, dst, off, n);
+                pos += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        int getInt(long pos) {
+            ByteBuffer region = regions[(int) (Objects.checkFromIndexSize(pos, Integer.BYTES, size) / regionSize)];
+            int at = (int) (pos % regionSize);
+            if (at + Integer.BYTES <= region.capacity()) return region.getInt(at);
+            byte[] b = new byte[Integer.BYTES];
+            get(pos, b, 0, b.length);
+            return ByteBuffer.wrap(b).getInt();
+        }
+
+        long getLong(long pos) {
+            ByteBuffer region = regions[(int) (Objects.checkFromIndexSize(pos, Long.BYTES, size) / regionSize)];
+            int at = (int) (pos % regionSize);
+            if (at + Long.BYTES <= region.capacity()) return region.getLong(at);
+            byte[] b = new byte[Long.BYTES];
+            get(pos, b, 0, b.length);
+            return ByteBuffer.wrap(b).getLong();
+        }
+    }
+
+    /**
+     * One mapped generation of the catalog.
+     */
+    private static final class Catalog {
+
+        static final Catalog EMPTY = new Catalog(null, 0, HEADER_SIZE, HEADER_SIZE);
+
+        private final Mapping mapping;
+        private final int count;
+        private final long orderStart;
+        private final long indexStart;
+
+        private Catalog(Mapping mapping, int count, long orderStart, long indexStart) {
+            this.mapping = mapping;
+            this.count = count;
+            this.orderStart = orderStart;
+            this.indexStart = indexStart;
+        }
+
+        static Catalog open(Path file, int regionSize) throws IOException {
+            Mapping mapping = Mapping.of(file, regionSize);
+            if (mapping.size < HEADER_SIZE) {
+                throw new IOException("Truncated item catalog: " + file);
+            }
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (mapping.get(i) != MAGIC[i]) throw new IOException("Not an item catalog: " + file);
+            }
+            if (mapping.get(MAGIC.length) != VERSION) {
+                throw new IOException("Unsupported item catalog version " + mapping.get(MAGIC.length));
+            }
+            int count = mapping.getInt(MAGIC.length + 1);
+            long orderStart = mapping.getLong(MAGIC.length + 1 + Integer.BYTES);
+            long indexStart = mapping.getLong(MAGIC.length + 1 + Integer.BYTES + Long.BYTES);
+            if (count < 0 || orderStart < HEADER_SIZE
+                    || indexStart != orderStart + (long) count * Long.BYTES
+                    || indexStart + (long) count * INDEX_ENTRY_SIZE != mapping.size) {
+                throw new IOException("Corrupted item catalog: " + file);
+            }
+            return new Catalog(mapping, count, orderStart, indexStart);
+        }
+
+        /** Binary search over the id index; returns the entry number or -1. */
+        int find(UUID id) {
+            int lo = 0, hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                long at = indexStart + (long) mid * INDEX_ENTRY_SIZE;
+                int cmp = Long.compare(mapping.getLong(at), id.getMostSignificantBits());
+                if (cmp == 0) cmp = Long.compare(mapping.getLong(at + Long.BYTES), id.getLeastSignificantBits());
+                if (cmp == 0) return mid;
+                if (cmp < 0) lo = mid + 1; else hi = mid - 1;
+            }
+            return -1;
+        }
+
+        long recordOffsetOfEntry(int entry) {
+            return mapping.getLong(indexStart + (long) entry * INDEX_ENTRY_SIZE + 2 * Long.BYTES);
+        }
+
+        int availableOfEntry(int entry) {
+            return mapping.getInt(indexStart + (long) entry * INDEX_ENTRY_SIZE + 3 * Long.BYTES);
+        }
+
+        int totalOfEntry(int entry) {
+            return mapping.getInt(indexStart + (long) entry * INDEX_ENTRY_SIZE + 3 * Long.BYTES + Integer.BYTES);
+        }
+
+        long recordOffsetAt(int position) {
+            return mapping.getLong(orderStart + (long) position * Long.BYTES);
+        }
+
+        UUID idAt(long recordOffset) {
+            return new UUID(mapping.getLong(recordOffset), mapping.getLong(recordOffset + Long.BYTES));
+        }
+
+        String titleAt(long recordOffset) {
+            byte[] title = new byte[mapping.getInt(recordOffset + 2 * Long.BYTES)];
+            mapping.get(recordOffset + 2 * Long.BYTES + Integer.BYTES, title, 0, title.length);
+            return new String(title, StandardCharsets.UTF_8);
+        }
+
+        /** Decodes the item stored at a record offset. */
+        LibraryItem decodeAt(long recordOffset) {
+            long bodyAt = recordOffset + 2 * Long.BYTES + Integer.BYTES + mapping.getInt(recordOffset + 2 * Long.BYTES);
+            byte[] body = new byte[mapping.getInt(bodyAt)];
+            mapping.get(bodyAt + Integer.BYTES, body, 0, body.length);
+            return decodeBody(body, "offset " + recordOffset);
+        }
+
+        /** Copies the record at an offset as stored; its index fields are taken from this catalog. */
+        Written copyRecord(long recordOffset, DataOutputStream out) throws IOException {
+            long bodyAt = recordOffset + 2 * Long.BYTES + Integer.BYTES + mapping.getInt(recordOffset + 2 * Long.BYTES);
+            long length = bodyAt + Integer.BYTES + mapping.getInt(bodyAt) - recordOffset;
+            byte[] chunk = new byte[(int) Math.min(length, 64 * 1024)];
+            for (long done = 0; done < length; ) {
+                int n = (int) Math.min(chunk.length, length - done);
+                mapping.get(recordOffset + done, chunk, 0, n);
+                out.write(chunk, 0, n);
+                done += n;
+            }
+            UUID id = idAt(recordOffset);
+            int entry = find(id);
+            return new Written(id, availableOfEntry(entry), totalOfEntry(entry), length);
+        }
+
+        /** Record offsets in the order table are increasing, so they can be searched too. */
+        int positionOf(long recordOffset) {
+            int lo = 0, hi = count - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int cmp = Long.compare(recordOffsetAt(mid), recordOffset);
+                if (cmp == 0) return mid;
+                if (cmp < 0) lo = mid + 1; else hi = mid - 1;
+            }
+            throw new IllegalStateException("No record at offset " + recordOffset);
+        }
+    }
+
+    /**
+     * Decoded items by id: the {@code capacity} most recently used are held
+     * strongly, the others only weakly, so an item stays the same instance for
+     * as long as anything refers to it without the cache pinning the catalog.
+     * Guarded by the repository.
+     */
+    private static final class ItemCache {
+
+        private final Map<UUID, LibraryItem> recent;
+        private final Map<UUID, Held> live = new HashMap<>();
+        private final ReferenceQueue<LibraryItem> collected = new ReferenceQueue<>();
+
+        ItemCache(int capacity) {
+            this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, LibraryItem> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /** Weak reference remembering the id it was cached under. */
+        private static final class Held extends WeakReference<LibraryItem> {
+            final UUID id;
+
+            Held(LibraryItem item, ReferenceQueue<LibraryItem> queue) {
+                super(item, queue);
+                this.id = item.getId();
+            }
+        }
+
+        LibraryItem get(UUID id) {
+            expunge();
+            Held ref = live.get(id);
+            LibraryItem item = (ref == null) ? null : ref.get();
+            if (item != null) recent.put(id, item);
+            return item;
+        }
+
+        void put(LibraryItem item) {
+            expunge();
+            live.put(item.getId(), new Held(item, collected));
+            recent.put(item.getId(), item);
+        }
+
+        void remove(UUID id) {
+            live.remove(id);
+            recent.remove(id);
+        }
+
+        /** After a full rewrite: items still cached are replaced by their saved instances, the others dropped. */
+        void rebind(List<LibraryItem> saved) {
+            expunge();
+            Set<UUID> cached = new HashSet<>(live.keySet());
+            live.clear();
+            recent.clear();
+            for (LibraryItem item : saved) {
+                if (cached.contains(item.getId())) put(item);
+            }
+        }
+
+        int size() {
+            return recent.size();
+        }
+
+        /** Passes every item still in memory, cached or in use elsewhere. */
+        void forEach(Consumer<LibraryItem> action) {
+            expunge();
+            for (Held ref : live.values()) {
+                LibraryItem item = ref.get();
+                if (item != null) action.accept(item);
+            }
+        }
+
+        private void expunge() {
+            for (Reference<? extends LibraryItem> r; (r = collected.poll()) != null; ) {
+                Held ref = (Held) r;
+                live.remove(ref.id, ref);
+            }
+        }
+    }
+
+    /**
+     * Read-only list view of one generation and the changes made since, as of
+     * when the view was created. Items are materialized on access.
+     */
+    private final class View extends AbstractList<LibraryItem> implements RandomAccess {
+
+        private final Catalog base;
+        private final int[] gone;
+        private final List<LibraryItem> added;
+
+        View(Catalog base, int[] gone, List<LibraryItem> added) {
+            this.base = base;
+            this.gone = gone;
+            this.added = added;
+        }
+
+        @Override
+        public LibraryItem get(int index) {
+            return at(index, true);
+        }
+
+        /** Like {@link #get(int)}, but a decoded item is not cached. */
+        LibraryItem peek(int index) {
+            return at(index, false);
+        }
+
+        private LibraryItem at(int index, boolean keep) {
+            Objects.checkIndex(index, size());
+            int kept = base.count - gone.length;
+            if (index >= kept) return added.get(index - kept);
+            int position = index;
+            for (int g : gone) {
+                if (g <= position) position++;
+                else break;
+            }
+            return itemAt(base, base.recordOffsetAt(position), keep);
+        }
+
+        @Override
+        public int size() {
+            return base.count - gone.length + added.size();
+        }
+    }
+}
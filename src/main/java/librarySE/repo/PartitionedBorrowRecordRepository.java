@@ -0,0 +1,297 @@
+package librarySE.repo;
+
+import librarySE.managers.BorrowRecord;
+import librarySE.utils.Config;
+import librarySE.utils.FileUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * {@link BorrowRecordRepository} that partitions borrow history by time period.
+ * <p>
+ * Records are split into:
+ * </p>
+ * <ul>
+ *     <li>{@code open.json} – loans that are not settled yet (not returned, or
+ *         returned with an unpaid fine);</li>
+ *     <li>one file per period (e.g. {@code 2025-03.json}) holding the records
+ *         that were settled during that period.</li>
+ * </ul>
+ * <p>
+ * {@link #loadAll()} reads only the open loans and the current period. Older
+ * periods are read by {@link #loadArchived(LocalDate)} when a query reaches
+ * back in time, and kept in a small LRU cache
+ * ({@code borrow.history.cachedPartitions}, default 6).
+ * </p>
+ *
+ * <p>
+ * The period length is configured with {@code borrow.history.partition}
+ * ({@code MONTH}, {@code QUARTER} or {@code YEAR}; default {@code MONTH}).
+ * Files written with another period length keep working, since each file name
+ * describes its own date range.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * BorrowRecordRepository repo = new PartitionedBorrowRecordRepository();
+ * List<BorrowRecord> hot = repo.loadAll();                       // open + current month
+ * List<BorrowRecord> older = repo.loadArchived(LocalDate.of(2024, 1, 1));
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class PartitionedBorrowRecordRepository implements BorrowRecordRepository {
+
+    /** Length of one history partition. */
+    public enum Period {
+        MONTH, QUARTER, YEAR;
+
+        /**
+         * @param date any date
+         * @return partition key of the period containing {@code date}
+         */
+        public String keyOf(LocalDate date) {
+            return switch (this) {
+                case MONTH -> YearMonth.from(date).toString();
+                case QUARTER -> date.getYear() + "-Q" + ((date.getMonthValue() - 1) / 3 + 1);
+                case YEAR -> String.valueOf(date.getYear());
+            };
+        }
+
+        /**
+         * @param text period name, case-insensitive
+         * @return parsed period; {@link #MONTH} if {@code text} is not a period name
+         */
+        public static Period parse(String text) {
+            try {
+                return valueOf(text.trim().toUpperCase(Locale.ROOT));
+            } catch (RuntimeException e) {
+                return MONTH;
+            }
+        }
+    }
+
+    private static final String OPEN = "open";
+    private static final Type LIST_TYPE = FileUtils.listTypeOf(BorrowRecord.class);
+    private static final Pattern KEY = Pattern.compile("(\\d{4})(?:-(\\d{2})|-Q([1-4]))?");
+
+    private final Path dir;
+    private final Period period;
+    private final Clock clock;
+    private final int cachedPartitions;
+
+    /** Partition of every record returned by {@link #loadAll()} or saved since. */
+    private final Map<UUID, String> partitionOf = new HashMap<>();
+
+    /** Partitions fully held by the caller's list since {@link #loadAll()}; rewritten on save. */
+    private final Set<String> hotPartitions = new HashSet<>();
+
+    /** Archived partitions read recently, least recently used first. */
+    private final LinkedHashMap<String, List<BorrowRecord>> cache;
+
+    /**
+     * Creates a repository in {@code library_data/borrow_history}, configured
+     * from {@code borrow.history.partition} and {@code borrow.history.cachedPartitions}.
+     */
+    public PartitionedBorrowRecordRepository() {
+        this(FileUtils.dataFile("borrow_history"),
+             Period.parse(Config.get("borrow.history.partition", Period.MONTH.name())),
+             Config.getInt("borrow.history.cachedPartitions", 6),
+             Clock.systemDefaultZone());
+    }
+
+    /**
+     * @param dir              directory holding the partition files
+     * @param period           period length for new partitions
+     * @param cachedPartitions number of archived partitions kept in memory
+     * @param clock            clock deciding the current period
+     */
+    public PartitionedBorrowRecordRepository(Path dir, Period period, int cachedPartitions, Clock clock) {
+        this.dir = Objects.requireNonNull(dir, "dir");
+        this.period = Objects.requireNonNull(period, "period");
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.cachedPartitions = Math.max(0, cachedPartitions);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<BorrowRecord>> eldest) {
+                return size() > PartitionedBorrowRecordRepository.this.cachedPartitions;
+            }
+        };
+    }
+
+    /**
+     * Loads open loans and the records settled in the current period.
+     *
+     * @return hot records; never {@code null}
+     */
+    @Override
+    public synchronized List<BorrowRecord> loadAll() {
+        partitionOf.clear();
+        hotPartitions.clear();
+
+        List<BorrowRecord> result = new ArrayList<>();
+        for (String key : List.of(OPEN, currentKey())) {
+            hotPartitions.add(key);
+            cache.remove(key);
+            for (BorrowRecord r : read(key)) {
+                partitionOf.put(r.getId(), key);
+                result.add(r);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Streams the same records as {@link #loadAll()}, one at a time, without
+     * changing which partitions the next {@link #saveAll(List)} replaces.
+     *
+     * @return open loans followed by the records settled in the current period; must be closed
+     */
+    @Override
+    public synchronized Stream<BorrowRecord> stream() {
+        return Stream.of(OPEN, currentKey())
+                .flatMap(key -> FileUtils.streamJson(fileOf(key), BorrowRecord.class));
+    }
+
+    /**
+     * Saves the hot records. Open loans go to {@code open.json}; records settled
+     * since they were loaded move to the current period.
+     * <p>
+     * Partitions the caller has not loaded (e.g. when saving without a prior
+     * {@link #loadAll()}) are merged with their file instead of replaced.
+     * </p>
+     *
+     * @param records every record previously returned by {@link #loadAll()} plus new ones
+     */
+    @Override
+    public synchronized void saveAll(List<BorrowRecord> records) {
+        String current = currentKey();
+        Map<String, List<BorrowRecord>> byPartition = new LinkedHashMap<>();
+        byPartition.put(OPEN, new ArrayList<>());
+        for (String key : hotPartitions) byPartition.put(key, new ArrayList<>());
+
+        Set<UUID> saved = new HashSet<>();
+        for (BorrowRecord r : records) {
+            String key;
+            if (!isSettled(r)) {
+                key = OPEN;
+            } else {
+                key = partitionOf.get(r.getId());
+                if (key == null || key.equals(OPEN)) key = current;
+            }
+            partitionOf.put(r.getId(), key);
+            saved.add(r.getId());
+            byPartition.computeIfAbsent(key, k -> new ArrayList<>()).add(r);
+        }
+
+        for (var entry : byPartition.entrySet()) {
+            String key = entry.getKey();
+            List<BorrowRecord> partition = entry.getValue();
+            if (!hotPartitions.contains(key)) {
+                for (BorrowRecord r : read(key)) {
+                    if (!saved.contains(r.getId())) partition.add(r);
+                }
+                cache.remove(key);
+            }
+            if (partition.isEmpty() && !key.equals(OPEN) && !Files.exists(fileOf(key))) continue;
+            FileUtils.writeJson(fileOf(key), partition);
+        }
+    }
+
+    /**
+     * Loads every archived partition whose period ends on or after {@code since}.
+     * Partitions held by the caller ({@link #loadAll()}) are not included.
+     *
+     * @param since earliest date of interest
+     * @return archived records, possibly from the cache; never {@code null}
+     */
+    @Override
+    public synchronized List<BorrowRecord> loadArchived(LocalDate since) {
+        List<BorrowRecord> result = new ArrayList<>();
+        for (String key : partitionKeys()) {
+            if (hotPartitions.contains(key)) continue;
+            LocalDate end = endOf(key);
+            if (end == null || end.isBefore(since)) continue;
+            List<BorrowRecord> records = cache.get(key);
+            if (records == null) {
+                records = List.copyOf(read(key));
+                if (cachedPartitions > 0) cache.put(key, records);
+            }
+            result.addAll(records);
+        }
+        return result;
+    }
+
+    /** @return keys of all period partitions on disk, oldest first */
+    public synchronized List<String> partitionKeys() {
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.endsWith(".json"))
+                    .map(n -> n.substring(0, n.length() - ".json".length()))
+                    .filter(k -> endOf(k) != null)
+                    .sorted(Comparator.comparing(PartitionedBorrowRecordRepository::endOf))
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to list borrow history: " + dir, e);
+        }
+    }
+
+    /** @return keys of archived partitions currently cached, least recently used first */
+    public synchronized List<String> cachedPartitionKeys() {
+        return List.copyOf(cache.keySet());
+    }
+
+    // =====================================================================
+    // Helpers
+    // =====================================================================
+
+    private String currentKey() {
+        return period.keyOf(LocalDate.now(clock));
+    }
+
+    private static boolean isSettled(BorrowRecord r) {
+        return r.isReturned() && r.getRemainingFine().compareTo(BigDecimal.ZERO) <= 0;
+    }
+
+    private Path fileOf(String key) {
+        return dir.resolve(key + ".json");
+    }
+
+    private List<BorrowRecord> read(String key) {
+        List<BorrowRecord> list = FileUtils.readJson(fileOf(key), LIST_TYPE, new ArrayList<>());
+        return (list == null) ? new ArrayList<>() : list;
+    }
+
+    /**
+     * Parses the date range of a partition key written with any {@link Period}.
+     *
+     * @param key e.g. {@code 2025-03}, {@code 2025-Q1} or {@code 2025}
+     * @return last day of the period, or {@code null} if {@code key} is not a period
+     */
+    static LocalDate endOf(String key) {
+        Matcher m = KEY.matcher(key);
+        if (!m.matches()) return null;
+        try {
+            int year = Integer.parseInt(m.group(1));
+            if (m.group(2) != null) return YearMonth.of(year, Integer.parseInt(m.group(2))).atEndOfMonth();
+            if (m.group(3) != null) return YearMonth.of(year, Integer.parseInt(m.group(3)) * 3).atEndOfMonth();
+            return LocalDate.of(year, 12, 31);
+        } catch (DateTimeException e) {
+            return null;
+        }
+    }
+}
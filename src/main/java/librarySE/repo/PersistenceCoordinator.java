@@ -0,0 +1,664 @@
+package librarySE.repo;
+
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.User;
+import librarySE.utils.Config;
+import librarySE.utils.LoggerUtils;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Group-commit coordinator that sits between the managers and the repositories.
+ * <p>
+ * Managers persist eagerly: a single {@code borrowItem} call saves borrow records
+ * several times and also saves the item list. The coordinator wraps each
+ * repository so that {@code saveAll} only marks the repository dirty and remembers
+ * the most recent list. Dirty repositories are written together in one
+ * <em>group commit</em> when either:
+ * </p>
+ * <ul>
+ *     <li>the flush interval elapses ({@code persistence.flush.intervalMs}, default 500), or</li>
+ *     <li>the number of logical saves since the last flush reaches
+ *         {@code persistence.flush.maxDirty} (default 32).</li>
+ * </ul>
+ *
+ * <p>
+ * Single-entity writes ({@link EntityRepository#upsert}, {@link EntityRepository#delete})
+ * are coalesced per entity: only the latest change of each entity is written,
+ * after the latest full list if one is pending. They are offered only when
+ * the wrapped repository {@linkplain EntityRepository#supportsIncrementalWrites()
+ * supports} them.
+ * </p>
+ *
+ * <p>
+ * A write that another process's change makes impossible (a
+ * {@link ConcurrentUpdateException}) is logged and dropped rather than retried.
+ * Deferring writes hides such conflicts from the caller, so processes sharing
+ * files should write through instead (see {@code storage.shared}). What was
+ * actually stored is reported to the wrapper's
+ * {@linkplain EntityRepository#notifyWhenStored listener}, so a dropped write is
+ * never recorded as a change.
+ * </p>
+ *
+ * <p>
+ * At startup, {@link #preload()} loads all wrapped repositories concurrently;
+ * the managers' first {@code loadAll} calls then return the preloaded lists.
+ * </p>
+ *
+ * <p>
+ * Each flush produces a {@link FlushReport} describing how many logical saves it
+ * absorbed. Reports are appended to {@code persistence_log.txt}. Calling
+ * {@link #close()} (or the hook installed by {@link #registerShutdownHook()})
+ * performs a final synchronous flush.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * PersistenceCoordinator coordinator = new PersistenceCoordinator();
+ * coordinator.registerShutdownHook();
+ *
+ * ItemManager.init(coordinator.items(new FileItemRepository()), strategy);
+ * UserManager.init(coordinator.users(new FileUserRepository()));
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class PersistenceCoordinator implements Closeable {
+
+    /**
+     * Summary of a single group commit.
+     *
+     * @param absorbed      logical saves absorbed per repository name
+     * @param logicalSaves  total logical saves written by this flush
+     * @param durationNanos time spent writing
+     */
+    public record FlushReport(Map<String, Integer> absorbed, int logicalSaves, long durationNanos) {
+
+        /** @return number of repositories physically written */
+        public int repositoriesWritten() {
+            return absorbed.size();
+        }
+    }
+
+    /** Latest pending write of one repository. */
+    private static final class PendingSave {
+        Runnable write;
+        int logicalSaves;
+    }
+
+    /**
+     * First {@code loadAll} of one wrapped repository. {@link #preload()} may
+     * start it ahead of time; the next {@code loadAll} then returns that result
+     * instead of reading storage again. Later calls always read storage.
+     */
+    private static final class Preload<T> {
+        private record Loaded<T>(List<T> entities, Duration took) { }
+
+        private final Supplier<List<T>> loader;
+        private CompletableFuture<Loaded<T>> started;
+
+        Preload(Supplier<List<T>> loader) {
+            this.loader = loader;
+        }
+
+        synchronized CompletableFuture<Duration> start(Executor executor) {
+            if (started == null) {
+                started = CompletableFuture.supplyAsync(() -> {
+                    long begin = System.nanoTime();
+                    List<T> entities = loader.get();
+                    return new Loaded<>(entities, Duration.ofNanos(System.nanoTime() - begin));
+                }, executor);
+            }
+            return started.thenApply(Loaded::took);
+        }
+
+        List<T> load() {
+            CompletableFuture<Loaded<T>> taken;
+            synchronized (this) {
+                taken = started;
+                started = null;
+            }
+            if (taken == null) return loader.get();
+            try {
+                return taken.join().entities();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Coalescing wrapper of one entity repository. Holds the latest full list
+     * (if any) and, written after it, the latest single-entity change per id.
+     * Pending state is guarded by the wrapper itself.
+     */
+    private abstract class CoalescingRepository<T> implements EntityRepository<T> {
+        private final String name;
+        private final EntityRepository<T> delegate;
+        private final Function<T, UUID> idOf;
+        private final Preload<T> preload;
+
+        private List<T> full;
+        private Map<UUID, T> upserts = new LinkedHashMap<>();
+        private Map<UUID, T> deletes = new LinkedHashMap<>();
+
+        /** Told what each flush stored; {@code null} if nobody asked. */
+        private volatile WriteListener<T> listener;
+
+        CoalescingRepository(String name, EntityRepository<T> delegate, Function<T, UUID> idOf) {
+            this.name = name;
+            this.delegate = delegate;
+            this.idOf = idOf;
+            this.preload = register(name, delegate::loadAll);
+        }
+
+        @Override public List<T> loadAll() { return preload.load(); }
+
+        /** Writes this repository's pending saves first, so the stream includes them. */
+        @Override public Stream<T> stream() {
+            flushIfPending(name);
+            return delegate.stream();
+        }
+
+        @Override public boolean supportsIncrementalWrites() { return delegate.supportsIncrementalWrites(); }
+
+        @Override public void saveAll(List<T> entities) {
+            synchronized (this) {
+                full = entities;
+                upserts.clear();
+                deletes.clear();
+            }
+            markDirty(name, this::write);
+        }
+
+        @Override public void upsert(T entity) {
+            synchronized (this) {
+                deletes.remove(idOf.apply(entity));
+                upserts.put(idOf.apply(entity), entity);
+            }
+            markDirty(name, this::write);
+        }
+
+        @Override public void delete(T entity) {
+            synchronized (this) {
+                upserts.remove(idOf.apply(entity));
+                deletes.put(idOf.apply(entity), entity);
+            }
+            markDirty(name, this::write);
+        }
+
+        /** Writes this repository's pending saves first, so they are not reported as foreign. */
+        @Override public Changes<T> refresh() {
+            flushIfPending(name);
+            return delegate.refresh();
+        }
+
+        /** @return {@code true}: writes are stored when the repository is flushed */
+        @Override public boolean notifyWhenStored(WriteListener<T> listener) {
+            this.listener = listener;
+            return true;
+        }
+
+        /** Writes and clears the pending state; a failed write is merged back before rethrowing. */
+        private void write() {
+            List<T> takenFull;
+            Map<UUID, T> takenUpserts, takenDeletes;
+            synchronized (this) {
+                takenFull = full;
+                takenUpserts = upserts;
+                takenDeletes = deletes;
+                full = null;
+                upserts = new LinkedHashMap<>();
+                deletes = new LinkedHashMap<>();
+            }
+            WriteListener<T> told = listener;
+            List<T> deleted = new ArrayList<>(takenDeletes.size());
+            List<T> upserted = new ArrayList<>(takenUpserts.size());
+            try {
+                if (takenFull != null) {
+                    boolean stored = writeUnlessConflicting(() -> delegate.saveAll(takenFull));
+                    if (told != null) told.fullListWritten(stored);
+                }
+                for (T e : takenDeletes.values()) {
+                    if (writeUnlessConflicting(() -> delegate.delete(e))) deleted.add(e);
+                }
+                for (T e : takenUpserts.values()) {
+                    if (writeUnlessConflicting(() -> delegate.upsert(e))) upserted.add(e);
+                }
+            } catch (RuntimeException e) {
+                restore(takenFull, takenUpserts, takenDeletes);
+                throw e;
+            } finally {
+                if (told != null && (!deleted.isEmpty() || !upserted.isEmpty())) told.stored(deleted, upserted);
+            }
+        }
+
+        /**
+         * Runs one write; a write rejected because another process changed the
+         * entity meanwhile is dropped, since retrying it later cannot succeed.
+         *
+         * @return {@code false} if the write was dropped
+         */
+        private boolean writeUnlessConflicting(Runnable write) {
+            try {
+                write.run();
+                return true;
+            } catch (ConcurrentUpdateException e) {
+                LoggerUtils.log("persistence_log.txt", "Dropped write to " + name + " → " + e.getMessage());
+                return false;
+            }
+        }
+
+        /** Puts older, unwritten changes back behind anything newer. */
+        private synchronized void restore(List<T> olderFull, Map<UUID, T> olderUpserts, Map<UUID, T> olderDeletes) {
+            if (full != null) return; // a newer full list supersedes them
+            full = olderFull;
+            upserts.keySet().forEach(olderDeletes::remove);
+            deletes.keySet().forEach(olderUpserts::remove);
+            olderUpserts.putAll(upserts);
+            olderDeletes.putAll(deletes);
+            upserts = olderUpserts;
+            deletes = olderDeletes;
+        }
+    }
+
+    private final long flushIntervalMillis;
+    private final int maxDirty;
+
+    /** First loads of the wrapped repositories, by name; guarded by {@code this}. */
+    private final Map<String, Preload<?>> preloads = new LinkedHashMap<>();
+
+    /** Pending writes keyed by repository name; guarded by {@code this}. */
+    private final Map<String, PendingSave> pending = new LinkedHashMap<>();
+    private int dirtyCount;
+
+    /** Serializes flushes so repositories are never written concurrently. */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile FlushReport lastReport;
+    private long totalLogicalSaves;
+    private long totalFlushes;
+    private boolean closed;
+
+    /**
+     * Creates a coordinator configured from {@code persistence.flush.intervalMs}
+     * and {@code persistence.flush.maxDirty}.
+     */
+    public PersistenceCoordinator() {
+        this(Config.getInt("persistence.flush.intervalMs", 500),
+             Config.getInt("persistence.flush.maxDirty", 32));
+    }
+
+    /**
+     * Creates a coordinator with explicit settings.
+     *
+     * @param flushIntervalMillis periodic flush interval; {@code <= 0} disables periodic flushing
+     * @param maxDirty            logical saves that trigger an immediate flush; must be {@code >= 1}
+     */
+    public PersistenceCoordinator(long flushIntervalMillis, int maxDirty) {
+        if (maxDirty < 1)
+            throw new IllegalArgumentException("maxDirty must be >= 1");
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.maxDirty = maxDirty;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "persistence-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        if (flushIntervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::flushQuietly,
+                    flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // =====================================================================
+    // Repository wrappers
+    // =====================================================================
+
+    /**
+     * Wraps an item repository so its saves are coalesced.
+     *
+     * @param delegate the repository that performs the actual writes
+     * @return coalescing repository
+     */
+    public ItemRepository items(ItemRepository delegate) {
+        Objects.requireNonNull(delegate, "delegate");
+        class Coalescing extends CoalescingRepository<LibraryItem> implements ItemRepository {
+            Coalescing() { super("items", delegate, LibraryItem::getId); }
+
+            @Override public boolean readsOnDemand() { return delegate.readsOnDemand(); }
+
+            /** Reads storage without flushing; the caller holds the items it wrote but were not flushed yet. */
+            @Override public Optional<LibraryItem> findById(UUID id) { return delegate.findById(id); }
+
+            /** Captures storage without flushing, like {@link #findById}. */
+            @Override public Supplier<Stream<LibraryItem>> capture() { return delegate.capture(); }
+        }
+        return new Coalescing();
+    }
+
+    /**
+     * Wraps a user repository so its saves are coalesced.
+     *
+     * @param delegate the repository that performs the actual writes
+     * @return coalescing repository
+     */
+    public UserRepository users(UserRepository delegate) {
+        Objects.requireNonNull(delegate, "delegate");
+        class Coalescing extends CoalescingRepository<User> implements UserRepository {
+            Coalescing() { super("users", delegate, User::getId); }
+        }
+        return new Coalescing();
+    }
+
+    /**
+     * Wraps a borrow record repository so its saves are coalesced.
+     * <p>
+     * If the delegate implements {@link BorrowRecordQueries}, so does the
+     * wrapper: pending borrow record saves are flushed before each query, so
+     * query results always include them.
+     * </p>
+     *
+     * @param delegate the repository that performs the actual writes
+     * @return coalescing repository
+     */
+    public BorrowRecordRepository borrowRecords(BorrowRecordRepository delegate) {
+        Objects.requireNonNull(delegate, "delegate");
+        class Coalescing extends CoalescingRepository<BorrowRecord> implements BorrowRecordRepository {
+            Coalescing() { super("borrowRecords", delegate, BorrowRecord::getId); }
+            @Override public List<BorrowRecord> loadArchived(LocalDate since) {
+                return delegate.loadArchived(since);
+            }
+        }
+        if (delegate instanceof BorrowRecordQueries queries) {
+            class Queryable extends Coalescing implements BorrowRecordQueries {
+                @Override public List<BorrowRecord> findByUser(UUID userId) {
+                    flushIfPending("borrowRecords");
+                    return queries.findByUser(userId);
+                }
+                @Override public List<BorrowRecord> findByItem(UUID itemId) {
+                    flushIfPending("borrowRecords");
+                    return queries.findByItem(itemId);
+                }
+                @Override public List<BorrowRecord> findOverdue(LocalDate date) {
+                    flushIfPending("borrowRecords");
+                    return queries.findOverdue(date);
+                }
+            }
+            return new Queryable();
+        }
+        return new Coalescing();
+    }
+
+    /**
+     * Wraps a waitlist repository so its full saves are coalesced. Single
+     * entries are added and removed at once, so desks sharing the waitlist
+     * merge their changes.
+     *
+     * @param delegate the repository that performs the actual writes
+     * @return coalescing repository
+     */
+    public WaitlistRepository waitlist(WaitlistRepository delegate) {
+        Objects.requireNonNull(delegate, "delegate");
+        return new WaitlistRepository() {
+            private final Preload<WaitlistEntry> preload = register("waitlist", delegate::loadAll);
+
+            @Override public List<WaitlistEntry> loadAll() { return preload.load(); }
+            @Override public Stream<WaitlistEntry> stream() {
+                flushIfPending("waitlist");
+                return delegate.stream();
+            }
+            @Override public void saveAll(List<WaitlistEntry> entries) {
+                markDirty("waitlist", () -> delegate.saveAll(entries));
+            }
+
+            // Single entries are written at once, after any full list waiting to be saved.
+            @Override public void add(WaitlistEntry entry) {
+                flushIfPending("waitlist");
+                delegate.add(entry);
+            }
+            @Override public List<WaitlistEntry> removeFor(UUID itemId) {
+                flushIfPending("waitlist");
+                return delegate.removeFor(itemId);
+            }
+            @Override public Optional<List<WaitlistEntry>> refresh() {
+                flushIfPending("waitlist");
+                return delegate.refresh();
+            }
+        };
+    }
+
+    // =====================================================================
+    // Preloading
+    // =====================================================================
+
+    private synchronized <T> Preload<T> register(String repository, Supplier<List<T>> loader) {
+        Preload<T> p = new Preload<>(loader);
+        preloads.put(repository, p);
+        return p;
+    }
+
+    /**
+     * Starts loading every wrapped repository at once, each on its own
+     * virtual thread. The next {@code loadAll} of each repository returns the
+     * preloaded list (waiting for it if necessary), so managers initialized
+     * afterwards do not read storage again.
+     *
+     * @return completes with the load time of each repository, by name, once
+     *         all loads have finished; completes exceptionally if one failed
+     */
+    public CompletableFuture<Map<String, Duration>> preload() {
+        Map<String, Preload<?>> targets;
+        synchronized (this) {
+            targets = new LinkedHashMap<>(preloads);
+        }
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Map<String, CompletableFuture<Duration>> loads = new LinkedHashMap<>();
+        targets.forEach((name, p) -> loads.put(name, p.start(executor)));
+        executor.shutdown();
+
+        return CompletableFuture.allOf(loads.values().toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    Map<String, Duration> took = new LinkedHashMap<>();
+                    loads.forEach((name, f) -> took.put(name, f.join()));
+                    return Collections.unmodifiableMap(took);
+                });
+    }
+
+    // =====================================================================
+    // Dirty tracking & flushing
+    // =====================================================================
+
+    /**
+     * Records a logical save. Only the most recent write per repository is kept.
+     *
+     * @param repository repository name
+     * @param write      action that writes the latest state
+     */
+    void markDirty(String repository, Runnable write) {
+        boolean writeThrough;
+        boolean flushNow;
+        synchronized (this) {
+            PendingSave p = pending.computeIfAbsent(repository, k -> new PendingSave());
+            p.write = write;
+            p.logicalSaves++;
+            dirtyCount++;
+            writeThrough = closed;
+            flushNow = !closed && dirtyCount >= maxDirty;
+        }
+        if (writeThrough) {
+            // After shutdown there is no flusher left: write through.
+            flush();
+        } else if (flushNow) {
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Synchronously writes every dirty repository.
+     *
+     * @return report of this flush; {@code logicalSaves} is 0 if nothing was dirty
+     * @throws RuntimeException if a repository write fails; its save stays pending
+     */
+    public FlushReport flush() {
+        flushLock.lock();
+        try {
+            Map<String, PendingSave> batch;
+            synchronized (this) {
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+                dirtyCount = 0;
+            }
+            if (batch.isEmpty()) {
+                return new FlushReport(Map.of(), 0, 0);
+            }
+
+            long start = System.nanoTime();
+            Map<String, Integer> absorbed = new LinkedHashMap<>();
+            RuntimeException failure = null;
+
+            for (var entry : batch.entrySet()) {
+                try {
+                    entry.getValue().write.run();
+                    absorbed.put(entry.getKey(), entry.getValue().logicalSaves);
+                } catch (RuntimeException e) {
+                    requeue(entry.getKey(), entry.getValue());
+                    if (failure == null) failure = e;
+                }
+            }
+
+            FlushReport report = new FlushReport(
+                    Collections.unmodifiableMap(absorbed),
+                    absorbed.values().stream().mapToInt(Integer::intValue).sum(),
+                    System.nanoTime() - start);
+            record(report);
+
+            if (failure != null) throw failure;
+            return report;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Flushes if {@code repository} has a pending write, so reads from storage include it. */
+    private void flushIfPending(String repository) {
+        boolean dirty;
+        synchronized (this) {
+            dirty = pending.containsKey(repository);
+        }
+        if (dirty) flush();
+    }
+
+    /** Puts a failed write back unless a newer one has arrived meanwhile. */
+    private synchronized void requeue(String repository, PendingSave failed) {
+        PendingSave current = pending.get(repository);
+        if (current == null) {
+            pending.put(repository, failed);
+        } else {
+            current.logicalSaves += failed.logicalSaves;
+        }
+    }
+
+    private synchronized void record(FlushReport report) {
+        lastReport = report;
+        totalFlushes++;
+        totalLogicalSaves += report.logicalSaves();
+        if (report.logicalSaves() > 0) {
+            LoggerUtils.log("persistence_log.txt", String.format(
+                    "Group commit wrote %d repositories, absorbed %d logical saves %s in %.2f ms",
+                    report.repositoriesWritten(), report.logicalSaves(), report.absorbed(),
+                    report.durationNanos() / 1_000_000.0));
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LoggerUtils.log("persistence_log.txt", "Group commit failed → " + e.getMessage());
+        }
+    }
+
+    // =====================================================================
+    // Statistics
+    // =====================================================================
+
+    /** @return the report of the most recent flush, or {@code null} if none happened yet */
+    public FlushReport getLastFlushReport() {
+        return lastReport;
+    }
+
+    /** @return number of logical saves written since creation */
+    public synchronized long getTotalLogicalSaves() {
+        return totalLogicalSaves;
+    }
+
+    /** @return number of completed flushes since creation */
+    public synchronized long getTotalFlushes() {
+        return totalFlushes;
+    }
+
+    /** @return number of repositories currently waiting to be written */
+    public synchronized int pendingRepositories() {
+        return pending.size();
+    }
+
+    /** @return configured flush interval in milliseconds */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    // =====================================================================
+    // Shutdown
+    // =====================================================================
+
+    /**
+     * Registers a JVM shutdown hook that calls {@link #close()}.
+     */
+    public void registerShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "persistence-shutdown"));
+    }
+
+    /**
+     * Stops periodic flushing and synchronously writes all pending saves.
+     * Saves requested after closing are written through immediately.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+}
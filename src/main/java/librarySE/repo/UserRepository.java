@@ -21,6 +21,7 @@ import java.util.List;
  * <ul>
  *     <li>Provide a unified way to retrieve all registered users.</li>
  *     <li>Save user data after additions, deletions, or updates.</li>
+ *     <li>Optionally write single users ({@link EntityRepository#upsert}, {@link EntityRepository#delete}).</li>
  * </ul>
  *
  * <h2>Usage Example:</h2>
@@ -33,7 +34,7 @@ import java.util.List;
  *
  * @author Eman
  */
-public interface UserRepository {
+public interface UserRepository extends EntityRepository<User> {
 
     /**
      * Loads all {@link User} objects from persistent storage.
@@ -1,7 +1,12 @@
 package librarySE.repo;
 
 import librarySE.core.WaitlistEntry;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Defines persistence operations for waitlist entries.
@@ -18,10 +23,77 @@ public interface WaitlistRepository {
      */
     List<WaitlistEntry> loadAll();
 
+    /**
+     * Streams the stored waitlist entries for a single pass, without
+     * necessarily holding them all in memory. The stream may keep storage
+     * open and must be closed. The default streams {@link #loadAll()}, for
+     * repositories whose {@code loadAll()} does not change their state.
+     *
+     * @return the stored entries; never {@code null}
+     */
+    default Stream<WaitlistEntry> stream() {
+        return loadAll().stream();
+    }
+
+    /**
+     * Passes every stored waitlist entry to {@code action}, reading them
+     * through {@link #stream()}.
+     *
+     * @param action receives each entry once
+     */
+    default void forEach(Consumer<? super WaitlistEntry> action) {
+        try (Stream<WaitlistEntry> entries = stream()) {
+            entries.forEach(action);
+        }
+    }
+
     /**
      * Saves all waitlist entries to persistent storage.
      *
      * @param entries the list of entries to save
      */
     void saveAll(List<WaitlistEntry> entries);
+
+    /**
+     * Adds one entry to storage, keeping the entries stored meanwhile, e.g. by
+     * another desk sharing the storage. The default loads, extends and saves
+     * the whole list.
+     *
+     * @param entry the entry to add
+     */
+    default void add(WaitlistEntry entry) {
+        List<WaitlistEntry> entries = new ArrayList<>(loadAll());
+        entries.add(entry);
+        saveAll(entries);
+    }
+
+    /**
+     * Removes the entries waiting for an item from storage, also those other
+     * desks stored. The default loads, filters and saves the whole list.
+     *
+     * @param itemId the item that became available
+     * @return the removed entries, in stored order
+     */
+    default List<WaitlistEntry> removeFor(UUID itemId) {
+        List<WaitlistEntry> entries = new ArrayList<>(loadAll());
+        List<WaitlistEntry> removed = entries.stream().filter(e -> e.getItemId().equals(itemId)).toList();
+        if (!removed.isEmpty()) {
+            entries.removeAll(removed);
+            saveAll(entries);
+        }
+        return removed;
+    }
+
+    /**
+     * Reads the stored entries if other processes sharing the storage changed
+     * them since this repository last read or wrote them.
+     * <p>
+     * The default returns an empty optional: the storage is not shared.
+     * </p>
+     *
+     * @return the stored entries, or empty if they did not change elsewhere
+     */
+    default Optional<List<WaitlistEntry>> refresh() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,135 @@
+package librarySE.repo.jdbc;
+
+import librarySE.managers.BorrowRecord;
+import librarySE.repo.BorrowRecordQueries;
+import librarySE.repo.BorrowRecordRepository;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * JDBC implementation of {@link BorrowRecordRepository} with indexed queries.
+ * <p>
+ * Each record is one row of the {@code borrow_records} table (see
+ * {@link JdbcDatabase}). The user id, item id, due date and status columns are
+ * indexed, so the {@link BorrowRecordQueries} methods read only the matching
+ * rows.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * JdbcBorrowRecordRepository repo = new JdbcBorrowRecordRepository(new JdbcDatabase());
+ * List<BorrowRecord> overdue = repo.findOverdue(LocalDate.now());
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class JdbcBorrowRecordRepository implements BorrowRecordRepository, BorrowRecordQueries {
+
+    private final JdbcTable<BorrowRecord> table;
+
+    /**
+     * @param db database holding the {@code borrow_records} table
+     * @throws librarySE.utils.SchemaVersionException if the table was written in a newer format
+     */
+    public JdbcBorrowRecordRepository(JdbcDatabase db) {
+        Objects.requireNonNull(db, "db");
+        this.table = new JdbcTable<>(db, "borrow_records",
+                List.of("id", "user_id", "item_id", "borrow_date", "due_date", "status", "data")) {
+            @Override
+            void bind(PreparedStatement ps, BorrowRecord r) throws SQLException {
+                ps.setObject(1, r.getId());
+                ps.setObject(2, r.getUserId());
+                ps.setObject(3, r.getItemId());
+                ps.setDate(4, Date.valueOf(r.getBorrowDate()));
+                ps.setDate(5, Date.valueOf(r.getDueDate()));
+                ps.setString(6, r.getStatus().name());
+                ps.setString(7, FileUtils.toCompactJson(r));
+            }
+
+            @Override
+            BorrowRecord read(ResultSet rs) throws SQLException {
+                return decode(rs.getString("data"));
+            }
+
+            @Override
+            BorrowRecord decode(String json) {
+                BorrowRecord r = FileUtils.fromJson(json, BorrowRecord.class);
+                r.ensureId();
+                return r;
+            }
+        };
+        table.upgradeSchema(DataSchema.Kind.BORROW_RECORD);
+    }
+
+    /** @return all records in saved order; never {@code null} */
+    @Override
+    public List<BorrowRecord> loadAll() {
+        return table.loadAll();
+    }
+
+    /**
+     * Streams the borrow records in saved order, {@value JdbcTable#BATCH_SIZE} rows per query.
+     *
+     * @return the stored borrow records
+     */
+    @Override
+    public Stream<BorrowRecord> stream() {
+        return table.stream();
+    }
+
+    /**
+     * Replaces all stored records in one transaction.
+     *
+     * @param records the complete list of records
+     */
+    @Override
+    public void saveAll(List<BorrowRecord> records) {
+        table.replaceAll(records);
+    }
+
+    /** @return {@code true}: single rows can be written */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /** @param record the added or modified record */
+    @Override
+    public void upsert(BorrowRecord record) {
+        table.merge(record);
+    }
+
+    /** @param record the removed record */
+    @Override
+    public void delete(BorrowRecord record) {
+        table.deleteById(record.getId());
+    }
+
+    @Override
+    public List<BorrowRecord> findByUser(UUID userId) {
+        return table.query("user_id = ?", ps -> ps.setObject(1, userId));
+    }
+
+    @Override
+    public List<BorrowRecord> findByItem(UUID itemId) {
+        return table.query("item_id = ?", ps -> ps.setObject(1, itemId));
+    }
+
+    @Override
+    public List<BorrowRecord> findOverdue(LocalDate date) {
+        return table.query("status = ? AND due_date < ?", ps -> {
+            ps.setString(1, BorrowRecord.Status.BORROWED.name());
+            ps.setDate(2, Date.valueOf(date));
+        });
+    }
+}
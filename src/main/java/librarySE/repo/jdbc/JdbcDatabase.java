@@ -0,0 +1,200 @@
+package librarySE.repo.jdbc;
+
+import librarySE.utils.Config;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Objects;
+
+/**
+ * Embedded SQL database shared by the JDBC repositories.
+ * <p>
+ * By default this is an H2 database stored in {@code library_data/library.mv.db};
+ * {@code persistence.jdbc.url} selects another JDBC URL. The schema is created
+ * on first use. All repositories share one connection, and every statement runs
+ * while holding this object's lock, so the repositories can be used from the
+ * GUI thread and the persistence flusher at the same time.
+ * </p>
+ *
+ * <h2>Schema</h2>
+ * <ul>
+ *     <li>{@code items}, {@code users} and {@code borrow_records} store each
+ *         entity as compact JSON in {@code data}, next to the columns that
+ *         queries filter on;</li>
+ *     <li>{@code borrow_records} is indexed on user id, item id, due date and status;</li>
+ *     <li>{@code waitlist} stores its three fields as plain columns;</li>
+ *     <li>{@code schema_versions} holds the {@link librarySE.utils.DataSchema}
+ *         version of the JSON in each table's {@code data} column (version 1
+ *         if absent); a repository upgrades older rows when it is created.</li>
+ * </ul>
+ * <p>
+ * Every table has an indexed {@code seq} identity column, so lists load in
+ * the order they were saved and can be streamed page by page.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * JdbcDatabase db = new JdbcDatabase();
+ * ItemRepository items = new JdbcItemRepository(db);
+ * List<LibraryItem> all = items.loadAll();
+ * db.close();
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class JdbcDatabase implements Closeable {
+
+    /**
+     * Work run on the shared connection.
+     *
+     * @param <T> result type
+     */
+    @FunctionalInterface
+    public interface SqlWork<T> {
+        T run(Connection connection) throws SQLException;
+    }
+
+    private static final String[] SCHEMA = {
+        """
+        CREATE TABLE IF NOT EXISTS items (
+            seq   BIGINT GENERATED BY DEFAULT AS IDENTITY,
+            id    UUID PRIMARY KEY,
+            type  VARCHAR(16) NOT NULL,
+            title VARCHAR(1024) NOT NULL,
+            data  CLOB NOT NULL)""",
+        "CREATE INDEX IF NOT EXISTS items_seq ON items (seq)",
+        """
+        CREATE TABLE IF NOT EXISTS users (
+            seq      BIGINT GENERATED BY DEFAULT AS IDENTITY,
+            id       UUID PRIMARY KEY,
+            username VARCHAR(255) NOT NULL,
+            email    VARCHAR(255) NOT NULL,
+            data     CLOB NOT NULL)""",
+        "CREATE INDEX IF NOT EXISTS users_seq ON users (seq)",
+        """
+        CREATE TABLE IF NOT EXISTS borrow_records (
+            seq         BIGINT GENERATED BY DEFAULT AS IDENTITY,
+            id          UUID PRIMARY KEY,
+            user_id     UUID,
+            item_id     UUID,
+            borrow_date DATE NOT NULL,
+            due_date    DATE NOT NULL,
+            status      VARCHAR(16) NOT NULL,
+            data        CLOB NOT NULL)""",
+        "CREATE INDEX IF NOT EXISTS borrow_records_seq ON borrow_records (seq)",
+        "CREATE INDEX IF NOT EXISTS borrow_records_user ON borrow_records (user_id)",
+        "CREATE INDEX IF NOT EXISTS borrow_records_item ON borrow_records (item_id)",
+        "CREATE INDEX IF NOT EXISTS borrow_records_due ON borrow_records (due_date)",
+        "CREATE INDEX IF NOT EXISTS borrow_records_status ON borrow_records (status)",
+        """
+        CREATE TABLE IF NOT EXISTS waitlist (
+            seq          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+            item_id      UUID NOT NULL,
+            user_email   VARCHAR(255) NOT NULL,
+            request_date DATE NOT NULL)""",
+        "CREATE INDEX IF NOT EXISTS waitlist_item ON waitlist (item_id)",
+        """
+        CREATE TABLE IF NOT EXISTS schema_versions (
+            kind    VARCHAR(32) PRIMARY KEY,
+            version INT NOT NULL)"""
+    };
+
+    private final String url;
+    private Connection connection;
+
+    /**
+     * Opens the database configured by {@code persistence.jdbc.url}
+     * (default: H2 file {@code library_data/library}).
+     */
+    public JdbcDatabase() {
+        this(Config.get("persistence.jdbc.url",
+                "jdbc:h2:file:" + FileUtils.dataFile("library").toAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE"));
+    }
+
+    /**
+     * Opens a database by JDBC URL and creates the schema if needed.
+     *
+     * @param url JDBC URL, e.g. {@code jdbc:h2:file:/path/to/library}
+     * @throws RuntimeException if the database cannot be opened
+     */
+    public JdbcDatabase(String url) {
+        this.url = Objects.requireNonNull(url, "url");
+        execute(c -> {
+            try (Statement st = c.createStatement()) {
+                for (String ddl : SCHEMA) st.execute(ddl);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs work on the shared connection in auto-commit mode.
+     *
+     * @param work the statements to run
+     * @param <T>  result type
+     * @return the result of {@code work}
+     * @throws RuntimeException wrapping any {@link SQLException}
+     */
+    public synchronized <T> T execute(SqlWork<T> work) {
+        try {
+            return work.run(connection());
+        } catch (SQLException e) {
+            throw new RuntimeException("Database operation failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs work in one transaction; it is rolled back if the work fails.
+     *
+     * @param work the statements to run
+     * @param <T>  result type
+     * @return the result of {@code work}
+     * @throws RuntimeException wrapping any {@link SQLException}
+     */
+    public synchronized <T> T transaction(SqlWork<T> work) {
+        return execute(c -> {
+            c.setAutoCommit(false);
+            try {
+                T result = work.run(c);
+                c.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(true);
+            }
+        });
+    }
+
+    /** @return the JDBC URL of this database */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Closes the shared connection; the next operation reopens it.
+     */
+    @Override
+    public synchronized void close() {
+        if (connection == null) return;
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to close database: " + e.getMessage(), e);
+        } finally {
+            connection = null;
+        }
+    }
+
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = DriverManager.getConnection(url);
+        }
+        return connection;
+    }
+}
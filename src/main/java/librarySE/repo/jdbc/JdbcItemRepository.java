@@ -0,0 +1,107 @@
+package librarySE.repo.jdbc;
+
+import librarySE.core.LibraryItem;
+import librarySE.repo.ItemRepository;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * JDBC implementation of {@link ItemRepository}.
+ * <p>
+ * Each item is one row of the {@code items} table (see {@link JdbcDatabase});
+ * {@link #upsert(LibraryItem)} and {@link #delete(LibraryItem)} touch only that row.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * ItemRepository repo = new JdbcItemRepository(new JdbcDatabase());
+ * List<LibraryItem> items = repo.loadAll();
+ * items.get(0).borrow();
+ * repo.upsert(items.get(0));
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class JdbcItemRepository implements ItemRepository {
+
+    private final JdbcTable<LibraryItem> table;
+
+    /**
+     * @param db database holding the {@code items} table
+     * @throws librarySE.utils.SchemaVersionException if the table was written in a newer format
+     */
+    public JdbcItemRepository(JdbcDatabase db) {
+        Objects.requireNonNull(db, "db");
+        this.table = new JdbcTable<>(db, "items", List.of("id", "type", "title", "data")) {
+            @Override
+            void bind(PreparedStatement ps, LibraryItem item) throws SQLException {
+                ps.setObject(1, item.getId());
+                ps.setString(2, item.getMaterialType().name());
+                ps.setString(3, item.getTitle());
+                ps.setString(4, FileUtils.toCompactJson(item));
+            }
+
+            @Override
+            LibraryItem read(ResultSet rs) throws SQLException {
+                return decode(rs.getString("data"));
+            }
+
+            @Override
+            LibraryItem decode(String json) {
+                return FileUtils.fromJson(json, LibraryItem.class);
+            }
+        };
+        table.upgradeSchema(DataSchema.Kind.ITEM);
+    }
+
+    /** @return all items in saved order; never {@code null} */
+    @Override
+    public List<LibraryItem> loadAll() {
+        return table.loadAll();
+    }
+
+    /**
+     * Streams the items in saved order, {@value JdbcTable#BATCH_SIZE} rows per query.
+     *
+     * @return the stored items
+     */
+    @Override
+    public Stream<LibraryItem> stream() {
+        return table.stream();
+    }
+
+    /**
+     * Replaces all stored items in one transaction.
+     *
+     * @param items the complete list of items
+     */
+    @Override
+    public void saveAll(List<LibraryItem> items) {
+        table.replaceAll(items);
+    }
+
+    /** @return {@code true}: single rows can be written */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /** @param item the added or modified item */
+    @Override
+    public void upsert(LibraryItem item) {
+        table.merge(item);
+    }
+
+    /** @param item the removed item */
+    @Override
+    public void delete(LibraryItem item) {
+        table.deleteById(item.getId());
+    }
+}
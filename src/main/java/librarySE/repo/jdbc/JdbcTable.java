@@ -0,0 +1,280 @@
+package librarySE.repo.jdbc;
+
+import librarySE.utils.DataSchema;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaMigrator;
+import librarySE.utils.SchemaVersionException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Prepared-statement plumbing shared by the JDBC repositories: loading and
+ * paged streaming in {@code seq} order, full replacement with batched inserts,
+ * and single-row merge and delete.
+ *
+ * @param <T> entity type
+ * @author Malak
+ */
+abstract class JdbcTable<T> {
+
+    /** Rows sent to the database per batch, and read per page by {@link #stream()}. */
+    static final int BATCH_SIZE = 500;
+
+    protected final JdbcDatabase db;
+    private final String table;
+
+    private final String selectSql;
+    private final String pageSql;
+    private final String insertSql;
+    private final String mergeSql;
+
+    /**
+     * @param db      database holding the table
+     * @param table   table name
+     * @param columns stored columns in bind order (without {@code seq})
+     */
+    JdbcTable(JdbcDatabase db, String table, List<String> columns) {
+        this.db = Objects.requireNonNull(db, "db");
+        this.table = table;
+        String list = String.join(", ", columns);
+        String params = String.join(", ", Collections.nCopies(columns.size(), "?"));
+        this.selectSql = "SELECT " + list + " FROM " + table;
+        this.pageSql = "SELECT seq, " + list + " FROM " + table + " WHERE seq > ? ORDER BY seq LIMIT ?";
+        this.insertSql = "INSERT INTO " + table + " (" + list + ") VALUES (" + params + ")";
+        this.mergeSql = "MERGE INTO " + table + " (" + list + ") KEY (id) VALUES (" + params + ")";
+    }
+
+    /**
+     * Binds one entity to parameters {@code 1..columns.size()} in column order.
+     */
+    abstract void bind(PreparedStatement ps, T entity) throws SQLException;
+
+    /**
+     * Reads one entity from the current row of a result set selecting all columns.
+     */
+    abstract T read(ResultSet rs) throws SQLException;
+
+    /**
+     * Decodes the JSON of the {@code data} column; overridden by tables that have one.
+     *
+     * @param json compact JSON of an entity
+     * @return the entity
+     */
+    T decode(String json) {
+        throw new UnsupportedOperationException(table + " has no data column");
+    }
+
+    /**
+     * Checks the format version of the {@code data} column and, if it is older
+     * than this build's, upgrades every row through the registered migrations
+     * in one transaction.
+     *
+     * @param kind kind of entity the table holds
+     * @throws SchemaVersionException if the rows were written in a newer format
+     */
+    void upgradeSchema(DataSchema.Kind kind) {
+        int current = DataSchema.currentVersion(kind);
+        db.transaction(c -> {
+            int version = 1;
+            try (PreparedStatement ps = c.prepareStatement("SELECT version FROM schema_versions WHERE kind = ?")) {
+                ps.setString(1, kind.label());
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) version = rs.getInt(1);
+                }
+            }
+            if (version > current)
+                throw new SchemaVersionException(table + " in " + db.getUrl(), kind, version, current);
+            if (version == current) return null;
+
+            List<Migration> chain = DataSchema.migrationsFrom(kind, version);
+            try (PreparedStatement select = c.prepareStatement("SELECT data FROM " + table + " ORDER BY seq");
+                 PreparedStatement merge = c.prepareStatement(mergeSql);
+                 ResultSet rs = select.executeQuery()) {
+                int pending = 0;
+                while (rs.next()) {
+                    bind(merge, decode(SchemaMigrator.upgrade(rs.getString(1), chain)));
+                    merge.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        merge.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) merge.executeBatch();
+            }
+            try (PreparedStatement ps = c.prepareStatement(
+                    "MERGE INTO schema_versions (kind, version) KEY (kind) VALUES (?, ?)")) {
+                ps.setString(1, kind.label());
+                ps.setInt(2, current);
+                ps.executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    /** @return all rows in saved order */
+    List<T> loadAll() {
+        return query(null, ps -> { });
+    }
+
+    /**
+     * Streams all rows in saved order, reading {@link #BATCH_SIZE} rows per
+     * query. Each page continues after the last {@code seq} read, so no cursor
+     * or connection stays open between pages.
+     * <p>
+     * Pages are separate queries: a row written while the stream is consumed
+     * appears if its page was not read yet, and a row added meanwhile comes last.
+     * </p>
+     *
+     * @return all rows, read page by page
+     */
+    Stream<T> stream() {
+        return stream(BATCH_SIZE);
+    }
+
+    /**
+     * @param pageSize rows read per query
+     * @return all rows, read page by page
+     */
+    Stream<T> stream(int pageSize) {
+        return StreamSupport.stream(new Pages(pageSize), false);
+    }
+
+    /**
+     * Selects the rows matching a condition.
+     *
+     * @param where  SQL condition with {@code ?} placeholders, or {@code null} for all rows
+     * @param params binds the placeholders
+     * @return matching rows in saved order
+     */
+    List<T> query(String where, Binder params) {
+        String sql = selectSql + (where == null ? "" : " WHERE " + where) + " ORDER BY seq";
+        return db.execute(c -> {
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                params.bind(ps);
+                List<T> result = new ArrayList<>();
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) result.add(read(rs));
+                }
+                return result;
+            }
+        });
+    }
+
+    /**
+     * Replaces the table contents in one transaction, inserting in batches.
+     *
+     * @param entities the complete list
+     */
+    void replaceAll(List<T> entities) {
+        List<T> copy = new ArrayList<>(entities);
+        db.transaction(c -> {
+            try (PreparedStatement clear = c.prepareStatement("DELETE FROM " + table);
+                 PreparedStatement insert = c.prepareStatement(insertSql)) {
+                clear.executeUpdate();
+                int pending = 0;
+                for (T e : copy) {
+                    bind(insert, e);
+                    insert.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        insert.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) insert.executeBatch();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Inserts or updates one row keyed by {@code id}; new rows are appended
+     * to the saved order.
+     *
+     * @param entity the entity to write
+     */
+    void merge(T entity) {
+        db.execute(c -> {
+            try (PreparedStatement ps = c.prepareStatement(mergeSql)) {
+                bind(ps, entity);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Deletes one row by id.
+     *
+     * @param id the entity id
+     */
+    void deleteById(UUID id) {
+        db.execute(c -> {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+                ps.setObject(1, id);
+                return ps.executeUpdate();
+            }
+        });
+    }
+
+    /** Rows read page by page, keyed by {@code seq}. */
+    private final class Pages extends Spliterators.AbstractSpliterator<T> {
+
+        private final int pageSize;
+        private long after = Long.MIN_VALUE;
+        private Iterator<T> page = Collections.emptyIterator();
+        private boolean last;
+
+        Pages(int pageSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!page.hasNext()) {
+                if (last) return false;
+                List<T> rows = next();
+                last = rows.size() < pageSize;
+                page = rows.iterator();
+                if (!page.hasNext()) return false;
+            }
+            action.accept(page.next());
+            return true;
+        }
+
+        private List<T> next() {
+            return db.execute(c -> {
+                try (PreparedStatement ps = c.prepareStatement(pageSql)) {
+                    ps.setLong(1, after);
+                    ps.setInt(2, pageSize);
+                    List<T> rows = new ArrayList<>(pageSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            after = rs.getLong("seq");
+                            rows.add(read(rs));
+                        }
+                    }
+                    return rows;
+                }
+            });
+        }
+    }
+
+    /** Binds query parameters. */
+    @FunctionalInterface
+    interface Binder {
+        void bind(PreparedStatement ps) throws SQLException;
+    }
+}
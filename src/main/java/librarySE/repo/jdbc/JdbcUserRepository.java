@@ -0,0 +1,107 @@
+package librarySE.repo.jdbc;
+
+import librarySE.managers.User;
+import librarySE.repo.UserRepository;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * JDBC implementation of {@link UserRepository}.
+ * <p>
+ * Each user is one row of the {@code users} table (see {@link JdbcDatabase});
+ * {@link #upsert(User)} and {@link #delete(User)} touch only that row.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * UserRepository repo = new JdbcUserRepository(new JdbcDatabase());
+ * List<User> users = repo.loadAll();
+ * users.get(0).payFine(new BigDecimal("5.00"));
+ * repo.upsert(users.get(0));
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class JdbcUserRepository implements UserRepository {
+
+    private final JdbcTable<User> table;
+
+    /**
+     * @param db database holding the {@code users} table
+     * @throws librarySE.utils.SchemaVersionException if the table was written in a newer format
+     */
+    public JdbcUserRepository(JdbcDatabase db) {
+        Objects.requireNonNull(db, "db");
+        this.table = new JdbcTable<>(db, "users", List.of("id", "username", "email", "data")) {
+            @Override
+            void bind(PreparedStatement ps, User user) throws SQLException {
+                ps.setObject(1, user.getId());
+                ps.setString(2, user.getUsername());
+                ps.setString(3, user.getEmail());
+                ps.setString(4, FileUtils.toCompactJson(user));
+            }
+
+            @Override
+            User read(ResultSet rs) throws SQLException {
+                return decode(rs.getString("data"));
+            }
+
+            @Override
+            User decode(String json) {
+                return FileUtils.fromJson(json, User.class);
+            }
+        };
+        table.upgradeSchema(DataSchema.Kind.USER);
+    }
+
+    /** @return all users in saved order; never {@code null} */
+    @Override
+    public List<User> loadAll() {
+        return table.loadAll();
+    }
+
+    /**
+     * Streams the users in saved order, {@value JdbcTable#BATCH_SIZE} rows per query.
+     *
+     * @return the stored users
+     */
+    @Override
+    public Stream<User> stream() {
+        return table.stream();
+    }
+
+    /**
+     * Replaces all stored users in one transaction.
+     *
+     * @param users the complete list of users
+     */
+    @Override
+    public void saveAll(List<User> users) {
+        table.replaceAll(users);
+    }
+
+    /** @return {@code true}: single rows can be written */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /** @param user the added or modified user */
+    @Override
+    public void upsert(User user) {
+        table.merge(user);
+    }
+
+    /** @param user the removed user */
+    @Override
+    public void delete(User user) {
+        table.deleteById(user.getId());
+    }
+}
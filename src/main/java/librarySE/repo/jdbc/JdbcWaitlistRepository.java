@@ -0,0 +1,82 @@
+package librarySE.repo.jdbc;
+
+import librarySE.core.WaitlistEntry;
+import librarySE.repo.WaitlistRepository;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * JDBC implementation of {@link WaitlistRepository}.
+ * <p>
+ * Entries are rows of the {@code waitlist} table (see {@link JdbcDatabase}),
+ * indexed by item id. Saving replaces the table in one transaction with
+ * batched inserts.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * WaitlistRepository repo = new JdbcWaitlistRepository(new JdbcDatabase());
+ * List<WaitlistEntry> entries = repo.loadAll();
+ * }</pre>
+ *
+ * @author Malak
+ */
+public class JdbcWaitlistRepository implements WaitlistRepository {
+
+    private final JdbcTable<WaitlistEntry> table;
+
+    /**
+     * @param db database holding the {@code waitlist} table
+     */
+    public JdbcWaitlistRepository(JdbcDatabase db) {
+        Objects.requireNonNull(db, "db");
+        this.table = new JdbcTable<>(db, "waitlist", List.of("item_id", "user_email", "request_date")) {
+            @Override
+            void bind(PreparedStatement ps, WaitlistEntry e) throws SQLException {
+                ps.setObject(1, e.getItemId());
+                ps.setString(2, e.getUserEmail());
+                ps.setDate(3, Date.valueOf(e.getRequestDate()));
+            }
+
+            @Override
+            WaitlistEntry read(ResultSet rs) throws SQLException {
+                return new WaitlistEntry(rs.getObject("item_id", UUID.class),
+                        rs.getString("user_email"),
+                        rs.getDate("request_date").toLocalDate());
+            }
+        };
+    }
+
+    /** @return all entries in saved order; never {@code null} */
+    @Override
+    public List<WaitlistEntry> loadAll() {
+        return table.loadAll();
+    }
+
+    /**
+     * Streams the entries in saved order, {@value JdbcTable#BATCH_SIZE} rows per query.
+     *
+     * @return the stored entries
+     */
+    @Override
+    public Stream<WaitlistEntry> stream() {
+        return table.stream();
+    }
+
+    /**
+     * Replaces all stored entries in one transaction.
+     *
+     * @param entries the complete list of entries
+     */
+    @Override
+    public void saveAll(List<WaitlistEntry> entries) {
+        table.replaceAll(entries);
+    }
+}
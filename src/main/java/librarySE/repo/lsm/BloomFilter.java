@@ -0,0 +1,82 @@
+package librarySE.repo.lsm;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Bloom filter over UUID keys, stored in every {@link Segment}.
+ * <p>
+ * A lookup for a key that was never added is rejected without touching the
+ * segment file in all but about one percent of cases (ten bits and seven hash
+ * functions per key). The hash functions are derived from the two halves of
+ * the UUID by double hashing, so no extra hashing work is needed.
+ * </p>
+ *
+ * @author Eman
+ */
+final class BloomFilter {
+
+    private static final int BITS_PER_KEY = 10;
+    private static final int HASHES = 7;
+
+    private final long[] words;
+    private final int bits;
+
+    /**
+     * @param expectedKeys number of keys that will be added
+     */
+    BloomFilter(int expectedKeys) {
+        this(new long[(Math.max(64, expectedKeys * BITS_PER_KEY) + 63) / 64]);
+    }
+
+    private BloomFilter(long[] words) {
+        this.words = words;
+        this.bits = words.length * 64;
+    }
+
+    /** @param key key to add */
+    void add(UUID key) {
+        long h1 = mix(key.getMostSignificantBits());
+        long h2 = mix(key.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) Long.remainderUnsigned(h1 + i * h2, bits);
+            words[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @param key key to test
+     * @return {@code false} if the key was certainly never added
+     */
+    boolean mightContain(UUID key) {
+        long h1 = mix(key.getMostSignificantBits());
+        long h2 = mix(key.getLeastSignificantBits()) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int bit = (int) Long.remainderUnsigned(h1 + i * h2, bits);
+            if ((words[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(words.length);
+        for (long w : words) out.writeLong(w);
+    }
+
+    static BloomFilter readFrom(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length <= 0 || length > (1 << 24)) throw new IOException("Corrupt bloom filter length: " + length);
+        long[] words = new long[length];
+        for (int i = 0; i < length; i++) words[i] = in.readLong();
+        return new BloomFilter(words);
+    }
+
+    /** Finalizer of SplitMix64; spreads UUID bits that may be mostly constant. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
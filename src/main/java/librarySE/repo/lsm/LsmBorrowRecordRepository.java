@@ -0,0 +1,106 @@
+package librarySE.repo.lsm;
+
+import librarySE.managers.BorrowRecord;
+import librarySE.repo.BorrowRecordRepository;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * LSM-tree implementation of {@link BorrowRecordRepository}.
+ * <p>
+ * Each borrow record is one key of an {@link LsmStore} in {@code library_data/lsm/borrow_records},
+ * stored as compact JSON. {@link #upsert(BorrowRecord)} and {@link #delete(BorrowRecord)} cost one
+ * journal append instead of a rewrite of all borrow records.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (LsmBorrowRecordRepository repo = new LsmBorrowRecordRepository()) {
+ *     List<BorrowRecord> all = repo.loadAll();
+ *     repo.upsert(all.get(0));
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class LsmBorrowRecordRepository implements BorrowRecordRepository, Closeable {
+
+    private final LsmCollection<BorrowRecord> collection;
+
+    /** Creates a repository backed by {@code library_data/lsm/borrow_records}. */
+    public LsmBorrowRecordRepository() {
+        this(new LsmStore(FileUtils.dataFile("lsm").resolve("borrow_records")));
+    }
+
+    /**
+     * @param store store holding the borrow records; closed by {@link #close()}
+     */
+    public LsmBorrowRecordRepository(LsmStore store) {
+        this.collection = new LsmCollection<>(store, BorrowRecord.class, LsmBorrowRecordRepository::keyOf);
+    }
+
+    /** @return all borrow records in saved order; never {@code null} */
+    @Override
+    public List<BorrowRecord> loadAll() {
+        return collection.loadAll();
+    }
+
+    /**
+     * Streams the borrow records in saved order, reading each one from the store only when reached.
+     *
+     * @return the stored borrow records
+     */
+    @Override
+    public Stream<BorrowRecord> stream() {
+        return collection.stream();
+    }
+
+    /**
+     * Replaces all stored borrow records.
+     *
+     * @param records the complete list
+     */
+    @Override
+    public void saveAll(List<BorrowRecord> records) {
+        collection.saveAll(records);
+    }
+
+    /** @return {@code true}: single borrow records are written to the store */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /** @param record the added or modified borrow record */
+    @Override
+    public void upsert(BorrowRecord record) {
+        collection.put(record);
+    }
+
+    /** @param record the removed borrow record */
+    @Override
+    public void delete(BorrowRecord record) {
+        collection.delete(record);
+    }
+
+    /** Records created before identifiers existed get one before they are stored. */
+    private static UUID keyOf(BorrowRecord record) {
+        record.ensureId();
+        return record.getId();
+    }
+
+    /** @return the underlying store */
+    public LsmStore getStore() {
+        return collection.store();
+    }
+
+    /** Closes the underlying store. */
+    @Override
+    public void close() {
+        collection.close();
+    }
+}
@@ -0,0 +1,173 @@
+package librarySE.repo.lsm;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaMigrator;
+import librarySE.utils.SchemaVersionException;
+
+import java.io.Closeable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Stores a list of entities in an {@link LsmStore}, one compact JSON value per
+ * key. Shared plumbing of the LSM repositories.
+ * <p>
+ * The {@link DataSchema} version of the values is stored under
+ * {@link #SCHEMA_KEY}; a store without it holds version 1. Opening a store of an
+ * older version upgrades every value through the registered migrations and
+ * rewrites the store; a store of a newer version is refused with a
+ * {@link SchemaVersionException}.
+ * </p>
+ *
+ * @param <T> entity type
+ * @author Eman
+ */
+final class LsmCollection<T> implements Closeable {
+
+    /** Key of the format version header; no entity key has all bits set. */
+    static final UUID SCHEMA_KEY = new UUID(-1L, -1L);
+
+    private final LsmStore store;
+    private final Class<T> type;
+    private final Function<T, UUID> keyOf;
+    private final DataSchema.Kind kind;
+    private final String recordField;
+
+    /**
+     * Opens a collection whose values are the entities themselves.
+     *
+     * @param store store holding the entities
+     * @param type  entity type, used to decode values
+     * @param keyOf extracts the key of an entity
+     * @throws SchemaVersionException if the store was written in a newer format
+     */
+    LsmCollection(LsmStore store, Class<T> type, Function<T, UUID> keyOf) {
+        this(store, type, keyOf, DataSchema.kindOf(type), null);
+    }
+
+    /**
+     * Opens a collection and upgrades its values if they are of an older format.
+     *
+     * @param store       store holding the entities
+     * @param type        type of the stored values, used to decode them
+     * @param keyOf       extracts the key of a value
+     * @param kind        kind of the versioned records, or {@code null} if they are not versioned
+     * @param recordField member of each value holding the versioned record, or
+     *                    {@code null} if the value is the record
+     * @throws SchemaVersionException if the store was written in a newer format
+     */
+    LsmCollection(LsmStore store, Class<T> type, Function<T, UUID> keyOf,
+                  DataSchema.Kind kind, String recordField) {
+        this.store = Objects.requireNonNull(store, "store");
+        this.type = Objects.requireNonNull(type, "type");
+        this.keyOf = Objects.requireNonNull(keyOf, "keyOf");
+        this.kind = kind;
+        this.recordField = recordField;
+        if (kind != null) upgradeStored();
+    }
+
+    /** @return all entities in saved order */
+    List<T> loadAll() {
+        List<Map.Entry<UUID, byte[]>> entries = store.entries();
+        List<T> result = new ArrayList<>(entries.size());
+        for (Map.Entry<UUID, byte[]> e : entries) {
+            if (!e.getKey().equals(SCHEMA_KEY)) result.add(decode(e.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Streams the entities in saved order, reading each value only when the
+     * stream reaches its key. An entity deleted meanwhile is skipped, and one
+     * replaced meanwhile is read in its new state.
+     *
+     * @return all entities in saved order
+     */
+    Stream<T> stream() {
+        return store.keys().stream()
+                .filter(key -> !key.equals(SCHEMA_KEY))
+                .map(store::get)
+                .filter(Objects::nonNull)
+                .map(this::decode);
+    }
+
+    /** @param entities the complete list, replacing everything stored */
+    void saveAll(List<T> entities) {
+        List<Map.Entry<UUID, byte[]>> entries = new ArrayList<>(entities.size() + 1);
+        if (kind != null) entries.add(new AbstractMap.SimpleImmutableEntry<>(SCHEMA_KEY, header()));
+        for (T e : entities) entries.add(new AbstractMap.SimpleImmutableEntry<>(keyOf.apply(e), encode(e)));
+        store.replaceAll(entries);
+    }
+
+    /** @param entity the entity to insert or replace */
+    void put(T entity) {
+        store.put(keyOf.apply(entity), encode(entity));
+    }
+
+    /** @param entity the entity to remove */
+    void delete(T entity) {
+        store.delete(keyOf.apply(entity));
+    }
+
+    /** @return the underlying store */
+    LsmStore store() {
+        return store;
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    /** Checks the stored format version and upgrades older values in one replacement of the store. */
+    private void upgradeStored() {
+        byte[] stored = store.get(SCHEMA_KEY);
+        int version = (stored == null) ? 1
+                : DataSchema.Header.parse(new String(stored, StandardCharsets.UTF_8)).version();
+        int current = DataSchema.currentVersion(kind);
+        if (version > current) throw new SchemaVersionException(store.getDirectory(), kind, version, current);
+        if (version == current) return;
+
+        List<Migration> chain = DataSchema.migrationsFrom(kind, version);
+        List<Map.Entry<UUID, byte[]>> entries = store.entries();
+        List<Map.Entry<UUID, byte[]>> upgraded = new ArrayList<>(entries.size() + 1);
+        upgraded.add(new AbstractMap.SimpleImmutableEntry<>(SCHEMA_KEY, header()));
+        for (Map.Entry<UUID, byte[]> e : entries) {
+            if (e.getKey().equals(SCHEMA_KEY)) continue;
+            upgraded.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), upgrade(e.getValue(), chain)));
+        }
+        store.replaceAll(upgraded);
+    }
+
+    private byte[] upgrade(byte[] value, List<Migration> chain) {
+        String json = new String(value, StandardCharsets.UTF_8);
+        if (recordField == null) return SchemaMigrator.upgrade(json, chain).getBytes(StandardCharsets.UTF_8);
+        JsonObject wrapper = JsonParser.parseString(json).getAsJsonObject();
+        String record = wrapper.get(recordField).toString();
+        wrapper.add(recordField, JsonParser.parseString(SchemaMigrator.upgrade(record, chain)));
+        return wrapper.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] header() {
+        return DataSchema.currentHeader(kind).text().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] encode(T entity) {
+        return FileUtils.toCompactJson(entity).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private T decode(byte[] value) {
+        return FileUtils.fromJson(new String(value, StandardCharsets.UTF_8), type);
+    }
+}
@@ -0,0 +1,99 @@
+package librarySE.repo.lsm;
+
+import librarySE.core.LibraryItem;
+import librarySE.repo.ItemRepository;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * LSM-tree implementation of {@link ItemRepository}.
+ * <p>
+ * Each item is one key of an {@link LsmStore} in {@code library_data/lsm/items},
+ * stored as compact JSON. {@link #upsert(LibraryItem)} and {@link #delete(LibraryItem)} cost one
+ * journal append instead of a rewrite of all items.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (LsmItemRepository repo = new LsmItemRepository()) {
+ *     List<LibraryItem> all = repo.loadAll();
+ *     repo.upsert(all.get(0));
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class LsmItemRepository implements ItemRepository, Closeable {
+
+    private final LsmCollection<LibraryItem> collection;
+
+    /** Creates a repository backed by {@code library_data/lsm/items}. */
+    public LsmItemRepository() {
+        this(new LsmStore(FileUtils.dataFile("lsm").resolve("items")));
+    }
+
+    /**
+     * @param store store holding the items; closed by {@link #close()}
+     */
+    public LsmItemRepository(LsmStore store) {
+        this.collection = new LsmCollection<>(store, LibraryItem.class, LibraryItem::getId);
+    }
+
+    /** @return all items in saved order; never {@code null} */
+    @Override
+    public List<LibraryItem> loadAll() {
+        return collection.loadAll();
+    }
+
+    /**
+     * Streams the items in saved order, reading each one from the store only when reached.
+     *
+     * @return the stored items
+     */
+    @Override
+    public Stream<LibraryItem> stream() {
+        return collection.stream();
+    }
+
+    /**
+     * Replaces all stored items.
+     *
+     * @param items the complete list
+     */
+    @Override
+    public void saveAll(List<LibraryItem> items) {
+        collection.saveAll(items);
+    }
+
+    /** @return {@code true}: single items are written to the store */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /** @param item the added or modified item */
+    @Override
+    public void upsert(LibraryItem item) {
+        collection.put(item);
+    }
+
+    /** @param item the removed item */
+    @Override
+    public void delete(LibraryItem item) {
+        collection.delete(item);
+    }
+
+    /** @return the underlying store */
+    public LsmStore getStore() {
+        return collection.store();
+    }
+
+    /** Closes the underlying store. */
+    @Override
+    public void close() {
+        collection.close();
+    }
+}
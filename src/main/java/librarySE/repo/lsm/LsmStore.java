@@ -0,0 +1,575 @@
+package librarySE.repo.lsm;
+
+import librarySE.repo.AppendOnlyJournal;
+import librarySE.utils.Config;
+import librarySE.utils.LoggerUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Log-structured merge store mapping UUID keys to byte arrays, written in
+ * plain Java for deployments without an embedded SQL engine.
+ * <p>
+ * Writes go to a write-ahead journal ({@code wal.journal}, an
+ * {@link AppendOnlyJournal}) and to an in-memory sorted <em>memtable</em>, so a
+ * single put or delete costs one small append regardless of how much data is
+ * stored. When the memtable exceeds {@code lsm.memtable.maxBytes} it is written
+ * as an immutable sorted {@link Segment} file and the journal is reset. Once
+ * {@code lsm.compaction.segments} segments exist, a background thread merges
+ * them into one, dropping overwritten values and deletion markers.
+ * </p>
+ * <p>
+ * A point read checks the memtable and then the segments from newest to
+ * oldest; each segment answers from its in-memory bloom filter and sparse
+ * index with at most one block read.
+ * </p>
+ *
+ * <h2>Ordering</h2>
+ * <p>
+ * Every value carries a sequence number. A new key gets the next number,
+ * an updated key keeps its own, and {@link #replaceAll(List)} renumbers in list
+ * order. {@link #values()} and {@link #keys()} return values and keys in
+ * sequence order, so repositories load their lists in the order they were saved.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (LsmStore store = new LsmStore(FileUtils.dataFile("lsm/items"))) {
+ *     store.put(id, bytes);
+ *     byte[] stored = store.get(id);
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public final class LsmStore implements Closeable {
+
+    /** Journal entry: payload is key, sequence number and value bytes. */
+    private static final byte OP_PUT = 1;
+
+    /** Journal entry: payload is key and sequence number. */
+    private static final byte OP_DELETE = 2;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.sst");
+
+    private final Path directory;
+    private final long memtableMaxBytes;
+    private final int compactionTrigger;
+    private final AppendOnlyJournal wal;
+
+    /** Recent writes not yet in a segment; tombstones are {@code Value}s without data. */
+    private final NavigableMap<UUID, Value> memtable = new TreeMap<>();
+    private long memtableBytes;
+
+    /** Open segments, newest first; replaced as a whole under {@code this}. */
+    private List<Segment> segments;
+
+    private long nextSegmentNumber;
+    private long nextSeq;
+
+    /** Runs one compaction at a time. */
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "lsm-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private boolean compactionScheduled;
+    private boolean closed;
+
+    /** Held for the whole of a compaction, so two never pick the same inputs. */
+    private final Object compactionLock = new Object();
+
+    /**
+     * Opens a store with the configured memtable size
+     * ({@code lsm.memtable.maxBytes}, default 1 MiB) and compaction trigger
+     * ({@code lsm.compaction.segments}, default 4).
+     *
+     * @param directory directory holding the journal and segment files; created if missing
+     */
+    public LsmStore(Path directory) {
+        this(directory, Config.getInt("lsm.memtable.maxBytes", 1 << 20),
+                Config.getInt("lsm.compaction.segments", 4));
+    }
+
+    /**
+     * Opens (or creates) a store.
+     *
+     * @param directory         directory holding the journal and segment files; created if missing
+     * @param memtableMaxBytes  memtable size that triggers writing a segment
+     * @param compactionTrigger number of segments that triggers a background compaction
+     * @throws UncheckedIOException if the directory or its files cannot be read
+     */
+    public LsmStore(Path directory, long memtableMaxBytes, int compactionTrigger) {
+        this.directory = Objects.requireNonNull(directory, "directory");
+        this.memtableMaxBytes = Math.max(1, memtableMaxBytes);
+        this.compactionTrigger = Math.max(2, compactionTrigger);
+        try {
+            Files.createDirectories(directory);
+            this.segments = openSegments();
+            long maxNumber = segments.isEmpty() ? 0 : segments.get(0).number();
+            this.nextSegmentNumber = maxNumber + 1;
+            this.nextSeq = segments.stream().mapToLong(Segment::maxSeq).max().orElse(0) + 1;
+
+            this.wal = new AppendOnlyJournal(directory.resolve("wal.journal"));
+            wal.replay(this::applyLogged);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open LSM store: " + directory, e);
+        }
+    }
+
+    /**
+     * Reads the current value of a key.
+     *
+     * @param key the key
+     * @return stored bytes, or {@code null} if the key is absent or deleted
+     */
+    public synchronized byte[] get(UUID key) {
+        Value v = lookup(Objects.requireNonNull(key, "key"));
+        return (v == null || v.isTombstone()) ? null : v.data();
+    }
+
+    /**
+     * Inserts or replaces the value of a key. A replaced key keeps its
+     * position in {@link #values()}.
+     *
+     * @param key  the key
+     * @param data the bytes to store
+     */
+    public synchronized void put(UUID key, byte[] data) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(data, "data");
+        ensureOpen();
+        Value existing = lookup(key);
+        long seq = (existing != null && !existing.isTombstone()) ? existing.seq() : nextSeq++;
+        log(List.of(entry(key, new Value(seq, data))));
+        apply(key, new Value(seq, data));
+        flushIfFull();
+    }
+
+    /**
+     * Deletes a key; deleting an absent key does nothing.
+     *
+     * @param key the key
+     */
+    public synchronized void delete(UUID key) {
+        Objects.requireNonNull(key, "key");
+        ensureOpen();
+        Value existing = lookup(key);
+        if (existing == null || existing.isTombstone()) return;
+        Value tombstone = new Value(existing.seq(), null);
+        log(List.of(entry(key, tombstone)));
+        apply(key, tombstone);
+        flushIfFull();
+    }
+
+    /**
+     * Replaces the whole contents: keys not in {@code entries} are deleted,
+     * and the given entries are numbered in list order.
+     *
+     * @param entries the complete contents in the desired order
+     */
+    public synchronized void replaceAll(List<Map.Entry<UUID, byte[]>> entries) {
+        ensureOpen();
+        Map<UUID, Value> updates = new LinkedHashMap<>();
+        for (UUID key : live().keySet()) updates.put(key, new Value(0, null));
+        for (Map.Entry<UUID, byte[]> e : entries) {
+            updates.remove(e.getKey());
+            updates.put(e.getKey(), new Value(nextSeq++, Objects.requireNonNull(e.getValue(), "data")));
+        }
+
+        List<AppendOnlyJournal.Entry> logged = new ArrayList<>(updates.size());
+        updates.forEach((key, value) -> logged.add(entry(key, value)));
+        log(logged);
+        updates.forEach(this::apply);
+        flushIfFull();
+    }
+
+    /**
+     * @return all stored values in sequence order (see the class comment)
+     */
+    public synchronized List<byte[]> values() {
+        List<Map.Entry<UUID, byte[]>> entries = entries();
+        List<byte[]> result = new ArrayList<>(entries.size());
+        for (Map.Entry<UUID, byte[]> e : entries) result.add(e.getValue());
+        return result;
+    }
+
+    /**
+     * @return all stored keys and values in sequence order
+     */
+    public synchronized List<Map.Entry<UUID, byte[]>> entries() {
+        List<Map.Entry<UUID, Value>> live = new ArrayList<>(live().entrySet());
+        live.sort(Comparator.comparingLong(e -> e.getValue().seq()));
+        List<Map.Entry<UUID, byte[]>> result = new ArrayList<>(live.size());
+        for (Map.Entry<UUID, Value> e : live) {
+            result.add(new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue().data()));
+        }
+        return result;
+    }
+
+    /**
+     * Lists the live keys in sequence order without holding their values, for
+     * reading a large store one {@link #get(UUID)} at a time.
+     *
+     * @return all stored keys in sequence order
+     */
+    public synchronized List<UUID> keys() {
+        Map<UUID, Long> seqOf = new HashMap<>();
+        merged((key, value) -> {
+            if (value.isTombstone()) seqOf.remove(key);
+            else seqOf.put(key, value.seq());
+        });
+        List<UUID> keys = new ArrayList<>(seqOf.keySet());
+        keys.sort(Comparator.comparingLong(seqOf::get));
+        return keys;
+    }
+
+    /**
+     * Writes the memtable as a new segment and resets the journal.
+     * Does nothing if the memtable is empty.
+     */
+    public synchronized void flush() {
+        ensureOpen();
+        if (memtable.isEmpty()) return;
+        long number = nextSegmentNumber++;
+        Path file = segmentFile(number);
+        try {
+            // The segment must be on disk before the journal it replaces is cleared.
+            Segment.write(file, memtable.entrySet().iterator(), memtable.size(), -1);
+            List<Segment> updated = new ArrayList<>(segments.size() + 1);
+            updated.add(Segment.open(file, number));
+            updated.addAll(segments);
+            segments = updated;
+            wal.reset();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write segment: " + file, e);
+        }
+        memtable.clear();
+        memtableBytes = 0;
+
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * Merges all current segments into one, keeping only the newest value of
+     * each key and dropping deletion markers. Reads and writes continue while
+     * the merge runs; segments written meanwhile are kept as they are.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            List<Segment> inputs;
+            long number;
+            synchronized (this) {
+                ensureOpen();
+                if (segments.size() < 2 && (segments.isEmpty() || !hasTombstones(segments.get(0)))) return;
+                inputs = segments;
+                number = nextSegmentNumber++;
+            }
+
+            Path file = segmentFile(number);
+            try {
+                int expected = inputs.stream().mapToInt(Segment::entryCount).sum();
+                try (MergingIterator merged = new MergingIterator(inputs)) {
+                    Segment.write(file, merged, expected, inputs.get(0).number());
+                }
+                Segment output = Segment.open(file, number);
+                synchronized (this) {
+                    List<Segment> updated = new ArrayList<>(segments);
+                    updated.removeAll(inputs);
+                    // Segments flushed during the merge hold newer data and stay in front.
+                    updated.add(output);
+                    updated.sort(Comparator.comparingLong(Segment::number).reversed());
+                    segments = updated;
+                }
+                for (Segment s : inputs) {
+                    s.close();
+                    Files.deleteIfExists(s.file());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to compact segments into " + file, e);
+            }
+        }
+    }
+
+    /** @return number of segment files */
+    public synchronized int segmentCount() {
+        return segments.size();
+    }
+
+    /** @return number of journal entries not yet written to a segment */
+    public synchronized int pendingJournalEntries() {
+        return wal.entryCount();
+    }
+
+    /** @return directory of this store */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Waits for a running compaction and closes all files. Unflushed writes
+     * stay in the journal and are replayed when the store is opened again.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+        }
+        compactor.shutdown();
+        try {
+            compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                wal.close();
+                for (Segment s : segments) s.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to close LSM store: " + directory, e);
+            }
+        }
+    }
+
+    // =====================================================================
+    // Internals
+    // =====================================================================
+
+    /** Newest value of a key, tombstones included; {@code null} if never written. */
+    private Value lookup(UUID key) {
+        Value v = memtable.get(key);
+        if (v != null) return v;
+        try {
+            for (Segment s : segments) {
+                v = s.get(key);
+                if (v != null) return v;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read LSM store: " + directory, e);
+        }
+        return null;
+    }
+
+    /** Current value of every live key; the merged view of all segments and the memtable. */
+    private Map<UUID, Value> live() {
+        Map<UUID, Value> result = new HashMap<>();
+        merged((key, value) -> {
+            if (value.isTombstone()) result.remove(key);
+            else result.put(key, value);
+        });
+        return result;
+    }
+
+    /** Passes the merged segment entries and then the memtable entries, tombstones included, to {@code action}. */
+    private void merged(BiConsumer<UUID, Value> action) {
+        try (MergingIterator it = new MergingIterator(segments)) {
+            while (it.hasNext()) {
+                Map.Entry<UUID, Value> e = it.next();
+                action.accept(e.getKey(), e.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read LSM store: " + directory, e);
+        }
+        memtable.forEach(action);
+    }
+
+    private void apply(UUID key, Value value) {
+        Value previous = memtable.put(key, value);
+        memtableBytes += value.footprint() - (previous == null ? 0 : previous.footprint());
+    }
+
+    private void flushIfFull() {
+        if (memtableBytes >= memtableMaxBytes) flush();
+    }
+
+    private void log(List<AppendOnlyJournal.Entry> entries) {
+        try {
+            wal.append(entries);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to journal: " + wal.getFile(), e);
+        }
+    }
+
+    private static AppendOnlyJournal.Entry entry(UUID key, Value value) {
+        int length = 2 * Long.BYTES + Long.BYTES + (value.isTombstone() ? 0 : value.data().length);
+        ByteBuffer buf = ByteBuffer.allocate(length)
+                .putLong(key.getMostSignificantBits())
+                .putLong(key.getLeastSignificantBits())
+                .putLong(value.seq());
+        if (!value.isTombstone()) buf.put(value.data());
+        return new AppendOnlyJournal.Entry(value.isTombstone() ? OP_DELETE : OP_PUT, buf.array());
+    }
+
+    private void applyLogged(AppendOnlyJournal.Entry entry) {
+        ByteBuffer buf = ByteBuffer.wrap(entry.payload());
+        UUID key = new UUID(buf.getLong(), buf.getLong());
+        long seq = buf.getLong();
+        byte[] data = null;
+        if (entry.type() == OP_PUT) {
+            data = new byte[buf.remaining()];
+            buf.get(data);
+        }
+        apply(key, new Value(seq, data));
+        nextSeq = Math.max(nextSeq, seq + 1);
+    }
+
+    private void compactInBackground() {
+        boolean succeeded = false;
+        try {
+            compact();
+            succeeded = true;
+        } catch (RuntimeException e) {
+            LoggerUtils.log("persistence_log.txt", "LSM compaction failed in " + directory + ": " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compactionScheduled = false;
+                // Segments flushed while merging may already call for the next round;
+                // after a failure, wait for the next flush instead of retrying at once.
+                if (succeeded && !closed) scheduleCompactionIfNeeded();
+            }
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        if (segments.size() >= compactionTrigger && !compactionScheduled) {
+            compactionScheduled = true;
+            compactor.execute(this::compactInBackground);
+        }
+    }
+
+    /** A single segment only needs rewriting if it still carries deletion markers. */
+    private static boolean hasTombstones(Segment segment) {
+        try (Segment.EntryIterator it = segment.iterator()) {
+            while (it.hasNext()) {
+                if (it.next().getValue().isTombstone()) return true;
+            }
+            return false;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) throw new IllegalStateException("LSM store is closed: " + directory);
+    }
+
+    private Path segmentFile(long number) {
+        return directory.resolve(String.format("segment-%06d.sst", number));
+    }
+
+    /**
+     * Opens all segment files, newest first. Leftovers of an interrupted write
+     * or compaction (temporary files and segments already merged into a newer
+     * one) are deleted.
+     */
+    private List<Segment> openSegments() throws IOException {
+        Map<Long, Path> files = new TreeMap<>(Comparator.reverseOrder());
+        try (Stream<Path> list = Files.list(directory)) {
+            for (Path p : (Iterable<Path>) list::iterator) {
+                String name = p.getFileName().toString();
+                if (name.endsWith(".sst.tmp")) {
+                    Files.deleteIfExists(p);
+                    continue;
+                }
+                Matcher m = SEGMENT_NAME.matcher(name);
+                if (m.matches()) files.put(Long.parseLong(m.group(1)), p);
+            }
+        }
+
+        List<Segment> opened = new ArrayList<>();
+        long mergedThrough = -1;
+        for (Map.Entry<Long, Path> e : files.entrySet()) {
+            if (e.getKey() <= mergedThrough) {
+                Files.deleteIfExists(e.getValue());
+                continue;
+            }
+            Segment s = Segment.open(e.getValue(), e.getKey());
+            opened.add(s);
+            mergedThrough = Math.max(mergedThrough, s.compactedThrough());
+        }
+        return opened;
+    }
+
+    /**
+     * Merges segment iterators in key order; for keys present in several
+     * segments only the newest value is returned. When all segments of the
+     * store are merged, deletion markers have nothing left to hide and are
+     * skipped.
+     */
+    private static final class MergingIterator implements Iterator<Map.Entry<UUID, Value>>, Closeable {
+
+        private record Head(Map.Entry<UUID, Value> entry, int age, Segment.EntryIterator source) { }
+
+        /** Ordered by key, then newest segment first. */
+        private final PriorityQueue<Head> heads = new PriorityQueue<>(
+                Comparator.<Head, UUID>comparing(h -> h.entry().getKey()).thenComparingInt(Head::age));
+        private final List<Segment.EntryIterator> sources = new ArrayList<>();
+        private Map.Entry<UUID, Value> next;
+
+        /** @param segments segments to merge, newest first */
+        MergingIterator(List<Segment> segments) throws IOException {
+            try {
+                for (int age = 0; age < segments.size(); age++) {
+                    Segment.EntryIterator it = segments.get(age).iterator();
+                    sources.add(it);
+                    if (it.hasNext()) heads.add(new Head(it.next(), age, it));
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<UUID, Value> next() {
+            if (next == null) throw new NoSuchElementException();
+            Map.Entry<UUID, Value> result = next;
+            advance();
+            return result;
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null && !heads.isEmpty()) {
+                Head newest = heads.poll();
+                UUID key = newest.entry().getKey();
+                refill(newest);
+                while (!heads.isEmpty() && heads.peek().entry().getKey().equals(key)) {
+                    refill(heads.poll());
+                }
+                if (!newest.entry().getValue().isTombstone()) next = newest.entry();
+            }
+        }
+
+        private void refill(Head head) {
+            if (head.source().hasNext()) {
+                heads.add(new Head(head.source().next(), head.age(), head.source()));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Segment.EntryIterator it : sources) it.close();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package librarySE.repo.lsm;
+
+import librarySE.managers.User;
+import librarySE.repo.UserRepository;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * LSM-tree implementation of {@link UserRepository}.
+ * <p>
+ * Each user is one key of an {@link LsmStore} in {@code library_data/lsm/users},
+ * stored as compact JSON. {@link #upsert(User)} and {@link #delete(User)} cost one
+ * journal append instead of a rewrite of all users.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (LsmUserRepository repo = new LsmUserRepository()) {
+ *     List<User> all = repo.loadAll();
+ *     repo.upsert(all.get(0));
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class LsmUserRepository implements UserRepository, Closeable {
+
+    private final LsmCollection<User> collection;
+
+    /** Creates a repository backed by {@code library_data/lsm/users}. */
+    public LsmUserRepository() {
+        this(new LsmStore(FileUtils.dataFile("lsm").resolve("users")));
+    }
+
+    /**
+     * @param store store holding the users; closed by {@link #close()}
+     */
+    public LsmUserRepository(LsmStore store) {
+        this.collection = new LsmCollection<>(store, User.class, User::getId);
+    }
+
+    /** @return all users in saved order; never {@code null} */
+    @Override
+    public List<User> loadAll() {
+        return collection.loadAll();
+    }
+
+    /**
+     * Streams the users in saved order, reading each one from the store only when reached.
+     *
+     * @return the stored users
+     */
+    @Override
+    public Stream<User> stream() {
+        return collection.stream();
+    }
+
+    /**
+     * Replaces all stored users.
+     *
+     * @param users the complete list
+     */
+    @Override
+    public void saveAll(List<User> users) {
+        collection.saveAll(users);
+    }
+
+    /** @return {@code true}: single users are written to the store */
+    @Override
+    public boolean supportsIncrementalWrites() {
+        return true;
+    }
+
+    /** @param user the added or modified user */
+    @Override
+    public void upsert(User user) {
+        collection.put(user);
+    }
+
+    /** @param user the removed user */
+    @Override
+    public void delete(User user) {
+        collection.delete(user);
+    }
+
+    /** @return the underlying store */
+    public LsmStore getStore() {
+        return collection.store();
+    }
+
+    /** Closes the underlying store. */
+    @Override
+    public void close() {
+        collection.close();
+    }
+}
@@ -0,0 +1,90 @@
+package librarySE.repo.lsm;
+
+import librarySE.core.WaitlistEntry;
+import librarySE.repo.WaitlistRepository;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * LSM-tree implementation of {@link WaitlistRepository}.
+ * <p>
+ * Waitlist entries have no identifier of their own and are only ever saved as
+ * a complete list, so each entry is keyed by its position in that list.
+ * </p>
+ *
+ * <h2>Usage Example</h2>
+ * <pre>{@code
+ * try (LsmWaitlistRepository repo = new LsmWaitlistRepository()) {
+ *     List<WaitlistEntry> entries = repo.loadAll();
+ * }
+ * }</pre>
+ *
+ * @author Eman
+ */
+public class LsmWaitlistRepository implements WaitlistRepository, Closeable {
+
+    private final LsmCollection<Positioned> collection;
+
+    /** Entry stored together with its list position, which is its key. */
+    private record Positioned(int position, WaitlistEntry entry) { }
+
+    /** Creates a repository backed by {@code library_data/lsm/waitlist}. */
+    public LsmWaitlistRepository() {
+        this(new LsmStore(FileUtils.dataFile("lsm").resolve("waitlist")));
+    }
+
+    /**
+     * @param store store holding the entries; closed by {@link #close()}
+     */
+    public LsmWaitlistRepository(LsmStore store) {
+        this.collection = new LsmCollection<>(store, Positioned.class, p -> new UUID(0L, p.position()),
+                DataSchema.Kind.WAITLIST_ENTRY, "entry");
+    }
+
+    /** @return all entries in saved order; never {@code null} */
+    @Override
+    public List<WaitlistEntry> loadAll() {
+        List<WaitlistEntry> result = new ArrayList<>();
+        for (Positioned p : collection.loadAll()) result.add(p.entry());
+        return result;
+    }
+
+    /**
+     * Streams the entries in saved order, reading each one from the store only when reached.
+     *
+     * @return the stored entries
+     */
+    @Override
+    public Stream<WaitlistEntry> stream() {
+        return collection.stream().map(Positioned::entry);
+    }
+
+    /**
+     * Replaces all stored entries.
+     *
+     * @param entries the complete list
+     */
+    @Override
+    public void saveAll(List<WaitlistEntry> entries) {
+        List<Positioned> positioned = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) positioned.add(new Positioned(i, entries.get(i)));
+        collection.saveAll(positioned);
+    }
+
+    /** @return the underlying store */
+    public LsmStore getStore() {
+        return collection.store();
+    }
+
+    /** Closes the underlying store. */
+    @Override
+    public void close() {
+        collection.close();
+    }
+}
@@ -0,0 +1,349 @@
+package librarySE.repo.lsm;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Immutable sorted segment file of an {@link LsmStore}.
+ * <p>
+ * Entries are written once, sorted by key, and never modified; newer data
+ * goes into newer segments and {@linkplain LsmStore#compact() compaction}
+ * merges segments into one. The file layout is:
+ * </p>
+ *
+ * <pre>
+ * header   MAGIC "LSMS", version (u8), compactedThrough (int64)
+ * entries  key (2 x int64), seq (int64), length (int32, -1 = tombstone), bytes
+ * index    count (int32), then every {@value #INDEX_INTERVAL}th key with its file offset
+ * bloom    see {@link BloomFilter}
+ * footer   entryCount (int32), maxSeq (int64), indexOffset (int64), bloomOffset (int64), MAGIC
+ * </pre>
+ * <p>
+ * The sparse index and the bloom filter are kept in memory while the segment
+ * is open. A point lookup checks the bloom filter, binary-searches the index
+ * and then reads at most one block of {@value #INDEX_INTERVAL} entries.
+ * </p>
+ * <p>
+ * Segments are written to a temporary file, forced to disk and then moved
+ * into place, so a crash never leaves a partially written segment behind.
+ * </p>
+ *
+ * @author Eman
+ */
+final class Segment implements Closeable {
+
+    private static final byte[] MAGIC = {'L', 'S', 'M', 'S'};
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = MAGIC.length + 1 + Long.BYTES;
+    private static final int FOOTER_SIZE = Integer.BYTES + 3 * Long.BYTES + MAGIC.length;
+
+    /** Entries per sparse index slot. */
+    static final int INDEX_INTERVAL = 16;
+
+    private final Path file;
+    private final long number;
+    private final FileChannel channel;
+    private final long compactedThrough;
+    private final int entryCount;
+    private final long maxSeq;
+    private final long indexOffset;
+    private final UUID[] indexKeys;
+    private final long[] indexOffsets;
+    private final BloomFilter bloom;
+
+    private Segment(Path file, long number) throws IOException {
+        this.file = file;
+        this.number = number;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE + FOOTER_SIZE) throw new IOException("Truncated segment: " + file);
+
+            ByteBuffer header = readFully(0, HEADER_SIZE);
+            checkMagic(header);
+            byte version = header.get();
+            if (version != VERSION) throw new IOException("Unsupported segment version " + version + ": " + file);
+            this.compactedThrough = header.getLong();
+
+            ByteBuffer footer = readFully(size - FOOTER_SIZE, FOOTER_SIZE);
+            this.entryCount = footer.getInt();
+            this.maxSeq = footer.getLong();
+            this.indexOffset = footer.getLong();
+            long bloomOffset = footer.getLong();
+            checkMagic(footer);
+            if (indexOffset < HEADER_SIZE || bloomOffset < indexOffset || bloomOffset > size - FOOTER_SIZE) {
+                throw new IOException("Corrupt segment footer: " + file);
+            }
+
+            DataInputStream index = new DataInputStream(new ByteArrayInputStream(
+                    readFully(indexOffset, (int) (size - FOOTER_SIZE - indexOffset)).array()));
+            int slots = index.readInt();
+            this.indexKeys = new UUID[slots];
+            this.indexOffsets = new long[slots];
+            for (int i = 0; i < slots; i++) {
+                indexKeys[i] = new UUID(index.readLong(), index.readLong());
+                indexOffsets[i] = index.readLong();
+            }
+            this.bloom = BloomFilter.readFrom(index);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens an existing segment file.
+     *
+     * @param file   segment file
+     * @param number segment number; higher numbers hold newer data
+     * @return the open segment
+     * @throws IOException if the file cannot be read or is not a valid segment
+     */
+    static Segment open(Path file, long number) throws IOException {
+        return new Segment(file, number);
+    }
+
+    /**
+     * Writes a new segment from entries in ascending key order.
+     *
+     * @param file             target file
+     * @param entries          entries sorted by key; tombstones included
+     * @param expectedKeys     upper bound of the entry count, used to size the bloom filter
+     * @param compactedThrough highest segment number merged into this one, or {@code -1}
+     * @throws IOException if writing fails
+     */
+    static void write(Path file, Iterator<Map.Entry<UUID, Value>> entries, int expectedKeys,
+                      long compactedThrough) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        BloomFilter bloom = new BloomFilter(expectedKeys);
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        DataOutputStream indexOut = new DataOutputStream(indexBytes);
+
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16));
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(compactedThrough);
+
+            int count = 0;
+            int slots = 0;
+            long maxSeq = 0;
+            UUID previous = null;
+            while (entries.hasNext()) {
+                Map.Entry<UUID, Value> e = entries.next();
+                UUID key = e.getKey();
+                if (previous != null && previous.compareTo(key) >= 0) {
+                    throw new IllegalArgumentException("Segment entries must be sorted by key");
+                }
+                previous = key;
+                if (count % INDEX_INTERVAL == 0) {
+                    indexOut.writeLong(key.getMostSignificantBits());
+                    indexOut.writeLong(key.getLeastSignificantBits());
+                    indexOut.writeLong(out.size());
+                    slots++;
+                }
+                writeEntry(out, key, e.getValue());
+                bloom.add(key);
+                maxSeq = Math.max(maxSeq, e.getValue().seq());
+                count++;
+            }
+
+            long indexOffset = out.size();
+            out.writeInt(slots);
+            indexBytes.writeTo(out);
+            long bloomOffset = out.size();
+            bloom.writeTo(out);
+
+            out.writeInt(count);
+            out.writeLong(maxSeq);
+            out.writeLong(indexOffset);
+            out.writeLong(bloomOffset);
+            out.write(MAGIC);
+            out.flush();
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Looks up one key.
+     *
+     * @param key the key
+     * @return the stored value (possibly a tombstone), or {@code null} if this
+     *         segment does not contain the key
+     * @throws IOException if reading fails
+     */
+    Value get(UUID key) throws IOException {
+        if (indexKeys.length == 0 || !bloom.mightContain(key)) return null;
+
+        int lo = 0;
+        int hi = indexKeys.length - 1;
+        int slot = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (indexKeys[mid].compareTo(key) <= 0) {
+                slot = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        if (slot < 0) return null;
+
+        long start = indexOffsets[slot];
+        long end = (slot + 1 < indexOffsets.length) ? indexOffsets[slot + 1] : indexOffset;
+        ByteBuffer block = readFully(start, (int) (end - start));
+        while (block.hasRemaining()) {
+            UUID k = new UUID(block.getLong(), block.getLong());
+            long seq = block.getLong();
+            int length = block.getInt();
+            int cmp = k.compareTo(key);
+            if (cmp == 0) {
+                if (length < 0) return new Value(seq, null);
+                byte[] data = new byte[length];
+                block.get(data);
+                return new Value(seq, data);
+            }
+            if (cmp > 0) return null;
+            if (length > 0) block.position(block.position() + length);
+        }
+        return null;
+    }
+
+    /**
+     * Iterates over all entries in key order, reading the file sequentially.
+     * The iterator must be closed when done.
+     *
+     * @return entry iterator
+     * @throws IOException if the file cannot be opened
+     */
+    EntryIterator iterator() throws IOException {
+        return new EntryIterator();
+    }
+
+    /** @return segment number; higher numbers hold newer data */
+    long number() {
+        return number;
+    }
+
+    /** @return highest segment number merged into this one, or {@code -1} */
+    long compactedThrough() {
+        return compactedThrough;
+    }
+
+    /** @return number of entries, including tombstones */
+    int entryCount() {
+        return entryCount;
+    }
+
+    /** @return highest sequence number stored */
+    long maxSeq() {
+        return maxSeq;
+    }
+
+    /** @return segment file */
+    Path file() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // =====================================================================
+    // Internals
+    // =====================================================================
+
+    /** Sequential reader over the entry section. */
+    final class EntryIterator implements Iterator<Map.Entry<UUID, Value>>, Closeable {
+        private final InputStream raw = Files.newInputStream(file);
+        private final DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 1 << 16));
+        private int remaining = entryCount;
+
+        private EntryIterator() throws IOException {
+            in.skipNBytes(HEADER_SIZE);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public Map.Entry<UUID, Value> next() {
+            if (remaining == 0) throw new NoSuchElementException();
+            try {
+                UUID key = new UUID(in.readLong(), in.readLong());
+                long seq = in.readLong();
+                int length = in.readInt();
+                byte[] data = null;
+                if (length >= 0) {
+                    data = new byte[length];
+                    in.readFully(data);
+                }
+                remaining--;
+                return Map.entry(key, new Value(seq, data));
+            } catch (EOFException e) {
+                throw new UncheckedIOException(new IOException("Truncated segment: " + file, e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static void writeEntry(DataOutputStream out, UUID key, Value value) throws IOException {
+        out.writeLong(key.getMostSignificantBits());
+        out.writeLong(key.getLeastSignificantBits());
+        out.writeLong(value.seq());
+        if (value.isTombstone()) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.data().length);
+            out.write(value.data());
+        }
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("Truncated segment: " + file);
+            }
+        }
+        return buf.flip();
+    }
+
+    private void checkMagic(ByteBuffer buf) throws IOException {
+        for (byte b : MAGIC) {
+            if (buf.get() != b) throw new IOException("Not a segment file: " + file);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package librarySE.repo.lsm;
+
+/**
+ * Stored version of one key: its position in the saved order and its bytes.
+ *
+ * @param seq  sequence number; values are listed in ascending {@code seq}
+ * @param data stored bytes, or {@code null} for a deletion marker (tombstone)
+ * @author Eman
+ */
+record Value(long seq, byte[] data) {
+
+    /** @return {@code true} if this value marks a deleted key */
+    boolean isTombstone() {
+        return data == null;
+    }
+
+    /** @return approximate memory footprint, used to size the memtable */
+    long footprint() {
+        return 48 + (data == null ? 0 : data.length);
+    }
+}
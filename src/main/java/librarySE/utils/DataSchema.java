@@ -0,0 +1,206 @@
+package librarySE.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.User;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Format versions of the JSON data files and the {@link Migration}s between them.
+ * <p>
+ * Every list of domain entities written by {@link FileUtils} starts with a
+ * header element naming the kind of entity and the version of its format:
+ * </p>
+ * <pre>
+ * [
+ *   "$schema:item/1",
+ *   { "type": "BOOK", ... },
+ *   ...
+ * ]
+ * </pre>
+ * <p>
+ * The header is a string, so a reader tells it from a record with
+ * {@link JsonReader#peek()} alone. Files written before versioning have no
+ * header and are version 1.
+ * </p>
+ * <p>
+ * Changing the fields of an entity means registering a {@link Migration} from
+ * its current version, which raises the version by one. Files of an older
+ * version are then upgraded record by record by {@link SchemaMigrator} when
+ * they are read; files of a newer version are refused with a
+ * {@link SchemaVersionException} instead of being read as empty.
+ * </p>
+ * <p>
+ * Stores that keep records outside data files record the same versions: the
+ * journals and the change log declare them in their entries, the LSM stores
+ * under a reserved key and the JDBC database in its {@code schema_versions}
+ * table. Binary snapshots are only used if written with the current versions.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class DataSchema {
+
+    /** Kind of entity a data file holds. */
+    public enum Kind {
+        ITEM("item", LibraryItem.class),
+        USER("user", User.class),
+        BORROW_RECORD("borrow_record", BorrowRecord.class),
+        WAITLIST_ENTRY("waitlist_entry", WaitlistEntry.class);
+
+        private final String label;
+        private final Class<?> type;
+
+        Kind(String label, Class<?> type) {
+            this.label = label;
+            this.type = type;
+        }
+
+        /** @return name of the kind in file headers */
+        public String label() {
+            return label;
+        }
+
+        /** @return entity class serialized for this kind */
+        public Class<?> type() {
+            return type;
+        }
+
+        /**
+         * @param label name of the kind in a file header
+         * @return the kind
+         * @throws IllegalArgumentException if no kind has that name
+         */
+        public static Kind ofLabel(String label) {
+            for (Kind k : values()) {
+                if (k.label.equals(label)) return k;
+            }
+            throw new IllegalArgumentException("Unknown data file kind: " + label);
+        }
+    }
+
+    /**
+     * Header element of a data file.
+     *
+     * @param kind    kind of entity the file holds
+     * @param version format version of its records
+     */
+    public record Header(Kind kind, int version) {
+
+        private static final String PREFIX = "$schema:";
+
+        /** @return the header as written to the file */
+        public String text() {
+            return PREFIX + kind.label() + "/" + version;
+        }
+
+        /**
+         * @param text header element of a file
+         * @return the header
+         * @throws IllegalArgumentException if {@code text} is not a header
+         */
+        public static Header parse(String text) {
+            int slash = text.lastIndexOf('/');
+            if (!text.startsWith(PREFIX) || slash < PREFIX.length())
+                throw new IllegalArgumentException("Not a data file header: " + text);
+            try {
+                return new Header(Kind.ofLabel(text.substring(PREFIX.length(), slash)),
+                        Integer.parseInt(text.substring(slash + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a data file header: " + text, e);
+            }
+        }
+    }
+
+    /** Registered migrations per kind; the one at index {@code i} upgrades version {@code i + 1}. */
+    private static final Map<Kind, List<Migration>> MIGRATIONS = new EnumMap<>(Kind.class);
+
+    private DataSchema() {}
+
+    /**
+     * @param elementType element type of a list read or written by {@link FileUtils}
+     * @return the kind of data file holding such elements, or {@code null} if none
+     */
+    public static Kind kindOf(Type elementType) {
+        if (!(elementType instanceof Class<?> c)) return null;
+        for (Kind k : Kind.values()) {
+            if (k.type().isAssignableFrom(c)) return k;
+        }
+        return null;
+    }
+
+    /**
+     * @param kind kind of data file
+     * @return version written by this build
+     */
+    public static synchronized int currentVersion(Kind kind) {
+        return 1 + MIGRATIONS.getOrDefault(kind, List.of()).size();
+    }
+
+    /** @return the version written by this build of every kind, in {@link Kind} order */
+    public static synchronized int[] currentVersions() {
+        int[] versions = new int[Kind.values().length];
+        for (Kind k : Kind.values()) versions[k.ordinal()] = currentVersion(k);
+        return versions;
+    }
+
+    /**
+     * @param kind kind of data file
+     * @return header written by this build
+     */
+    public static Header currentHeader(Kind kind) {
+        return new Header(kind, currentVersion(kind));
+    }
+
+    /**
+     * Registers the next migration of a kind.
+     *
+     * @param migration upgrade from the current version
+     * @throws IllegalArgumentException if it does not start at the current version
+     */
+    public static synchronized void register(Migration migration) {
+        int current = currentVersion(migration.kind());
+        if (migration.fromVersion() != current)
+            throw new IllegalArgumentException("Migration of " + migration.kind() + " starts at version "
+                    + migration.fromVersion() + "; current version is " + current);
+        MIGRATIONS.computeIfAbsent(migration.kind(), k -> new ArrayList<>()).add(migration);
+    }
+
+    /**
+     * @param kind    kind of data file
+     * @param version version of the file
+     * @return migrations upgrading it to the current version, in order
+     */
+    public static synchronized List<Migration> migrationsFrom(Kind kind, int version) {
+        List<Migration> all = MIGRATIONS.getOrDefault(kind, List.of());
+        return List.copyOf(all.subList(Math.min(Math.max(version - 1, 0), all.size()), all.size()));
+    }
+
+    /** Drops the registered migrations of a kind (tests only). */
+    public static synchronized void clearMigrations(Kind kind) {
+        MIGRATIONS.remove(kind);
+    }
+
+    /**
+     * Reads the header element, if present, right after the opening bracket of
+     * a data file.
+     *
+     * @param in reader positioned at the first element of the list
+     * @return the header, or {@code null} for a file without one
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the first element is a string but not a header
+     */
+    public static Header readHeader(JsonReader in) throws IOException {
+        if (!in.hasNext() || in.peek() != JsonToken.STRING) return null;
+        return Header.parse(in.nextString());
+    }
+}
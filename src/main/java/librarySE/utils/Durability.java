@@ -0,0 +1,67 @@
+package librarySE.utils;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * How far {@link FileUtils#writeJson} goes to make a write survive a crash.
+ * <p>
+ * Every mode writes to a temporary file and atomically renames it over the
+ * target, so readers and a crashed process never see a half-written file. The
+ * modes differ only in when the data is forced to the storage device, i.e.
+ * what survives a power loss or OS crash:
+ * </p>
+ * <ul>
+ *     <li>{@link #SYNC} – file and directory are forced before the write returns;</li>
+ *     <li>{@link #INTERVAL} – written files are forced in the background every
+ *         {@code persistence.durability.intervalMs} (default 1000); the last
+ *         interval of writes may be lost;</li>
+ *     <li>{@link #BUFFERED} – left to the operating system's write-back.</li>
+ * </ul>
+ *
+ * <p>
+ * The mode of a repository is configured by the name of its file, e.g.
+ * {@code persistence.durability.items=INTERVAL} for {@code items.json}, falling
+ * back to {@code persistence.durability} and then to {@link #SYNC}.
+ * </p>
+ *
+ * @author Eman
+ */
+public enum Durability {
+
+    /** Force to disk on every write. */
+    SYNC,
+
+    /** Force to disk periodically in the background. */
+    INTERVAL,
+
+    /** Never force; rely on the OS. */
+    BUFFERED;
+
+    /**
+     * Resolves the configured mode for a data file.
+     *
+     * @param file data file, e.g. {@code library_data/items.json}
+     * @return configured mode; {@link #SYNC} if unset or invalid
+     */
+    public static Durability forFile(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = (dot > 0) ? name.substring(0, dot) : name;
+        String fallback = Config.get("persistence.durability", SYNC.name());
+        return parse(Config.get("persistence.durability." + stem, fallback));
+    }
+
+    /**
+     * @param text mode name, case-insensitive
+     * @return parsed mode; {@link #SYNC} if {@code text} is not a mode name
+     */
+    public static Durability parse(String text) {
+        if (text == null) return SYNC;
+        try {
+            return valueOf(text.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return SYNC;
+        }
+    }
+}
@@ -5,28 +5,66 @@ import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import librarySE.backup.BackupService;
+import librarySE.backup.BackupStore;
+import librarySE.backup.RetentionPolicy;
+import librarySE.backup.Snapshot;
 import librarySE.core.Book;
 import librarySE.core.CD;
 import librarySE.core.Journal;
 import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.User;
 
 import java.io.*;
+import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
 
 /**
  * Central JSON persistence utility for the Library Management System.
  *
  * <p>This class provides:</p>
  * <ul>
- *     <li>Reading & writing JSON files safely using Gson</li>
- *     <li>Automatic backup of files before overwriting</li>
+ *     <li>Reading & writing JSON files safely using Gson; writes are atomic
+ *         (temporary file + rename) with selectable {@link Durability}</li>
+ *     <li>Optional GZIP-compressed compact storage ({@link StorageFormat}),
+ *         detected automatically on read</li>
+ *     <li>Deduplicated, retention-bounded backups of written files ({@link #backups()})</li>
+ *     <li>Hand-written streaming adapters for the domain types (items, users,
+ *         borrow records, waitlist entries) that avoid reflection</li>
  *     <li>Polymorphic serialization/deserialization of {@link LibraryItem}</li>
  *     <li>Custom serializers for {@link LocalDate} and {@link LocalDateTime}</li>
+ *     <li>Reference-only fields ({@link StoredAsReference}) and {@link PersistenceHooks}</li>
+ *     <li>Binary snapshots of JSON files for fast startup
+ *         ({@link #readSnapshot}, {@link #writeSnapshot})</li>
+ *     <li>Per-record CRC32C checksums of JSON lists, and recovery of damaged
+ *         lists from their valid records and the latest readable backup</li>
+ *     <li>Format version headers of data files ({@link DataSchema}) and their
+ *         upgrade on read ({@link SchemaMigrator})</li>
+ *     <li>One-pass streaming of JSON lists, one record at a time ({@link #streamJson})</li>
  *     <li>Helpers for obtaining data paths and typed list definitions</li>
  * </ul>
  *
@@ -55,12 +93,19 @@ public final class FileUtils {
      * Shared Gson instance configured with:
      * <ul>
      *     <li>Pretty printing</li>
+     *     <li>Streaming adapters for the domain types</li>
      *     <li>Polymorphic adapter for LibraryItem</li>
      *     <li>Custom date/time adapters</li>
      * </ul>
      */
     private static final Gson GSON;
 
+    /**
+     * Compact (single-line) variant of {@link #GSON} used for framed
+     * entries such as journal payloads, where pretty printing only wastes space.
+     */
+    private static final Gson COMPACT_GSON;
+
     /** Root directory for all stored JSON files. */
     private static final Path DATA_DIR = Paths.get("library_data");
 
@@ -74,15 +119,36 @@ public final class FileUtils {
      */
     static {
         GSON = buildGson();
+        COMPACT_GSON = GSON.newBuilder()
+                .setFormattingStyle(FormattingStyle.COMPACT)
+                .create();
     }
 
     /**
-     * Builds the primary configured Gson instance.
+     * Builds the primary configured Gson instance, with the domain streaming adapters.
      *
      * @return configured Gson instance
      * @throws RuntimeException if data directory cannot be initialized
      */
     private static Gson buildGson() {
+        return buildGson(true);
+    }
+
+    /**
+     * Builds a configured Gson instance.
+     * <p>
+     * With {@code streaming} enabled, items, users, borrow records and waitlist
+     * entries are read and written by their own {@code readJson}/{@code writeJson}
+     * methods. These are registered last so they take precedence over the
+     * reflective factories, and produce the same layout. Without it, every type
+     * goes through Gson's reflective adapters (see {@link #reflectiveGson()}).
+     * </p>
+     *
+     * @param streaming whether to register the domain streaming adapters
+     * @return configured Gson instance
+     * @throws RuntimeException if data directory cannot be initialized
+     */
+    private static Gson buildGson(boolean streaming) {
         try {
             ensureDataDirExists();
 
@@ -97,18 +163,73 @@ public final class FileUtils {
             TypeAdapter<LocalDateTime> localDateTimeAdapter = createLocalDateTimeAdapter();
             TypeAdapter<LocalDate> localDateAdapter = createLocalDateAdapter();
 
-            return new GsonBuilder()
+            GsonBuilder builder = new GsonBuilder()
                     .setPrettyPrinting()
+                    .addSerializationExclusionStrategy(referenceExclusionStrategy())
+                    .registerTypeAdapterFactory(new PersistenceHooksAdapterFactory())
                     .registerTypeAdapterFactory(itemFactory)
                     .registerTypeAdapter(LocalDateTime.class, localDateTimeAdapter)
-                    .registerTypeAdapter(LocalDate.class, localDateAdapter)
-                    .create();
+                    .registerTypeAdapter(LocalDate.class, localDateAdapter);
+
+            if (streaming) {
+                builder.registerTypeHierarchyAdapter(LibraryItem.class,
+                                streamingAdapter(LibraryItemFactory::writeJson, LibraryItemFactory::readJson))
+                        .registerTypeAdapter(User.class,
+                                streamingAdapter((out, u) -> u.writeJson(out), User::readJson))
+                        .registerTypeAdapter(BorrowRecord.class,
+                                streamingAdapter((out, r) -> r.writeJson(out), BorrowRecord::readJson))
+                        .registerTypeAdapter(WaitlistEntry.class,
+                                streamingAdapter((out, e) -> e.writeJson(out), WaitlistEntry::readJson));
+            }
+            return builder.create();
 
         } catch (IOException e) {
             throw new RuntimeException("Failed to initialize data directory", e);
         }
     }
 
+    /**
+     * Gson configured like the shared instance but without the domain streaming
+     * adapters, so every domain type is handled reflectively. Kept for
+     * comparisons against the streaming path.
+     *
+     * @return reflective Gson instance (compact output)
+     */
+    static Gson reflectiveGson() {
+        return buildGson(false).newBuilder()
+                .setFormattingStyle(FormattingStyle.COMPACT)
+                .create();
+    }
+
+    /** Writes one value with a hand-written streaming method. */
+    @FunctionalInterface
+    private interface JsonValueWriter<T> {
+        void write(JsonWriter out, T value) throws IOException;
+    }
+
+    /** Reads one value with a hand-written streaming method. */
+    @FunctionalInterface
+    private interface JsonValueReader<T> {
+        T read(JsonReader in) throws IOException;
+    }
+
+    /**
+     * Wraps a pair of streaming methods into a null-safe {@link TypeAdapter}.
+     */
+    private static <T> TypeAdapter<T> streamingAdapter(JsonValueWriter<T> writer, JsonValueReader<T> reader) {
+        return new TypeAdapter<T>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                writer.write(out, value);
+            }
+
+            @Override
+            public T read(JsonReader in) throws IOException {
+                return reader.read(in);
+            }
+        }.nullSafe();
+    }
+
     /**
      * Ensures the root data directory exists.
      *
@@ -120,6 +241,55 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Skips fields annotated with {@link StoredAsReference} when writing.
+     * Reading is unaffected so legacy files with embedded entities still load.
+     *
+     * @return serialization-only exclusion strategy
+     */
+    private static ExclusionStrategy referenceExclusionStrategy() {
+        return new ExclusionStrategy() {
+            @Override
+            public boolean shouldSkipField(FieldAttributes f) {
+                return f.getAnnotation(StoredAsReference.class) != null;
+            }
+
+            @Override
+            public boolean shouldSkipClass(Class<?> clazz) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Invokes {@link PersistenceHooks} around the reflective adapter of
+     * every type implementing it.
+     */
+    private static final class PersistenceHooksAdapterFactory implements TypeAdapterFactory {
+
+        @Override
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (!PersistenceHooks.class.isAssignableFrom(type.getRawType())) {
+                return null;
+            }
+            TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+            return new TypeAdapter<>() {
+                @Override
+                public void write(JsonWriter out, T value) throws IOException {
+                    if (value != null) ((PersistenceHooks) value).beforeWrite();
+                    delegate.write(out, value);
+                }
+
+                @Override
+                public T read(JsonReader in) throws IOException {
+                    T value = delegate.read(in);
+                    if (value != null) ((PersistenceHooks) value).afterRead();
+                    return value;
+                }
+            };
+        }
+    }
+
     /**
      * Gson adapter for {@link LocalDateTime}.
      *
@@ -183,22 +353,83 @@ public final class FileUtils {
     // =====================================================================
 
     /**
-     * Writes an object to a JSON file.
-     * If the file exists, a timestamped backup is created before overwriting.
+     * Writes an object to a JSON file with the durability configured for that
+     * file (see {@link Durability#forFile(Path)}) and schedules a backup of
+     * the new content.
      *
      * @param file the destination path
      * @param obj  any serializable object
      * @param <T>  object type
-     * @throws RuntimeException if writing or backup fails
+     * @throws RuntimeException if writing fails; the previous file is left intact
      */
     public static <T> void writeJson(Path file, T obj) {
+        writeJson(file, obj, Durability.forFile(file));
+    }
+
+    /**
+     * Atomically replaces a JSON file and schedules a backup of the new content.
+     * <p>
+     * The JSON is written to a temporary sibling file which is then renamed
+     * over {@code file}, so a crash mid-write never leaves a half-written
+     * file behind. {@code durability} decides when the data is forced to disk.
+     * Backups are captured asynchronously by {@link #backups()}.
+     * </p>
+     *
+     * @param file       the destination path
+     * @param obj        any serializable object
+     * @param durability when to force the data to disk
+     * @param <T>        object type
+     * @throws RuntimeException if writing fails; the previous file is left intact
+     */
+    public static <T> void writeJson(Path file, T obj, Durability durability) {
+        writeJson(file, obj, durability, StorageFormat.forFile(file));
+    }
+
+    /**
+     * Atomically replaces a JSON file in the given format and schedules a backup
+     * of the new content.
+     *
+     * @param file       the destination path
+     * @param obj        any serializable object
+     * @param durability when to force the data to disk
+     * @param format     on-disk encoding
+     * @param <T>        object type
+     * @throws RuntimeException if writing fails; the previous file is left intact
+     * @see #writeJson(Path, Object, Durability)
+     */
+    public static <T> void writeJson(Path file, T obj, Durability durability, StorageFormat format) {
         try {
-            Path backupDir = ensureBackupDirExists();
-            backupExistingFileIfNeeded(file, backupDir);
-            writeJsonToFile(file, obj);
-        } catch (IOException e) {
+            writeJsonToFile(file, obj, durability, format);
+        } catch (IOException | JsonIOException e) {
             throw new RuntimeException("Failed to write JSON with backup: " + file, e);
         }
+        backups().schedule(file);
+    }
+
+    /**
+     * Returns the shared backup service, creating it on first use.
+     * Its retention policy is read from {@code backup.retention.*}.
+     *
+     * @return backup service for files written by this class
+     */
+    public static BackupService backups() {
+        return BackupHolder.SERVICE;
+    }
+
+    /** Lazily creates the backup service so reads never start its worker. */
+    private static final class BackupHolder {
+        static final BackupService SERVICE = createBackupService();
+
+        private static BackupService createBackupService() {
+            try {
+                BackupService service = new BackupService(
+                        new BackupStore(ensureBackupDirExists()), RetentionPolicy.fromConfig());
+                Runtime.getRuntime().addShutdownHook(new Thread(service::close, "backup-shutdown"));
+                return service;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to initialize backup directory", e);
+            }
+        }
     }
 
     /**
@@ -216,36 +447,129 @@ public final class FileUtils {
     }
 
     /**
-     * Creates a timestamped backup if the target file already exists.
+     * Writes JSON to a temporary file and renames it over the target.
      *
-     * @param file      existing file
-     * @param backupDir destination backup directory
-     * @throws IOException if backup fails
+     * @param file       output file
+     * @param obj        data to write
+     * @param durability when to force the data to disk
+     * @param format     on-disk encoding
+     * @param <T>        type of data
+     * @throws IOException if writing fails
+     */
+    private static <T> void writeJsonToFile(Path file, T obj, Durability durability,
+                                            StorageFormat format) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        RecordChecksums sums = (obj instanceof Collection<?>) ? new RecordChecksums() : null;
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                OutputStream out = Channels.newOutputStream(channel);
+                GZIPOutputStream gzip = (format == StorageFormat.COMPACT_GZIP) ? fastGzip(out) : null;
+                Writer writer = new BufferedWriter(new OutputStreamWriter(
+                        (gzip != null) ? gzip : out, StandardCharsets.UTF_8), 64 * 1024);
+                Gson gson = (gzip != null) ? COMPACT_GSON : GSON;
+                Writer target = (sums != null) ? sums.tee(writer) : writer;
+                DataSchema.Kind kind = (obj instanceof Collection<?> list) ? kindOfElements(list) : null;
+                if (kind != null) writeDataList(gson, (Collection<?>) obj, kind, target);
+                else gson.toJson(obj, target);
+                writer.flush();
+                if (gzip != null) gzip.finish();
+                if (durability == Durability.SYNC) channel.force(true);
+            }
+            moveAtomically(tmp, file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        if (sums != null) RecordChecksums.write(file, sums.checksums());
+
+        switch (durability) {
+            case SYNC -> forceDirectory(file.toAbsolutePath().getParent());
+            case INTERVAL -> SyncerHolder.SYNCER.markDirty(file);
+            case BUFFERED -> { }
+        }
+    }
+
+    /** @return the kind of data file the elements of {@code list} belong in, or {@code null} */
+    private static DataSchema.Kind kindOfElements(Collection<?> list) {
+        for (Object e : list) {
+            if (e != null) return DataSchema.kindOf(e.getClass());
+        }
+        return null;
+    }
+
+    /**
+     * Writes a list of domain entities as a data file: the {@link DataSchema}
+     * header of its kind, then the entities.
      */
-    private static void backupExistingFileIfNeeded(Path file, Path backupDir) throws IOException {
-        if (!Files.exists(file)) return;
+    @SuppressWarnings("unchecked")
+    private static void writeDataList(Gson gson, Collection<?> list, DataSchema.Kind kind, Writer writer)
+            throws IOException {
+        TypeAdapter<Object> adapter = (TypeAdapter<Object>) gson.getAdapter(kind.type());
+        JsonWriter out = gson.newJsonWriter(writer);
+        out.beginArray();
+        out.value(DataSchema.currentHeader(kind).text());
+        for (Object e : list) adapter.write(out, e);
+        out.endArray();
+        out.flush();
+    }
 
-        String timestamp = LocalDateTime.now().toString().replace(":", "-");
-        String backupName = file.getFileName().toString()
-                .replace(".json", "_backup_" + timestamp + ".json");
+    /**
+     * GZIP stream at {@link Deflater#BEST_SPEED}: JSON compresses almost as
+     * well as at the default level for a fraction of the CPU time.
+     */
+    private static GZIPOutputStream fastGzip(OutputStream out) throws IOException {
+        return new GZIPOutputStream(out, 64 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        };
+    }
 
-        Files.copy(file, backupDir.resolve(backupName), StandardCopyOption.REPLACE_EXISTING);
+    /** Renames {@code source} over {@code target}, atomically where supported. */
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
     }
 
     /**
-     * Writes JSON to the specified file using the shared Gson instance.
+     * Forces a directory entry (e.g. a rename) to disk. Platforms that cannot
+     * open directories (Windows) are skipped silently.
      *
-     * @param file output file
-     * @param obj  data to write
-     * @param <T>  type of data
-     * @throws IOException if writing fails
+     * @param dir directory to force
+     */
+    static void forceDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException ignored) {
+            // Not supported on this platform; the rename itself is still atomic.
+        }
+    }
+
+    /**
+     * Forces every file written with {@link Durability#INTERVAL} to disk now,
+     * without waiting for the next interval.
+     *
+     * @throws RuntimeException if a file cannot be forced
      */
-    private static <T> void writeJsonToFile(Path file, T obj) throws IOException {
-        try (Writer writer = Files.newBufferedWriter(file)) {
-            GSON.toJson(obj, writer);
+    public static void syncPendingWrites() {
+        try {
+            SyncerHolder.SYNCER.sync();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to sync pending writes", e);
         }
     }
 
+    /** Lazily starts the interval syncer on the first {@link Durability#INTERVAL} write. */
+    private static final class SyncerHolder {
+        static final IntervalSyncer SYNCER =
+                new IntervalSyncer(Config.getInt("persistence.durability.intervalMs", 1000));
+    }
+
     // =====================================================================
     // JSON Read
     // =====================================================================
@@ -253,20 +577,48 @@ public final class FileUtils {
     /**
      * Reads and deserializes JSON from a file.
      *
-     * <p>If the file does not exist or JSON is invalid, returns the provided default value.</p>
+     * <p>If the file does not exist or JSON is invalid, returns the provided default value.
+     * Plain and GZIP-compressed files ({@link StorageFormat}) are both accepted.</p>
+     *
+     * <p>Lists are read record by record and verified against their checksums
+     * (see {@link RecordChecksums}). A damaged list is recovered instead of
+     * being replaced by the default:</p>
+     * <ol>
+     *     <li>every record that parses and matches its checksum is kept;</li>
+     *     <li>the damaged file is moved aside as {@code <name>.corrupt-<millis>};</li>
+     *     <li>missing records are filled in from the most recent backup that
+     *         reads cleanly (data directory files only, since backups are keyed
+     *         by file name); at most {@code recovery.maxBackups} backups
+     *         (default 3) are tried within {@code recovery.timeBudgetMs}
+     *         (default 5000). A record that still parses but fails its checksum
+     *         is replaced by the backup record with the same id; a record that
+     *         no longer parses by the backup record at its position, unless that
+     *         id is already in the list. Slots no backup record matches are
+     *         dropped and counted in the report;</li>
+     *     <li>the recovered list is written back and a {@link RecoveryReport} is published.</li>
+     * </ol>
+     *
+     * <p>Lists of domain entities carry a {@link DataSchema} header. A file of an
+     * older format version is upgraded in place by {@link SchemaMigrator} before
+     * it is read; a file of a newer version is refused.</p>
      *
      * @param file         JSON path
      * @param type         expected type token
      * @param defaultValue return value if missing/invalid
      * @param <T>          return type
      * @return parsed object or default value
+     * @throws SchemaVersionException if the file was written in a newer format version
      */
     public static <T> T readJson(Path file, Type type, T defaultValue) {
         if (!Files.exists(file)) {
             return defaultValue;
         }
+        Type elementType = listElementType(type);
+        if (elementType != null) {
+            return readList(file, elementType, defaultValue);
+        }
 
-        try (Reader reader = Files.newBufferedReader(file)) {
+        try (Reader reader = openJsonReader(file)) {
             T result = GSON.fromJson(reader, type);
             return (result != null) ? result : defaultValue;
 
@@ -278,6 +630,589 @@ public final class FileUtils {
         }
     }
 
+    /**
+     * Streams the elements of a JSON list, deserializing one element at a time
+     * as the stream is consumed, so memory use does not depend on the size of
+     * the file. Meant for one-pass consumers such as reports and exports.
+     * <p>
+     * A file of an older format version is upgraded first, like in
+     * {@link #readJson}. Unlike {@code readJson}, records are not verified
+     * against their checksums and a damaged file is not recovered: reading
+     * stops with an exception at the damage.
+     * </p>
+     * <p>The stream holds the file open and must be closed.</p>
+     *
+     * <pre>{@code
+     * try (Stream<User> users = FileUtils.streamJson(file, User.class)) {
+     *     long admins = users.filter(User::isAdmin).count();
+     * }
+     * }</pre>
+     *
+     * @param file        JSON file holding a list, in any {@link StorageFormat}
+     * @param elementType type of the elements
+     * @param <T>         element type
+     * @return lazily read elements; empty if the file is missing, empty or {@code null}
+     * @throws SchemaVersionException if the file was written in a newer format version
+     * @throws UncheckedIOException   if the file cannot be opened, or (while consuming) is damaged
+     */
+    public static <T> Stream<T> streamJson(Path file, Class<T> elementType) {
+        if (!Files.exists(file)) return Stream.empty();
+        TypeAdapter<T> adapter = GSON.getAdapter(elementType);
+        DataSchema.Kind kind = DataSchema.kindOf(elementType);
+        try {
+            JsonReader in = openList(file, kind);
+            if (in == null) {
+                new SchemaMigrator().migrate(file, kind);
+                in = openList(file, kind);
+            }
+            if (in == null) throw new IllegalStateException("Upgrade of " + file + " did not complete");
+            JsonReader reader = in;
+            Spliterator<T> elements = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    try {
+                        if (reader.peek() == JsonToken.END_DOCUMENT || !reader.hasNext()) return false;
+                        action.accept(adapter.read(reader));
+                        return true;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to read JSON: " + file, e);
+                    }
+                }
+            };
+            return StreamSupport.stream(elements, false).onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read JSON: " + file, e);
+        }
+    }
+
+    /**
+     * Opens a JSON list and positions the reader at its first record, past the
+     * {@link DataSchema} header.
+     *
+     * @return the reader, or {@code null} if the file must be upgraded first
+     * @throws SchemaVersionException if the file is newer than this build
+     */
+    private static JsonReader openList(Path file, DataSchema.Kind kind) throws IOException {
+        JsonReader in = GSON.newJsonReader(openJsonReader(file));
+        try {
+            JsonToken first = in.peek();
+            if (first == JsonToken.END_DOCUMENT) return in;
+            if (first == JsonToken.NULL) {
+                in.nextNull();
+                return in;
+            }
+            in.beginArray();
+            if (kind != null) {
+                DataSchema.Header h = DataSchema.readHeader(in);
+                int version = (h != null) ? h.version() : 1;
+                int current = DataSchema.currentVersion(kind);
+                if (version > current) throw new SchemaVersionException(file, kind, version, current);
+                if (version < current) {
+                    in.close();
+                    return null;
+                }
+            }
+            return in;
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Records read from a JSON list.
+     *
+     * @param values  records in file order; {@code null} where a record failed its checksum
+     * @param failed  records as parsed despite failing their checksum, at the same
+     *                positions; {@code null} elsewhere
+     * @param intact  whether the whole document was read and every checksum matched
+     * @param empty   whether the document was empty or {@code null}
+     * @param damage  description of the damage, or {@code null} if intact
+     */
+    private record ListScan(List<Object> values, List<Object> failed, boolean intact, boolean empty,
+                            String damage) { }
+
+    /** @return the element type if {@code type} is a list that an {@link ArrayList} can satisfy */
+    private static Type listElementType(Type type) {
+        if (type instanceof ParameterizedType p
+                && p.getRawType() instanceof Class<?> raw
+                && raw.isAssignableFrom(ArrayList.class)
+                && Collection.class.isAssignableFrom(raw)) {
+            return p.getActualTypeArguments()[0];
+        }
+        return null;
+    }
+
+    /** Reads a JSON list, recovering it if it is damaged (see {@link #readJson}). */
+    @SuppressWarnings("unchecked")
+    private static <T> T readList(Path file, Type elementType, T defaultValue) {
+        long start = System.nanoTime();
+        ListScan scan;
+        try {
+            try {
+                scan = scanList(file, elementType, RecordChecksums.read(file));
+            } catch (SchemaVersionException e) {
+                if (e.getFound() > e.getSupported()) throw e;
+                SchemaMigrator.Result upgrade = new SchemaMigrator().migrate(file, e.getKind());
+                LoggerUtils.log("migration_log.txt", "Upgraded " + file + " from version " + upgrade.fromVersion()
+                        + " to " + upgrade.toVersion() + ": " + upgrade.records() + " records in "
+                        + upgrade.took().toMillis() + " ms");
+                scan = scanList(file, elementType, RecordChecksums.read(file));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read JSON: " + file, e);
+        }
+        if (scan.intact()) {
+            return scan.empty() ? defaultValue : (T) scan.values();
+        }
+
+        List<Object> recovered = new ArrayList<>(scan.values());
+        int kept = (int) recovered.stream().filter(Objects::nonNull).count();
+        int restored = 0;
+        int dropped = 0;
+        String source = null;
+        ListScan backup = isDataFile(file) ? latestReadableBackup(file, elementType, start) : null;
+        if (backup != null) {
+            List<Object> older = backup.values();
+            Map<Object, Object> olderByKey = new HashMap<>();
+            for (Object o : older) olderByKey.putIfAbsent(recordKey(o), o);
+            Set<Object> present = new HashSet<>();
+            for (Object o : recovered) {
+                if (o != null) present.add(recordKey(o));
+            }
+
+            int slots = Math.max(recovered.size(), older.size());
+            for (int i = 0; i < slots; i++) {
+                if (i < recovered.size() && recovered.get(i) != null) continue;
+                Object damaged = i < scan.failed().size() ? scan.failed().get(i) : null;
+                Object candidate = damaged != null
+                        ? olderByKey.get(recordKey(damaged))    // the record's identity survived the damage
+                        : (i < older.size() ? older.get(i) : null);
+                if (candidate == null || !present.add(recordKey(candidate))) {
+                    if (damaged != null || candidate != null) dropped++;
+                    continue;
+                }
+                if (i < recovered.size()) recovered.set(i, candidate);
+                else recovered.add(candidate);
+                restored++;
+            }
+            source = backup.damage();
+        }
+        recovered.removeIf(Objects::isNull);
+
+        Path quarantined = file.resolveSibling(file.getFileName() + ".corrupt-" + System.currentTimeMillis());
+        try {
+            Files.move(file, quarantined, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(RecordChecksums.sidecarOf(file));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to quarantine damaged JSON: " + file, e);
+        }
+        if (!recovered.isEmpty()) {
+            writeJson(file, recovered);
+        }
+        RecoveryReport.publish(new RecoveryReport(file, scan.damage(), kept, restored, dropped, quarantined,
+                source, Duration.ofNanos(System.nanoTime() - start)));
+        return recovered.isEmpty() ? defaultValue : (T) recovered;
+    }
+
+    /**
+     * Reads the records of a JSON list one by one, stopping at the first
+     * syntax error, and verifies them against {@code expected} checksums.
+     *
+     * @throws SchemaVersionException if a list of domain entities is not in the current format version
+     */
+    private static ListScan scanList(Path file, Type elementType, int[] expected) throws IOException {
+        TypeAdapter<?> adapter = GSON.getAdapter(TypeToken.get(elementType));
+        DataSchema.Kind kind = DataSchema.kindOf(elementType);
+        int header = 0; // the header element has a checksum of its own
+        RecordChecksums sums = new RecordChecksums();
+        List<Object> values = new ArrayList<>();
+        String damage = null;
+        boolean empty = false;
+
+        try (Reader raw = openJsonReader(file); Reader reader = sums.tee(raw)) {
+            JsonReader in = GSON.newJsonReader(reader);
+            try {
+                JsonToken first = in.peek();
+                if (first == JsonToken.END_DOCUMENT || first == JsonToken.NULL) {
+                    empty = true;
+                } else {
+                    in.beginArray();
+                    if (kind != null) {
+                        DataSchema.Header h = DataSchema.readHeader(in);
+                        if (h != null) header = 1;
+                        int version = (h != null) ? h.version() : 1;
+                        int current = DataSchema.currentVersion(kind);
+                        if (version != current) throw new SchemaVersionException(file, kind, version, current);
+                    }
+                    while (in.hasNext()) values.add(adapter.read(in));
+                    in.endArray();
+                }
+            } catch (SchemaVersionException e) {
+                throw e;
+            } catch (MalformedJsonException | EOFException | ZipException | RuntimeException e) {
+                // Syntax errors, truncation, damaged GZIP data, or values the adapters reject.
+                damage = "unreadable after record " + values.size();
+            }
+            try {
+                char[] rest = new char[8192];
+                while (reader.read(rest) >= 0) { } // finish the checksums of the last records read
+            } catch (IOException ignored) {
+                // The damage is already recorded.
+            }
+        }
+
+        List<Object> failed = new ArrayList<>(Collections.nCopies(values.size(), null));
+        if (expected != null) {
+            int[] actual = sums.checksums();
+            int mismatches = 0;
+            for (int i = 0; i < values.size(); i++) {
+                int at = i + header;
+                if (at >= actual.length || at >= expected.length || actual[at] != expected[at]) {
+                    failed.set(i, values.set(i, null));
+                    mismatches++;
+                }
+            }
+            if (mismatches > 0) {
+                damage = "checksum mismatch in " + mismatches + " records"
+                        + (damage != null ? ", " + damage : "");
+            } else if (damage == null && !empty && values.size() + header != expected.length) {
+                damage = values.size() + " of " + (expected.length - header) + " records";
+            }
+        }
+        return new ListScan(values, failed, damage == null, empty, damage);
+    }
+
+    /** Backups are keyed by file name, so only files directly in the data directory can use them. */
+    private static boolean isDataFile(Path file) {
+        Path parent = file.toAbsolutePath().normalize().getParent();
+        return parent != null && parent.equals(DATA_DIR.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Identity of a record when matching a damaged list against a backup: the
+     * id of an entity, item and e-mail of a waitlist entry, the value itself
+     * for anything else.
+     */
+    private static Object recordKey(Object record) {
+        if (record instanceof LibraryItem i && i.getId() != null) return i.getId();
+        if (record instanceof User u && u.getId() != null) return u.getId();
+        if (record instanceof BorrowRecord r && r.getId() != null) return r.getId();
+        if (record instanceof WaitlistEntry w) {
+            return List.of(String.valueOf(w.getItemId()), String.valueOf(w.getUserEmail()));
+        }
+        return record;
+    }
+
+    /**
+     * Finds the most recent backup of {@code file} that reads cleanly, within
+     * the configured attempt and time limits.
+     *
+     * @return its records, with {@link ListScan#damage()} naming the backup; or {@code null}
+     */
+    private static ListScan latestReadableBackup(Path file, Type elementType, long start) {
+        int attempts = Config.getInt("recovery.maxBackups", 3);
+        long deadline = start + Duration.ofMillis(Config.getInt("recovery.timeBudgetMs", 5000)).toNanos();
+        Path tmp = null;
+        try {
+            BackupStore store = backups().store();
+            List<Snapshot> snapshots = new ArrayList<>(store.list(file.getFileName().toString()));
+            Collections.reverse(snapshots);
+            tmp = Files.createTempFile("recovery", ".json");
+            for (Snapshot s : snapshots) {
+                if (attempts-- <= 0 || System.nanoTime() > deadline) break;
+                try {
+                    store.restore(s, tmp);
+                    ListScan scan = scanList(tmp, elementType, null);
+                    if (scan.intact()) {
+                        return new ListScan(scan.values(), scan.failed(), true, scan.empty(),
+                                "backup of " + s.time());
+                    }
+                } catch (UncheckedIOException | IOException e) {
+                    // Missing chunk or unreadable version: try the previous one.
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LoggerUtils.log("recovery_log.txt", "Backups of " + file.getFileName() + " unavailable: " + e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // Temporary file only.
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Opens a JSON file for reading, decompressing it if it starts with the
+     * GZIP magic bytes ({@link StorageFormat#COMPACT_GZIP}).
+     *
+     * @param file JSON file in any {@link StorageFormat}
+     * @return UTF-8 reader over the JSON text
+     * @throws IOException if the file cannot be opened
+     */
+    private static Reader openJsonReader(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 64 * 1024);
+        try {
+            in.mark(2);
+            boolean gzip = in.read() == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                    && in.read() == (GZIPInputStream.GZIP_MAGIC >>> 8);
+            in.reset();
+            if (gzip) in = new GZIPInputStream(in, 64 * 1024);
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    // =====================================================================
+    // Compact JSON (single values)
+    // =====================================================================
+
+    /**
+     * Serializes a single value to compact JSON using the shared adapters.
+     *
+     * @param obj value to serialize
+     * @return compact JSON text
+     */
+    public static String toCompactJson(Object obj) {
+        return COMPACT_GSON.toJson(obj);
+    }
+
+    /**
+     * Deserializes a single value from JSON text using the shared adapters.
+     *
+     * @param json JSON text
+     * @param type expected type
+     * @param <T>  return type
+     * @return parsed value
+     * @throws JsonParseException if the text is not valid for {@code type}
+     */
+    public static <T> T fromJson(String json, Type type) {
+        return COMPACT_GSON.fromJson(json, type);
+    }
+
+    // =====================================================================
+    // Binary Snapshots
+    // =====================================================================
+
+    /** Magic bytes identifying a binary snapshot file. */
+    private static final byte[] SNAPSHOT_MAGIC = {'L', 'S', 'B', 'S'};
+
+    /**
+     * Current binary snapshot format version; version 2 added the CRC32C trailer,
+     * version 3 the {@link DataSchema} versions of the build that wrote it,
+     * version 4 replaced the JSON file's modification time by a checksum of its content.
+     */
+    private static final byte SNAPSHOT_VERSION = 4;
+
+    /**
+     * Size and CRC32C of a JSON file's content, recorded in the snapshots taken from it.
+     * Unlike a modification time, it changes with every edit of the content, however
+     * quickly it follows the previous write and whatever tool made it.
+     */
+    private record SourceStamp(long size, int checksum) {
+
+        static SourceStamp of(Path source) throws IOException {
+            CRC32C crc = new CRC32C();
+            long size = 0;
+            try (InputStream in = Files.newInputStream(source)) {
+                byte[] buffer = new byte[64 * 1024];
+                for (int n; (n = in.read(buffer)) > 0; size += n) crc.update(buffer, 0, n);
+            }
+            return new SourceStamp(size, (int) crc.getValue());
+        }
+
+        /** Reads the stamp recorded in a snapshot header and tells whether {@code source} still has it. */
+        static boolean matches(DataInputStream in, Path source) throws IOException {
+            long size = in.readLong();
+            int checksum = in.readInt();
+            // The size is compared first, so most changed files are not read at all.
+            return size == Files.size(source) && new SourceStamp(size, checksum).equals(of(source));
+        }
+    }
+
+    /**
+     * Reads a binary snapshot of a JSON file, if it is still current.
+     * <p>
+     * A snapshot records the size and CRC32C of the JSON file it was taken
+     * from. It is used only if the JSON file still has exactly that content, it
+     * was written with the same {@link DataSchema} versions as this build uses,
+     * and its CRC32C trailer matches; otherwise (missing, outdated, other
+     * version, damaged or unreadable snapshot) this method returns {@code null}
+     * and the caller falls back to the JSON file, which is migrated if needed.
+     * Checking the content reads the JSON file once, which costs a small
+     * fraction of parsing it.
+     * </p>
+     *
+     * @param snapshot binary snapshot file
+     * @param source   JSON file the snapshot was taken from
+     * @param reader   decodes the snapshot body
+     * @param <T>      result type
+     * @return decoded value, or {@code null} if the JSON file must be read instead
+     */
+    public static <T> T readSnapshot(Path snapshot, Path source,
+                                     SnapshotInput.ValueReader<T> reader) {
+        if (snapshot == null || source == null || !Files.exists(snapshot) || !Files.exists(source)) {
+            return null;
+        }
+        try (CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 64 * 1024), new CRC32C());
+             DataInputStream in = new DataInputStream(checked)) {
+
+            if (!readSnapshotHeader(in, source)) return null;
+            T value = reader.read(new SnapshotInput(in));
+            int crc = (int) checked.getChecksum().getValue();
+            if (in.readInt() != crc || in.read() >= 0) {
+                return null; // damaged snapshot: the JSON file is read instead
+            }
+            return value;
+
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tells whether a binary snapshot was taken from the current content of a
+     * JSON file by this build's {@link DataSchema} versions. Only the header is
+     * read; a damaged body is detected by {@link #readSnapshot}.
+     *
+     * @param snapshot binary snapshot file
+     * @param source   JSON file the snapshot was taken from
+     * @return {@code true} if {@link #readSnapshot} would not reject it as outdated
+     */
+    public static boolean isSnapshotCurrent(Path snapshot, Path source) {
+        if (snapshot == null || source == null || !Files.exists(snapshot) || !Files.exists(source)) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            return readSnapshotHeader(in, source);
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static boolean readSnapshotHeader(DataInputStream in, Path source) throws IOException {
+        byte[] magic = new byte[SNAPSHOT_MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, SNAPSHOT_MAGIC) || in.readByte() != SNAPSHOT_VERSION) {
+            return false;
+        }
+        if (!SourceStamp.matches(in, source)) {
+            return false; // JSON changed after the snapshot was taken
+        }
+        int[] versions = new int[in.readUnsignedByte()];
+        for (int i = 0; i < versions.length; i++) versions[i] = in.readInt();
+        // Taken before a migration, its records would have the old fields.
+        return Arrays.equals(versions, DataSchema.currentVersions());
+    }
+
+    /**
+     * Writes a binary snapshot of a JSON file holding the same data.
+     * <p>
+     * The snapshot is written to a temporary file and then moved into place,
+     * so readers never see a partial snapshot. Failures are not fatal: the JSON
+     * file stays authoritative and the stale snapshot is removed.
+     * </p>
+     * <p>
+     * Snapshots are meant to be taken rarely (when a repository is closed or
+     * compacts its journal), not with every save: the JSON file is read once to
+     * record its checksum.
+     * </p>
+     *
+     * @param snapshot binary snapshot file
+     * @param source   JSON file holding the same data
+     * @param value    data to write
+     * @param writer   encodes the snapshot body
+     * @param <T>      data type
+     */
+    public static <T> void writeSnapshot(Path snapshot, Path source, T value,
+                                         SnapshotOutput.ValueWriter<? super T> writer) {
+        if (snapshot == null || source == null) return;
+        SourceStamp stamp;
+        try {
+            stamp = SourceStamp.of(source);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException ignored) {
+                // The outdated snapshot is rejected by readSnapshot anyway.
+            }
+            return;
+        }
+        writeSnapshot(snapshot, stamp, value, writer);
+    }
+
+    /** Writes a snapshot of the JSON content identified by {@code stamp}. */
+    private static <T> void writeSnapshot(Path snapshot, SourceStamp stamp, T value,
+                                          SnapshotOutput.ValueWriter<? super T> writer) {
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try {
+            try (CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024), new CRC32C());
+                 DataOutputStream out = new DataOutputStream(checked)) {
+                out.write(SNAPSHOT_MAGIC);
+                out.writeByte(SNAPSHOT_VERSION);
+                out.writeLong(stamp.size());
+                out.writeInt(stamp.checksum());
+                int[] versions = DataSchema.currentVersions();
+                out.writeByte(versions.length);
+                for (int v : versions) out.writeInt(v);
+                writer.write(new SnapshotOutput(out), value);
+                out.writeInt((int) checked.getChecksum().getValue());
+            }
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(snapshot);
+            } catch (IOException ignored) {
+                // The outdated snapshot is rejected by readSnapshot anyway.
+            }
+        }
+    }
+
+    /**
+     * Brings the binary snapshot of a JSON file up to date, for repositories
+     * that rewrite the whole file on every save: they call this once when they
+     * close instead of writing a snapshot with each save. Nothing is done while
+     * the snapshot is current; otherwise the JSON file is read back with
+     * {@code reader}, so the snapshot holds exactly what was stored, whatever
+     * changed in memory since the last save.
+     *
+     * @param snapshot binary snapshot file
+     * @param source   JSON file the snapshot is taken from
+     * @param reader   reads the JSON file
+     * @param writer   encodes the snapshot body
+     * @param <T>      data type
+     */
+    public static <T> void refreshSnapshot(Path snapshot, Path source, Supplier<T> reader,
+                                           SnapshotOutput.ValueWriter<? super T> writer) {
+        if (snapshot == null || source == null || !Files.exists(source) || isSnapshotCurrent(snapshot, source)) {
+            return;
+        }
+        try {
+            SourceStamp before = SourceStamp.of(source);
+            T value = reader.get();
+            // Files are replaced by renaming, so an unchanged stamp means the value read is that content.
+            if (!before.equals(SourceStamp.of(source))) return;
+            writeSnapshot(snapshot, before, value, writer);
+        } catch (IOException | RuntimeException e) {
+            // The JSON file cannot be read: readSnapshot rejects the old snapshot anyway.
+        }
+    }
+
     // =====================================================================
     // Path & Type Utilities
     // =====================================================================
@@ -313,6 +1248,21 @@ public final class FileUtils {
      * <p>It inserts a discriminator field (e.g., <code>"type"</code>) into JSON
      * to identify the actual subtype.</p>
      *
+     * <h4>Streaming mode</h4>
+     * <p>By default the adapter streams: on write the discriminator is emitted as
+     * the first property and the subtype adapter writes the remaining properties
+     * directly to the output; on read, a discriminator found in first position
+     * selects the subtype adapter, which then reads the rest of the object
+     * directly from the input. No intermediate {@link JsonElement} trees are
+     * built in either direction.</p>
+     *
+     * <p>Input whose discriminator is not the first property (e.g. hand-edited
+     * files) falls back to buffering the object as a tree. Subtypes with
+     * {@link Map} fields are always buffered, because Gson's map adapter needs
+     * reader internals that a forwarding reader cannot provide.
+     * {@link #streaming(boolean) streaming(false)} restores the fully
+     * tree-based behaviour.</p>
+     *
      * @param <T> base type
      */
     public static final class RuntimeTypeAdapterFactory<T>
@@ -322,6 +1272,7 @@ public final class FileUtils {
         private final String typeFieldName;
         private final Map<String, Class<?>> labelToSubtype = new LinkedHashMap<>();
         private final Map<Class<?>, String> subtypeToLabel = new LinkedHashMap<>();
+        private boolean streaming = true;
 
         private RuntimeTypeAdapterFactory(Class<?> baseType, String typeFieldName) {
             if (baseType == null)
@@ -371,6 +1322,17 @@ public final class FileUtils {
             return this;
         }
 
+        /**
+         * Enables or disables streaming (enabled by default).
+         *
+         * @param enabled {@code false} to always go through {@link JsonElement} trees
+         * @return this factory
+         */
+        public RuntimeTypeAdapterFactory<T> streaming(boolean enabled) {
+            this.streaming = enabled;
+            return this;
+        }
+
         @Override
         @SuppressWarnings({"rawtypes", "unchecked"})
         public <R> TypeAdapter<R> create(Gson gson, TypeToken<R> type) {
@@ -382,12 +1344,16 @@ public final class FileUtils {
 
             Map<String, TypeAdapter<?>> labelToDelegate = new LinkedHashMap<>();
             Map<Class<?>, TypeAdapter<?>> subtypeToDelegate = new LinkedHashMap<>();
+            Set<String> streamableLabels = new HashSet<>();
 
             for (var entry : labelToSubtype.entrySet()) {
                 TypeAdapter<?> delegate =
                         gson.getDelegateAdapter(this, TypeToken.get(entry.getValue()));
                 labelToDelegate.put(entry.getKey(), delegate);
                 subtypeToDelegate.put(entry.getValue(), delegate);
+                if (streaming && !containsMapField(entry.getValue(), new HashSet<>())) {
+                    streamableLabels.add(entry.getKey());
+                }
             }
 
             return new PolymorphicTypeAdapter<>(
@@ -395,10 +1361,34 @@ public final class FileUtils {
                     labelToDelegate,
                     subtypeToDelegate,
                     subtypeToLabel,
-                    typeFieldName
+                    typeFieldName,
+                    streaming,
+                    streamableLabels
             );
         }
 
+        /**
+         * Checks whether a type (or any application type it contains) declares a
+         * {@link Map} field. JDK types are not inspected.
+         */
+        private static boolean containsMapField(Class<?> type, Set<Class<?>> visited) {
+            if (type.isPrimitive() || type.isEnum() || !visited.add(type)) return false;
+            if (type.isArray()) return containsMapField(type.getComponentType(), visited);
+            if (Map.class.isAssignableFrom(type)) return true;
+            String name = type.getName();
+            if (name.startsWith("java.") || name.startsWith("javax.")) return false;
+
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (java.lang.reflect.Field f : c.getDeclaredFields()) {
+                    int mod = f.getModifiers();
+                    if (java.lang.reflect.Modifier.isStatic(mod)
+                            || java.lang.reflect.Modifier.isTransient(mod)) continue;
+                    if (containsMapField(f.getType(), visited)) return true;
+                }
+            }
+            return false;
+        }
+
         /**
          * TypeAdapter that performs actual polymorphic read/write logic.
          *
@@ -411,19 +1401,25 @@ public final class FileUtils {
             private final Map<Class<?>, TypeAdapter<?>> subtypeToDelegate;
             private final Map<Class<?>, String> subtypeToLabel;
             private final String typeFieldName;
+            private final boolean streaming;
+            private final Set<String> streamableLabels;
 
             PolymorphicTypeAdapter(
                     Gson context,
                     Map<String, TypeAdapter<?>> labelToDelegate,
                     Map<Class<?>, TypeAdapter<?>> subtypeToDelegate,
                     Map<Class<?>, String> subtypeToLabel,
-                    String typeFieldName) {
+                    String typeFieldName,
+                    boolean streaming,
+                    Set<String> streamableLabels) {
 
                 this.context = context;
                 this.labelToDelegate = labelToDelegate;
                 this.subtypeToDelegate = subtypeToDelegate;
                 this.subtypeToLabel = subtypeToLabel;
                 this.typeFieldName = typeFieldName;
+                this.streaming = streaming;
+                this.streamableLabels = streamableLabels;
             }
 
             @Override
@@ -442,6 +1438,11 @@ public final class FileUtils {
                     throw new JsonParseException("Unregistered subtype: " + clazz.getName());
                 }
 
+                if (streaming) {
+                    delegate.write(new TypeFirstJsonWriter(out, typeFieldName, label), value);
+                    return;
+                }
+
                 JsonObject tree = delegate.toJsonTree(value).getAsJsonObject();
                 JsonObject finalObj = new JsonObject();
                 finalObj.addProperty(typeFieldName, label);
@@ -454,9 +1455,40 @@ public final class FileUtils {
             }
 
             @Override
-            @SuppressWarnings("unchecked")
             public R read(JsonReader in) throws IOException {
-                JsonElement element = JsonParser.parseReader(in);
+                if (!streaming || in.peek() != JsonToken.BEGIN_OBJECT) {
+                    return readTree(JsonParser.parseReader(in));
+                }
+
+                in.beginObject();
+                JsonObject buffered = new JsonObject();
+                while (in.hasNext()) {
+                    String name = in.nextName();
+                    if (name.equals(typeFieldName) && buffered.size() == 0
+                            && in.peek() == JsonToken.STRING) {
+                        String label = in.nextString();
+                        if (streamableLabels.contains(label)) {
+                            return readStreaming(in, label);
+                        }
+                        buffered.addProperty(name, label);
+                    } else {
+                        buffered.add(name, JsonParser.parseReader(in));
+                    }
+                }
+                in.endObject();
+                return readTree(buffered);
+            }
+
+            /** Lets the subtype adapter read the rest of an object whose discriminator was first. */
+            @SuppressWarnings("unchecked")
+            private R readStreaming(JsonReader in, String label) throws IOException {
+                TypeAdapter<?> delegate = labelToDelegate.get(label);
+                return (R) delegate.read(new ObjectBodyJsonReader(in));
+            }
+
+            /** Buffered path: the discriminator may appear anywhere in the object. */
+            @SuppressWarnings("unchecked")
+            private R readTree(JsonElement element) {
                 if (element.isJsonNull()) return null;
 
                 JsonObject obj = element.getAsJsonObject();
@@ -477,5 +1509,238 @@ public final class FileUtils {
                 return (R) delegate.fromJsonTree(obj);
             }
         }
+
+        /** Placeholder target for the forwarding reader and writer; never used. */
+        private static final Writer UNWRITABLE = new Writer() {
+            @Override public void write(char[] buf, int off, int len) { throw new AssertionError(); }
+            @Override public void flush() { throw new AssertionError(); }
+            @Override public void close() { throw new AssertionError(); }
+        };
+
+        private static final Reader UNREADABLE = new Reader() {
+            @Override public int read(char[] buf, int off, int len) { throw new AssertionError(); }
+            @Override public void close() { throw new AssertionError(); }
+        };
+
+        /**
+         * Forwards to the real writer and emits the discriminator right after
+         * the subtype adapter opens its top-level object.
+         */
+        private static final class TypeFirstJsonWriter extends JsonWriter {
+
+            private final JsonWriter out;
+            private final String typeFieldName;
+            private final String label;
+            private int depth;
+            private boolean opened;
+
+            TypeFirstJsonWriter(JsonWriter out, String typeFieldName, String label) {
+                super(UNWRITABLE);
+                this.out = out;
+                this.typeFieldName = typeFieldName;
+                this.label = label;
+                setSerializeNulls(out.getSerializeNulls());
+                setStrictness(out.getStrictness());
+                setHtmlSafe(out.isHtmlSafe());
+            }
+
+            /** Rejects subtypes that do not serialize to a JSON object, like the tree path. */
+            private void requireObject() {
+                if (!opened) {
+                    throw new IllegalStateException(
+                            "Subtype for \"" + label + "\" does not serialize to a JSON object");
+                }
+            }
+
+            @Override
+            public JsonWriter beginObject() throws IOException {
+                out.beginObject();
+                if (!opened) {
+                    opened = true;
+                    out.name(typeFieldName).value(label);
+                }
+                depth++;
+                return this;
+            }
+
+            @Override
+            public JsonWriter endObject() throws IOException {
+                requireObject();
+                depth--;
+                out.endObject();
+                return this;
+            }
+
+            @Override
+            public JsonWriter beginArray() throws IOException {
+                requireObject();
+                depth++;
+                out.beginArray();
+                return this;
+            }
+
+            @Override
+            public JsonWriter endArray() throws IOException {
+                requireObject();
+                depth--;
+                out.endArray();
+                return this;
+            }
+
+            @Override
+            public JsonWriter name(String name) throws IOException {
+                requireObject();
+                if (depth == 1 && name.equals(typeFieldName)) {
+                    throw new JsonParseException("Subtype for \"" + label
+                            + "\" already defines a field named \"" + typeFieldName + "\"");
+                }
+                out.name(name);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(String value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(boolean value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(Boolean value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(float value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(double value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(long value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter value(Number value) throws IOException {
+                requireObject();
+                out.value(value);
+                return this;
+            }
+
+            @Override
+            public JsonWriter nullValue() throws IOException {
+                requireObject();
+                out.nullValue();
+                return this;
+            }
+
+            @Override
+            public JsonWriter jsonValue(String value) throws IOException {
+                requireObject();
+                out.jsonValue(value);
+                return this;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+
+            @Override
+            public void close() {
+                // The underlying writer belongs to the caller.
+            }
+        }
+
+        /**
+         * Forwards to the real reader after the opening brace and the
+         * discriminator have been consumed; the first {@link #beginObject()}
+         * is therefore answered virtually.
+         */
+        private static final class ObjectBodyJsonReader extends JsonReader {
+
+            private final JsonReader in;
+            private boolean opened;
+
+            ObjectBodyJsonReader(JsonReader in) {
+                super(UNREADABLE);
+                this.in = in;
+                setStrictness(in.getStrictness());
+            }
+
+            private void requireOpened() {
+                if (!opened) {
+                    throw new IllegalStateException("Expected BEGIN_OBJECT at " + in.getPath());
+                }
+            }
+
+            @Override
+            public void beginObject() throws IOException {
+                if (!opened) {
+                    opened = true;
+                    return;
+                }
+                in.beginObject();
+            }
+
+            @Override
+            public JsonToken peek() throws IOException {
+                return opened ? in.peek() : JsonToken.BEGIN_OBJECT;
+            }
+
+            @Override
+            public void skipValue() throws IOException {
+                if (!opened) {
+                    opened = true;
+                    while (in.hasNext()) {
+                        in.nextName();
+                        in.skipValue();
+                    }
+                    in.endObject();
+                    return;
+                }
+                in.skipValue();
+            }
+
+            @Override public void endObject() throws IOException { requireOpened(); in.endObject(); }
+            @Override public void beginArray() throws IOException { requireOpened(); in.beginArray(); }
+            @Override public void endArray() throws IOException { requireOpened(); in.endArray(); }
+            @Override public boolean hasNext() throws IOException { requireOpened(); return in.hasNext(); }
+            @Override public String nextName() throws IOException { requireOpened(); return in.nextName(); }
+            @Override public String nextString() throws IOException { requireOpened(); return in.nextString(); }
+            @Override public boolean nextBoolean() throws IOException { requireOpened(); return in.nextBoolean(); }
+            @Override public void nextNull() throws IOException { requireOpened(); in.nextNull(); }
+            @Override public double nextDouble() throws IOException { requireOpened(); return in.nextDouble(); }
+            @Override public long nextLong() throws IOException { requireOpened(); return in.nextLong(); }
+            @Override public int nextInt() throws IOException { requireOpened(); return in.nextInt(); }
+            @Override public String getPath() { return in.getPath(); }
+            @Override public String getPreviousPath() { return in.getPreviousPath(); }
+            @Override public String toString() { return in.toString(); }
+
+            @Override
+            public void close() {
+                // The underlying reader belongs to the caller.
+            }
+        }
     }
 }
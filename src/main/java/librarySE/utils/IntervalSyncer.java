@@ -0,0 +1,87 @@
+package librarySE.utils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background syncer for files written with {@link Durability#INTERVAL}.
+ * <p>
+ * Written files are remembered and forced to disk, together with their
+ * directory, on a fixed interval and once more at JVM shutdown.
+ * </p>
+ *
+ * @author Eman
+ */
+final class IntervalSyncer {
+
+    /** Files written since the last sync; guarded by {@code this}. */
+    private final Set<Path> dirty = new LinkedHashSet<>();
+
+    /**
+     * @param intervalMillis sync interval
+     */
+    IntervalSyncer(long intervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "durability-syncer");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1, intervalMillis);
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::syncQuietly, "durability-shutdown"));
+    }
+
+    /** @param file file that was just renamed into place */
+    synchronized void markDirty(Path file) {
+        dirty.add(file.toAbsolutePath());
+    }
+
+    /** @return number of files waiting to be forced */
+    synchronized int pending() {
+        return dirty.size();
+    }
+
+    /**
+     * Forces every dirty file and its directory to disk.
+     *
+     * @throws IOException if a file cannot be forced; it stays dirty
+     */
+    void sync() throws IOException {
+        Set<Path> batch;
+        synchronized (this) {
+            batch = new LinkedHashSet<>(dirty);
+            dirty.clear();
+        }
+        IOException failure = null;
+        Set<Path> directories = new LinkedHashSet<>();
+        for (Path file : batch) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                ch.force(true);
+                directories.add(file.getParent());
+            } catch (NoSuchFileException e) {
+                // Replaced or deleted meanwhile; a newer write re-marks it.
+            } catch (IOException e) {
+                markDirty(file);
+                if (failure == null) failure = e;
+            }
+        }
+        for (Path dir : directories) FileUtils.forceDirectory(dir);
+        if (failure != null) throw failure;
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (IOException e) {
+            LoggerUtils.log("persistence_log.txt", "Interval sync failed → " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package librarySE.utils;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+/**
+ * Field readers and writers for the hand-written JSON adapters of the domain
+ * types ({@code readJson}/{@code writeJson} on items, users, borrow records and
+ * waitlist entries, registered in {@link FileUtils}).
+ * <p>
+ * The encodings match what Gson's reflective adapters produce, so files
+ * written either way are interchangeable:
+ * </p>
+ * <ul>
+ *     <li><b>UUIDs</b> and <b>enums</b> – their string form;</li>
+ *     <li><b>Money</b> – a JSON number with the exact digits of the {@link BigDecimal};</li>
+ *     <li><b>Dates</b> – ISO-8601 strings ({@code 2025-01-31}, {@code 2025-01-31T00:00:00}).</li>
+ * </ul>
+ * <p>
+ * A {@code null} value is skipped together with its name, as Gson does without
+ * {@code serializeNulls}, whatever the writer's own setting. Readers return
+ * {@code null} (or {@code 0} / {@code false}) for a JSON {@code null}.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class JsonFields {
+
+    private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ISO_LOCAL_DATE;
+
+    private JsonFields() {}
+
+    // =====================================================================
+    // Writing
+    // =====================================================================
+
+    public static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value);
+    }
+
+    public static void writeInt(JsonWriter out, String name, int value) throws IOException {
+        out.name(name).value(value);
+    }
+
+    public static void writeBoolean(JsonWriter out, String name, boolean value) throws IOException {
+        out.name(name).value(value);
+    }
+
+    public static void writeUuid(JsonWriter out, String name, UUID value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value.toString());
+    }
+
+    public static void writeMoney(JsonWriter out, String name, BigDecimal value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value);
+    }
+
+    public static void writeEnum(JsonWriter out, String name, Enum<?> value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value.name());
+    }
+
+    public static void writeDate(JsonWriter out, String name, LocalDate value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value.format(DATE_FMT));
+    }
+
+    public static void writeDateTime(JsonWriter out, String name, LocalDateTime value) throws IOException {
+        if (value == null) return;
+        out.name(name).value(value.format(DATE_TIME_FMT));
+    }
+
+    // =====================================================================
+    // Reading
+    // =====================================================================
+
+    /** Reads a string; numbers and booleans are accepted in their text form. */
+    public static String readString(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        if (token == JsonToken.BOOLEAN) return Boolean.toString(in.nextBoolean());
+        return in.nextString();
+    }
+
+    public static int readInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    public static boolean readBoolean(JsonReader in) throws IOException {
+        JsonToken token = in.peek();
+        if (token == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        if (token == JsonToken.STRING) return Boolean.parseBoolean(in.nextString());
+        return in.nextBoolean();
+    }
+
+    public static UUID readUuid(JsonReader in) throws IOException {
+        String text = readString(in);
+        if (text == null) return null;
+        try {
+            return UUID.fromString(text);
+        } catch (IllegalArgumentException e) {
+            throw new JsonSyntaxException("Invalid UUID '" + text + "' at " + in.getPreviousPath(), e);
+        }
+    }
+
+    public static BigDecimal readMoney(JsonReader in) throws IOException {
+        String text = readString(in);
+        if (text == null) return null;
+        try {
+            return new BigDecimal(text);
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException("Invalid amount '" + text + "' at " + in.getPreviousPath(), e);
+        }
+    }
+
+    /** Reads an enum constant by name; an unknown name reads as {@code null}. */
+    public static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> type) throws IOException {
+        String text = readString(in);
+        if (text == null) return null;
+        try {
+            return Enum.valueOf(type, text);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static LocalDate readDate(JsonReader in) throws IOException {
+        String text = readString(in);
+        if (text == null) return null;
+        try {
+            return LocalDate.parse(text, DATE_FMT);
+        } catch (DateTimeParseException e) {
+            throw new JsonSyntaxException("Invalid date '" + text + "' at " + in.getPreviousPath(), e);
+        }
+    }
+
+    public static LocalDateTime readDateTime(JsonReader in) throws IOException {
+        String text = readString(in);
+        if (text == null) return null;
+        try {
+            return LocalDateTime.parse(text, DATE_TIME_FMT);
+        } catch (DateTimeParseException e) {
+            throw new JsonSyntaxException("Invalid date-time '" + text + "' at " + in.getPreviousPath(), e);
+        }
+    }
+}
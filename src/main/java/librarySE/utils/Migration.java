@@ -0,0 +1,185 @@
+package librarySE.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Upgrade of the records of one kind of data file from one format version to
+ * the next, registered with {@link DataSchema#register(Migration)}.
+ * <p>
+ * A migration rewrites one record at a time as a stream of tokens, from a
+ * {@link JsonReader} to a {@link JsonWriter}, without building the record as
+ * an object or a tree. That keeps it independent of the current domain
+ * classes (which no longer match the old format) and lets
+ * {@link SchemaMigrator} upgrade files of any size in constant memory.
+ * </p>
+ *
+ * <h3>Example Usage</h3>
+ * <pre>{@code
+ * DataSchema.register(Migration.renameField(DataSchema.Kind.USER, 1, "mail", "email"));
+ * }</pre>
+ *
+ * @param kind        kind of data file the migration applies to
+ * @param fromVersion version it upgrades; the result is {@code fromVersion + 1}
+ * @param transform   rewrites one record
+ * @author Eman
+ */
+public record Migration(DataSchema.Kind kind, int fromVersion, Transform transform) {
+
+    /** Rewrites one record. */
+    @FunctionalInterface
+    public interface Transform {
+
+        /**
+         * Reads exactly one value (the old record, possibly {@code null}) and
+         * writes exactly one value (the new record).
+         *
+         * @param in  reader positioned at the record
+         * @param out writer receiving the upgraded record
+         * @throws IOException if reading or writing fails
+         */
+        void apply(JsonReader in, JsonWriter out) throws IOException;
+    }
+
+    private static final Gson PLAIN = new Gson();
+
+    public Migration {
+        Objects.requireNonNull(kind, "kind");
+        Objects.requireNonNull(transform, "transform");
+        if (fromVersion < 1) throw new IllegalArgumentException("fromVersion must be at least 1");
+    }
+
+    /**
+     * Renames a field of the records.
+     *
+     * @param kind        kind of data file
+     * @param fromVersion version it upgrades
+     * @param oldName     name in version {@code fromVersion}
+     * @param newName     name in the next version
+     * @return the migration
+     */
+    public static Migration renameField(DataSchema.Kind kind, int fromVersion, String oldName, String newName) {
+        return new Migration(kind, fromVersion, (in, out) -> eachField(in, out, (name, i, o) -> {
+            o.name(name.equals(oldName) ? newName : name);
+            copy(i, o);
+        }, null));
+    }
+
+    /**
+     * Removes a field from the records.
+     *
+     * @param kind        kind of data file
+     * @param fromVersion version it upgrades
+     * @param name        field to drop
+     * @return the migration
+     */
+    public static Migration removeField(DataSchema.Kind kind, int fromVersion, String name) {
+        return new Migration(kind, fromVersion, (in, out) -> eachField(in, out, (field, i, o) -> {
+            if (field.equals(name)) {
+                i.skipValue();
+            } else {
+                o.name(field);
+                copy(i, o);
+            }
+        }, null));
+    }
+
+    /**
+     * Adds a field to the records that do not have it yet.
+     *
+     * @param kind         kind of data file
+     * @param fromVersion  version it upgrades
+     * @param name         field to add
+     * @param defaultValue its value in upgraded records
+     * @return the migration
+     */
+    public static Migration addField(DataSchema.Kind kind, int fromVersion, String name, JsonElement defaultValue) {
+        Objects.requireNonNull(defaultValue, "defaultValue");
+        return new Migration(kind, fromVersion, (in, out) -> {
+            boolean[] present = new boolean[1];
+            eachField(in, out, (field, i, o) -> {
+                if (field.equals(name)) present[0] = true;
+                o.name(field);
+                copy(i, o);
+            }, o -> {
+                if (!present[0]) {
+                    o.name(name);
+                    PLAIN.toJson(defaultValue, o);
+                }
+            });
+        });
+    }
+
+    /** Handles one field of a record; the reader is positioned at its value. */
+    @FunctionalInterface
+    private interface FieldTransform {
+        void apply(String name, JsonReader in, JsonWriter out) throws IOException;
+    }
+
+    /** Writes additional fields before a record is closed. */
+    @FunctionalInterface
+    private interface Appender {
+        void apply(JsonWriter out) throws IOException;
+    }
+
+    /**
+     * Passes every field of an object record through {@code field}; other
+     * values (e.g. {@code null} records) are copied unchanged.
+     */
+    private static void eachField(JsonReader in, JsonWriter out, FieldTransform field, Appender end)
+            throws IOException {
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            copy(in, out);
+            return;
+        }
+        in.beginObject();
+        out.beginObject();
+        while (in.hasNext()) field.apply(in.nextName(), in, out);
+        if (end != null) end.apply(out);
+        in.endObject();
+        out.endObject();
+    }
+
+    /**
+     * Copies one value token by token. Numbers keep their exact digits.
+     *
+     * @param in  reader positioned at the value
+     * @param out destination
+     * @throws IOException if reading or writing fails
+     */
+    public static void copy(JsonReader in, JsonWriter out) throws IOException {
+        switch (in.peek()) {
+            case BEGIN_ARRAY -> {
+                in.beginArray();
+                out.beginArray();
+                while (in.hasNext()) copy(in, out);
+                in.endArray();
+                out.endArray();
+            }
+            case BEGIN_OBJECT -> {
+                in.beginObject();
+                out.beginObject();
+                while (in.hasNext()) {
+                    out.name(in.nextName());
+                    copy(in, out);
+                }
+                in.endObject();
+                out.endObject();
+            }
+            case STRING -> out.value(in.nextString());
+            case NUMBER -> out.jsonValue(in.nextString());
+            case BOOLEAN -> out.value(in.nextBoolean());
+            case NULL -> {
+                in.nextNull();
+                out.nullValue();
+            }
+            default -> throw new IllegalStateException("Unexpected " + in.peek() + " at " + in.getPath());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package librarySE.utils;
+
+/**
+ * Callbacks for persisted types that must normalize their state around
+ * JSON (de)serialization.
+ * <p>
+ * Gson does not run constructors when reading, so derived or legacy fields
+ * cannot be fixed up there. {@link FileUtils} calls {@link #afterRead()} on every
+ * deserialized instance and {@link #beforeWrite()} before serializing one.
+ * </p>
+ *
+ * @author Eman
+ */
+public interface PersistenceHooks {
+
+    /** Called after the instance has been populated from JSON. */
+    default void afterRead() { }
+
+    /** Called right before the instance is serialized to JSON. */
+    default void beforeWrite() { }
+}
@@ -0,0 +1,249 @@
+package librarySE.utils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Per-record CRC32C checksums of a JSON array file.
+ * <p>
+ * The checksums are computed over the text of each top-level array element
+ * while it streams through {@link #tee(Writer)} or {@link #tee(Reader)}.
+ * Whitespace outside strings is ignored, so the pretty and compact encodings
+ * ({@link StorageFormat}) of the same records have the same checksums, and the
+ * JSON file itself is not changed.
+ * </p>
+ * <p>
+ * {@link FileUtils} stores them in a sidecar file ({@code items.json.crc}) next
+ * to the JSON file:
+ * </p>
+ * <pre>
+ * "LSCK" | version (u8) | JSON size (int64) | JSON mtime (int64) | count (int32) | CRC32C (int32) x count
+ * </pre>
+ * <p>
+ * The sidecar records the size and modification time
+ * of the JSON file and is ignored once they no longer match (for example after
+ * the file was edited by hand).
+ * </p>
+ *
+ * @author Eman
+ */
+final class RecordChecksums {
+
+    private static final byte[] MAGIC = {'L', 'S', 'C', 'K'};
+    private static final byte VERSION = 1;
+
+    private static final int START = 0;
+    private static final int IN_ARRAY = 1;
+    private static final int DONE = 2;
+
+    private final CRC32C crc = new CRC32C();
+    private final byte[] pending = new byte[8192];
+    private int pendingLength;
+
+    private int state = START;
+    private int depth;
+    private boolean inString;
+    private boolean escape;
+    private boolean inElement;
+
+    private int[] checksums = new int[16];
+    private int count;
+
+    /** @return sidecar path holding the checksums of {@code file} */
+    static Path sidecarOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".crc");
+    }
+
+    /**
+     * @return checksums of the elements completed so far, in array order
+     */
+    int[] checksums() {
+        return Arrays.copyOf(checksums, count);
+    }
+
+    /**
+     * Wraps a writer so that every character written is also checksummed.
+     *
+     * @param out destination writer
+     * @return writer forwarding to {@code out}
+     */
+    Writer tee(Writer out) {
+        return new FilterWriter(out) {
+            @Override
+            public void write(int c) throws IOException {
+                update((char) c);
+                out.write(c);
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                for (int i = off; i < off + len; i++) update(cbuf[i]);
+                out.write(cbuf, off, len);
+            }
+
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                for (int i = off; i < off + len; i++) update(str.charAt(i));
+                out.write(str, off, len);
+            }
+        };
+    }
+
+    /**
+     * Wraps a reader so that every character read is also checksummed.
+     *
+     * @param in source reader
+     * @return reader forwarding from {@code in}
+     */
+    Reader tee(Reader in) {
+        return new FilterReader(in) {
+            @Override
+            public int read() throws IOException {
+                int c = in.read();
+                if (c >= 0) update((char) c);
+                return c;
+            }
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = in.read(cbuf, off, len);
+                for (int i = off; i < off + n; i++) update(cbuf[i]);
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                char[] buf = new char[(int) Math.min(n, 8192)];
+                int read = read(buf, 0, buf.length);
+                return Math.max(read, 0);
+            }
+        };
+    }
+
+    // =====================================================================
+    // Sidecar file
+    // =====================================================================
+
+    /**
+     * Writes the sidecar of a JSON file that has just been written. Failures
+     * only remove the sidecar: the records are then read without verification.
+     *
+     * @param file      JSON file
+     * @param checksums checksums of its records
+     */
+    static void write(Path file, int[] checksums) {
+        Path sidecar = sidecarOf(file);
+        Path tmp = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(Files.size(file));
+                out.writeLong(Files.getLastModifiedTime(file).toMillis());
+                out.writeInt(checksums.length);
+                for (int c : checksums) out.writeInt(c);
+            }
+            Files.move(tmp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(tmp);
+                Files.deleteIfExists(sidecar);
+            } catch (IOException ignored) {
+                // A stale sidecar is rejected by read() anyway.
+            }
+        }
+    }
+
+    /**
+     * Reads the sidecar of a JSON file, if it describes the file's current content.
+     *
+     * @param file JSON file
+     * @return stored checksums, or {@code null} if there is no current sidecar
+     */
+    static int[] read(Path file) {
+        Path sidecar = sidecarOf(file);
+        if (!Files.exists(sidecar)) return null;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(sidecar)))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || in.readByte() != VERSION) return null;
+            if (in.readLong() != Files.size(file)
+                    || in.readLong() != Files.getLastModifiedTime(file).toMillis()) {
+                return null;
+            }
+            int n = in.readInt();
+            if (n < 0 || n > Files.size(file)) return null;
+            int[] checksums = new int[n];
+            for (int i = 0; i < n; i++) checksums[i] = in.readInt();
+            return checksums;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // =====================================================================
+    // Scanner
+    // =====================================================================
+
+    /** Advances the element scanner by one character. */
+    private void update(char c) {
+        if (inString) {
+            put(c);
+            if (escape) escape = false;
+            else if (c == '\\') escape = true;
+            else if (c == '"') inString = false;
+            return;
+        }
+        if (c == ' ' || c == '\n' || c == '\r' || c == '\t') return;
+
+        if (state != IN_ARRAY) {
+            state = (state == START && c == '[') ? IN_ARRAY : DONE;
+            return;
+        }
+        if (depth == 0 && (c == ',' || c == ']')) {
+            endElement();
+            if (c == ']') state = DONE;
+            return;
+        }
+
+        put(c);
+        inElement = true;
+        switch (c) {
+            case '{', '[' -> depth++;
+            case '}', ']' -> depth--;
+            case '"' -> inString = true;
+            default -> { }
+        }
+    }
+
+    private void put(char c) {
+        if (pendingLength > pending.length - 3) flush();
+        if (c < 0x80) {
+            pending[pendingLength++] = (byte) c;
+        } else {
+            pending[pendingLength++] = (byte) 0xFF;
+            pending[pendingLength++] = (byte) (c >>> 8);
+            pending[pendingLength++] = (byte) c;
+        }
+    }
+
+    private void flush() {
+        crc.update(pending, 0, pendingLength);
+        pendingLength = 0;
+    }
+
+    private void endElement() {
+        if (!inElement) return;
+        flush();
+        if (count == checksums.length) checksums = Arrays.copyOf(checksums, count * 2);
+        checksums[count++] = (int) crc.getValue();
+        crc.reset();
+        inElement = false;
+    }
+}
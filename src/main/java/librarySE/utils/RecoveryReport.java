@@ -0,0 +1,62 @@
+package librarySE.utils;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Outcome of recovering a damaged data file or journal.
+ * <p>
+ * Reports are appended to {@code recovery_log.txt} when published and kept
+ * until {@link #drain()} is called, so startup can show what was repaired.
+ * </p>
+ *
+ * @param file        the damaged file
+ * @param problem     what was wrong (e.g. "checksum mismatch in 2 records")
+ * @param kept        records kept from the damaged file
+ * @param restored    records restored from a backup
+ * @param dropped     damaged records no backup record could be matched to
+ * @param quarantined where the damaged content was moved, or {@code null}
+ * @param source      backup the restored records came from, or {@code null}
+ * @param took        time spent on the recovery
+ *
+ * @author Eman
+ */
+public record RecoveryReport(Path file, String problem, int kept, int restored, int dropped,
+                             Path quarantined, String source, Duration took) {
+
+    private static final ConcurrentLinkedQueue<RecoveryReport> PENDING = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Logs a report and keeps it for {@link #drain()}.
+     *
+     * @param report report to publish
+     */
+    public static void publish(RecoveryReport report) {
+        PENDING.add(report);
+        LoggerUtils.log("recovery_log.txt", report.toString());
+    }
+
+    /**
+     * @return reports published since the last call, oldest first
+     */
+    public static List<RecoveryReport> drain() {
+        List<RecoveryReport> reports = new ArrayList<>();
+        RecoveryReport r;
+        while ((r = PENDING.poll()) != null) reports.add(r);
+        return reports;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder()
+                .append("Recovered ").append(file.getFileName())
+                .append(" (").append(problem).append("): kept ").append(kept);
+        if (restored > 0) sb.append(", restored ").append(restored).append(" from ").append(source);
+        if (dropped > 0) sb.append(", dropped ").append(dropped).append(" matching no backup record");
+        if (quarantined != null) sb.append(", damaged content moved to ").append(quarantined.getFileName());
+        return sb.append(", took ").append(took.toMillis()).append(" ms").toString();
+    }
+}
@@ -0,0 +1,425 @@
+package librarySE.utils;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Upgrades data files to the current format version by running their
+ * registered {@link Migration}s (see {@link DataSchema}).
+ * <p>
+ * The file is read and rewritten one record at a time, so memory use does not
+ * depend on its size. The result is written next to the file
+ * ({@code items.json.migrating}) and renamed over it once complete:
+ * </p>
+ * <ul>
+ *     <li><b>progress</b> – every {@code checkpointEvery} records (and at the
+ *         end) a {@link Progress} with the records done and bytes read is
+ *         reported;</li>
+ *     <li><b>resume</b> – at the same points the output is forced to disk and
+ *         its length recorded in {@code items.json.migrating.ckpt}. If the
+ *         upgrade is interrupted, the next run over the unchanged file truncates
+ *         the output to the last checkpoint, skips the records already
+ *         upgraded and continues from there.</li>
+ * </ul>
+ * <p>
+ * The upgraded file is plain JSON with one record per line; the next regular
+ * write applies the configured {@link StorageFormat} again. Its record
+ * checksums ({@link RecordChecksums}) are dropped and rewritten with it.
+ * Journals ({@code .journal}) are not upgraded: compact them (by shutting the
+ * application down cleanly) before installing a build with new migrations.
+ * </p>
+ *
+ * <pre>
+ * java librarySE.utils.SchemaMigrator [dir]
+ * </pre>
+ * <p>
+ * upgrades the data files in {@code dir} (by default {@code library_data})
+ * with progress on standard output. Stop the application first.
+ * </p>
+ *
+ * @author Eman
+ */
+public final class SchemaMigrator {
+
+    /**
+     * Progress of one upgrade.
+     *
+     * @param file       file being upgraded
+     * @param records    records upgraded so far
+     * @param bytesRead  bytes of the file read so far
+     * @param totalBytes size of the file
+     */
+    public record Progress(Path file, long records, long bytesRead, long totalBytes) {
+
+        /** @return share of the file read, from 0 to 1 */
+        public double fraction() {
+            return totalBytes == 0 ? 1 : Math.min(1.0, (double) bytesRead / totalBytes);
+        }
+    }
+
+    /**
+     * Outcome of {@link #migrate}.
+     *
+     * @param file        the data file
+     * @param kind        kind of entity it holds
+     * @param fromVersion version before the upgrade
+     * @param toVersion   version after the upgrade; equal to {@code fromVersion} if it was current
+     * @param records     records in the file (0 if nothing was upgraded)
+     * @param resumedAt   records taken over from an interrupted run
+     * @param took        duration of this run
+     */
+    public record Result(Path file, DataSchema.Kind kind, int fromVersion, int toVersion,
+                         long records, long resumedAt, Duration took) {
+
+        /** @return {@code true} if the file was rewritten */
+        public boolean upgraded() {
+            return toVersion != fromVersion;
+        }
+    }
+
+    /** Data files of the library and the kind of entity each holds. */
+    private static final Map<String, DataSchema.Kind> DATA_FILES = new LinkedHashMap<>();
+
+    static {
+        DATA_FILES.put("items.json", DataSchema.Kind.ITEM);
+        DATA_FILES.put("users.json", DataSchema.Kind.USER);
+        DATA_FILES.put("borrow_records.json", DataSchema.Kind.BORROW_RECORD);
+        DATA_FILES.put("waitlist.json", DataSchema.Kind.WAITLIST_ENTRY);
+    }
+
+    /** Directory of the partitioned borrow history, whose files all hold borrow records. */
+    private static final String HISTORY_DIR = "borrow_history";
+
+    private final int checkpointEvery;
+    private final Consumer<Progress> progress;
+
+    /**
+     * Migrator with {@code schema.migration.checkpointEvery} (default 10000)
+     * that reports progress to {@code migration_log.txt}.
+     */
+    public SchemaMigrator() {
+        this(Config.getInt("schema.migration.checkpointEvery", 10_000),
+                p -> LoggerUtils.log("migration_log.txt", "Upgrading " + p.file().getFileName() + ": "
+                        + p.records() + " records, " + Math.round(p.fraction() * 100) + "%"));
+    }
+
+    /**
+     * @param checkpointEvery records between checkpoints; at least 1
+     * @param progress        receives the progress at every checkpoint and at the end
+     */
+    public SchemaMigrator(int checkpointEvery, Consumer<Progress> progress) {
+        if (checkpointEvery < 1) throw new IllegalArgumentException("checkpointEvery must be at least 1");
+        this.checkpointEvery = checkpointEvery;
+        this.progress = Objects.requireNonNull(progress, "progress");
+    }
+
+    /**
+     * Upgrades a data file to the current version of its kind, resuming an
+     * interrupted upgrade of the same file. A missing, empty or current file is
+     * left untouched.
+     *
+     * @param file data file
+     * @param kind kind of entity it holds
+     * @return what was done
+     * @throws SchemaVersionException   if the file is newer than this build
+     * @throws IllegalArgumentException if the file's header names another kind
+     * @throws IOException              if reading or writing fails; the file is
+     *                                  left intact and the upgrade can be resumed
+     */
+    public Result migrate(Path file, DataSchema.Kind kind) throws IOException {
+        long start = System.nanoTime();
+        int target = DataSchema.currentVersion(kind);
+        if (!Files.exists(file) || Files.size(file) == 0) return unchanged(file, kind, target, start);
+
+        long totalBytes = Files.size(file);
+        Path work = file.resolveSibling(file.getFileName() + ".migrating");
+        Path checkpoint = file.resolveSibling(file.getFileName() + ".migrating.ckpt");
+
+        try (CountingInputStream counted = new CountingInputStream(Files.newInputStream(file));
+             JsonReader in = new JsonReader(open(counted))) {
+            JsonToken first = in.peek();
+            if (first == JsonToken.NULL) return unchanged(file, kind, target, start);
+            in.beginArray();
+            DataSchema.Header header = DataSchema.readHeader(in);
+            int version = header == null ? 1 : header.version();
+            if (header != null && header.kind() != kind)
+                throw new IllegalArgumentException(file + " holds " + header.kind().label()
+                        + " records, not " + kind.label());
+            if (version > target) throw new SchemaVersionException(file, kind, version, target);
+            if (version == target) return unchanged(file, kind, target, start);
+
+            List<Migration> chain = DataSchema.migrationsFrom(kind, version);
+            Checkpoint resume = Checkpoint.read(checkpoint, file, version, target);
+            long records = 0;
+            try (FileChannel channel = FileChannel.open(work, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (resume != null && channel.size() >= resume.offset()) {
+                    channel.truncate(resume.offset());
+                    channel.position(resume.offset());
+                    for (; records < resume.records() && in.hasNext(); records++) in.skipValue();
+                } else {
+                    resume = null;
+                    channel.truncate(0);
+                }
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        Channels.newOutputStream(channel), StandardCharsets.UTF_8), 64 * 1024);
+                if (resume == null) {
+                    out.write("[\n  ");
+                    out.write(quote(DataSchema.currentHeader(kind).text()));
+                }
+
+                while (in.hasNext()) {
+                    out.write(",\n  ");
+                    upgrade(in, out, chain);
+                    if (++records % checkpointEvery == 0) {
+                        out.flush();
+                        channel.force(false);
+                        new Checkpoint(file, version, target, records, channel.position()).write(checkpoint);
+                        progress.accept(new Progress(file, records, counted.count(), totalBytes));
+                    }
+                }
+                in.endArray();
+                out.write("\n]\n");
+                out.flush();
+                channel.force(true);
+            }
+
+            in.close();
+            moveAtomically(work, file);
+            Files.deleteIfExists(checkpoint);
+            Files.deleteIfExists(RecordChecksums.sidecarOf(file));
+            FileUtils.forceDirectory(file.toAbsolutePath().getParent());
+            progress.accept(new Progress(file, records, totalBytes, totalBytes));
+            return new Result(file, kind, version, target, records,
+                    resume == null ? 0 : resume.records(), Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private static Result unchanged(Path file, DataSchema.Kind kind, int version, long start) {
+        return new Result(file, kind, version, version, 0, 0, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    /**
+     * Runs one record through the migrations. A single migration streams
+     * straight to the output; with several, each intermediate form of the record
+     * is buffered, which bounds memory by the size of one record.
+     */
+    private static void upgrade(JsonReader in, Writer out, List<Migration> chain) throws IOException {
+        JsonReader source = in;
+        for (int i = 0; i < chain.size(); i++) {
+            boolean last = i == chain.size() - 1;
+            StringWriter buffer = last ? null : new StringWriter();
+            JsonWriter writer = new JsonWriter(last ? out : buffer);
+            chain.get(i).transform().apply(source, writer);
+            writer.flush();
+            if (!last) source = new JsonReader(new StringReader(buffer.toString()));
+        }
+    }
+
+    /**
+     * Upgrades a single record held as JSON text, for stores that keep one
+     * record per line rather than a data file.
+     *
+     * @param json  record in an older format version
+     * @param chain migrations from that version, from {@link DataSchema#migrationsFrom}
+     * @return the record in the current format
+     * @throws UncheckedIOException if a migration cannot read the record
+     */
+    public static String upgrade(String json, List<Migration> chain) {
+        if (chain.isEmpty()) return json;
+        StringWriter out = new StringWriter();
+        try {
+            upgrade(new JsonReader(new StringReader(json)), out, chain);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString();
+    }
+
+    private static String quote(String text) throws IOException {
+        StringWriter s = new StringWriter();
+        new JsonWriter(s).value(text).flush();
+        return s.toString();
+    }
+
+    /** Opens the JSON text of a file, decompressing it if it is GZIP ({@link StorageFormat#COMPACT_GZIP}). */
+    private static Reader open(InputStream raw) throws IOException {
+        InputStream in = new BufferedInputStream(raw, 64 * 1024);
+        in.mark(2);
+        boolean gzip = in.read() == (GZIPInputStream.GZIP_MAGIC & 0xFF)
+                && in.read() == (GZIPInputStream.GZIP_MAGIC >>> 8);
+        in.reset();
+        if (gzip) in = new GZIPInputStream(in, 64 * 1024);
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Counts the bytes read from the file, for progress. */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long count() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+
+    /**
+     * Position of an interrupted upgrade. It only applies to the same upgrade
+     * of the same, unchanged file.
+     */
+    private record Checkpoint(long sourceSize, long sourceModified, int from, int to, long records, long offset) {
+
+        Checkpoint(Path file, int from, int to, long records, long offset) throws IOException {
+            this(Files.size(file), Files.getLastModifiedTime(file).toMillis(), from, to, records, offset);
+        }
+
+        void write(Path checkpoint) throws IOException {
+            Properties p = new Properties();
+            p.setProperty("sourceSize", Long.toString(sourceSize));
+            p.setProperty("sourceModified", Long.toString(sourceModified));
+            p.setProperty("from", Integer.toString(from));
+            p.setProperty("to", Integer.toString(to));
+            p.setProperty("records", Long.toString(records));
+            p.setProperty("offset", Long.toString(offset));
+            Path tmp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+            try (Writer w = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                p.store(w, "Schema migration checkpoint");
+            }
+            moveAtomically(tmp, checkpoint);
+        }
+
+        /** @return the checkpoint of this upgrade of {@code file}, or {@code null} if there is none */
+        static Checkpoint read(Path checkpoint, Path file, int from, int to) throws IOException {
+            if (!Files.exists(checkpoint)) return null;
+            Properties p = new Properties();
+            try (Reader r = Files.newBufferedReader(checkpoint, StandardCharsets.UTF_8)) {
+                p.load(r);
+                Checkpoint c = new Checkpoint(Long.parseLong(p.getProperty("sourceSize")),
+                        Long.parseLong(p.getProperty("sourceModified")),
+                        Integer.parseInt(p.getProperty("from")), Integer.parseInt(p.getProperty("to")),
+                        Long.parseLong(p.getProperty("records")), Long.parseLong(p.getProperty("offset")));
+                Checkpoint current = new Checkpoint(file, from, to, 0, 0);
+                boolean same = c.sourceSize == current.sourceSize && c.sourceModified == current.sourceModified
+                        && c.from == from && c.to == to;
+                return same ? c : null;
+            } catch (NumberFormatException | NullPointerException e) {
+                return null; // unreadable checkpoint: start over
+            }
+        }
+    }
+
+    // =====================================================================
+    // Command line
+    // =====================================================================
+
+    public static void main(String[] args) {
+        Path dir = args.length > 0 ? Paths.get(args[0]) : Paths.get("library_data");
+        System.exit(run(dir, System.out, System.err));
+    }
+
+    /**
+     * Upgrades every data file in a directory, including the partitioned
+     * borrow history, printing progress.
+     *
+     * @param dir data directory
+     * @param out standard output
+     * @param err error output
+     * @return process exit code
+     */
+    static int run(Path dir, PrintStream out, PrintStream err) {
+        SchemaMigrator migrator = new SchemaMigrator(Config.getInt("schema.migration.checkpointEvery", 10_000),
+                p -> out.printf("  %s: %,d records, %d%%%n", p.file().getFileName(), p.records(),
+                        Math.round(p.fraction() * 100)));
+        try {
+            for (Map.Entry<Path, DataSchema.Kind> f : dataFiles(dir).entrySet()) {
+                Result r = migrator.migrate(f.getKey(), f.getValue());
+                if (!r.upgraded()) {
+                    out.printf("%s: version %d, up to date%n", f.getKey().getFileName(), r.toVersion());
+                } else {
+                    out.printf("%s: version %d -> %d, %,d records%s in %d ms%n", f.getKey().getFileName(),
+                            r.fromVersion(), r.toVersion(), r.records(),
+                            r.resumedAt() > 0 ? " (resumed at " + r.resumedAt() + ")" : "", r.took().toMillis());
+                }
+            }
+            return 0;
+        } catch (IOException | RuntimeException e) {
+            err.println("Upgrade failed: " + e.getMessage());
+            return 1;
+        }
+    }
+
+    private static Map<Path, DataSchema.Kind> dataFiles(Path dir) throws IOException {
+        Map<Path, DataSchema.Kind> files = new LinkedHashMap<>();
+        DATA_FILES.forEach((name, kind) -> {
+            Path file = dir.resolve(name);
+            if (Files.exists(file)) files.put(file, kind);
+        });
+        Path history = dir.resolve(HISTORY_DIR);
+        if (Files.isDirectory(history)) {
+            List<Path> partitions = new ArrayList<>();
+            try (Stream<Path> list = Files.list(history)) {
+                list.filter(p -> p.getFileName().toString().endsWith(".json")).sorted().forEach(partitions::add);
+            }
+            partitions.forEach(p -> files.put(p, DataSchema.Kind.BORROW_RECORD));
+        }
+        return files;
+    }
+}
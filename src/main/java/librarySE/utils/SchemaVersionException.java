@@ -0,0 +1,74 @@
+package librarySE.utils;
+
+import java.nio.file.Path;
+
+/**
+ * Thrown when a data file is in a format version this build cannot read.
+ * <p>
+ * A file of an <em>older</em> version is normally upgraded by
+ * {@link SchemaMigrator} before it is read; this exception then only surfaces
+ * if the upgrade fails. A file of a <em>newer</em> version was written by a
+ * later build: it is refused rather than read as empty, so its records are
+ * never silently overwritten.
+ * </p>
+ *
+ * @author Eman
+ */
+public class SchemaVersionException extends RuntimeException {
+
+    private final Path file;
+    private final DataSchema.Kind kind;
+    private final int found;
+    private final int supported;
+
+    /**
+     * @param file      the data file
+     * @param kind      kind of entity it holds
+     * @param found     version of the file
+     * @param supported version written by this build
+     */
+    public SchemaVersionException(Path file, DataSchema.Kind kind, int found, int supported) {
+        this(String.valueOf(file), file, kind, found, supported);
+    }
+
+    /**
+     * For records kept outside files, such as database tables.
+     *
+     * @param store     name of the store holding the records
+     * @param kind      kind of entity it holds
+     * @param found     version of the records
+     * @param supported version written by this build
+     */
+    public SchemaVersionException(String store, DataSchema.Kind kind, int found, int supported) {
+        this(store, null, kind, found, supported);
+    }
+
+    private SchemaVersionException(String store, Path file, DataSchema.Kind kind, int found, int supported) {
+        super(store + " holds " + kind.label() + " records in format version " + found
+                + "; this build reads version " + supported);
+        this.file = file;
+        this.kind = kind;
+        this.found = found;
+        this.supported = supported;
+    }
+
+    /** @return the data file; {@code null} if the records are not kept in a file */
+    public Path getFile() {
+        return file;
+    }
+
+    /** @return kind of entity the file holds */
+    public DataSchema.Kind getKind() {
+        return kind;
+    }
+
+    /** @return version of the file */
+    public int getFound() {
+        return found;
+    }
+
+    /** @return version written by this build */
+    public int getSupported() {
+        return supported;
+    }
+}
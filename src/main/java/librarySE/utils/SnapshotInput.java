@@ -0,0 +1,156 @@
+package librarySE.utils;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reader for snapshots written by {@link SnapshotOutput}.
+ * <p>
+ * Every {@code readX} method mirrors the corresponding {@code writeX} method;
+ * values must be read back in exactly the order they were written.
+ * </p>
+ *
+ * <p>Instances are single-use and not thread-safe.</p>
+ *
+ * @author Eman
+ */
+public final class SnapshotInput {
+
+    /** Upper bound for list sizes and string lengths; guards against corrupted data. */
+    private static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * Reads one value, e.g. a list element or a whole snapshot body.
+     *
+     * @param <T> value type
+     */
+    @FunctionalInterface
+    public interface ValueReader<T> {
+        T read(SnapshotInput in) throws IOException;
+    }
+
+    private final DataInput in;
+    private final List<String> dictionary = new ArrayList<>();
+
+    /**
+     * @param in source stream
+     */
+    public SnapshotInput(DataInput in) {
+        this.in = in;
+    }
+
+    /** @return next {@code int} */
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    /** @return next {@code long} */
+    public long readLong() throws IOException {
+        return in.readLong();
+    }
+
+    /** @return next {@code boolean} */
+    public boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    /** @return next {@code byte} */
+    public byte readByte() throws IOException {
+        return in.readByte();
+    }
+
+    /**
+     * @return next dictionary-encoded string, or {@code null}
+     * @throws StreamCorruptedException if the dictionary reference is invalid
+     */
+    public String readString() throws IOException {
+        int code = in.readInt();
+        if (code == SnapshotOutput.NULL) return null;
+        if (code == SnapshotOutput.NEW_STRING) {
+            byte[] bytes = new byte[checkLength(in.readInt())];
+            in.readFully(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionary.add(value);
+            return value;
+        }
+        if (code < 0 || code >= dictionary.size()) {
+            throw new StreamCorruptedException("Invalid string reference " + code);
+        }
+        return dictionary.get(code);
+    }
+
+    /**
+     * @param type enum class
+     * @param <E>  enum type
+     * @return next enum constant, or {@code null}
+     * @throws StreamCorruptedException if the name is not a constant of {@code type}
+     */
+    public <E extends Enum<E>> E readEnum(Class<E> type) throws IOException {
+        String name = readString();
+        if (name == null) return null;
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("Unknown " + type.getSimpleName() + ": " + name);
+        }
+    }
+
+    /** @return next UUID, or {@code null} for the nil UUID */
+    public UUID readUuid() throws IOException {
+        long msb = in.readLong();
+        long lsb = in.readLong();
+        return (msb == 0L && lsb == 0L) ? null : new UUID(msb, lsb);
+    }
+
+    /** @return next date, or {@code null} */
+    public LocalDate readDate() throws IOException {
+        long day = in.readLong();
+        return (day == Long.MIN_VALUE) ? null : LocalDate.ofEpochDay(day);
+    }
+
+    /** @return next date-time, or {@code null} */
+    public LocalDateTime readDateTime() throws IOException {
+        long second = in.readLong();
+        int nano = in.readInt();
+        return (second == Long.MIN_VALUE) ? null : LocalDateTime.ofEpochSecond(second, nano, ZoneOffset.UTC);
+    }
+
+    /** @return next monetary amount, or {@code null} */
+    public BigDecimal readMoney() throws IOException {
+        long unscaled = in.readLong();
+        byte scale = in.readByte();
+        return (scale == SnapshotOutput.NULL_SCALE) ? null : BigDecimal.valueOf(unscaled, scale);
+    }
+
+    /**
+     * Reads a list written by {@link SnapshotOutput#writeList}.
+     *
+     * @param reader element reader
+     * @param <T>    element type
+     * @return mutable list of elements
+     */
+    public <T> List<T> readList(ValueReader<? extends T> reader) throws IOException {
+        int size = checkLength(in.readInt());
+        List<T> values = new ArrayList<>(Math.min(size, 4096));
+        for (int i = 0; i < size; i++) {
+            values.add(reader.read(this));
+        }
+        return values;
+    }
+
+    private static int checkLength(int length) throws StreamCorruptedException {
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new StreamCorruptedException("Invalid length " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,182 @@
+package librarySE.utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writer for the compact binary snapshot format read by {@link SnapshotInput}.
+ * <p>
+ * Values are written with fixed widths wherever possible so that reading a
+ * snapshot needs no parsing:
+ * </p>
+ * <ul>
+ *     <li><b>Strings</b> – dictionary encoded: the first occurrence is written
+ *         as {@link #NEW_STRING}, length and UTF-8 bytes; later occurrences
+ *         only write the dictionary index.</li>
+ *     <li><b>UUIDs</b> – two {@code long}s; {@code null} is the nil UUID.</li>
+ *     <li><b>Dates</b> – epoch day ({@code long}); date-times are written as
+ *         epoch second in UTC ({@code long}) plus nanosecond ({@code int}).</li>
+ *     <li><b>Money</b> – unscaled {@code long} plus a scale byte, so the scale
+ *         of the amount is preserved exactly.</li>
+ * </ul>
+ *
+ * <p>Instances are single-use and not thread-safe.</p>
+ *
+ * @author Eman
+ */
+public final class SnapshotOutput {
+
+    /** Marker for a {@code null} string or value. */
+    static final int NULL = -1;
+
+    /** Marker preceding a string that is not in the dictionary yet. */
+    static final int NEW_STRING = -2;
+
+    /** Scale byte written for a {@code null} amount. */
+    static final byte NULL_SCALE = Byte.MIN_VALUE;
+
+    /**
+     * Writes one value, e.g. a list element or a whole snapshot body.
+     *
+     * @param <T> value type
+     */
+    @FunctionalInterface
+    public interface ValueWriter<T> {
+        void write(SnapshotOutput out, T value) throws IOException;
+    }
+
+    private final DataOutput out;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+
+    /**
+     * @param out destination stream
+     */
+    public SnapshotOutput(DataOutput out) {
+        this.out = out;
+    }
+
+    /** @param value value to write */
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    /** @param value value to write */
+    public void writeLong(long value) throws IOException {
+        out.writeLong(value);
+    }
+
+    /** @param value value to write */
+    public void writeBoolean(boolean value) throws IOException {
+        out.writeBoolean(value);
+    }
+
+    /** @param value value to write */
+    public void writeByte(int value) throws IOException {
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes a dictionary-encoded string.
+     *
+     * @param value string, may be {@code null}
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        Integer index = dictionary.get(value);
+        if (index != null) {
+            out.writeInt(index);
+            return;
+        }
+        dictionary.put(value, dictionary.size());
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(NEW_STRING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes an enum constant by name, so reordering constants does not
+     * break existing snapshots.
+     *
+     * @param value constant, may be {@code null}
+     */
+    public void writeEnum(Enum<?> value) throws IOException {
+        writeString(value == null ? null : value.name());
+    }
+
+    /**
+     * Writes a UUID as two longs.
+     *
+     * @param value UUID, may be {@code null}
+     */
+    public void writeUuid(UUID value) throws IOException {
+        out.writeLong(value == null ? 0L : value.getMostSignificantBits());
+        out.writeLong(value == null ? 0L : value.getLeastSignificantBits());
+    }
+
+    /**
+     * Writes a date as its epoch day.
+     *
+     * @param value date, may be {@code null}
+     */
+    public void writeDate(LocalDate value) throws IOException {
+        out.writeLong(value == null ? Long.MIN_VALUE : value.toEpochDay());
+    }
+
+    /**
+     * Writes a date-time as epoch second (UTC) and nanosecond.
+     *
+     * @param value date-time, may be {@code null}
+     */
+    public void writeDateTime(LocalDateTime value) throws IOException {
+        out.writeLong(value == null ? Long.MIN_VALUE : value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value == null ? 0 : value.getNano());
+    }
+
+    /**
+     * Writes a monetary amount as unscaled value and scale.
+     *
+     * @param value amount, may be {@code null}
+     * @throws IllegalArgumentException if the unscaled value does not fit in a {@code long}
+     *                                  or the scale does not fit in a byte
+     */
+    public void writeMoney(BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeLong(0L);
+            out.writeByte(NULL_SCALE);
+            return;
+        }
+        if (value.unscaledValue().bitLength() > 63
+                || value.scale() <= NULL_SCALE || value.scale() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Amount out of range for snapshot: " + value);
+        }
+        out.writeLong(value.unscaledValue().longValue());
+        out.writeByte(value.scale());
+    }
+
+    /**
+     * Writes a list as its size followed by each element.
+     *
+     * @param values list to write
+     * @param writer element writer
+     * @param <T>    element type
+     */
+    public <T> void writeList(List<T> values, ValueWriter<? super T> writer) throws IOException {
+        out.writeInt(values.size());
+        for (T value : values) {
+            writer.write(this, value);
+        }
+    }
+}
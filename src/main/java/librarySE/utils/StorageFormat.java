@@ -0,0 +1,60 @@
+package librarySE.utils;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * On-disk encoding used by {@link FileUtils#writeJson} for a data file.
+ * <ul>
+ *     <li>{@link #PRETTY} – indented JSON, easy to read and edit by hand;</li>
+ *     <li>{@link #COMPACT_GZIP} – minified JSON streamed through GZIP, several
+ *         times smaller on disk and in backups.</li>
+ * </ul>
+ * <p>
+ * Reading never depends on the configured format: {@link FileUtils#readJson}
+ * recognizes GZIP by its magic bytes, so files written in either format (and
+ * files written before this option existed) always load.
+ * </p>
+ * <p>
+ * The format is configured like {@link Durability}: {@code persistence.format.<name>}
+ * for one file (e.g. {@code persistence.format.items}), then
+ * {@code persistence.format}, then {@link #PRETTY}.
+ * </p>
+ *
+ * @author Eman
+ */
+public enum StorageFormat {
+
+    /** Indented, uncompressed JSON. */
+    PRETTY,
+
+    /** Minified JSON compressed with GZIP. */
+    COMPACT_GZIP;
+
+    /**
+     * Resolves the configured format for a data file.
+     *
+     * @param file data file, e.g. {@code library_data/items.json}
+     * @return configured format; {@link #PRETTY} if unset or invalid
+     */
+    public static StorageFormat forFile(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String stem = (dot > 0) ? name.substring(0, dot) : name;
+        String fallback = Config.get("persistence.format", PRETTY.name());
+        return parse(Config.get("persistence.format." + stem, fallback));
+    }
+
+    /**
+     * @param text format name, case-insensitive
+     * @return parsed format; {@link #PRETTY} if {@code text} is not a format name
+     */
+    public static StorageFormat parse(String text) {
+        if (text == null) return PRETTY;
+        try {
+            return valueOf(text.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return PRETTY;
+        }
+    }
+}
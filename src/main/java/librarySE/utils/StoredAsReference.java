@@ -0,0 +1,28 @@
+package librarySE.utils;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field that refers to an entity owned by another repository.
+ * <p>
+ * {@link FileUtils} never <em>writes</em> such fields; the owning class stores the
+ * referenced entity's id in a separate field instead and resolves it against the
+ * live managers after loading. The field is still <em>read</em>, so files written
+ * before normalization (which embed the whole entity) can be loaded and upgraded.
+ * </p>
+ *
+ * <pre>{@code
+ * @StoredAsReference
+ * private User user;   // not written
+ * private UUID userId; // written
+ * }</pre>
+ *
+ * @author Eman
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface StoredAsReference {
+}
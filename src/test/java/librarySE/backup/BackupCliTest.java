@@ -0,0 +1,96 @@
+package librarySE.backup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupCliTest {
+
+    private Path dir;
+    private BackupStore store;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("backup_cli_test");
+        store = new BackupStore(dir.resolve("backups"));
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+    }
+
+    private int run(String... args) {
+        return BackupCli.run(args, store, dir, new PrintStream(out, true), new PrintStream(err, true));
+    }
+
+    @Test
+    void run_withoutArgumentsPrintsUsage() {
+        assertEquals(2, run());
+        assertTrue(err.toString().contains("Usage"));
+    }
+
+    @Test
+    void list_showsSnapshots() throws IOException {
+        Path file = dir.resolve("items.json");
+        Files.writeString(file, "[]");
+        store.backup(file);
+
+        assertEquals(0, run("list"));
+        assertTrue(out.toString().contains("items.json"));
+    }
+
+    @Test
+    void restore_latestRebuildsFileInDataDir() throws IOException {
+        Path file = dir.resolve("items.json");
+        Files.writeString(file, "[\"kept\"]");
+        store.backup(file);
+        Files.writeString(file, "corrupted");
+
+        assertEquals(0, run("restore", "items.json", "latest"));
+        assertEquals("[\"kept\"]", Files.readString(file));
+    }
+
+    @Test
+    void restore_beforeFirstSnapshotFails() throws IOException {
+        Path file = dir.resolve("items.json");
+        Files.writeString(file, "[]");
+        store.backup(file);
+
+        assertEquals(1, run("restore", "items.json", "2000-01-01T00:00:00Z"));
+        assertEquals(2, run("restore", "items.json", "yesterday"));
+    }
+
+    @Test
+    void restoreArchive_latestRestoresNewestHotBackup() throws IOException {
+        Path hot = dir.resolve("backups").resolve("hot");
+        Files.createDirectories(hot);
+        try (var zip = new ZipOutputStream(
+                Files.newOutputStream(hot.resolve("library-20250131-101500-000.zip")))) {
+            zip.putNextEntry(new ZipEntry("items.json"));
+            zip.write("[]".getBytes());
+            zip.closeEntry();
+        }
+        Files.writeString(dir.resolve("items.journal"), "stale");
+
+        assertEquals(0, run("archives"));
+        assertTrue(out.toString().contains("library-20250131-101500-000.zip"));
+        assertEquals(0, run("restore-archive", "latest"));
+        assertEquals("[]", Files.readString(dir.resolve("items.json")));
+        assertFalse(Files.exists(dir.resolve("items.journal")));
+    }
+
+    @Test
+    void restoreArchive_withoutArchivesFails() {
+        assertEquals(1, run("restore-archive", "latest"));
+        assertEquals(2, run("restore-archive"));
+    }
+}
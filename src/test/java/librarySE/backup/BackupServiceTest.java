@@ -0,0 +1,69 @@
+package librarySE.backup;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupServiceTest {
+
+    private Path file;
+    private BackupStore store;
+    private BackupService service;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Path dir = Files.createTempDirectory("backup_service_test");
+        file = dir.resolve("users.json");
+        store = new BackupStore(dir.resolve("backups"));
+        service = new BackupService(store, new RetentionPolicy(3, 0, 0, 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.close();
+    }
+
+    @Test
+    void schedule_capturesFileInBackground() throws IOException {
+        Files.writeString(file, "[\"a\"]");
+
+        service.schedule(file);
+
+        assertTrue(service.awaitIdle(5000));
+        assertEquals(1, store.list("users.json").size());
+    }
+
+    @Test
+    void schedule_appliesRetention() throws IOException {
+        for (int i = 0; i < 6; i++) {
+            Files.writeString(file, "[" + i + "]");
+            service.schedule(file);
+            assertTrue(service.awaitIdle(5000));
+        }
+
+        assertEquals(3, store.list("users.json").size());
+    }
+
+    @Test
+    void schedule_missingFileIsHarmless() {
+        service.schedule(file);
+        assertTrue(service.awaitIdle(5000));
+        assertTrue(store.files().isEmpty());
+    }
+
+    @Test
+    void schedule_afterCloseBacksUpSynchronously() throws IOException {
+        service.close();
+        Files.writeString(file, "[1]");
+
+        service.schedule(file);
+
+        assertEquals(1, store.list("users.json").size());
+    }
+}
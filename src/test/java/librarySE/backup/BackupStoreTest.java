@@ -0,0 +1,179 @@
+package librarySE.backup;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackupStoreTest {
+
+    private static final Instant T0 = Instant.parse("2025-03-10T08:00:00Z");
+
+    private Path dir;
+    private Path file;
+    private MutableClock clock;
+    private BackupStore store;
+
+    /** Clock that only moves when told to. */
+    static final class MutableClock extends Clock {
+        Instant now;
+        MutableClock(Instant now) { this.now = now; }
+        @Override public ZoneOffset getZone() { return ZoneOffset.UTC; }
+        @Override public Clock withZone(java.time.ZoneId zone) { return this; }
+        @Override public Instant instant() { return now; }
+    }
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("backup_store_test");
+        file = dir.resolve("items.json");
+        clock = new MutableClock(T0);
+        store = new BackupStore(dir.resolve("backups"), clock);
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private long objectCount() throws IOException {
+        Path objects = dir.resolve("backups").resolve("objects");
+        if (!Files.exists(objects)) return 0;
+        try (Stream<Path> s = Files.walk(objects)) {
+            return s.filter(Files::isRegularFile).count();
+        }
+    }
+
+    @Test
+    void backup_missingFileIsIgnored() {
+        assertTrue(store.backup(file).isEmpty());
+        assertTrue(store.files().isEmpty());
+    }
+
+    @Test
+    void backupAndRestore_roundTripsContent() throws IOException {
+        byte[] data = randomBytes(200_000, 1);
+        Files.write(file, data);
+
+        Snapshot s = store.backup(file).orElseThrow();
+        assertEquals("items.json", s.fileName());
+        assertEquals(200_000, s.size());
+        assertTrue(s.chunks().size() > 1);
+
+        Path target = dir.resolve("restored.json");
+        store.restore(s, target);
+        assertArrayEquals(data, Files.readAllBytes(target));
+    }
+
+    @Test
+    void backup_unchangedContentIsSkipped() throws IOException {
+        Files.writeString(file, "[1,2,3]");
+        store.backup(file);
+        clock.now = T0.plusSeconds(60);
+
+        assertTrue(store.backup(file).isEmpty());
+        assertEquals(1, store.list("items.json").size());
+    }
+
+    @Test
+    void backup_smallEditOnlyStoresChangedChunks() throws IOException {
+        byte[] data = randomBytes(300_000, 2);
+        Files.write(file, data);
+        Snapshot first = store.backup(file).orElseThrow();
+        long objectsBefore = objectCount();
+
+        data[150_000] ^= 0x55;
+        Files.write(file, data);
+        clock.now = T0.plusSeconds(1);
+        Snapshot second = store.backup(file).orElseThrow();
+
+        Set<String> shared = new HashSet<>(first.chunks());
+        shared.retainAll(second.chunks());
+        assertTrue(shared.size() >= first.chunks().size() - 2);
+        assertTrue(objectCount() - objectsBefore <= 2);
+    }
+
+    @Test
+    void chunkBoundaries_respectMinAndMaxSize() {
+        byte[] zeros = new byte[200_000];
+        List<Integer> ends = BackupStore.chunkBoundaries(zeros);
+
+        int start = 0;
+        for (int end : ends) {
+            assertTrue(end - start <= BackupStore.MAX_CHUNK);
+            if (end != zeros.length) assertTrue(end - start >= BackupStore.MIN_CHUNK);
+            start = end;
+        }
+        assertEquals(zeros.length, start);
+    }
+
+    @Test
+    void find_returnsNewestSnapshotAtOrBeforeTime() throws IOException {
+        Files.writeString(file, "v1");
+        store.backup(file);
+        clock.now = T0.plusSeconds(3600);
+        Files.writeString(file, "v2");
+        store.backup(file);
+
+        assertEquals(T0, store.find("items.json", T0.plusSeconds(10)).orElseThrow().time());
+        assertEquals(T0.plusSeconds(3600), store.find("items.json", T0.plusSeconds(7200)).orElseThrow().time());
+        assertTrue(store.find("items.json", T0.minusSeconds(1)).isEmpty());
+    }
+
+    @Test
+    void backup_sameInstantGetsDistinctTimes() throws IOException {
+        Files.writeString(file, "a");
+        store.backup(file);
+        Files.writeString(file, "b");
+        store.backup(file);
+
+        List<Snapshot> all = store.list("items.json");
+        assertEquals(2, all.size());
+        assertTrue(all.get(1).time().isAfter(all.get(0).time()));
+    }
+
+    @Test
+    void prune_dropsUnretainedSnapshotsAndTheirChunks() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            Files.write(file, randomBytes(10_000, 100 + i));
+            clock.now = T0.plusSeconds(i);
+            store.backup(file);
+        }
+
+        BackupStore.PruneReport report = store.prune(new RetentionPolicy(2, 0, 0, 0));
+
+        assertEquals(3, report.manifestsRemoved());
+        assertTrue(report.chunksRemoved() > 0);
+        assertEquals(2, store.list("items.json").size());
+        for (Snapshot s : store.list("items.json")) {
+            store.restore(s, dir.resolve("check.json"));
+        }
+    }
+
+    @Test
+    void restore_failsWhenChunkIsMissing() throws IOException {
+        Files.write(file, randomBytes(5_000, 3));
+        Snapshot s = store.backup(file).orElseThrow();
+        try (Stream<Path> objects = Files.walk(dir.resolve("backups").resolve("objects"))) {
+            for (Path p : objects.filter(Files::isRegularFile).toList()) Files.delete(p);
+        }
+
+        Path target = dir.resolve("restored.json");
+        assertThrows(UncheckedIOException.class, () -> store.restore(s, target));
+        assertFalse(Files.exists(target));
+    }
+}
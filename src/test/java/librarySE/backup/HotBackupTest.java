@@ -0,0 +1,190 @@
+package librarySE.backup;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.ItemManager;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.managers.UserManager;
+import librarySE.repo.JournalBorrowRecordRepository;
+import librarySE.repo.JournalItemRepository;
+import librarySE.repo.JournalUserRepository;
+import librarySE.strategy.FineStrategyFactory;
+import librarySE.utils.FileUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HotBackupTest {
+
+    @TempDir
+    Path dir;
+
+    ItemManager itemManager;
+    UserManager userManager;
+    BorrowManager borrowManager;
+    List<LibraryItem> items;
+    User user;
+
+    @BeforeEach
+    void setup() {
+        Book book = new Book("978-1", "Clean Code", "Robert Martin", BigDecimal.TEN);
+        items = new ArrayList<>(List.of(book, new CD("Kind of Blue", "Miles Davis", BigDecimal.ONE)));
+        user = new User("Malak", Role.USER, "pass123", "malak@mail.com");
+        BorrowRecord record = new BorrowRecord(user, book, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        WaitlistEntry waiting = new WaitlistEntry(UUID.randomUUID(), "eman@mail.com", LocalDate.of(2025, 1, 2));
+
+        itemManager = mock(ItemManager.class);
+        userManager = mock(UserManager.class);
+        borrowManager = mock(BorrowManager.class);
+        when(itemManager.captureItems()).thenAnswer(inv -> {
+            List<LibraryItem> captured = List.copyOf(items);
+            return (Supplier<Stream<LibraryItem>>) captured::stream;
+        });
+        when(userManager.streamAllUsers()).thenAnswer(inv -> List.of(user).stream());
+        when(borrowManager.streamAllBorrowRecords()).thenAnswer(inv -> List.of(record).stream());
+        when(borrowManager.streamWaitlist()).thenAnswer(inv -> List.of(waiting).stream());
+    }
+
+    private HotBackup backup(int keep) {
+        return new HotBackup(itemManager, userManager, borrowManager, dir.resolve("hot"), keep,
+                Clock.fixed(Instant.parse("2025-01-31T10:15:00Z"), ZoneOffset.UTC));
+    }
+
+    @Test
+    void backupNow_writesOneArchiveWithAllDataFiles() throws IOException {
+        HotBackup.Result result;
+        try (HotBackup backup = backup(3)) {
+            result = backup.backupNow().join();
+        }
+
+        assertEquals(2, result.items());
+        assertEquals(1, result.users());
+        assertEquals(1, result.borrowRecords());
+        assertEquals(1, result.waitlistEntries());
+        assertEquals("library-20250131-101500-000.zip", result.archive().getFileName().toString());
+        assertEquals(Files.size(result.archive()), result.bytes());
+        try (ZipFile zip = new ZipFile(result.archive().toFile())) {
+            for (String name : HotBackup.FILES) assertNotNull(zip.getEntry(name), name);
+            assertNotNull(zip.getEntry(HotBackup.PROPERTIES));
+        }
+        try (var files = Files.list(dir.resolve("hot"))) {
+            assertEquals(1, files.count(), "No temporary file is left behind.");
+        }
+    }
+
+    @Test
+    void restore_replacesDataFilesAndDropsTheirJournals() throws IOException {
+        Path archive;
+        try (HotBackup backup = backup(3)) {
+            archive = backup.backupNow().join().archive();
+        }
+        Path data = dir.resolve("data");
+        try (JournalItemRepository stale = new JournalItemRepository(
+                data.resolve("items.json"), data.resolve("items.journal"), 512)) {
+            stale.upsert(new Book("978-9", "Not Backed Up", "Nobody", BigDecimal.ONE));
+        }
+
+        List<String> restored = HotBackup.restore(archive, data);
+
+        assertEquals(HotBackup.FILES, restored);
+        assertFalse(Files.exists(data.resolve("items.journal")));
+        try (JournalItemRepository itemRepo = new JournalItemRepository(
+                     data.resolve("items.json"), data.resolve("items.journal"), 512);
+             JournalUserRepository userRepo = new JournalUserRepository(
+                     data.resolve("users.json"), data.resolve("users.journal"), 512);
+             JournalBorrowRecordRepository recordRepo = new JournalBorrowRecordRepository(
+                     data.resolve("borrow_records.json"), data.resolve("borrow_records.journal"), 512)) {
+            assertEquals(List.of("Clean Code", "Kind of Blue"),
+                    itemRepo.loadAll().stream().map(LibraryItem::getTitle).toList());
+            assertEquals("malak@mail.com", userRepo.loadAll().get(0).getEmail());
+            assertEquals(1, recordRepo.loadAll().size());
+        }
+        List<WaitlistEntry> waitlist = FileUtils.readJson(data.resolve("waitlist.json"),
+                FileUtils.listTypeOf(WaitlistEntry.class), List.of());
+        assertEquals("eman@mail.com", waitlist.get(0).getUserEmail());
+    }
+
+    @Test
+    void backupNow_keepsOnlyTheNewestArchives() {
+        try (HotBackup backup = backup(2)) {
+            Path first = backup.backupNow().join().archive();
+            items.add(new Book("978-2", "Refactoring", "Martin Fowler", BigDecimal.ONE));
+            backup.backupNow().join();
+            Path third = backup.backupNow().join().archive();
+
+            List<Path> archives = backup.archives();
+            assertEquals(2, archives.size());
+            assertFalse(archives.contains(first));
+            assertEquals(third, archives.get(1));
+        }
+    }
+
+    @Test
+    void backupNow_archivesTheCutNotChangesMadeWhileArchiving() throws Exception {
+        CountDownLatch changed = new CountDownLatch(1);
+        when(itemManager.captureItems()).thenAnswer(inv -> {
+            List<LibraryItem> captured = List.copyOf(items);
+            return (Supplier<Stream<LibraryItem>>) () -> {
+                try {
+                    changed.await(); // archiving starts only after the change below
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return captured.stream();
+            };
+        });
+
+        Path archive;
+        try (HotBackup backup = backup(3)) {
+            CompletableFuture<HotBackup.Result> result = backup.backupNow();
+            user.setEmail("changed@mail.com");
+            user.addFine(BigDecimal.TEN);
+            changed.countDown();
+            archive = result.join().archive();
+        }
+
+        Path data = dir.resolve("data");
+        HotBackup.restore(archive, data);
+        try (JournalUserRepository userRepo = new JournalUserRepository(
+                data.resolve("users.json"), data.resolve("users.journal"), 512)) {
+            User restored = userRepo.loadAll().get(0);
+            assertEquals("malak@mail.com", restored.getEmail());
+            assertEquals(0, restored.getFineBalance().signum());
+        }
+    }
+
+    @Test
+    void backupNow_afterClose_archivesSynchronously() {
+        HotBackup backup = backup(3);
+        backup.close();
+
+        assertTrue(backup.backupNow().isDone());
+        assertEquals(1, backup.archives().size());
+    }
+}
@@ -0,0 +1,130 @@
+package librarySE.backup;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.ItemManager;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.managers.UserManager;
+import librarySE.strategy.FineStrategyFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LibraryExporterTest {
+
+    CopyOnWriteArrayList<LibraryItem> items;
+    User user;
+    ItemManager itemManager;
+    UserManager userManager;
+    BorrowManager borrowManager;
+
+    @BeforeEach
+    void setup() {
+        Book book = new Book("978-1", "Clean Code", "Robert Martin", BigDecimal.TEN);
+        items = new CopyOnWriteArrayList<>(List.of(book, new CD("Kind of Blue", "Miles Davis", BigDecimal.ONE)));
+        user = new User("Malak", Role.USER, "pass123", "malak@mail.com");
+        BorrowRecord record = new BorrowRecord(user, book, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        WaitlistEntry waiting = new WaitlistEntry(UUID.randomUUID(), "eman@mail.com", LocalDate.of(2025, 1, 2));
+
+        itemManager = mock(ItemManager.class);
+        userManager = mock(UserManager.class);
+        borrowManager = mock(BorrowManager.class);
+        when(itemManager.captureItems()).thenAnswer(inv -> {
+            List<LibraryItem> captured = List.copyOf(items);
+            return (Supplier<Stream<LibraryItem>>) captured::stream;
+        });
+        when(userManager.streamAllUsers()).thenAnswer(inv -> List.of(user).stream());
+        when(borrowManager.streamAllBorrowRecords()).thenAnswer(inv -> List.of(record).stream());
+        when(borrowManager.streamWaitlist()).thenAnswer(inv -> List.of(waiting).stream());
+    }
+
+    private List<JsonObject> export(LibraryExporter exporter, LibraryExporter.Summary[] summary) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary[0] = exporter.export(Channels.newChannel(bytes));
+        return bytes.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> JsonParser.parseString(line).getAsJsonObject())
+                .toList();
+    }
+
+    @Test
+    void export_writesHeaderThenOneLinePerEntityInOrder() throws IOException {
+        LibraryExporter.Summary[] summary = new LibraryExporter.Summary[1];
+        List<JsonObject> lines = export(new LibraryExporter(itemManager, userManager, borrowManager), summary);
+
+        assertEquals(6, lines.size());
+        assertEquals("librarySE-export", lines.get(0).get("format").getAsString());
+        assertEquals(LibraryExporter.FORMAT_VERSION, lines.get(0).get("version").getAsInt());
+        assertTrue(lines.get(0).has("exportedAt"));
+
+        assertEquals(List.of("item", "item", "user", "borrowRecord", "waitlist"),
+                lines.subList(1, 6).stream().map(l -> l.get("entity").getAsString()).toList());
+        assertEquals("Clean Code", lines.get(1).getAsJsonObject("data").get("title").getAsString());
+        assertEquals("malak@mail.com", lines.get(3).getAsJsonObject("data").get("email").getAsString());
+
+        assertEquals(2, summary[0].items());
+        assertEquals(1, summary[0].users());
+        assertEquals(1, summary[0].borrowRecords());
+        assertEquals(1, summary[0].waitlistEntries());
+        assertTrue(summary[0].bytes() > 0);
+    }
+
+    @Test
+    void export_writesTheLibraryAsItWasWhenTheExportStarted() throws IOException {
+        // Items are streamed once the cut is taken; an item added and a user
+        // changed then must not reach the export.
+        when(itemManager.captureItems()).thenAnswer(inv -> {
+            List<LibraryItem> captured = List.copyOf(items);
+            return (Supplier<Stream<LibraryItem>>) () -> {
+                items.add(new Book("978-2", "Refactoring", "Martin Fowler", BigDecimal.ONE));
+                user.setEmail("changed@mail.com");
+                return captured.stream();
+            };
+        });
+
+        LibraryExporter.Summary[] summary = new LibraryExporter.Summary[1];
+        List<JsonObject> lines = export(new LibraryExporter(itemManager, userManager, borrowManager), summary);
+
+        assertEquals(3, items.size());
+        assertEquals(2, summary[0].items());
+        assertEquals("changed@mail.com", user.getEmail());
+        assertEquals("malak@mail.com", lines.get(3).getAsJsonObject("data").get("email").getAsString());
+    }
+
+    @Test
+    void export_toFile_replacesFileAndLeavesNoTemporaryFile(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("library.jsonl");
+        Files.writeString(file, "old");
+
+        LibraryExporter.Summary summary = new LibraryExporter(itemManager, userManager, borrowManager).export(file);
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(6, lines.size());
+        assertEquals(Files.size(file), summary.bytes());
+        assertFalse(Files.exists(dir.resolve("library.jsonl.tmp")));
+    }
+}
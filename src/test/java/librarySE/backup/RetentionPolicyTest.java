@@ -0,0 +1,67 @@
+package librarySE.backup;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetentionPolicyTest {
+
+    private static final Instant NOW = Instant.parse("2025-03-12T12:30:00Z"); // Wednesday
+
+    private static Snapshot at(Instant time) {
+        return new Snapshot("items.json", time, 1, "h" + time.toEpochMilli(), List.of());
+    }
+
+    @Test
+    void constructor_rejectsNegativeCounts() {
+        assertThrows(IllegalArgumentException.class, () -> new RetentionPolicy(-1, 0, 0, 0));
+    }
+
+    @Test
+    void retained_alwaysKeepsNewest() {
+        Snapshot only = at(NOW);
+        assertEquals(Set.of(only), new RetentionPolicy(0, 0, 0, 0).retained(List.of(only)));
+    }
+
+    @Test
+    void retained_keepsLastN() {
+        List<Snapshot> all = new ArrayList<>();
+        for (int i = 0; i < 5; i++) all.add(at(NOW.minusSeconds(i)));
+
+        Set<Snapshot> keep = new RetentionPolicy(3, 0, 0, 0).retained(all);
+
+        assertEquals(3, keep.size());
+        assertTrue(keep.containsAll(all.subList(0, 3)));
+    }
+
+    @Test
+    void retained_keepsNewestPerHour() {
+        Snapshot h12late = at(NOW);
+        Snapshot h12early = at(NOW.minus(20, ChronoUnit.MINUTES));
+        Snapshot h11 = at(NOW.minus(1, ChronoUnit.HOURS));
+        Snapshot h10 = at(NOW.minus(2, ChronoUnit.HOURS));
+
+        Set<Snapshot> keep = new RetentionPolicy(0, 2, 0, 0).retained(List.of(h10, h12early, h11, h12late));
+
+        assertEquals(Set.of(h12late, h11), keep);
+    }
+
+    @Test
+    void retained_keepsNewestPerDayAndWeek() {
+        Snapshot today = at(NOW);
+        Snapshot monday = at(NOW.minus(2, ChronoUnit.DAYS));
+        Snapshot lastWeek = at(NOW.minus(7, ChronoUnit.DAYS));
+        Snapshot lastWeekEarlier = at(NOW.minus(8, ChronoUnit.DAYS));
+        Snapshot month = at(NOW.minus(30, ChronoUnit.DAYS));
+        List<Snapshot> all = List.of(today, monday, lastWeek, lastWeekEarlier, month);
+
+        assertEquals(Set.of(today, monday), new RetentionPolicy(0, 0, 2, 0).retained(all));
+        assertEquals(Set.of(today, lastWeek, month), new RetentionPolicy(0, 0, 0, 3).retained(all));
+    }
+}
@@ -0,0 +1,91 @@
+package librarySE.catalog;
+
+import librarySE.managers.Admin;
+import librarySE.managers.ItemManager;
+import librarySE.repo.JournalItemRepository;
+import librarySE.search.KeywordSearchStrategy;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures {@link CatalogImporter} throughput on a generated CSV catalog,
+ * persisted through a {@link JournalItemRepository} in a temporary directory,
+ * for several batch sizes and thread counts.
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.catalog.CatalogImportBenchmark [rows]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class CatalogImportBenchmark {
+
+    private CatalogImportBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int rows = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        String csv = generate(rows);
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        System.out.printf("Catalog import, %,d rows (%,d KB of CSV), %d cores%n", rows, csv.length() / 1024, cores);
+        System.out.printf("%8s %8s %10s %12s %10s%n", "batch", "threads", "imported", "rows/s", "ms");
+        for (int batch : new int[]{100, 1000, 10_000}) {
+            for (int threads : new int[]{1, cores}) {
+                run(csv, batch, threads);
+            }
+        }
+    }
+
+    private static void run(String csv, int batch, int threads) throws Exception {
+        Path dir = Files.createTempDirectory("import-bench");
+        reset(ItemManager.class);
+        reset(Admin.class);
+        try (JournalItemRepository repo = new JournalItemRepository(
+                dir.resolve("items.json"), dir.resolve("items.journal"), 512)) {
+            ItemManager items = ItemManager.init(repo, new KeywordSearchStrategy());
+            Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+
+            ImportReport report = new CatalogImporter(items, Admin.getInstance(), batch, threads)
+                    .importCsv(new StringReader(csv));
+            System.out.printf("%8d %8d %10d %12.0f %10d%n",
+                    batch, threads, report.imported(), report.rowsPerSecond(), report.took().toMillis());
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : files.toList()) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static String generate(int rows) {
+        StringBuilder sb = new StringBuilder("type,isbn,title,author,artist,editor,issue,price,copies\n");
+        for (int i = 0; i < rows; i++) {
+            switch (i % 3) {
+                case 0 -> sb.append("BOOK,978-").append(i).append(",\"Book ").append(i)
+                        .append(", Vol. 1\",Author ").append(i % 500).append(",,,,").append(10 + i % 50).append(".50,2\n");
+                case 1 -> sb.append("CD,,Album ").append(i).append(",,Artist ").append(i % 300).append(",,,,1\n");
+                default -> sb.append("JOURNAL,,Journal ").append(i).append(",,,Editor ").append(i % 200)
+                        .append(",").append(i % 12).append(",,\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void reset(Class<?> singleton) throws IOException {
+        try {
+            Field f = singleton.getDeclaredField("instance");
+            f.setAccessible(true);
+            f.set(null, null);
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package librarySE.catalog;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+import librarySE.managers.Admin;
+import librarySE.managers.ItemManager;
+import librarySE.managers.notifications.EmailNotifier;
+import librarySE.repo.ItemRepository;
+import librarySE.search.KeywordSearchStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedConstruction;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockConstruction;
+import static org.mockito.Mockito.when;
+
+class CatalogImporterTest {
+
+    static class CountingRepo implements ItemRepository {
+        List<LibraryItem> store = new ArrayList<>();
+        int saves;
+
+        @Override public List<LibraryItem> loadAll() { return new ArrayList<>(store); }
+
+        @Override public void saveAll(List<LibraryItem> items) {
+            saves++;
+            store = new ArrayList<>(items);
+        }
+    }
+
+    private static final String HEADER = "type,isbn,title,author,artist,editor,issue,price,copies\n";
+
+    CountingRepo repo;
+    ItemManager items;
+    Admin admin;
+
+    @BeforeEach
+    void setup() throws Exception {
+        var f = ItemManager.class.getDeclaredField("instance");
+        f.setAccessible(true);
+        f.set(null, null);
+        var af = Admin.class.getDeclaredField("instance");
+        af.setAccessible(true);
+        af.set(null, null);
+
+        repo = new CountingRepo();
+        repo.store.add(new Book("111", "Existing", "Author", BigDecimal.TEN));
+        items = ItemManager.init(repo, new KeywordSearchStrategy());
+        Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+        admin = Admin.getInstance();
+    }
+
+    @Test
+    void importCsv_createsItemsOfEveryType() throws IOException {
+        String csv = HEADER
+                + "BOOK,978-1,Clean Code,Robert Martin,,,,45.00,3\n"
+                + "cd,,Kind of Blue,,Miles Davis,,,,\n"
+                + "JOURNAL,,Nature,,,Skipper,7861,12.5,2\n";
+
+        ImportReport report = new CatalogImporter(items, admin, 10, 2).importCsv(new StringReader(csv));
+
+        assertEquals(3, report.rows());
+        assertEquals(3, report.imported());
+        assertTrue(report.rejections().isEmpty());
+        assertEquals(4, items.getAllItems().size());
+
+        Book book = (Book) items.getAllItems().get(1);
+        assertEquals("978-1", book.getIsbn());
+        assertEquals(new BigDecimal("45.00"), book.getPrice());
+        assertEquals(3, book.getTotalCopies());
+        assertEquals("Miles Davis", ((CD) items.getAllItems().get(2)).getArtist());
+        assertEquals("7861", ((Journal) items.getAllItems().get(3)).getIssueNumber());
+    }
+
+    @Test
+    void importCsv_reportsInvalidRowsWithLineNumbers() throws IOException {
+        String csv = HEADER
+                + "DVD,,Film,,,,,,\n"
+                + "BOOK,,No Isbn,Author,,,,,\n"
+                + "CD,,Album,,Artist,,,cheap,\n"
+                + "CD,,Album,,Artist,,,,many\n"
+                + "JOURNAL,,Journal,,,Editor,,,\n"
+                + "CD,,,,Artist,,,,\n"
+                + "CD,,Good,,Artist,,,,\n";
+
+        ImportReport report = new CatalogImporter(items, admin, 2, 3).importCsv(new StringReader(csv));
+
+        assertEquals(7, report.rows());
+        assertEquals(1, report.imported());
+        assertEquals(6, report.invalid());
+        List<Long> lines = report.rejections().stream().map(ImportReport.Rejection::position).toList();
+        assertEquals(List.of(2L, 3L, 4L, 5L, 6L, 7L), lines);
+        assertEquals("unknown type 'DVD'", report.rejections().get(0).reason());
+        assertEquals("invalid price 'cheap'", report.rejections().get(2).reason());
+        assertEquals("invalid copies 'many'", report.rejections().get(3).reason());
+    }
+
+    @Test
+    void importCsv_skipsDuplicatesOfCatalogAndEarlierRows() throws IOException {
+        String csv = HEADER
+                + "BOOK,111,Same Isbn,Someone,,,,,\n"
+                + "CD,,Album,,Artist,,,,\n"
+                + "CD,,ALBUM ,,artist,,,,\n"
+                + "JOURNAL,,Nature,,,Editor,1,,\n"
+                + "JOURNAL,,Nature,,,Editor,2,,\n";
+
+        ImportReport report = new CatalogImporter(items, admin, 10, 1).importCsv(new StringReader(csv));
+
+        assertEquals(3, report.imported());
+        assertEquals(2, report.duplicates());
+        assertEquals(0, report.invalid());
+        assertEquals(2L, report.rejections().get(0).position());
+        assertEquals(4L, report.rejections().get(1).position());
+    }
+
+    @Test
+    void importCsv_savesOncePerBatchWithoutNotifications() throws IOException {
+        StringBuilder csv = new StringBuilder("Title,Type,Artist,Ignored\n");
+        for (int i = 0; i < 25; i++) csv.append("Album ").append(i).append(",CD,Artist,x\n");
+        csv.append("\n");
+
+        ImportReport report;
+        try (MockedConstruction<EmailNotifier> mocked = mockConstruction(EmailNotifier.class)) {
+            report = new CatalogImporter(items, admin, 10, 4).importCsv(new StringReader(csv.toString()));
+            assertTrue(mocked.constructed().isEmpty());
+        }
+
+        assertEquals(25, report.imported());
+        assertEquals(3, repo.saves);
+        assertEquals(26, repo.store.size());
+        assertTrue(report.rowsPerSecond() > 0);
+    }
+
+    @Test
+    void importCsv_fromFileAndHeaderErrors(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("catalog.csv");
+        Files.writeString(file, HEADER + "CD,,Album,,Artist,,,,\n");
+        assertEquals(1, new CatalogImporter(items, admin).importCsv(file).imported());
+
+        CatalogImporter importer = new CatalogImporter(items, admin, 10, 1);
+        assertThrows(IOException.class, () -> importer.importCsv(new StringReader("")));
+        assertThrows(IOException.class, () -> importer.importCsv(new StringReader("title,artist\nA,B\n")));
+    }
+
+    @Test
+    void importMarc_mapsRecordsToItems(@TempDir Path dir) throws IOException {
+        Path file = MarcTestData.write(dir.resolve("catalog.mrc"),
+                MarcTestData.record('a', 'm',
+                        "020  $a9780132350884 (pbk.)$cUSD45.00",
+                        "100 1$aMartin, Robert C.,",
+                        "245 10$aClean code :$ba handbook of agile software craftsmanship /$cRobert C. Martin."),
+                MarcTestData.record('j', 'm',
+                        "245 00$aKind of blue$h[sound recording] /$cMiles Davis.",
+                        "710 2$aColumbia Records."),
+                MarcTestData.record('a', 's',
+                        "245 00$aNature.",
+                        "264  1$aLondon :$bMacmillan Journals,",
+                        "362 0$aVol. 1, no. 1 (Nov. 4, 1869)-"));
+
+        ImportReport report = new CatalogImporter(items, admin, 2, 2).importMarc(file);
+
+        assertEquals(3, report.rows());
+        assertEquals(3, report.imported());
+        Book book = (Book) items.getAllItems().get(1);
+        assertEquals("9780132350884", book.getIsbn());
+        assertEquals("Clean code: a handbook of agile software craftsmanship", book.getTitle());
+        assertEquals("Martin, Robert C", book.getAuthor());
+        assertEquals(new BigDecimal("45.00"), book.getPrice());
+
+        CD cd = (CD) items.getAllItems().get(2);
+        assertEquals("Kind of blue", cd.getTitle());
+        assertEquals("Columbia Records", cd.getArtist());
+
+        Journal journal = (Journal) items.getAllItems().get(3);
+        assertEquals("Nature", journal.getTitle());
+        assertEquals("Macmillan Journals", journal.getEditor());
+        assertEquals("Vol. 1, no. 1 (Nov. 4, 1869)-", journal.getIssueNumber());
+    }
+
+    @Test
+    void importMarc_rejectsIncompleteDamagedAndDuplicateRecords(@TempDir Path dir) throws IOException {
+        byte[] damaged = MarcTestData.record('a', 'm', "020  $a222", "100 1$aA.", "245 00$aDamaged");
+        damaged[13] = 'x';
+        Path file = MarcTestData.write(dir.resolve("catalog.mrc"),
+                MarcTestData.record('a', 'm', "100 1$aNo Isbn.", "245 00$aUntitled"),
+                MarcTestData.record('a', 'm', "020  $a333"),
+                damaged,
+                MarcTestData.record('a', 'm', "020  $a111", "100 1$aSomeone.", "245 00$aAgain"),
+                MarcTestData.record('a', 'm', "020  $a444", "100 1$aAuthor.", "245 00$aFine"));
+
+        ImportReport report = new CatalogImporter(items, admin, 10, 1).importMarc(file);
+
+        assertEquals(5, report.rows());
+        assertEquals(1, report.imported());
+        assertEquals(3, report.invalid());
+        assertEquals(1, report.duplicates());
+        assertEquals("no ISBN (020 $a)", report.rejections().get(0).reason());
+        assertEquals("no title (245 $a)", report.rejections().get(1).reason());
+        assertEquals(3L, report.rejections().get(2).position());
+        assertEquals(4L, report.rejections().get(3).position());
+    }
+
+    @Test
+    void constructor_requiresAdminAndPositiveSizes() {
+        Admin notAdmin = mock(Admin.class);
+        when(notAdmin.isAdmin()).thenReturn(false);
+
+        assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(items, notAdmin));
+        assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(items, admin, 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new CatalogImporter(items, admin, 1, 0));
+        assertThrows(NullPointerException.class, () -> new CatalogImporter(null, admin));
+    }
+}
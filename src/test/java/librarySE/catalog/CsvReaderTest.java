@@ -0,0 +1,48 @@
+package librarySE.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvReaderTest {
+
+    @Test
+    void next_readsPlainAndQuotedFields() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "a,b,c\n\"x, y\",\"say \"\"hi\"\"\",\n"));
+
+        assertEquals(List.of("a", "b", "c"), csv.next());
+        assertEquals(1, csv.lineNumber());
+        assertEquals(List.of("x, y", "say \"hi\"", ""), csv.next());
+        assertEquals(2, csv.lineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void next_quotedLineBreaksAndCrlfAreTrackedByLine() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader(
+                "\uFEFFh1,h2\r\n\"multi\r\nline\",2\r\n\r\nlast,3"));
+
+        assertEquals(List.of("h1", "h2"), csv.next());
+        assertEquals(List.of("multi\nline", "2"), csv.next());
+        assertEquals(2, csv.lineNumber());
+        assertEquals(List.of(""), csv.next());
+        assertEquals(4, csv.lineNumber());
+        assertEquals(List.of("last", "3"), csv.next());
+        assertEquals(5, csv.lineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    void next_unterminatedQuoteThrows() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("ok\n\"never closed,1\n"));
+
+        assertEquals(List.of("ok"), csv.next());
+        IOException e = assertThrows(IOException.class, csv::next);
+        assertTrue(e.getMessage().contains("line 2"));
+    }
+}
@@ -0,0 +1,111 @@
+package librarySE.catalog;
+
+import librarySE.managers.Admin;
+import librarySE.managers.ItemManager;
+import librarySE.repo.JournalItemRepository;
+import librarySE.search.KeywordSearchStrategy;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Measures MARC21 reading and importing on a generated dump:
+ * <ol>
+ *     <li><b>scan</b> – {@link MarcReader} and {@link MarcRecord} alone, reading
+ *         the title of every record: records/s and bytes allocated per record;</li>
+ *     <li><b>import</b> – {@link CatalogImporter#importMarc} into a
+ *         {@link JournalItemRepository} in a temporary directory.</li>
+ * </ol>
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.catalog.MarcImportBenchmark [records]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class MarcImportBenchmark {
+
+    private MarcImportBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 500_000;
+        Path dir = Files.createTempDirectory("marc-bench");
+        Path dump = dir.resolve("dump.mrc");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(dump))) {
+                for (int i = 0; i < count; i++) out.write(record(i));
+            }
+            System.out.printf("MARC21 dump: %,d records, %,d KB%n", count, Files.size(dump) / 1024);
+
+            for (int round = 0; round < 3; round++) scan(dump, round == 2);
+            importAll(dir, dump);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : files.toList()) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static byte[] record(int i) {
+        return switch (i % 3) {
+            case 0 -> MarcTestData.record('a', 'm', "001ocm" + i, "020  $a978" + i + " (pbk.)$cUSD" + (10 + i % 50) + ".50",
+                    "100 1$aAuthor " + i % 500 + ",", "245 10$aBook " + i + " :$ba subtitle /$cAuthor " + i % 500 + ".",
+                    "650  $aSubject " + i % 40 + ".");
+            case 1 -> MarcTestData.record('j', 'm', "001ocm" + i, "100 1$aArtist " + i % 300 + ",",
+                    "245 10$aAlbum " + i + "$h[sound recording]");
+            default -> MarcTestData.record('a', 's', "001ocm" + i, "245 00$aJournal " + i + ".",
+                    "264  1$aCity :$bPublisher " + i % 200 + ",", "362 0$aVol. " + i % 12 + "-");
+        };
+    }
+
+    private static void scan(Path dump, boolean print) throws Exception {
+        long a0 = allocatedBytes(), t0 = System.nanoTime();
+        long records = 0, chars = 0;
+        try (MarcReader reader = new MarcReader(dump)) {
+            ByteBuffer data;
+            while ((data = reader.next()) != null) {
+                chars += new MarcRecord(data).subfield("245", 'a').length();
+                records++;
+            }
+        }
+        long nanos = System.nanoTime() - t0, bytes = allocatedBytes() - a0;
+        if (print) {
+            System.out.printf("scan   %,12.0f records/s %8d B/record (%d title chars)%n",
+                    records * 1e9 / nanos, bytes / records, chars);
+        }
+    }
+
+    private static void importAll(Path dir, Path dump) throws Exception {
+        reset(ItemManager.class);
+        reset(Admin.class);
+        try (JournalItemRepository repo = new JournalItemRepository(
+                dir.resolve("items.json"), dir.resolve("items.journal"), 512)) {
+            ItemManager items = ItemManager.init(repo, new KeywordSearchStrategy());
+            Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+
+            ImportReport report = new CatalogImporter(items, Admin.getInstance()).importMarc(dump);
+            System.out.printf("import %,12.0f records/s  %s%n", report.rowsPerSecond(), report);
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+
+    private static void reset(Class<?> singleton) throws ReflectiveOperationException {
+        Field f = singleton.getDeclaredField("instance");
+        f.setAccessible(true);
+        f.set(null, null);
+    }
+}
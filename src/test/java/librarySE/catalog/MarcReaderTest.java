@@ -0,0 +1,102 @@
+package librarySE.catalog;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarcReaderTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] titled(int i) {
+        return MarcTestData.record('a', 'm', "020  $a" + i, "245 00$aTitle " + i, "500  $a" + "x".repeat(i % 40));
+    }
+
+    private static List<String> titles(MarcReader reader) throws IOException {
+        List<String> titles = new ArrayList<>();
+        ByteBuffer data;
+        while ((data = reader.next()) != null) {
+            try {
+                titles.add(new MarcRecord(data).subfield("245", 'a'));
+            } catch (IllegalArgumentException e) {
+                titles.add("#" + reader.recordNumber() + " invalid");
+            }
+        }
+        return titles;
+    }
+
+    @Test
+    void next_readsRecordsAcrossWindowBoundaries() throws IOException {
+        byte[][] records = new byte[50][];
+        for (int i = 0; i < records.length; i++) records[i] = titled(i);
+        Path file = MarcTestData.write(dir.resolve("dump.mrc"), records);
+
+        try (MarcReader reader = new MarcReader(file, 200)) {
+            List<String> titles = titles(reader);
+            assertEquals(50, titles.size());
+            for (int i = 0; i < 50; i++) assertEquals("Title " + i, titles.get(i));
+            assertEquals(50, reader.recordNumber());
+            assertEquals(Files.size(file), reader.offset());
+        }
+    }
+
+    @Test
+    void next_skipsNewlinesBetweenRecords() throws IOException {
+        byte[] a = titled(1);
+        byte[] b = titled(2);
+        byte[] joined = new byte[a.length + b.length + 3];
+        System.arraycopy(a, 0, joined, 0, a.length);
+        joined[a.length] = '\r';
+        joined[a.length + 1] = '\n';
+        System.arraycopy(b, 0, joined, a.length + 2, b.length);
+        joined[joined.length - 1] = '\n';
+        Path file = Files.write(dir.resolve("lines.mrc"), joined);
+
+        try (MarcReader reader = new MarcReader(file)) {
+            assertEquals(List.of("Title 1", "Title 2"), titles(reader));
+        }
+    }
+
+    @Test
+    void next_resynchronizesAfterDamagedRecord() throws IOException {
+        byte[] damaged = titled(2);
+        damaged[1] = 'x';                     // length is no longer a number
+        byte[] wrongLength = titled(3);
+        wrongLength[4]++;                     // length points past the terminator
+        Path file = MarcTestData.write(dir.resolve("damaged.mrc"), titled(1), damaged, wrongLength, titled(4));
+
+        try (MarcReader reader = new MarcReader(file, 64)) {
+            assertEquals(List.of("Title 1", "#2 invalid", "#3 invalid", "Title 4"), titles(reader));
+        }
+    }
+
+    @Test
+    void next_returnsTruncatedTailAsLastRecord() throws IOException {
+        byte[] last = titled(2);
+        byte[] truncated = new byte[last.length - 10];
+        System.arraycopy(last, 0, truncated, 0, truncated.length);
+        Path file = MarcTestData.write(dir.resolve("truncated.mrc"), titled(1), truncated);
+
+        try (MarcReader reader = new MarcReader(file)) {
+            assertEquals(List.of("Title 1", "#2 invalid"), titles(reader));
+        }
+    }
+
+    @Test
+    void emptyFileHasNoRecords() throws IOException {
+        Path file = Files.write(dir.resolve("empty.mrc"), new byte[0]);
+        try (MarcReader reader = new MarcReader(file)) {
+            assertNull(reader.next());
+            assertEquals(0, reader.recordNumber());
+        }
+    }
+}
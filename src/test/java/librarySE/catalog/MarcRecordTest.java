@@ -0,0 +1,75 @@
+package librarySE.catalog;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarcRecordTest {
+
+    private static final byte[] BOOK = MarcTestData.record('a', 'm',
+            "001ocm0001",
+            "020  $a9780132350884 (pbk.)$cUSD45.00",
+            "100 1$aMartin, Robert C.,",
+            "245 10$aClean code :$ba handbook of agile software craftsmanship /$cRobert C. Martin.",
+            "650  $aSoftware engineering.",
+            "650  $aAgile software development.$xHandbooks");
+
+    @Test
+    void leaderAndControlFields() {
+        MarcRecord record = new MarcRecord(ByteBuffer.wrap(BOOK));
+
+        assertEquals('a', record.leader(6));
+        assertEquals('m', record.leader(7));
+        assertEquals("ocm0001", record.controlField("001"));
+        assertNull(record.controlField("008"));
+        assertEquals(6, record.fieldCount());
+    }
+
+    @Test
+    void subfield_findsFirstMatchAcrossRepeatedFields() {
+        MarcRecord record = new MarcRecord(ByteBuffer.wrap(BOOK));
+
+        assertEquals("9780132350884 (pbk.)", record.subfield("020", 'a'));
+        assertEquals("USD45.00", record.subfield("020", 'c'));
+        assertEquals("Clean code :", record.subfield("245", 'a'));
+        assertEquals("Robert C. Martin.", record.subfield("245", 'c'));
+        assertEquals("Software engineering.", record.subfield("650", 'a'));
+        assertEquals("Handbooks", record.subfield("650", 'x'));
+        assertNull(record.subfield("650", 'z'));
+        assertNull(record.subfield("700", 'a'));
+    }
+
+    @Test
+    void decodesUtf8Values() {
+        byte[] data = MarcTestData.record('a', 'm', "245 00$aBücher über Straßen");
+        assertEquals("Bücher über Straßen", new MarcRecord(ByteBuffer.wrap(data)).subfield("245", 'a'));
+    }
+
+    @Test
+    void readsRecordInsideLargerBufferSlice() {
+        byte[] padded = new byte[BOOK.length + 10];
+        System.arraycopy(BOOK, 0, padded, 7, BOOK.length);
+        ByteBuffer slice = ByteBuffer.wrap(padded).slice(7, BOOK.length);
+
+        assertEquals("Clean code :", new MarcRecord(slice).subfield("245", 'a'));
+    }
+
+    @Test
+    void rejectsMalformedRecords() {
+        assertThrows(IllegalArgumentException.class, () -> new MarcRecord(ByteBuffer.wrap(new byte[10])));
+
+        byte[] noTerminator = Arrays.copyOf(BOOK, BOOK.length - 1);
+        assertThrows(IllegalArgumentException.class, () -> new MarcRecord(ByteBuffer.wrap(noTerminator)));
+
+        byte[] badBase = BOOK.clone();
+        badBase[14] = 'x';
+        assertThrows(IllegalArgumentException.class, () -> new MarcRecord(ByteBuffer.wrap(badBase)));
+
+        byte[] fieldOutside = BOOK.clone();
+        fieldOutside[24 + 3] = '9'; // length of 001 becomes 9xxx
+        assertThrows(IllegalArgumentException.class, () -> new MarcRecord(ByteBuffer.wrap(fieldOutside)));
+    }
+}
@@ -0,0 +1,57 @@
+package librarySE.catalog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Builds MARC21 records for tests.
+ * <p>
+ * Fields are written as text: a control field as its tag and value
+ * ({@code "001ocm123"}), a data field as its tag, two indicators and its
+ * subfields with {@code $} as the delimiter ({@code "245 0$aTitle /$cAuthor."}).
+ * </p>
+ */
+final class MarcTestData {
+
+    private MarcTestData() {}
+
+    /**
+     * @param type   leader position 06 (type of record), e.g. {@code 'a'} or {@code 'j'}
+     * @param level  leader position 07 (bibliographic level), e.g. {@code 'm'} or {@code 's'}
+     * @param fields fields in the text form described above
+     * @return the UTF-8 encoded record
+     */
+    static byte[] record(char type, char level, String... fields) {
+        ByteArrayOutputStream directory = new ByteArrayOutputStream();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (String field : fields) {
+            String tag = field.substring(0, 3);
+            String body = field.substring(3).replace('$', (char) MarcRecord.SUBFIELD_DELIMITER);
+            byte[] bytes = (body + (char) MarcRecord.FIELD_TERMINATOR).getBytes(StandardCharsets.UTF_8);
+            directory.writeBytes("%s%04d%05d".formatted(tag, bytes.length, data.size()).getBytes(StandardCharsets.US_ASCII));
+            data.writeBytes(bytes);
+        }
+        directory.write(MarcRecord.FIELD_TERMINATOR);
+
+        int base = 24 + directory.size();
+        int length = base + data.size() + 1;
+        String leader = "%05dn%c%c a22%05d   4500".formatted(length, type, level, base);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(leader.getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(directory.toByteArray());
+        out.writeBytes(data.toByteArray());
+        out.write(MarcRecord.RECORD_TERMINATOR);
+        return out.toByteArray();
+    }
+
+    /** Writes the given records, one after the other, to {@code file}. */
+    static Path write(Path file, byte[]... records) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] r : records) out.writeBytes(r);
+        return Files.write(file, out.toByteArray());
+    }
+}
@@ -2,6 +2,10 @@ package librarySE.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.math.BigDecimal;
 
 import org.junit.jupiter.api.AfterEach;
@@ -9,6 +13,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import librarySE.utils.Config;
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 
 /**
  * Unit tests for {@link LibraryItemFactory}.
@@ -301,4 +307,42 @@ class LibraryItemFactoryTest {
         assertTrue(j4 instanceof Journal);
         assertEquals(BigDecimal.valueOf(27.5), j4.getPrice());
     }
+
+    // ----------------------------------------------------------
+    //  Binary snapshot
+    // ----------------------------------------------------------
+
+    private static LibraryItem roundTrip(LibraryItem item) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LibraryItemFactory.writeSnapshot(new SnapshotOutput(new DataOutputStream(bytes)), item);
+        return LibraryItemFactory.readSnapshot(
+                new SnapshotInput(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test
+    void snapshot_roundTripPreservesIdentityFieldsAndCopies() throws Exception {
+        Book book = new Book("ISBN-9", "Title", "Author", new BigDecimal("12.50"), 3);
+        book.borrow();
+        CD cd = new CD("Album", "Artist", BigDecimal.TEN);
+        Journal journal = new Journal("Nature", "Editor", "Vol. 7", BigDecimal.ONE, 2);
+
+        Book b = assertInstanceOf(Book.class, roundTrip(book));
+        assertEquals(book.getId(), b.getId());
+        assertEquals("ISBN-9", b.getIsbn());
+        assertEquals("Title", b.getTitle());
+        assertEquals("Author", b.getAuthor());
+        assertEquals(new BigDecimal("12.50"), b.getPrice());
+        assertEquals(3, b.getTotalCopies());
+        assertEquals(2, b.getAvailableCopies());
+
+        CD c = assertInstanceOf(CD.class, roundTrip(cd));
+        assertEquals(cd.getId(), c.getId());
+        assertEquals("Artist", c.getArtist());
+
+        Journal j = assertInstanceOf(Journal.class, roundTrip(journal));
+        assertEquals("Vol. 7", j.getIssueNumber());
+        assertEquals(2, j.getTotalCopies());
+        assertTrue(j.borrow());
+    }
+
 }
@@ -2,9 +2,15 @@ package librarySE.core;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.time.LocalDate;
 import java.util.UUID;
 
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -152,4 +158,17 @@ class WaitlistEntryTest {
         assertTrue(output.contains(email));
         assertTrue(output.contains(date.toString()));
     }
+
+    @Test
+    void testSnapshot_RoundTrip() throws Exception {
+        WaitlistEntry entry = new WaitlistEntry(UUID.randomUUID(), "student@najah.edu", LocalDate.of(2025, 3, 4));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        entry.writeSnapshot(new SnapshotOutput(new DataOutputStream(bytes)));
+        WaitlistEntry read = WaitlistEntry.readSnapshot(
+                new SnapshotInput(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+
+        assertEquals(entry, read);
+    }
+
 }
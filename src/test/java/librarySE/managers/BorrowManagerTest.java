@@ -1,25 +1,37 @@
 package librarySE.managers;
 
+import librarySE.core.Book;
 import librarySE.core.LibraryItem;
 import librarySE.core.MaterialType;
 import librarySE.core.WaitlistEntry;
 import librarySE.managers.notifications.EmailNotifier;
+import librarySE.repo.BorrowRecordQueries;
 import librarySE.repo.BorrowRecordRepository;
+import librarySE.repo.ConcurrentUpdateException;
+import librarySE.repo.JournalItemRepository;
 import librarySE.repo.WaitlistRepository;
+import librarySE.search.KeywordSearchStrategy;
 import librarySE.strategy.FineStrategy;
+import librarySE.strategy.FineStrategyFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -47,6 +59,12 @@ class BorrowManagerTest {
 
     static class FakeBorrowRepo implements BorrowRecordRepository {
         CopyOnWriteArrayList<BorrowRecord> store = new CopyOnWriteArrayList<>();
+        List<BorrowRecord> archived = List.of();
+
+        @Override
+        public List<BorrowRecord> loadArchived(LocalDate since) {
+            return archived;
+        }
 
         @Override
         public List<BorrowRecord> loadAll() {
@@ -100,6 +118,7 @@ class BorrowManagerTest {
         borrowRepo = new FakeBorrowRepo();
         waitlistRepo = new FakeWaitlistRepo();
         itemManager = mock(ItemManager.class);
+        when(itemManager.itemLookup()).thenReturn(id -> null);
         // We do not init here; each test decides when to init depending on pre-populated data
     }
 
@@ -246,7 +265,7 @@ class BorrowManagerTest {
         assertEquals(item, record.getItem());
 
         verify(item).borrow();
-        verify(itemManager).saveAll();
+        verify(itemManager).saveItem(item);
     }
 
 
@@ -347,7 +366,7 @@ class BorrowManagerTest {
 
             // Item was returned and repositories saved
             verify(item).returnItem();
-            verify(itemManager).saveAll();
+            verify(itemManager).saveItem(item);
             assertEquals(1, borrowRepo.store.size(), "Record list size unchanged (only status updated).");
 
             // Waitlist for this item should be cleared
@@ -494,6 +513,65 @@ class BorrowManagerTest {
         assertTrue(list.contains(r3));
     }
 
+    /** Borrow repository that answers queries itself and counts them. */
+    static class QueryingBorrowRepo extends FakeBorrowRepo implements BorrowRecordQueries {
+        int queries;
+
+        @Override
+        public List<BorrowRecord> findByUser(UUID userId) {
+            queries++;
+            return store.stream().filter(r -> userId.equals(r.getUserId())).toList();
+        }
+
+        @Override
+        public List<BorrowRecord> findByItem(UUID itemId) {
+            queries++;
+            return store.stream().filter(r -> itemId.equals(r.getItemId())).toList();
+        }
+
+        @Override
+        public List<BorrowRecord> findOverdue(LocalDate date) {
+            queries++;
+            return store.stream().filter(r -> r.isOverdue(date)).toList();
+        }
+    }
+
+    @Test
+    void getBorrowRecordsForUser_usesRepositoryQueryAndReturnsHeldInstances() {
+        QueryingBorrowRepo repo = new QueryingBorrowRepo();
+        User u1 = new User("U1", Role.USER, "pass123", "u1@ps.com");
+        User u2 = new User("U2", Role.USER, "pass123", "u2@ps.com");
+        LibraryItem item = new Book("I", "T", "A", BigDecimal.TEN);
+        BorrowRecord r1 = new BorrowRecord(u1, item, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        BorrowRecord r2 = new BorrowRecord(u2, item, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        repo.store.addAll(List.of(r1, r2));
+
+        borrowManager = BorrowManager.init(repo, waitlistRepo, itemManager);
+        BorrowRecord held = borrowManager.getAllBorrowRecords().get(0);
+
+        List<BorrowRecord> list = borrowManager.getBorrowRecordsForUser(u1);
+
+        assertEquals(1, repo.queries);
+        assertEquals(1, list.size());
+        assertSame(held, list.get(0));
+    }
+
+    @Test
+    void getOverdueItems_usesRepositoryQuery() {
+        QueryingBorrowRepo repo = new QueryingBorrowRepo();
+        User u = new User("U", Role.USER, "pass123", "u@ps.com");
+        LibraryItem item = new Book("I", "T", "A", BigDecimal.TEN);
+        BorrowRecord old = new BorrowRecord(u, item, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        repo.store.add(old);
+
+        borrowManager = BorrowManager.init(repo, waitlistRepo, itemManager);
+
+        List<BorrowRecord> overdue = borrowManager.getOverdueItems(old.getDueDate().plusDays(1));
+
+        assertEquals(1, repo.queries);
+        assertEquals(List.of(old.getId()), overdue.stream().map(BorrowRecord::getId).toList());
+    }
+
     // --------------------------------------------------------------------
     // calculateTotalFines
     // --------------------------------------------------------------------
@@ -621,7 +699,7 @@ class BorrowManagerTest {
         // نتأكد أنه حاول يعمل borrow
         verify(item).borrow();
         // ونتأكد إنه ما صار حفظ للآيتمز لأنه فشل
-        verify(itemManager, never()).saveAll();
+        verify(itemManager, never()).saveItem(any());
     }
 
     @Test
@@ -741,4 +819,306 @@ class BorrowManagerTest {
         verify(user).payFine(BigDecimal.valueOf(3));
     }
 
+    // --------------------------------------------------------------------
+    // reference resolution
+    // --------------------------------------------------------------------
+
+    @Test
+    void init_withUserManager_resolvesStoredReferencesToCanonicalInstances() {
+        User user = new User("resolved", Role.USER, "pass123", "resolved@ps.com");
+        LibraryItem item = new librarySE.core.Book("ISBN-R", "Resolved", "Author", BigDecimal.TEN);
+        BorrowRecord original = new BorrowRecord(user, item,
+                librarySE.strategy.FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+
+        // Round-trip through JSON: only the ids survive.
+        BorrowRecord stored = librarySE.utils.FileUtils.fromJson(
+                librarySE.utils.FileUtils.toCompactJson(original), BorrowRecord.class);
+        assertNull(stored.getUser());
+        assertNull(stored.getItem());
+        borrowRepo.store.add(stored);
+
+        UserManager userManager = mock(UserManager.class);
+        when(userManager.getAllUsers()).thenReturn(List.of(user));
+        when(itemManager.itemLookup()).thenReturn(Map.of(item.getId(), item)::get);
+
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager, userManager);
+
+        BorrowRecord loaded = borrowManager.getAllBorrowRecords().get(0);
+        assertSame(user, loaded.getUser());
+        assertSame(item, loaded.getItem());
+        assertEquals(1, borrowManager.getBorrowRecordsForUser(user).size());
+    }
+
+    @Test
+    void init_withUnknownReferences_keepsRecordWithoutThrowing() {
+        User user = new User("orphan", Role.USER, "pass123", "orphan@ps.com");
+        LibraryItem item = new librarySE.core.Book("ISBN-O", "Orphan", "Author", BigDecimal.TEN);
+        BorrowRecord stored = librarySE.utils.FileUtils.fromJson(
+                librarySE.utils.FileUtils.toCompactJson(new BorrowRecord(user, item,
+                        librarySE.strategy.FineStrategyFactory.book(), LocalDate.of(2025, 1, 1))),
+                BorrowRecord.class);
+        borrowRepo.store.add(stored);
+
+        UserManager userManager = mock(UserManager.class);
+        when(userManager.getAllUsers()).thenReturn(List.of());
+
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager, userManager);
+
+        assertEquals(1, borrowManager.getAllBorrowRecords().size());
+        assertEquals(user.getId(), borrowManager.getAllBorrowRecords().get(0).getUserId());
+        assertTrue(borrowManager.getBorrowRecordsForUser(user).isEmpty());
+        assertDoesNotThrow(() -> borrowManager.applyOverdueFines(LocalDate.of(2026, 1, 1)));
+    }
+
+    // --------------------------------------------------------------------
+    // archived history
+    // --------------------------------------------------------------------
+
+    @Test
+    void getBorrowHistory_combinesMemoryAndResolvedArchive() {
+        User user = new User("history", Role.USER, "pass123", "history@ps.com");
+        LibraryItem item = new librarySE.core.Book("ISBN-H", "History", "Author", BigDecimal.TEN);
+        BorrowRecord recent = new BorrowRecord(user, item,
+                librarySE.strategy.FineStrategyFactory.book(), LocalDate.of(2025, 6, 1));
+        recent.markReturned(LocalDate.of(2025, 6, 2));
+        BorrowRecord old = librarySE.utils.FileUtils.fromJson(
+                librarySE.utils.FileUtils.toCompactJson(new BorrowRecord(user, item,
+                        librarySE.strategy.FineStrategyFactory.book(), LocalDate.of(2025, 1, 1))),
+                BorrowRecord.class);
+        BorrowRecord ancient = librarySE.utils.FileUtils.fromJson(
+                librarySE.utils.FileUtils.toCompactJson(new BorrowRecord(user, item,
+                        librarySE.strategy.FineStrategyFactory.book(), LocalDate.of(2023, 1, 1))),
+                BorrowRecord.class);
+        borrowRepo.store.add(recent);
+        borrowRepo.archived = List.of(old, ancient);
+
+        UserManager userManager = mock(UserManager.class);
+        when(userManager.getAllUsers()).thenReturn(List.of(user));
+        when(itemManager.itemLookup()).thenReturn(Map.of(item.getId(), item)::get);
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager, userManager);
+
+        List<BorrowRecord> history = borrowManager.getBorrowHistory(LocalDate.of(2024, 1, 1));
+
+        assertEquals(List.of(recent, old), history);
+        assertSame(user, old.getUser());
+        assertEquals(1, borrowManager.getAllBorrowRecords().size());
+        assertEquals(2, borrowManager.getBorrowRecordsForUser(user, LocalDate.of(2024, 1, 1)).size());
+        assertEquals(1, borrowManager.getBorrowRecordsForUser(user, LocalDate.of(2025, 3, 1)).size());
+    }
+
+    @Test
+    void getBorrowHistory_keepsOpenLoansRegardlessOfDate() {
+        BorrowRecord open = mock(BorrowRecord.class);
+        when(open.isReturned()).thenReturn(false);
+        when(open.getBorrowDate()).thenReturn(LocalDate.of(2020, 1, 1));
+        borrowRepo.store.add(open);
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager);
+
+        assertEquals(List.of(open), borrowManager.getBorrowHistory(LocalDate.of(2025, 1, 1)));
+        assertThrows(IllegalArgumentException.class, () -> borrowManager.getBorrowHistory(null));
+    }
+
+    // --------------------------------------------------------------------
+    // archiveSettledRecords
+    // --------------------------------------------------------------------
+
+    @Test
+    void archiveSettledRecords_movesSettledLoansOutOfMemoryButKeepsThemInHistory(@TempDir Path dir) {
+        User user = new User("archive", Role.USER, "pass123", "archive@ps.com");
+        LibraryItem item = new Book("ISBN-A", "Archive", "Author", BigDecimal.TEN);
+        BorrowRecord settled = new BorrowRecord(user, item, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        settled.markReturned(LocalDate.of(2025, 1, 5));
+        BorrowRecord unpaid = new BorrowRecord(user, item, FineStrategyFactory.book(), LocalDate.of(2025, 1, 2));
+        unpaid.markReturned(LocalDate.of(2025, 3, 1));
+        BorrowRecord open = new BorrowRecord(user, item, FineStrategyFactory.book(), LocalDate.of(2025, 1, 3));
+        borrowRepo.store.addAll(List.of(settled, unpaid, open));
+
+        UserManager userManager = mock(UserManager.class);
+        when(userManager.getAllUsers()).thenReturn(List.of(user));
+        when(itemManager.itemLookup()).thenReturn(Map.of(item.getId(), item)::get);
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager, userManager);
+        assertEquals(0, borrowManager.archiveSettledRecords(LocalDate.of(2025, 6, 1)), "No archive set.");
+
+        borrowManager.setArchive(new librarySE.repo.BorrowRecordArchive(dir, 1 << 20, 8));
+        assertEquals(1, borrowManager.archiveSettledRecords(LocalDate.of(2025, 6, 1)));
+
+        assertEquals(List.of(unpaid, open), borrowManager.getAllBorrowRecords());
+        assertEquals(2, borrowRepo.store.size());
+        List<BorrowRecord> history = borrowManager.getBorrowHistory(LocalDate.of(2024, 1, 1));
+        assertEquals(3, history.size());
+        BorrowRecord archived = history.get(2);
+        assertEquals(settled.getId(), archived.getId());
+        assertSame(user, archived.getUser());
+        assertEquals(3, librarySE.managers.reports.ActivityReportService.since(borrowManager, LocalDate.of(2024, 1, 1))
+                .getTopBorrowers().get(user));
+        assertEquals(0, borrowManager.archiveSettledRecords(LocalDate.of(2025, 6, 1)));
+    }
+
+    // --------------------------------------------------------------------
+    // borrowItem – another desk sharing the data files
+    // --------------------------------------------------------------------
+
+    @Test
+    void borrowItem_loanRejected_dropsRecordAndGivesCopyBack() {
+        ConcurrentUpdateException conflict = new ConcurrentUpdateException(UUID.randomUUID(), "changed elsewhere");
+        // Every new loan is rejected; saves without one (after the fine check) go through.
+        FakeBorrowRepo records = new FakeBorrowRepo() {
+            @Override
+            public void saveAll(List<BorrowRecord> all) {
+                if (!all.isEmpty()) throw conflict;
+                super.saveAll(all);
+            }
+        };
+        borrowManager = BorrowManager.init(records, waitlistRepo, itemManager);
+
+        User user = mock(User.class);
+        when(user.getId()).thenReturn(UUID.randomUUID());
+        LibraryItem item = mock(LibraryItem.class);
+        when(item.getId()).thenReturn(UUID.randomUUID());
+        when(item.isAvailable()).thenReturn(true);
+        when(item.borrow()).thenReturn(true);
+        when(item.getMaterialType()).thenReturn(MaterialType.BOOK);
+
+        assertSame(conflict, assertThrows(ConcurrentUpdateException.class,
+                () -> borrowManager.borrowItem(user, item)));
+
+        assertTrue(borrowManager.getAllBorrowRecords().isEmpty(), "No loan is held for a rejected write.");
+        verify(item, times(BorrowManager.MAX_ATTEMPTS)).borrow();
+        verify(item, times(BorrowManager.MAX_ATTEMPTS)).returnItem();
+        verify(itemManager, times(2 * BorrowManager.MAX_ATTEMPTS)).saveItem(item);
+    }
+
+    @Test
+    void returnItem_revertFails_isLoggedAndTheConflictRethrown() {
+        UUID itemId = UUID.randomUUID();
+        User borrower = mock(User.class);
+        when(borrower.getId()).thenReturn(UUID.randomUUID());
+        LibraryItem item = mock(LibraryItem.class);
+        when(item.getId()).thenReturn(itemId);
+
+        BorrowRecord record = mock(BorrowRecord.class);
+        when(record.getUser()).thenReturn(borrower);
+        when(record.getItem()).thenReturn(item);
+        when(record.getId()).thenReturn(UUID.randomUUID());
+
+        ConcurrentUpdateException conflict = new ConcurrentUpdateException(record.getId(), "returned elsewhere");
+        // Every write of the returned loan is rejected; other saves go through.
+        AtomicBoolean returned = new AtomicBoolean();
+        doAnswer(inv -> {
+            returned.set(true);
+            return null;
+        }).when(record).markReturned(any());
+        FakeBorrowRepo records = new FakeBorrowRepo() {
+            @Override
+            public void saveAll(List<BorrowRecord> all) {
+                if (returned.getAndSet(false)) throw conflict;
+                super.saveAll(all);
+            }
+        };
+        records.store.add(record);
+        borrowManager = BorrowManager.init(records, waitlistRepo, itemManager);
+
+        UncheckedIOException diskFull = new UncheckedIOException(new IOException("disk full"));
+        doNothing().doThrow(diskFull).doNothing().when(itemManager).saveItem(item);
+
+        ConcurrentUpdateException thrown = assertThrows(ConcurrentUpdateException.class,
+                () -> borrowManager.returnItem(borrower, item));
+
+        assertSame(conflict, thrown);
+        assertSame(diskFull, thrown.getSuppressed()[0]);
+        verify(item, times(BorrowManager.MAX_ATTEMPTS)).borrow();
+        verify(itemManager, times(2 * BorrowManager.MAX_ATTEMPTS)).refresh();
+    }
+
+    @Test
+    void borrowItem_itemCannotBeSaved_givesTheCopyBack() {
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager);
+        User user = new User("M", Role.USER, "pass123", "m@ps.com");
+        Book book = new Book("978-1", "Held Book", "Author", BigDecimal.TEN, 2);
+        UncheckedIOException diskFull = new UncheckedIOException(new IOException("disk full"));
+        doThrow(diskFull).when(itemManager).saveItem(book);
+
+        assertSame(diskFull, assertThrows(UncheckedIOException.class, () -> borrowManager.borrowItem(user, book)));
+
+        assertEquals(2, book.getAvailableCopies(), "The held item keeps the stored copy count.");
+        assertTrue(borrowRepo.store.isEmpty());
+    }
+
+    @Test
+    void returnItem_itemCannotBeSaved_takesTheCopyBack() {
+        User user = new User("M", Role.USER, "pass123", "m@ps.com");
+        Book book = new Book("978-1", "Held Book", "Author", BigDecimal.TEN, 2);
+        assertTrue(book.borrow());
+        BorrowRecord record = new BorrowRecord(user, book, FineStrategyFactory.book(), LocalDate.now());
+        borrowRepo.store.add(record);
+        borrowManager = BorrowManager.init(borrowRepo, waitlistRepo, itemManager);
+        UncheckedIOException diskFull = new UncheckedIOException(new IOException("disk full"));
+        doThrow(diskFull).when(itemManager).saveItem(book);
+
+        assertSame(diskFull, assertThrows(UncheckedIOException.class, () -> borrowManager.returnItem(user, book)));
+
+        assertEquals(1, book.getAvailableCopies(), "The held item keeps the stored copy count.");
+        assertFalse(record.isReturned());
+    }
+
+    @Test
+    void refresh_appliesWaitlistChangesOfAnotherDesk() {
+        WaitlistEntry mine = new WaitlistEntry(UUID.randomUUID(), "a@ps.com", LocalDate.now());
+        WaitlistEntry theirs = new WaitlistEntry(UUID.randomUUID(), "b@ps.com", LocalDate.now());
+        waitlistRepo.store.add(mine);
+        FakeWaitlistRepo shared = new FakeWaitlistRepo() {
+            @Override
+            public Optional<List<WaitlistEntry>> refresh() {
+                return Optional.of(List.of(theirs));
+            }
+        };
+        shared.store = waitlistRepo.store;
+        borrowManager = BorrowManager.init(borrowRepo, shared, itemManager);
+
+        assertTrue(borrowManager.refresh());
+
+        assertEquals(List.of(theirs), borrowManager.getWaitlist());
+    }
+
+    @Test
+    void borrowItem_copyTakenByAnotherDesk_retriesAndAddsToWaitlist(@TempDir Path dir) throws Exception {
+        Field items = ItemManager.class.getDeclaredField("instance");
+        items.setAccessible(true);
+        items.set(null, null);
+
+        Path snapshot = dir.resolve("items.json");
+        Path journal = dir.resolve("items.journal");
+        Book book = new Book("978-1", "Shared Book", "Author", BigDecimal.TEN, 1);
+        try (JournalItemRepository deskA = new JournalItemRepository(snapshot, journal, 512);
+             JournalItemRepository deskB = new JournalItemRepository(snapshot, journal, 512)) {
+            deskA.upsert(book);
+            ItemManager shared = ItemManager.init(deskA, new KeywordSearchStrategy());
+
+            // Desk B takes the last copy right after desk A refreshed its items.
+            FakeBorrowRepo records = new FakeBorrowRepo() {
+                boolean taken;
+
+                @Override
+                public void saveAll(List<BorrowRecord> all) {
+                    if (!taken) {
+                        taken = true;
+                        LibraryItem copy = deskB.loadAll().get(0);
+                        assertTrue(copy.borrow());
+                        deskB.upsert(copy);
+                    }
+                    super.saveAll(all);
+                }
+            };
+            borrowManager = BorrowManager.init(records, waitlistRepo, shared);
+            User user = new User("M", Role.USER, "pass123", "m@ps.com");
+
+            assertFalse(borrowManager.borrowItem(user, book));
+
+            assertTrue(records.store.isEmpty(), "No record for a copy the other desk took.");
+            assertEquals(1, waitlistRepo.store.size());
+            assertFalse(deskB.loadAll().get(0).isAvailable(), "The copy stays with the other desk.");
+        } finally {
+            items.set(null, null);
+        }
+    }
 }
@@ -3,12 +3,14 @@ package librarySE.managers;
 import librarySE.core.*;
 import librarySE.strategy.FineStrategy;
 import librarySE.strategy.FineStrategyFactory;
+import librarySE.utils.FileUtils;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -67,6 +69,82 @@ class BorrowRecordTest {
                 () -> new BorrowRecord(user, item, strategy, null));
     }
 
+    @Test
+    void constructor_assignsUniqueId() {
+        BorrowRecord other = new BorrowRecord(user, item, strategy, borrowDate);
+        assertNotNull(record.getId());
+        assertNotEquals(record.getId(), other.getId());
+        assertFalse(record.ensureId());
+    }
+
+    @Test
+    void ensureId_assignsIdToLegacyRecord() throws Exception {
+        var idField = BorrowRecord.class.getDeclaredField("id");
+        idField.setAccessible(true);
+        idField.set(record, null);
+
+        assertTrue(record.ensureId());
+        assertNotNull(record.getId());
+        assertFalse(record.ensureId());
+    }
+
+    // ============================
+    // Reference Storage Tests
+    // ============================
+
+    @Test
+    void serialization_storesIdsInsteadOfEmbeddedObjects() {
+        String json = FileUtils.toCompactJson(record);
+
+        assertFalse(json.contains("\"user\""));
+        assertFalse(json.contains("\"item\""));
+        assertTrue(json.contains(user.getId().toString()));
+        assertTrue(json.contains(item.getId().toString()));
+    }
+
+    @Test
+    void deserialization_legacyEmbeddedObjects_fillsReferenceIds() {
+        // Older files embed the full user and item and have no id fields.
+        String legacy = FileUtils.toCompactJson(record)
+                .replace("\"userId\":\"" + user.getId() + "\",", "")
+                .replace("\"itemId\":\"" + item.getId() + "\",", "");
+        com.google.gson.JsonObject obj = com.google.gson.JsonParser.parseString(legacy).getAsJsonObject();
+        obj.add("user", com.google.gson.JsonParser.parseString(FileUtils.toCompactJson(user)));
+        assertFalse(obj.has("userId"));
+
+        BorrowRecord loaded = FileUtils.fromJson(obj.toString(), BorrowRecord.class);
+
+        assertEquals(user.getId(), loaded.getUserId());
+        assertEquals(user.getUsername(), loaded.getUser().getUsername());
+    }
+
+    @Test
+    void resolveReferences_replacesWithCanonicalInstances() {
+        BorrowRecord stored = FileUtils.fromJson(FileUtils.toCompactJson(record), BorrowRecord.class);
+
+        assertTrue(stored.resolveReferences(id -> id.equals(user.getId()) ? user : null,
+                                            id -> id.equals(item.getId()) ? item : null));
+        assertSame(user, stored.getUser());
+        assertSame(item, stored.getItem());
+    }
+
+    @Test
+    void resolveReferences_unknownIds_returnsFalseAndKeepsIds() {
+        BorrowRecord stored = FileUtils.fromJson(FileUtils.toCompactJson(record), BorrowRecord.class);
+
+        assertFalse(stored.resolveReferences(id -> null, id -> null));
+        assertNull(stored.getUser());
+        assertEquals(user.getId(), stored.getUserId());
+        assertEquals(item.getId(), stored.getItemId());
+        assertDoesNotThrow(() -> stored.calculateFine(borrowDate.plusDays(200)));
+    }
+
+    @Test
+    void getReferenceIds_matchConstructorArguments() {
+        assertEquals(user.getId(), record.getUserId());
+        assertEquals(item.getId(), record.getItemId());
+        assertNotEquals(UUID.randomUUID(), record.getUserId());
+    }
 
     // ============================
     // Fine Calculation Tests
@@ -313,4 +391,27 @@ class BorrowRecordTest {
      assertNotNull(field.get(record));
  }
 
+ @Test
+ void snapshot_roundTripKeepsStateAndReferenceIds() throws Exception {
+     LocalDate late = borrowDate.plusDays(60);
+     record.applyFineToUser(late);
+     record.setFinePaid(BigDecimal.ONE);
+
+     java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+     record.writeSnapshot(new librarySE.utils.SnapshotOutput(new java.io.DataOutputStream(bytes)));
+     BorrowRecord read = BorrowRecord.readSnapshot(new librarySE.utils.SnapshotInput(
+             new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()))));
+
+     assertEquals(record.getId(), read.getId());
+     assertEquals(user.getId(), read.getUserId());
+     assertEquals(item.getId(), read.getItemId());
+     assertNull(read.getUser());
+     assertEquals(record.getDueDate(), read.getDueDate());
+     assertEquals(record.getRemainingFine(), read.getRemainingFine());
+     assertTrue(read.isFineApplied());
+
+     assertTrue(read.resolveReferences(id -> user, id -> item));
+     assertSame(item, read.getItem());
+ }
+
 }
@@ -0,0 +1,82 @@
+package librarySE.managers;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeBarrierTest {
+
+    @Test
+    void quiesce_waitsForOperationInProgress() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        AtomicBoolean operationDone = new AtomicBoolean();
+        Thread operation = new Thread(() -> {
+            ChangeBarrier.enter();
+            try {
+                entered.countDown();
+                finish.await();
+                operationDone.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                ChangeBarrier.exit();
+            }
+        });
+        operation.start();
+        entered.await();
+
+        CompletableFuture<Boolean> sawDone = CompletableFuture.supplyAsync(
+                () -> ChangeBarrier.quiesce(operationDone::get).value());
+        Thread.sleep(100);
+        assertFalse(sawDone.isDone(), "The action must wait for the operation.");
+
+        finish.countDown();
+        assertTrue(sawDone.get(5, TimeUnit.SECONDS));
+        operation.join();
+    }
+
+    @Test
+    void operationsStartedDuringQuiesce_waitForTheAction() throws Exception {
+        CountDownLatch acting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ChangeBarrier.Quiesced<String>> quiesced = CompletableFuture.supplyAsync(
+                () -> ChangeBarrier.quiesce(() -> {
+                    acting.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "cut";
+                }));
+        acting.await();
+
+        CompletableFuture<Void> operation = CompletableFuture.runAsync(() -> {
+            ChangeBarrier.enter();
+            ChangeBarrier.exit();
+        });
+        Thread.sleep(100);
+        assertFalse(operation.isDone(), "Operations must not start while the action runs.");
+
+        release.countDown();
+        operation.get(5, TimeUnit.SECONDS);
+        assertEquals("cut", quiesced.get().value());
+        assertTrue(quiesced.get().held().toMillis() >= 100);
+    }
+
+    @Test
+    void quiesce_withinOperation_isRejected() {
+        ChangeBarrier.enter();
+        try {
+            assertThrows(IllegalStateException.class, () -> ChangeBarrier.quiesce(() -> null));
+        } finally {
+            ChangeBarrier.exit();
+        }
+    }
+}
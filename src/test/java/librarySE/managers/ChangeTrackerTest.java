@@ -0,0 +1,316 @@
+package librarySE.managers;
+
+import librarySE.repo.ChangeLog;
+import librarySE.repo.ConcurrentUpdateException;
+import librarySE.repo.EntityRepository;
+import librarySE.repo.PersistenceCoordinator;
+import librarySE.repo.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeTrackerTest {
+
+    record Entity(UUID id, String name) { }
+
+    /** Repository that logs every call. */
+    static class RecordingRepo implements EntityRepository<Entity> {
+        final boolean incremental;
+        final List<String> calls = new ArrayList<>();
+
+        RecordingRepo(boolean incremental) { this.incremental = incremental; }
+
+        @Override public List<Entity> loadAll() { return List.of(); }
+        @Override public void saveAll(List<Entity> all) { calls.add("saveAll:" + all.size()); }
+        @Override public boolean supportsIncrementalWrites() { return incremental; }
+        @Override public void upsert(Entity e) { calls.add("upsert:" + e.name()); }
+        @Override public void delete(Entity e) { calls.add("delete:" + e.name()); }
+    }
+
+    private static Entity entity(String name) {
+        return new Entity(UUID.randomUUID(), name);
+    }
+
+    @Test
+    void save_writesOnlyChangedEntitiesWhenSupported() {
+        RecordingRepo repo = new RecordingRepo(true);
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        Entity a = entity("a"), b = entity("b"), c = entity("c");
+
+        tracker.changed(a);
+        tracker.changed(a);
+        tracker.removed(b);
+        assertEquals(2, tracker.pending());
+
+        tracker.save(List.of(a, c));
+
+        assertEquals(List.of("delete:b", "upsert:a"), repo.calls);
+        assertEquals(0, tracker.pending());
+    }
+
+    @Test
+    void save_fallsBackToFullListWithoutIncrementalSupport() {
+        RecordingRepo repo = new RecordingRepo(false);
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        Entity a = entity("a");
+
+        tracker.changed(a);
+        tracker.save(List.of(a, entity("b")));
+
+        assertEquals(List.of("saveAll:2"), repo.calls);
+        assertEquals(0, tracker.pending());
+    }
+
+    @Test
+    void removedAfterChanged_onlyDeletes() {
+        RecordingRepo repo = new RecordingRepo(true);
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        Entity a = entity("a");
+
+        tracker.changed(a);
+        tracker.removed(a);
+        tracker.save(List.of());
+
+        assertEquals(List.of("delete:a"), repo.calls);
+    }
+
+    @Test
+    void saveAll_rewritesEverythingAndForgetsChanges() {
+        RecordingRepo repo = new RecordingRepo(true);
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+
+        tracker.changed(entity("a"));
+        tracker.changed(null);
+        tracker.saveAll(List.of(entity("x")));
+        tracker.save(List.of());
+
+        assertEquals(List.of("saveAll:1"), repo.calls);
+    }
+
+    @Test
+    void save_recordsWrittenEntitiesInTheChangeFeed(@TempDir Path dir) throws IOException {
+        RecordingRepo repo = new RecordingRepo(true);
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id, ChangeLog.Entity.USER);
+        Entity a = entity("a"), b = entity("b");
+
+        try (ChangeLog log = new ChangeLog(dir, 100, 2)) {
+            ChangeFeed.install(log);
+            tracker.changed(a);
+            tracker.removed(b);
+            tracker.save(List.of(a));
+            tracker.saveAll(List.of(a));
+
+            try (Stream<ChangeLog.Change> changes = log.changesAfter(0)) {
+                assertEquals(List.of("DELETE:" + b.id(), "UPSERT:" + a.id(), "UPSERT:" + a.id()),
+                        changes.map(c -> c.operation() + ":" + c.id()).toList());
+            }
+        } finally {
+            ChangeFeed.install(null);
+        }
+    }
+
+    @Test
+    void failedWrite_isNotRecorded(@TempDir Path dir) throws IOException {
+        RecordingRepo repo = new RecordingRepo(true) {
+            @Override public void upsert(Entity e) { throw new IllegalStateException("conflict"); }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id, ChangeLog.Entity.USER);
+        Entity a = entity("a");
+
+        try (ChangeLog log = new ChangeLog(dir, 100, 2)) {
+            ChangeFeed.install(log);
+            tracker.changed(a);
+            assertThrows(IllegalStateException.class, () -> tracker.save(List.of(a)));
+
+            assertEquals(0, log.lastSequence());
+        } finally {
+            ChangeFeed.install(null);
+        }
+    }
+
+    @Test
+    void failedWrite_keepsUnwrittenEntitiesForTheNextSave() {
+        Entity a = entity("a"), b = entity("b"), c = entity("c");
+        RecordingRepo repo = new RecordingRepo(true) {
+            boolean failed;
+            @Override public void upsert(Entity e) {
+                if (e == b && !failed) {
+                    failed = true;
+                    throw new IllegalStateException("conflict");
+                }
+                super.upsert(e);
+            }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        tracker.changed(a);
+        tracker.changed(b);
+        tracker.changed(c);
+
+        assertThrows(IllegalStateException.class, () -> tracker.save(List.of(a, b, c)));
+
+        assertEquals(List.of("upsert:a"), repo.calls);
+        assertEquals(2, tracker.pending(), "b and c are still waiting to be written.");
+
+        tracker.save(List.of(a, b, c));
+
+        assertEquals(List.of("upsert:a", "upsert:b", "upsert:c"), repo.calls);
+        assertEquals(0, tracker.pending());
+    }
+
+    @Test
+    void failedWrite_doesNotOverrideAChangeRecordedMeanwhile() {
+        Entity a = entity("a");
+        Entity newerA = new Entity(a.id(), "a2");
+        AtomicReference<ChangeTracker<Entity>> holder = new AtomicReference<>();
+        RecordingRepo repo = new RecordingRepo(true) {
+            @Override public void upsert(Entity e) {
+                holder.get().removed(newerA);
+                throw new IllegalStateException("disk full");
+            }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        holder.set(tracker);
+        tracker.changed(a);
+
+        assertThrows(IllegalStateException.class, () -> tracker.save(List.of(a)));
+
+        assertEquals(1, tracker.pending(), "The removal recorded during the save is kept, not the older upsert.");
+    }
+
+    @Test
+    void deferredWrite_isRecordedOnlyOnceStoredAndNotWhenDropped(@TempDir Path dir) throws IOException {
+        User kept = new User("K", Role.USER, "pass123", "k@ps.com");
+        User conflicting = new User("C", Role.USER, "pass123", "c@ps.com");
+        List<String> stored = new ArrayList<>();
+        UserRepository delegate = new UserRepository() {
+            @Override public List<User> loadAll() { return List.of(); }
+            @Override public void saveAll(List<User> users) { }
+            @Override public boolean supportsIncrementalWrites() { return true; }
+            @Override public void upsert(User u) {
+                if (u == conflicting) throw new ConcurrentUpdateException(u.getId(), "changed by another process");
+                stored.add(u.getUsername());
+            }
+        };
+        PersistenceCoordinator coordinator = new PersistenceCoordinator(0, 100);
+        ChangeTracker<User> tracker = new ChangeTracker<>(coordinator.users(delegate), User::getId,
+                ChangeLog.Entity.USER);
+
+        try (ChangeLog log = new ChangeLog(dir, 100, 2)) {
+            ChangeFeed.install(log);
+            tracker.changed(kept);
+            tracker.changed(conflicting);
+            tracker.save(List.of(kept, conflicting));
+            assertEquals(0, log.lastSequence(), "Nothing is stored before the flush.");
+
+            coordinator.flush();
+
+            assertEquals(List.of("K"), stored);
+            try (Stream<ChangeLog.Change> changes = log.changesAfter(0)) {
+                assertEquals(List.of("UPSERT:" + kept.getId()),
+                        changes.map(c -> c.operation() + ":" + c.id()).toList(),
+                        "The dropped write is not recorded.");
+            }
+        } finally {
+            ChangeFeed.install(null);
+            coordinator.close();
+        }
+    }
+
+    @Test
+    void deferredFullList_refusedOnce_isRecordedOnceWhenSavedAgain(@TempDir Path dir) throws IOException {
+        Entity a = entity("a");
+        AtomicReference<EntityRepository.WriteListener<Entity>> listener = new AtomicReference<>();
+        AtomicBoolean refuse = new AtomicBoolean(true);
+        RecordingRepo repo = new RecordingRepo(false) {
+            @Override public boolean notifyWhenStored(WriteListener<Entity> l) {
+                listener.set(l);
+                return true;
+            }
+            @Override public void saveAll(List<Entity> all) {
+                if (refuse.getAndSet(false)) throw new IllegalStateException("queue full");
+                listener.get().fullListWritten(true);
+            }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id, ChangeLog.Entity.ITEM);
+
+        try (ChangeLog log = new ChangeLog(dir, 100, 2)) {
+            ChangeFeed.install(log);
+            tracker.changed(a);
+            assertThrows(IllegalStateException.class, () -> tracker.save(List.of(a)));
+            tracker.save(List.of(a));
+
+            assertEquals(1, log.lastSequence(), "The change is recorded once, with the save that stored it.");
+        } finally {
+            ChangeFeed.install(null);
+        }
+    }
+
+    @Test
+    void refresh_reportsUnsavedChangesToEntitiesChangedElsewhere() {
+        Entity a = entity("a"), b = entity("b");
+        Entity aElsewhere = new Entity(a.id(), "a changed elsewhere");
+        RecordingRepo repo = new RecordingRepo(true) {
+            @Override public Changes<Entity> refresh() { return new Changes<>(List.of(aElsewhere), Set.of()); }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        CopyOnWriteArrayList<Entity> all = new CopyOnWriteArrayList<>(List.of(a, b));
+        tracker.changed(a);
+        tracker.changed(b);
+
+        ConcurrentUpdateException e = assertThrows(ConcurrentUpdateException.class, () -> tracker.refresh(all));
+
+        assertEquals(a.id(), e.getId());
+        assertEquals(List.of(aElsewhere, b), all, "The list is brought up to date before the conflict is reported.");
+        assertEquals(1, tracker.pending(), "Only the change to the unaffected entity is kept.");
+    }
+
+    @Test
+    void rejectedWrite_isNotRetried() {
+        Entity a = entity("a"), b = entity("b");
+        RecordingRepo repo = new RecordingRepo(true) {
+            @Override public void upsert(Entity e) {
+                if (e == a) throw new ConcurrentUpdateException(e.id(), "changed elsewhere");
+                super.upsert(e);
+            }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        tracker.changed(a);
+        tracker.changed(b);
+
+        assertThrows(ConcurrentUpdateException.class, () -> tracker.save(List.of(a, b)));
+
+        assertEquals(1, tracker.pending(), "The outdated copy is dropped; the unwritten one is kept.");
+    }
+
+    @Test
+    void whenStored_reportsOnlyTheEntitiesWritten() {
+        Entity a = entity("a"), b = entity("b");
+        RecordingRepo repo = new RecordingRepo(true) {
+            @Override public void upsert(Entity e) {
+                if (e == b) throw new IllegalStateException("disk full");
+                super.upsert(e);
+            }
+        };
+        ChangeTracker<Entity> tracker = new ChangeTracker<>(repo, Entity::id);
+        List<Entity> reported = new ArrayList<>();
+        tracker.whenStored(reported::addAll);
+        tracker.changed(a);
+        tracker.changed(b);
+
+        assertThrows(IllegalStateException.class, () -> tracker.save(List.of(a, b)));
+
+        assertEquals(List.of(a), reported);
+    }
+}
@@ -2,15 +2,18 @@ package librarySE.managers;
 
 import librarySE.core.*;
 import librarySE.repo.ItemRepository;
+import librarySE.repo.MappedItemRepository;
 import librarySE.search.SearchStrategy;
 import librarySE.managers.notifications.EmailNotifier;
 import librarySE.utils.LoggerUtils;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedConstruction;
 import org.mockito.MockedStatic;
 
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -184,6 +187,58 @@ class ItemManagerTest {
         assertEquals("u@mail.com", cap.u.getEmail());
     }
 
+    // -----------------------------------------------------
+    // addItems() Tests
+    // -----------------------------------------------------
+
+    @Test
+    void testAddItemsSavesOnceWithoutNotifications() {
+        class CountingRepo extends FakeItemRepo {
+            int saves;
+            @Override public void saveAll(List<LibraryItem> items) {
+                saves++;
+                super.saveAll(items);
+            }
+        }
+        CountingRepo counting = new CountingRepo();
+        ItemManager m = ItemManager.init(counting, search);
+
+        Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+        Admin admin = Admin.getInstance();
+
+        List<LibraryItem> batch = List.of(
+                new Book("1", "T1", "A", BigDecimal.TEN),
+                new CD("T2", "Artist", BigDecimal.ONE),
+                new Journal("T3", "Editor", "1", BigDecimal.ONE));
+
+        try (MockedConstruction<EmailNotifier> mocked = mockConstruction(EmailNotifier.class)) {
+            m.addItems(batch, admin);
+            assertTrue(mocked.constructed().isEmpty());
+        }
+
+        assertEquals(1, counting.saves);
+        assertEquals(3, counting.store.size());
+        assertEquals(3, m.getAllItems().size());
+    }
+
+    @Test
+    void testAddItemsRejectsNonAdminAndNullItems() {
+        ItemManager m = ItemManager.init(repo, search);
+
+        Admin fakeAdmin = mock(Admin.class);
+        when(fakeAdmin.isAdmin()).thenReturn(false);
+        List<LibraryItem> batch = List.of(new Book("1", "T", "A", BigDecimal.TEN));
+        assertThrows(IllegalArgumentException.class, () -> m.addItems(batch, fakeAdmin));
+
+        Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+        List<LibraryItem> withNull = new ArrayList<>();
+        withNull.add(null);
+        assertThrows(NullPointerException.class, () -> m.addItems(withNull, Admin.getInstance()));
+
+        assertTrue(m.getAllItems().isEmpty());
+        assertTrue(repo.store.isEmpty());
+    }
+
     /**
      * Triggers the catch block in addItem:
      * - UserManager is NOT initialized, so getInstance() throws IllegalStateException.
@@ -309,6 +364,51 @@ class ItemManagerTest {
         assertEquals(0, result.size());
     }
 
+    // -----------------------------------------------------
+    // saveItem() / incremental writes
+    // -----------------------------------------------------
+
+    static class IncrementalItemRepo extends FakeItemRepo {
+        List<String> calls = new ArrayList<>();
+
+        @Override public void saveAll(List<LibraryItem> items) {
+            super.saveAll(items);
+            calls.add("saveAll");
+        }
+        @Override public boolean supportsIncrementalWrites() { return true; }
+        @Override public void upsert(LibraryItem item) { calls.add("upsert:" + item.getTitle()); }
+        @Override public void delete(LibraryItem item) { calls.add("delete:" + item.getTitle()); }
+    }
+
+    @Test
+    void testSaveItemWritesOnlyThatItemWhenRepoSupportsIt() {
+        IncrementalItemRepo incremental = new IncrementalItemRepo();
+        Book book = new Book("1", "T", "A", BigDecimal.TEN);
+        incremental.store.add(book);
+        incremental.store.add(new Book("2", "X", "Y", BigDecimal.ONE));
+        ItemManager m = ItemManager.init(incremental, search);
+
+        Admin.initialize("A", "Strong1!", "a@mail.com");
+
+        book.setTitle("New");
+        m.saveItem(book);
+        m.deleteItem(book, Admin.getInstance());
+
+        assertEquals(List.of("upsert:New", "delete:New"), incremental.calls);
+    }
+
+    @Test
+    void testSaveItemFallsBackToFullSave() {
+        ItemManager m = ItemManager.init(repo, search);
+        Book book = new Book("1", "T", "A", BigDecimal.TEN);
+        repo.store.add(book);
+
+        assertThrows(NullPointerException.class, () -> m.saveItem(null));
+        m.saveItem(book);
+
+        assertTrue(repo.store.isEmpty(), "the manager's list is saved as a whole");
+    }
+
     // -----------------------------------------------------
     // getAllItems()
     // -----------------------------------------------------
@@ -363,4 +463,53 @@ class ItemManagerTest {
         assertSame(newStrategy, internal);
     }
 
+    // -----------------------------------------------------
+    // Repository that reads on demand
+    // -----------------------------------------------------
+
+    @Test
+    void onDemandRepository_itemsAreReadWhenNeededNotAtStartup(@TempDir Path dir) {
+        Book kept = new Book("ISBN-1", "Kept", "A", BigDecimal.TEN, 2);
+        Book removed = new Book("ISBN-2", "Removed", "B", BigDecimal.TEN, 1);
+        new MappedItemRepository(dir, null, 512).saveAll(List.of(kept, removed));
+        MappedItemRepository mapped = new MappedItemRepository(dir, null, 512);
+
+        ItemManager m = ItemManager.init(mapped, search);
+        assertEquals(0, mapped.materializedCount());
+
+        LibraryItem found = m.findItemById(kept.getId()).orElseThrow();
+        assertSame(found, m.findItemById(kept.getId()).orElseThrow());
+        assertEquals(1, mapped.materializedCount());
+
+        Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+        Admin admin = Admin.getInstance();
+        Book added = new Book("ISBN-3", "Added", "C", BigDecimal.TEN, 1);
+        m.addItems(List.of(added), admin);
+        m.deleteItem(m.findItemById(removed.getId()).orElseThrow(), admin);
+        mapped.close();
+
+        assertTrue(m.findItemById(removed.getId()).isEmpty());
+        assertSame(added, m.findItemById(added.getId()).orElseThrow());
+        List<UUID> expected = List.of(kept.getId(), added.getId());
+        assertEquals(expected, m.getAllItems().stream().map(LibraryItem::getId).toList());
+        assertEquals(expected, new MappedItemRepository(dir, null, 512).loadAll().stream()
+                .map(LibraryItem::getId).toList());
+    }
+
+    @Test
+    void onDemandRepository_addedItemsAreReleasedOnceStored(@TempDir Path dir) throws Exception {
+        MappedItemRepository mapped = new MappedItemRepository(dir, null, 512);
+        ItemManager m = ItemManager.init(mapped, search);
+        Admin.initialize("Admin", "Strong1!", "admin@mail.com");
+        Book added = new Book("ISBN-3", "Added", "C", BigDecimal.TEN, 1);
+
+        m.addItems(List.of(added), Admin.getInstance());
+
+        var f = ItemManager.class.getDeclaredField("items");
+        f.setAccessible(true);
+        assertTrue(((List<?>) f.get(m)).isEmpty(), "The repository serves the item once stored.");
+        assertSame(added, m.findItemById(added.getId()).orElseThrow());
+        assertEquals(List.of(added.getId()), m.getAllItems().stream().map(LibraryItem::getId).toList());
+        mapped.close();
+    }
 }
@@ -1,10 +1,16 @@
 package librarySE.managers;
 
+import librarySE.utils.SnapshotInput;
+import librarySE.utils.SnapshotOutput;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -240,6 +246,23 @@ class UserTest {
             assertTrue(cause.getCause() instanceof NoSuchAlgorithmException);
         }
     }
-}
 
+    @Test
+    void snapshot_roundTripKeepsIdHashAndBalance() throws Exception {
+        User user = new User("snap", Role.USER, "secret1", "snap@ps.com");
+        user.addFine(new BigDecimal("4.25"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        user.writeSnapshot(new SnapshotOutput(new DataOutputStream(bytes)));
+        User read = User.readSnapshot(
+                new SnapshotInput(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+
+        assertEquals(user, read);
+        assertEquals("snap", read.getUsername());
+        assertEquals("snap@ps.com", read.getEmail());
+        assertEquals(Role.USER, read.getRole());
+        assertEquals(new BigDecimal("4.25"), read.getFineBalance());
+        assertTrue(read.checkPassword("secret1"));
+    }
 
+}
@@ -149,4 +149,17 @@ class ActivityReportServiceTest {
         List<BorrowRecord> list = s.getOverdueItemsForUser(u1, LocalDate.now().plusDays(10));
         assertTrue(list.isEmpty());
     }
+
+    @Test
+    void since_buildsServiceFromBorrowHistory() {
+        BorrowManager manager = org.mockito.Mockito.mock(BorrowManager.class);
+        LocalDate since = LocalDate.now().minusDays(7);
+        org.mockito.Mockito.when(manager.getBorrowHistory(since)).thenReturn(List.of(r2));
+
+        ActivityReportService recent = ActivityReportService.since(manager, since);
+
+        assertEquals(Map.of(u1, 1L), recent.getTopBorrowers());
+        assertThrows(IllegalArgumentException.class, () -> ActivityReportService.since(null, since));
+        assertThrows(IllegalArgumentException.class, () -> ActivityReportService.since(manager, null));
+    }
 }
@@ -0,0 +1,179 @@
+package librarySE.repo;
+
+import librarySE.utils.RecoveryReport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AppendOnlyJournalTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setup() throws IOException {
+        file = Files.createTempDirectory("journal_test").resolve("test.journal");
+    }
+
+    private static AppendOnlyJournal.Entry entry(int type, String text) {
+        return new AppendOnlyJournal.Entry((byte) type, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> replayAll(AppendOnlyJournal journal) throws IOException {
+        List<String> out = new ArrayList<>();
+        journal.replay(e -> out.add(e.type() + ":" + new String(e.payload(), StandardCharsets.UTF_8)));
+        return out;
+    }
+
+    @Test
+    void newJournal_containsOnlyHeader() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            assertEquals(0, journal.entryCount());
+            assertEquals(AppendOnlyJournal.HEADER_SIZE, journal.sizeInBytes());
+        }
+    }
+
+    @Test
+    void append_thenReplay_returnsEntriesInOrder() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "a"), entry(2, "bb")));
+            journal.append(List.of(entry(3, "ccc")));
+
+            assertEquals(3, journal.entryCount());
+            assertEquals(List.of("1:a", "2:bb", "3:ccc"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void reopen_preservesEntries() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "x")));
+        }
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            assertEquals(1, journal.entryCount());
+            journal.append(List.of(entry(2, "y")));
+            assertEquals(List.of("1:x", "2:y"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void reopen_truncatesTornTail() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "keep"), entry(2, "torn")));
+        }
+        long size = Files.size(file);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3);
+        }
+
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            assertEquals(List.of("1:keep"), replayAll(journal));
+            journal.append(List.of(entry(3, "next")));
+            assertEquals(List.of("1:keep", "3:next"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void reopen_dropsEntriesAfterChecksumMismatch() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "good"), entry(2, "flip")));
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 6] ^= 0x01; // inside the second payload
+        Files.write(file, bytes);
+
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            assertEquals(List.of("1:good"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void reopen_quarantinesDiscardedTailAndReportsIt() throws IOException {
+        RecoveryReport.drain();
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "good")));
+        }
+        long validSize = Files.size(file);
+        Files.write(file, "garbage".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            assertEquals(List.of("1:good"), replayAll(journal));
+            assertEquals(validSize, journal.sizeInBytes());
+        }
+
+        List<RecoveryReport> reports = RecoveryReport.drain().stream()
+                .filter(r -> r.file().equals(file)).toList();
+        assertEquals(1, reports.size());
+        assertEquals(1, reports.get(0).kept());
+        assertEquals("garbage", Files.readString(reports.get(0).quarantined()));
+    }
+
+    @Test
+    void replayFrom_returnsOnlyEntriesAppendedByAnotherInstance() throws IOException {
+        try (AppendOnlyJournal mine = new AppendOnlyJournal(file);
+             AppendOnlyJournal theirs = new AppendOnlyJournal(file)) {
+            mine.append(List.of(entry(1, "a")));
+            long end = mine.sizeInBytes();
+
+            theirs.append(List.of(entry(2, "b"), entry(3, "c")));
+            mine.append(List.of(entry(4, "d")));
+
+            List<String> seen = new ArrayList<>();
+            long after = mine.replayFrom(end, e -> seen.add(e.type() + ":" + new String(e.payload(), StandardCharsets.UTF_8)));
+            assertEquals(List.of("2:b", "3:c", "4:d"), seen, "appends go to the current end of the file");
+            assertEquals(mine.sizeInBytes(), after);
+            assertEquals(List.of("1:a", "2:b", "3:c", "4:d"), replayAll(theirs));
+        }
+    }
+
+    @Test
+    void discardFrom_truncatesTornTailOfAnotherWriter() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "ok")));
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ch.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 9, 1, 'x'}));
+            }
+            journal.discardFrom(journal.replayFrom(0, e -> { }));
+            journal.append(List.of(entry(2, "next")));
+
+            assertEquals(List.of("1:ok", "2:next"), replayAll(journal));
+            assertEquals(1, RecoveryReport.drain().stream().filter(r -> r.file().equals(file)).count());
+        }
+    }
+
+    @Test
+    void reset_discardsEntries() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of(entry(1, "a")));
+            journal.reset();
+            assertEquals(0, journal.entryCount());
+            assertTrue(replayAll(journal).isEmpty());
+            journal.append(List.of(entry(2, "b")));
+            assertEquals(List.of("2:b"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void open_rejectsForeignFile() throws IOException {
+        Files.writeString(file, "not a journal");
+        assertThrows(IOException.class, () -> new AppendOnlyJournal(file));
+    }
+
+    @Test
+    void append_emptyList_isNoOp() throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(file)) {
+            journal.append(List.of());
+            assertEquals(0, journal.entryCount());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.core.LibraryItem;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.strategy.FineStrategyFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BorrowRecordArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    private User user;
+    private LibraryItem item;
+
+    @BeforeEach
+    void setup() {
+        user = new User("M", Role.USER, "pass123", "m@ps.com");
+        item = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 5);
+    }
+
+    private BorrowRecord returned(LocalDate borrowed) {
+        BorrowRecord r = new BorrowRecord(user, item, FineStrategyFactory.book(), borrowed);
+        r.markReturned(borrowed.plusDays(3));
+        return r;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".jsonl.gz")).sorted().toList();
+        }
+    }
+
+    @Test
+    void append_thenFind_returnsRecordsBorrowedSinceDate() throws IOException {
+        BorrowRecordArchive archive = new BorrowRecordArchive(dir, 1 << 20, 8);
+        BorrowRecord january = returned(LocalDate.of(2025, 1, 10));
+        BorrowRecord march = returned(LocalDate.of(2025, 3, 10));
+        archive.append(List.of(january));
+        archive.append(List.of(march));
+        archive.append(List.of());
+
+        assertEquals(2, segments().size());
+        List<BorrowRecord> found = archive.find(LocalDate.of(2025, 2, 1));
+        assertEquals(1, found.size());
+        BorrowRecord r = found.get(0);
+        assertEquals(march.getId(), r.getId());
+        assertEquals(march.getBorrowDate(), r.getBorrowDate());
+        assertTrue(r.isReturned());
+        assertEquals(user.getId(), r.getUserId());
+        assertEquals(2, archive.find(LocalDate.of(2024, 1, 1)).size());
+    }
+
+    @Test
+    void append_beyondMaxSegments_mergesSmallSegments() throws IOException {
+        BorrowRecordArchive archive = new BorrowRecordArchive(dir, 1 << 20, 3);
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            BorrowRecord r = returned(LocalDate.of(2025, 1, 1).plusDays(i));
+            ids.add(r.getId());
+            archive.append(List.of(r));
+        }
+
+        assertTrue(segments().size() <= 3, segments().toString());
+        assertEquals(ids, archive.find(LocalDate.MIN).stream().map(BorrowRecord::getId).toList());
+        assertEquals(1, archive.compact());
+        assertEquals(ids, archive.find(LocalDate.MIN).stream().map(BorrowRecord::getId).toList());
+    }
+
+    @Test
+    void find_ignoresSegmentsCoveredByAnInterruptedMerge() throws IOException {
+        BorrowRecordArchive archive = new BorrowRecordArchive(dir, 1 << 20, 8);
+        BorrowRecord a = returned(LocalDate.of(2025, 1, 1));
+        BorrowRecord b = returned(LocalDate.of(2025, 1, 2));
+        archive.append(List.of(a));
+        archive.append(List.of(b));
+        List<Path> inputs = segments();
+        Path saved = dir.resolve("saved");
+        Files.createDirectories(saved);
+        for (Path p : inputs) Files.copy(p, saved.resolve(p.getFileName()));
+
+        archive.compact();
+        for (Path p : inputs) Files.copy(saved.resolve(p.getFileName()), p);
+
+        assertEquals(3, segments().size(), "Inputs left behind as if the merge stopped before deleting them.");
+        assertEquals(List.of(a.getId(), b.getId()),
+                archive.find(LocalDate.MIN).stream().map(BorrowRecord::getId).toList());
+        assertEquals(1, archive.compact());
+        assertEquals(1, segments().size());
+    }
+
+    @Test
+    void find_onEmptyArchive_returnsEmptyList() {
+        assertTrue(new BorrowRecordArchive(dir, 1 << 20, 8).find(LocalDate.MIN).isEmpty());
+    }
+}
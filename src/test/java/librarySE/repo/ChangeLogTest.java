@@ -0,0 +1,153 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.utils.DataSchema;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaVersionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChangeLogTest {
+
+    @TempDir
+    Path dir;
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2025-02-01T09:00:00Z"), ZoneOffset.UTC);
+
+    private ChangeLog open(int segmentEntries, int segments) throws IOException {
+        return new ChangeLog(dir, segmentEntries, segments, CLOCK);
+    }
+
+    private static ChangeLog.Mutation upsert(Book book) {
+        return new ChangeLog.Mutation(ChangeLog.Entity.ITEM, ChangeLog.Operation.UPSERT, book.getId(), book);
+    }
+
+    private static Book book(String title) {
+        return new Book("978-" + title.length(), title, "Author", BigDecimal.ONE);
+    }
+
+    private static List<Long> sequences(ChangeLog log, long after) {
+        try (Stream<ChangeLog.Change> changes = log.changesAfter(after)) {
+            return changes.map(ChangeLog.Change::sequence).toList();
+        }
+    }
+
+    @Test
+    void append_numbersChangesAndKeepsTheirState() throws IOException {
+        Book book = book("Clean Code");
+        try (ChangeLog log = open(100, 2)) {
+            assertEquals(0, log.lastSequence());
+            assertEquals(2, log.append(List.of(upsert(book), new ChangeLog.Mutation(
+                    ChangeLog.Entity.ITEM, ChangeLog.Operation.DELETE, book.getId(), book))));
+
+            List<ChangeLog.Change> changes;
+            try (Stream<ChangeLog.Change> stream = log.changesAfter(0)) {
+                changes = stream.toList();
+            }
+            assertEquals(2, changes.size());
+            ChangeLog.Change first = changes.get(0);
+            assertEquals(1, first.sequence());
+            assertEquals(CLOCK.instant(), first.time());
+            assertEquals(ChangeLog.Entity.ITEM, first.entity());
+            assertEquals(ChangeLog.Operation.UPSERT, first.operation());
+            assertEquals(book.getId(), first.id());
+            assertTrue(first.json().contains("\"Clean Code\""), first.json());
+            assertEquals(ChangeLog.Operation.DELETE, changes.get(1).operation());
+        }
+    }
+
+    @Test
+    void changesAfter_returnsOnlyNewerChanges() throws IOException {
+        try (ChangeLog log = open(3, 4)) {
+            for (int i = 0; i < 7; i++) log.append(List.of(upsert(book("Book " + i))));
+
+            assertEquals(List.of(5L, 6L, 7L), sequences(log, 4));
+            assertEquals(List.of(), sequences(log, 7));
+            assertThrows(IllegalArgumentException.class, () -> log.changesAfter(8));
+            assertThrows(IllegalArgumentException.class, () -> log.changesAfter(-1));
+        }
+    }
+
+    @Test
+    void reopen_continuesTheSequence() throws IOException {
+        try (ChangeLog log = open(2, 4)) {
+            log.append(List.of(upsert(book("a")), upsert(book("b")), upsert(book("c"))));
+        }
+        try (ChangeLog log = open(2, 4)) {
+            assertEquals(3, log.lastSequence());
+            assertEquals(4, log.append(List.of(upsert(book("d")))));
+            assertEquals(List.of(1L, 2L, 3L, 4L), sequences(log, 0));
+        }
+    }
+
+    @Test
+    void rotation_boundsTheLogAndRejectsDroppedChanges() throws IOException {
+        try (ChangeLog log = open(2, 3)) {
+            for (int i = 0; i < 10; i++) log.append(List.of(upsert(book("Book " + i))));
+
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(3, files.filter(p -> p.toString().endsWith(".log")).count());
+            }
+            assertEquals(7, log.firstSequence());
+            assertEquals(List.of(7L, 8L, 9L, 10L), sequences(log, 6));
+
+            ChangesDroppedException e = assertThrows(ChangesDroppedException.class, () -> log.changesAfter(5));
+            assertEquals(7, e.getOldestRetained());
+        }
+    }
+
+    @Test
+    void twoInstances_shareOneSequence() throws IOException {
+        try (ChangeLog desk1 = open(2, 3); ChangeLog desk2 = open(2, 3)) {
+            for (int i = 0; i < 5; i++) {
+                desk1.append(List.of(upsert(book("Desk 1, book " + i))));
+                desk2.append(List.of(upsert(book("Desk 2, book " + i)), upsert(book("Desk 2, book " + i + "b"))));
+            }
+
+            assertEquals(15, desk1.lastSequence());
+            assertEquals(List.of(13L, 14L, 15L), sequences(desk1, 12));
+            assertEquals(sequences(desk1, desk1.firstSequence() - 1), sequences(desk2, desk2.firstSequence() - 1));
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(3, files.filter(p -> p.toString().endsWith(".log")).count());
+            }
+        }
+        try (ChangeLog log = open(2, 3)) {
+            assertEquals(15, log.lastSequence());
+        }
+    }
+
+    @Test
+    void changesOfAnOlderFormat_areUpgradedWhenRead() throws IOException {
+        Book book = book("Refactoring");
+        try (ChangeLog log = open(10, 2)) {
+            log.append(List.of(upsert(book)));
+        }
+
+        // A (hypothetical) version 2 renames "title" to "name".
+        DataSchema.register(Migration.renameField(DataSchema.Kind.ITEM, 1, "title", "name"));
+        try (ChangeLog log = open(10, 2)) {
+            log.append(List.of(upsert(book)));
+            try (Stream<ChangeLog.Change> changes = log.changesAfter(0)) {
+                // The second change was serialized by the current Book class, so only the first is renamed.
+                assertEquals(List.of(true, false),
+                        changes.map(c -> c.json().contains("\"name\":\"Refactoring\"")).toList());
+            }
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.ITEM);
+        }
+
+        assertThrows(SchemaVersionException.class, () -> open(10, 2));
+    }
+}
@@ -0,0 +1,74 @@
+package librarySE.repo;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileVersionTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void peek_initialStampBeforeAnyWrite() throws IOException {
+        try (FileVersion version = new FileVersion(dir.resolve("items.journal"))) {
+            assertEquals(FileVersion.Stamp.INITIAL, version.peek());
+            assertTrue(Files.exists(dir.resolve("items.journal.version")));
+        }
+    }
+
+    @Test
+    void unlock_recordsStampSeenByOtherInstances() throws IOException {
+        try (FileVersion a = new FileVersion(dir.resolve("items.journal"));
+             FileVersion b = new FileVersion(dir.resolve("items.journal"))) {
+            FileVersion.Stamp seen = a.lock();
+            a.unlock(seen.next());
+            seen = a.lock();
+            a.unlock(seen.nextGeneration());
+
+            assertEquals(new FileVersion.Stamp(2, 1), b.peek());
+            FileVersion.Stamp locked = b.lock();
+            b.unlock(locked);
+            assertEquals(new FileVersion.Stamp(2, 1), a.peek());
+        }
+    }
+
+    @Test
+    void lock_isReentrantAndExcludesOtherThreads() throws Exception {
+        try (FileVersion a = new FileVersion(dir.resolve("items.journal"));
+             FileVersion b = new FileVersion(dir.resolve("items.journal"))) {
+            FileVersion.Stamp outer = a.lock();
+            FileVersion.Stamp inner = a.lock();
+            a.unlock(inner.next());
+
+            CompletableFuture<FileVersion.Stamp> other = CompletableFuture.supplyAsync(() -> {
+                try {
+                    FileVersion.Stamp s = b.lock();
+                    b.unlock(s);
+                    return s;
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertThrows(TimeoutException.class, () -> other.get(200, TimeUnit.MILLISECONDS));
+
+            a.unlock(outer.next().next());
+            assertEquals(new FileVersion.Stamp(2, 0), other.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void unlock_withoutLock_throws() throws IOException {
+        try (FileVersion version = new FileVersion(dir.resolve("items.journal"))) {
+            assertThrows(IllegalMonitorStateException.class, () -> version.unlock(FileVersion.Stamp.INITIAL));
+        }
+    }
+}
@@ -3,10 +3,13 @@ package librarySE.repo;
 import librarySE.core.WaitlistEntry;
 import librarySE.utils.FileUtils;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.MockedStatic;
 
 import java.lang.reflect.Type;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDate;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -50,6 +53,23 @@ class FileWaitlistRepositoryTest {
         }
     }
 
+    @Test
+    void forEach_streamsTheJsonFile() {
+        WaitlistEntry entry = mock(WaitlistEntry.class);
+
+        try (MockedStatic<FileUtils> mocked = mockStatic(FileUtils.class)) {
+
+            mocked.when(() ->
+                    FileUtils.streamJson(any(Path.class), eq(WaitlistEntry.class))
+            ).thenReturn(java.util.stream.Stream.of(entry));
+
+            List<WaitlistEntry> seen = new ArrayList<>();
+            repo.forEach(seen::add);
+            assertEquals(List.of(entry), seen);
+            mocked.verify(() -> FileUtils.readJson(any(Path.class), any(Type.class), any()), never());
+        }
+    }
+
     @Test
     void saveAll_callsWriteJson() {
         List<WaitlistEntry> entries = new ArrayList<>();
@@ -61,5 +81,45 @@ class FileWaitlistRepositoryTest {
             mocked.verify(() -> FileUtils.writeJson(any(Path.class), eq(entries)));
         }
     }
-}
 
+    @Test
+    void twoDesks_addAndRemoveWithoutOverwritingEachOther(@TempDir Path dir) {
+        Path file = dir.resolve("waitlist.json");
+        FileWaitlistRepository deskA = new FileWaitlistRepository(file, dir.resolve("waitlist.bin"));
+        FileWaitlistRepository deskB = new FileWaitlistRepository(file, dir.resolve("waitlist.bin"));
+        UUID book = UUID.randomUUID();
+        WaitlistEntry a = new WaitlistEntry(book, "a@ps.com", LocalDate.of(2025, 1, 1));
+        WaitlistEntry b = new WaitlistEntry(book, "b@ps.com", LocalDate.of(2025, 1, 2));
+        WaitlistEntry other = new WaitlistEntry(UUID.randomUUID(), "c@ps.com", LocalDate.of(2025, 1, 3));
+        assertTrue(deskA.loadAll().isEmpty());
+        assertTrue(deskB.loadAll().isEmpty());
+
+        deskA.add(a);
+        deskB.add(b);
+        deskB.add(other);
+
+        assertEquals(Optional.of(List.of(a, b, other)), deskA.refresh());
+        assertEquals(Optional.empty(), deskA.refresh(), "Nothing changed since the last refresh.");
+        assertEquals(List.of(a, b), deskA.removeFor(book));
+        assertEquals(Optional.of(List.of(other)), deskB.refresh());
+    }
+
+    @Test
+    void writes_leaveTheSnapshotToClose(@TempDir Path dir) {
+        Path file = dir.resolve("waitlist.json");
+        Path binary = dir.resolve("waitlist.bin");
+        FileWaitlistRepository desk = new FileWaitlistRepository(file, binary);
+        WaitlistEntry entry = new WaitlistEntry(UUID.randomUUID(), "a@ps.com", LocalDate.of(2025, 1, 1));
+
+        desk.saveAll(List.of(entry));
+        desk.add(new WaitlistEntry(UUID.randomUUID(), "b@ps.com", LocalDate.of(2025, 1, 2)));
+        desk.removeFor(entry.getItemId());
+        assertFalse(Files.exists(binary));
+
+        desk.close();
+
+        assertTrue(FileUtils.isSnapshotCurrent(binary, file));
+        assertEquals(List.of("b@ps.com"),
+                new FileWaitlistRepository(file, binary).loadAll().stream().map(WaitlistEntry::getUserEmail).toList());
+    }
+}
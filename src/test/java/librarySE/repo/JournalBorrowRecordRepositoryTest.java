@@ -0,0 +1,299 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.core.LibraryItem;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.strategy.FineStrategyFactory;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaVersionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalBorrowRecordRepositoryTest {
+
+    private Path snapshot;
+    private Path journalFile;
+    private JournalBorrowRecordRepository repo;
+    private User user;
+    private LibraryItem item;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Path dir = Files.createTempDirectory("journal_repo_test");
+        snapshot = dir.resolve("borrow_records.json");
+        journalFile = dir.resolve("borrow_records.journal");
+        repo = new JournalBorrowRecordRepository(snapshot, journalFile, 4);
+        user = new User("M", Role.USER, "pass123", "m@ps.com");
+        item = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repo.close();
+    }
+
+    private BorrowRecord newRecord(LocalDate date) {
+        return new BorrowRecord(user, item, FineStrategyFactory.book(), date);
+    }
+
+    private JournalBorrowRecordRepository reopen() throws IOException {
+        repo.close();
+        repo = new JournalBorrowRecordRepository(snapshot, journalFile, 4);
+        return repo;
+    }
+
+    @Test
+    void loadAll_emptyWhenNothingStored() {
+        assertTrue(repo.loadAll().isEmpty());
+    }
+
+    @Test
+    void saveAll_appendsOnlyNewAndChangedRecords() {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        BorrowRecord r1 = newRecord(LocalDate.of(2025, 1, 1));
+        records.add(r1);
+        repo.saveAll(records);
+        assertEquals(1, repo.pendingJournalEntries());
+
+        repo.saveAll(records);
+        assertEquals(1, repo.pendingJournalEntries(), "unchanged records must not be re-appended");
+
+        r1.markReturned(LocalDate.of(2025, 1, 2));
+        repo.saveAll(records);
+        assertEquals(2, repo.pendingJournalEntries());
+        assertFalse(Files.exists(snapshot), "no snapshot is written before compaction");
+    }
+
+    @Test
+    void loadAll_replaysJournalOnTopOfSnapshot() throws IOException {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        BorrowRecord r1 = newRecord(LocalDate.of(2025, 1, 1));
+        BorrowRecord r2 = newRecord(LocalDate.of(2025, 1, 5));
+        records.add(r1);
+        records.add(r2);
+        repo.saveAll(records);
+        r2.markReturned(LocalDate.of(2025, 1, 6));
+        repo.saveAll(records);
+
+        List<BorrowRecord> loaded = reopen().loadAll();
+
+        assertEquals(2, loaded.size());
+        assertEquals(r1.getId(), loaded.get(0).getId());
+        assertEquals(r2.getId(), loaded.get(1).getId());
+        assertFalse(loaded.get(0).isReturned());
+        assertTrue(loaded.get(1).isReturned());
+    }
+
+    @Test
+    void saveAll_compactsIntoSnapshotWhenJournalGrows() throws IOException {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        for (int i = 0; i < 4; i++) {
+            records.add(newRecord(LocalDate.of(2025, 1, 1 + i)));
+            repo.saveAll(records);
+        }
+
+        assertEquals(0, repo.pendingJournalEntries());
+        assertTrue(Files.exists(snapshot));
+        assertEquals(4, reopen().loadAll().size());
+    }
+
+    @Test
+    void saveAll_recordsFinePaymentAsChange() throws IOException {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        BorrowRecord r = newRecord(LocalDate.of(2025, 1, 1));
+        records.add(r);
+        repo.saveAll(records);
+
+        LocalDate late = r.getDueDate().plusDays(2);
+        r.applyFineToUser(late);
+        repo.saveAll(records);
+        r.setFinePaid(BigDecimal.ONE);
+        repo.saveAll(records);
+        assertEquals(3, repo.pendingJournalEntries());
+
+        BorrowRecord loaded = reopen().loadAll().get(0);
+        assertEquals(0, BigDecimal.ONE.compareTo(loaded.getFinePaid()));
+        assertTrue(loaded.isFineApplied());
+    }
+
+    @Test
+    void loadAll_rewritesLegacySnapshotWithoutIds() throws IOException {
+        Files.writeString(snapshot, FileUtils.toCompactJson(List.of(newRecord(LocalDate.of(2025, 1, 1))))
+                .replaceFirst("\"id\":\"[0-9a-f-]{36}\",", ""));
+
+        List<BorrowRecord> first = repo.loadAll();
+        List<BorrowRecord> second = reopen().loadAll();
+
+        assertEquals(1, second.size());
+        assertEquals(first.get(0).getId(), second.get(0).getId());
+    }
+
+    @Test
+    void compact_writesBinarySnapshotUsedOnNextLoad() throws IOException {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        BorrowRecord r1 = newRecord(LocalDate.of(2025, 1, 1));
+        records.add(r1);
+        repo.compact(records);
+
+        Path binary = snapshot.resolveSibling("borrow_records.bin");
+        assertTrue(Files.exists(binary));
+
+        List<BorrowRecord> loaded = reopen().loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(r1.getId(), loaded.get(0).getId());
+        assertEquals(user.getId(), loaded.get(0).getUserId());
+
+        // A hand-edited JSON snapshot wins over the now outdated binary one.
+        Files.writeString(snapshot, "[]");
+        assertTrue(reopen().loadAll().isEmpty());
+    }
+
+    @Test
+    void upsertAndDelete_appendSingleRecords() throws IOException {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        BorrowRecord r1 = newRecord(LocalDate.of(2025, 1, 1));
+        BorrowRecord r2 = newRecord(LocalDate.of(2025, 1, 2));
+        records.add(r1);
+        repo.saveAll(records);
+
+        repo.upsert(r2);
+        repo.upsert(r2);
+        assertEquals(2, repo.pendingJournalEntries(), "unchanged records must not be re-appended");
+
+        r2.markReturned(LocalDate.of(2025, 1, 3));
+        repo.upsert(r2);
+        repo.delete(r1);
+        assertEquals(0, repo.pendingJournalEntries(), "four entries reach the compaction threshold");
+
+        List<BorrowRecord> loaded = reopen().loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(r2.getId(), loaded.get(0).getId());
+        assertTrue(loaded.get(0).isReturned());
+    }
+
+    @Test
+    void delete_isReplayedFromJournal() throws IOException {
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        BorrowRecord r1 = newRecord(LocalDate.of(2025, 1, 1));
+        records.add(r1);
+        records.add(newRecord(LocalDate.of(2025, 1, 2)));
+        repo.compact(records);
+
+        reopen().delete(r1);
+        assertEquals(1, repo.pendingJournalEntries());
+
+        assertEquals(1, reopen().loadAll().size());
+    }
+
+    @Test
+    void sharedFiles_recordsOfBothDesksSurviveCompaction() throws IOException {
+        try (JournalBorrowRecordRepository other = new JournalBorrowRecordRepository(snapshot, journalFile, 4)) {
+            List<BorrowRecord> mine = new ArrayList<>(repo.loadAll());
+            List<BorrowRecord> theirs = new ArrayList<>(other.loadAll());
+            for (int i = 0; i < 6; i++) {
+                mine.add(newRecord(LocalDate.of(2025, 1, 1 + i)));
+                repo.saveAll(mine);
+                theirs.add(newRecord(LocalDate.of(2025, 2, 1 + i)));
+                other.saveAll(theirs);
+            }
+            assertEquals(6, repo.refresh().upserted().size(), "each desk sees the records the other added");
+            assertEquals(6, other.refresh().upserted().size());
+        }
+
+        assertEquals(12, reopen().loadAll().size());
+    }
+
+    @Test
+    void sharedFiles_returningALoanTheOtherDeskReturnedIsRejected() throws IOException {
+        BorrowRecord record = newRecord(LocalDate.of(2025, 1, 1));
+        repo.upsert(record);
+
+        try (JournalBorrowRecordRepository other = new JournalBorrowRecordRepository(snapshot, journalFile, 4)) {
+            BorrowRecord theirs = other.loadAll().get(0);
+            theirs.markReturned(LocalDate.of(2025, 1, 5));
+            other.upsert(theirs);
+        }
+
+        record.markReturned(LocalDate.of(2025, 1, 6));
+        assertThrows(ConcurrentUpdateException.class, () -> repo.upsert(record));
+
+        BorrowRecord current = repo.refresh().upserted().get(0);
+        assertEquals(record.getId(), current.getId());
+        assertTrue(current.isReturned());
+        assertEquals(1, reopen().loadAll().size());
+    }
+
+    @Test
+    void stream_appliesJournalWithoutResettingRefresh() throws IOException {
+        BorrowRecord r1 = newRecord(LocalDate.of(2025, 1, 1));
+        BorrowRecord r2 = newRecord(LocalDate.of(2025, 1, 5));
+        repo.compact(List.of(r1, r2));
+        r1.markReturned(LocalDate.of(2025, 1, 3));
+        repo.upsert(r1);
+
+        try (JournalBorrowRecordRepository other = new JournalBorrowRecordRepository(snapshot, journalFile, 4)) {
+            BorrowRecord theirs = other.loadAll().get(1);
+            theirs.markReturned(LocalDate.of(2025, 1, 6));
+            other.upsert(theirs);
+        }
+        repo.pendingJournalEntries(); // catches up with the other desk
+
+        List<BorrowRecord> streamed;
+        try (Stream<BorrowRecord> records = repo.stream()) {
+            streamed = records.toList();
+        }
+        assertEquals(List.of(r1.getId(), r2.getId()), streamed.stream().map(BorrowRecord::getId).toList());
+        assertTrue(streamed.get(0).isReturned());
+        assertTrue(streamed.get(1).isReturned());
+
+        r2.markReturned(LocalDate.of(2025, 1, 7));
+        assertThrows(ConcurrentUpdateException.class, () -> repo.upsert(r2));
+        assertEquals(1, repo.refresh().upserted().size());
+    }
+
+    @Test
+    void loadAll_upgradesEntriesOfAnOlderFormatAndRefusesNewerOnes() throws IOException {
+        BorrowRecord r = newRecord(LocalDate.of(2025, 1, 1));
+        r.markReturned(LocalDate.of(2025, 1, 5));
+        repo.close();
+        // Written before a (hypothetical) version 2 renamed "state" to "status".
+        String legacy = FileUtils.toCompactJson(r).replace("\"status\":", "\"state\":");
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(journalFile)) {
+            journal.append(List.of(new AppendOnlyJournal.Entry(JournalBorrowRecordRepository.OP_ADD,
+                    legacy.getBytes(StandardCharsets.UTF_8))));
+        }
+
+        DataSchema.register(Migration.renameField(DataSchema.Kind.BORROW_RECORD, 1, "state", "status"));
+        try {
+            List<BorrowRecord> loaded = reopen().loadAll();
+            assertEquals(1, loaded.size());
+            assertTrue(loaded.get(0).isReturned());
+            assertEquals(0, repo.pendingJournalEntries(), "The upgrade is compacted into the snapshot.");
+
+            repo.upsert(newRecord(LocalDate.of(2025, 2, 1))); // declares version 2 before the entry
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.BORROW_RECORD);
+        }
+
+        SchemaVersionException e = assertThrows(SchemaVersionException.class, () -> reopen().loadAll());
+        assertEquals(2, e.getFound());
+        assertEquals(1, e.getSupported());
+    }
+}
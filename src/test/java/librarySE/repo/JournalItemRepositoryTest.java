@@ -0,0 +1,280 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.LibraryItem;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaVersionException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalItemRepositoryTest {
+
+    private Path snapshot;
+    private Path journalFile;
+    private JournalItemRepository repo;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Path dir = Files.createTempDirectory("journal_items_test");
+        snapshot = dir.resolve("items.json");
+        journalFile = dir.resolve("items.journal");
+        repo = new JournalItemRepository(snapshot, journalFile, 8);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repo.close();
+    }
+
+    private JournalItemRepository reopen() throws IOException {
+        repo.close();
+        repo = new JournalItemRepository(snapshot, journalFile, 8);
+        return repo;
+    }
+
+    @Test
+    void upsert_appendsWithoutRewritingSnapshot() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        repo.saveAll(List.of(book));
+        String before = Files.readString(snapshot);
+
+        book.borrow();
+        repo.upsert(book);
+
+        assertTrue(repo.supportsIncrementalWrites());
+        assertEquals(1, repo.pendingJournalEntries());
+        assertEquals(before, Files.readString(snapshot));
+
+        List<LibraryItem> loaded = reopen().loadAll();
+        assertEquals(1, loaded.size());
+        assertEquals(2, ((Book) loaded.get(0)).getAvailableCopies());
+    }
+
+    @Test
+    void delete_removesItemOnReplay() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+        repo.saveAll(List.of(book));
+        repo.upsert(cd);
+        repo.delete(book);
+        repo.delete(book);
+
+        assertEquals(2, repo.pendingJournalEntries(), "deleting an unknown item appends nothing");
+        List<LibraryItem> loaded = reopen().loadAll();
+        assertEquals(1, loaded.size());
+        assertInstanceOf(CD.class, loaded.get(0));
+        assertEquals(cd.getId(), loaded.get(0).getId());
+    }
+
+    @Test
+    void upsert_compactsOnceJournalOutgrowsCatalog() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 100);
+        repo.upsert(book);
+        for (int i = 0; i < 7; i++) {
+            book.borrow();
+            repo.upsert(book);
+        }
+
+        assertEquals(0, repo.pendingJournalEntries());
+        assertEquals(93, ((Book) reopen().loadAll().get(0)).getAvailableCopies());
+    }
+
+    @Test
+    void stream_appliesJournalToSnapshotInLoadOrder() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+        Book other = new Book("ISBN-2", "Other", "Author", BigDecimal.TEN, 1);
+        repo.saveAll(List.of(book, cd, other));
+
+        book.borrow();
+        repo.upsert(book);
+        repo.delete(cd);
+        Book added = new Book("ISBN-3", "Added", "Author", BigDecimal.TEN, 1);
+        repo.upsert(added);
+        repo.delete(other);
+        repo.upsert(other);
+
+        List<LibraryItem> streamed;
+        try (Stream<LibraryItem> items = repo.stream()) {
+            streamed = items.toList();
+        }
+
+        List<LibraryItem> loaded = reopen().loadAll();
+        assertEquals(List.of(book.getId(), added.getId(), other.getId()),
+                streamed.stream().map(LibraryItem::getId).toList());
+        assertEquals(loaded.stream().map(LibraryItem::getId).toList(),
+                streamed.stream().map(LibraryItem::getId).toList());
+        assertEquals(2, ((Book) streamed.get(0)).getAvailableCopies());
+    }
+
+    // --------------------------------------------------------------------
+    // Two processes (desks) sharing the files
+    // --------------------------------------------------------------------
+
+    @Test
+    void sharedFiles_appendsAndCompactionsKeepTheOtherDesksItems() throws IOException {
+        try (JournalItemRepository other = new JournalItemRepository(snapshot, journalFile, 8)) {
+            repo.loadAll();
+            other.loadAll();
+            for (int i = 0; i < 10; i++) {
+                repo.upsert(new Book("A" + i, "Mine " + i, "Author", BigDecimal.ONE));
+                other.upsert(new Book("B" + i, "Theirs " + i, "Author", BigDecimal.ONE));
+            }
+        }
+
+        List<LibraryItem> loaded = reopen().loadAll();
+        assertEquals(20, loaded.size(), "items written by either desk survive both desks' compactions");
+    }
+
+    @Test
+    void sharedFiles_refreshReportsOnlyTheOtherDesksChanges() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+        repo.saveAll(List.of(book, cd));
+
+        try (JournalItemRepository other = new JournalItemRepository(snapshot, journalFile, 8)) {
+            List<LibraryItem> theirs = other.loadAll();
+            assertTrue(repo.refresh().isEmpty());
+
+            Book theirBook = (Book) theirs.get(0);
+            theirBook.borrow();
+            other.upsert(theirBook);
+            other.delete(theirs.get(1));
+
+            EntityRepository.Changes<LibraryItem> changes = repo.refresh();
+            assertEquals(1, changes.upserted().size());
+            assertEquals(2, ((Book) changes.upserted().get(0)).getAvailableCopies());
+            assertEquals(Set.of(cd.getId()), changes.removed());
+            assertTrue(repo.refresh().isEmpty(), "changes are reported once");
+            assertTrue(other.refresh().isEmpty(), "a desk's own writes are not reported back");
+        }
+    }
+
+    @Test
+    void sharedFiles_writingAnOutdatedCopyIsRejected() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 1);
+        repo.saveAll(List.of(book));
+
+        try (JournalItemRepository other = new JournalItemRepository(snapshot, journalFile, 8)) {
+            Book theirs = (Book) other.loadAll().get(0);
+            theirs.borrow();
+            other.upsert(theirs);
+
+            book.borrow();
+            ConcurrentUpdateException conflict = assertThrows(ConcurrentUpdateException.class, () -> repo.upsert(book));
+            assertEquals(book.getId(), conflict.getId());
+
+            Book current = (Book) repo.refresh().upserted().get(0);
+            assertFalse(current.isAvailable(), "the other desk took the only copy");
+            current.setTitle("Renamed");
+            repo.upsert(current);
+        }
+
+        Book stored = (Book) reopen().loadAll().get(0);
+        assertEquals("Renamed", stored.getTitle());
+        assertEquals(0, stored.getAvailableCopies());
+    }
+
+    @Test
+    void sharedFiles_streamingKeepsTheOtherDesksChangesPending() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 1);
+        repo.saveAll(List.of(book));
+
+        try (JournalItemRepository other = new JournalItemRepository(snapshot, journalFile, 8)) {
+            Book theirs = (Book) other.loadAll().get(0);
+            theirs.borrow();
+            other.upsert(theirs);
+        }
+
+        try (Stream<LibraryItem> items = repo.stream()) {
+            assertFalse(items.findFirst().orElseThrow().isAvailable(), "the stream sees the stored state");
+        }
+
+        book.borrow();
+        assertThrows(ConcurrentUpdateException.class, () -> repo.upsert(book));
+        assertEquals(List.of(book.getId()), repo.refresh().upserted().stream().map(LibraryItem::getId).toList());
+    }
+
+    @Test
+    void sharedFiles_compactionByOtherDeskReportsOnlyChangedItems() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 100);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+        repo.saveAll(List.of(book, cd));
+
+        try (JournalItemRepository other = new JournalItemRepository(snapshot, journalFile, 8)) {
+            Book theirs = (Book) other.loadAll().get(0);
+            for (int i = 0; i < 8; i++) {
+                theirs.borrow();
+                other.upsert(theirs);
+            }
+            assertEquals(0, other.pendingJournalEntries(), "the other desk compacted");
+        }
+
+        EntityRepository.Changes<LibraryItem> changes = repo.refresh();
+        assertEquals(List.of(book.getId()), changes.upserted().stream().map(LibraryItem::getId).toList());
+        repo.upsert(cd); // unchanged elsewhere, so its instance is still current
+    }
+
+    private void appendRaw(byte type, String payload) throws IOException {
+        try (AppendOnlyJournal journal = new AppendOnlyJournal(journalFile)) {
+            journal.append(List.of(new AppendOnlyJournal.Entry(type, payload.getBytes(StandardCharsets.UTF_8))));
+        }
+    }
+
+    @Test
+    void loadAll_upgradesJournalEntriesOfAnOlderFormat() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        repo.close();
+        // Written before a (hypothetical) version 2 renamed "name" to "title".
+        appendRaw(EntityJournal.OP_UPSERT, FileUtils.toCompactJson(book).replace("\"title\":", "\"name\":"));
+        DataSchema.register(Migration.renameField(DataSchema.Kind.ITEM, 1, "name", "title"));
+        try {
+            List<LibraryItem> loaded = reopen().loadAll();
+            assertEquals(1, loaded.size());
+            assertEquals("Title", loaded.get(0).getTitle());
+            assertEquals(0, repo.pendingJournalEntries(), "The upgrade is compacted into the snapshot.");
+
+            repo.upsert(loaded.get(0));
+            List<AppendOnlyJournal.Entry> entries = new ArrayList<>();
+            try (AppendOnlyJournal journal = new AppendOnlyJournal(journalFile)) {
+                journal.replay(entries::add);
+            }
+            assertEquals(2, entries.size());
+            assertEquals(JournalSchema.DECLARATION, entries.get(0).type());
+            assertEquals("$schema:item/2", new String(entries.get(0).payload(), StandardCharsets.UTF_8));
+            assertEquals("Title", reopen().loadAll().get(0).getTitle());
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.ITEM);
+        }
+    }
+
+    @Test
+    void loadAll_refusesJournalOfANewerFormat() throws IOException {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        repo.saveAll(List.of(book));
+        repo.close();
+        appendRaw(JournalSchema.DECLARATION, "$schema:item/2");
+        appendRaw(EntityJournal.OP_UPSERT, FileUtils.toCompactJson(book));
+
+        SchemaVersionException e = assertThrows(SchemaVersionException.class, () -> reopen().loadAll());
+        assertEquals(journalFile, e.getFile());
+        assertEquals(2, e.getFound());
+        assertEquals(1, e.getSupported());
+    }
+}
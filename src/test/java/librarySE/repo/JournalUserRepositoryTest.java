@@ -0,0 +1,69 @@
+package librarySE.repo;
+
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalUserRepositoryTest {
+
+    private Path snapshot;
+    private Path journalFile;
+    private JournalUserRepository repo;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Path dir = Files.createTempDirectory("journal_users_test");
+        snapshot = dir.resolve("users.json");
+        journalFile = dir.resolve("users.journal");
+        repo = new JournalUserRepository(snapshot, journalFile, 8);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        repo.close();
+    }
+
+    private JournalUserRepository reopen() throws IOException {
+        repo.close();
+        repo = new JournalUserRepository(snapshot, journalFile, 8);
+        return repo;
+    }
+
+    @Test
+    void upsert_persistsOneUsersFineBalance() throws IOException {
+        User a = new User("A", Role.USER, "pass123", "a@ps.com");
+        User b = new User("B", Role.USER, "pass123", "b@ps.com");
+        repo.saveAll(List.of(a, b));
+
+        b.addFine(new BigDecimal("7.50"));
+        repo.upsert(b);
+        assertEquals(1, repo.pendingJournalEntries());
+
+        List<User> loaded = reopen().loadAll();
+        assertEquals(List.of(a.getId(), b.getId()), loaded.stream().map(User::getId).toList());
+        assertEquals(0, new BigDecimal("7.50").compareTo(loaded.get(1).getFineBalance()));
+    }
+
+    @Test
+    void upsertBeforeLoad_keepsStoredUsers() throws IOException {
+        User a = new User("A", Role.USER, "pass123", "a@ps.com");
+        repo.saveAll(List.of(a));
+
+        User b = new User("B", Role.USER, "pass123", "b@ps.com");
+        reopen().upsert(b);
+        repo.delete(a);
+
+        List<User> loaded = reopen().loadAll();
+        assertEquals(List.of(b.getId()), loaded.stream().map(User::getId).toList());
+    }
+}
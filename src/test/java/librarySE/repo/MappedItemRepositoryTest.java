@@ -0,0 +1,285 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedItemRepositoryTest {
+
+    private Path dir;
+    private Path json;
+    private MappedItemRepository repo;
+    private List<LibraryItem> items;
+
+    @BeforeEach
+    void setup() throws IOException {
+        Path root = Files.createTempDirectory("mapped_repo_test");
+        dir = root.resolve("items");
+        json = root.resolve("items.json");
+        repo = new MappedItemRepository(dir, json, 512);
+
+        items = new ArrayList<>();
+        items.add(new Book("ISBN-1", "Clean Code", "Martin", BigDecimal.TEN, 2));
+        items.add(new CD("Thriller", "Jackson", new BigDecimal("12.50")));
+        items.add(new Journal("Nature", "Editor", "Vol 1", BigDecimal.ONE));
+        items.add(new Book("ISBN-2", "Refactoring", "Fowler", BigDecimal.TEN, 1));
+    }
+
+    private MappedItemRepository reopen() {
+        return new MappedItemRepository(dir, null, 512);
+    }
+
+    private static List<UUID> ids(List<LibraryItem> list) {
+        return list.stream().map(LibraryItem::getId).toList();
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    @Test
+    void loadAll_emptyWhenNothingStored() {
+        assertTrue(repo.loadAll().isEmpty());
+        assertFalse(Files.exists(dir));
+    }
+
+    @Test
+    void saveAndLoad_preservesOrderTypesAndState() {
+        items.get(0).borrow();
+        repo.saveAll(items);
+
+        List<LibraryItem> loaded = reopen().loadAll();
+
+        assertEquals(4, loaded.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertEquals(items.get(i).getId(), loaded.get(i).getId());
+            assertEquals(items.get(i).getClass(), loaded.get(i).getClass());
+            assertEquals(items.get(i).getTitle(), loaded.get(i).getTitle());
+        }
+        assertEquals(1, ((Book) loaded.get(0)).getAvailableCopies());
+        assertEquals(new BigDecimal("12.50"), loaded.get(1).getPrice());
+    }
+
+    @Test
+    void loadAll_materializesOnlyAccessedItems() {
+        repo.saveAll(items);
+        MappedItemRepository fresh = reopen();
+
+        List<LibraryItem> view = fresh.loadAll();
+        assertEquals(4, view.size());
+        assertEquals(0, fresh.materializedCount());
+
+        LibraryItem first = view.get(2);
+        assertSame(first, view.get(2));
+        assertEquals(1, fresh.materializedCount());
+    }
+
+    @Test
+    void hotFields_readWithoutMaterializing() {
+        items.get(3).borrow();
+        repo.saveAll(items);
+        MappedItemRepository fresh = reopen();
+
+        assertEquals("Clean Code", fresh.titleOf(items.get(0).getId()).orElseThrow());
+        assertEquals(2, fresh.availableCopiesOf(items.get(0).getId()).orElseThrow());
+        assertTrue(fresh.isAvailable(items.get(0).getId()));
+        assertFalse(fresh.isAvailable(items.get(3).getId()));
+        assertEquals(0, fresh.materializedCount());
+    }
+
+    @Test
+    void findById_returnsSameInstanceAsListView() {
+        repo.saveAll(items);
+        MappedItemRepository fresh = reopen();
+
+        UUID id = items.get(1).getId();
+        LibraryItem found = fresh.findById(id).orElseThrow();
+
+        assertSame(found, fresh.loadAll().get(1));
+        assertEquals(1, fresh.materializedCount());
+    }
+
+    @Test
+    void cache_keepsRecentItemsAndTheInstancesStillInUse() {
+        repo.saveAll(items);
+        MappedItemRepository fresh = new MappedItemRepository(dir, null, 512, MappedItemRepository.DEFAULT_REGION_SIZE, 2);
+
+        LibraryItem first = fresh.findById(items.get(0).getId()).orElseThrow();
+        for (LibraryItem i : items) fresh.findById(i.getId());
+
+        assertEquals(2, fresh.materializedCount());
+        assertSame(first, fresh.findById(items.get(0).getId()).orElseThrow(),
+                "An item still referred to keeps its identity after leaving the cache.");
+    }
+
+    @Test
+    void stream_decodesItemsWithoutCachingThem() {
+        repo.saveAll(items);
+        MappedItemRepository fresh = reopen();
+        LibraryItem held = fresh.findById(items.get(1).getId()).orElseThrow();
+
+        List<LibraryItem> streamed;
+        try (Stream<LibraryItem> all = fresh.stream()) {
+            streamed = all.toList();
+        }
+
+        assertEquals(ids(items), ids(streamed));
+        assertSame(held, streamed.get(1));
+        assertEquals(1, fresh.materializedCount(), "Only the item read by id is cached.");
+    }
+
+    @Test
+    void capture_isUnaffectedByLaterChanges() {
+        repo.saveAll(items);
+        MappedItemRepository fresh = new MappedItemRepository(dir, null, 2); // compacts after two changes
+        Book held = (Book) fresh.findById(items.get(0).getId()).orElseThrow();
+
+        Supplier<Stream<LibraryItem>> capture = fresh.capture();
+        held.borrow();
+        fresh.upsert(held);
+        fresh.delete(items.get(1));
+        fresh.upsert(new Book("ISBN-3", "Domain-Driven Design", "Evans", BigDecimal.TEN, 1));
+
+        List<LibraryItem> captured;
+        try (Stream<LibraryItem> all = capture.get()) {
+            captured = all.toList();
+        }
+        assertEquals(ids(items), ids(captured));
+        assertNotSame(held, captured.get(0));
+        assertEquals(2, ((Book) captured.get(0)).getAvailableCopies());
+    }
+
+    @Test
+    void lookups_unknownIdAreEmpty() {
+        repo.saveAll(items);
+        UUID unknown = UUID.randomUUID();
+
+        assertTrue(repo.findById(unknown).isEmpty());
+        assertTrue(repo.titleOf(unknown).isEmpty());
+        assertTrue(repo.availableCopiesOf(unknown).isEmpty());
+        assertFalse(repo.isAvailable(unknown));
+    }
+
+    @Test
+    void saveAll_writesNewGenerationAndKeepsEarlierViewsReadable() throws IOException {
+        repo.saveAll(items);
+        List<LibraryItem> before = reopen().loadAll();
+        repo.saveAll(items.subList(0, 1));
+
+        assertEquals(1, repo.size());
+        assertTrue(repo.findById(items.get(2).getId()).isEmpty());
+        assertEquals(List.of("catalog-2.map"), files());
+        assertEquals(items.get(3).getId(), before.get(3).getId());
+        assertEquals(List.of(items.get(0).getId()), ids(reopen().loadAll()));
+    }
+
+    @Test
+    void upsertAndDelete_areJournaledAndSeenAfterReopening() {
+        repo.saveAll(items);
+        MappedItemRepository fresh = reopen();
+        Book renamed = (Book) fresh.findById(items.get(0).getId()).orElseThrow();
+        renamed.borrow();
+        Book added = new Book("ISBN-3", "Domain-Driven Design", "Evans", BigDecimal.TEN, 1);
+
+        fresh.upsert(renamed);
+        fresh.upsert(added);
+        fresh.delete(items.get(1));
+        assertEquals(3, fresh.pendingJournalEntries());
+        fresh.close();
+
+        MappedItemRepository reopened = reopen();
+        List<UUID> expected = List.of(items.get(0).getId(), items.get(2).getId(), items.get(3).getId(), added.getId());
+        assertEquals(expected, ids(reopened.loadAll()));
+        assertEquals(4, reopened.size());
+        assertEquals(1, reopened.availableCopiesOf(renamed.getId()).orElseThrow());
+        assertTrue(reopened.findById(items.get(1).getId()).isEmpty());
+        assertEquals("Domain-Driven Design", reopened.titleOf(added.getId()).orElseThrow());
+        assertEquals(1, ((Book) reopened.loadAll().get(0)).getAvailableCopies());
+    }
+
+    @Test
+    void compaction_rewritesCatalogWithoutDecodingUnchangedItems() throws IOException {
+        repo.saveAll(items);
+        MappedItemRepository fresh = new MappedItemRepository(dir, null, 2);
+        Book added = new Book("ISBN-3", "Domain-Driven Design", "Evans", BigDecimal.TEN, 1);
+
+        fresh.delete(items.get(1));
+        assertEquals(1, fresh.pendingJournalEntries());
+        fresh.upsert(added);
+
+        assertEquals(0, fresh.pendingJournalEntries());
+        assertEquals(1, fresh.materializedCount(), "Only the written item is held.");
+        assertEquals(List.of("catalog-2.map"), files());
+
+        List<UUID> expected = List.of(items.get(0).getId(), items.get(2).getId(), items.get(3).getId(), added.getId());
+        assertEquals(expected, ids(fresh.loadAll()));
+        assertSame(added, fresh.findById(added.getId()).orElseThrow());
+        List<LibraryItem> reloaded = reopen().loadAll();
+        assertEquals(expected, ids(reloaded));
+        assertEquals("Refactoring", reloaded.get(2).getTitle());
+    }
+
+    @Test
+    void smallRegions_valuesSpanningTwoMappingsAreRead() {
+        MappedItemRepository regions = new MappedItemRepository(dir, null, 512, 13, MappedItemRepository.DEFAULT_CACHE_SIZE);
+        regions.saveAll(items);
+
+        MappedItemRepository fresh = new MappedItemRepository(dir, null, 512, 13, MappedItemRepository.DEFAULT_CACHE_SIZE);
+        assertEquals(ids(items), ids(fresh.loadAll()));
+        assertEquals("Nature", fresh.titleOf(items.get(2).getId()).orElseThrow());
+        assertEquals(2, fresh.availableCopiesOf(items.get(0).getId()).orElseThrow());
+        assertEquals(new BigDecimal("12.50"), fresh.findById(items.get(1).getId()).orElseThrow().getPrice());
+    }
+
+    @Test
+    void loadAll_importsJsonStoreWithItsJournalAndRetiresIt() throws IOException {
+        Path journal = json.resolveSibling("items.journal");
+        try (JournalItemRepository legacy = new JournalItemRepository(json, journal, 512)) {
+            legacy.saveAll(items.subList(0, 3));
+            legacy.upsert(items.get(3));
+        }
+
+        List<LibraryItem> loaded = repo.loadAll();
+
+        assertEquals(ids(items), ids(loaded));
+        assertFalse(Files.exists(json));
+        assertFalse(Files.exists(journal));
+        assertTrue(Files.exists(json.resolveSibling("items.json.imported")));
+        assertTrue(Files.exists(json.resolveSibling("items.journal.imported")));
+        assertEquals(List.of("catalog-1.map"), files());
+    }
+
+    @Test
+    void loadAll_rejectsForeignFile() throws IOException {
+        Files.createDirectories(dir);
+        Files.writeString(dir.resolve("catalog-1.map"), "not a catalog at all, but long enough");
+
+        assertThrows(UncheckedIOException.class, () -> repo.loadAll());
+    }
+
+    @Test
+    void loadAll_viewIsReadOnly() {
+        repo.saveAll(items);
+
+        assertThrows(UnsupportedOperationException.class,
+                () -> repo.loadAll().add(items.get(0)));
+    }
+}
@@ -0,0 +1,205 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.core.LibraryItem;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.repo.PartitionedBorrowRecordRepository.Period;
+import librarySE.strategy.FineStrategyFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedBorrowRecordRepositoryTest {
+
+    private Path dir;
+    private User user;
+    private LibraryItem item;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("partitioned_repo_test");
+        user = new User("M", Role.USER, "pass123", "m@ps.com");
+        item = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 5);
+    }
+
+    private PartitionedBorrowRecordRepository repoAt(LocalDate today, int cached) {
+        Clock clock = Clock.fixed(today.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC);
+        return new PartitionedBorrowRecordRepository(dir, Period.MONTH, cached, clock);
+    }
+
+    private BorrowRecord borrowed(LocalDate date) {
+        return new BorrowRecord(user, item, FineStrategyFactory.book(), date);
+    }
+
+    private BorrowRecord returned(LocalDate date) {
+        BorrowRecord r = borrowed(date);
+        r.markReturned(date.plusDays(3));
+        return r;
+    }
+
+    private static List<UUID> ids(List<BorrowRecord> records) {
+        return records.stream().map(BorrowRecord::getId).toList();
+    }
+
+    @Test
+    void loadAll_emptyWhenNothingStored() {
+        assertTrue(repoAt(LocalDate.of(2025, 3, 15), 2).loadAll().isEmpty());
+    }
+
+    @Test
+    void saveAll_splitsOpenLoansFromSettledRecords() {
+        PartitionedBorrowRecordRepository repo = repoAt(LocalDate.of(2025, 3, 15), 2);
+        BorrowRecord open = borrowed(LocalDate.of(2025, 3, 1));
+        BorrowRecord settled = returned(LocalDate.of(2025, 3, 2));
+
+        repo.saveAll(List.of(open, settled));
+
+        assertTrue(Files.exists(dir.resolve("open.json")));
+        assertTrue(Files.exists(dir.resolve("2025-03.json")));
+        assertEquals(List.of("2025-03"), repo.partitionKeys());
+        assertEquals(List.of(open.getId(), settled.getId()),
+                ids(repoAt(LocalDate.of(2025, 3, 20), 2).loadAll()));
+    }
+
+    @Test
+    void loadAll_skipsClosedPartitionsUntilHistoryIsRequested() {
+        PartitionedBorrowRecordRepository march = repoAt(LocalDate.of(2025, 3, 15), 2);
+        march.loadAll();
+        BorrowRecord open = borrowed(LocalDate.of(2025, 3, 1));
+        BorrowRecord settled = returned(LocalDate.of(2025, 3, 2));
+        march.saveAll(List.of(open, settled));
+
+        PartitionedBorrowRecordRepository may = repoAt(LocalDate.of(2025, 5, 10), 2);
+
+        assertEquals(List.of(open.getId()), ids(may.loadAll()));
+        assertEquals(List.of(settled.getId()), ids(may.loadArchived(LocalDate.of(2025, 1, 1))));
+        assertTrue(may.loadArchived(LocalDate.of(2025, 4, 1)).isEmpty());
+    }
+
+    @Test
+    void saveAll_movesRecordsSettledLaterIntoCurrentPeriod() {
+        BorrowRecord loan = borrowed(LocalDate.of(2025, 3, 1));
+        repoAt(LocalDate.of(2025, 3, 15), 2).saveAll(List.of(loan));
+
+        PartitionedBorrowRecordRepository april = repoAt(LocalDate.of(2025, 4, 2), 2);
+        List<BorrowRecord> hot = april.loadAll();
+        hot.get(0).markReturned(LocalDate.of(2025, 3, 20));
+        april.saveAll(hot);
+
+        assertEquals(List.of("2025-04"), april.partitionKeys());
+        assertTrue(repoAt(LocalDate.of(2025, 6, 1), 2).loadAll().isEmpty());
+    }
+
+    @Test
+    void saveAll_keepsReturnedRecordWithUnpaidFineOpen() {
+        PartitionedBorrowRecordRepository repo = repoAt(LocalDate.of(2025, 3, 15), 2);
+        BorrowRecord late = borrowed(LocalDate.of(2025, 1, 1));
+        late.markReturned(LocalDate.of(2025, 3, 1));
+        assertTrue(late.getRemainingFine().signum() > 0);
+
+        repo.saveAll(List.of(late));
+
+        assertTrue(repo.partitionKeys().isEmpty());
+        assertEquals(1, repoAt(LocalDate.of(2026, 1, 1), 2).loadAll().size());
+    }
+
+    @Test
+    void saveAll_withoutLoadMergesExistingPartition() {
+        BorrowRecord first = returned(LocalDate.of(2025, 3, 1));
+        repoAt(LocalDate.of(2025, 3, 15), 2).saveAll(List.of(first));
+
+        BorrowRecord second = returned(LocalDate.of(2025, 3, 5));
+        repoAt(LocalDate.of(2025, 3, 16), 2).saveAll(List.of(second));
+
+        assertEquals(2, repoAt(LocalDate.of(2025, 3, 20), 2).loadAll().size());
+    }
+
+    @Test
+    void stream_readsHotRecordsWithoutTakingOverTheirPartitions() {
+        BorrowRecord open = borrowed(LocalDate.of(2025, 3, 1));
+        BorrowRecord first = returned(LocalDate.of(2025, 3, 2));
+        repoAt(LocalDate.of(2025, 3, 15), 2).saveAll(List.of(open, first));
+
+        PartitionedBorrowRecordRepository repo = repoAt(LocalDate.of(2025, 3, 16), 2);
+        try (Stream<BorrowRecord> records = repo.stream()) {
+            assertEquals(List.of(open.getId(), first.getId()), records.map(BorrowRecord::getId).toList());
+        }
+
+        BorrowRecord second = returned(LocalDate.of(2025, 3, 5));
+        repo.saveAll(List.of(open, second));
+
+        assertEquals(3, repoAt(LocalDate.of(2025, 3, 20), 2).loadAll().size(),
+                "streamed partitions are still merged, not replaced");
+    }
+
+    @Test
+    void loadArchived_cachesRecentPartitionsWithEviction() {
+        for (int month = 1; month <= 3; month++) {
+            repoAt(LocalDate.of(2025, month, 10), 2).saveAll(List.of(returned(LocalDate.of(2025, month, 1))));
+        }
+        PartitionedBorrowRecordRepository june = repoAt(LocalDate.of(2025, 6, 1), 2);
+        june.loadAll();
+
+        List<BorrowRecord> all = june.loadArchived(LocalDate.of(2025, 1, 1));
+        assertEquals(3, all.size());
+        assertEquals(List.of("2025-02", "2025-03"), june.cachedPartitionKeys());
+
+        List<BorrowRecord> again = june.loadArchived(LocalDate.of(2025, 3, 1));
+        assertSame(all.get(2), again.get(0));
+    }
+
+    @Test
+    void period_keysAndRangesCoverEveryPeriodLength() {
+        LocalDate date = LocalDate.of(2025, 5, 17);
+        assertEquals("2025-05", Period.MONTH.keyOf(date));
+        assertEquals("2025-Q2", Period.QUARTER.keyOf(date));
+        assertEquals("2025", Period.YEAR.keyOf(date));
+        assertEquals(Period.MONTH, Period.parse("weekly"));
+
+        assertEquals(LocalDate.of(2025, 5, 31), PartitionedBorrowRecordRepository.endOf("2025-05"));
+        assertEquals(LocalDate.of(2025, 6, 30), PartitionedBorrowRecordRepository.endOf("2025-Q2"));
+        assertEquals(LocalDate.of(2025, 12, 31), PartitionedBorrowRecordRepository.endOf("2025"));
+        assertNull(PartitionedBorrowRecordRepository.endOf("open"));
+        assertNull(PartitionedBorrowRecordRepository.endOf("2025-13"));
+    }
+
+    @Test
+    void saveAll_afterRolloverKeepsPreviousPeriodIntact() {
+        Instant[] now = {LocalDate.of(2025, 3, 31).atStartOfDay(ZoneOffset.UTC).toInstant()};
+        Clock clock = new Clock() {
+            @Override public ZoneId getZone() { return ZoneOffset.UTC; }
+            @Override public Clock withZone(ZoneId zone) { return this; }
+            @Override public Instant instant() { return now[0]; }
+        };
+        PartitionedBorrowRecordRepository repo = new PartitionedBorrowRecordRepository(dir, Period.MONTH, 2, clock);
+        List<BorrowRecord> records = new ArrayList<>(repo.loadAll());
+        records.add(returned(LocalDate.of(2025, 3, 20)));
+        repo.saveAll(records);
+
+        now[0] = LocalDate.of(2025, 4, 1).atStartOfDay(ZoneOffset.UTC).toInstant();
+        records.add(returned(LocalDate.of(2025, 3, 28)));
+        repo.saveAll(records);
+
+        assertEquals(List.of("2025-03", "2025-04"), repo.partitionKeys());
+        PartitionedBorrowRecordRepository reopened = repoAt(LocalDate.of(2025, 4, 2), 2);
+        assertEquals(1, reopened.loadAll().size());
+        assertEquals(1, reopened.loadArchived(LocalDate.of(2025, 3, 1)).size());
+    }
+}
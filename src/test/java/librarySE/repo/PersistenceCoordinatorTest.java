@@ -0,0 +1,378 @@
+package librarySE.repo;
+
+import librarySE.core.Book;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceCoordinatorTest {
+
+    private PersistenceCoordinator coordinator;
+
+    /** Item repository that counts physical writes. */
+    private static class CountingItemRepository implements ItemRepository {
+        final AtomicInteger writes = new AtomicInteger();
+        final AtomicReference<List<LibraryItem>> last = new AtomicReference<>();
+
+        @Override public List<LibraryItem> loadAll() { return new ArrayList<>(); }
+
+        @Override public void saveAll(List<LibraryItem> items) {
+            writes.incrementAndGet();
+            last.set(items);
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        coordinator = new PersistenceCoordinator(0, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.close();
+    }
+
+    @Test
+    void saveAll_isDeferredUntilFlush() {
+        CountingItemRepository delegate = new CountingItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+
+        repo.saveAll(List.of());
+        repo.saveAll(List.of());
+        repo.saveAll(List.of());
+
+        assertEquals(0, delegate.writes.get());
+        assertEquals(1, coordinator.pendingRepositories());
+
+        PersistenceCoordinator.FlushReport report = coordinator.flush();
+
+        assertEquals(1, delegate.writes.get());
+        assertEquals(3, report.logicalSaves());
+        assertEquals(1, report.repositoriesWritten());
+        assertEquals(3, report.absorbed().get("items"));
+    }
+
+    @Test
+    void stream_writesPendingSavesFirst() {
+        CountingItemRepository delegate = new CountingItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+
+        repo.saveAll(List.of());
+        repo.forEach(item -> { });
+
+        assertEquals(1, delegate.writes.get());
+        assertEquals(0, coordinator.pendingRepositories());
+    }
+
+    @Test
+    void flush_writesLatestList() {
+        CountingItemRepository delegate = new CountingItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+        List<LibraryItem> first = new ArrayList<>();
+        List<LibraryItem> second = new ArrayList<>();
+
+        repo.saveAll(first);
+        repo.saveAll(second);
+        coordinator.flush();
+
+        assertSame(second, delegate.last.get());
+    }
+
+    @Test
+    void flush_groupsAllRepositoriesIntoOneCommit() {
+        AtomicInteger total = new AtomicInteger();
+        ItemRepository items = coordinator.items(new CountingItemRepository() {
+            @Override public void saveAll(List<LibraryItem> l) { total.incrementAndGet(); }
+        });
+        UserRepository users = coordinator.users(new UserRepository() {
+            @Override public List<User> loadAll() { return List.of(); }
+            @Override public void saveAll(List<User> l) { total.incrementAndGet(); }
+        });
+        BorrowRecordRepository records = coordinator.borrowRecords(new BorrowRecordRepository() {
+            @Override public List<BorrowRecord> loadAll() { return List.of(); }
+            @Override public void saveAll(List<BorrowRecord> l) { total.incrementAndGet(); }
+        });
+        WaitlistRepository waitlist = coordinator.waitlist(new WaitlistRepository() {
+            @Override public List<WaitlistEntry> loadAll() { return List.of(); }
+            @Override public void saveAll(List<WaitlistEntry> l) { total.incrementAndGet(); }
+        });
+
+        records.saveAll(List.of());
+        records.saveAll(List.of());
+        items.saveAll(List.of());
+        users.saveAll(List.of());
+        waitlist.saveAll(List.of());
+
+        PersistenceCoordinator.FlushReport report = coordinator.flush();
+
+        assertEquals(4, total.get());
+        assertEquals(5, report.logicalSaves());
+        assertEquals(2, report.absorbed().get("borrowRecords"));
+        assertEquals(5, coordinator.getTotalLogicalSaves());
+    }
+
+    @Test
+    void flush_withNothingDirty_returnsEmptyReport() {
+        PersistenceCoordinator.FlushReport report = coordinator.flush();
+        assertEquals(0, report.logicalSaves());
+        assertEquals(0, report.repositoriesWritten());
+    }
+
+    @Test
+    void loadAll_passesThroughImmediately() {
+        CountingItemRepository delegate = new CountingItemRepository();
+        assertNotNull(coordinator.items(delegate).loadAll());
+    }
+
+    /** Item repository with incremental writes that logs every call. */
+    private static class IncrementalItemRepository extends CountingItemRepository {
+        final List<String> calls = new ArrayList<>();
+        boolean failNext;
+
+        @Override public void saveAll(List<LibraryItem> items) {
+            super.saveAll(items);
+            calls.add("saveAll");
+        }
+        @Override public boolean supportsIncrementalWrites() { return true; }
+        @Override public void upsert(LibraryItem item) {
+            if (failNext) {
+                failNext = false;
+                throw new IllegalStateException("disk full");
+            }
+            calls.add("upsert:" + item.getTitle());
+        }
+        @Override public void delete(LibraryItem item) { calls.add("delete:" + item.getTitle()); }
+    }
+
+    @Test
+    void upsert_coalescesPerEntityAfterLatestFullList() {
+        IncrementalItemRepository delegate = new IncrementalItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+        Book a = new Book("1", "A", "X", BigDecimal.ONE);
+        Book b = new Book("2", "B", "X", BigDecimal.ONE);
+
+        repo.upsert(a);
+        repo.saveAll(List.of(a));
+        repo.upsert(b);
+        repo.upsert(b);
+        repo.delete(a);
+
+        assertTrue(repo.supportsIncrementalWrites());
+        PersistenceCoordinator.FlushReport report = coordinator.flush();
+
+        assertEquals(List.of("saveAll", "delete:A", "upsert:B"), delegate.calls);
+        assertEquals(5, report.logicalSaves());
+    }
+
+    @Test
+    void upsert_failedWriteIsRetriedOnNextFlush() {
+        IncrementalItemRepository delegate = new IncrementalItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+        Book a = new Book("1", "A", "X", BigDecimal.ONE);
+        delegate.failNext = true;
+
+        repo.upsert(a);
+        assertThrows(IllegalStateException.class, coordinator::flush);
+        assertEquals(1, coordinator.pendingRepositories());
+
+        coordinator.flush();
+        assertEquals(List.of("upsert:A"), delegate.calls);
+    }
+
+    @Test
+    void loadArchived_passesThroughToDelegate() {
+        List<BorrowRecord> archived = List.of();
+        AtomicReference<LocalDate> asked = new AtomicReference<>();
+        BorrowRecordRepository records = coordinator.borrowRecords(new BorrowRecordRepository() {
+            @Override public List<BorrowRecord> loadAll() { return List.of(); }
+            @Override public void saveAll(List<BorrowRecord> l) { }
+            @Override public List<BorrowRecord> loadArchived(LocalDate since) {
+                asked.set(since);
+                return archived;
+            }
+        });
+
+        assertSame(archived, records.loadArchived(LocalDate.of(2024, 1, 1)));
+        assertEquals(LocalDate.of(2024, 1, 1), asked.get());
+    }
+
+    /** Borrow record repository whose queries see only what has been written. */
+    private static class QueryableBorrowRepository implements BorrowRecordRepository, BorrowRecordQueries {
+        final List<BorrowRecord> stored = new ArrayList<>();
+
+        @Override public List<BorrowRecord> loadAll() { return List.copyOf(stored); }
+        @Override public void saveAll(List<BorrowRecord> records) {
+            stored.clear();
+            stored.addAll(records);
+        }
+        @Override public List<BorrowRecord> findByUser(java.util.UUID userId) {
+            return stored.stream().filter(r -> userId.equals(r.getUserId())).toList();
+        }
+        @Override public List<BorrowRecord> findByItem(java.util.UUID itemId) { return List.copyOf(stored); }
+        @Override public List<BorrowRecord> findOverdue(LocalDate date) { return List.copyOf(stored); }
+    }
+
+    @Test
+    void borrowRecordQueries_flushPendingWritesFirst() {
+        QueryableBorrowRepository delegate = new QueryableBorrowRepository();
+        BorrowRecordRepository records = coordinator.borrowRecords(delegate);
+        User user = new User("Q", librarySE.managers.Role.USER, "pass123", "q@ps.com");
+        Book book = new Book("I", "T", "A", BigDecimal.TEN);
+        BorrowRecord record = new BorrowRecord(user, book,
+                librarySE.strategy.FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+
+        records.saveAll(List.of(record));
+        assertTrue(delegate.stored.isEmpty(), "write is still coalesced");
+
+        BorrowRecordQueries queries = assertInstanceOf(BorrowRecordQueries.class, records);
+        assertEquals(List.of(record), queries.findByUser(user.getId()));
+        assertEquals(0, coordinator.pendingRepositories());
+    }
+
+    @Test
+    void preload_loadsRepositoriesConcurrentlyAndServesFirstLoadAll() throws Exception {
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        AtomicInteger itemLoads = new AtomicInteger();
+        List<LibraryItem> items = List.of(new Book("I", "T", "A", BigDecimal.ONE));
+        ItemRepository itemRepo = coordinator.items(new CountingItemRepository() {
+            @Override public List<LibraryItem> loadAll() {
+                itemLoads.incrementAndGet();
+                bothRunning.countDown();
+                await(bothRunning);
+                return items;
+            }
+        });
+        WaitlistRepository waitlistRepo = coordinator.waitlist(new WaitlistRepository() {
+            @Override public List<WaitlistEntry> loadAll() {
+                bothRunning.countDown();
+                await(bothRunning);
+                return List.of();
+            }
+            @Override public void saveAll(List<WaitlistEntry> entries) { }
+        });
+
+        Map<String, Duration> took = coordinator.preload().get(5, TimeUnit.SECONDS);
+
+        assertEquals(java.util.Set.of("items", "waitlist"), took.keySet());
+        assertSame(items, itemRepo.loadAll(), "first load is served from the preload");
+        assertEquals(1, itemLoads.get());
+        itemRepo.loadAll();
+        assertEquals(2, itemLoads.get(), "later loads read storage again");
+        assertTrue(waitlistRepo.loadAll().isEmpty());
+    }
+
+    @Test
+    void preload_failureIsRethrownByLoadAll() {
+        ItemRepository itemRepo = coordinator.items(new CountingItemRepository() {
+            @Override public List<LibraryItem> loadAll() {
+                throw new IllegalStateException("corrupt");
+            }
+        });
+
+        assertThrows(ExecutionException.class, () -> coordinator.preload().get(5, TimeUnit.SECONDS));
+        IllegalStateException e = assertThrows(IllegalStateException.class, itemRepo::loadAll);
+        assertEquals("corrupt", e.getMessage());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("loads did not overlap");
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    void borrowRecords_withoutQueries_isNotQueryable() {
+        BorrowRecordRepository records = coordinator.borrowRecords(new BorrowRecordRepository() {
+            @Override public List<BorrowRecord> loadAll() { return List.of(); }
+            @Override public void saveAll(List<BorrowRecord> l) { }
+        });
+        assertFalse(records instanceof BorrowRecordQueries);
+    }
+
+    @Test
+    void dirtyThreshold_triggersFlush() throws Exception {
+        coordinator.close();
+        coordinator = new PersistenceCoordinator(0, 2);
+        CountingItemRepository delegate = new CountingItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+
+        repo.saveAll(List.of());
+        repo.saveAll(List.of());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.writes.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, delegate.writes.get());
+    }
+
+    @Test
+    void periodicFlush_writesWithoutExplicitCall() throws Exception {
+        coordinator.close();
+        coordinator = new PersistenceCoordinator(20, 1000);
+        CountingItemRepository delegate = new CountingItemRepository();
+        coordinator.items(delegate).saveAll(List.of());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (delegate.writes.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, delegate.writes.get());
+    }
+
+    @Test
+    void close_flushesPendingAndWritesThroughAfterwards() {
+        CountingItemRepository delegate = new CountingItemRepository();
+        ItemRepository repo = coordinator.items(delegate);
+
+        repo.saveAll(List.of());
+        coordinator.close();
+        assertEquals(1, delegate.writes.get());
+
+        repo.saveAll(List.of());
+        assertEquals(2, delegate.writes.get());
+    }
+
+    @Test
+    void failedWrite_staysPendingForNextFlush() {
+        AtomicInteger attempts = new AtomicInteger();
+        ItemRepository repo = coordinator.items(new CountingItemRepository() {
+            @Override public void saveAll(List<LibraryItem> items) {
+                if (attempts.incrementAndGet() == 1) throw new RuntimeException("disk full");
+            }
+        });
+
+        repo.saveAll(List.of());
+        assertThrows(RuntimeException.class, coordinator::flush);
+        assertEquals(1, coordinator.pendingRepositories());
+
+        PersistenceCoordinator.FlushReport report = coordinator.flush();
+        assertEquals(1, report.logicalSaves());
+        assertEquals(0, coordinator.pendingRepositories());
+    }
+
+    @Test
+    void constructor_rejectsInvalidThreshold() {
+        assertThrows(IllegalArgumentException.class, () -> new PersistenceCoordinator(0, 0));
+    }
+}
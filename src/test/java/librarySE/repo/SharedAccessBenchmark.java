@@ -0,0 +1,150 @@
+package librarySE.repo;
+
+import librarySE.core.AbstractLibraryItem;
+import librarySE.core.Book;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowManager;
+import librarySE.managers.ItemManager;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.search.KeywordSearchStrategy;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures checkouts per second with several circulation desks, each a separate
+ * JVM, sharing one data directory through the journal repositories.
+ * <p>
+ * Each desk borrows random books from a shared catalog through its own
+ * {@link ItemManager} and {@link BorrowManager}. Afterwards the parent checks
+ * that no checkout was lost: the number of borrow records equals the number of
+ * checkouts, and the copies missing from the shelves equal the number of records.
+ * The run is repeated with 1, 2, 4, ... desks up to the requested number.
+ * </p>
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.repo.SharedAccessBenchmark [desks] [checkoutsPerDesk]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class SharedAccessBenchmark {
+
+    private static final int BOOKS = 200;
+
+    private SharedAccessBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("desk")) {
+            desk(Path.of(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]));
+            return;
+        }
+        int desks = (args.length > 0) ? Integer.parseInt(args[0]) : 4;
+        int checkouts = (args.length > 1) ? Integer.parseInt(args[1]) : 300;
+
+        for (int n = 1; n <= desks; n *= 2) {
+            run(n, checkouts);
+        }
+    }
+
+    private static void run(int desks, int checkouts) throws Exception {
+        Path dir = Files.createTempDirectory("shared-bench");
+        try {
+            try (JournalItemRepository items = items(dir)) {
+                List<LibraryItem> catalog = new ArrayList<>();
+                for (int i = 0; i < BOOKS; i++) {
+                    catalog.add(new Book("978-" + i, "Book " + i, "Author " + i % 20, BigDecimal.TEN,
+                            desks * checkouts));
+                }
+                items.saveAll(catalog);
+            }
+
+            String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+            String classpath = System.getProperty("java.class.path");
+            List<Process> processes = new ArrayList<>();
+            long t0 = System.nanoTime();
+            for (int d = 0; d < desks; d++) {
+                processes.add(new ProcessBuilder(java, "-cp", classpath, SharedAccessBenchmark.class.getName(),
+                        "desk", dir.toString(), String.valueOf(d), String.valueOf(checkouts))
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start());
+            }
+            for (Process p : processes) {
+                if (p.waitFor() != 0) throw new IllegalStateException("Desk failed with exit code " + p.exitValue());
+            }
+            long nanos = System.nanoTime() - t0;
+
+            int records;
+            try (JournalBorrowRecordRepository borrows = records(dir)) {
+                records = borrows.loadAll().size();
+            }
+            long lent = 0;
+            try (JournalItemRepository items = items(dir)) {
+                for (LibraryItem i : items.loadAll()) {
+                    AbstractLibraryItem item = (AbstractLibraryItem) i;
+                    lent += item.getTotalCopies() - item.getAvailableCopies();
+                }
+            }
+            int expected = desks * checkouts;
+            System.out.printf("%2d desks %,10.0f checkouts/s  records %d/%d, copies lent %d  %s%n",
+                    desks, expected * 1e9 / nanos, records, expected, lent,
+                    (records == expected && lent == expected) ? "OK" : "LOST UPDATES");
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : files.toList()) Files.deleteIfExists(p);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    /** Body of one desk process: borrows {@code checkouts} random books. */
+    private static void desk(Path dir, int desk, int checkouts) throws Exception {
+        try (JournalItemRepository itemRepo = items(dir);
+             JournalBorrowRecordRepository recordRepo = records(dir)) {
+            ItemManager items = ItemManager.init(itemRepo, new KeywordSearchStrategy());
+            BorrowManager borrows = BorrowManager.init(recordRepo, new MemoryWaitlist(), items);
+            User user = new User("Desk" + desk, Role.USER, "pass123", "desk" + desk + "@mail.com");
+
+            Random random = new Random(desk);
+            for (int i = 0; i < checkouts; i++) {
+                LibraryItem book = items.getAllItems().get(random.nextInt(BOOKS));
+                if (!borrows.borrowItem(user, book)) throw new IllegalStateException("No copy left of " + book);
+            }
+        }
+    }
+
+    private static JournalItemRepository items(Path dir) {
+        return new JournalItemRepository(dir.resolve("items.json"), dir.resolve("items.journal"), 512);
+    }
+
+    private static JournalBorrowRecordRepository records(Path dir) {
+        return new JournalBorrowRecordRepository(dir.resolve("borrow_records.json"),
+                dir.resolve("borrow_records.journal"), 512);
+    }
+
+    /** Waitlist kept in memory; never used, as every book has enough copies. */
+    private static final class MemoryWaitlist implements WaitlistRepository {
+        private List<WaitlistEntry> entries = List.of();
+
+        @Override
+        public List<WaitlistEntry> loadAll() {
+            return new ArrayList<>(entries);
+        }
+
+        @Override
+        public void saveAll(List<WaitlistEntry> entries) {
+            this.entries = List.copyOf(entries);
+        }
+    }
+}
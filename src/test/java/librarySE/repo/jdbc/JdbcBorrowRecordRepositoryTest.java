@@ -0,0 +1,108 @@
+package librarySE.repo.jdbc;
+
+import librarySE.core.Book;
+import librarySE.core.LibraryItem;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.strategy.FineStrategyFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcBorrowRecordRepositoryTest {
+
+    private JdbcDatabase db;
+    private JdbcBorrowRecordRepository repo;
+    private User alice;
+    private User bob;
+    private LibraryItem item;
+
+    @BeforeEach
+    void setup() {
+        db = new JdbcDatabase("jdbc:h2:mem:" + UUID.randomUUID());
+        repo = new JdbcBorrowRecordRepository(db);
+        alice = new User("Alice", Role.USER, "pass123", "alice@ps.com");
+        bob = new User("Bob", Role.USER, "pass123", "bob@ps.com");
+        item = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    private BorrowRecord record(User user, LocalDate date) {
+        return new BorrowRecord(user, item, FineStrategyFactory.book(), date);
+    }
+
+    private static List<UUID> ids(List<BorrowRecord> records) {
+        return records.stream().map(BorrowRecord::getId).toList();
+    }
+
+    @Test
+    void saveAll_roundTripsInOrder() {
+        BorrowRecord r1 = record(alice, LocalDate.of(2025, 1, 1));
+        BorrowRecord r2 = record(bob, LocalDate.of(2025, 1, 2));
+        r2.markReturned(LocalDate.of(2025, 1, 3));
+
+        repo.saveAll(List.of(r1, r2));
+        List<BorrowRecord> loaded = repo.loadAll();
+
+        assertEquals(ids(List.of(r1, r2)), ids(loaded));
+        assertEquals(alice.getId(), loaded.get(0).getUserId());
+        assertTrue(loaded.get(1).isReturned());
+    }
+
+    @Test
+    void saveAll_replacesPreviousContentsInBatches() {
+        List<BorrowRecord> many = new ArrayList<>();
+        for (int i = 0; i < JdbcTable.BATCH_SIZE + 3; i++) many.add(record(alice, LocalDate.of(2025, 1, 1)));
+        repo.saveAll(many);
+        assertEquals(many.size(), repo.loadAll().size());
+
+        repo.saveAll(List.of(many.get(0)));
+        assertEquals(ids(List.of(many.get(0))), ids(repo.loadAll()));
+    }
+
+    @Test
+    void upsertAndDelete_touchSingleRows() {
+        BorrowRecord r1 = record(alice, LocalDate.of(2025, 1, 1));
+        BorrowRecord r2 = record(bob, LocalDate.of(2025, 1, 2));
+        repo.saveAll(List.of(r1));
+
+        repo.upsert(r2);
+        r1.markReturned(LocalDate.of(2025, 1, 5));
+        repo.upsert(r1);
+        assertEquals(ids(List.of(r1, r2)), ids(repo.loadAll()), "updates keep their position");
+        assertTrue(repo.loadAll().get(0).isReturned());
+
+        repo.delete(r1);
+        assertEquals(ids(List.of(r2)), ids(repo.loadAll()));
+    }
+
+    @Test
+    void queries_filterByUserItemAndOverdueState() {
+        BorrowRecord aliceOld = record(alice, LocalDate.of(2025, 1, 1));
+        BorrowRecord aliceReturned = record(alice, LocalDate.of(2025, 1, 1));
+        aliceReturned.markReturned(LocalDate.of(2025, 1, 2));
+        BorrowRecord bobRecent = record(bob, LocalDate.of(2025, 3, 1));
+        repo.saveAll(List.of(aliceOld, aliceReturned, bobRecent));
+
+        assertEquals(ids(List.of(aliceOld, aliceReturned)), ids(repo.findByUser(alice.getId())));
+        assertEquals(3, repo.findByItem(item.getId()).size());
+        assertTrue(repo.findByItem(UUID.randomUUID()).isEmpty());
+
+        LocalDate date = aliceOld.getDueDate().plusDays(1);
+        assertEquals(ids(List.of(aliceOld)), ids(repo.findOverdue(date)));
+        assertTrue(repo.findOverdue(aliceOld.getDueDate()).isEmpty(), "due today is not overdue yet");
+    }
+}
@@ -0,0 +1,93 @@
+package librarySE.repo.jdbc;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.LibraryItem;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaVersionException;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcItemRepositoryTest {
+
+    @Test
+    void items_surviveReopeningTheDatabaseFile() throws IOException {
+        Path dir = Files.createTempDirectory("jdbc_items_test");
+        String url = "jdbc:h2:file:" + dir.resolve("library").toAbsolutePath();
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+
+        JdbcDatabase db = new JdbcDatabase(url);
+        JdbcItemRepository repo = new JdbcItemRepository(db);
+        repo.saveAll(List.of(book));
+        book.borrow();
+        repo.upsert(book);
+        repo.upsert(cd);
+        db.close();
+
+        JdbcDatabase reopened = new JdbcDatabase(url);
+        try {
+            List<LibraryItem> loaded = new JdbcItemRepository(reopened).loadAll();
+            assertEquals(2, loaded.size());
+            assertEquals(2, ((Book) loaded.get(0)).getAvailableCopies());
+            assertInstanceOf(CD.class, loaded.get(1));
+
+            new JdbcItemRepository(reopened).delete(book);
+            assertEquals(1, new JdbcItemRepository(reopened).loadAll().size());
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void supportsIncrementalWrites() {
+        JdbcDatabase db = new JdbcDatabase("jdbc:h2:mem:items_incremental");
+        try {
+            assertTrue(new JdbcItemRepository(db).supportsIncrementalWrites());
+        } finally {
+            db.close();
+        }
+    }
+
+    @Test
+    void rowsOfAnOlderFormat_areUpgradedWhenTheRepositoryIsCreated() {
+        JdbcDatabase db = new JdbcDatabase("jdbc:h2:mem:items_schema;DB_CLOSE_DELAY=-1");
+        try {
+            Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+            new JdbcItemRepository(db).saveAll(List.of(book));
+            // Written before a (hypothetical) version 2 renamed "name" to "title".
+            String legacy = FileUtils.toCompactJson(book).replace("\"title\":", "\"name\":");
+            db.execute(c -> {
+                try (PreparedStatement ps = c.prepareStatement("UPDATE items SET data = ?")) {
+                    ps.setString(1, legacy);
+                    return ps.executeUpdate();
+                }
+            });
+
+            DataSchema.register(Migration.renameField(DataSchema.Kind.ITEM, 1, "name", "title"));
+            try {
+                List<LibraryItem> loaded = new JdbcItemRepository(db).loadAll();
+                assertEquals("Title", loaded.get(0).getTitle());
+                assertEquals(1, loaded.size());
+            } finally {
+                DataSchema.clearMigrations(DataSchema.Kind.ITEM);
+            }
+
+            SchemaVersionException e = assertThrows(SchemaVersionException.class, () -> new JdbcItemRepository(db));
+            assertEquals(2, e.getFound());
+            assertEquals(1, e.getSupported());
+        } finally {
+            db.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package librarySE.repo.jdbc;
+
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcUserRepositoryTest {
+
+    private JdbcDatabase db;
+    private JdbcUserRepository repo;
+
+    @BeforeEach
+    void setup() {
+        db = new JdbcDatabase("jdbc:h2:mem:" + UUID.randomUUID());
+        repo = new JdbcUserRepository(db);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void upsert_updatesOneUsersFineBalance() {
+        User a = new User("A", Role.USER, "pass123", "a@ps.com");
+        User b = new User("B", Role.USER, "pass123", "b@ps.com");
+        repo.saveAll(List.of(a, b));
+
+        b.addFine(new BigDecimal("4.25"));
+        repo.upsert(b);
+
+        List<User> loaded = repo.loadAll();
+        assertEquals(List.of(a.getId(), b.getId()), loaded.stream().map(User::getId).toList());
+        assertEquals(0, new BigDecimal("4.25").compareTo(loaded.get(1).getFineBalance()));
+        assertEquals("b@ps.com", loaded.get(1).getEmail());
+    }
+
+    @Test
+    void delete_removesOnlyThatUser() {
+        User a = new User("A", Role.USER, "pass123", "a@ps.com");
+        User b = new User("B", Role.USER, "pass123", "b@ps.com");
+        repo.saveAll(List.of(a, b));
+
+        repo.delete(a);
+
+        assertEquals(List.of(b.getId()), repo.loadAll().stream().map(User::getId).toList());
+    }
+}
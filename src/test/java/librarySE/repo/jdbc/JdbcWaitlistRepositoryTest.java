@@ -0,0 +1,68 @@
+package librarySE.repo.jdbc;
+
+import librarySE.core.WaitlistEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcWaitlistRepositoryTest {
+
+    private JdbcDatabase db;
+    private JdbcWaitlistRepository repo;
+
+    @BeforeEach
+    void setup() {
+        db = new JdbcDatabase("jdbc:h2:mem:" + UUID.randomUUID());
+        repo = new JdbcWaitlistRepository(db);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.close();
+    }
+
+    @Test
+    void loadAll_emptyInitially() {
+        assertTrue(repo.loadAll().isEmpty());
+    }
+
+    @Test
+    void saveAll_replacesEntriesAndKeepsOrder() {
+        UUID item = UUID.randomUUID();
+        WaitlistEntry first = new WaitlistEntry(item, "a@ps.com", LocalDate.of(2025, 1, 1));
+        WaitlistEntry second = new WaitlistEntry(item, "b@ps.com", LocalDate.of(2025, 1, 2));
+
+        repo.saveAll(List.of(first, second));
+        repo.saveAll(List.of(second, first));
+
+        List<WaitlistEntry> loaded = repo.loadAll();
+        assertEquals(List.of("b@ps.com", "a@ps.com"), loaded.stream().map(WaitlistEntry::getUserEmail).toList());
+        assertEquals(item, loaded.get(0).getItemId());
+        assertEquals(LocalDate.of(2025, 1, 2), loaded.get(0).getRequestDate());
+    }
+
+    @Test
+    void stream_readsAllPagesInSavedOrder() {
+        UUID item = UUID.randomUUID();
+        List<WaitlistEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 2 * JdbcTable.BATCH_SIZE + 1; i++) {
+            entries.add(new WaitlistEntry(item, "u" + i + "@ps.com", LocalDate.of(2025, 1, 1)));
+        }
+        repo.saveAll(entries);
+        repo.saveAll(entries); // renumbered; pages continue after the last seq read
+
+        List<String> streamed;
+        try (Stream<WaitlistEntry> stored = repo.stream()) {
+            streamed = stored.map(WaitlistEntry::getUserEmail).toList();
+        }
+        assertEquals(entries.stream().map(WaitlistEntry::getUserEmail).toList(), streamed);
+    }
+}
@@ -0,0 +1,170 @@
+package librarySE.repo.lsm;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+import librarySE.strategy.FineStrategyFactory;
+import librarySE.utils.DataSchema;
+import librarySE.utils.FileUtils;
+import librarySE.utils.Migration;
+import librarySE.utils.SchemaVersionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmRepositoryTest {
+
+    @TempDir
+    Path dir;
+
+    private LsmStore store(String name) {
+        return new LsmStore(dir.resolve(name), 1 << 20, 4);
+    }
+
+    @Test
+    void items_upsertAndDeleteSurviveReopen() {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+        try (LsmItemRepository repo = new LsmItemRepository(store("items"))) {
+            assertTrue(repo.supportsIncrementalWrites());
+            repo.saveAll(List.of(book, cd));
+            book.borrow();
+            repo.upsert(book);
+            repo.delete(cd);
+        }
+
+        try (LsmItemRepository repo = new LsmItemRepository(store("items"))) {
+            List<LibraryItem> loaded = repo.loadAll();
+            assertEquals(1, loaded.size());
+            assertEquals(book.getId(), loaded.get(0).getId());
+            assertEquals(2, ((Book) loaded.get(0)).getAvailableCopies());
+        }
+    }
+
+    @Test
+    void items_streamReadsCurrentValuesInSavedOrder() {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        CD cd = new CD("Album", "Artist", BigDecimal.ONE);
+        Book added = new Book("ISBN-2", "Added", "Author", BigDecimal.TEN, 1);
+        try (LsmItemRepository repo = new LsmItemRepository(store("items"))) {
+            repo.saveAll(List.of(book, cd));
+            repo.getStore().flush();
+            book.borrow();
+            repo.upsert(book);
+            repo.upsert(added);
+            repo.delete(cd);
+
+            List<LibraryItem> streamed;
+            try (Stream<LibraryItem> items = repo.stream()) {
+                streamed = items.toList();
+            }
+            assertEquals(List.of(book.getId(), added.getId()), streamed.stream().map(LibraryItem::getId).toList());
+            assertEquals(2, ((Book) streamed.get(0)).getAvailableCopies());
+        }
+    }
+
+    @Test
+    void users_keepSavedOrder() {
+        User a = new User("A", Role.USER, "pass123", "a@ps.com");
+        User b = new User("B", Role.USER, "pass123", "b@ps.com");
+        try (LsmUserRepository repo = new LsmUserRepository(store("users"))) {
+            repo.saveAll(List.of(b, a));
+            b.addFine(BigDecimal.ONE);
+            repo.upsert(b);
+
+            List<User> loaded = repo.loadAll();
+            assertEquals(List.of(b.getId(), a.getId()), loaded.stream().map(User::getId).toList());
+            assertEquals(0, BigDecimal.ONE.compareTo(loaded.get(0).getFineBalance()));
+        }
+    }
+
+    @Test
+    void borrowRecords_roundTrip() {
+        User u = new User("U", Role.USER, "pass123", "u@ps.com");
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN);
+        BorrowRecord r = new BorrowRecord(u, book, FineStrategyFactory.book(), LocalDate.of(2025, 1, 1));
+        try (LsmBorrowRecordRepository repo = new LsmBorrowRecordRepository(store("records"))) {
+            repo.upsert(r);
+            List<BorrowRecord> loaded = repo.loadAll();
+            assertEquals(1, loaded.size());
+            assertEquals(r.getId(), loaded.get(0).getId());
+            assertEquals(u.getId(), loaded.get(0).getUserId());
+        }
+    }
+
+    @Test
+    void waitlist_replacesWholeList() {
+        UUID item = UUID.randomUUID();
+        WaitlistEntry first = new WaitlistEntry(item, "a@ps.com", LocalDate.of(2025, 1, 1));
+        WaitlistEntry second = new WaitlistEntry(item, "b@ps.com", LocalDate.of(2025, 1, 2));
+        try (LsmWaitlistRepository repo = new LsmWaitlistRepository(store("waitlist"))) {
+            repo.saveAll(List.of(first, second, first));
+            repo.saveAll(List.of(second));
+
+            List<WaitlistEntry> loaded = repo.loadAll();
+            assertEquals(1, loaded.size());
+            assertEquals("b@ps.com", loaded.get(0).getUserEmail());
+            assertEquals(LocalDate.of(2025, 1, 2), loaded.get(0).getRequestDate());
+        }
+    }
+
+    @Test
+    void items_ofAnOlderFormatAreUpgradedWhenOpened() {
+        Book book = new Book("ISBN", "Title", "Author", BigDecimal.TEN, 3);
+        // Written before a (hypothetical) version 2 renamed "name" to "title".
+        String legacy = FileUtils.toCompactJson(book).replace("\"title\":", "\"name\":");
+        try (LsmStore store = store("items")) {
+            store.put(book.getId(), legacy.getBytes(StandardCharsets.UTF_8));
+        }
+
+        DataSchema.register(Migration.renameField(DataSchema.Kind.ITEM, 1, "name", "title"));
+        try {
+            try (LsmItemRepository repo = new LsmItemRepository(store("items"))) {
+                assertEquals("Title", repo.loadAll().get(0).getTitle());
+                assertEquals("$schema:item/2", new String(
+                        repo.getStore().get(LsmCollection.SCHEMA_KEY), StandardCharsets.UTF_8));
+            }
+            try (LsmItemRepository repo = new LsmItemRepository(store("items"))) {
+                assertEquals(List.of(book.getId()), repo.loadAll().stream().map(LibraryItem::getId).toList());
+            }
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.ITEM);
+        }
+
+        SchemaVersionException e = assertThrows(SchemaVersionException.class,
+                () -> new LsmItemRepository(store("items")));
+        assertEquals(2, e.getFound());
+    }
+
+    @Test
+    void waitlist_upgradesTheEntryInsideEachValue() {
+        UUID itemId = UUID.randomUUID();
+        try (LsmWaitlistRepository repo = new LsmWaitlistRepository(store("waitlist"))) {
+            repo.saveAll(List.of(new WaitlistEntry(itemId, "a@ps.com", LocalDate.of(2025, 1, 1))));
+            byte[] value = repo.getStore().get(new UUID(0L, 0L));
+            String legacy = new String(value, StandardCharsets.UTF_8).replace("\"userEmail\":", "\"email\":");
+            repo.getStore().put(new UUID(0L, 0L), legacy.getBytes(StandardCharsets.UTF_8));
+            repo.getStore().delete(LsmCollection.SCHEMA_KEY);
+        }
+
+        DataSchema.register(Migration.renameField(DataSchema.Kind.WAITLIST_ENTRY, 1, "email", "userEmail"));
+        try (LsmWaitlistRepository repo = new LsmWaitlistRepository(store("waitlist"))) {
+            assertEquals("a@ps.com", repo.loadAll().get(0).getUserEmail());
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.WAITLIST_ENTRY);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package librarySE.repo.lsm;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LsmStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private LsmStore store;
+
+    @BeforeEach
+    void setup() {
+        store = new LsmStore(dir, 1 << 20, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> values) {
+        return values.stream().map(v -> new String(v, StandardCharsets.UTF_8)).toList();
+    }
+
+    private LsmStore reopen() {
+        store.close();
+        store = new LsmStore(dir, 1 << 20, 100);
+        return store;
+    }
+
+    private long segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".sst")).count();
+        }
+    }
+
+    @Test
+    void putGetDelete_inMemtable() {
+        UUID a = UUID.randomUUID();
+        assertNull(store.get(a));
+
+        store.put(a, bytes("one"));
+        assertEquals("one", new String(store.get(a), StandardCharsets.UTF_8));
+
+        store.delete(a);
+        assertNull(store.get(a));
+        assertTrue(store.values().isEmpty());
+    }
+
+    @Test
+    void values_keepInsertionOrderAcrossUpdates() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        store.put(c, bytes("c"));
+        store.put(a, bytes("a"));
+        store.put(b, bytes("b"));
+        store.put(c, bytes("c2"));
+
+        assertEquals(List.of("c2", "a", "b"), strings(store.values()));
+    }
+
+    @Test
+    void unflushedWrites_areReplayedFromJournal() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        store.put(a, bytes("a"));
+        store.put(b, bytes("b"));
+        store.delete(a);
+
+        reopen();
+
+        assertNull(store.get(a));
+        assertEquals(List.of("b"), strings(store.values()));
+        assertEquals(0, store.segmentCount());
+    }
+
+    @Test
+    void flush_movesMemtableToSegmentAndResetsJournal() throws IOException {
+        UUID a = UUID.randomUUID();
+        store.put(a, bytes("a"));
+        store.flush();
+
+        assertEquals(1, store.segmentCount());
+        assertEquals(1, segmentFiles());
+        assertEquals(0, store.pendingJournalEntries());
+
+        reopen();
+        assertEquals("a", new String(store.get(a), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void reads_findKeysInOlderSegmentsAndHonourNewerTombstones() {
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UUID k = UUID.randomUUID();
+            keys.add(k);
+            store.put(k, bytes("v" + i));
+        }
+        store.flush();
+        store.delete(keys.get(5));
+        store.put(keys.get(6), bytes("new"));
+        store.flush();
+
+        assertEquals(2, store.segmentCount());
+        assertNull(store.get(keys.get(5)));
+        assertEquals("new", new String(store.get(keys.get(6)), StandardCharsets.UTF_8));
+        for (int i = 7; i < 100; i++) {
+            assertEquals("v" + i, new String(store.get(keys.get(i)), StandardCharsets.UTF_8));
+        }
+        assertNull(store.get(UUID.randomUUID()));
+        assertEquals(99, store.values().size());
+        assertEquals("new", strings(store.values()).get(5), "updated key keeps its position");
+    }
+
+    @Test
+    void keys_followSequenceOrderAcrossSegmentsAndMemtable() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        store.put(c, bytes("c"));
+        store.put(a, bytes("a"));
+        store.flush();
+        store.put(b, bytes("b"));
+        store.put(c, bytes("c2"));
+        store.delete(a);
+
+        assertEquals(List.of(c, b), store.keys());
+    }
+
+    @Test
+    void compact_mergesSegmentsAndDropsDeletedKeys() throws IOException {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        store.put(a, bytes("a"));
+        store.put(b, bytes("b"));
+        store.flush();
+        store.delete(a);
+        store.flush();
+
+        store.compact();
+
+        assertEquals(1, store.segmentCount());
+        assertEquals(1, segmentFiles());
+        assertNull(store.get(a));
+        assertEquals(List.of("b"), strings(store.values()));
+
+        reopen();
+        assertEquals(List.of("b"), strings(store.values()));
+    }
+
+    @Test
+    void memtableLimit_flushesAndTriggersBackgroundCompaction() throws Exception {
+        store.close();
+        store = new LsmStore(dir, 256, 3);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            UUID k = UUID.randomUUID();
+            keys.add(k);
+            store.put(k, bytes("value-" + i));
+        }
+
+        for (int i = 0; i < 100 && store.segmentCount() >= 3; i++) Thread.sleep(20);
+        assertTrue(store.segmentCount() < 3, "background compaction merged the segments");
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals("value-" + i, new String(store.get(keys.get(i)), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void replaceAll_deletesMissingKeysAndRenumbers() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+        store.put(a, bytes("a"));
+        store.put(b, bytes("b"));
+        store.flush();
+
+        List<Map.Entry<UUID, byte[]>> entries = List.of(
+                new AbstractMap.SimpleImmutableEntry<>(c, bytes("c")),
+                new AbstractMap.SimpleImmutableEntry<>(a, bytes("a2")));
+        store.replaceAll(entries);
+
+        assertEquals(List.of("c", "a2"), strings(store.values()));
+        assertNull(store.get(b));
+        assertEquals(List.of("c", "a2"), strings(reopen().values()));
+    }
+
+    @Test
+    void open_removesLeftoversOfInterruptedCompaction() throws IOException {
+        UUID a = UUID.randomUUID();
+        store.put(a, bytes("a"));
+        store.flush();
+        store.delete(a);
+        store.flush();
+        store.compact();
+        store.close();
+
+        // Simulate a crash after the merged segment was written but before its inputs were deleted.
+        Path merged;
+        try (Stream<Path> files = Files.list(dir)) {
+            merged = files.filter(p -> p.getFileName().toString().endsWith(".sst")).findFirst().orElseThrow();
+        }
+        Path staleInput = dir.resolve("segment-000001.sst");
+        LsmStore old = new LsmStore(dir.resolve("old"), 1 << 20, 100);
+        old.put(a, bytes("resurrected"));
+        old.flush();
+        old.close();
+        try (Stream<Path> files = Files.list(dir.resolve("old"))) {
+            Files.copy(files.filter(p -> p.getFileName().toString().endsWith(".sst")).findFirst().orElseThrow(),
+                    staleInput);
+        }
+        Files.writeString(dir.resolve("segment-000009.sst.tmp"), "partial");
+
+        store = new LsmStore(dir, 1 << 20, 100);
+
+        assertNull(store.get(a), "segment already merged must not come back");
+        assertFalse(Files.exists(staleInput));
+        assertFalse(Files.exists(dir.resolve("segment-000009.sst.tmp")));
+        assertTrue(Files.exists(merged));
+    }
+
+    @Test
+    void closedStore_rejectsWrites() {
+        store.close();
+        assertThrows(IllegalStateException.class, () -> store.put(UUID.randomUUID(), bytes("x")));
+    }
+}
@@ -0,0 +1,117 @@
+package librarySE.utils;
+
+import com.google.gson.Gson;
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Compares the hand-written streaming adapters of the domain types
+ * ({@link FileUtils#toCompactJson}/{@link FileUtils#fromJson}) with Gson's
+ * reflective adapters ({@link FileUtils#reflectiveGson()}): time and heap
+ * allocation per entity for writing and reading each repository's list.
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.utils.DomainAdapterBenchmark [entities]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class DomainAdapterBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private DomainAdapterBenchmark() {}
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 50_000;
+
+        List<LibraryItem> items = new ArrayList<>(count);
+        List<User> users = new ArrayList<>(count);
+        List<BorrowRecord> records = new ArrayList<>(count);
+        List<WaitlistEntry> waitlist = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(50 + i % 500, 1);
+            LibraryItem item = switch (i % 3) {
+                case 0 -> new Book("ISBN-" + i, "Book " + i, "Author " + i % 500, price);
+                case 1 -> new CD("Album " + i, "Artist " + i % 300, price);
+                default -> new Journal("Journal " + i, "Editor " + i % 200, "Issue " + i % 12, price);
+            };
+            User user = new User("user" + i, Role.USER, "secret123", "user" + i + "@example.com");
+            items.add(item);
+            users.add(user);
+            records.add(new BorrowRecord(user, item, item.getMaterialType().createFineStrategy(),
+                    LocalDate.of(2025, 1, 1).plusDays(i % 365)));
+            waitlist.add(new WaitlistEntry(item.getId(), user.getEmail(), LocalDate.of(2025, 6, 1)));
+        }
+
+        Gson reflective = FileUtils.reflectiveGson();
+        System.out.printf("Domain adapters, %,d entities per type, best of %d rounds%n", count, ROUNDS);
+        System.out.printf("%-14s %-11s %12s %12s %10s %10s%n",
+                "type", "mode", "write B/ent", "read B/ent", "write ms", "read ms");
+        compare("items", items, FileUtils.listTypeOf(LibraryItem.class), reflective);
+        compare("users", users, FileUtils.listTypeOf(User.class), reflective);
+        compare("borrowRecords", records, FileUtils.listTypeOf(BorrowRecord.class), reflective);
+        compare("waitlist", waitlist, FileUtils.listTypeOf(WaitlistEntry.class), reflective);
+    }
+
+    private static void compare(String name, List<?> values, Type listType, Gson reflective) {
+        String expected = reflective.toJson(values, listType);
+        if (!expected.equals(FileUtils.toCompactJson(values))) {
+            throw new AssertionError(name + ": streaming and reflective JSON differ");
+        }
+        run(name, "reflective", values,
+                v -> reflective.toJson(v, listType),
+                json -> reflective.fromJson(json, listType));
+        run(name, "streaming", values,
+                FileUtils::toCompactJson,
+                json -> FileUtils.fromJson(json, listType));
+    }
+
+    private static void run(String name, String mode, List<?> values,
+                            Function<List<?>, String> write, Function<String, List<?>> read) {
+        long writeBytes = Long.MAX_VALUE, readBytes = Long.MAX_VALUE;
+        long writeNanos = Long.MAX_VALUE, readNanos = Long.MAX_VALUE;
+
+        for (int i = 0; i < ROUNDS + 2; i++) { // first two rounds warm up
+            long a0 = allocatedBytes(), t0 = System.nanoTime();
+            String json = write.apply(values);
+            long a1 = allocatedBytes(), t1 = System.nanoTime();
+            List<?> back = read.apply(json);
+            long a2 = allocatedBytes(), t2 = System.nanoTime();
+
+            if (back.size() != values.size()) throw new AssertionError("round trip lost entities");
+            if (i < 2) continue;
+            writeBytes = Math.min(writeBytes, a1 - a0);
+            readBytes = Math.min(readBytes, a2 - a1);
+            writeNanos = Math.min(writeNanos, t1 - t0);
+            readNanos = Math.min(readNanos, t2 - t1);
+        }
+
+        int n = values.size();
+        System.out.printf("%-14s %-11s %12d %12d %10.1f %10.1f%n", name, mode,
+                writeBytes / n, readBytes / n, writeNanos / 1e6, readNanos / 1e6);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+}
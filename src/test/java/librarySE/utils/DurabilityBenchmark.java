@@ -0,0 +1,81 @@
+package librarySE.utils;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the latency of {@link FileUtils#writeJson(Path, Object, Durability)}
+ * for each {@link Durability} mode.
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually on the disk
+ * the data directory lives on:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.utils.DurabilityBenchmark [items] [writes] [dir]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class DurabilityBenchmark {
+
+    private DurabilityBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000;
+        int writes = (args.length > 1) ? Integer.parseInt(args[1]) : 200;
+        Path dir = (args.length > 2) ? Files.createDirectories(Path.of(args[2]))
+                                     : Files.createTempDirectory("durability_bench");
+        List<LibraryItem> catalog = catalog(count);
+
+        System.out.printf("%,d items per file, %d writes per mode, in %s%n", count, writes, dir);
+        System.out.printf("%-9s %10s %10s %10s %10s %12s%n",
+                "mode", "mean ms", "p50 ms", "p99 ms", "max ms", "writes/s");
+
+        for (Durability mode : Durability.values()) {
+            Path file = dir.resolve("bench_" + mode.name().toLowerCase() + ".json");
+            for (int i = 0; i < 20; i++) FileUtils.writeJson(file, catalog, mode); // warm up
+
+            long[] nanos = new long[writes];
+            long start = System.nanoTime();
+            for (int i = 0; i < writes; i++) {
+                long t0 = System.nanoTime();
+                FileUtils.writeJson(file, catalog, mode);
+                nanos[i] = System.nanoTime() - t0;
+            }
+            long total = System.nanoTime() - start;
+
+            Arrays.sort(nanos);
+            System.out.printf("%-9s %10.3f %10.3f %10.3f %10.3f %12.0f%n", mode,
+                    total / 1e6 / writes,
+                    nanos[writes / 2] / 1e6,
+                    nanos[Math.min(writes - 1, (int) Math.ceil(writes * 0.99) - 1)] / 1e6,
+                    nanos[writes - 1] / 1e6,
+                    writes / (total / 1e9));
+        }
+        FileUtils.syncPendingWrites();
+    }
+
+    private static List<LibraryItem> catalog(int count) {
+        List<LibraryItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(5 + i % 50);
+            items.add(switch (i % 3) {
+                case 0 -> new Book("ISBN-" + i, "Book " + i, "Author " + i % 500, price);
+                case 1 -> new CD("Album " + i, "Artist " + i % 300, price);
+                default -> new Journal("Journal " + i, "Editor " + i % 200, "Issue " + i % 12, price);
+            });
+        }
+        return items;
+    }
+}
@@ -0,0 +1,62 @@
+package librarySE.utils;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockStatic;
+
+class DurabilityTest {
+
+    @Test
+    void parse_isCaseInsensitiveAndDefaultsToSync() {
+        assertEquals(Durability.INTERVAL, Durability.parse(" interval "));
+        assertEquals(Durability.BUFFERED, Durability.parse("BUFFERED"));
+        assertEquals(Durability.SYNC, Durability.parse("sometimes"));
+        assertEquals(Durability.SYNC, Durability.parse(null));
+    }
+
+    @Test
+    void forFile_usesRepositorySpecificKeyThenGlobalKey() {
+        try (MockedStatic<Config> config = mockStatic(Config.class)) {
+            config.when(() -> Config.get(eq("persistence.durability"), anyString())).thenReturn("BUFFERED");
+            config.when(() -> Config.get(eq("persistence.durability.items"), anyString())).thenReturn("interval");
+            config.when(() -> Config.get(eq("persistence.durability.users"), anyString()))
+                    .thenAnswer(inv -> inv.getArgument(1));
+
+            assertEquals(Durability.INTERVAL, Durability.forFile(Paths.get("library_data", "items.json")));
+            assertEquals(Durability.BUFFERED, Durability.forFile(Paths.get("library_data", "users.json")));
+        }
+    }
+
+    @Test
+    void intervalSyncer_forcesDirtyFiles() throws IOException {
+        Path file = Files.createTempFile("durability_test", ".json");
+        IntervalSyncer syncer = new IntervalSyncer(60_000);
+
+        syncer.markDirty(file);
+        syncer.markDirty(file);
+        assertEquals(1, syncer.pending());
+
+        syncer.sync();
+        assertEquals(0, syncer.pending());
+    }
+
+    @Test
+    void intervalSyncer_ignoresFilesDeletedMeanwhile() throws IOException {
+        Path file = Files.createTempFile("durability_test", ".json");
+        IntervalSyncer syncer = new IntervalSyncer(60_000);
+        syncer.markDirty(file);
+        Files.delete(file);
+
+        assertDoesNotThrow(syncer::sync);
+        assertEquals(0, syncer.pending());
+    }
+}
@@ -7,10 +7,15 @@ import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonWriter;
+import librarySE.backup.Snapshot;
 import librarySE.core.Book;
 import librarySE.core.CD;
 import librarySE.core.Journal;
 import librarySE.core.LibraryItem;
+import librarySE.core.WaitlistEntry;
+import librarySE.managers.BorrowRecord;
+import librarySE.managers.Role;
+import librarySE.managers.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.MockedStatic;
@@ -18,17 +23,24 @@ import org.mockito.MockedStatic;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -39,6 +51,10 @@ class FileUtilsTest {
     private Path tempDir;
     private Path jsonFile;
 
+    static class Tagged {
+        String type = "mine";
+    }
+
     static class DateHolder {
         LocalDate date;
         LocalDateTime dateTime;
@@ -61,41 +77,33 @@ class FileUtilsTest {
     }
 
     @Test
-    void writeJson_createsBackupWhenFileAlreadyExists() throws Exception {
+    void writeJson_backsUpEachWrittenVersion() throws Exception {
         Path file = FileUtils.dataFile("test_backup_file.json");
 
         FileUtils.writeJson(file, List.of("old"));
-        assertTrue(Files.exists(file));
-
+        FileUtils.backups().awaitIdle(5000);
         FileUtils.writeJson(file, List.of("new"));
-        Path backupDir = FileUtils.dataFile("backups");
+        assertTrue(FileUtils.backups().awaitIdle(5000));
 
-        long count = Files.list(backupDir)
-                .filter(p -> p.getFileName().toString().startsWith("test_backup_file_backup"))
-                .count();
+        List<Snapshot> snapshots = FileUtils.backups().store().list("test_backup_file.json");
+        assertTrue(snapshots.size() >= 2);
 
-        assertTrue(count >= 1);
+        Path restored = tempDir.resolve("restored.json");
+        FileUtils.backups().store().restore(snapshots.get(snapshots.size() - 2), restored);
+        assertTrue(Files.readString(restored).contains("old"));
     }
 
     @Test
-    void writeJson_createsBackupWithCleanBackupDirectory() throws Exception {
+    void writeJson_unchangedContentIsNotBackedUpAgain() throws Exception {
         Path file = FileUtils.dataFile("test_backup.json");
-        Path backupDir = FileUtils.dataFile("backups");
-
-        if (Files.exists(backupDir)) {
-            Files.list(backupDir).forEach(p -> {
-                try { Files.deleteIfExists(p); } catch (Exception ignored) {}
-            });
-        }
-
-        FileUtils.writeJson(file, List.of("old"));
-        FileUtils.writeJson(file, List.of("new"));
+        FileUtils.writeJson(file, List.of("same"));
+        FileUtils.backups().awaitIdle(5000);
+        int before = FileUtils.backups().store().list("test_backup.json").size();
 
-        long count = Files.list(backupDir)
-                .filter(p -> p.getFileName().toString().startsWith("test_backup_backup_"))
-                .count();
+        FileUtils.writeJson(file, List.of("same"));
+        assertTrue(FileUtils.backups().awaitIdle(5000));
 
-        assertTrue(count >= 1);
+        assertEquals(before, FileUtils.backups().store().list("test_backup.json").size());
     }
 
     @Test
@@ -110,17 +118,70 @@ class FileUtilsTest {
         assertThrows(RuntimeException.class, () -> FileUtils.writeJson(impossible, List.of("x")));
     }
 
+    @Test
+    void writeJson_replacesFileAtomicallyWithoutLeavingTempFile() throws Exception {
+        for (Durability mode : Durability.values()) {
+            FileUtils.writeJson(jsonFile, List.of(mode.name()), mode);
+
+            assertTrue(Files.readString(jsonFile).contains(mode.name()));
+            assertFalse(Files.exists(tempDir.resolve("test.json.tmp")));
+        }
+    }
+
+    @Test
+    void writeJson_failedSerializationKeepsPreviousFile() throws Exception {
+        FileUtils.writeJson(jsonFile, List.of("old"));
+
+        // Gson cannot reflect into java.util.Optional, so serialization fails midway.
+        assertThrows(RuntimeException.class,
+                () -> FileUtils.writeJson(jsonFile, List.of("new", Optional.of("x"))));
+
+        assertTrue(Files.readString(jsonFile).contains("old"));
+        assertFalse(Files.exists(tempDir.resolve("test.json.tmp")));
+    }
+
+    @Test
+    void writeJson_intervalModeIsForcedBySyncPendingWrites() throws Exception {
+        FileUtils.writeJson(jsonFile, List.of("x"), Durability.INTERVAL);
+
+        assertDoesNotThrow(FileUtils::syncPendingWrites);
+        assertTrue(Files.readString(jsonFile).contains("x"));
+    }
+
+    @Test
+    void writeJson_compactGzipRoundTripsAndIsDetectedOnRead() throws Exception {
+        List<String> data = List.of("alpha", "beta", "alpha", "beta");
+        FileUtils.writeJson(jsonFile, data, Durability.BUFFERED, StorageFormat.COMPACT_GZIP);
+
+        byte[] raw = Files.readAllBytes(jsonFile);
+        assertEquals((byte) 0x1f, raw[0]);
+        assertEquals((byte) 0x8b, raw[1]);
+
+        List<String> read = FileUtils.readJson(jsonFile, new TypeToken<List<String>>() {}.getType(), List.of());
+        assertEquals(data, read);
+    }
+
+    @Test
+    void readJson_stillReadsPrettyFilesWrittenBeforeCompression() throws Exception {
+        FileUtils.writeJson(jsonFile, List.of("x"), Durability.BUFFERED, StorageFormat.PRETTY);
+        assertTrue(Files.readString(jsonFile).contains("\n"));
+
+        List<String> read = FileUtils.readJson(jsonFile, new TypeToken<List<String>>() {}.getType(), List.of());
+        assertEquals(List.of("x"), read);
+    }
+
     @Test
     void ensureBackupDirExists_createsDirectoryIfMissing() throws Exception {
         Path backupDir = FileUtils.dataFile("backups");
 
         if (Files.exists(backupDir)) {
-            Files.list(backupDir)
-                    .sorted(Comparator.reverseOrder())
-                    .forEach(p -> {
-                        try { Files.deleteIfExists(p); } catch (Exception ignored) {}
-                    });
-            Files.deleteIfExists(backupDir);
+            FileUtils.backups().awaitIdle(5000);
+            try (var paths = Files.walk(backupDir)) {
+                paths.sorted(Comparator.reverseOrder())
+                        .forEach(p -> {
+                            try { Files.deleteIfExists(p); } catch (Exception ignored) {}
+                        });
+            }
         }
 
         Method m = FileUtils.class.getDeclaredMethod("ensureBackupDirExists");
@@ -393,6 +454,428 @@ class FileUtilsTest {
         assertThrows(IllegalStateException.class, () -> a2.toJson("hello"));
     }
 
+    // -----------------------------------------------------------------
+    // Streaming polymorphic adapter
+    // -----------------------------------------------------------------
+
+    private static Gson polymorphicGson(boolean streaming) {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(
+                        FileUtils.RuntimeTypeAdapterFactory.of(LibraryItem.class, "type")
+                                .registerSubtype(Book.class, "BOOK")
+                                .registerSubtype(CD.class, "CD")
+                                .registerSubtype(Journal.class, "JOURNAL")
+                                .streaming(streaming))
+                .create();
+    }
+
+    @Test
+    void runtimeTypeAdapter_streamingWritesSameJsonAsTreeMode() {
+        List<LibraryItem> items = List.of(
+                new Book("ISBN1", "T1", "A1", BigDecimal.ONE),
+                new CD("CD Title", "Artist", BigDecimal.TEN),
+                new Journal("Journal Title", "Editor Name", "Issue 1", BigDecimal.ONE)
+        );
+        var listType = FileUtils.listTypeOf(LibraryItem.class);
+
+        String streamed = polymorphicGson(true).toJson(items, listType);
+        String buffered = polymorphicGson(false).toJson(items, listType);
+
+        assertEquals(buffered, streamed);
+        assertTrue(streamed.startsWith("[{\"type\":\"BOOK\""));
+    }
+
+    @Test
+    void runtimeTypeAdapter_streamingReadsTypeFirstObjects() {
+        Book book = new Book("ISBN1", "T1", "A1", BigDecimal.ONE);
+        Gson gson = polymorphicGson(true);
+
+        LibraryItem read = gson.fromJson(gson.toJson(book, LibraryItem.class), LibraryItem.class);
+
+        Book result = assertInstanceOf(Book.class, read);
+        assertEquals(book.getId(), result.getId());
+        assertEquals("T1", result.getTitle());
+        assertEquals(0, BigDecimal.ONE.compareTo(result.getPrice()));
+    }
+
+    @Test
+    void runtimeTypeAdapter_streamingFallsBackWhenTypeIsNotFirst() {
+        Gson gson = polymorphicGson(true);
+        com.google.gson.JsonObject obj =
+                polymorphicGson(false).toJsonTree(new CD("Late", "Artist", BigDecimal.TEN), LibraryItem.class)
+                        .getAsJsonObject();
+        String label = obj.remove("type").getAsString();
+        obj.addProperty("type", label); // discriminator now last
+
+        LibraryItem read = gson.fromJson(obj.toString(), LibraryItem.class);
+
+        assertInstanceOf(CD.class, read);
+        assertEquals("Late", read.getTitle());
+    }
+
+    @Test
+    void runtimeTypeAdapter_streamingKeepsErrorSemantics() {
+        Gson gson = polymorphicGson(true);
+
+        assertNull(gson.fromJson("null", LibraryItem.class));
+        assertThrows(JsonParseException.class,
+                () -> gson.fromJson("{\"title\":\"T\"}", LibraryItem.class));
+        assertThrows(JsonParseException.class,
+                () -> gson.fromJson("{\"type\":\"DVD\",\"title\":\"T\"}", LibraryItem.class));
+        TypeAdapter<LibraryItem> adapter = gson.getAdapter(LibraryItem.class);
+        assertThrows(IllegalStateException.class, () -> adapter.fromJson("\"BOOK\""));
+    }
+
+    @Test
+    void runtimeTypeAdapter_streamingRejectsSubtypeWithOwnTypeField() {
+        Gson gson = new GsonBuilder()
+                .registerTypeAdapterFactory(
+                        FileUtils.RuntimeTypeAdapterFactory.of(Object.class, "type")
+                                .registerSubtype(Tagged.class, "TAGGED"))
+                .create();
+
+        assertThrows(JsonParseException.class, () -> gson.toJson(new Tagged(), Object.class));
+    }
+
+    // -----------------------------------------------------------------
+    // Binary snapshots
+    // -----------------------------------------------------------------
+
+    private static final SnapshotOutput.ValueWriter<List<String>> STRINGS_OUT =
+            (out, list) -> out.writeList(list, SnapshotOutput::writeString);
+
+    @Test
+    void snapshot_readReturnsDataWhileJsonUnchanged() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        FileUtils.writeJson(jsonFile, List.of("a", "b"));
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a", "b"), STRINGS_OUT);
+
+        List<String> read = FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString));
+
+        assertEquals(List.of("a", "b"), read);
+        assertFalse(Files.exists(tempDir.resolve("test.bin.tmp")));
+    }
+
+    @Test
+    void snapshot_ignoredWhenJsonChangedAfterwards() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        FileUtils.writeJson(jsonFile, List.of("a"));
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a"), STRINGS_OUT);
+
+        Files.writeString(jsonFile, "[\"a\", \"edited\"]");
+
+        assertNull(FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString)));
+    }
+
+    @Test
+    void snapshot_ignoredWhenJsonEditedKeepingItsSizeAndTime() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        FileUtils.writeJson(jsonFile, List.of("a"));
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a"), STRINGS_OUT);
+        FileTime written = Files.getLastModifiedTime(jsonFile);
+
+        Files.writeString(jsonFile, Files.readString(jsonFile).replace("\"a\"", "\"b\""));
+        Files.setLastModifiedTime(jsonFile, written);
+
+        assertFalse(FileUtils.isSnapshotCurrent(bin, jsonFile));
+        assertNull(FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString)));
+    }
+
+    @Test
+    void refreshSnapshot_readsTheJsonBackOnlyWhenTheSnapshotIsOutdated() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        SnapshotInput.ValueReader<List<String>> reader = in -> in.readList(SnapshotInput::readString);
+        FileUtils.writeJson(jsonFile, List.of("a", "b"));
+        int[] reads = {0};
+        Supplier<List<String>> json = () -> {
+            reads[0]++;
+            return List.of("a", "b");
+        };
+
+        FileUtils.refreshSnapshot(bin, jsonFile, json, STRINGS_OUT);
+        FileUtils.refreshSnapshot(bin, jsonFile, json, STRINGS_OUT);
+
+        assertEquals(1, reads[0]);
+        assertEquals(List.of("a", "b"), FileUtils.readSnapshot(bin, jsonFile, reader));
+    }
+
+    @Test
+    void snapshot_ignoredWhenMissingCorruptOrJsonMissing() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        SnapshotInput.ValueReader<List<String>> reader = in -> in.readList(SnapshotInput::readString);
+
+        assertNull(FileUtils.readSnapshot(bin, jsonFile, reader));
+
+        FileUtils.writeJson(jsonFile, List.of("a"));
+        Files.write(bin, new byte[]{1, 2, 3, 4, 5});
+        assertNull(FileUtils.readSnapshot(bin, jsonFile, reader));
+
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a"), STRINGS_OUT);
+        Files.delete(jsonFile);
+        assertNull(FileUtils.readSnapshot(bin, jsonFile, reader));
+    }
+
+    @Test
+    void snapshot_ignoredAfterAMigrationIsRegistered() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        FileUtils.writeJson(jsonFile, List.of("a"));
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a"), STRINGS_OUT);
+
+        DataSchema.register(Migration.renameField(DataSchema.Kind.USER, 1, "mail", "email"));
+        try {
+            assertNull(FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString)),
+                    "Written with the old fields, so the migrated JSON must be read instead.");
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.USER);
+        }
+        assertEquals(List.of("a"), FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString)));
+    }
+
+    @Test
+    void snapshot_writeFailureRemovesSnapshot() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        FileUtils.writeJson(jsonFile, List.of("a"));
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a"), STRINGS_OUT);
+
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a"), (out, list) -> {
+            throw new IllegalArgumentException("boom");
+        });
+
+        assertFalse(Files.exists(bin));
+        assertFalse(Files.exists(tempDir.resolve("test.bin.tmp")));
+    }
+
+    // -----------------------------------------------------------------
+    // Domain streaming adapters
+    // -----------------------------------------------------------------
+
+    @Test
+    void domainAdapters_writeSameJsonAsReflectivePath() {
+        Gson reflective = FileUtils.reflectiveGson();
+        User user = new User("reader", Role.USER, "secret123", "reader@example.com");
+        Book book = new Book("ISBN-1", "Clean Code", "Martin", new BigDecimal("42.50"), 3);
+        book.borrow();
+        List<LibraryItem> items = List.of(book,
+                new CD("Kind of Blue", "Miles Davis", new BigDecimal("9.99")),
+                new Journal("Nature", "Skipper", "Vol. 7", new BigDecimal("15"), 2));
+        BorrowRecord record = new BorrowRecord(user, book,
+                book.getMaterialType().createFineStrategy(), LocalDate.of(2025, 1, 31));
+        WaitlistEntry entry = new WaitlistEntry(book.getId(), "reader@example.com", LocalDate.of(2025, 2, 1));
+
+        Type itemList = FileUtils.listTypeOf(LibraryItem.class);
+        assertEquals(reflective.toJson(items, itemList), FileUtils.toCompactJson(items));
+        assertEquals(reflective.toJson(user), FileUtils.toCompactJson(user));
+        assertEquals(reflective.toJson(record), FileUtils.toCompactJson(record));
+        assertEquals(reflective.toJson(entry), FileUtils.toCompactJson(entry));
+    }
+
+    @Test
+    void domainAdapters_roundTripAllFields() {
+        User user = new User("reader", Role.USER, "secret123", "reader@example.com");
+        user.addFine(new BigDecimal("3.25"));
+        Journal journal = new Journal("Nature", "Skipper", "Vol. 7", new BigDecimal("15"), 2);
+        journal.borrow();
+        BorrowRecord record = new BorrowRecord(user, journal,
+                journal.getMaterialType().createFineStrategy(), LocalDate.of(2025, 1, 31));
+
+        User u = FileUtils.fromJson(FileUtils.toCompactJson(user), User.class);
+        assertEquals(user.getId(), u.getId());
+        assertEquals("reader", u.getUsername());
+        assertEquals(new BigDecimal("3.25"), u.getFineBalance());
+        assertEquals("reader@example.com", u.getEmail());
+
+        LibraryItem i = FileUtils.fromJson(FileUtils.toCompactJson(journal), LibraryItem.class);
+        Journal j = assertInstanceOf(Journal.class, i);
+        assertEquals(journal.getId(), j.getId());
+        assertEquals("Vol. 7", j.getIssueNumber());
+        assertEquals(2, j.getTotalCopies());
+        assertEquals(1, j.getAvailableCopies());
+
+        BorrowRecord r = FileUtils.fromJson(FileUtils.toCompactJson(record), BorrowRecord.class);
+        assertEquals(record.getId(), r.getId());
+        assertEquals(user.getId(), r.getUserId());
+        assertEquals(journal.getId(), r.getItemId());
+        assertEquals(record.getDueDate(), r.getDueDate());
+        assertEquals(BorrowRecord.Status.BORROWED, r.getStatus());
+        assertNull(r.getUser());
+    }
+
+    @Test
+    void domainAdapters_readLegacyRecordWithEmbeddedEntities() {
+        UUID userId = UUID.randomUUID();
+        UUID itemId = UUID.randomUUID();
+        String json = """
+                {"user":{"id":"%s","username":"old","role":"USER","passwordHash":"h","fineBalance":0,"email":"o@x.com"},
+                 "item":{"type":"CD","title":"x","artist":"y","id":"%s","price":39.99,"totalCopies":1,"availableCopies":0},
+                 "borrowPeriodDays":7,"borrowDateTime":"2025-12-11T00:00:00","dueDateTime":"2025-12-18T00:00:00",
+                 "fine":0,"fineApplied":false,"finePaid":0,"status":"BORROWED","unknown":[1,2]}
+                """.formatted(userId, itemId);
+
+        BorrowRecord r = FileUtils.fromJson(json, BorrowRecord.class);
+
+        assertEquals(userId, r.getUserId());
+        assertEquals(itemId, r.getItemId());
+        assertInstanceOf(CD.class, r.getItem());
+        assertEquals(LocalDate.of(2025, 12, 18), r.getDueDate());
+        assertTrue(r.ensureId(), "legacy records without id get one assigned later");
+        assertFalse(FileUtils.toCompactJson(r).contains("\"user\""));
+    }
+
+    @Test
+    void domainAdapters_rejectMissingTypeAndInvalidValues() {
+        assertThrows(JsonParseException.class,
+                () -> FileUtils.fromJson("{\"title\":\"x\"}", LibraryItem.class));
+        assertThrows(JsonParseException.class,
+                () -> FileUtils.fromJson("{\"itemId\":\"not-a-uuid\"}", WaitlistEntry.class));
+        assertThrows(JsonParseException.class,
+                () -> FileUtils.fromJson("{\"userEmail\":\"a@b.c\"}", WaitlistEntry.class));
+        assertNull(FileUtils.fromJson("null", User.class));
+    }
+
+    // -----------------------------------------------------------------
+    // Record checksums & recovery
+    // -----------------------------------------------------------------
+
+    /** Overwrites bytes in place and keeps the modification time, like bit rot would. */
+    private static void corrupt(Path file, String from, String to) throws IOException {
+        var mtime = Files.getLastModifiedTime(file);
+        String text = Files.readString(file);
+        assertTrue(text.contains(from));
+        assertEquals(from.length(), to.length());
+        Files.writeString(file, text.replace(from, to));
+        Files.setLastModifiedTime(file, mtime);
+    }
+
+    @Test
+    void readJson_listWithSidecarReadsNormally() {
+        FileUtils.writeJson(jsonFile, List.of("alpha", "bravo"));
+
+        assertTrue(Files.exists(RecordChecksums.sidecarOf(jsonFile)));
+        assertEquals(List.of("alpha", "bravo"),
+                FileUtils.readJson(jsonFile, FileUtils.listTypeOf(String.class), List.of()));
+        assertTrue(Files.exists(jsonFile));
+    }
+
+    @Test
+    void recordChecksums_ignoreFormattingAndDetectChangedRecords() throws IOException {
+        RecordChecksums pretty = new RecordChecksums();
+        RecordChecksums compact = new RecordChecksums();
+        RecordChecksums changed = new RecordChecksums();
+        try (Writer a = pretty.tee(new StringWriter());
+             Writer b = compact.tee(new StringWriter());
+             Writer c = changed.tee(new StringWriter())) {
+            a.write("[\n  {\"a\": \"x y\", \"b\": [1, 2]},\n  \"s]\\\"\"\n]");
+            b.write("[{\"a\":\"x y\",\"b\":[1,2]},\"s]\\\"\"]");
+            c.write("[{\"a\":\"x z\",\"b\":[1,2]},\"s]\\\"\"]");
+        }
+
+        assertEquals(2, pretty.checksums().length);
+        assertArrayEquals(pretty.checksums(), compact.checksums());
+        assertNotEquals(compact.checksums()[0], changed.checksums()[0]);
+        assertEquals(compact.checksums()[1], changed.checksums()[1]);
+    }
+
+    @Test
+    void readJson_dropsRecordWithChecksumMismatchAndQuarantinesFile() throws Exception {
+        RecoveryReport.drain();
+        FileUtils.writeJson(jsonFile, List.of("alpha", "bravo", "charlie"));
+        corrupt(jsonFile, "bravo", "brave");
+
+        List<String> result = FileUtils.readJson(jsonFile, FileUtils.listTypeOf(String.class), List.of());
+
+        assertEquals(List.of("alpha", "charlie"), result);
+        assertEquals(List.of("alpha", "charlie"),
+                FileUtils.readJson(jsonFile, FileUtils.listTypeOf(String.class), List.of()));
+        RecoveryReport report = RecoveryReport.drain().stream()
+                .filter(r -> r.file().equals(jsonFile)).findFirst().orElseThrow();
+        assertEquals(2, report.kept());
+        assertTrue(report.problem().contains("checksum mismatch in 1 records"));
+        assertTrue(Files.readString(report.quarantined()).contains("brave"));
+    }
+
+    @Test
+    void readJson_keepsRecordsBeforeTruncatedTail() throws Exception {
+        FileUtils.writeJson(jsonFile, List.of("alpha", "bravo", "charlie"), Durability.BUFFERED,
+                StorageFormat.PRETTY);
+        String text = Files.readString(jsonFile);
+        Files.writeString(jsonFile, text.substring(0, text.indexOf("charlie") + 3));
+
+        List<String> result = FileUtils.readJson(jsonFile, FileUtils.listTypeOf(String.class), List.of());
+
+        assertEquals(List.of("alpha", "bravo"), result);
+    }
+
+    @Test
+    void readJson_restoresLostRecordsFromLatestBackup() throws Exception {
+        Path file = FileUtils.dataFile("recovery_test_" + System.nanoTime() + ".json");
+        try {
+            FileUtils.writeJson(file, List.of("alpha", "bravo", "charlie", "delta"));
+            assertTrue(FileUtils.backups().awaitIdle(5000));
+            corrupt(file, "bravo\",", "bravo\"!");
+
+            List<String> result = FileUtils.readJson(file, FileUtils.listTypeOf(String.class), List.of());
+
+            assertEquals(List.of("alpha", "bravo", "charlie", "delta"), result);
+            RecoveryReport report = RecoveryReport.drain().stream()
+                    .filter(r -> r.file().equals(file)).findFirst().orElseThrow();
+            assertEquals(1, report.kept(), "the record running into the damage fails its checksum");
+            assertEquals(3, report.restored());
+            assertTrue(report.source().startsWith("backup of "));
+        } finally {
+            FileUtils.backups().awaitIdle(5000);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(RecordChecksums.sidecarOf(file));
+        }
+    }
+
+    @Test
+    void readJson_doesNotRestoreRecordDeletedSinceTheBackup() throws Exception {
+        Path file = FileUtils.dataFile("recovery_test_" + System.nanoTime() + ".json");
+        Path staging = tempDir.resolve("staging.json");
+        User a = new User("anna", Role.USER, "pass123", "anna@ps.com");
+        User deleted = new User("xena", Role.USER, "pass123", "xena@ps.com");
+        User added = new User("yara", Role.USER, "pass123", "yara@ps.com");
+        User b = new User("bill", Role.USER, "pass123", "bill@ps.com");
+        try {
+            FileUtils.writeJson(file, List.of(a, deleted, b));
+            assertTrue(FileUtils.backups().awaitIdle(5000));
+            // Replace the file without backing up the new version, so the backup still holds "xena".
+            FileUtils.writeJson(staging, List.of(a, added, b));
+            Files.copy(staging, file, java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                    java.nio.file.StandardCopyOption.COPY_ATTRIBUTES);
+            Files.copy(RecordChecksums.sidecarOf(staging), RecordChecksums.sidecarOf(file),
+                    java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            corrupt(file, "yara@ps.com", "yarb@ps.com");
+
+            List<User> result = FileUtils.readJson(file, FileUtils.listTypeOf(User.class), List.of());
+
+            assertEquals(List.of("anna", "bill"), result.stream().map(User::getUsername).toList());
+            RecoveryReport report = RecoveryReport.drain().stream()
+                    .filter(r -> r.file().equals(file)).findFirst().orElseThrow();
+            assertEquals(2, report.kept());
+            assertEquals(0, report.restored());
+            assertEquals(1, report.dropped());
+        } finally {
+            FileUtils.backups().awaitIdle(5000);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(RecordChecksums.sidecarOf(file));
+        }
+    }
+
+    @Test
+    void readSnapshot_rejectsSnapshotWithDamagedBody() throws Exception {
+        Path bin = tempDir.resolve("test.bin");
+        FileUtils.writeJson(jsonFile, List.of("a", "b"));
+        FileUtils.writeSnapshot(bin, jsonFile, List.of("a", "b"), STRINGS_OUT);
+        assertEquals(List.of("a", "b"), FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString)));
+
+        byte[] bytes = Files.readAllBytes(bin);
+        bytes[bytes.length - 6] ^= 0x01;
+        Files.write(bin, bytes);
+
+        assertNull(FileUtils.readSnapshot(bin, jsonFile, in -> in.readList(SnapshotInput::readString)));
+    }
+
     // -----------------------------------------------------------------
     // Static block sanity
     // -----------------------------------------------------------------
@@ -407,4 +890,93 @@ class FileUtilsTest {
     void staticBlock_normalUseDoesNotThrow() {
         assertDoesNotThrow(() -> FileUtils.dataFile("dummy2.json"));
     }
+
+    // -----------------------------------------------------------------
+    // Format versions
+    // -----------------------------------------------------------------
+
+    @Test
+    void writeJson_domainListStartsWithSchemaHeaderAndReadsBack() throws IOException {
+        WaitlistEntry entry = new WaitlistEntry(UUID.randomUUID(), "a@b.c", LocalDate.of(2025, 1, 1));
+        FileUtils.writeJson(jsonFile, List.of(entry));
+
+        assertTrue(Files.readString(jsonFile).contains("\"$schema:waitlist_entry/1\""));
+        List<WaitlistEntry> read = FileUtils.readJson(jsonFile, FileUtils.listTypeOf(WaitlistEntry.class), List.of());
+        assertEquals(List.of("a@b.c"), read.stream().map(WaitlistEntry::getUserEmail).toList());
+    }
+
+    @Test
+    void readJson_upgradesOlderFormatBeforeReading() throws IOException {
+        Files.writeString(jsonFile, "[{\"itemId\":\"" + UUID.randomUUID()
+                + "\",\"mail\":\"old@b.c\",\"requestDate\":\"2025-01-01\"}]");
+        DataSchema.register(Migration.renameField(DataSchema.Kind.WAITLIST_ENTRY, 1, "mail", "userEmail"));
+        try {
+            List<WaitlistEntry> read = FileUtils.readJson(jsonFile,
+                    FileUtils.listTypeOf(WaitlistEntry.class), List.of());
+
+            assertEquals("old@b.c", read.get(0).getUserEmail());
+            assertTrue(Files.readString(jsonFile).contains("\"$schema:waitlist_entry/2\""));
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.WAITLIST_ENTRY);
+        }
+    }
+
+    @Test
+    void readJson_newerFormatIsRefusedNotReadAsEmpty() throws IOException {
+        Files.writeString(jsonFile, "[\"$schema:user/7\",{\"username\":\"x\"}]");
+
+        assertThrows(SchemaVersionException.class,
+                () -> FileUtils.readJson(jsonFile, FileUtils.listTypeOf(User.class), List.of()));
+        assertTrue(Files.exists(jsonFile), "The file is not quarantined.");
+    }
+
+    // -----------------------------------------------------------------
+    // Streaming
+    // -----------------------------------------------------------------
+
+    @Test
+    void streamJson_readsRecordsOneAtATime() throws IOException {
+        List<WaitlistEntry> entries = List.of(
+                new WaitlistEntry(UUID.randomUUID(), "a@b.c", LocalDate.of(2025, 1, 1)),
+                new WaitlistEntry(UUID.randomUUID(), "d@e.f", LocalDate.of(2025, 1, 2)));
+        FileUtils.writeJson(jsonFile, entries);
+
+        try (Stream<WaitlistEntry> read = FileUtils.streamJson(jsonFile, WaitlistEntry.class)) {
+            assertEquals(List.of("a@b.c", "d@e.f"), read.map(WaitlistEntry::getUserEmail).toList());
+        }
+
+        String text = Files.readString(jsonFile);
+        Files.writeString(jsonFile, text.substring(0, text.indexOf("d@e.f")));
+        try (Stream<WaitlistEntry> read = FileUtils.streamJson(jsonFile, WaitlistEntry.class)) {
+            assertEquals("a@b.c", read.findFirst().orElseThrow().getUserEmail(),
+                    "Records before the damage are read without parsing the rest.");
+        }
+        try (Stream<WaitlistEntry> read = FileUtils.streamJson(jsonFile, WaitlistEntry.class)) {
+            assertThrows(java.io.UncheckedIOException.class, read::count);
+        }
+    }
+
+    @Test
+    void streamJson_missingOrNullFileIsEmpty() throws IOException {
+        assertEquals(0, FileUtils.streamJson(tempDir.resolve("missing.json"), User.class).count());
+        Files.writeString(jsonFile, "null");
+        try (Stream<User> read = FileUtils.streamJson(jsonFile, User.class)) {
+            assertEquals(0, read.count());
+        }
+    }
+
+    @Test
+    void streamJson_upgradesOlderFormatAndRefusesNewer() throws IOException {
+        Files.writeString(jsonFile, "[{\"itemId\":\"" + UUID.randomUUID()
+                + "\",\"mail\":\"old@b.c\",\"requestDate\":\"2025-01-01\"}]");
+        DataSchema.register(Migration.renameField(DataSchema.Kind.WAITLIST_ENTRY, 1, "mail", "userEmail"));
+        try (Stream<WaitlistEntry> read = FileUtils.streamJson(jsonFile, WaitlistEntry.class)) {
+            assertEquals("old@b.c", read.findFirst().orElseThrow().getUserEmail());
+        } finally {
+            DataSchema.clearMigrations(DataSchema.Kind.WAITLIST_ENTRY);
+        }
+
+        Files.writeString(jsonFile, "[\"$schema:user/7\",{\"username\":\"x\"}]");
+        assertThrows(SchemaVersionException.class, () -> FileUtils.streamJson(jsonFile, User.class));
+    }
 }
@@ -0,0 +1,79 @@
+package librarySE.utils;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import librarySE.managers.Role;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonFieldsTest {
+
+    private static JsonReader reader(String json) throws IOException {
+        JsonReader in = new JsonReader(new StringReader(json));
+        in.beginObject();
+        in.nextName();
+        return in;
+    }
+
+    @Test
+    void write_allTypesAndSkipsNullValues() throws IOException {
+        UUID id = UUID.fromString("d9eccd33-b4e0-476b-80ff-273a8c3933f9");
+        StringWriter text = new StringWriter();
+        JsonWriter out = new JsonWriter(text);
+        out.beginObject();
+        JsonFields.writeUuid(out, "id", id);
+        JsonFields.writeString(out, "name", "x");
+        JsonFields.writeString(out, "missing", null);
+        JsonFields.writeMoney(out, "price", new BigDecimal("39.990"));
+        JsonFields.writeInt(out, "copies", 2);
+        JsonFields.writeBoolean(out, "paid", true);
+        JsonFields.writeEnum(out, "role", Role.ADMIN);
+        JsonFields.writeDate(out, "date", LocalDate.of(2025, 1, 31));
+        JsonFields.writeDateTime(out, "at", LocalDateTime.of(2025, 1, 31, 0, 0));
+        JsonFields.writeDateTime(out, "never", null);
+        out.endObject();
+
+        assertEquals("{\"id\":\"" + id + "\",\"name\":\"x\",\"price\":39.990,\"copies\":2,\"paid\":true,"
+                + "\"role\":\"ADMIN\",\"date\":\"2025-01-31\",\"at\":\"2025-01-31T00:00:00\"}", text.toString());
+    }
+
+    @Test
+    void read_valuesAndNulls() throws IOException {
+        assertEquals(new BigDecimal("39.990"), JsonFields.readMoney(reader("{\"a\":39.990}")));
+        assertEquals(LocalDate.of(2025, 1, 31), JsonFields.readDate(reader("{\"a\":\"2025-01-31\"}")));
+        assertEquals(LocalDateTime.of(2025, 1, 31, 8, 5),
+                JsonFields.readDateTime(reader("{\"a\":\"2025-01-31T08:05:00\"}")));
+        assertEquals(Role.USER, JsonFields.readEnum(reader("{\"a\":\"USER\"}"), Role.class));
+        assertTrue(JsonFields.readBoolean(reader("{\"a\":\"true\"}")));
+        assertEquals("7", JsonFields.readString(reader("{\"a\":7}")));
+
+        assertNull(JsonFields.readUuid(reader("{\"a\":null}")));
+        assertNull(JsonFields.readMoney(reader("{\"a\":null}")));
+        assertEquals(0, JsonFields.readInt(reader("{\"a\":null}")));
+        assertFalse(JsonFields.readBoolean(reader("{\"a\":null}")));
+    }
+
+    @Test
+    void read_unknownEnumIsNull() throws IOException {
+        assertNull(JsonFields.readEnum(reader("{\"a\":\"LIBRARIAN\"}"), Role.class));
+    }
+
+    @Test
+    void read_invalidValuesThrowJsonSyntaxException() {
+        assertThrows(JsonSyntaxException.class, () -> JsonFields.readUuid(reader("{\"a\":\"nope\"}")));
+        assertThrows(JsonSyntaxException.class, () -> JsonFields.readMoney(reader("{\"a\":\"ten\"}")));
+        assertThrows(JsonSyntaxException.class, () -> JsonFields.readDate(reader("{\"a\":\"31/01/2025\"}")));
+        assertThrows(JsonSyntaxException.class, () -> JsonFields.readDateTime(reader("{\"a\":\"2025-01-31\"}")));
+        assertThrows(JsonSyntaxException.class, () -> JsonFields.readInt(reader("{\"a\":1.5}")));
+    }
+}
@@ -0,0 +1,103 @@
+package librarySE.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures heap allocation per item for the polymorphic {@link LibraryItem}
+ * adapter with streaming enabled and disabled.
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.utils.PolymorphicAdapterBenchmark [items]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class PolymorphicAdapterBenchmark {
+
+    private static final Type LIST_TYPE = FileUtils.listTypeOf(LibraryItem.class);
+    private static final int ROUNDS = 5;
+
+    private PolymorphicAdapterBenchmark() {}
+
+    public static void main(String[] args) {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100_000;
+        List<LibraryItem> catalog = catalog(count);
+
+        System.out.printf("Polymorphic adapter, %,d items, best of %d rounds%n", count, ROUNDS);
+        System.out.printf("%-10s %14s %14s %12s %12s%n",
+                "mode", "write B/item", "read B/item", "write ms", "read ms");
+        run("tree", gson(false), catalog);
+        run("streaming", gson(true), catalog);
+    }
+
+    private static void run(String mode, Gson gson, List<LibraryItem> catalog) {
+        String json = gson.toJson(catalog, LIST_TYPE);
+        long writeBytes = Long.MAX_VALUE, readBytes = Long.MAX_VALUE;
+        long writeNanos = Long.MAX_VALUE, readNanos = Long.MAX_VALUE;
+
+        for (int i = 0; i < ROUNDS + 2; i++) { // first two rounds warm up
+            long a0 = allocatedBytes(), t0 = System.nanoTime();
+            gson.toJson(catalog, LIST_TYPE, new StringWriter(json.length()));
+            long a1 = allocatedBytes(), t1 = System.nanoTime();
+            List<LibraryItem> read = gson.fromJson(new StringReader(json), LIST_TYPE);
+            long a2 = allocatedBytes(), t2 = System.nanoTime();
+
+            if (read.size() != catalog.size()) throw new AssertionError("round trip lost items");
+            if (i < 2) continue;
+            writeBytes = Math.min(writeBytes, a1 - a0);
+            readBytes = Math.min(readBytes, a2 - a1);
+            writeNanos = Math.min(writeNanos, t1 - t0);
+            readNanos = Math.min(readNanos, t2 - t1);
+        }
+
+        int n = catalog.size();
+        System.out.printf("%-10s %14d %14d %12.1f %12.1f%n", mode,
+                writeBytes / n, readBytes / n, writeNanos / 1e6, readNanos / 1e6);
+    }
+
+    private static Gson gson(boolean streaming) {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(
+                        FileUtils.RuntimeTypeAdapterFactory.of(LibraryItem.class, "type")
+                                .registerSubtype(Book.class, "BOOK")
+                                .registerSubtype(CD.class, "CD")
+                                .registerSubtype(Journal.class, "JOURNAL")
+                                .streaming(streaming))
+                .create();
+    }
+
+    private static List<LibraryItem> catalog(int count) {
+        List<LibraryItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(5 + i % 50);
+            items.add(switch (i % 3) {
+                case 0 -> new Book("ISBN-" + i, "Book " + i, "Author " + i % 500, price);
+                case 1 -> new CD("Album " + i, "Artist " + i % 300, price);
+                default -> new Journal("Journal " + i, "Editor " + i % 200, "Issue " + i % 12, price);
+            });
+        }
+        return items;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getCurrentThreadAllocatedBytes();
+    }
+}
@@ -0,0 +1,150 @@
+package librarySE.utils;
+
+import com.google.gson.JsonPrimitive;
+import librarySE.core.WaitlistEntry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+
+    private static final DataSchema.Kind KIND = DataSchema.Kind.WAITLIST_ENTRY;
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void clearMigrations() {
+        DataSchema.clearMigrations(KIND);
+    }
+
+    /** Waitlist in the (hypothetical) version 1 layout, which named the e-mail field {@code email}. */
+    private Path legacyWaitlist(int entries) throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < entries; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"itemId\":\"").append(new UUID(0, i))
+                    .append("\",\"email\":\"user").append(i).append("@mail.com\",\"requestDate\":\"2025-01-0")
+                    .append(1 + i % 9).append("\"}");
+        }
+        Path file = dir.resolve("waitlist.json");
+        Files.writeString(file, json.append(']').toString());
+        return file;
+    }
+
+    private static List<WaitlistEntry> read(Path file) {
+        return FileUtils.readJson(file, FileUtils.listTypeOf(WaitlistEntry.class), List.of());
+    }
+
+    @Test
+    void migrate_upgradesEveryRecordAndStampsTheHeader() throws IOException {
+        Path file = legacyWaitlist(5);
+        DataSchema.register(Migration.renameField(KIND, 1, "email", "userEmail"));
+        List<SchemaMigrator.Progress> progress = new ArrayList<>();
+
+        SchemaMigrator.Result result = new SchemaMigrator(2, progress::add).migrate(file, KIND);
+
+        assertTrue(result.upgraded());
+        assertEquals(1, result.fromVersion());
+        assertEquals(2, result.toVersion());
+        assertEquals(5, result.records());
+        assertTrue(Files.readString(file).contains("\"$schema:waitlist_entry/2\""));
+        assertEquals(List.of(2L, 4L, 5L), progress.stream().map(SchemaMigrator.Progress::records).toList());
+        assertEquals(1.0, progress.get(progress.size() - 1).fraction());
+        assertEquals("user3@mail.com", read(file).get(3).getUserEmail());
+        assertFalse(Files.exists(dir.resolve("waitlist.json.migrating")));
+        assertFalse(Files.exists(dir.resolve("waitlist.json.migrating.ckpt")));
+    }
+
+    @Test
+    void migrate_runsSeveralMigrationsInOrder() throws IOException {
+        Path file = legacyWaitlist(2);
+        DataSchema.register(Migration.renameField(KIND, 1, "email", "mail"));
+        DataSchema.register(Migration.addField(KIND, 2, "source", new JsonPrimitive("desk")));
+        DataSchema.register(Migration.renameField(KIND, 3, "mail", "userEmail"));
+
+        SchemaMigrator.Result result = new SchemaMigrator(10, p -> { }).migrate(file, KIND);
+
+        assertEquals(4, result.toVersion());
+        String text = Files.readString(file);
+        assertTrue(text.contains("\"source\":\"desk\""), text);
+        assertEquals("user1@mail.com", read(file).get(1).getUserEmail());
+    }
+
+    @Test
+    void migrate_resumesAfterInterruption() throws IOException {
+        Path file = legacyWaitlist(7);
+        AtomicInteger failAt = new AtomicInteger(5);
+        AtomicInteger seen = new AtomicInteger();
+        Migration rename = Migration.renameField(KIND, 1, "email", "userEmail");
+        DataSchema.register(new Migration(KIND, 1, (in, out) -> {
+            if (seen.incrementAndGet() == failAt.get()) throw new IOException("disk full");
+            rename.transform().apply(in, out);
+        }));
+
+        assertThrows(IOException.class, () -> new SchemaMigrator(2, p -> { }).migrate(file, KIND));
+        assertTrue(Files.exists(dir.resolve("waitlist.json.migrating.ckpt")));
+        assertFalse(Files.readString(file).contains("$schema"), "The file itself is untouched.");
+
+        seen.set(0);
+        failAt.set(-1);
+        SchemaMigrator.Result result = new SchemaMigrator(2, p -> { }).migrate(file, KIND);
+
+        assertEquals(4, result.resumedAt());
+        assertEquals(7, result.records());
+        assertEquals(3, seen.get(), "Only the records after the checkpoint are upgraded again.");
+        List<WaitlistEntry> entries = read(file);
+        assertEquals(7, entries.size());
+        for (int i = 0; i < 7; i++) assertEquals("user" + i + "@mail.com", entries.get(i).getUserEmail());
+    }
+
+    @Test
+    void migrate_leavesCurrentFileUntouched() throws IOException {
+        Path file = legacyWaitlist(1);
+        String before = Files.readString(file);
+
+        SchemaMigrator.Result result = new SchemaMigrator(10, p -> { }).migrate(file, KIND);
+
+        assertFalse(result.upgraded());
+        assertEquals(before, Files.readString(file));
+    }
+
+    @Test
+    void migrate_refusesNewerFile() throws IOException {
+        Path file = dir.resolve("waitlist.json");
+        Files.writeString(file, "[\"$schema:waitlist_entry/9\",{}]");
+
+        SchemaVersionException e = assertThrows(SchemaVersionException.class,
+                () -> new SchemaMigrator(10, p -> { }).migrate(file, KIND));
+        assertEquals(9, e.getFound());
+        assertEquals(1, e.getSupported());
+    }
+
+    @Test
+    void run_upgradesTheDataDirectory() throws IOException {
+        legacyWaitlist(3);
+        Files.createDirectories(dir.resolve("borrow_history"));
+        Files.writeString(dir.resolve("borrow_history").resolve("2025-01.json"), "[]");
+        DataSchema.register(Migration.renameField(KIND, 1, "email", "userEmail"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int code = SchemaMigrator.run(dir, new PrintStream(out), new PrintStream(new ByteArrayOutputStream()));
+
+        assertEquals(0, code);
+        String printed = out.toString();
+        assertTrue(printed.contains("waitlist.json: version 1 -> 2, 3 records"), printed);
+        assertTrue(printed.contains("2025-01.json: version 1, up to date"), printed);
+    }
+}
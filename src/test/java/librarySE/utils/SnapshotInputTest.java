@@ -0,0 +1,57 @@
+package librarySE.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.StreamCorruptedException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotInputTest {
+
+    private static SnapshotInput input(byte[] data) {
+        return new SnapshotInput(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static byte[] ints(int... values) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int v : values) out.writeInt(v);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void readString_unknownDictionaryReference_throws() throws Exception {
+        assertThrows(StreamCorruptedException.class, () -> input(ints(3)).readString());
+    }
+
+    @Test
+    void readString_negativeLength_throws() throws Exception {
+        assertThrows(StreamCorruptedException.class,
+                () -> input(ints(SnapshotOutput.NEW_STRING, -5)).readString());
+    }
+
+    @Test
+    void readList_hugeSize_throws() throws Exception {
+        assertThrows(StreamCorruptedException.class,
+                () -> input(ints(Integer.MAX_VALUE)).readList(SnapshotInput::readInt));
+    }
+
+    @Test
+    void readEnum_unknownConstant_throws() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new SnapshotOutput(new DataOutputStream(bytes)).writeString("NOT_A_STATE");
+
+        assertThrows(StreamCorruptedException.class,
+                () -> input(bytes.toByteArray()).readEnum(Thread.State.class));
+    }
+
+    @Test
+    void truncatedInput_throwsEof() throws Exception {
+        assertThrows(EOFException.class, () -> input(new byte[3]).readUuid());
+    }
+}
@@ -0,0 +1,83 @@
+package librarySE.utils;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+import librarySE.core.LibraryItemFactory;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares loading an item catalog from JSON with loading it from the binary
+ * snapshot written next to it.
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.utils.SnapshotLoadBenchmark [items]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class SnapshotLoadBenchmark {
+
+    private static final Type LIST_TYPE = FileUtils.listTypeOf(LibraryItem.class);
+    private static final int ROUNDS = 5;
+
+    private SnapshotLoadBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        Path dir = Files.createTempDirectory("snapshot_bench");
+        Path json = dir.resolve("items.json");
+        Path bin = dir.resolve("items.bin");
+
+        List<LibraryItem> catalog = catalog(count);
+        FileUtils.writeJson(json, catalog);
+        FileUtils.writeSnapshot(bin, json, catalog,
+                (out, list) -> out.writeList(list, LibraryItemFactory::writeSnapshot));
+
+        long jsonBest = Long.MAX_VALUE, binBest = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS + 2; i++) { // first two rounds warm up
+            long t0 = System.nanoTime();
+            List<LibraryItem> fromJson = FileUtils.readJson(json, LIST_TYPE, List.of());
+            long t1 = System.nanoTime();
+            List<LibraryItem> fromBin = FileUtils.readSnapshot(bin, json,
+                    in -> in.readList(LibraryItemFactory::readSnapshot));
+            long t2 = System.nanoTime();
+
+            if (fromJson.size() != count || fromBin == null || fromBin.size() != count) {
+                throw new AssertionError("load returned wrong number of items");
+            }
+            if (i < 2) continue;
+            jsonBest = Math.min(jsonBest, t1 - t0);
+            binBest = Math.min(binBest, t2 - t1);
+        }
+
+        System.out.printf("%,d items, best of %d rounds%n", count, ROUNDS);
+        System.out.printf("%-8s %10s %12s%n", "format", "size KB", "load ms");
+        System.out.printf("%-8s %10d %12.1f%n", "json", Files.size(json) / 1024, jsonBest / 1e6);
+        System.out.printf("%-8s %10d %12.1f%n", "binary", Files.size(bin) / 1024, binBest / 1e6);
+    }
+
+    private static List<LibraryItem> catalog(int count) {
+        List<LibraryItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(5 + i % 50);
+            items.add(switch (i % 3) {
+                case 0 -> new Book("ISBN-" + i, "Book " + i, "Author " + i % 500, price);
+                case 1 -> new CD("Album " + i, "Artist " + i % 300, price);
+                default -> new Journal("Journal " + i, "Editor " + i % 200, "Issue " + i % 12, price);
+            });
+        }
+        return items;
+    }
+}
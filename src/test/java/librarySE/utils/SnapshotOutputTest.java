@@ -0,0 +1,101 @@
+package librarySE.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotOutputTest {
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final SnapshotOutput out = new SnapshotOutput(new DataOutputStream(bytes));
+
+    private SnapshotInput input() {
+        return new SnapshotInput(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    void roundTrip_allValueTypes() throws Exception {
+        UUID id = UUID.randomUUID();
+        LocalDateTime time = LocalDateTime.of(2025, 5, 6, 7, 8, 9, 123_000_000);
+
+        out.writeString("hello");
+        out.writeEnum(Thread.State.BLOCKED);
+        out.writeUuid(id);
+        out.writeDate(LocalDate.of(1999, 12, 31));
+        out.writeDateTime(time);
+        out.writeMoney(new BigDecimal("10.50"));
+        out.writeBoolean(true);
+        out.writeInt(42);
+        out.writeLong(-7L);
+
+        SnapshotInput in = input();
+        assertEquals("hello", in.readString());
+        assertEquals(Thread.State.BLOCKED, in.readEnum(Thread.State.class));
+        assertEquals(id, in.readUuid());
+        assertEquals(LocalDate.of(1999, 12, 31), in.readDate());
+        assertEquals(time, in.readDateTime());
+        assertEquals(new BigDecimal("10.50"), in.readMoney());
+        assertTrue(in.readBoolean());
+        assertEquals(42, in.readInt());
+        assertEquals(-7L, in.readLong());
+    }
+
+    @Test
+    void roundTrip_nulls() throws Exception {
+        out.writeString(null);
+        out.writeEnum(null);
+        out.writeUuid(null);
+        out.writeDate(null);
+        out.writeDateTime(null);
+        out.writeMoney(null);
+
+        SnapshotInput in = input();
+        assertNull(in.readString());
+        assertNull(in.readEnum(Thread.State.class));
+        assertNull(in.readUuid());
+        assertNull(in.readDate());
+        assertNull(in.readDateTime());
+        assertNull(in.readMoney());
+    }
+
+    @Test
+    void writeString_repeatedValuesAreDictionaryEncoded() throws Exception {
+        String author = "A rather long author name that repeats";
+        out.writeString(author);
+        int first = bytes.size();
+        out.writeString(author);
+
+        assertEquals(Integer.BYTES, bytes.size() - first);
+        SnapshotInput in = input();
+        String a = in.readString();
+        String b = in.readString();
+        assertEquals(author, a);
+        assertSame(a, b);
+    }
+
+    @Test
+    void writeList_roundTrip() throws Exception {
+        out.writeList(List.of("a", "b", "a"), SnapshotOutput::writeString);
+
+        List<String> read = input().readList(SnapshotInput::readString);
+        assertEquals(List.of("a", "b", "a"), read);
+        assertInstanceOf(ArrayList.class, read);
+    }
+
+    @Test
+    void writeMoney_outOfRange_throws() {
+        BigDecimal huge = new BigDecimal("1e30").setScale(2);
+        assertThrows(IllegalArgumentException.class, () -> out.writeMoney(huge));
+    }
+}
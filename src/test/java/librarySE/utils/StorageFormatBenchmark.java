@@ -0,0 +1,83 @@
+package librarySE.utils;
+
+import librarySE.core.Book;
+import librarySE.core.CD;
+import librarySE.core.Journal;
+import librarySE.core.LibraryItem;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares file size and read/write time of each {@link StorageFormat} on a
+ * synthetic item catalog.
+ * <p>
+ * Not a unit test (surefire does not pick it up); run it manually:
+ * </p>
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes:~/.m2/repository/com/google/code/gson/gson/2.11.0/gson-2.11.0.jar \
+ *      librarySE.utils.StorageFormatBenchmark [items]
+ * </pre>
+ *
+ * @author Eman
+ */
+public final class StorageFormatBenchmark {
+
+    private static final Type LIST_TYPE = FileUtils.listTypeOf(LibraryItem.class);
+    private static final int ROUNDS = 5;
+
+    private StorageFormatBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200_000;
+        Path dir = Files.createTempDirectory("format_bench");
+        List<LibraryItem> catalog = catalog(count);
+
+        System.out.printf("%,d items, best of %d rounds%n", count, ROUNDS);
+        System.out.printf("%-13s %10s %7s %10s %10s %12s%n",
+                "format", "size KB", "ratio", "write ms", "read ms", "items/s read");
+
+        long prettySize = 0;
+        for (StorageFormat format : StorageFormat.values()) {
+            Path file = dir.resolve("items_" + format.name().toLowerCase() + ".json");
+            long writeBest = Long.MAX_VALUE, readBest = Long.MAX_VALUE;
+
+            for (int i = 0; i < ROUNDS + 2; i++) { // first two rounds warm up
+                long t0 = System.nanoTime();
+                FileUtils.writeJson(file, catalog, Durability.BUFFERED, format);
+                long t1 = System.nanoTime();
+                List<LibraryItem> read = FileUtils.readJson(file, LIST_TYPE, List.of());
+                long t2 = System.nanoTime();
+
+                if (read.size() != count) throw new AssertionError("round trip lost items");
+                if (i < 2) continue;
+                writeBest = Math.min(writeBest, t1 - t0);
+                readBest = Math.min(readBest, t2 - t1);
+            }
+
+            long size = Files.size(file);
+            if (format == StorageFormat.PRETTY) prettySize = size;
+            System.out.printf("%-13s %10d %6.1fx %10.1f %10.1f %12.0f%n", format,
+                    size / 1024, (double) prettySize / size,
+                    writeBest / 1e6, readBest / 1e6, count / (readBest / 1e9));
+        }
+    }
+
+    private static List<LibraryItem> catalog(int count) {
+        List<LibraryItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            BigDecimal price = BigDecimal.valueOf(5 + i % 50);
+            items.add(switch (i % 3) {
+                case 0 -> new Book("ISBN-" + i, "Book " + i, "Author " + i % 500, price);
+                case 1 -> new CD("Album " + i, "Artist " + i % 300, price);
+                default -> new Journal("Journal " + i, "Editor " + i % 200, "Issue " + i % 12, price);
+            });
+        }
+        return items;
+    }
+}
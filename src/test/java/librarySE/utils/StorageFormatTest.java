@@ -0,0 +1,34 @@
+package librarySE.utils;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mockStatic;
+
+class StorageFormatTest {
+
+    @Test
+    void parse_isCaseInsensitiveAndDefaultsToPretty() {
+        assertEquals(StorageFormat.COMPACT_GZIP, StorageFormat.parse("compact_gzip"));
+        assertEquals(StorageFormat.PRETTY, StorageFormat.parse("zstd"));
+        assertEquals(StorageFormat.PRETTY, StorageFormat.parse(null));
+    }
+
+    @Test
+    void forFile_usesFileSpecificKeyThenGlobalKey() {
+        try (MockedStatic<Config> config = mockStatic(Config.class)) {
+            config.when(() -> Config.get(eq("persistence.format"), anyString())).thenReturn("COMPACT_GZIP");
+            config.when(() -> Config.get(eq("persistence.format.users"), anyString())).thenReturn("pretty");
+            config.when(() -> Config.get(eq("persistence.format.items"), anyString()))
+                    .thenAnswer(inv -> inv.getArgument(1));
+
+            assertEquals(StorageFormat.PRETTY, StorageFormat.forFile(Paths.get("library_data", "users.json")));
+            assertEquals(StorageFormat.COMPACT_GZIP, StorageFormat.forFile(Paths.get("library_data", "items.json")));
+        }
+    }
+}